@@ -23,10 +23,13 @@ import java.util.Iterator;
 import java.util.List;
 import java.util.function.Consumer;
 
+import org.adempiere.ad.persistence.po.POBulkInserter;
 import org.adempiere.ad.trx.api.ITrx;
 import org.adempiere.exceptions.AdempiereException;
 import org.adempiere.model.InterfaceWrapperHelper;
+import org.adempiere.service.ISysConfigBL;
 import org.adempiere.service.OrgId;
+import org.compiere.Adempiere;
 import org.compiere.acct.FactTrxLines.FactTrxLinesType;
 import org.compiere.model.I_C_ElementValue;
 import org.compiere.model.MAccount;
@@ -83,6 +86,9 @@ public final class Fact
 	// services
 	private static final transient Logger log = LogManager.getLogger(Fact.class);
 
+	/** If a fact has at least this many lines, they are inserted in bulk, see {@link #saveInBulk(List)}; zero or less means never */
+	private static final String SYSCONFIG_BulkInsertMinLines = "org.compiere.acct.Fact.BulkInsertMinLines";
+
 	/** Document */
 	private final Doc<?> m_doc;
 	/** Accounting Schema */
@@ -739,9 +745,61 @@ public final class Fact
 	 */
 	public final void save()
 	{
-		factTrxLinesStrategy
-				.createFactTrxLines(m_lines)
-				.forEach(this::save);
+		final List<FactTrxLines> factTrxLinesList = factTrxLinesStrategy.createFactTrxLines(m_lines);
+		if (isSaveInBulk())
+		{
+			saveInBulk(factTrxLinesList);
+		}
+		else
+		{
+			factTrxLinesList.forEach(this::save);
+		}
+	}
+
+	private boolean isSaveInBulk()
+	{
+		if (Adempiere.isUnitTestMode())
+		{
+			return false;
+		}
+
+		final int bulkInsertMinLines = Services.get(ISysConfigBL.class).getIntValue(SYSCONFIG_BulkInsertMinLines, 0);
+		return bulkInsertMinLines > 0 && m_lines.size() >= bulkInsertMinLines;
+	}
+
+	/**
+	 * Same as {@link #save(FactTrxLines)} for all given lines, but reserves all IDs in one go and inserts the lines with batched <code>INSERT</code>s.
+	 * <p>
+	 * Model interceptors are not called, but <code>Fact_Acct_Log</code> is maintained by its database trigger as usual.
+	 */
+	private void saveInBulk(final List<FactTrxLines> factTrxLinesList)
+	{
+		final List<FactLine> linesToSave = new ArrayList<>();
+		for (final FactTrxLines factTrxLines : factTrxLinesList)
+		{
+			factTrxLines.forEachDebitLine(linesToSave::add);
+			factTrxLines.forEachCreditLine(linesToSave::add);
+			factTrxLines.forEachZeroLine(linesToSave::add);
+		}
+
+		linesToSave.forEach(FactLine::beforeBulkInsert);
+		POBulkInserter.assignNewIDs(linesToSave);
+
+		for (final FactTrxLines factTrxLines : factTrxLinesList)
+		{
+			if (factTrxLines.getType() == FactTrxLinesType.Debit)
+			{
+				final int drLineId = factTrxLines.getDebitLine().getFact_Acct_ID();
+				factTrxLines.forEachCreditLine(crLine -> crLine.setCounterpart_Fact_Acct_ID(drLineId));
+			}
+			else if (factTrxLines.getType() == FactTrxLinesType.Credit)
+			{
+				final int crLineId = factTrxLines.getCreditLine().getFact_Acct_ID();
+				factTrxLines.forEachDebitLine(drLine -> drLine.setCounterpart_Fact_Acct_ID(crLineId));
+			}
+		}
+
+		POBulkInserter.insert(linesToSave, ITrx.TRXNAME_ThreadInherited);
 	}
 
 	private void save(final FactTrxLines factTrxLines)
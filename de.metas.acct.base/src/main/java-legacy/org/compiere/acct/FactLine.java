@@ -1342,6 +1342,15 @@ public final class FactLine extends X_Fact_Acct
 		return true;
 	}	// beforeSave
 
+	/**
+	 * Sets the same defaults as {@link #beforeSave(boolean)} does for a new line; called by {@link Fact} before inserting the line in bulk.
+	 */
+	void beforeBulkInsert()
+	{
+		Check.assume(is_new(), "Line is new: {}", this);
+		beforeSave(true);
+	}
+
 	private AccountDimension toAccountDimension()
 	{
 		return AccountDimension.builder()
@@ -5,6 +5,7 @@ import java.util.Properties;
 import org.compiere.model.IQuery;
 
 import de.metas.acct.model.I_Fact_Acct_Log;
+import de.metas.acct.model.I_Fact_Acct_Summary;
 import de.metas.util.ISingletonService;
 
 /*
@@ -44,4 +45,9 @@ public interface IFactAcctLogBL extends ISingletonService
 	 * @param limit maximum amount of logs to process or {@link IQuery#NO_LIMIT}.
 	 */
 	void processAll(Properties ctx, int limit);
+
+	/**
+	 * @return true if the {@link I_Fact_Acct_Summary}s are updated directly in database, with one statement for all logs of a processing run
+	 */
+	boolean isSetBasedSummaryUpdate();
 }
@@ -1,5 +1,6 @@
 package de.metas.acct.aggregation;
 
+import java.sql.Timestamp;
 import java.util.Properties;
 
 import org.adempiere.ad.dao.IQueryBuilder;
@@ -70,4 +71,17 @@ public interface IFactAcctLogDAO extends ISingletonService
 	boolean hasLogs(Properties ctx, String processingTag);
 
 	void updateFactAcctEndingBalanceForTag(String processingTag);
+
+	/**
+	 * Updates the {@link I_Fact_Acct_Summary}s of all {@link I_Fact_Acct_Log}s with the given tag in one go, directly in database.
+	 *
+	 * @param processingTag
+	 */
+	void updateFactAcctSummaryForTag(String processingTag);
+
+	/**
+	 * @param ctx
+	 * @return when the oldest {@link I_Fact_Acct_Log} which was not yet tagged was created or <code>null</code> if there is no such log
+	 */
+	Timestamp retrieveOldestUnprocessedLogCreated(Properties ctx);
 }
@@ -58,6 +58,8 @@ public class FactAcctLogWorkpackageProcessor extends WorkpackageProcessorAdapter
 
 	private static final String SYSCONFIG_MaxLogsToProcess = "de.metas.acct.async.FactAcctLogWorkpackageProcessor.MaxLogsToProcess";
 	private static final int DEFAULT_MaxLogsToProcess = 500;
+	/** set based processing takes about the same time for a few or many logs, so process more of them at once */
+	private static final int DEFAULT_MaxLogsToProcess_SetBased = 50000;
 
 	private static final FactAcctLogWorkpackageProcessorScheduler SCHEDULER = new FactAcctLogWorkpackageProcessorScheduler();
 
@@ -78,7 +80,8 @@ public class FactAcctLogWorkpackageProcessor extends WorkpackageProcessorAdapter
 
 	private final int getMaxLogsToProcess()
 	{
-		return sysConfigBL.getIntValue(SYSCONFIG_MaxLogsToProcess, DEFAULT_MaxLogsToProcess);
+		final int defaultMaxLogsToProcess = factAcctLogBL.isSetBasedSummaryUpdate() ? DEFAULT_MaxLogsToProcess_SetBased : DEFAULT_MaxLogsToProcess;
+		return sysConfigBL.getIntValue(SYSCONFIG_MaxLogsToProcess, defaultMaxLogsToProcess);
 	}
 
 }
@@ -9,10 +9,13 @@ import org.adempiere.ad.dao.IQueryFilter;
 import org.adempiere.ad.dao.impl.EqualsQueryFilter;
 import org.adempiere.ad.trx.api.ITrxManager;
 import org.adempiere.model.InterfaceWrapperHelper;
+import org.adempiere.service.ISysConfigBL;
 import org.adempiere.util.agg.key.IAggregationKeyBuilder;
 import org.compiere.util.TimeUtil;
 import org.compiere.util.TrxRunnableAdapter;
 
+import com.google.common.annotations.VisibleForTesting;
+
 import de.metas.acct.aggregation.IFactAcctLogBL;
 import de.metas.acct.aggregation.IFactAcctLogDAO;
 import de.metas.acct.aggregation.IFactAcctLogIterable;
@@ -50,6 +53,12 @@ import de.metas.util.collections.MapReduceAggregator;
 
 public class FactAcctLogBL implements IFactAcctLogBL
 {
+	/**
+	 * If <code>Y</code>, the {@link I_Fact_Acct_Summary}s are updated with one statement per processing tag,
+	 * instead of loading and saving them one by one.
+	 */
+	private static final String SYSCONFIG_SetBasedSummaryUpdate = "de.metas.acct.aggregation.impl.FactAcctLogBL.SetBasedSummaryUpdate";
+
 	@Override
 	public void processAll(final Properties ctx, final int limit)
 	{
@@ -71,6 +80,19 @@ public class FactAcctLogBL implements IFactAcctLogBL
 	}
 
 	public void process(final IFactAcctLogIterable logs)
+	{
+		if (isSetBasedSummaryUpdate())
+		{
+			processSetBased(logs);
+		}
+		else
+		{
+			processOneByOne(logs);
+		}
+	}
+
+	@VisibleForTesting
+	void processOneByOne(final IFactAcctLogIterable logs)
 	{
 		final ILoggable loggable = Loggables.get();
 
@@ -95,6 +117,24 @@ public class FactAcctLogBL implements IFactAcctLogBL
 		loggable.addLog("Created/Updated {0} {1} records", factAcctSummaryUpdater.getGroupsCount(), I_Fact_Acct_Summary.Table_Name);
 	}
 
+	@Override
+	public boolean isSetBasedSummaryUpdate()
+	{
+		return Services.get(ISysConfigBL.class).getBooleanValue(SYSCONFIG_SetBasedSummaryUpdate, false);
+	}
+
+	@VisibleForTesting
+	void processSetBased(final IFactAcctLogIterable logs)
+	{
+		final IFactAcctLogDAO factAcctLogDAO = Services.get(IFactAcctLogDAO.class);
+		final String processingTag = logs.getProcessingTag();
+
+		factAcctLogDAO.updateFactAcctSummaryForTag(processingTag);
+		factAcctLogDAO.updateFactAcctEndingBalanceForTag(processingTag);
+
+		logs.deleteAll();
+	}
+
 	private static class FactAcctSummaryUpdater extends MapReduceAggregator<FactAcctGroup, I_Fact_Acct_Log>
 	{
 		public FactAcctSummaryUpdater()
@@ -3,6 +3,7 @@ package de.metas.acct.aggregation.impl;
 import java.sql.PreparedStatement;
 import java.sql.ResultSet;
 import java.sql.SQLException;
+import java.sql.Timestamp;
 import java.util.Iterator;
 import java.util.Properties;
 import java.util.UUID;
@@ -17,8 +18,11 @@ import org.adempiere.exceptions.DBException;
 import org.adempiere.util.lang.ObjectUtils;
 import org.adempiere.util.text.annotation.ToStringBuilder;
 import org.compiere.model.IQuery;
+import org.compiere.model.IQuery.Aggregate;
 import org.compiere.util.DB;
 
+import com.google.common.annotations.VisibleForTesting;
+
 import de.metas.acct.aggregation.IFactAcctLogDAO;
 import de.metas.acct.aggregation.IFactAcctLogIterable;
 import de.metas.acct.aggregation.IFactAcctSummaryKey;
@@ -55,6 +59,8 @@ public class FactAcctLogDAO implements IFactAcctLogDAO
 {
 	/** Function used to check {@link I_Fact_Acct_Log}s for a given tag and update {@link I_Fact_Acct_EndingBalance} */
 	private static final String DB_FUNC_Fact_Acct_EndingBalance_UpdateForTag = IFactAcctDAO.DB_SCHEMA + ".Fact_Acct_EndingBalance_UpdateForTag";
+	/** Function used to check {@link I_Fact_Acct_Log}s for a given tag and update {@link I_Fact_Acct_Summary} */
+	private static final String DB_FUNC_Fact_Acct_Summary_UpdateForTag = IFactAcctDAO.DB_SCHEMA + ".Fact_Acct_Summary_UpdateForTag";
 
 	@Override
 	public IFactAcctLogIterable tagAndRetrieve(final Properties ctx, final int limit)
@@ -65,6 +71,15 @@ public class FactAcctLogDAO implements IFactAcctLogDAO
 		return new FactAcctLogIterable(ctx, processingTag);
 	}
 
+	/**
+	 * @return the logs which are already tagged with the given tag
+	 */
+	@VisibleForTesting
+	IFactAcctLogIterable retrieveTagged(final Properties ctx, final String processingTag)
+	{
+		return new FactAcctLogIterable(ctx, processingTag);
+	}
+
 	private final int releaseTag(final Properties ctx, final String processingTag)
 	{
 		final int limit = IQuery.NO_LIMIT;
@@ -161,10 +176,29 @@ public class FactAcctLogDAO implements IFactAcctLogDAO
 				.addCompareFilter(I_Fact_Acct_Summary.COLUMN_DateAcct, Operator.GREATER_OR_EQUAL, key.getDateAcct());
 	}
 
+	@Override
+	public Timestamp retrieveOldestUnprocessedLogCreated(final Properties ctx)
+	{
+		return retrieveForTagQuery(ctx, PROCESSINGTAG_NULL)
+				.create()
+				.aggregate(I_Fact_Acct_Log.COLUMN_Created, Aggregate.MIN, Timestamp.class);
+	}
+
 	@Override
 	public void updateFactAcctEndingBalanceForTag(final String processingTag)
 	{
-		final String sql = "SELECT " + DB_FUNC_Fact_Acct_EndingBalance_UpdateForTag + "(?)";
+		executeFunctionForTag(DB_FUNC_Fact_Acct_EndingBalance_UpdateForTag, processingTag);
+	}
+
+	@Override
+	public void updateFactAcctSummaryForTag(final String processingTag)
+	{
+		executeFunctionForTag(DB_FUNC_Fact_Acct_Summary_UpdateForTag, processingTag);
+	}
+
+	private void executeFunctionForTag(final String functionName, final String processingTag)
+	{
+		final String sql = "SELECT " + functionName + "(?)";
 		final Object[] sqlParams = new Object[] { processingTag };
 		PreparedStatement pstmt = null;
 		ResultSet rs = null;
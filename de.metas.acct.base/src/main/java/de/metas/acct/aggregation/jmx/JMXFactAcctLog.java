@@ -0,0 +1,71 @@
+package de.metas.acct.aggregation.jmx;
+
+import java.sql.Timestamp;
+
+import org.adempiere.util.jmx.IJMXNameAware;
+import org.compiere.util.Env;
+
+import de.metas.acct.aggregation.IFactAcctLogBL;
+import de.metas.acct.aggregation.IFactAcctLogDAO;
+import de.metas.util.Services;
+import de.metas.util.time.SystemTime;
+
+/*
+ * #%L
+ * de.metas.acct.base
+ * %%
+ * Copyright (C) 2019 metas GmbH
+ * %%
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as
+ * published by the Free Software Foundation, either version 2 of the
+ * License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public
+ * License along with this program. If not, see
+ * <http://www.gnu.org/licenses/gpl-2.0.html>.
+ * #L%
+ */
+
+public class JMXFactAcctLog implements JMXFactAcctLogMBean, IJMXNameAware
+{
+	@Override
+	public String getJMXName()
+	{
+		return "de.metas.acct:type=FactAcctLog";
+	}
+
+	private Timestamp retrieveOldestUnprocessedLogCreated()
+	{
+		return Services.get(IFactAcctLogDAO.class).retrieveOldestUnprocessedLogCreated(Env.getCtx());
+	}
+
+	@Override
+	public String getOldestUnprocessedLogCreated()
+	{
+		final Timestamp created = retrieveOldestUnprocessedLogCreated();
+		return created != null ? created.toString() : null;
+	}
+
+	@Override
+	public long getOldestUnprocessedLogAgeSeconds()
+	{
+		final Timestamp created = retrieveOldestUnprocessedLogCreated();
+		if (created == null)
+		{
+			return 0;
+		}
+		return Math.max((SystemTime.millis() - created.getTime()) / 1000, 0);
+	}
+
+	@Override
+	public boolean isSetBasedSummaryUpdate()
+	{
+		return Services.get(IFactAcctLogBL.class).isSetBasedSummaryUpdate();
+	}
+}
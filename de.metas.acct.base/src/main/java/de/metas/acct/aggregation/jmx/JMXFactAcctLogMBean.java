@@ -0,0 +1,37 @@
+package de.metas.acct.aggregation.jmx;
+
+/*
+ * #%L
+ * de.metas.acct.base
+ * %%
+ * Copyright (C) 2019 metas GmbH
+ * %%
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as
+ * published by the Free Software Foundation, either version 2 of the
+ * License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public
+ * License along with this program. If not, see
+ * <http://www.gnu.org/licenses/gpl-2.0.html>.
+ * #L%
+ */
+
+/**
+ * JMX bean which tells how far the processing of {@link de.metas.acct.model.I_Fact_Acct_Log}s lags behind the posting.
+ */
+public interface JMXFactAcctLogMBean
+{
+	/** @return creation time of the oldest unprocessed log or <code>null</code> if all logs are processed */
+	String getOldestUnprocessedLogCreated();
+
+	/** @return age of the oldest unprocessed log in seconds or zero if all logs are processed */
+	long getOldestUnprocessedLogAgeSeconds();
+
+	boolean isSetBasedSummaryUpdate();
+}
@@ -23,26 +23,44 @@ package de.metas.acct.cube.impl;
  */
 
 
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
 import java.sql.Timestamp;
 import java.util.ArrayList;
 import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
 
+import org.adempiere.ad.trx.api.ITrxManager;
 import org.adempiere.exceptions.AdempiereException;
 import org.adempiere.exceptions.DBException;
+import org.adempiere.service.ISysConfigBL;
+import org.adempiere.util.concurrent.CustomizableThreadFactory;
 import org.adempiere.util.lang.IContextAware;
+import org.compiere.model.I_Fact_Acct;
 import org.compiere.model.I_PA_ReportCube;
 import org.compiere.util.DB;
-import org.compiere.util.KeyNamePair;
 import org.slf4j.Logger;
 
+import com.google.common.annotations.VisibleForTesting;
+
 import de.metas.acct.cube.IFactAcctCubeUpdater;
-import de.metas.acct.model.I_Fact_Acct_Summary;
 import de.metas.logging.LogManager;
 import de.metas.util.Check;
+import de.metas.util.Services;
 
 /*package*/class FactAcctCubeUpdater implements IFactAcctCubeUpdater
 {
 	private final Logger log = LogManager.getLogger(getClass());
+	private final transient ITrxManager trxManager = Services.get(ITrxManager.class);
+
+	/** How many slices are recomputed at the same time */
+	private static final String SYSCONFIG_Threads = "de.metas.acct.cube.impl.FactAcctCubeUpdater.Threads";
+	private static final int DEFAULT_Threads = 4;
 
 	// Parameters
 	private IContextAware _context;
@@ -134,126 +152,212 @@ import de.metas.util.Check;
 		//
 		// Extract parameters
 		final I_PA_ReportCube paReportCube = getPA_ReportCube();
-		final int paReportCubeId = getPA_ReportCube_ID();
-		final Timestamp lastRecalculated = paReportCube.getLastRecalculated();
 		final String paReportCubeName = paReportCube.getName();
-		final boolean reset = isResetCube();
-		final String trxName = getContext().getTrxName();
+		final boolean filterOnlyChangedSlices = paReportCube.getLastRecalculated() != null && !isResetCube();
 
-		final StringBuilder resultSummary = new StringBuilder(paReportCubeName + ": ");
+		//
+		// Read the new watermark before looking for changed facts: facts which are updated while we are working have a later timestamp,
+		// so they are found again on the next run
+		final Timestamp lastRecalculatedNew = retrieveFactAcctLastUpdated();
 
-		String where = " WHERE PA_ReportCube_ID = " + paReportCubeId;
+		//
+		// Find out which periods need to be recomputed
+		final List<CubeSlice> slices = filterOnlyChangedSlices ? retrieveChangedSlices() : retrieveAllSlices();
+		if (slices.isEmpty())
+		{
+			setResultSummary("Nothing to update in " + paReportCubeName);
+			return this;
+		}
 
 		//
-		// SQL: C_Period_IDs IN list
-		final String sqlPeriodIn; // e.g. "(PeriodId1, PeriodId2, ...)"
-		final boolean filterOnlyChangedPeriods = lastRecalculated != null && !reset;
-		if (filterOnlyChangedPeriods)
+		// Lock the report cube
+		lockReportCube();
+
+		final StringBuilder resultSummary = new StringBuilder(paReportCubeName + ": ");
+		boolean success = false;
+		try
 		{
-			final List<Integer> periodIds = getChangedPeriodIds();
-			if (periodIds.isEmpty())
-			{
-				setResultSummary("Nothing to update in " + paReportCubeName);
-				return this;
-			}
+			final long startMillis = System.currentTimeMillis();
+			final AtomicInteger deleted = new AtomicInteger(0);
+			final AtomicInteger inserted = new AtomicInteger(0);
+			updateSlicesInParallel(slices, deleted, inserted);
+			final long seconds = (System.currentTimeMillis() - startMillis) / 1000;
 
-			sqlPeriodIn = DB.buildSqlList(periodIds);
-			where += (" AND C_Period_ID IN " + sqlPeriodIn);
+			final String updateResult = "Updated " + slices.size() + " slices (" + (filterOnlyChangedSlices ? "changed" : "all") + " periods)"
+					+ ": deleted " + deleted.get() + ", inserted " + inserted.get() + " in " + seconds + " s.";
+			log.debug(updateResult);
+			resultSummary.append(updateResult);
+			success = true;
 		}
-		else
+		catch (final AdempiereException e)
+		{
+			// failure => LastRecalculated is not advanced, so the failed slices are recomputed on next run
+			log.warn(paReportCubeName + " update failed:" + e.getMessage(), e);
+			resultSummary.append("Failed: " + e.getLocalizedMessage());
+		}
+		finally
 		{
-			sqlPeriodIn = null; // i.e. shall not be used
+			unlockReportCube(success, lastRecalculatedNew);
 		}
 
-		//
-		// Lock the report cube
-		lockReportCube();
+		setResultSummary(resultSummary.toString());
+
+		return this;
+	}
 
+	/**
+	 * Updates each slice in its own transaction, so that readers only see a slice's old or new data and nothing is locked for the whole update.
+	 */
+	private void updateSlicesInParallel(final List<CubeSlice> slices, final AtomicInteger deleted, final AtomicInteger inserted)
+	{
+		final int threads = Math.max(1, Math.min(getThreads(), slices.size()));
+		final ExecutorService executor = Executors.newFixedThreadPool(threads, CustomizableThreadFactory.builder()
+				.setThreadNamePrefix(getClass().getSimpleName() + "-" + getPA_ReportCube_ID())
+				.setDaemon(true)
+				.build());
 		try
 		{
-			//
-			// Delete from Fact_Acct_Summary
+			final List<Future<?>> futures = new ArrayList<>(slices.size());
+			for (final CubeSlice slice : slices)
 			{
-				final long startMillis = System.currentTimeMillis();
-				final int deleted = deleteFactAcctSummary(where);
-				final long elapsedSec = (System.currentTimeMillis() - startMillis) / 1000;
-				resultSummary.append("Deleted " + deleted + " in " + elapsedSec + " s; ");
-				log.debug(resultSummary.toString());
+				futures.add(executor.submit(() -> trxManager.runInNewTrx(localTrxName -> updateSlice(slice, deleted, inserted, localTrxName))));
 			}
 
-			//
-			// Insert into Fact_Acct_Summary
-			StringBuilder insert = new StringBuilder("INSERT " +
-					"INTO FACT_ACCT_SUMMARY (PA_ReportCube_ID , AD_Client_ID, " +
-					"AD_Org_ID, Created, CreatedBy, Updated, UpdatedBy, IsActive, " +
-					"C_AcctSchema_ID, Account_ID, PostingType, " +
-					"GL_Budget_ID, C_Period_ID, DateAcct, AmtAcctDr, AmtAcctCr, Qty");
-
-			final StringBuilder select = new StringBuilder(" ) SELECT " +
-					"?, f.AD_CLIENT_ID, f.AD_ORG_ID, " +
-					"max(f.Created), max(f.CreatedBy), max(f.Updated), max(f.UpdatedBy), 'Y', " +
-					"f.C_ACCTSCHEMA_ID, f.ACCOUNT_ID, f.POSTINGTYPE, GL_Budget_ID, " +
-					"p.c_period_id," +
-					"p.StartDate, " + // DateAcct
-					"COALESCE(SUM(AmtAcctDr),0), COALESCE(SUM(AmtAcctCr),0), " +
-					"COALESCE(SUM(Qty),0)");
-			String from = " FROM fact_acct f " +
-					" INNER JOIN C_Period p ON ( f.DateAcct BETWEEN p.StartDate AND p.EndDate ) " +
-					" INNER JOIN C_Year y ON ( p.C_Year_ID = y.C_Year_ID ) " +
-					" WHERE p.PeriodType = 'S' " +
-					" AND y.C_Calendar_ID = ? ";
-			if (filterOnlyChangedPeriods)
+			AdempiereException firstError = null;
+			for (final Future<?> future : futures)
 			{
-				from += "AND  p.C_Period_ID IN " + sqlPeriodIn;
+				try
+				{
+					future.get();
+				}
+				catch (final ExecutionException e)
+				{
+					if (firstError == null)
+					{
+						firstError = AdempiereException.wrapIfNeeded(e.getCause());
+					}
+				}
 			}
-
-			final StringBuilder groups = new StringBuilder(" GROUP BY " +
-					"f.AD_CLIENT_ID, f.AD_ORG_ID, f.C_ACCTSCHEMA_ID, f.ACCOUNT_ID, " +
-					"f.POSTINGTYPE, GL_Budget_ID, p.c_period_id, p.StartDate ");
-
-			final List<String> dimensionColumnNames = getDimensionColumnNames(paReportCube);
-			for (final String dim : dimensionColumnNames)
+			if (firstError != null)
 			{
-				insert.append(", " + dim);
-				select.append(", f." + dim);
-				groups.append(", f." + dim);
+				throw firstError;
 			}
+		}
+		catch (final InterruptedException e)
+		{
+			Thread.currentThread().interrupt();
+			throw AdempiereException.wrapIfNeeded(e);
+		}
+		finally
+		{
+			executor.shutdownNow();
+		}
+	}
 
-			final String sql = insert.append(select.toString()).append(from).append(groups.toString()).toString();
-			log.debug(sql);
-			final Object[] sqlParams = new Object[] { paReportCubeId, paReportCube.getC_Calendar_ID() };
+	private int getThreads()
+	{
+		return Services.get(ISysConfigBL.class).getIntValue(SYSCONFIG_Threads, DEFAULT_Threads, getPA_ReportCube().getAD_Client_ID());
+	}
 
-			final long startMillis = System.currentTimeMillis();
-			final int rows = DB.executeUpdateEx(sql, sqlParams, trxName);
-			final long seconds = (System.currentTimeMillis() - startMillis) / 1000;
+	private void updateSlice(final CubeSlice slice, final AtomicInteger deleted, final AtomicInteger inserted, final String trxName)
+	{
+		//
+		// Delete from Fact_Acct_Summary
+		{
+			final List<Object> sqlParams = new ArrayList<>();
+			final String sql = createDeleteSql(slice, sqlParams);
+			log.debug("Delete sql: " + sql);
 
-			final String insertResult = "Inserted " + rows + " in " + seconds + " s.";
-			log.debug(insertResult);
-			resultSummary.append(insertResult);
+			deleted.addAndGet(DB.executeUpdateEx(sql, sqlParams.toArray(), trxName));
 		}
-		catch (DBException e)
+
+		//
+		// Insert into Fact_Acct_Summary
 		{
-			// failure results in null timestamp => rebuild on next run
-			// nothing else to do
-			log.debug(paReportCubeName + " update failed:" + e.getMessage());
+			final List<Object> sqlParams = new ArrayList<>();
+			final String sql = createInsertSql(slice, sqlParams);
+			log.debug(sql);
+
+			inserted.addAndGet(DB.executeUpdateEx(sql, sqlParams.toArray(), trxName));
 		}
-		finally
+	}
+
+	/**
+	 * Note that the whole period is deleted, not only the accounts of the changed facts: a fact which was moved to another account within the period
+	 * is only found with its new account, but its old account's summary needs to be recomputed, too.
+	 */
+	@VisibleForTesting
+	String createDeleteSql(final CubeSlice slice, final List<Object> sqlParams)
+	{
+		sqlParams.add(getPA_ReportCube_ID());
+		sqlParams.add(slice.getPeriodId());
+		return "DELETE FROM Fact_Acct_Summary fas WHERE PA_ReportCube_ID = ? AND C_Period_ID = ?";
+	}
+
+	@VisibleForTesting
+	String createInsertSql(final CubeSlice slice, final List<Object> sqlParams)
+	{
+		final I_PA_ReportCube paReportCube = getPA_ReportCube();
+
+		final StringBuilder insert = new StringBuilder("INSERT " +
+				"INTO FACT_ACCT_SUMMARY (PA_ReportCube_ID , AD_Client_ID, " +
+				"AD_Org_ID, Created, CreatedBy, Updated, UpdatedBy, IsActive, " +
+				"C_AcctSchema_ID, Account_ID, PostingType, " +
+				"GL_Budget_ID, C_Period_ID, DateAcct, AmtAcctDr, AmtAcctCr, Qty");
+
+		final StringBuilder select = new StringBuilder(" ) SELECT " +
+				"?, f.AD_CLIENT_ID, f.AD_ORG_ID, " +
+				"max(f.Created), max(f.CreatedBy), max(f.Updated), max(f.UpdatedBy), 'Y', " +
+				"f.C_ACCTSCHEMA_ID, f.ACCOUNT_ID, f.POSTINGTYPE, GL_Budget_ID, " +
+				"p.c_period_id," +
+				"p.StartDate, " + // DateAcct
+				"COALESCE(SUM(AmtAcctDr),0), COALESCE(SUM(AmtAcctCr),0), " +
+				"COALESCE(SUM(Qty),0)");
+
+		sqlParams.add(getPA_ReportCube_ID());
+		sqlParams.add(paReportCube.getC_Calendar_ID());
+		sqlParams.add(slice.getPeriodId());
+		final String from = " FROM fact_acct f " +
+				" INNER JOIN C_Period p ON ( f.DateAcct BETWEEN p.StartDate AND p.EndDate ) " +
+				" INNER JOIN C_Year y ON ( p.C_Year_ID = y.C_Year_ID ) " +
+				" WHERE p.PeriodType = 'S' " +
+				" AND y.C_Calendar_ID = ? " +
+				" AND p.C_Period_ID = ? ";
+
+		final StringBuilder groups = new StringBuilder(" GROUP BY " +
+				"f.AD_CLIENT_ID, f.AD_ORG_ID, f.C_ACCTSCHEMA_ID, f.ACCOUNT_ID, " +
+				"f.POSTINGTYPE, GL_Budget_ID, p.c_period_id, p.StartDate ");
+
+		final List<String> dimensionColumnNames = getDimensionColumnNames(paReportCube);
+		for (final String dim : dimensionColumnNames)
 		{
-			unlockReportCube();
+			insert.append(", " + dim);
+			select.append(", f." + dim);
+			groups.append(", f." + dim);
 		}
 
-		setResultSummary(resultSummary.toString());
+		return insert.append(select.toString()).append(from).append(groups.toString()).toString();
+	}
 
-		return this;
+	/**
+	 * @return one slice per standard period of the cube's calendar
+	 */
+	private List<CubeSlice> retrieveAllSlices()
+	{
+		final String sql = "SELECT p.C_Period_ID FROM C_Period p " +
+				"INNER JOIN C_Year y ON (y.C_Year_ID=p.C_Year_ID) " +
+				"WHERE y.C_Calendar_ID = ? " +
+				"AND p.periodtype='S' " + // standard period
+				"ORDER BY p.StartDate";
+		return retrieveSlices(sql, getPA_ReportCube().getC_Calendar_ID());
 	}
 
 	/**
-	 * 
-	 * @return C_Period_ID/Name pairs
+	 * @return one slice per standard period which has facts that were updated since the last recalculation
 	 */
-	private KeyNamePair[] retrieveChangedPeriods()
+	private List<CubeSlice> retrieveChangedSlices()
 	{
-		final String sql = "SELECT DISTINCT p.C_Period_ID, p.Name FROM C_Period p " +
+		final String sql = "SELECT DISTINCT p.C_Period_ID FROM C_Period p " +
 				"INNER JOIN C_Year y ON (y.C_Year_ID=p.C_Year_ID) " +
 				"INNER JOIN PA_ReportCube c ON (c.C_Calendar_ID = y.C_Calendar_ID) " +
 				"INNER JOIN Fact_Acct fact ON (fact.dateacct between p.startdate and p.enddate " +
@@ -262,75 +366,53 @@ import de.metas.util.Check;
 				"AND fact.updated > c.LastRecalculated " +
 				"AND p.periodtype='S' " // standard period
 		;
-		log.debug(sql);
-
-		final int paReportCubeId = getPA_ReportCube_ID();
-
-		final long startMillis = System.currentTimeMillis();
-		final KeyNamePair[] changedPeriods = DB.getKeyNamePairs(sql, false, paReportCubeId);
-
-		final long elapsedSec = (System.currentTimeMillis() - startMillis) / 1000;
-		log.debug("Selecting changed periods took:" + elapsedSec + "s");
-
-		return changedPeriods;
+		return retrieveSlices(sql, getPA_ReportCube_ID());
 	}
 
-	private List<Integer> getChangedPeriodIds()
+	private List<CubeSlice> retrieveSlices(final String sql, final Object... sqlParams)
 	{
-		final List<Integer> periodIds = new ArrayList<Integer>();
-		final StringBuilder periodNames = new StringBuilder();
+		log.debug(sql);
+		final long startMillis = System.currentTimeMillis();
 
-		final KeyNamePair[] changedPeriods = retrieveChangedPeriods();
-		if (!Check.isEmpty(changedPeriods))
+		final List<CubeSlice> slices = new ArrayList<>();
+		PreparedStatement pstmt = null;
+		ResultSet rs = null;
+		try
 		{
-			for (final KeyNamePair p : changedPeriods)
+			pstmt = DB.prepareStatement(sql, getContext().getTrxName());
+			DB.setParameters(pstmt, sqlParams);
+			rs = pstmt.executeQuery();
+			while (rs.next())
 			{
-				final int periodId = p.getKey();
-				if (periodId <= 0)
-				{
-					continue;
-				}
-				if (periodIds.contains(periodId))
-				{
-					continue;
-				}
-				periodIds.add(periodId);
-
-				final String periodName = p.getName();
-				if (periodNames.length() > 0)
-				{
-					periodNames.append(periodName);
-				}
+				slices.add(new CubeSlice(rs.getInt(1)));
 			}
 		}
-
-		if (periodIds.isEmpty())
+		catch (final SQLException e)
 		{
-			log.debug("No periods to update found");
+			throw new DBException(e, sql, sqlParams);
 		}
-		else
+		finally
 		{
-			log.debug("Periods to update: {}", periodNames);
+			DB.close(rs, pstmt);
 		}
 
-		return periodIds;
+		final long elapsedSec = (System.currentTimeMillis() - startMillis) / 1000;
+		log.debug("Selecting {} slices took: {}s", slices.size(), elapsedSec);
+
+		return slices;
 	}
 
 	/**
-	 * @return max of {@link I_Fact_Acct_Summary#getUpdated()}
+	 * @return max of {@link I_Fact_Acct#getUpdated()} of the cube's client
 	 */
-	private Timestamp retrieveLastUpdated()
+	private Timestamp retrieveFactAcctLastUpdated()
 	{
-		final int paReportCubeId = getPA_ReportCube_ID();
 		final String trxName = getContext().getTrxName();
-		// set timestamp
-		final String sql = "SELECT max(fas.Updated)" +
-				" FROM Fact_Acct_Summary fas" +
-				" WHERE fas.PA_ReportCube_ID = ?";
-		final Object[] sqlParams = new Object[] { paReportCubeId };
-		final Timestamp lastUpdated = DB.getSQLValueTSEx(trxName, sql, sqlParams);
-
-		return lastUpdated;
+		final String sql = "SELECT max(fact.Updated)" +
+				" FROM Fact_Acct fact" +
+				" WHERE fact.AD_Client_ID = ?";
+		final Object[] sqlParams = new Object[] { getPA_ReportCube().getAD_Client_ID() };
+		return DB.getSQLValueTSEx(trxName, sql, sqlParams);
 	}
 
 	private void lockReportCube()
@@ -357,12 +439,18 @@ import de.metas.util.Check;
 		}
 	}
 
-	private void unlockReportCube()
+	private void unlockReportCube(final boolean success, final Timestamp lastRecalculatedNew)
 	{
-		final Timestamp lastRecalculatedNew = retrieveLastUpdated();
 		final int paReportCubeId = getPA_ReportCube_ID();
 		final String trxName = getContext().getTrxName();
 
+		if (!success)
+		{
+			final String sql = "UPDATE PA_ReportCube SET Processing=? WHERE PA_ReportCube_ID=?";
+			DB.executeUpdateEx(sql, new Object[] { false, paReportCubeId }, trxName);
+			return;
+		}
+
 		final String sql = "UPDATE PA_ReportCube SET Processing=?, LastRecalculated=?"
 				+ " WHERE PA_ReportCube_ID=?";
 		final Object[] sqlParams = new Object[] {
@@ -374,18 +462,6 @@ import de.metas.util.Check;
 		DB.executeUpdateEx(sql, sqlParams, trxName);
 	}
 
-	private int deleteFactAcctSummary(final String where)
-	{
-		final String trxName = getContext().getTrxName();
-
-		// delete
-		final String sql = "DELETE FROM Fact_Acct_Summary fas " + where;
-		log.debug("Delete sql: " + sql);
-
-		final int deletedNo = DB.executeUpdateEx(sql, trxName);
-		return deletedNo;
-	}
-
 	private List<String> getDimensionColumnNames(final I_PA_ReportCube paReportCube)
 	{
 		final List<String> values = new ArrayList<String>();
@@ -426,4 +502,12 @@ import de.metas.util.Check;
 
 		return values;
 	}
+
+	/** Part of the cube which is recomputed in one transaction */
+	@lombok.Value
+	@VisibleForTesting
+	static class CubeSlice
+	{
+		int periodId;
+	}
 }
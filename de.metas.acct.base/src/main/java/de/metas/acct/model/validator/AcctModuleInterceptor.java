@@ -29,6 +29,8 @@ import org.adempiere.ad.callout.spi.IProgramaticCalloutProvider;
 import org.adempiere.ad.modelvalidator.AbstractModuleInterceptor;
 import org.adempiere.ad.modelvalidator.IModelValidationEngine;
 import org.adempiere.ad.security.IUserRolePermissionsDAO;
+import org.adempiere.util.jmx.JMXRegistry;
+import org.adempiere.util.jmx.JMXRegistry.OnJMXAlreadyExistsPolicy;
 import org.compiere.model.I_AD_Client;
 import org.compiere.model.I_C_AcctSchema;
 import org.compiere.model.I_C_ConversionType;
@@ -43,6 +45,7 @@ import org.compiere.util.Env;
 import org.slf4j.Logger;
 
 import de.metas.acct.aggregation.async.ScheduleFactAcctLogProcessingFactAcctListener;
+import de.metas.acct.aggregation.jmx.JMXFactAcctLog;
 import de.metas.acct.api.IFactAcctListenersService;
 import de.metas.acct.api.IPostingService;
 import de.metas.acct.api.IProductAcctDAO;
@@ -75,6 +78,7 @@ public class AcctModuleInterceptor extends AbstractModuleInterceptor
 	protected void onAfterInit()
 	{
 		Services.get(IFactAcctListenersService.class).registerListener(ScheduleFactAcctLogProcessingFactAcctListener.instance);
+		JMXRegistry.get().registerJMX(new JMXFactAcctLog(), OnJMXAlreadyExistsPolicy.Replace);
 
 		final IDocumentRepostingSupplierService documentBL = Services.get(IDocumentRepostingSupplierService.class);
 
@@ -0,0 +1,58 @@
+package de.metas.acct.posting.period;
+
+import org.adempiere.service.ClientId;
+
+import de.metas.acct.api.AcctSchemaId;
+import de.metas.util.Check;
+import lombok.Builder;
+import lombok.NonNull;
+import lombok.Value;
+
+/*
+ * #%L
+ * de.metas.acct.base
+ * %%
+ * Copyright (C) 2019 metas GmbH
+ * %%
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as
+ * published by the Free Software Foundation, either version 2 of the
+ * License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public
+ * License along with this program. If not, see
+ * <http://www.gnu.org/licenses/gpl-2.0.html>.
+ * #L%
+ */
+
+@Value
+public class PeriodRepostRequest
+{
+	ClientId clientId;
+	AcctSchemaId acctSchemaId;
+	int periodId;
+
+	/** How many documents are posted at the same time; zero means the sysconfig's default */
+	int parallelism;
+
+	@Builder
+	private PeriodRepostRequest(
+			@NonNull final ClientId clientId,
+			@NonNull final AcctSchemaId acctSchemaId,
+			final int periodId,
+			final int parallelism)
+	{
+		Check.assumeGreaterThanZero(periodId, "periodId");
+		Check.assume(parallelism >= 0, "parallelism >= 0");
+
+		this.clientId = clientId;
+		this.acctSchemaId = acctSchemaId;
+		this.periodId = periodId;
+		this.parallelism = parallelism;
+	}
+}
@@ -0,0 +1,127 @@
+package de.metas.acct.posting.period;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import lombok.Getter;
+import lombok.NonNull;
+
+/*
+ * #%L
+ * de.metas.acct.base
+ * %%
+ * Copyright (C) 2019 metas GmbH
+ * %%
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as
+ * published by the Free Software Foundation, either version 2 of the
+ * License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public
+ * License along with this program. If not, see
+ * <http://www.gnu.org/licenses/gpl-2.0.html>.
+ * #L%
+ */
+
+/**
+ * Progress of one {@link PeriodRepostingService#repost(PeriodRepostRequest)} run. Updated concurrently by the posting threads.
+ */
+public final class PeriodRepostingProgress
+{
+	@Getter
+	private final PeriodRepostRequest request;
+	@Getter
+	private final int documentsTotal;
+	@Getter
+	private final int shardsTotal;
+	@Getter
+	private final Instant startTime = Instant.now();
+
+	private final AtomicInteger documentsPosted = new AtomicInteger(0);
+	private final AtomicInteger documentsFailed = new AtomicInteger(0);
+	private volatile Instant endTime = null;
+
+	PeriodRepostingProgress(
+			@NonNull final PeriodRepostRequest request,
+			final int documentsTotal,
+			final int shardsTotal)
+	{
+		this.request = request;
+		this.documentsTotal = documentsTotal;
+		this.shardsTotal = shardsTotal;
+	}
+
+	@Override
+	public String toString()
+	{
+		return getSummary();
+	}
+
+	void onDocumentPosted()
+	{
+		documentsPosted.incrementAndGet();
+	}
+
+	void onDocumentFailed()
+	{
+		documentsFailed.incrementAndGet();
+	}
+
+	void markDone()
+	{
+		endTime = Instant.now();
+	}
+
+	public boolean isDone()
+	{
+		return endTime != null;
+	}
+
+	public int getDocumentsPosted()
+	{
+		return documentsPosted.get();
+	}
+
+	public int getDocumentsFailed()
+	{
+		return documentsFailed.get();
+	}
+
+	public int getDocumentsRemaining()
+	{
+		return Math.max(documentsTotal - getDocumentsPosted() - getDocumentsFailed(), 0);
+	}
+
+	public Duration getElapsed()
+	{
+		final Instant endTime = this.endTime;
+		return Duration.between(startTime, endTime != null ? endTime : Instant.now());
+	}
+
+	public double getDocumentsPerSecond()
+	{
+		final long elapsedMillis = getElapsed().toMillis();
+		if (elapsedMillis <= 0)
+		{
+			return 0;
+		}
+		return (getDocumentsPosted() + getDocumentsFailed()) * 1000.0 / elapsedMillis;
+	}
+
+	public String getSummary()
+	{
+		return "C_Period_ID=" + request.getPeriodId()
+				+ ", C_AcctSchema_ID=" + request.getAcctSchemaId().getRepoId()
+				+ ": posted " + getDocumentsPosted() + ", failed " + getDocumentsFailed() + " of " + documentsTotal + " documents"
+				+ " in " + shardsTotal + " shards"
+				+ ", " + getElapsed().getSeconds() + "s"
+				+ ", " + Math.round(getDocumentsPerSecond()) + " documents/s"
+				+ (isDone() ? "" : " (running)");
+	}
+}
@@ -0,0 +1,406 @@
+package de.metas.acct.posting.period;
+
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Timestamp;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Properties;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicReference;
+
+import org.adempiere.ad.trx.api.ITrx;
+import org.adempiere.ad.trx.api.ITrxManager;
+import org.adempiere.exceptions.AdempiereException;
+import org.adempiere.exceptions.DBException;
+import org.adempiere.service.ISysConfigBL;
+import org.adempiere.util.concurrent.CustomizableThreadFactory;
+import org.adempiere.util.jmx.JMXRegistry;
+import org.adempiere.util.jmx.JMXRegistry.OnJMXAlreadyExistsPolicy;
+import org.adempiere.util.lang.IAutoCloseable;
+import org.adempiere.util.lang.impl.TableRecordReference;
+import org.compiere.acct.PostingStatus;
+import org.compiere.model.I_C_ProjectIssue;
+import org.compiere.model.I_M_InOut;
+import org.compiere.model.I_M_Inventory;
+import org.compiere.model.I_M_MatchInv;
+import org.compiere.model.I_M_MatchPO;
+import org.compiere.model.I_M_Movement;
+import org.compiere.model.POInfo;
+import org.compiere.util.DB;
+import org.compiere.util.Env;
+import org.eevolution.model.I_PP_Cost_Collector;
+import org.slf4j.Logger;
+import org.springframework.stereotype.Service;
+
+import com.google.common.annotations.VisibleForTesting;
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableSet;
+
+import de.metas.acct.api.IPostingRequestBuilder.PostImmediate;
+import de.metas.acct.api.IPostingService;
+import de.metas.acct.doc.AcctDocRegistry;
+import de.metas.acct.posting.period.jmx.JMXPeriodRepostingService;
+import de.metas.logging.LogManager;
+import de.metas.util.Services;
+import lombok.NonNull;
+
+/*
+ * #%L
+ * de.metas.acct.base
+ * %%
+ * Copyright (C) 2019 metas GmbH
+ * %%
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as
+ * published by the Free Software Foundation, either version 2 of the
+ * License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public
+ * License along with this program. If not, see
+ * <http://www.gnu.org/licenses/gpl-2.0.html>.
+ * #L%
+ */
+
+/**
+ * Reposts all documents of a given period, posting independent documents concurrently.
+ * <p>
+ * These are the documents which have facts in the period, plus the processed documents whose accounting date is in the period, but which are not posted (e.g. because their posting failed).
+ * <p>
+ * The documents are split into shards which can be posted independently of each other:
+ * <ul>
+ * <li>all documents which contribute to costing are in one shard and are posted in the order of their accounting date, because their posting depends on the current costs
+ * <li>the other documents are sharded by their business partner; documents without business partner are shards of their own
+ * <li>documents with more than one business partner are posted one by one after all shards are done
+ * </ul>
+ * Within each shard, the documents are posted in the order of their accounting date.
+ */
+@Service
+public class PeriodRepostingService
+{
+	private static final Logger logger = LogManager.getLogger(PeriodRepostingService.class);
+
+	private static final String SYSCONFIG_Parallelism = "de.metas.acct.posting.period.PeriodRepostingService.Parallelism";
+
+	/** Tables whose documents create or consume costs and therefore need to be posted in sequence */
+	private static final ImmutableSet<String> COSTING_TABLE_NAMES = ImmutableSet.of(
+			I_M_InOut.Table_Name,
+			I_M_MatchInv.Table_Name,
+			I_M_MatchPO.Table_Name,
+			I_M_Inventory.Table_Name,
+			I_M_Movement.Table_Name,
+			I_PP_Cost_Collector.Table_Name,
+			I_C_ProjectIssue.Table_Name);
+
+	private static final String COLUMNNAME_DateAcct = "DateAcct";
+	private static final String COLUMNNAME_Posted = "Posted";
+	private static final String COLUMNNAME_Processed = "Processed";
+	private static final String COLUMNNAME_C_BPartner_ID = "C_BPartner_ID";
+
+	private final AcctDocRegistry acctDocRegistry;
+	private final AtomicReference<PeriodRepostingProgress> lastProgress = new AtomicReference<>();
+
+	public PeriodRepostingService(@NonNull final AcctDocRegistry acctDocRegistry)
+	{
+		this.acctDocRegistry = acctDocRegistry;
+		JMXRegistry.get().registerJMX(new JMXPeriodRepostingService(this), OnJMXAlreadyExistsPolicy.Replace);
+	}
+
+	/** @return the progress of the current or last run; might be {@code null} */
+	public PeriodRepostingProgress getLastProgress()
+	{
+		return lastProgress.get();
+	}
+
+	/**
+	 * Reposts the period's documents and waits until all of them are done.
+	 * Documents which fail to post are logged and counted, but don't stop the other documents.
+	 */
+	public PeriodRepostingProgress repost(@NonNull final PeriodRepostRequest request)
+	{
+		Services.get(ITrxManager.class).assertThreadInheritedTrxNotExists();
+
+		final List<DocumentToRepost> documents = retrieveDocumentsToRepost(request);
+		final List<List<DocumentToRepost>> shards = new ArrayList<>();
+		final List<DocumentToRepost> documentsToPostAtTheEnd = new ArrayList<>();
+		shardDocuments(documents, shards, documentsToPostAtTheEnd);
+
+		final PeriodRepostingProgress progress = new PeriodRepostingProgress(request, documents.size(), shards.size());
+		lastProgress.set(progress);
+		logger.info("Reposting {} documents in {} shards (+{} documents with more than one business partner): {}",
+				documents.size(), shards.size(), documentsToPostAtTheEnd.size(), request);
+
+		try
+		{
+			postShardsInParallel(shards, getParallelism(request), progress);
+			postDocuments(documentsToPostAtTheEnd, progress);
+		}
+		finally
+		{
+			progress.markDone();
+		}
+
+		logger.info("Reposted: {}", progress);
+		return progress;
+	}
+
+	private static int getParallelism(final PeriodRepostRequest request)
+	{
+		if (request.getParallelism() > 0)
+		{
+			return request.getParallelism();
+		}
+
+		final int parallelism = Services.get(ISysConfigBL.class).getIntValue(
+				SYSCONFIG_Parallelism,
+				Runtime.getRuntime().availableProcessors(),
+				request.getClientId().getRepoId());
+		return Math.max(parallelism, 1);
+	}
+
+	private List<DocumentToRepost> retrieveDocumentsToRepost(final PeriodRepostRequest request)
+	{
+		final Map<TableRecordReference, DocumentToRepost> documents = new LinkedHashMap<>();
+		retrieveDocumentsWithFacts(request).forEach(document -> documents.put(document.getDocumentRef(), document));
+
+		// documents which failed to post or were never posted have no facts, but need to be posted too
+		for (final String docTableName : acctDocRegistry.getDocTableNames())
+		{
+			retrieveDocumentsNotPosted(request, docTableName).forEach(document -> documents.putIfAbsent(document.getDocumentRef(), document));
+		}
+
+		final List<DocumentToRepost> result = new ArrayList<>(documents.values());
+		result.sort(Comparator.comparing(DocumentToRepost::getDateAcct)); // stable, so the order of the facts query is kept for the same date
+		return result;
+	}
+
+	private static List<DocumentToRepost> retrieveDocumentsWithFacts(final PeriodRepostRequest request)
+	{
+		final String sql = "SELECT AD_Table_ID, Record_ID, MIN(DateAcct), MAX(C_BPartner_ID), COUNT(DISTINCT C_BPartner_ID)"
+				+ " FROM Fact_Acct"
+				+ " WHERE AD_Client_ID=? AND C_AcctSchema_ID=? AND C_Period_ID=?"
+				+ " GROUP BY AD_Table_ID, Record_ID"
+				+ " ORDER BY MIN(DateAcct), AD_Table_ID, Record_ID";
+		final Object[] sqlParams = new Object[] { request.getClientId().getRepoId(), request.getAcctSchemaId().getRepoId(), request.getPeriodId() };
+
+		final List<DocumentToRepost> documents = new ArrayList<>();
+		PreparedStatement pstmt = null;
+		ResultSet rs = null;
+		try
+		{
+			pstmt = DB.prepareStatement(sql, ITrx.TRXNAME_None);
+			DB.setParameters(pstmt, sqlParams);
+			rs = pstmt.executeQuery();
+			while (rs.next())
+			{
+				final TableRecordReference documentRef = TableRecordReference.of(rs.getInt(1), rs.getInt(2));
+				final Timestamp dateAcct = rs.getTimestamp(3);
+				final int bpartnerId = rs.getInt(4);
+				final int bpartnersCount = rs.getInt(5);
+				documents.add(new DocumentToRepost(request, documentRef, dateAcct, bpartnerId, bpartnersCount));
+			}
+		}
+		catch (final SQLException ex)
+		{
+			throw new DBException(ex, sql, sqlParams);
+		}
+		finally
+		{
+			DB.close(rs, pstmt);
+		}
+		return documents;
+	}
+
+	private static List<DocumentToRepost> retrieveDocumentsNotPosted(final PeriodRepostRequest request, final String docTableName)
+	{
+		final POInfo poInfo = POInfo.getPOInfo(docTableName);
+		if (poInfo == null
+				|| !poInfo.hasColumnName(COLUMNNAME_DateAcct)
+				|| !poInfo.hasColumnName(COLUMNNAME_Posted)
+				|| !poInfo.hasColumnName(COLUMNNAME_Processed))
+		{
+			logger.debug("Skip {} because it has no DateAcct, Posted or Processed column", docTableName);
+			return ImmutableList.of();
+		}
+
+		final String keyColumnName = poInfo.getKeyColumnName();
+		final String bpartnerIdSql = poInfo.hasColumnName(COLUMNNAME_C_BPartner_ID) ? "d." + COLUMNNAME_C_BPartner_ID : "NULL";
+
+		final String sql = "SELECT d." + keyColumnName + ", d.DateAcct, " + bpartnerIdSql
+				+ " FROM " + docTableName + " d"
+				+ " INNER JOIN C_Period p ON (p.C_Period_ID=?)"
+				+ " WHERE d.AD_Client_ID=? AND d.IsActive='Y' AND d.Processed='Y' AND d.Posted<>?"
+				+ " AND d.DateAcct::date BETWEEN p.StartDate::date AND p.EndDate::date"
+				+ " ORDER BY d.DateAcct, d." + keyColumnName;
+		final Object[] sqlParams = new Object[] { request.getPeriodId(), request.getClientId().getRepoId(), PostingStatus.Posted.getStatusCode() };
+
+		final List<DocumentToRepost> documents = new ArrayList<>();
+		PreparedStatement pstmt = null;
+		ResultSet rs = null;
+		try
+		{
+			pstmt = DB.prepareStatement(sql, ITrx.TRXNAME_None);
+			DB.setParameters(pstmt, sqlParams);
+			rs = pstmt.executeQuery();
+			while (rs.next())
+			{
+				final TableRecordReference documentRef = TableRecordReference.of(docTableName, rs.getInt(1));
+				final Timestamp dateAcct = rs.getTimestamp(2);
+				final int bpartnerId = rs.getInt(3);
+				documents.add(new DocumentToRepost(request, documentRef, dateAcct, bpartnerId, bpartnerId > 0 ? 1 : 0));
+			}
+		}
+		catch (final SQLException ex)
+		{
+			throw new DBException(ex, sql, sqlParams);
+		}
+		finally
+		{
+			DB.close(rs, pstmt);
+		}
+		return documents;
+	}
+
+	@VisibleForTesting
+	static void shardDocuments(
+			final List<DocumentToRepost> documents,
+			final List<List<DocumentToRepost>> shards,
+			final List<DocumentToRepost> documentsToPostAtTheEnd)
+	{
+		final List<DocumentToRepost> costingShard = new ArrayList<>();
+		final Map<Integer, List<DocumentToRepost>> bpartnerId2shard = new LinkedHashMap<>();
+		for (final DocumentToRepost document : documents)
+		{
+			if (COSTING_TABLE_NAMES.contains(document.getDocumentRef().getTableName()))
+			{
+				costingShard.add(document);
+			}
+			else if (document.getBpartnersCount() > 1)
+			{
+				documentsToPostAtTheEnd.add(document);
+			}
+			else if (document.getBpartnerId() > 0)
+			{
+				bpartnerId2shard.computeIfAbsent(document.getBpartnerId(), k -> new ArrayList<>()).add(document);
+			}
+			else
+			{
+				shards.add(ImmutableList.of(document));
+			}
+		}
+
+		if (!costingShard.isEmpty())
+		{
+			shards.add(costingShard);
+		}
+		shards.addAll(bpartnerId2shard.values());
+
+		// start with the biggest shards, so that they don't end up running alone at the end
+		shards.sort(Comparator.<List<DocumentToRepost>> comparingInt(List::size).reversed());
+	}
+
+	private static void postShardsInParallel(
+			final List<List<DocumentToRepost>> shards,
+			final int parallelism,
+			final PeriodRepostingProgress progress)
+	{
+		if (shards.isEmpty())
+		{
+			return;
+		}
+
+		final CustomizableThreadFactory threadFactory = CustomizableThreadFactory.builder()
+				.setThreadNamePrefix(PeriodRepostingService.class.getSimpleName())
+				.setDaemon(true)
+				.build();
+		final ExecutorService executor = Executors.newFixedThreadPool(Math.min(parallelism, shards.size()), threadFactory);
+		try
+		{
+			final List<Future<?>> futures = new ArrayList<>(shards.size());
+			for (final List<DocumentToRepost> shard : shards)
+			{
+				futures.add(executor.submit(() -> postDocuments(shard, progress)));
+			}
+
+			for (final Future<?> future : futures)
+			{
+				future.get();
+			}
+		}
+		catch (final InterruptedException ex)
+		{
+			Thread.currentThread().interrupt();
+			throw AdempiereException.wrapIfNeeded(ex);
+		}
+		catch (final Exception ex)
+		{
+			throw AdempiereException.wrapIfNeeded(ex);
+		}
+		finally
+		{
+			executor.shutdownNow();
+		}
+	}
+
+	private static void postDocuments(final List<DocumentToRepost> documents, final PeriodRepostingProgress progress)
+	{
+		for (final DocumentToRepost document : documents)
+		{
+			if (Thread.currentThread().isInterrupted())
+			{
+				return;
+			}
+
+			try
+			{
+				postDocument(document);
+				progress.onDocumentPosted();
+			}
+			catch (final Exception ex)
+			{
+				progress.onDocumentFailed();
+				logger.warn("Failed reposting {}", document.getDocumentRef(), ex);
+			}
+		}
+	}
+
+	private static void postDocument(final DocumentToRepost document)
+	{
+		final Properties ctx = Env.newTemporaryCtx();
+		Env.setClientId(ctx, document.getRequest().getClientId());
+
+		try (final IAutoCloseable c = Env.switchContext(ctx))
+		{
+			Services.get(IPostingService.class).newPostingRequest()
+					.setClientId(document.getRequest().getClientId())
+					.setDocumentRef(document.getDocumentRef())
+					.setForce(true)
+					.setFailOnError(true)
+					.setPostWithoutServer() // we are posting from this thread, don't contact the accounting server
+					.setPostImmediate(PostImmediate.Yes)
+					.postIt();
+		}
+	}
+
+	@lombok.Value
+	@VisibleForTesting
+	static class DocumentToRepost
+	{
+		PeriodRepostRequest request;
+		TableRecordReference documentRef;
+		Timestamp dateAcct;
+		int bpartnerId;
+		int bpartnersCount;
+	}
+}
@@ -0,0 +1,120 @@
+package de.metas.acct.posting.period.jmx;
+
+import org.adempiere.util.jmx.IJMXNameAware;
+
+import de.metas.acct.posting.period.PeriodRepostingProgress;
+import de.metas.acct.posting.period.PeriodRepostingService;
+import lombok.NonNull;
+
+/*
+ * #%L
+ * de.metas.acct.base
+ * %%
+ * Copyright (C) 2019 metas GmbH
+ * %%
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as
+ * published by the Free Software Foundation, either version 2 of the
+ * License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public
+ * License along with this program. If not, see
+ * <http://www.gnu.org/licenses/gpl-2.0.html>.
+ * #L%
+ */
+
+public class JMXPeriodRepostingService implements JMXPeriodRepostingServiceMBean, IJMXNameAware
+{
+	private final PeriodRepostingService periodRepostingService;
+
+	public JMXPeriodRepostingService(@NonNull final PeriodRepostingService periodRepostingService)
+	{
+		this.periodRepostingService = periodRepostingService;
+	}
+
+	@Override
+	public String getJMXName()
+	{
+		return "de.metas.acct:type=PeriodRepostingService";
+	}
+
+	private PeriodRepostingProgress getProgressOrNull()
+	{
+		return periodRepostingService.getLastProgress();
+	}
+
+	@Override
+	public boolean isRunning()
+	{
+		final PeriodRepostingProgress progress = getProgressOrNull();
+		return progress != null && !progress.isDone();
+	}
+
+	@Override
+	public int getPeriodId()
+	{
+		final PeriodRepostingProgress progress = getProgressOrNull();
+		return progress != null ? progress.getRequest().getPeriodId() : -1;
+	}
+
+	@Override
+	public int getAcctSchemaId()
+	{
+		final PeriodRepostingProgress progress = getProgressOrNull();
+		return progress != null ? progress.getRequest().getAcctSchemaId().getRepoId() : -1;
+	}
+
+	@Override
+	public int getDocumentsTotal()
+	{
+		final PeriodRepostingProgress progress = getProgressOrNull();
+		return progress != null ? progress.getDocumentsTotal() : 0;
+	}
+
+	@Override
+	public int getDocumentsPosted()
+	{
+		final PeriodRepostingProgress progress = getProgressOrNull();
+		return progress != null ? progress.getDocumentsPosted() : 0;
+	}
+
+	@Override
+	public int getDocumentsFailed()
+	{
+		final PeriodRepostingProgress progress = getProgressOrNull();
+		return progress != null ? progress.getDocumentsFailed() : 0;
+	}
+
+	@Override
+	public int getDocumentsRemaining()
+	{
+		final PeriodRepostingProgress progress = getProgressOrNull();
+		return progress != null ? progress.getDocumentsRemaining() : 0;
+	}
+
+	@Override
+	public double getDocumentsPerSecond()
+	{
+		final PeriodRepostingProgress progress = getProgressOrNull();
+		return progress != null ? progress.getDocumentsPerSecond() : 0;
+	}
+
+	@Override
+	public long getElapsedSeconds()
+	{
+		final PeriodRepostingProgress progress = getProgressOrNull();
+		return progress != null ? progress.getElapsed().getSeconds() : 0;
+	}
+
+	@Override
+	public String getInfo()
+	{
+		final PeriodRepostingProgress progress = getProgressOrNull();
+		return progress != null ? progress.getSummary() : "No period was reposted yet";
+	}
+}
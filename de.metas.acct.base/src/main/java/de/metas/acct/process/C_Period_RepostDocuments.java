@@ -0,0 +1,59 @@
+package de.metas.acct.process;
+
+import org.adempiere.service.ClientId;
+import org.compiere.Adempiere;
+
+import de.metas.acct.api.AcctSchemaId;
+import de.metas.acct.posting.period.PeriodRepostRequest;
+import de.metas.acct.posting.period.PeriodRepostingProgress;
+import de.metas.acct.posting.period.PeriodRepostingService;
+import de.metas.process.JavaProcess;
+import de.metas.process.Param;
+import de.metas.process.RunOutOfTrx;
+
+/*
+ * #%L
+ * de.metas.acct.base
+ * %%
+ * Copyright (C) 2019 metas GmbH
+ * %%
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as
+ * published by the Free Software Foundation, either version 2 of the
+ * License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public
+ * License along with this program. If not, see
+ * <http://www.gnu.org/licenses/gpl-2.0.html>.
+ * #L%
+ */
+
+/**
+ * Reposts all documents which have facts in the selected period, see {@link PeriodRepostingService}.
+ */
+public class C_Period_RepostDocuments extends JavaProcess
+{
+	private final PeriodRepostingService periodRepostingService = Adempiere.getBean(PeriodRepostingService.class);
+
+	@Param(parameterName = "C_AcctSchema_ID", mandatory = true)
+	private int p_C_AcctSchema_ID;
+
+	@Override
+	@RunOutOfTrx
+	protected String doIt()
+	{
+		final PeriodRepostingProgress progress = periodRepostingService.repost(PeriodRepostRequest.builder()
+				.clientId(ClientId.ofRepoId(getAD_Client_ID()))
+				.acctSchemaId(AcctSchemaId.ofRepoId(p_C_AcctSchema_ID))
+				.periodId(getRecord_ID())
+				.build());
+
+		addLog(progress.getSummary());
+		return MSG_OK;
+	}
+}
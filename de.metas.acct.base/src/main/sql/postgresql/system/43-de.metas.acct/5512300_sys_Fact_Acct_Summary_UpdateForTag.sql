@@ -0,0 +1,118 @@
+drop function if exists de_metas_acct.Fact_Acct_Summary_UpdateForTag(p_ProcessingTag varchar);
+create or replace function de_metas_acct.Fact_Acct_Summary_UpdateForTag(p_ProcessingTag varchar)
+returns text
+AS
+$BODY$
+declare
+	v_CountKeys integer;
+	v_CountInserted integer;
+	v_CountUpdated integer;
+begin
+	--
+	-- Sum up the tagged logs per summary key and DateAcct
+	drop table if exists TMP_Fact_Acct_Log_Diff;
+	create temporary table TMP_Fact_Acct_Log_Diff on commit drop as
+	select
+		log.AD_Client_ID
+		, log.AD_Org_ID
+		, log.C_ElementValue_ID as Account_ID
+		, log.C_AcctSchema_ID
+		, log.PostingType
+		, log.C_Period_ID, p.C_Year_ID
+		, log.DateAcct
+		, SUM(case when log.Action='D' then -log.AmtAcctDr else log.AmtAcctDr end) as AmtAcctDr
+		, SUM(case when log.Action='D' then -log.AmtAcctCr else log.AmtAcctCr end) as AmtAcctCr
+		, SUM(case when log.Action='D' then -log.Qty else log.Qty end) as Qty
+	from Fact_Acct_Log log
+	inner join C_Period p on (p.C_Period_ID=log.C_Period_ID)
+	where log.ProcessingTag=p_ProcessingTag
+	group by log.AD_Client_ID, log.AD_Org_ID, log.C_ElementValue_ID, log.C_AcctSchema_ID, log.PostingType, log.C_Period_ID, p.C_Year_ID, log.DateAcct
+	having SUM(case when log.Action='D' then -log.AmtAcctDr else log.AmtAcctDr end) <> 0
+		or SUM(case when log.Action='D' then -log.AmtAcctCr else log.AmtAcctCr end) <> 0
+		or SUM(case when log.Action='D' then -log.Qty else log.Qty end) <> 0
+	;
+	GET DIAGNOSTICS v_CountKeys = ROW_COUNT;
+
+	--
+	-- Create the missing summary records, starting with the balances of the previous summary record
+	insert into Fact_Acct_Summary
+	(
+		AD_Client_ID, AD_Org_ID, Account_ID, C_AcctSchema_ID, PostingType
+		, C_Period_ID, C_Year_ID, DateAcct, PA_ReportCube_ID
+		, AmtAcctDr, AmtAcctCr, Qty
+		, AmtAcctDr_YTD, AmtAcctCr_YTD
+		, Created, CreatedBy, Updated, UpdatedBy, IsActive
+	)
+	select
+		d.AD_Client_ID, d.AD_Org_ID, d.Account_ID, d.C_AcctSchema_ID, d.PostingType
+		, d.C_Period_ID, d.C_Year_ID, d.DateAcct, null as PA_ReportCube_ID
+		, COALESCE(prev.AmtAcctDr, 0), COALESCE(prev.AmtAcctCr, 0), COALESCE(prev.Qty, 0)
+		, (case when prev.C_Year_ID=d.C_Year_ID then prev.AmtAcctDr_YTD else 0 end)
+		, (case when prev.C_Year_ID=d.C_Year_ID then prev.AmtAcctCr_YTD else 0 end)
+		, now(), 0, now(), 0, 'Y'
+	from TMP_Fact_Acct_Log_Diff d
+	left outer join lateral (
+		select s.AmtAcctDr, s.AmtAcctCr, s.Qty, s.AmtAcctDr_YTD, s.AmtAcctCr_YTD, s.C_Year_ID
+		from Fact_Acct_Summary s
+		where s.AD_Client_ID=d.AD_Client_ID and s.AD_Org_ID=d.AD_Org_ID and s.Account_ID=d.Account_ID
+			and s.C_AcctSchema_ID=d.C_AcctSchema_ID and s.PostingType=d.PostingType
+			and s.PA_ReportCube_ID is null
+			and s.DateAcct < d.DateAcct
+		order by s.DateAcct desc
+		limit 1
+	) prev on true
+	where not exists (
+		select 1 from Fact_Acct_Summary s
+		where s.AD_Client_ID=d.AD_Client_ID and s.AD_Org_ID=d.AD_Org_ID and s.Account_ID=d.Account_ID
+			and s.C_AcctSchema_ID=d.C_AcctSchema_ID and s.PostingType=d.PostingType
+			and s.PA_ReportCube_ID is null
+			and s.DateAcct=d.DateAcct
+	);
+	GET DIAGNOSTICS v_CountInserted = ROW_COUNT;
+
+	--
+	-- Add the differences to all summary records at or after the earliest changed DateAcct of their key.
+	-- The year-to-date amounts only get the differences of the same year.
+	update Fact_Acct_Summary s set
+		AmtAcctDr = s.AmtAcctDr + x.AmtAcctDr
+		, AmtAcctCr = s.AmtAcctCr + x.AmtAcctCr
+		, Qty = s.Qty + x.Qty
+		, AmtAcctDr_YTD = s.AmtAcctDr_YTD + x.AmtAcctDr_YTD
+		, AmtAcctCr_YTD = s.AmtAcctCr_YTD + x.AmtAcctCr_YTD
+		, Updated = now()
+	from (
+		select
+			s2.AD_Client_ID, s2.AD_Org_ID, s2.Account_ID, s2.C_AcctSchema_ID, s2.PostingType, s2.C_Period_ID, s2.DateAcct
+			, SUM(d.AmtAcctDr) as AmtAcctDr
+			, SUM(d.AmtAcctCr) as AmtAcctCr
+			, SUM(d.Qty) as Qty
+			, SUM(case when d.C_Year_ID=s2.C_Year_ID then d.AmtAcctDr else 0 end) as AmtAcctDr_YTD
+			, SUM(case when d.C_Year_ID=s2.C_Year_ID then d.AmtAcctCr else 0 end) as AmtAcctCr_YTD
+		from TMP_Fact_Acct_Log_Diff d
+		inner join Fact_Acct_Summary s2 on (
+			s2.AD_Client_ID=d.AD_Client_ID and s2.AD_Org_ID=d.AD_Org_ID and s2.Account_ID=d.Account_ID
+			and s2.C_AcctSchema_ID=d.C_AcctSchema_ID and s2.PostingType=d.PostingType
+			and s2.PA_ReportCube_ID is null
+			and s2.DateAcct >= d.DateAcct
+		)
+		group by s2.AD_Client_ID, s2.AD_Org_ID, s2.Account_ID, s2.C_AcctSchema_ID, s2.PostingType, s2.C_Period_ID, s2.DateAcct
+	) x
+	where s.AD_Client_ID=x.AD_Client_ID and s.AD_Org_ID=x.AD_Org_ID and s.Account_ID=x.Account_ID
+		and s.C_AcctSchema_ID=x.C_AcctSchema_ID and s.PostingType=x.PostingType
+		and s.C_Period_ID=x.C_Period_ID and s.DateAcct=x.DateAcct
+		and s.PA_ReportCube_ID is null
+	;
+	GET DIAGNOSTICS v_CountUpdated = ROW_COUNT;
+
+	drop table if exists TMP_Fact_Acct_Log_Diff;
+
+	return ''||v_CountKeys||' changed keys, '||v_CountInserted||' rows inserted, '||v_CountUpdated||' rows updated in Fact_Acct_Summary for tag='||p_ProcessingTag;
+end;
+$BODY$
+LANGUAGE plpgsql;
+
+COMMENT ON FUNCTION de_metas_acct.Fact_Acct_Summary_UpdateForTag(character varying) IS 'Checks Fact_Acct_Log for given tag and updates the Fact_Acct_Summary records (without PA_ReportCube_ID) in one go.';
+
+
+-- speeds up tagging the unprocessed logs and looking up the oldest of them
+CREATE INDEX IF NOT EXISTS Fact_Acct_Log_Unprocessed ON Fact_Acct_Log (Created) WHERE ProcessingTag IS NULL;
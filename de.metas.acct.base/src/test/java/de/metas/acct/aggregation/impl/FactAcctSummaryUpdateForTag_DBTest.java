@@ -0,0 +1,201 @@
+package de.metas.acct.aggregation.impl;
+
+import java.io.File;
+import java.math.BigDecimal;
+import java.sql.Timestamp;
+import java.util.List;
+import java.util.Properties;
+import java.util.UUID;
+import java.util.function.Consumer;
+
+import org.adempiere.ad.dao.IQueryBL;
+import org.adempiere.ad.trx.api.ITrx;
+import org.adempiere.ad.trx.api.ITrxManager;
+import org.adempiere.model.InterfaceWrapperHelper;
+import org.compiere.Adempiere.RunMode;
+import org.compiere.model.I_C_Period;
+import org.compiere.model.I_Fact_Acct;
+import org.compiere.util.Env;
+import org.compiere.util.TimeUtil;
+import org.junit.Assert;
+import org.junit.Ignore;
+import org.junit.Test;
+
+import com.google.common.collect.ImmutableList;
+
+import de.metas.acct.aggregation.IFactAcctLogBL;
+import de.metas.acct.aggregation.IFactAcctLogDAO;
+import de.metas.acct.aggregation.IFactAcctLogIterable;
+import de.metas.acct.model.I_Fact_Acct_Log;
+import de.metas.acct.model.I_Fact_Acct_Summary;
+import de.metas.acct.model.X_Fact_Acct_Log;
+import de.metas.util.Check;
+import de.metas.util.Services;
+
+/*
+ * #%L
+ * de.metas.acct.base
+ * %%
+ * Copyright (C) 2019 metas GmbH
+ * %%
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as
+ * published by the Free Software Foundation, either version 2 of the
+ * License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public
+ * License along with this program. If not, see
+ * <http://www.gnu.org/licenses/gpl-2.0.html>.
+ * #L%
+ */
+
+/**
+ * Database coupled test which makes sure that the <code>de_metas_acct.Fact_Acct_Summary_UpdateForTag</code> function
+ * leaves the same {@link I_Fact_Acct_Summary} records as the java aggregator of {@link FactAcctLogBL}.
+ * <p>
+ * Both variants process the same logs, based on an existing {@link I_Fact_Acct} record, in a transaction which is rolled back afterwards.
+ */
+@Ignore
+// requires database connection
+public class FactAcctSummaryUpdateForTag_DBTest
+{
+	public static void main(final String[] args)
+	{
+		final FactAcctSummaryUpdateForTag_DBTest test = new FactAcctSummaryUpdateForTag_DBTest();
+
+		test.setupAdempiere();
+
+		test.test_SQLFunction_vs_JavaAggregator();
+	}
+
+	private void setupAdempiere()
+	{
+		//
+		// Use hardcoded default PropertyFile if none found
+		if (Check.isEmpty(System.getProperty("PropertyFile"), true))
+		{
+			final String propertyFile = new File(".").getAbsolutePath() // e.g. C:\workspaces\\de.metas.acct.base\
+					+ File.separator + ".." // e.g. C:\workspaces\
+					+ File.separator + "de.metas.endcustomer."
+					+ File.separator + "Adempiere.properties_" + System.getProperty("user.name");
+			System.out.println("Set default PropertyFile=" + propertyFile);
+			System.setProperty("PropertyFile", propertyFile);
+		}
+
+		Env.getSingleAdempiereInstance(null).startup(RunMode.SWING_CLIENT);
+	}
+
+	@Test
+	public void test_SQLFunction_vs_JavaAggregator()
+	{
+		final Properties ctx = Env.getCtx();
+		final FactAcctLogBL factAcctLogBL = (FactAcctLogBL)Services.get(IFactAcctLogBL.class);
+
+		// take the summary key from an existing fact, so that the logs are aggregated onto existing summary records
+		final I_Fact_Acct template = Services.get(IQueryBL.class)
+				.createQueryBuilder(I_Fact_Acct.class, ctx, ITrx.TRXNAME_None)
+				.addOnlyActiveRecordsFilter()
+				.orderByDescending(I_Fact_Acct.COLUMNNAME_Fact_Acct_ID)
+				.create()
+				.first(I_Fact_Acct.class);
+		Check.assumeNotNull(template, "There is at least one Fact_Acct");
+
+		final List<String> summariesFromJava = processInRolledBackTrx(ctx, template, factAcctLogBL::processOneByOne);
+		final List<String> summariesFromSQL = processInRolledBackTrx(ctx, template, factAcctLogBL::processSetBased);
+
+		Assert.assertFalse("No summaries from the java aggregator for " + template, summariesFromJava.isEmpty());
+		Assert.assertEquals("Summaries from the SQL function differ from the java aggregator's summaries", summariesFromJava, summariesFromSQL);
+	}
+
+	/**
+	 * Creates logs for the template's key, lets the given processor process them and returns the key's summary records.
+	 */
+	private List<String> processInRolledBackTrx(
+			final Properties ctx,
+			final I_Fact_Acct template,
+			final Consumer<IFactAcctLogIterable> processor)
+	{
+		final ITrxManager trxManager = Services.get(ITrxManager.class);
+		final FactAcctLogDAO factAcctLogDAO = (FactAcctLogDAO)Services.get(IFactAcctLogDAO.class);
+
+		final String trxName = trxManager.createTrxName(getClass().getSimpleName(), true);
+		final ITrx trx = trxManager.get(trxName, false);
+		final String previousTrxName = trxManager.setThreadInheritedTrxName(trxName);
+		try
+		{
+			final I_C_Period period = template.getC_Period();
+			final String processingTag = UUID.randomUUID().toString();
+
+			// before, at and after the template's DateAcct; the deletes partially revert the inserts
+			final I_Fact_Acct_Log log = createLog(template, processingTag, period.getStartDate(), X_Fact_Acct_Log.ACTION_Insert, 100, 0, 1);
+			createLog(template, processingTag, template.getDateAcct(), X_Fact_Acct_Log.ACTION_Insert, 0, 50, 2);
+			createLog(template, processingTag, template.getDateAcct(), X_Fact_Acct_Log.ACTION_Delete, 0, 20, 1);
+			createLog(template, processingTag, period.getEndDate(), X_Fact_Acct_Log.ACTION_Insert, 7, 3, 0);
+			createLog(template, processingTag, period.getEndDate(), X_Fact_Acct_Log.ACTION_Delete, 7, 3, 0); // nets to zero
+
+			processor.accept(factAcctLogDAO.retrieveTagged(ctx, processingTag));
+			Assert.assertFalse("All logs shall be processed", factAcctLogDAO.hasLogs(ctx, processingTag));
+
+			return factAcctLogDAO.createFactAcctSummaryQueryForKeyNoDateAcct(ctx, FactAcctSummaryKey.of(log))
+					.orderBy()
+					.addColumn(I_Fact_Acct_Summary.COLUMN_DateAcct)
+					.endOrderBy()
+					.create()
+					.stream(I_Fact_Acct_Summary.class)
+					.map(FactAcctSummaryUpdateForTag_DBTest::toString)
+					.collect(ImmutableList.toImmutableList());
+		}
+		finally
+		{
+			trxManager.setThreadInheritedTrxName(previousTrxName);
+			trx.rollback();
+			trx.close();
+		}
+	}
+
+	private static I_Fact_Acct_Log createLog(
+			final I_Fact_Acct template,
+			final String processingTag,
+			final Timestamp dateAcct,
+			final String action,
+			final int amtAcctDr,
+			final int amtAcctCr,
+			final int qty)
+	{
+		final I_Fact_Acct_Log log = InterfaceWrapperHelper.newInstance(I_Fact_Acct_Log.class, template);
+		log.setAD_Org_ID(template.getAD_Org_ID());
+		log.setC_AcctSchema_ID(template.getC_AcctSchema_ID());
+		log.setC_ElementValue_ID(template.getAccount_ID());
+		log.setPostingType(template.getPostingType());
+		log.setC_Period_ID(template.getC_Period_ID());
+		log.setDateAcct(TimeUtil.trunc(dateAcct, TimeUtil.TRUNC_DAY));
+		log.setAction(action);
+		log.setAmtAcctDr(BigDecimal.valueOf(amtAcctDr));
+		log.setAmtAcctCr(BigDecimal.valueOf(amtAcctCr));
+		log.setQty(BigDecimal.valueOf(qty));
+		log.setProcessingTag(processingTag);
+		InterfaceWrapperHelper.save(log, ITrx.TRXNAME_ThreadInherited);
+		return log;
+	}
+
+	private static String toString(final I_Fact_Acct_Summary summary)
+	{
+		return summary.getDateAcct()
+				+ " C_Period_ID=" + summary.getC_Period_ID()
+				+ " Dr=" + toString(summary.getAmtAcctDr())
+				+ " Cr=" + toString(summary.getAmtAcctCr())
+				+ " Qty=" + toString(summary.getQty())
+				+ " Dr_YTD=" + toString(summary.getAmtAcctDr_YTD())
+				+ " Cr_YTD=" + toString(summary.getAmtAcctCr_YTD());
+	}
+
+	private static String toString(final BigDecimal amount)
+	{
+		return amount == null ? "null" : amount.stripTrailingZeros().toPlainString();
+	}
+}
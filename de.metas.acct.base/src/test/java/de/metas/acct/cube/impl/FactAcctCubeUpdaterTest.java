@@ -0,0 +1,82 @@
+package de.metas.acct.cube.impl;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.adempiere.model.InterfaceWrapperHelper;
+import org.adempiere.test.AdempiereTestHelper;
+import org.compiere.model.I_PA_ReportCube;
+import org.junit.Before;
+import org.junit.Test;
+
+import de.metas.acct.cube.impl.FactAcctCubeUpdater.CubeSlice;
+
+/*
+ * #%L
+ * de.metas.acct.base
+ * %%
+ * Copyright (C) 2019 metas GmbH
+ * %%
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as
+ * published by the Free Software Foundation, either version 2 of the
+ * License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public
+ * License along with this program. If not, see
+ * <http://www.gnu.org/licenses/gpl-2.0.html>.
+ * #L%
+ */
+
+public class FactAcctCubeUpdaterTest
+{
+	private static final int C_Calendar_ID = 10;
+	private static final int C_Period_ID = 20;
+
+	private FactAcctCubeUpdater updater;
+	private I_PA_ReportCube reportCube;
+
+	@Before
+	public void init()
+	{
+		AdempiereTestHelper.get().init();
+
+		reportCube = InterfaceWrapperHelper.newInstance(I_PA_ReportCube.class);
+		reportCube.setName("test");
+		reportCube.setC_Calendar_ID(C_Calendar_ID);
+		reportCube.setIsProductDim(true);
+		InterfaceWrapperHelper.save(reportCube);
+
+		updater = new FactAcctCubeUpdater();
+		updater.setPA_ReportCube(reportCube);
+	}
+
+	/**
+	 * A fact was moved from account A to account B, so the changed facts of the period only contain account B.
+	 * Still, the summary rows of account A must be deleted and recomputed, i.e. the slice must cover all accounts of the period.
+	 */
+	@Test
+	public void factMovedFromAccountAToB_wholePeriodIsRecomputed()
+	{
+		final CubeSlice slice = new CubeSlice(C_Period_ID);
+
+		final List<Object> deleteParams = new ArrayList<>();
+		final String deleteSql = updater.createDeleteSql(slice, deleteParams);
+		assertThat(deleteSql).doesNotContainIgnoringCase("Account_ID");
+		assertThat(deleteParams).containsExactly(reportCube.getPA_ReportCube_ID(), C_Period_ID);
+
+		final List<Object> insertParams = new ArrayList<>();
+		final String insertSql = updater.createInsertSql(slice, insertParams);
+		assertThat(insertSql).doesNotContainIgnoringCase("Account_ID IN");
+		assertThat(insertSql).contains("GROUP BY f.AD_CLIENT_ID, f.AD_ORG_ID, f.C_ACCTSCHEMA_ID, f.ACCOUNT_ID");
+		assertThat(insertSql).contains(", f.M_Product_ID");
+		assertThat(insertParams).containsExactly(reportCube.getPA_ReportCube_ID(), C_Calendar_ID, C_Period_ID);
+	}
+}
@@ -0,0 +1,138 @@
+package de.metas.acct.posting.period;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.sql.Timestamp;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.adempiere.service.ClientId;
+import org.adempiere.test.AdempiereTestHelper;
+import org.adempiere.util.lang.impl.TableRecordReference;
+import org.compiere.model.I_C_Invoice;
+import org.compiere.model.I_C_Payment;
+import org.compiere.model.I_M_InOut;
+import org.compiere.model.I_M_MatchInv;
+import org.compiere.model.I_M_Movement;
+import org.compiere.util.TimeUtil;
+import org.junit.Before;
+import org.junit.Test;
+
+import com.google.common.collect.ImmutableList;
+
+import de.metas.acct.api.AcctSchemaId;
+import de.metas.acct.posting.period.PeriodRepostingService.DocumentToRepost;
+
+/*
+ * #%L
+ * de.metas.acct.base
+ * %%
+ * Copyright (C) 2019 metas GmbH
+ * %%
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as
+ * published by the Free Software Foundation, either version 2 of the
+ * License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public
+ * License along with this program. If not, see
+ * <http://www.gnu.org/licenses/gpl-2.0.html>.
+ * #L%
+ */
+
+public class PeriodRepostingServiceTest
+{
+	private PeriodRepostRequest request;
+	private int nextRecordId = 1;
+
+	private final List<List<DocumentToRepost>> shards = new ArrayList<>();
+	private final List<DocumentToRepost> documentsToPostAtTheEnd = new ArrayList<>();
+
+	@Before
+	public void init()
+	{
+		AdempiereTestHelper.get().init();
+
+		request = PeriodRepostRequest.builder()
+				.clientId(ClientId.ofRepoId(1))
+				.acctSchemaId(AcctSchemaId.ofRepoId(1))
+				.periodId(1)
+				.build();
+	}
+
+	private DocumentToRepost document(final String tableName, final int bpartnerId)
+	{
+		return document(tableName, bpartnerId, bpartnerId > 0 ? 1 : 0);
+	}
+
+	private DocumentToRepost document(final String tableName, final int bpartnerId, final int bpartnersCount)
+	{
+		final Timestamp dateAcct = TimeUtil.asTimestamp(LocalDate.of(2019, 1, nextRecordId));
+		return new DocumentToRepost(request, TableRecordReference.of(tableName, nextRecordId++), dateAcct, bpartnerId, bpartnersCount);
+	}
+
+	@Test
+	public void documentsOfTheSameBPartnerAreInOneShard()
+	{
+		final DocumentToRepost invoice1_bp1 = document(I_C_Invoice.Table_Name, 1);
+		final DocumentToRepost invoice2_bp2 = document(I_C_Invoice.Table_Name, 2);
+		final DocumentToRepost payment1_bp1 = document(I_C_Payment.Table_Name, 1);
+		final DocumentToRepost invoice3_bp1 = document(I_C_Invoice.Table_Name, 1);
+		final DocumentToRepost payment2_noBP = document(I_C_Payment.Table_Name, 0);
+
+		PeriodRepostingService.shardDocuments(
+				ImmutableList.of(invoice1_bp1, invoice2_bp2, payment1_bp1, invoice3_bp1, payment2_noBP),
+				shards,
+				documentsToPostAtTheEnd);
+
+		// biggest shard first; within a shard, the documents keep their order
+		assertThat(shards).hasSize(3);
+		assertThat(shards.get(0)).containsExactly(invoice1_bp1, payment1_bp1, invoice3_bp1);
+		assertThat(shards.subList(1, 3)).containsExactlyInAnyOrder(
+				ImmutableList.of(invoice2_bp2),
+				ImmutableList.of(payment2_noBP));
+		assertThat(documentsToPostAtTheEnd).isEmpty();
+	}
+
+	@Test
+	public void costingDocumentsAreInOneShardRegardlessOfTheirBPartner()
+	{
+		final DocumentToRepost inout_bp1 = document(I_M_InOut.Table_Name, 1);
+		final DocumentToRepost invoice_bp1 = document(I_C_Invoice.Table_Name, 1);
+		final DocumentToRepost matchInv_bp2 = document(I_M_MatchInv.Table_Name, 2);
+		final DocumentToRepost movement_noBP = document(I_M_Movement.Table_Name, 0);
+		final DocumentToRepost inout_multipleBPs = document(I_M_InOut.Table_Name, 3, 2);
+
+		PeriodRepostingService.shardDocuments(
+				ImmutableList.of(inout_bp1, invoice_bp1, matchInv_bp2, movement_noBP, inout_multipleBPs),
+				shards,
+				documentsToPostAtTheEnd);
+
+		assertThat(shards).containsExactly(
+				ImmutableList.of(inout_bp1, matchInv_bp2, movement_noBP, inout_multipleBPs),
+				ImmutableList.of(invoice_bp1));
+		assertThat(documentsToPostAtTheEnd).isEmpty();
+	}
+
+	@Test
+	public void documentsWithMoreThanOneBPartnerArePostedAtTheEnd()
+	{
+		final DocumentToRepost invoice_bp1 = document(I_C_Invoice.Table_Name, 1);
+		final DocumentToRepost payment_multipleBPs = document(I_C_Payment.Table_Name, 2, 3);
+		final DocumentToRepost invoice_multipleBPs = document(I_C_Invoice.Table_Name, 1, 2);
+
+		PeriodRepostingService.shardDocuments(
+				ImmutableList.of(invoice_bp1, payment_multipleBPs, invoice_multipleBPs),
+				shards,
+				documentsToPostAtTheEnd);
+
+		assertThat(shards).containsExactly(ImmutableList.of(invoice_bp1));
+		assertThat(documentsToPostAtTheEnd).containsExactly(payment_multipleBPs, invoice_multipleBPs);
+	}
+}
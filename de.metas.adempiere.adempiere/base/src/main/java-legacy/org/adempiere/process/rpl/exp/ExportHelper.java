@@ -29,17 +29,25 @@
  *********************************************************************/
 package org.adempiere.process.rpl.exp;
 
+import java.io.BufferedWriter;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
 import java.sql.Timestamp;
 import java.text.SimpleDateFormat;
 import java.util.Collection;
 import java.util.HashMap;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Properties;
+import java.util.TreeMap;
 
 import javax.xml.parsers.DocumentBuilder;
 import javax.xml.parsers.DocumentBuilderFactory;
 import javax.xml.parsers.ParserConfigurationException;
+import javax.xml.stream.XMLStreamException;
 
 import org.adempiere.ad.table.api.IADTableDAO;
 import org.adempiere.exceptions.AdempiereException;
@@ -47,7 +55,10 @@ import org.adempiere.model.InterfaceWrapperHelper;
 import org.adempiere.process.rpl.ExportProcessor2Wrapper;
 import org.adempiere.process.rpl.IExportProcessor;
 import org.adempiere.process.rpl.IExportProcessor2;
+import org.adempiere.process.rpl.IStreamingExportProcessor;
 import org.adempiere.process.rpl.RPL_Constants;
+import org.adempiere.process.rpl.ReplicationXMLStreamWriter;
+import org.adempiere.process.rpl.XMLHelper;
 import org.adempiere.process.rpl.api.IReplicationAccessContext;
 import org.adempiere.process.rpl.api.impl.ReplicationAccessContext;
 import org.adempiere.server.rpl.api.impl.ImportHelper;
@@ -55,6 +66,7 @@ import org.adempiere.server.rpl.exceptions.ExportProcessorException;
 import org.adempiere.server.rpl.exceptions.ReplicationException;
 import org.adempiere.service.IClientDAO;
 import org.compiere.model.IQuery;
+import org.compiere.model.I_AD_Column;
 import org.compiere.model.I_AD_Client;
 import org.compiere.model.I_AD_ReplicationStrategy;
 import org.compiere.model.I_AD_ReplicationTable;
@@ -79,11 +91,17 @@ import org.w3c.dom.Document;
 import org.w3c.dom.Element;
 import org.w3c.dom.Text;
 
+import com.google.common.annotations.VisibleForTesting;
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableMap;
+
 import de.metas.adempiere.service.IAppDictionaryBL;
+import de.metas.cache.CCache;
 import de.metas.i18n.IMsgBL;
 import de.metas.logging.LogManager;
 import de.metas.util.Check;
 import de.metas.util.Services;
+import lombok.NonNull;
 
 /**
  * @author Trifon N. Trifonov
@@ -111,6 +129,12 @@ public class ExportHelper
 	/** Logger */
 	private static Logger log = LogManager.getLogger(ExportHelper.class);
 
+	/**
+	 * Columns of the format lines; {@link MColumn#get(Properties, int)}'s own cache is too small to hold the columns of bigger formats, so that every exported record would load them again.
+	 */
+	private static final CCache<Integer, MColumn> columnsById = new CCache<>(I_AD_Column.Table_Name + "#by#" + I_EXP_FormatLine.COLUMNNAME_AD_Column_ID, 500);
+	private static final CCache<Integer, ReferencedTable> referencedTablesByFormatLineId = new CCache<>(I_EXP_FormatLine.Table_Name + "#ReferencedTable", 100);
+
 	/** XML Document */
 	private Document outDocument = null;
 
@@ -147,14 +171,27 @@ public class ExportHelper
 		return exportRecord(po, exportFormat, ReplicationMode, ReplicationType, ReplicationEvent);
 	}
 
+	/**
+	 * Exports the given PO and passes the result to the replication strategy's export processor.
+	 * <p>
+	 * If the processor is an {@link IStreamingExportProcessor}, the XML is streamed to it and no DOM tree is built.
+	 *
+	 * @return the DOM document's string representation or <code>null</code> if the XML was streamed
+	 */
 	public String exportRecord(final PO po, final MEXPFormat exportFormat, final Integer ReplicationMode, final String ReplicationType, final Integer ReplicationEvent) throws ReplicationException
 	{
-		outDocument = createExportDOM(po, exportFormat, ReplicationMode, ReplicationType, ReplicationEvent);
-
 		final MEXPProcessor mExportProcessor = MEXPProcessor.get(po.getCtx(), m_rplStrategy.getEXP_Processor_ID(), po.get_TrxName());
 		log.debug("ExportProcessor = " + mExportProcessor);
 
 		final IExportProcessor exportProcessor = mExportProcessor.getIExportProcessor();
+		if (exportProcessor instanceof IStreamingExportProcessor)
+		{
+			exportRecord(po, exportFormat, ReplicationMode, ReplicationType, ReplicationEvent, mExportProcessor, (IStreamingExportProcessor)exportProcessor);
+			return null;
+		}
+
+		outDocument = createExportDOM(po, exportFormat, ReplicationMode, ReplicationType, ReplicationEvent);
+
 		final IExportProcessor2 exportProcessor2;
 		if (exportProcessor instanceof IExportProcessor2)
 		{
@@ -172,6 +209,39 @@ public class ExportHelper
 				outDocument.toString();
 	}
 
+	private void exportRecord(
+			final PO po,
+			final MEXPFormat exportFormat,
+			final Integer ReplicationMode,
+			final String ReplicationType,
+			final Integer ReplicationEvent,
+			final MEXPProcessor mExportProcessor,
+			final IStreamingExportProcessor exportProcessor)
+	{
+		final MEXPFormat exportFormatToUse = exportFormat != null ? exportFormat : getEXP_Format(po);
+		final String replicationTypeToUse = checkExportAndGetReplicationType(po, exportFormatToUse, ReplicationType);
+		if (replicationTypeToUse == null)
+		{
+			return;
+		}
+
+		try
+		{
+			exportProcessor.process(
+					mExportProcessor,
+					writer -> writeExport(new ReplicationXMLStreamWriter(writer), po, exportFormatToUse, ReplicationMode, replicationTypeToUse, ReplicationEvent),
+					po);
+		}
+		catch (final ExportProcessorException e)
+		{
+			throw e;
+		}
+		catch (final Exception e)
+		{
+			throw new ExportProcessorException(null, e);
+		}
+	}
+
 	/**
 	 * Method creates the XML DOM tree, but doesn't call any export processor.
 	 * <p>
@@ -202,6 +272,31 @@ public class ExportHelper
 		final I_AD_Client client = Services.get(IClientDAO.class).retriveClient(po.getCtx(), m_AD_Client_ID);
 		log.info("Client = " + client.toString());
 
+		ReplicationType = checkExportAndGetReplicationType(po, exportFormat, ReplicationType);
+		if (ReplicationType == null)
+		{
+			return null;
+		}
+
+		final Document outDocument = createNewDocument();
+
+		final HashMap<String, Integer> variableMap = new HashMap<>();
+		final Element rootElement = generateRootElement(exportFormat, outDocument, ReplicationMode, ReplicationType, ReplicationEvent, client);
+
+		final IReplicationAccessContext racCtx = getDefaultIReplicationAccessContext();
+		generateExportFormat(outDocument, rootElement, exportFormat, po, variableMap, racCtx);
+
+		return outDocument;
+	}
+
+	/**
+	 * Checks if the given PO can and shall be exported with the given format.
+	 *
+	 * @param replicationType if empty, the replication type configured for the PO's table is returned
+	 * @return the replication type to use or <code>null</code> if the PO does not match the export format's where clause
+	 */
+	private String checkExportAndGetReplicationType(final PO po, final MEXPFormat exportFormat, final String replicationType)
+	{
 		log.info("po.getAD_Org_ID() = " + po.getAD_Org_ID());
 
 		log.info("po.get_TrxName() = " + po.get_TrxName());
@@ -232,6 +327,7 @@ public class ExportHelper
 		}
 
 		// metas: tsa: begin: if replicationType is not specified, get it now
+		String ReplicationType = replicationType;
 		if (Check.isEmpty(ReplicationType))
 		{
 			final I_AD_ReplicationTable replicationTable = MReplicationStrategy.getReplicationTable(po.getCtx(), m_rplStrategy.getAD_ReplicationStrategy_ID(), po.get_Table_ID());
@@ -247,15 +343,7 @@ public class ExportHelper
 		}
 		// metas: tsa: end
 
-		final Document outDocument = createNewDocument();
-
-		final HashMap<String, Integer> variableMap = new HashMap<>();
-		final Element rootElement = generateRootElement(exportFormat, outDocument, ReplicationMode, ReplicationType, ReplicationEvent, client);
-
-		final IReplicationAccessContext racCtx = getDefaultIReplicationAccessContext();
-		generateExportFormat(outDocument, rootElement, exportFormat, po, variableMap, racCtx);
-
-		return outDocument;
+		return ReplicationType;
 	}
 
 	/**
@@ -329,11 +417,27 @@ public class ExportHelper
 		{
 			rootElement.appendChild(outDocument.createComment(exportFormat.getDescription()));
 		}
-		rootElement.setAttribute(RPL_Constants.XML_ATTR_AD_Client_Value, client.getValue());
-		rootElement.setAttribute(RPL_Constants.XML_ATTR_Version, exportFormat.getVersion());
-		rootElement.setAttribute(RPL_Constants.XML_ATTR_REPLICATION_MODE, ReplicationMode.toString());
-		rootElement.setAttribute(RPL_Constants.XML_ATTR_REPLICATION_TYPE, ReplicationType);
-		rootElement.setAttribute(RPL_Constants.XML_ATTR_REPLICATION_EVENT, ReplicationEvent.toString());
+		for (final Map.Entry<String, String> attribute : createRootAttributes(exportFormat, ReplicationMode, ReplicationType, ReplicationEvent, client).entrySet())
+		{
+			rootElement.setAttribute(attribute.getKey(), attribute.getValue());
+		}
+		outDocument.appendChild(rootElement);
+
+		return rootElement;
+	}
+
+	/**
+	 * @return the attributes of a message's root element; <code>null</code> values are exported as empty strings
+	 */
+	private Map<String, String> createRootAttributes(final org.compiere.model.I_EXP_Format exportFormat, final Integer ReplicationMode, final String ReplicationType,
+			final Integer ReplicationEvent, final I_AD_Client client)
+	{
+		final Map<String, String> attributes = new LinkedHashMap<>();
+		attributes.put(RPL_Constants.XML_ATTR_AD_Client_Value, Util.coalesce(client.getValue(), ""));
+		attributes.put(RPL_Constants.XML_ATTR_Version, Util.coalesce(exportFormat.getVersion(), ""));
+		attributes.put(RPL_Constants.XML_ATTR_REPLICATION_MODE, ReplicationMode.toString());
+		attributes.put(RPL_Constants.XML_ATTR_REPLICATION_TYPE, Util.coalesce(ReplicationType, ""));
+		attributes.put(RPL_Constants.XML_ATTR_REPLICATION_EVENT, ReplicationEvent.toString());
 		if (exportFormat.getAD_Sequence_ID() > 0)
 		{
 			final String sequenceName = exportFormat.getAD_Sequence().getName();
@@ -342,12 +446,10 @@ public class ExportHelper
 			{
 				throw new AdempiereException("Could not retrieve nextID for sequence " + sequenceName);
 			}
-			rootElement.setAttribute(RPL_Constants.XML_ATTR_SEQUENCE_NO, Integer.toString(nextID));
+			attributes.put(RPL_Constants.XML_ATTR_SEQUENCE_NO, Integer.toString(nextID));
 		}
-		rootElement.setAttribute(RPL_Constants.XML_ATTR_REPLICATION_TrxName, null);
-		outDocument.appendChild(rootElement);
-
-		return rootElement;
+		attributes.put(RPL_Constants.XML_ATTR_REPLICATION_TrxName, "");
+		return attributes;
 	}
 
 	/*
@@ -389,21 +491,8 @@ public class ExportHelper
 		if (X_EXP_FormatLine.TYPE_XMLElement.equals(formatLineType))
 		{
 			// process single XML Attribute
-			final MColumn column = retrieveColumn(formatLine);
-			final Object value = masterPO.get_Value(column.getColumnName());
 			final Map<String, String> valueAttributes = new HashMap<>();
-
-			final String valueString;
-			try
-			{
-				valueString = encodeValue(value, valueAttributes, formatLine, column);
-			}
-			catch (final Exception e)
-			{
-				throw new ReplicationException("Encoding failed at line " + formatLine.getName(), e)
-						.setParameter(I_EXP_FormatLine.COLUMNNAME_EXP_FormatLine_ID, formatLine)
-						.setParameter(I_EXP_FormatLine.COLUMNNAME_AD_Column_ID, column);
-			}
+			final String valueString = encodeElementValue(formatLine, masterPO, valueAttributes);
 
 			final Element newElement = outDocument.createElement(formatLine.getValue());
 
@@ -429,28 +518,7 @@ public class ExportHelper
 		else if (X_EXP_FormatLine.TYPE_XMLAttribute.equals(formatLineType))
 		{
 			// process single XML Attribute
-			final MColumn column = retrieveColumn(formatLine);
-			final Object value = masterPO.get_Value(column.getColumnName());
-			final String valueString;
-			try
-			{
-				valueString = encodeValue(value, null, formatLine, column); // attributes=null
-			}
-			catch (final Exception e)
-			{
-				throw new ReplicationException("Encoding failed at line " + formatLine.getName(), e)
-						.setParameter(I_EXP_FormatLine.COLUMNNAME_EXP_FormatLine_ID, formatLine)
-						.setParameter(I_EXP_FormatLine.COLUMNNAME_AD_Column_ID, column);
-			}
-			if (valueString == null && formatLine.isMandatory())
-			{
-				throw new ExportProcessorException(MSG_EXPFieldMandatory)
-						.setParameter(org.compiere.model.I_EXP_Format.COLUMNNAME_EXP_Format_ID, exportFormat)
-						.setParameter(I_EXP_FormatLine.COLUMNNAME_EXP_FormatLine_ID, formatLine)
-						.setParameter(I_EXP_FormatLine.COLUMNNAME_AD_Column_ID, formatLine.getAD_Column_ID())
-						.setParameter("masterPO", masterPO);
-			}
-
+			final String valueString = encodeAttributeValue(exportFormat, formatLine, masterPO);
 			if (valueString != null)
 			{
 				rootElement.setAttribute(formatLine.getValue(), valueString);
@@ -459,38 +527,8 @@ public class ExportHelper
 		else if (X_EXP_FormatLine.TYPE_EmbeddedEXPFormat.equals(formatLineType))
 		{
 			// process Embedded Export Format
-
-			final int embeddedFormat_ID = formatLine.getEXP_EmbeddedFormat_ID();
-			// get from cache
-			final MEXPFormat embeddedFormat = MEXPFormat.get(masterPO.getCtx(), embeddedFormat_ID, masterPO.get_TrxName());
-
-			final MTable tableEmbedded = MTable.get(masterPO.getCtx(), embeddedFormat.getAD_Table_ID());
-			log.info("Table Embedded = " + tableEmbedded);
-
-			final String linkColumnName = getLinkColumnName(masterPO, tableEmbedded); // metas
-			final Object linkId = masterPO.get_Value(linkColumnName); // metas
-			final StringBuffer whereClause = new StringBuffer(linkColumnName + "=?"); // metas: use linkColumnName
-
-			if (embeddedFormat.getWhereClause() != null && !"".equals(embeddedFormat.getWhereClause()))
-			{
-				whereClause.append(" AND ").append(embeddedFormat.getWhereClause());
-			}
-
-			final Query query = new Query(masterPO.getCtx(), tableEmbedded.getTableName(), whereClause.toString(), masterPO.get_TrxName());
-		
-			final boolean hasIsActiveColumn = Services.get(IADTableDAO.class).hasColumnName(tableEmbedded.getTableName(), "IsActive");
-			if (hasIsActiveColumn)
-			{
-				// not exporting inactive records, if the current format's table allow us to check (sometimes not the case for simple views);
-				// hypothetically we might want to export them too, but that case didn't yet occur and i don't really see it. However, the other way round (i.e. *not* exporting inactive records) is
-				// all over.
-				query.setOnlyActiveRecords(true);
-			}
-			final List<PO> instances = query
-					.setApplyAccessFilter(racCtx.isApplyAccessFilter())
-					.setParameters(linkId)
-					.setLimit(racCtx.getLimit())
-					.list(PO.class);
+			final MEXPFormat embeddedFormat = getEmbeddedFormat(formatLine, masterPO);
+			final List<PO> instances = retrieveEmbeddedInstances(embeddedFormat, masterPO, racCtx);
 
 			for (final PO instance : instances)
 			{
@@ -507,111 +545,215 @@ public class ExportHelper
 		else if (X_EXP_FormatLine.TYPE_ReferencedEXPFormat.equals(formatLineType))
 		{
 			// process Referenced Export Format
+			final MEXPFormat embeddedFormat = getReferencedFormat(exportFormat, formatLine, masterPO);
+			final List<PO> instances = retrieveReferencedInstances(formatLine, embeddedFormat, masterPO, racCtx);
 
-			final int embeddedFormat_ID = formatLine.getEXP_EmbeddedFormat_ID();
-			if (embeddedFormat_ID <= 0)
+			for (final PO instance : instances)
 			{
-				throw new ReplicationException(MSG_EXPFormatNotFound)
-						.setParameter(org.compiere.model.I_EXP_Format.COLUMNNAME_EXP_Format_ID, exportFormat)
-						.setParameter(I_EXP_FormatLine.COLUMNNAME_EXP_FormatLine_ID, formatLine)
-						.setParameter(I_EXP_FormatLine.COLUMNNAME_Type, formatLineType)
-						.setParameter(I_EXP_FormatLine.COLUMNNAME_EXP_EmbeddedFormat_ID, embeddedFormat_ID) // not found
-				;
+				final Element embeddedElement = outDocument.createElement(formatLine.getValue());
+				if (formatLine.getDescription() != null && !"".equals(formatLine.getDescription()))
+				{
+					embeddedElement.appendChild(outDocument.createComment(formatLine.getDescription()));
+				}
+
+				generateExportFormat(outDocument, embeddedElement, embeddedFormat, instance, variableMap, racCtx);
+				rootElement.appendChild(embeddedElement);
 			}
-			// get from cache
-			final MEXPFormat embeddedFormat = MEXPFormat.get(masterPO.getCtx(), embeddedFormat_ID, masterPO.get_TrxName());
+		}
+		else
+		{
+			throw new ReplicationException(ImportHelper.MSG_EXPFormatLineNonValidType)
+					.setParameter(I_EXP_FormatLine.COLUMNNAME_EXP_FormatLine_ID, formatLine.getValue());
+		}
+	}
 
-			final MColumn column = retrieveColumn(formatLine);
+	/**
+	 * Writes the XML for the given PO to the given stream writer, without building a DOM tree.
+	 * <p>
+	 * The writer receives the same elements, attributes, comments and texts the DOM tree of {@link #createExportDOM(PO, MEXPFormat, Integer, String, Integer)} would contain,
+	 * with the attributes of each element ordered by name, like the DOM serializer writes them.
+	 * Together with {@link ReplicationXMLStreamWriter}, the result is the same as the DOM tree serialized by {@link XMLHelper#writeDocument(Writer, org.w3c.dom.Node)}.
+	 *
+	 * @param exportFormat if <code>null</code>, the PO's format is used, see {@link #getEXP_Format(PO)}
+	 * @return <code>false</code> if the PO doesn't match the export format's where clause; in that case nothing was written
+	 */
+	public boolean writeExport(
+			@NonNull final ReplicationXMLStreamWriter out,
+			@NonNull final PO po,
+			final MEXPFormat exportFormat,
+			final Integer ReplicationMode,
+			final String ReplicationType,
+			final Integer ReplicationEvent)
+	{
+		final MEXPFormat exportFormatToUse = exportFormat != null ? exportFormat : getEXP_Format(po);
+		final String replicationTypeToUse = checkExportAndGetReplicationType(po, exportFormatToUse, ReplicationType);
+		if (replicationTypeToUse == null)
+		{
+			return false;
+		}
 
-			final int displayType = column.getAD_Reference_ID();
-			final MTable embeddedTable;
-			final String embeddedTableName;
-			final String embeddedKeyColumnName;
-			if (displayType == DisplayType.Table
-					|| displayType == DisplayType.Search && column.getAD_Reference_Value_ID() > 0)
-			{
-				final int referenceId = column.getAD_Reference_Value_ID();
-				Check.assume(referenceId > 0, "AD_Reference_Value_ID > 0 for column {} (table {})", column, column.getAD_Table().getTableName());
+		writeExport(out, po, exportFormatToUse, ReplicationMode, replicationTypeToUse, ReplicationEvent);
+		return true;
+	}
+
+	/**
+	 * Like {@link #writeExport(ReplicationXMLStreamWriter, PO, MEXPFormat, Integer, String, Integer)}, but for a PO which was already checked against the format.
+	 */
+	private void writeExport(
+			final ReplicationXMLStreamWriter out,
+			final PO po,
+			final MEXPFormat exportFormatToUse,
+			final Integer ReplicationMode,
+			final String replicationTypeToUse,
+			final Integer ReplicationEvent)
+	{
+		final I_AD_Client client = Services.get(IClientDAO.class).retriveClient(po.getCtx(), m_AD_Client_ID);
+		log.info("Client = " + client.toString());
 
-				final MRefTable refTable = MRefTable.get(masterPO.getCtx(), referenceId);
-				final MColumn embeddedKeyColumn = MColumn.get(masterPO.getCtx(), refTable.getAD_Key());
+		final Map<String, String> rootAttributes = createRootAttributes(exportFormatToUse, ReplicationMode, replicationTypeToUse, ReplicationEvent, client);
+		final IReplicationAccessContext racCtx = getDefaultIReplicationAccessContext();
+		try
+		{
+			out.writeStartDocument();
+			writeExportFormat(out, exportFormatToUse.getValue(), rootAttributes, exportFormatToUse.getDescription(), exportFormatToUse, po, racCtx);
+			out.writeEndDocument();
+			out.flush();
+		}
+		catch (final XMLStreamException e)
+		{
+			throw new ExportProcessorException(MSG_EXPFormatLineError, e)
+					.setParameter(org.compiere.model.I_EXP_Format.COLUMNNAME_EXP_Format_ID, exportFormatToUse)
+					.setParameter("masterPO", po);
+		}
+	}
 
-				embeddedTable = MTable.get(masterPO.getCtx(), refTable.getAD_Table_ID());
-				embeddedTableName = embeddedTable.getTableName();
-				embeddedKeyColumnName = embeddedKeyColumn.getColumnName();
-			}
-			else if (displayType == DisplayType.TableDir
-					|| displayType == DisplayType.Search && column.getAD_Reference_Value_ID() <= 0)
+	/**
+	 * Writes the XML for the given PO to the given stream as UTF-8, see {@link #writeExport(ReplicationXMLStreamWriter, PO, MEXPFormat, Integer, String, Integer)}.
+	 * The stream is flushed, but not closed.
+	 */
+	public boolean exportRecord(
+			@NonNull final PO po,
+			final MEXPFormat exportFormat,
+			final Integer ReplicationMode,
+			final String ReplicationType,
+			final Integer ReplicationEvent,
+			@NonNull final OutputStream out)
+	{
+		final Writer writer = new BufferedWriter(new OutputStreamWriter(out, StandardCharsets.UTF_8));
+		return writeExport(new ReplicationXMLStreamWriter(writer), po, exportFormat, ReplicationMode, ReplicationType, ReplicationEvent);
+	}
+
+	private void writeExportFormat(
+			final ReplicationXMLStreamWriter out,
+			final String elementName,
+			final Map<String, String> elementAttributes,
+			final String comment,
+			final MEXPFormat exportFormat,
+			final PO masterPO,
+			final IReplicationAccessContext racCtx) throws XMLStreamException
+	{
+		final List<I_EXP_FormatLine> formatLines = exportFormat.getFormatLines();
+
+		out.writeStartElement(elementName);
+
+		// attributes have to be written before any content; like the DOM serializer, we write them ordered by name
+		final Map<String, String> attributes = new TreeMap<>(elementAttributes);
+		for (final I_EXP_FormatLine formatLine : formatLines)
+		{
+			if (!X_EXP_FormatLine.TYPE_XMLAttribute.equals(formatLine.getType()))
 			{
-				embeddedTable = MTable.get(masterPO.getCtx(), embeddedFormat.getAD_Table_ID());
-				final String[] embeddedKeyColumns = embeddedTable.getKeyColumns();
-				if (embeddedKeyColumns == null || embeddedKeyColumns.length != 1)
-				{
-					throw new ReplicationException("Embedded table shall have one and only one primary key")
-							.setParameter("AD_Table_ID", embeddedTable);
-				}
-				embeddedTableName = embeddedTable.getTableName();
-				embeddedKeyColumnName = embeddedKeyColumns[0];
+				continue;
 			}
-			else if (DisplayType.isLookup(displayType, true)) // includeHardcodedLookups=true
-			{
-				embeddedTableName = DisplayType.getTableName(displayType);
-				Check.assumeNotNull(embeddedTableName, "TableName found for DisplayType={}", displayType);
 
-				embeddedTable = MTable.get(masterPO.getCtx(), embeddedTableName);
-				final String[] embeddedKeyColumns = embeddedTable.getKeyColumns();
-				if (embeddedKeyColumns == null || embeddedKeyColumns.length != 1)
+			try
+			{
+				final String valueString = encodeAttributeValue(exportFormat, formatLine, masterPO);
+				if (valueString != null)
 				{
-					throw new ReplicationException("Embedded table shall have one and only one primary key")
-							.setParameter("AD_Table_ID", embeddedTable);
+					attributes.put(formatLine.getValue(), valueString);
 				}
-				embeddedKeyColumnName = embeddedKeyColumns[0];
 			}
-			else
+			catch (final Exception e)
 			{
-				throw new IllegalStateException("Column's reference type not supported: " + column + " , DisplayType=" + displayType);
+				throw new ExportProcessorException(MSG_EXPFormatLineError, e)
+						.setParameter(org.compiere.model.I_EXP_Format.COLUMNNAME_EXP_Format_ID, exportFormat)
+						.setParameter(I_EXP_FormatLine.COLUMNNAME_EXP_FormatLine_ID, formatLine)
+						.setParameter("masterPO", masterPO);
 			}
+		}
+		for (final Map.Entry<String, String> attribute : attributes.entrySet())
+		{
+			out.writeAttribute(attribute.getKey(), attribute.getValue());
+		}
 
-			log.info("Embedded: Table={}, KeyColumName={}", new Object[] { embeddedTableName, embeddedKeyColumnName });
+		if (comment != null && !"".equals(comment))
+		{
+			out.writeComment(comment);
+		}
 
-			final StringBuilder whereClause = new StringBuilder().append(embeddedKeyColumnName).append("=?");
-			if (!Check.isEmpty(embeddedFormat.getWhereClause()))
+		for (final I_EXP_FormatLine formatLine : formatLines)
+		{
+			if (X_EXP_FormatLine.TYPE_XMLAttribute.equals(formatLine.getType()))
 			{
-				whereClause.append(" AND ").append(embeddedFormat.getWhereClause());
+				continue;
 			}
 
-			final Object value = masterPO.get_Value(column.getColumnName());
-			if (value == null)
+			log.debug("Format Line Seach key: {}", formatLine.getValue());
+			try
 			{
-				return;
+				writeExportFormatLine(out, exportFormat, formatLine, masterPO, racCtx);
 			}
-
-			final Query query = new Query(masterPO.getCtx(), embeddedTableName, whereClause.toString(), masterPO.get_TrxName());
-
-			final boolean hasIsActiveColumn = Services.get(IADTableDAO.class).hasColumnName(embeddedTableName, "IsActive");
-			if (hasIsActiveColumn)
+			catch (final Exception e)
 			{
-				// not exporting inactive records, if the current format's table allow us to check (sometimes not the case for simple views);
-				// hypothetically we might want to export them too, but that case didn't yet occur and i don't really see it. However, the other way round (i.e. *not* exporting inactive records) is
-				// all over.
-				query.setOnlyActiveRecords(true);
+				throw new ExportProcessorException(MSG_EXPFormatLineError, e)
+						.setParameter(org.compiere.model.I_EXP_Format.COLUMNNAME_EXP_Format_ID, exportFormat)
+						.setParameter(I_EXP_FormatLine.COLUMNNAME_EXP_FormatLine_ID, formatLine)
+						.setParameter("masterPO", masterPO);
 			}
+		}
 
-			final List<PO> instances = query
-					.setApplyAccessFilter(racCtx.isApplyAccessFilter())
-					.setParameters(value)
-					.list(PO.class);
+		out.writeEndElement();
+	}
 
-			for (final PO instance : instances)
+	private void writeExportFormatLine(
+			final ReplicationXMLStreamWriter out,
+			final MEXPFormat exportFormat,
+			final I_EXP_FormatLine formatLine,
+			final PO masterPO,
+			final IReplicationAccessContext racCtx) throws XMLStreamException
+	{
+		final String formatLineType = formatLine.getType();
+		if (X_EXP_FormatLine.TYPE_XMLElement.equals(formatLineType))
+		{
+			final Map<String, String> valueAttributes = new TreeMap<>();
+			final String valueString = encodeElementValue(formatLine, masterPO, valueAttributes);
+
+			// Empty field - only if format line is Mandatory
+			if (valueString != null || formatLine.isMandatory())
 			{
-				final Element embeddedElement = outDocument.createElement(formatLine.getValue());
-				if (formatLine.getDescription() != null && !"".equals(formatLine.getDescription()))
+				out.writeStartElement(formatLine.getValue());
+				for (final Map.Entry<String, String> attr : valueAttributes.entrySet())
 				{
-					embeddedElement.appendChild(outDocument.createComment(formatLine.getDescription()));
+					out.writeAttribute(attr.getKey(), attr.getValue());
 				}
-
-				generateExportFormat(outDocument, embeddedElement, embeddedFormat, instance, variableMap, racCtx);
-				rootElement.appendChild(embeddedElement);
+				out.writeCharacters(valueString != null ? valueString : "");
+				out.writeEndElement();
+			}
+		}
+		else if (X_EXP_FormatLine.TYPE_EmbeddedEXPFormat.equals(formatLineType))
+		{
+			final MEXPFormat embeddedFormat = getEmbeddedFormat(formatLine, masterPO);
+			for (final PO instance : retrieveEmbeddedInstances(embeddedFormat, masterPO, racCtx))
+			{
+				writeExportFormat(out, formatLine.getValue(), ImmutableMap.of(), formatLine.getDescription(), embeddedFormat, instance, racCtx);
+			}
+		}
+		else if (X_EXP_FormatLine.TYPE_ReferencedEXPFormat.equals(formatLineType))
+		{
+			final MEXPFormat embeddedFormat = getReferencedFormat(exportFormat, formatLine, masterPO);
+			for (final PO instance : retrieveReferencedInstances(formatLine, embeddedFormat, masterPO, racCtx))
+			{
+				writeExportFormat(out, formatLine.getValue(), ImmutableMap.of(), formatLine.getDescription(), embeddedFormat, instance, racCtx);
 			}
 		}
 		else
@@ -621,6 +763,228 @@ public class ExportHelper
 		}
 	}
 
+	/**
+	 * @param valueAttributes the attributes which describe the value's encoding are added to this map
+	 * @return the value of the element for the given <code>XMLElement</code> format line; <code>null</code> if there is no value
+	 */
+	private String encodeElementValue(final I_EXP_FormatLine formatLine, final PO masterPO, final Map<String, String> valueAttributes)
+	{
+		final MColumn column = retrieveColumn(formatLine);
+		final Object value = masterPO.get_Value(column.getColumnName());
+		try
+		{
+			return encodeValue(value, valueAttributes, formatLine, column);
+		}
+		catch (final Exception e)
+		{
+			throw new ReplicationException("Encoding failed at line " + formatLine.getName(), e)
+					.setParameter(I_EXP_FormatLine.COLUMNNAME_EXP_FormatLine_ID, formatLine)
+					.setParameter(I_EXP_FormatLine.COLUMNNAME_AD_Column_ID, column);
+		}
+	}
+
+	/**
+	 * @return the value of the attribute for the given <code>XMLAttribute</code> format line; <code>null</code> if there is no value
+	 */
+	private String encodeAttributeValue(final MEXPFormat exportFormat, final I_EXP_FormatLine formatLine, final PO masterPO)
+	{
+		final MColumn column = retrieveColumn(formatLine);
+		final Object value = masterPO.get_Value(column.getColumnName());
+		final String valueString;
+		try
+		{
+			valueString = encodeValue(value, null, formatLine, column); // attributes=null
+		}
+		catch (final Exception e)
+		{
+			throw new ReplicationException("Encoding failed at line " + formatLine.getName(), e)
+					.setParameter(I_EXP_FormatLine.COLUMNNAME_EXP_FormatLine_ID, formatLine)
+					.setParameter(I_EXP_FormatLine.COLUMNNAME_AD_Column_ID, column);
+		}
+		if (valueString == null && formatLine.isMandatory())
+		{
+			throw new ExportProcessorException(MSG_EXPFieldMandatory)
+					.setParameter(org.compiere.model.I_EXP_Format.COLUMNNAME_EXP_Format_ID, exportFormat)
+					.setParameter(I_EXP_FormatLine.COLUMNNAME_EXP_FormatLine_ID, formatLine)
+					.setParameter(I_EXP_FormatLine.COLUMNNAME_AD_Column_ID, formatLine.getAD_Column_ID())
+					.setParameter("masterPO", masterPO);
+		}
+		return valueString;
+	}
+
+	private MEXPFormat getEmbeddedFormat(final I_EXP_FormatLine formatLine, final PO masterPO)
+	{
+		final int embeddedFormat_ID = formatLine.getEXP_EmbeddedFormat_ID();
+		return retrieveFormat(masterPO, embeddedFormat_ID);
+	}
+
+	/**
+	 * @return the records of the embedded format which are linked to the given master PO
+	 */
+	@VisibleForTesting
+	List<PO> retrieveEmbeddedInstances(final MEXPFormat embeddedFormat, final PO masterPO, final IReplicationAccessContext racCtx)
+	{
+		final MTable tableEmbedded = MTable.get(masterPO.getCtx(), embeddedFormat.getAD_Table_ID());
+		log.debug("Table Embedded = " + tableEmbedded);
+
+		final String linkColumnName = getLinkColumnName(masterPO, tableEmbedded); // metas
+		final Object linkId = masterPO.get_Value(linkColumnName); // metas
+		final StringBuffer whereClause = new StringBuffer(linkColumnName + "=?"); // metas: use linkColumnName
+
+		if (embeddedFormat.getWhereClause() != null && !"".equals(embeddedFormat.getWhereClause()))
+		{
+			whereClause.append(" AND ").append(embeddedFormat.getWhereClause());
+		}
+
+		final Query query = new Query(masterPO.getCtx(), tableEmbedded.getTableName(), whereClause.toString(), masterPO.get_TrxName());
+
+		final boolean hasIsActiveColumn = Services.get(IADTableDAO.class).hasColumnName(tableEmbedded.getTableName(), "IsActive");
+		if (hasIsActiveColumn)
+		{
+			// not exporting inactive records, if the current format's table allow us to check (sometimes not the case for simple views);
+			// hypothetically we might want to export them too, but that case didn't yet occur and i don't really see it. However, the other way round (i.e. *not* exporting inactive records) is
+			// all over.
+			query.setOnlyActiveRecords(true);
+		}
+		return query
+				.setApplyAccessFilter(racCtx.isApplyAccessFilter())
+				.setParameters(linkId)
+				.setLimit(racCtx.getLimit())
+				.list(PO.class);
+	}
+
+	private MEXPFormat getReferencedFormat(final MEXPFormat exportFormat, final I_EXP_FormatLine formatLine, final PO masterPO)
+	{
+		final int embeddedFormat_ID = formatLine.getEXP_EmbeddedFormat_ID();
+		if (embeddedFormat_ID <= 0)
+		{
+			throw new ReplicationException(MSG_EXPFormatNotFound)
+					.setParameter(org.compiere.model.I_EXP_Format.COLUMNNAME_EXP_Format_ID, exportFormat)
+					.setParameter(I_EXP_FormatLine.COLUMNNAME_EXP_FormatLine_ID, formatLine)
+					.setParameter(I_EXP_FormatLine.COLUMNNAME_Type, formatLine.getType())
+					.setParameter(I_EXP_FormatLine.COLUMNNAME_EXP_EmbeddedFormat_ID, embeddedFormat_ID) // not found
+			;
+		}
+		return retrieveFormat(masterPO, embeddedFormat_ID);
+	}
+
+	@VisibleForTesting
+	MEXPFormat retrieveFormat(final PO masterPO, final int formatId)
+	{
+		// get from cache
+		return MEXPFormat.get(masterPO.getCtx(), formatId, masterPO.get_TrxName());
+	}
+
+	/**
+	 * @return the record of the referenced format which the given master PO's column references; empty if the column is empty
+	 */
+	@VisibleForTesting
+	List<PO> retrieveReferencedInstances(final I_EXP_FormatLine formatLine, final MEXPFormat embeddedFormat, final PO masterPO, final IReplicationAccessContext racCtx)
+	{
+		final MColumn column = retrieveColumn(formatLine);
+		final ReferencedTable referencedTable = getReferencedTable(formatLine, column, embeddedFormat);
+		final String embeddedTableName = referencedTable.getTableName();
+		final String embeddedKeyColumnName = referencedTable.getKeyColumnName();
+
+		log.debug("Embedded: Table={}, KeyColumName={}", embeddedTableName, embeddedKeyColumnName);
+
+		final StringBuilder whereClause = new StringBuilder().append(embeddedKeyColumnName).append("=?");
+		if (!Check.isEmpty(embeddedFormat.getWhereClause()))
+		{
+			whereClause.append(" AND ").append(embeddedFormat.getWhereClause());
+		}
+
+		final Object value = masterPO.get_Value(column.getColumnName());
+		if (value == null)
+		{
+			return ImmutableList.of();
+		}
+
+		final Query query = new Query(masterPO.getCtx(), embeddedTableName, whereClause.toString(), masterPO.get_TrxName());
+
+		final boolean hasIsActiveColumn = Services.get(IADTableDAO.class).hasColumnName(embeddedTableName, "IsActive");
+		if (hasIsActiveColumn)
+		{
+			// not exporting inactive records, if the current format's table allow us to check (sometimes not the case for simple views);
+			// hypothetically we might want to export them too, but that case didn't yet occur and i don't really see it. However, the other way round (i.e. *not* exporting inactive records) is
+			// all over.
+			query.setOnlyActiveRecords(true);
+		}
+
+		return query
+				.setApplyAccessFilter(racCtx.isApplyAccessFilter())
+				.setParameters(value)
+				.list(PO.class);
+	}
+
+	private ReferencedTable getReferencedTable(final I_EXP_FormatLine formatLine, final MColumn column, final MEXPFormat embeddedFormat)
+	{
+		return referencedTablesByFormatLineId.getOrLoad(formatLine.getEXP_FormatLine_ID(), () -> retrieveReferencedTable(column, embeddedFormat));
+	}
+
+	private static ReferencedTable retrieveReferencedTable(final MColumn column, final MEXPFormat embeddedFormat)
+	{
+		final Properties ctx = column.getCtx();
+		final int displayType = column.getAD_Reference_ID();
+		final MTable embeddedTable;
+		final String embeddedTableName;
+		final String embeddedKeyColumnName;
+		if (displayType == DisplayType.Table
+				|| displayType == DisplayType.Search && column.getAD_Reference_Value_ID() > 0)
+		{
+			final int referenceId = column.getAD_Reference_Value_ID();
+			Check.assume(referenceId > 0, "AD_Reference_Value_ID > 0 for column {} (table {})", column, column.getAD_Table().getTableName());
+
+			final MRefTable refTable = MRefTable.get(ctx, referenceId);
+			final MColumn embeddedKeyColumn = MColumn.get(ctx, refTable.getAD_Key());
+
+			embeddedTable = MTable.get(ctx, refTable.getAD_Table_ID());
+			embeddedTableName = embeddedTable.getTableName();
+			embeddedKeyColumnName = embeddedKeyColumn.getColumnName();
+		}
+		else if (displayType == DisplayType.TableDir
+				|| displayType == DisplayType.Search && column.getAD_Reference_Value_ID() <= 0)
+		{
+			embeddedTable = MTable.get(ctx, embeddedFormat.getAD_Table_ID());
+			final String[] embeddedKeyColumns = embeddedTable.getKeyColumns();
+			if (embeddedKeyColumns == null || embeddedKeyColumns.length != 1)
+			{
+				throw new ReplicationException("Embedded table shall have one and only one primary key")
+						.setParameter("AD_Table_ID", embeddedTable);
+			}
+			embeddedTableName = embeddedTable.getTableName();
+			embeddedKeyColumnName = embeddedKeyColumns[0];
+		}
+		else if (DisplayType.isLookup(displayType, true)) // includeHardcodedLookups=true
+		{
+			embeddedTableName = DisplayType.getTableName(displayType);
+			Check.assumeNotNull(embeddedTableName, "TableName found for DisplayType={}", displayType);
+
+			embeddedTable = MTable.get(ctx, embeddedTableName);
+			final String[] embeddedKeyColumns = embeddedTable.getKeyColumns();
+			if (embeddedKeyColumns == null || embeddedKeyColumns.length != 1)
+			{
+				throw new ReplicationException("Embedded table shall have one and only one primary key")
+						.setParameter("AD_Table_ID", embeddedTable);
+			}
+			embeddedKeyColumnName = embeddedKeyColumns[0];
+		}
+		else
+		{
+			throw new IllegalStateException("Column's reference type not supported: " + column + " , DisplayType=" + displayType);
+		}
+
+		return new ReferencedTable(embeddedTableName, embeddedKeyColumnName);
+	}
+
+	/** Table and key column of the records which a <code>ReferencedEXPFormat</code> format line exports */
+	@lombok.Value
+	private static class ReferencedTable
+	{
+		String tableName;
+		String keyColumnName;
+	}
+
 	/**
 	 * Utility method which is responsible to create new XML Document
 	 *
@@ -786,7 +1150,8 @@ public class ExportHelper
 		return valueString;
 	}
 
-	private MColumn retrieveColumn(final I_EXP_FormatLine formatLine)
+	@VisibleForTesting
+	MColumn retrieveColumn(final I_EXP_FormatLine formatLine)
 	{
 		final int adColumnId = formatLine.getAD_Column_ID();
 		if (adColumnId <= 0)
@@ -796,7 +1161,7 @@ public class ExportHelper
 		}
 
 		final Properties ctx = InterfaceWrapperHelper.getCtx(formatLine);
-		final MColumn column = MColumn.get(ctx, adColumnId);
+		final MColumn column = columnsById.getOrLoad(adColumnId, () -> MColumn.get(ctx, adColumnId));
 		if (column == null)
 		{
 			throw new ExportProcessorException(MSG_EXPColumnMandatory)
@@ -48,10 +48,11 @@ import javax.xml.transform.TransformerFactory;
 import javax.xml.transform.dom.DOMSource;
 import javax.xml.transform.stream.StreamResult;
 
-import org.adempiere.process.rpl.IExportProcessor;
+import org.adempiere.process.rpl.IStreamingExportProcessor;
 import org.apache.activemq.ActiveMQConnectionFactory;
 import org.compiere.model.I_EXP_ProcessorParameter;
 import org.compiere.model.MEXPProcessor;
+import org.compiere.model.PO;
 import org.compiere.model.X_EXP_ProcessorParameter;
 import org.slf4j.Logger;
 import de.metas.logging.LogManager;
@@ -67,7 +68,7 @@ import org.w3c.dom.Document;
  *				<li>[ 2862500 ]   	 TopicExporter TransformerFactory setAttribute error
  *				<li>https://sourceforge.net/tracker/?func=detail&aid=2862500&group_id=176962&atid=879332
  */
-public class TopicExportProcessor implements IExportProcessor {
+public class TopicExportProcessor implements IStreamingExportProcessor {
 
 	/**	Logger	*/
 	protected Logger	log = LogManager.getLogger(getClass());
@@ -77,6 +78,35 @@ public class TopicExportProcessor implements IExportProcessor {
 	 */
 	public void process(Properties ctx, MEXPProcessor expProcessor, Document document, Trx trx) 
 			throws Exception 
+	{
+		// Construct Transformer Factory and Transformer
+        TransformerFactory tranFactory = TransformerFactory.newInstance();
+        String jVersion = System.getProperty("java.version");
+		if (jVersion.startsWith("1.5.0"))
+			tranFactory.setAttribute("indent-number", Integer.valueOf(1));
+        
+        Transformer aTransformer = tranFactory.newTransformer();
+        aTransformer.setOutputProperty(OutputKeys.INDENT, "yes");
+        Source src = new DOMSource( document );
+		
+        // =================================== Write to String
+        Writer writer = new StringWriter();
+        Result dest2 = new StreamResult(writer);
+        aTransformer.transform(src, dest2);
+        
+        sendMessage(expProcessor, writer.toString());
+	}
+
+	@Override
+	public void process(final MEXPProcessor expProcessor, final IExportXMLWriter xmlWriter, final PO po) throws Exception
+	{
+		// same message as the transformer above produces, but without building the DOM tree first
+		final Writer writer = new StringWriter();
+		xmlWriter.writeTo(writer);
+		sendMessage(expProcessor, writer.toString());
+	}
+
+	private void sendMessage(MEXPProcessor expProcessor, String msg) throws Exception
 	{
 		String host 	      = expProcessor.getHost();
 		int port 		      = expProcessor.getPort();
@@ -125,23 +155,7 @@ public class TopicExportProcessor implements IExportProcessor {
         	throw new Exception("Missing "+X_EXP_ProcessorParameter.Table_Name+" with key 'timeToLive'!");
         }
         
-		// Construct Transformer Factory and Transformer
-        TransformerFactory tranFactory = TransformerFactory.newInstance();
-        String jVersion = System.getProperty("java.version");
-		if (jVersion.startsWith("1.5.0"))
-			tranFactory.setAttribute("indent-number", Integer.valueOf(1));
-        
-        Transformer aTransformer = tranFactory.newTransformer();
-        aTransformer.setOutputProperty(OutputKeys.INDENT, "yes");
-        Source src = new DOMSource( document );
-		
-        // =================================== Write to String
-        Writer writer = new StringWriter();
-        Result dest2 = new StreamResult(writer);
-        aTransformer.transform(src, dest2);
-        
-        sendJMSMessage(host, port, writer.toString(), protocol, topicName, clientID, account, password, timeToLive, isDeliveryModePersistent);
-		
+        sendJMSMessage(host, port, msg, protocol, topicName, clientID, account, password, timeToLive, isDeliveryModePersistent);
 	}
 
 	private void sendJMSMessage(String host, int port, String msg, String protocol, String topicName
@@ -42,6 +42,7 @@ import java.util.List;
 import java.util.Optional;
 import java.util.Properties;
 import java.util.UUID;
+import java.util.function.Supplier;
 import java.util.regex.Pattern;
 
 import javax.xml.bind.DatatypeConverter;
@@ -68,6 +69,7 @@ import org.adempiere.process.rpl.requesthandler.spi.IReplRequestHandler;
 import org.adempiere.server.rpl.api.IIMPProcessorBL;
 import org.adempiere.server.rpl.api.IIMPProcessorBL.ITableAndColumn;
 import org.adempiere.server.rpl.api.IImportHelper;
+import org.adempiere.server.rpl.api.impl.ImportLookupIndex.LookupKey;
 import org.adempiere.server.rpl.exceptions.DuplicateLookupObjectException;
 import org.adempiere.server.rpl.exceptions.ReplicationException;
 import org.adempiere.server.rpl.interfaces.I_EXP_Format;
@@ -75,6 +77,7 @@ import org.adempiere.server.rpl.trx.api.IReplicationTrxBL;
 import org.adempiere.server.rpl.trx.api.IReplicationTrxDAO;
 import org.adempiere.server.rpl.trx.api.impl.POReplicationTrxLineDraft;
 import org.adempiere.server.rpl.trx.spi.IReplicationIssueAware;
+import org.adempiere.service.ISysConfigBL;
 import org.adempiere.util.lang.IAutoCloseable;
 import org.adempiere.util.lang.IMutable;
 import org.adempiere.util.lang.Mutable;
@@ -107,6 +110,9 @@ import org.w3c.dom.Element;
 import org.w3c.dom.Node;
 import org.w3c.dom.NodeList;
 
+import com.google.common.annotations.VisibleForTesting;
+import com.google.common.collect.ImmutableList;
+
 import de.metas.adempiere.service.IColumnBL;
 import de.metas.document.engine.IDocument;
 import de.metas.document.engine.IDocumentBL;
@@ -168,6 +174,25 @@ public class ImportHelper implements IImportHelper
 	private static final String MSG_CantSetColumnValue = "CantSetColumnValue";
 	private static final String MSG_InvalidArguments = "InvalidArguments";
 
+	/**
+	 * If enabled, the records which a message looks up by their formats' unique columns are loaded with a few bulk queries before the message is imported.
+	 *
+	 * @see ImportLookupIndex
+	 */
+	private static final String SYSCONFIG_BulkLookupEnabled = "org.adempiere.server.rpl.api.impl.ImportHelper.BulkLookupEnabled";
+
+	/**
+	 * Specify the line order
+	 * <ul>
+	 * <li>embedded sub formats last; note that the postgres ordering for boolean values is false, true, null
+	 * <li>mandatory line before non-mandatory lines
+	 * <li>whatever is specified in the 'Position' column
+	 * </ul>
+	 */
+	private static final String FORMAT_LINES_ORDER_BY = I_EXP_FormatLine.COLUMNNAME_Type + "='" + X_EXP_FormatLine.TYPE_EmbeddedEXPFormat + "'," +
+			I_EXP_FormatLine.COLUMNNAME_IsMandatory + " DESC , " + // mandatory fields first
+			I_EXP_FormatLine.COLUMNNAME_Position;
+
 	/** Instance Logger */
 	private final Logger log = LogManager.getLogger(ImportHelper.class);
 
@@ -186,6 +211,9 @@ public class ImportHelper implements IImportHelper
 
 	private final IIMPProcessorBL importProcessorBL;
 
+	/** Lookups of the message which is currently imported; <code>null</code> if bulk lookups are disabled */
+	private ImportLookupIndex lookupIndex = null;
+
 	public ImportHelper()
 	{
 		importProcessorBL = Services.get(IIMPProcessorBL.class);
@@ -267,6 +295,11 @@ public class ImportHelper implements IImportHelper
 
 			isChanged = false;
 
+			if (Services.get(ISysConfigBL.class).getBooleanValue(SYSCONFIG_BulkLookupEnabled, false, adClientId))
+			{
+				lookupIndex = createLookupIndex(expFormatPO, rootElement, trxName);
+			}
+
 			//
 			// Get ReplicationTrxName from the root element,
 			// OR generate random UUID if ReplicationTrxName is empty
@@ -329,6 +362,184 @@ public class ImportHelper implements IImportHelper
 			result.append("Save Successful; ");
 			return null;
 		}
+		finally
+		{
+			if (lookupIndex != null)
+			{
+				log.info("Resolved the lookups of {} using {}", rootElement.getNodeName(), lookupIndex);
+				lookupIndex = null;
+			}
+		}
+	}
+
+	/**
+	 * @return an index with the prefetched records which the given message will look up
+	 */
+	@VisibleForTesting
+	ImportLookupIndex createLookupIndex(final MEXPFormat expFormat, final Element rootElement, final String trxName)
+	{
+		final ImportLookupIndex lookupIndex = newLookupIndex(trxName);
+		collectLookupKeys(lookupIndex, expFormat, rootElement, "", false);
+		lookupIndex.prefetch();
+		return lookupIndex;
+	}
+
+	@VisibleForTesting
+	ImportLookupIndex newLookupIndex(final String trxName)
+	{
+		return new ImportLookupIndex(ctx, trxName);
+	}
+
+	/**
+	 * Walks the given element the same way as {@link #importElement(StringBuilder, Element, MEXPFormat, String, String, PO, I_EXP_Format, I_EXP_FormatLine, String, String)} will do it
+	 * and adds the key of each record that will be looked up to the given index.
+	 * <p>
+	 * Parts of the message which can't be evaluated here are skipped; the import itself will look them up one by one and fail if needed.
+	 * Records which are looked up together with a master PO are skipped too, because their lookup also filters by the master PO's ID.
+	 */
+	private void collectLookupKeys(
+			final ImportLookupIndex lookupIndex,
+			final MEXPFormat expFormat,
+			final Element rootElement,
+			final String parentXPath,
+			final boolean hasMasterPO)
+	{
+		if (!hasMasterPO && isDoLookup(expFormat))
+		{
+			final LookupKey lookupKey = createLookupKey(expFormat, rootElement, parentXPath);
+			if (lookupKey != null)
+			{
+				lookupIndex.addKey(lookupKey);
+			}
+		}
+
+		// note: using the same order as importElement(), because the format caches only the lines of the last order
+		for (final I_EXP_FormatLine line : expFormat.getFormatLinesOrderedBy(FORMAT_LINES_ORDER_BY))
+		{
+			try
+			{
+				if (X_EXP_FormatLine.TYPE_ReferencedEXPFormat.equals(line.getType()))
+				{
+					final String valueXPath = appendToXPath(parentXPath, line);
+					if (XMLHelper.getElement(valueXPath, rootElement) != null)
+					{
+						final MEXPFormat referencedExpFormat = retrieveFormat(line.getEXP_EmbeddedFormat_ID());
+						collectLookupKeys(lookupIndex, referencedExpFormat, rootElement, valueXPath, false);
+					}
+				}
+				else if (X_EXP_FormatLine.TYPE_EmbeddedEXPFormat.equals(line.getType()))
+				{
+					final MEXPFormat embeddedExpFormat = retrieveFormat(line.getEXP_EmbeddedFormat_ID());
+					final NodeList nodeList = XMLHelper.getNodeList(line.getValue(), rootElement);
+					for (int j = 0; j < nodeList.getLength(); j++)
+					{
+						collectLookupKeys(lookupIndex, embeddedExpFormat, (Element)nodeList.item(j), "", true);
+					}
+				}
+			}
+			catch (final XPathExpressionException e)
+			{
+				log.debug("Skip collecting lookup keys for {}", line, e);
+			}
+		}
+	}
+
+	/**
+	 * @return the key by which {@link #getObjectFromFormat(StringBuilder, MEXPFormat, Element, String, String, String, PO, I_EXP_Format, I_EXP_FormatLine, String, String)} looks up the record of the given
+	 *         format, or <code>null</code> if that lookup is not supported by {@link ImportLookupIndex}, e.g. because a unique column is a referenced format or has no value.
+	 */
+	@VisibleForTesting
+	LookupKey createLookupKey(
+			final MEXPFormat expFormat,
+			final Element rootElement,
+			final String parentXPath)
+	{
+		final List<I_EXP_FormatLine> uniqueFormatLines = expFormat.getUniqueColumns();
+		if (uniqueFormatLines.isEmpty())
+		{
+			return null;
+		}
+
+		final IADTableDAO adTableDAO = Services.get(IADTableDAO.class);
+
+		final ImmutableList.Builder<String> columnNames = ImmutableList.builder();
+		final ImmutableList.Builder<Object> values = ImmutableList.builder();
+		for (final I_EXP_FormatLine uniqueFormatLine : uniqueFormatLines)
+		{
+			if (!X_EXP_FormatLine.TYPE_XMLElement.equals(uniqueFormatLine.getType()))
+			{
+				return null;
+			}
+
+			final I_AD_Column column = retrieveColumn(uniqueFormatLine);
+			if (adTableDAO.isVirtualColumn(column))
+			{
+				return null;
+			}
+
+			final Object xmlValue;
+			try
+			{
+				xmlValue = getXMLValue(appendToXPath(parentXPath, uniqueFormatLine), rootElement, uniqueFormatLine);
+			}
+			catch (final XPathExpressionException e)
+			{
+				return null;
+			}
+			if (xmlValue == null || Check.isEmpty(xmlValue.toString()))
+			{
+				return null; // looked up with "IS NULL"
+			}
+
+			// convert the value like getObjectFromFormat() does it for its SQL parameters
+			final int adReferenceId = importProcessorBL.getAD_Reference_ID(column, uniqueFormatLine);
+			final Object value;
+			if (adReferenceId == DisplayType.String)
+			{
+				value = xmlValue;
+			}
+			else if (DisplayType.isID(adReferenceId)
+					|| DisplayType.Integer == adReferenceId)
+			{
+				try
+				{
+					value = Integer.valueOf(xmlValue.toString());
+				}
+				catch (final NumberFormatException e)
+				{
+					return null;
+				}
+			}
+			else
+			{
+				return null;
+			}
+
+			columnNames.add(column.getColumnName());
+			values.add(value);
+		}
+
+		final String lookupTableName = expFormat.getAD_Table().getTableName();
+		return new LookupKey(lookupTableName, columnNames.build(), values.build());
+	}
+
+	@VisibleForTesting
+	boolean isDoLookup(final MEXPFormat expFormat)
+	{
+		final String importMode = InterfaceWrapperHelper.create(expFormat, I_EXP_Format.class).getRplImportMode();
+		return Check.isEmpty(importMode) || I_EXP_Format.RplImportMode_RecordExists.equals(importMode);
+	}
+
+	@VisibleForTesting
+	MEXPFormat retrieveFormat(final int formatId)
+	{
+		return MEXPFormat.get(ctx, formatId, ITrx.TRXNAME_None);
+	}
+
+	@VisibleForTesting
+	I_AD_Column retrieveColumn(final I_EXP_FormatLine formatLine)
+	{
+		return MColumn.get(ctx, formatLine.getAD_Column_ID());
 	}
 
 	private void handleTableReplication(final String ReplicationType, final int ReplicationEvent, final int adClientId, final PO po)
@@ -553,15 +764,7 @@ public class ImportHelper implements IImportHelper
 					.setParameter(I_AD_Table.COLUMNNAME_TableName, po.get_TableName());
 		}
 
-		// Specify the line order
-		// *embedded sub formats last; note that the postgres ordering for boolean values is false, true, null
-		// *mandatory line before non-mandatory lines
-		// *whatever is specified in the 'Position' column
-		final String orderBy = I_EXP_FormatLine.COLUMNNAME_Type + "='" + X_EXP_FormatLine.TYPE_EmbeddedEXPFormat + "'," +
-				I_EXP_FormatLine.COLUMNNAME_IsMandatory + " DESC , " + // mandatory fields first
-				I_EXP_FormatLine.COLUMNNAME_Position;
-
-		final Collection<I_EXP_FormatLine> formatLines = expFormat.getFormatLinesOrderedBy(orderBy);
+		final Collection<I_EXP_FormatLine> formatLines = expFormat.getFormatLinesOrderedBy(FORMAT_LINES_ORDER_BY);
 		if (formatLines == null || formatLines.size() < 1)
 		{
 			throw new ReplicationException(MSG_EXPFormatNoLines);
@@ -1062,7 +1265,7 @@ public class ImportHelper implements IImportHelper
 		final I_EXP_Format expFormatExt = InterfaceWrapperHelper.create(expFormat, I_EXP_Format.class);
 		final String importMode = expFormatExt.getRplImportMode();
 
-		final boolean doLookup = Check.isEmpty(importMode) || I_EXP_Format.RplImportMode_RecordExists.equals(importMode);
+		final boolean doLookup = isDoLookup(expFormat);
 
 		// Get list with all Unique columns!
 		final List<I_EXP_FormatLine> uniqueFormatLines = new ArrayList<>();
@@ -1287,10 +1490,15 @@ public class ImportHelper implements IImportHelper
 		final List<PO> lookupValues = new ArrayList<>();
 		if (doLookup)
 		{
-			final List<PO> list = new Query(ctx, lookupTableName, whereClause.toString(), trxName)
+			final Supplier<List<PO>> singleLookup = () -> new Query(ctx, lookupTableName, whereClause.toString(), trxName)
 					.setOnlyActiveRecords(true)
 					.setParameters(params)
 					.list(PO.class);
+
+			// with a master PO, the lookup also filters by the master's ID, so it was not prefetched
+			final List<PO> list = lookupIndex != null && masterPO == null
+					? lookupIndex.getRecords(createLookupKey(expFormat, rootElement, parentXPath), singleLookup)
+					: singleLookup.get();
 			lookupValues.addAll(list);
 		}
 
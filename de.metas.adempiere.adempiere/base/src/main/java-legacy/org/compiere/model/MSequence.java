@@ -28,6 +28,8 @@ import java.sql.Types;
 import java.util.Properties;
 
 import org.adempiere.ad.migration.logger.IMigrationLogger;
+import org.adempiere.ad.sequence.TableIDBlock;
+import org.adempiere.ad.sequence.TableIDBlockAllocator;
 import org.adempiere.ad.service.ISequenceDAO;
 import org.adempiere.ad.trx.api.ITrx;
 import org.adempiere.exceptions.AdempiereException;
@@ -94,6 +96,16 @@ public class MSequence extends X_AD_Sequence
 
 		s_log.trace("{} - AdempiereSys={} [{}]", TableName, adempiereSys, trxName);
 
+		// If configured, serve the ID from this JVM's pool of IDs which were reserved in advance
+		final TableIDBlockAllocator tableIDBlockAllocator = TableIDBlockAllocator.get();
+		if (!USE_PROCEDURE
+				&& tableIDBlockAllocator.isEnabled(TableName)
+				&& !isQueryCentralizedIDServer(TableName, AD_Client_ID)
+				&& !isQueryProjectIDServer(TableName, AD_Client_ID))
+		{
+			return tableIDBlockAllocator.nextId(TableName, adempiereSys);
+		}
+
 		final String selectSQL = "SELECT CurrentNext, CurrentNextSys, IncrementNo, AD_Sequence_ID "
 				+ "FROM AD_Sequence "
 				+ "WHERE Name=?"
@@ -246,6 +258,88 @@ public class MSequence extends X_AD_Sequence
 		}
 	}	// getNextID
 
+	/**
+	 * Reserves <code>blockSize</code> consecutive table IDs by advancing the table's AD_Sequence only once.
+	 *
+	 * @param tableName table name
+	 * @param adempiereSys if true, the IDs are reserved from CurrentNextSys, else from CurrentNext
+	 * @param blockSize how many IDs to reserve
+	 * @return the reserved IDs
+	 * @see TableIDBlockAllocator
+	 */
+	public static TableIDBlock reserveTableIDBlock(final String tableName, final boolean adempiereSys, final int blockSize)
+	{
+		Check.assumeNotEmpty(tableName, "The given parameter tableName is not empty");
+		Check.assumeGreaterThanZero(blockSize, "blockSize");
+
+		final String selectSQL = "SELECT CurrentNext, CurrentNextSys, IncrementNo, AD_Sequence_ID "
+				+ "FROM AD_Sequence "
+				+ "WHERE Name=?"
+				+ " AND IsActive='Y' AND IsTableID='Y' AND IsAutoSequence='Y' "
+				+ " FOR UPDATE OF AD_Sequence ";
+		final String updateSQL = adempiereSys
+				? "UPDATE AD_Sequence SET CurrentNextSys = CurrentNextSys + ? WHERE AD_Sequence_ID = ?"
+				: "UPDATE AD_Sequence SET CurrentNext = CurrentNext + ? WHERE AD_Sequence_ID = ?";
+
+		Connection conn = null;
+		PreparedStatement pstmt = null;
+		ResultSet rs = null;
+		boolean success = false;
+		try
+		{
+			conn = DB.getConnectionID();
+
+			pstmt = conn.prepareStatement(selectSQL, ResultSet.TYPE_FORWARD_ONLY, ResultSet.CONCUR_UPDATABLE);
+			pstmt.setString(1, tableName);
+			if (DB.getDatabase().isQueryTimeoutSupported())
+			{
+				pstmt.setQueryTimeout(QUERY_TIME_OUT);
+			}
+
+			rs = pstmt.executeQuery();
+			if (!rs.next())
+			{
+				throw new AdempiereException("No AD_Sequence found for " + tableName);
+			}
+
+			final int firstId = adempiereSys ? rs.getInt(2) : rs.getInt(1);
+			final int incrementNo = rs.getInt(3);
+			final int adSequenceId = rs.getInt(4);
+
+			try (final PreparedStatement updateStmt = conn.prepareStatement(updateSQL))
+			{
+				updateStmt.setInt(1, incrementNo * blockSize);
+				updateStmt.setInt(2, adSequenceId);
+				updateStmt.executeUpdate();
+			}
+
+			conn.commit();
+			success = true;
+
+			return TableIDBlock.of(firstId, incrementNo, blockSize);
+		}
+		catch (final SQLException ex)
+		{
+			throw new DBException(ex, selectSQL);
+		}
+		finally
+		{
+			if (!success && conn != null)
+			{
+				try
+				{
+					conn.rollback();
+				}
+				catch (final SQLException e)
+				{
+					s_log.warn("Failed rolling back the ID block reservation for {}", tableName, e);
+				}
+			}
+			DB.close(rs, pstmt);
+			DB.close(conn);
+		}
+	}
+
 	/**
 	 * Get Next ID
 	 *
@@ -1,5 +1,6 @@
 package de.metas.event.log;
 
+import static org.adempiere.model.InterfaceWrapperHelper.loadOutOfTrx;
 import static org.adempiere.model.InterfaceWrapperHelper.newInstance;
 import static org.adempiere.model.InterfaceWrapperHelper.save;
 import static org.adempiere.model.InterfaceWrapperHelper.setValue;
@@ -9,9 +10,13 @@ import java.util.List;
 import java.util.UUID;
 import java.util.function.Supplier;
 
+import javax.annotation.Nullable;
+
 import org.adempiere.ad.dao.IQueryBL;
+import org.adempiere.ad.trx.api.ITrx;
 import org.adempiere.model.PlainContextAware;
 import org.compiere.model.IQuery;
+import org.compiere.util.Env;
 import org.springframework.stereotype.Service;
 
 import com.google.common.collect.ImmutableList;
@@ -116,10 +121,21 @@ public class EventLogService
 	}
 
 	public void storeEventLogEntry(@NonNull final EventLogEntry eventLogEntry)
+	{
+		storeEventLogEntry(eventLogEntry, ITrx.TRXNAME_None);
+	}
+
+	/**
+	 * Like {@link #storeEventLogEntry(EventLogEntry)}, but the entry is stored in the given transaction, i.e. it only exists if that transaction is committed.
+	 * Note that the {@link I_AD_EventLog} record itself is still created and updated out of transaction, so that it's not locked until the given transaction is done.
+	 *
+	 * @return the ID of the stored {@link I_AD_EventLog_Entry}
+	 */
+	public int storeEventLogEntry(@NonNull final EventLogEntry eventLogEntry, @Nullable final String trxName)
 	{
 		final int eventLogRecordId = retrieveOrCreateEventLogIdUsingCacheOutOfTrx(eventLogEntry.getUuid());
 
-		final I_AD_EventLog_Entry eventLogEntryRecord = newInstance(I_AD_EventLog_Entry.class, PlainContextAware.newOutOfTrx());
+		final I_AD_EventLog_Entry eventLogEntryRecord = newInstance(I_AD_EventLog_Entry.class, PlainContextAware.newWithTrxName(Env.getCtx(), trxName));
 
 		setValue(eventLogEntryRecord, I_AD_EventLog_Entry.COLUMNNAME_AD_Client_ID, eventLogEntry.getClientId());
 		eventLogEntryRecord.setAD_Org_ID(eventLogEntry.getOrgId());
@@ -132,7 +148,7 @@ public class EventLogService
 		eventLogEntryRecord.setClassname(eventLogEntry.getEventHandlerClassName());
 		save(eventLogEntryRecord);
 
-		final I_AD_EventLog eventLogRecord = eventLogEntryRecord.getAD_EventLog();
+		final I_AD_EventLog eventLogRecord = loadOutOfTrx(eventLogRecordId, I_AD_EventLog.class);
 		if (eventLogEntry.isError())
 		{
 			eventLogRecord.setIsError(true);
@@ -144,6 +160,8 @@ public class EventLogService
 			eventLogRecord.setAD_Org_ID(eventLogEntry.getOrgId()); // different event log entries with different orgs: sort them out when they occur
 		}
 		save(eventLogRecord);
+
+		return eventLogEntryRecord.getAD_EventLog_Entry_ID();
 	}
 
 	private int retrieveOrCreateEventLogIdUsingCacheOutOfTrx(@NonNull final UUID uuid)
@@ -143,6 +143,10 @@ public class EventLogUserService
 
 		@Default
 		boolean onlyIfNotAlreadyProcessed = true;
+
+		/** If {@code true}, a failure is not logged but rethrown, so that the caller can handle it */
+		@Default
+		boolean rethrowFailure = false;
 	}
 
 	/**
@@ -168,6 +172,11 @@ public class EventLogUserService
 		}
 		catch (final RuntimeException e)
 		{
+			if (request.isRethrowFailure())
+			{
+				throw e;
+			}
+
 			// e.printStackTrace();
 			newErrorLogEntry(
 					request.getHandlerClass(), e)
@@ -3,6 +3,8 @@ package de.metas.event.log.impl;
 import java.util.ArrayList;
 import java.util.List;
 
+import javax.annotation.Nullable;
+
 import org.adempiere.util.lang.IAutoCloseable;
 import org.compiere.Adempiere;
 
@@ -77,6 +79,15 @@ public class EventLogEntryCollector implements IAutoCloseable
 		return eventLogCollector;
 	}
 
+	/**
+	 * @return the current thread's collector or {@code null} if the current thread is not handling an event
+	 */
+	@Nullable
+	public static EventLogEntryCollector getThreadLocalOrNull()
+	{
+		return threadLocalCollector.get();
+	}
+
 	public void addEventLog(@NonNull final EventLogEntryRequest eventLogRequest)
 	{
 		final EventLogEntry eventLog = EventLogEntry.builder().uuid(event.getUuid())
@@ -0,0 +1,268 @@
+package org.adempiere.ad.persistence.po;
+
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.adempiere.ad.sequence.TableIDBlock;
+import org.adempiere.ad.sequence.TableIDBlockAllocator;
+import org.adempiere.exceptions.AdempiereException;
+import org.adempiere.exceptions.DBException;
+import org.compiere.model.MSequence;
+import org.compiere.model.PO;
+import org.compiere.model.POInfo;
+import org.compiere.util.DB;
+import org.compiere.util.DisplayType;
+import org.slf4j.Logger;
+
+import com.google.common.annotations.VisibleForTesting;
+import com.google.common.collect.ImmutableList;
+
+import de.metas.logging.LogManager;
+import de.metas.util.Check;
+import lombok.NonNull;
+
+/*
+ * #%L
+ * de.metas.adempiere.adempiere.base
+ * %%
+ * Copyright (C) 2019 metas GmbH
+ * %%
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as
+ * published by the Free Software Foundation, either version 2 of the
+ * License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public
+ * License along with this program. If not, see
+ * <http://www.gnu.org/licenses/gpl-2.0.html>.
+ * #L%
+ */
+
+/**
+ * Inserts many new {@link PO}s of one table with batched JDBC <code>INSERT</code>s.
+ * <p>
+ * Unlike {@link PO#saveEx()}, this does <b>not</b> call <code>beforeSave</code>/<code>afterSave</code>, model interceptors, change logs or cache invalidation;
+ * the caller is responsible for everything that needs to happen besides the plain insert.
+ * Database triggers are fired as usual.
+ * <p>
+ * The POs are not updated after the insert, so they must not be saved again.
+ */
+public final class POBulkInserter
+{
+	private static final transient Logger logger = LogManager.getLogger(POBulkInserter.class);
+
+	private static final int BATCH_SIZE = 1000;
+
+	private POBulkInserter()
+	{
+	}
+
+	/**
+	 * Sets new IDs to the given POs, reserving all of them from <code>AD_Sequence</code> (or the native DB sequence) in one go.
+	 */
+	public static void assignNewIDs(@NonNull final List<? extends PO> pos)
+	{
+		if (pos.isEmpty())
+		{
+			return;
+		}
+
+		final PO firstPO = pos.get(0);
+		final String tableName = firstPO.get_TableName();
+		final POInfo poInfo = POInfo.getPOInfo(tableName);
+		Check.assume(poInfo.isSingleKeyColumnName(), "Table {} has a single key column", tableName);
+
+		assignIDs(pos, poInfo.getKeyColumnName(), retrieveNewIDs(tableName, firstPO.getAD_Client_ID(), pos.size()));
+	}
+
+	@VisibleForTesting
+	static void assignIDs(final List<? extends PO> pos, final String keyColumnName, final List<Integer> ids)
+	{
+		Check.assume(pos.size() == ids.size(), "There is one ID per PO; pos={}, ids={}", pos, ids);
+		for (int i = 0; i < pos.size(); i++)
+		{
+			final PO po = pos.get(i);
+			Check.assume(po.is_new(), "PO is new: {}", po);
+			po.set_ValueNoCheck(keyColumnName, ids.get(i));
+		}
+	}
+
+	private static List<Integer> retrieveNewIDs(final String tableName, final int adClientId, final int count)
+	{
+		final List<Integer> ids = new ArrayList<>(count);
+		if (DB.isUseNativeSequences(adClientId, tableName))
+		{
+			final String sql = "SELECT " + DB.TO_TABLESEQUENCE_NEXTVAL(tableName) + " FROM generate_series(1, ?)";
+			PreparedStatement pstmt = null;
+			ResultSet rs = null;
+			try
+			{
+				pstmt = DB.prepareStatement(sql, null);
+				DB.setParameters(pstmt, count);
+				rs = pstmt.executeQuery();
+				while (rs.next())
+				{
+					ids.add(rs.getInt(1));
+				}
+			}
+			catch (final SQLException ex)
+			{
+				throw new DBException(ex, sql);
+			}
+			finally
+			{
+				DB.close(rs, pstmt);
+			}
+			return ids;
+		}
+
+		final boolean adempiereSys = MSequence.isAdempiereSys(adClientId);
+		final TableIDBlockAllocator tableIDBlockAllocator = TableIDBlockAllocator.get();
+		if (tableIDBlockAllocator.isEnabled(tableName))
+		{
+			for (int i = 0; i < count; i++)
+			{
+				ids.add(tableIDBlockAllocator.nextId(tableName, adempiereSys));
+			}
+			return ids;
+		}
+
+		final TableIDBlock block = MSequence.reserveTableIDBlock(tableName, adempiereSys, count);
+		for (int i = 0; i < count; i++)
+		{
+			ids.add(block.nextIdOrZero());
+		}
+		return ids;
+	}
+
+	/**
+	 * Inserts the given POs. All of them need to be new POs of the same table and already have their IDs, see {@link #assignNewIDs(List)}.
+	 * <p>
+	 * Like {@link PO#saveEx()}, columns without value are not inserted, so that their database defaults apply.
+	 */
+	public static void insert(@NonNull final List<? extends PO> pos, final String trxName)
+	{
+		if (pos.isEmpty())
+		{
+			return;
+		}
+
+		final String tableName = pos.get(0).get_TableName();
+		final POInfo poInfo = POInfo.getPOInfo(tableName);
+		final Map<ImmutableList<Integer>, List<PO>> columnIndexes2pos = groupByColumnIndexesToInsert(pos, poInfo);
+
+		final long startMillis = System.currentTimeMillis();
+		columnIndexes2pos.forEach((columnIndexes, posWithSameColumns) -> insert(poInfo, columnIndexes, posWithSameColumns, trxName));
+		logger.debug("Inserted {} {} records with {} statement(s) in {}ms", pos.size(), tableName, columnIndexes2pos.size(), System.currentTimeMillis() - startMillis);
+	}
+
+	/**
+	 * Groups the POs by the columns that have values, so that we need one statement per group.
+	 */
+	@VisibleForTesting
+	static Map<ImmutableList<Integer>, List<PO>> groupByColumnIndexesToInsert(final List<? extends PO> pos, final POInfo poInfo)
+	{
+		final String tableName = poInfo.getTableName();
+		final String keyColumnName = poInfo.getKeyColumnName();
+
+		final Map<ImmutableList<Integer>, List<PO>> columnIndexes2pos = new LinkedHashMap<>();
+		for (final PO po : pos)
+		{
+			Check.assume(tableName.equals(po.get_TableName()), "All POs are from table {}: {}", tableName, po);
+			Check.assume(po.get_ValueAsInt(keyColumnName) > 0, "PO has an ID: {}", po);
+
+			columnIndexes2pos.computeIfAbsent(extractColumnIndexesToInsert(po, poInfo), k -> new ArrayList<>()).add(po);
+		}
+		return columnIndexes2pos;
+	}
+
+	private static ImmutableList<Integer> extractColumnIndexesToInsert(final PO po, final POInfo poInfo)
+	{
+		final ImmutableList.Builder<Integer> columnIndexes = ImmutableList.builder();
+		for (int i = 0; i < poInfo.getColumnCount(); i++)
+		{
+			if (poInfo.isVirtualColumn(i) || po.get_Value(i) == null)
+			{
+				continue;
+			}
+			if (DisplayType.isLOB(poInfo.getColumnDisplayType(i)) || poInfo.isEncrypted(i))
+			{
+				throw new AdempiereException("Bulk insert of LOB or encrypted columns is not supported")
+						.appendParametersToMessage()
+						.setParameter("column", poInfo.getColumnName(i))
+						.setParameter("po", po);
+			}
+			columnIndexes.add(i);
+		}
+		return columnIndexes.build();
+	}
+
+	private static void insert(final POInfo poInfo, final List<Integer> columnIndexes, final List<PO> pos, final String trxName)
+	{
+		final String sql = buildInsertSql(poInfo, columnIndexes);
+
+		PreparedStatement pstmt = null;
+		try
+		{
+			pstmt = DB.prepareStatement(sql, trxName);
+			int batchCount = 0;
+			for (final PO po : pos)
+			{
+				int parameterIndex = 1;
+				for (final int columnIndex : columnIndexes)
+				{
+					DB.setParameter(pstmt, parameterIndex, po.get_Value(columnIndex));
+					parameterIndex++;
+				}
+				pstmt.addBatch();
+				batchCount++;
+
+				if (batchCount >= BATCH_SIZE)
+				{
+					pstmt.executeBatch();
+					batchCount = 0;
+				}
+			}
+			if (batchCount > 0)
+			{
+				pstmt.executeBatch();
+			}
+		}
+		catch (final SQLException ex)
+		{
+			throw new DBException(ex.getNextException() != null ? ex.getNextException() : ex, sql);
+		}
+		finally
+		{
+			DB.close(pstmt);
+		}
+	}
+
+	@VisibleForTesting
+	static String buildInsertSql(final POInfo poInfo, final List<Integer> columnIndexes)
+	{
+		final StringBuilder sqlColumns = new StringBuilder();
+		final StringBuilder sqlValues = new StringBuilder();
+		for (final int columnIndex : columnIndexes)
+		{
+			if (sqlColumns.length() > 0)
+			{
+				sqlColumns.append(",");
+				sqlValues.append(",");
+			}
+			sqlColumns.append(poInfo.getColumnName(columnIndex));
+			sqlValues.append("?");
+		}
+		return "INSERT INTO " + poInfo.getTableName() + " (" + sqlColumns + ") VALUES (" + sqlValues + ")";
+	}
+}
@@ -0,0 +1,98 @@
+package org.adempiere.ad.sequence;
+
+import java.util.concurrent.atomic.AtomicInteger;
+
+import de.metas.util.Check;
+import lombok.ToString;
+
+/*
+ * #%L
+ * de.metas.adempiere.adempiere.base
+ * %%
+ * Copyright (C) 2019 metas GmbH
+ * %%
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as
+ * published by the Free Software Foundation, either version 2 of the
+ * License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public
+ * License along with this program.  If not, see
+ * <http://www.gnu.org/licenses/gpl-2.0.html>.
+ * #L%
+ */
+
+/**
+ * A range of table IDs which was reserved in <code>AD_Sequence</code> in one go.
+ * <p>
+ * IDs are handed out lock-free; the block is exhausted when {@link #nextIdOrZero()} returns zero.
+ */
+@ToString
+public final class TableIDBlock
+{
+	public static TableIDBlock of(final int firstId, final int incrementNo, final int size)
+	{
+		return new TableIDBlock(firstId, incrementNo, size);
+	}
+
+	public static final TableIDBlock EMPTY = new TableIDBlock();
+
+	private final int firstId;
+	private final int incrementNo;
+	private final int size;
+	private final AtomicInteger nextIndex = new AtomicInteger(0);
+
+	private TableIDBlock(final int firstId, final int incrementNo, final int size)
+	{
+		Check.assume(firstId > 0, "firstId > 0 but it was {}", firstId);
+		Check.assume(incrementNo > 0, "incrementNo > 0 but it was {}", incrementNo);
+		Check.assume(size > 0, "size > 0 but it was {}", size);
+
+		this.firstId = firstId;
+		this.incrementNo = incrementNo;
+		this.size = size;
+	}
+
+	private TableIDBlock()
+	{
+		this.firstId = 0;
+		this.incrementNo = 1;
+		this.size = 0;
+	}
+
+	/**
+	 * @return next ID from this block or zero if the block is exhausted
+	 */
+	public int nextIdOrZero()
+	{
+		if (nextIndex.get() >= size)
+		{
+			return 0; // avoid increasing the counter forever when exhausted
+		}
+
+		final int index = nextIndex.getAndIncrement();
+		if (index >= size)
+		{
+			return 0;
+		}
+		return firstId + index * incrementNo;
+	}
+
+	/**
+	 * @return how many IDs are still available in this block
+	 */
+	public int getRemaining()
+	{
+		return Math.max(size - nextIndex.get(), 0);
+	}
+
+	public int getSize()
+	{
+		return size;
+	}
+}
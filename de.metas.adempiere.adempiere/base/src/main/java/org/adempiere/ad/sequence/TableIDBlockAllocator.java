@@ -0,0 +1,132 @@
+package org.adempiere.ad.sequence;
+
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executor;
+
+import org.adempiere.ad.sequence.jmx.JMXTableIDBlockAllocator;
+import org.adempiere.ad.service.ITaskExecutorService;
+import org.adempiere.service.ISysConfigBL;
+import org.adempiere.util.jmx.JMXRegistry;
+import org.adempiere.util.jmx.JMXRegistry.OnJMXAlreadyExistsPolicy;
+import org.compiere.model.MSequence;
+
+import com.google.common.annotations.VisibleForTesting;
+import com.google.common.collect.ImmutableList;
+
+import de.metas.util.GuavaCollectors;
+import de.metas.util.Services;
+import lombok.NonNull;
+
+/*
+ * #%L
+ * de.metas.adempiere.adempiere.base
+ * %%
+ * Copyright (C) 2019 metas GmbH
+ * %%
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as
+ * published by the Free Software Foundation, either version 2 of the
+ * License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public
+ * License along with this program.  If not, see
+ * <http://www.gnu.org/licenses/gpl-2.0.html>.
+ * #L%
+ */
+
+/**
+ * Per-JVM allocator of table IDs which reserves whole blocks of IDs in <code>AD_Sequence</code> and serves them from memory.
+ * <p>
+ * The block size is configured by the sysconfig {@value #SYSCONFIG_BlockSize}, which can be overridden per table by appending <code>.TableName</code>.
+ * A block size less or equal to one disables the pooling, which is the default.
+ */
+public final class TableIDBlockAllocator
+{
+	public static TableIDBlockAllocator get()
+	{
+		return instance;
+	}
+
+	private static final TableIDBlockAllocator instance = new TableIDBlockAllocator(
+			MSequence::reserveTableIDBlock,
+			task -> Services.get(ITaskExecutorService.class).submit(task, TableIDBlockAllocator.class.getSimpleName()));
+
+	public static final String SYSCONFIG_BlockSize = "org.compiere.model.MSequence.TableIDBlockSize";
+
+	private final TableIDBlockSupplier blockSupplier;
+	private final Executor refillExecutor;
+
+	private final ConcurrentHashMap<String, TableIDBlockPool> pools = new ConcurrentHashMap<>();
+	private final TableIDBlockStatistics statistics = new TableIDBlockStatistics();
+
+	@VisibleForTesting
+	TableIDBlockAllocator(
+			@NonNull final TableIDBlockSupplier blockSupplier,
+			@NonNull final Executor refillExecutor)
+	{
+		this.blockSupplier = blockSupplier;
+		this.refillExecutor = refillExecutor;
+
+		JMXRegistry.get().registerJMX(new JMXTableIDBlockAllocator(this), OnJMXAlreadyExistsPolicy.Replace);
+	}
+
+	/**
+	 * @return true if the IDs of given table shall be served from an in-memory pool
+	 */
+	public boolean isEnabled(@NonNull final String tableName)
+	{
+		return getBlockSize(tableName) > 1;
+	}
+
+	public int getBlockSize(@NonNull final String tableName)
+	{
+		final ISysConfigBL sysConfigBL = Services.get(ISysConfigBL.class);
+		final int defaultBlockSize = sysConfigBL.getIntValue(SYSCONFIG_BlockSize, 0);
+		return sysConfigBL.getIntValue(SYSCONFIG_BlockSize + "." + tableName, defaultBlockSize);
+	}
+
+	public int nextId(@NonNull final String tableName, final boolean adempiereSys)
+	{
+		return getPool(tableName, adempiereSys).nextId();
+	}
+
+	private TableIDBlockPool getPool(final String tableName, final boolean adempiereSys)
+	{
+		final String key = tableName.toUpperCase() + (adempiereSys ? "#Sys" : "");
+		return pools.computeIfAbsent(key, k -> TableIDBlockPool.builder()
+				.tableName(tableName)
+				.adempiereSys(adempiereSys)
+				.blockSizeSupplier(() -> getBlockSize(tableName))
+				.blockSupplier(blockSupplier)
+				.refillExecutor(refillExecutor)
+				.statistics(statistics)
+				.build());
+	}
+
+	public TableIDBlockStatistics getStatistics()
+	{
+		return statistics;
+	}
+
+	public ImmutableList<String> getPoolInfos()
+	{
+		return pools.values()
+				.stream()
+				.map(TableIDBlockPool::toString)
+				.sorted()
+				.collect(GuavaCollectors.toImmutableList());
+	}
+
+	/**
+	 * Forgets all pools. IDs which were reserved but not yet served are lost.
+	 */
+	public void reset()
+	{
+		pools.clear();
+	}
+}
@@ -0,0 +1,202 @@
+package org.adempiere.ad.sequence;
+
+import java.util.concurrent.Executor;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.IntSupplier;
+
+import org.slf4j.Logger;
+
+import de.metas.logging.LogManager;
+import lombok.Builder;
+import lombok.NonNull;
+
+/*
+ * #%L
+ * de.metas.adempiere.adempiere.base
+ * %%
+ * Copyright (C) 2019 metas GmbH
+ * %%
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as
+ * published by the Free Software Foundation, either version 2 of the
+ * License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public
+ * License along with this program.  If not, see
+ * <http://www.gnu.org/licenses/gpl-2.0.html>.
+ * #L%
+ */
+
+/**
+ * Serves the table IDs of one table from in-memory {@link TableIDBlock}s.
+ * <p>
+ * When the current block runs low, the next block is reserved asynchronously, so that usually no caller has to wait for <code>AD_Sequence</code>.
+ * Only if the current block is exhausted and there is no prepared block, the calling thread reserves one itself.
+ * <p>
+ * IDs which were reserved but not used when the JVM stops are lost, which leaves gaps in the table's IDs.
+ */
+final class TableIDBlockPool
+{
+	private static final transient Logger logger = LogManager.getLogger(TableIDBlockPool.class);
+
+	private final String tableName;
+	private final boolean adempiereSys;
+	private final IntSupplier blockSizeSupplier;
+	private final TableIDBlockSupplier blockSupplier;
+	private final Executor refillExecutor;
+	private final TableIDBlockStatistics statistics;
+
+	private final AtomicReference<TableIDBlock> currentBlockRef = new AtomicReference<>(TableIDBlock.EMPTY);
+	private final AtomicReference<TableIDBlock> nextBlockRef = new AtomicReference<>(null);
+	private final AtomicBoolean asyncRefillRunning = new AtomicBoolean(false);
+	private final Object switchBlockLock = new Object();
+
+	@Builder
+	private TableIDBlockPool(
+			@NonNull final String tableName,
+			final boolean adempiereSys,
+			@NonNull final IntSupplier blockSizeSupplier,
+			@NonNull final TableIDBlockSupplier blockSupplier,
+			@NonNull final Executor refillExecutor,
+			@NonNull final TableIDBlockStatistics statistics)
+	{
+		this.tableName = tableName;
+		this.adempiereSys = adempiereSys;
+		this.blockSizeSupplier = blockSizeSupplier;
+		this.blockSupplier = blockSupplier;
+		this.refillExecutor = refillExecutor;
+		this.statistics = statistics;
+	}
+
+	@Override
+	public String toString()
+	{
+		final TableIDBlock nextBlock = nextBlockRef.get();
+		return tableName + (adempiereSys ? "(Sys)" : "")
+				+ ": remaining=" + currentBlockRef.get().getRemaining()
+				+ ", prepared=" + (nextBlock != null ? nextBlock.getRemaining() : 0);
+	}
+
+	public int nextId()
+	{
+		boolean hit = true;
+		while (true)
+		{
+			final TableIDBlock block = currentBlockRef.get();
+			final int id = block.nextIdOrZero();
+			if (id > 0)
+			{
+				statistics.onRequest(hit);
+				if (block.getRemaining() <= getRefillThreshold(block))
+				{
+					scheduleAsyncRefill();
+				}
+				return id;
+			}
+
+			if (!switchToNextBlock(block))
+			{
+				hit = false;
+			}
+		}
+	}
+
+	private static int getRefillThreshold(final TableIDBlock block)
+	{
+		return Math.max(block.getSize() / 4, 1);
+	}
+
+	/**
+	 * Replaces the given exhausted block with the prepared one or, if there is none, with a block reserved by the calling thread.
+	 *
+	 * @return false if the calling thread had to reserve the new block itself
+	 */
+	private boolean switchToNextBlock(final TableIDBlock exhaustedBlock)
+	{
+		synchronized (switchBlockLock)
+		{
+			if (currentBlockRef.get() != exhaustedBlock)
+			{
+				return true; // another thread already switched
+			}
+
+			TableIDBlock nextBlock = nextBlockRef.getAndSet(null);
+			final boolean prepared = nextBlock != null;
+			if (!prepared)
+			{
+				nextBlock = reserveBlock(false);
+			}
+
+			currentBlockRef.set(nextBlock);
+			return prepared;
+		}
+	}
+
+	private void scheduleAsyncRefill()
+	{
+		if (nextBlockRef.get() != null)
+		{
+			return;
+		}
+		if (!asyncRefillRunning.compareAndSet(false, true))
+		{
+			return;
+		}
+
+		try
+		{
+			refillExecutor.execute(this::asyncRefill);
+		}
+		catch (final RuntimeException ex)
+		{
+			asyncRefillRunning.set(false);
+			logger.warn("Failed scheduling the ID block refill for {}. Next block will be reserved synchronously.", tableName, ex);
+		}
+	}
+
+	private void asyncRefill()
+	{
+		try
+		{
+			if (nextBlockRef.get() != null)
+			{
+				return;
+			}
+
+			final TableIDBlock block = reserveBlock(true);
+			if (!nextBlockRef.compareAndSet(null, block))
+			{
+				// shall not happen, because we are the only one setting it; the block's IDs would be lost
+				logger.warn("Discarding reserved ID block {} for {} because there is already a prepared block", block, tableName);
+			}
+		}
+		catch (final Exception ex)
+		{
+			logger.warn("Failed reserving the next ID block for {}. Next block will be reserved synchronously.", tableName, ex);
+		}
+		finally
+		{
+			asyncRefillRunning.set(false);
+		}
+	}
+
+	private TableIDBlock reserveBlock(final boolean async)
+	{
+		final int blockSize = Math.max(blockSizeSupplier.getAsInt(), 1);
+
+		final long startNanos = System.nanoTime();
+		final TableIDBlock block = blockSupplier.reserve(tableName, adempiereSys, blockSize);
+		final long durationNanos = System.nanoTime() - startNanos;
+
+		statistics.onRefill(async, durationNanos);
+		logger.debug("Reserved {} for {} (async={}) in {}ns", block, tableName, async, durationNanos);
+
+		return block;
+	}
+}
@@ -0,0 +1,114 @@
+package org.adempiere.ad.sequence;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+/*
+ * #%L
+ * de.metas.adempiere.adempiere.base
+ * %%
+ * Copyright (C) 2019 metas GmbH
+ * %%
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as
+ * published by the Free Software Foundation, either version 2 of the
+ * License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public
+ * License along with this program.  If not, see
+ * <http://www.gnu.org/licenses/gpl-2.0.html>.
+ * #L%
+ */
+
+/**
+ * Counters of {@link TableIDBlockAllocator}, shared by all its pools.
+ */
+public final class TableIDBlockStatistics
+{
+	private final LongAdder requests = new LongAdder();
+	private final LongAdder hits = new LongAdder();
+	private final LongAdder syncRefills = new LongAdder();
+	private final LongAdder asyncRefills = new LongAdder();
+	private final LongAdder refillTimeNanos = new LongAdder();
+	private final AtomicLong maxRefillTimeNanos = new AtomicLong(0);
+
+	void onRequest(final boolean hit)
+	{
+		requests.increment();
+		if (hit)
+		{
+			hits.increment();
+		}
+	}
+
+	void onRefill(final boolean async, final long durationNanos)
+	{
+		if (async)
+		{
+			asyncRefills.increment();
+		}
+		else
+		{
+			syncRefills.increment();
+		}
+
+		refillTimeNanos.add(durationNanos);
+		maxRefillTimeNanos.accumulateAndGet(durationNanos, Math::max);
+	}
+
+	public long getRequests()
+	{
+		return requests.sum();
+	}
+
+	/**
+	 * @return how many IDs were served without the calling thread having to wait for an <code>AD_Sequence</code> round trip
+	 */
+	public long getHits()
+	{
+		return hits.sum();
+	}
+
+	public double getHitRatePercent()
+	{
+		final long requests = getRequests();
+		return requests > 0 ? getHits() * 100d / requests : 0d;
+	}
+
+	public long getSyncRefills()
+	{
+		return syncRefills.sum();
+	}
+
+	public long getAsyncRefills()
+	{
+		return asyncRefills.sum();
+	}
+
+	public long getAvgRefillMillis()
+	{
+		final long refills = getSyncRefills() + getAsyncRefills();
+		return refills > 0 ? TimeUnit.NANOSECONDS.toMillis(refillTimeNanos.sum() / refills) : 0;
+	}
+
+	public long getMaxRefillMillis()
+	{
+		return TimeUnit.NANOSECONDS.toMillis(maxRefillTimeNanos.get());
+	}
+
+	public void reset()
+	{
+		requests.reset();
+		hits.reset();
+		syncRefills.reset();
+		asyncRefills.reset();
+		refillTimeNanos.reset();
+		maxRefillTimeNanos.set(0);
+	}
+}
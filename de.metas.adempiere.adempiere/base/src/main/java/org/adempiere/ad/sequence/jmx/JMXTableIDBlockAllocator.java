@@ -0,0 +1,100 @@
+package org.adempiere.ad.sequence.jmx;
+
+/*
+ * #%L
+ * de.metas.adempiere.adempiere.base
+ * %%
+ * Copyright (C) 2019 metas GmbH
+ * %%
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as
+ * published by the Free Software Foundation, either version 2 of the
+ * License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public
+ * License along with this program.  If not, see
+ * <http://www.gnu.org/licenses/gpl-2.0.html>.
+ * #L%
+ */
+
+import org.adempiere.ad.sequence.TableIDBlockAllocator;
+import org.adempiere.util.jmx.IJMXNameAware;
+
+import lombok.NonNull;
+
+public class JMXTableIDBlockAllocator implements JMXTableIDBlockAllocatorMBean, IJMXNameAware
+{
+	private final TableIDBlockAllocator allocator;
+	private final String jmxName;
+
+	public JMXTableIDBlockAllocator(@NonNull final TableIDBlockAllocator allocator)
+	{
+		this.allocator = allocator;
+		this.jmxName = "org.compiere.model.MSequence:type=" + TableIDBlockAllocator.class.getSimpleName();
+	}
+
+	@Override
+	public String getJMXName()
+	{
+		return jmxName;
+	}
+
+	@Override
+	public long getRequests()
+	{
+		return allocator.getStatistics().getRequests();
+	}
+
+	@Override
+	public long getHits()
+	{
+		return allocator.getStatistics().getHits();
+	}
+
+	@Override
+	public double getHitRatePercent()
+	{
+		return allocator.getStatistics().getHitRatePercent();
+	}
+
+	@Override
+	public long getSyncRefills()
+	{
+		return allocator.getStatistics().getSyncRefills();
+	}
+
+	@Override
+	public long getAsyncRefills()
+	{
+		return allocator.getStatistics().getAsyncRefills();
+	}
+
+	@Override
+	public long getAvgRefillMillis()
+	{
+		return allocator.getStatistics().getAvgRefillMillis();
+	}
+
+	@Override
+	public long getMaxRefillMillis()
+	{
+		return allocator.getStatistics().getMaxRefillMillis();
+	}
+
+	@Override
+	public String[] getPoolInfos()
+	{
+		return allocator.getPoolInfos().toArray(new String[0]);
+	}
+
+	@Override
+	public void resetStatistics()
+	{
+		allocator.getStatistics().reset();
+	}
+}
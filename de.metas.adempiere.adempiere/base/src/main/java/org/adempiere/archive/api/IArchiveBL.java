@@ -115,4 +115,9 @@ public interface IArchiveBL extends ISingletonService
 	InputStream getBinaryDataAsStream(I_AD_Archive archive);
 
 	void setBinaryData(I_AD_Archive archive, byte[] data);
+
+	/**
+	 * Sets the archive's data from the given stream, without loading it into memory if the archive's storage supports it. The stream is not closed.
+	 */
+	void setBinaryData(I_AD_Archive archive, InputStream data);
 }
@@ -29,11 +29,13 @@ import java.util.concurrent.ConcurrentHashMap;
 
 import org.adempiere.archive.api.IArchiveStorageFactory;
 import org.adempiere.archive.spi.IArchiveStorage;
+import org.adempiere.archive.spi.impl.ContentAddressedArchiveStorage;
 import org.adempiere.archive.spi.impl.DBArchiveStorage;
 import org.adempiere.archive.spi.impl.FilesystemArchiveStorage;
 import org.adempiere.exceptions.AdempiereException;
 import org.adempiere.model.InterfaceWrapperHelper;
 import org.adempiere.service.IClientDAO;
+import org.adempiere.service.ISysConfigBL;
 import org.adempiere.util.proxy.Cached;
 import org.compiere.model.I_AD_Archive;
 import org.compiere.model.I_AD_Client;
@@ -47,6 +49,9 @@ import de.metas.util.Services;
 
 public class ArchiveStorageFactory implements IArchiveStorageFactory
 {
+	/** If enabled, clients which store their archives on the filesystem store new archives with {@link ContentAddressedArchiveStorage}. */
+	private static final String SYSCONFIG_ContentAddressedStorageEnabled = "org.adempiere.archive.api.impl.ArchiveStorageFactory.ContentAddressedStorageEnabled";
+
 	private final Map<ArrayKey, Class<? extends IArchiveStorage>> storageClasses = new ConcurrentHashMap<ArrayKey, Class<? extends IArchiveStorage>>();
 
 	public ArchiveStorageFactory()
@@ -54,6 +59,7 @@ public class ArchiveStorageFactory implements IArchiveStorageFactory
 		// Register defaults
 		registerArchiveStorage(STORAGETYPE_Database, AccessMode.ALL, DBArchiveStorage.class);
 		registerArchiveStorage(STORAGETYPE_Filesystem, AccessMode.SERVER, FilesystemArchiveStorage.class);
+		registerArchiveStorage(STORAGETYPE_ContentAddressed, AccessMode.SERVER, ContentAddressedArchiveStorage.class);
 	}
 
 	private static final ArrayKey createStorageClassesKey(final String storageType, final AccessMode accessMode)
@@ -100,7 +106,8 @@ public class ArchiveStorageFactory implements IArchiveStorageFactory
 		final I_AD_Client client = Services.get(IClientDAO.class).retriveClient(ctx, adClientId);
 		if (client.isStoreArchiveOnFileSystem())
 		{
-			return STORAGETYPE_Filesystem;
+			final boolean contentAddressed = Services.get(ISysConfigBL.class).getBooleanValue(SYSCONFIG_ContentAddressedStorageEnabled, false, adClientId);
+			return contentAddressed ? STORAGETYPE_ContentAddressed : STORAGETYPE_Filesystem;
 		}
 		else
 		{
@@ -112,6 +119,15 @@ public class ArchiveStorageFactory implements IArchiveStorageFactory
 	{
 		if (archive.isFileSystem())
 		{
+			if (ContentAddressedArchiveStorage.isContentAddressedReference(archive.getBinaryData()))
+			{
+				return STORAGETYPE_ContentAddressed;
+			}
+			else if (archive.getBinaryData() == null || archive.getBinaryData().length == 0)
+			{
+				// new archive without data yet => it goes to the client's current storage
+				return getStorageType(InterfaceWrapperHelper.getCtx(archive), archive.getAD_Client_ID());
+			}
 			return STORAGETYPE_Filesystem;
 		}
 		else
@@ -0,0 +1,52 @@
+package org.adempiere.archive.model.interceptor;
+
+import org.adempiere.ad.modelvalidator.annotations.Interceptor;
+import org.adempiere.ad.modelvalidator.annotations.ModelChange;
+import org.adempiere.archive.api.IArchiveStorageFactory;
+import org.compiere.model.I_AD_Archive;
+import org.compiere.model.ModelValidator;
+
+import de.metas.util.Services;
+
+/*
+ * #%L
+ * de.metas.adempiere.adempiere.base
+ * %%
+ * Copyright (C) 2019 metas GmbH
+ * %%
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as
+ * published by the Free Software Foundation, either version 2 of the
+ * License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public
+ * License along with this program. If not, see
+ * <http://www.gnu.org/licenses/gpl-2.0.html>.
+ * #L%
+ */
+
+@Interceptor(I_AD_Archive.class)
+public class AD_Archive
+{
+	public static final transient AD_Archive instance = new AD_Archive();
+
+	private AD_Archive()
+	{
+	}
+
+	/**
+	 * Lets the archive's storage release the data, e.g. so that a content which is shared by several archives is deleted together with the last of them.
+	 */
+	@ModelChange(timings = ModelValidator.TYPE_BEFORE_DELETE)
+	public void releaseBinaryData(final I_AD_Archive archive)
+	{
+		Services.get(IArchiveStorageFactory.class)
+				.getArchiveStorage(archive)
+				.onArchiveDeleted(archive);
+	}
+}
@@ -23,11 +23,15 @@ package org.adempiere.archive.spi;
  */
 
 
+import java.io.IOException;
 import java.io.InputStream;
 import java.util.Properties;
 
+import org.adempiere.exceptions.AdempiereException;
 import org.compiere.model.I_AD_Archive;
 
+import com.google.common.io.ByteStreams;
+
 /**
  * Archive Storage (e.g. database, filesystem etc)
  * 
@@ -59,4 +63,32 @@ public interface IArchiveStorage
 	InputStream getBinaryDataAsStream(I_AD_Archive archive);
 
 	void setBinaryData(I_AD_Archive archive, byte[] data);
+
+	/**
+	 * Sets the archive's data from the given stream. The stream is consumed but not closed.
+	 * <p>
+	 * The default implementation reads the whole stream into memory and calls {@link #setBinaryData(I_AD_Archive, byte[])}.
+	 * Storages which are able to write the data as it comes shall override this method.
+	 */
+	default void setBinaryData(final I_AD_Archive archive, final InputStream data)
+	{
+		try
+		{
+			setBinaryData(archive, ByteStreams.toByteArray(data));
+		}
+		catch (final IOException ex)
+		{
+			throw new AdempiereException("Failed reading the data for " + archive, ex);
+		}
+	}
+
+	/**
+	 * Called when the given archive record is deleted, so that the storage can release the data it holds for it.
+	 * <p>
+	 * NOTE: don't call it directly, it's called by API
+	 */
+	default void onArchiveDeleted(final I_AD_Archive archive)
+	{
+		// nothing by default
+	}
 }
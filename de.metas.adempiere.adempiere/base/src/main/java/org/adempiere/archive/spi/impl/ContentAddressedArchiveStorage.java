@@ -0,0 +1,424 @@
+package org.adempiere.archive.spi.impl;
+
+import java.io.BufferedInputStream;
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileLock;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.security.DigestInputStream;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Properties;
+import java.util.concurrent.locks.Lock;
+
+import org.adempiere.ad.service.IDeveloperModeBL;
+import org.adempiere.ad.trx.api.ITrxListenerManager.TrxEventTiming;
+import org.adempiere.ad.trx.api.ITrxManager;
+import org.adempiere.exceptions.AdempiereException;
+import org.adempiere.model.InterfaceWrapperHelper;
+import org.adempiere.service.IClientDAO;
+import org.compiere.model.I_AD_Archive;
+import org.compiere.model.I_AD_Client;
+import org.compiere.util.Ini;
+import org.slf4j.Logger;
+
+import com.google.common.io.BaseEncoding;
+import com.google.common.util.concurrent.Striped;
+
+import de.metas.logging.LogManager;
+import de.metas.util.Check;
+import de.metas.util.Services;
+import lombok.NonNull;
+
+/*
+ * #%L
+ * de.metas.adempiere.adempiere.base
+ * %%
+ * Copyright (C) 2019 metas GmbH
+ * %%
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as
+ * published by the Free Software Foundation, either version 2 of the
+ * License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public
+ * License along with this program. If not, see
+ * <http://www.gnu.org/licenses/gpl-2.0.html>.
+ * #L%
+ */
+
+/**
+ * File system archive storage which stores each distinct content only once, under its SHA-256 hash.
+ * <p>
+ * The blobs are stored in the <code>cas</code> subfolder of the client's archive path, as <code>cas/ab/cd/abcd...</code>.
+ * Next to each blob there is a <code>.refs</code> file which counts the archives referencing it; the blob is deleted after the last of them was deleted.
+ * The archive's <code>BinaryData</code> only contains the reference ({@value #REFERENCE_PREFIX} followed by the hash).
+ * <p>
+ * Data is streamed from and to the files, so an archive never needs to be loaded into memory as a whole,
+ * unless one calls {@link #getBinaryData(I_AD_Archive)}.
+ */
+public class ContentAddressedArchiveStorage extends AbstractArchiveStorage
+{
+	private static final Logger logger = LogManager.getLogger(ContentAddressedArchiveStorage.class);
+
+	/** Prefix of the references this storage writes into <code>AD_Archive.BinaryData</code>. */
+	private static final String REFERENCE_PREFIX = "%ARCHIVE_CAS%";
+
+	private static final String FOLDER_NAME = "cas";
+	private static final String TEMP_FOLDER_NAME = "tmp";
+	private static final String REFS_FILE_SUFFIX = ".refs";
+	private static final String HASH_ALGORITHM = "SHA-256";
+
+	/**
+	 * {@link FileLock}s are held on behalf of the whole JVM, so threads of this JVM which update the same blob have to be serialized by us.
+	 */
+	private static final Striped<Lock> blobLocks = Striped.lock(64);
+
+	private Path rootPath;
+
+	@Override
+	public void init(final Properties ctx, final int adClientId)
+	{
+		final I_AD_Client client = Services.get(IClientDAO.class).retriveClient(ctx, adClientId);
+		this.rootPath = Paths.get(FilesystemArchiveStorage.getArchivePath(client), FOLDER_NAME);
+		logger.info("Archive Path: {}, Config={}", rootPath, client);
+	}
+
+	private final void checkContext()
+	{
+		Check.assume(!Ini.isClient() || Services.get(IDeveloperModeBL.class).isEnabled(), "Server mode required");
+
+		if (rootPath == null)
+		{
+			throw new IllegalArgumentException("ContentAddressedArchiveStorage is not configured. No root path defined.");
+		}
+	}
+
+	/**
+	 * @return true if the given <code>AD_Archive.BinaryData</code> is a reference written by this storage
+	 */
+	public static boolean isContentAddressedReference(final byte[] binaryData)
+	{
+		return extractHash(binaryData) != null;
+	}
+
+	private static String extractHash(final byte[] binaryData)
+	{
+		if (binaryData == null || binaryData.length <= REFERENCE_PREFIX.length())
+		{
+			return null;
+		}
+
+		final String reference = new String(binaryData, StandardCharsets.UTF_8);
+		if (!reference.startsWith(REFERENCE_PREFIX))
+		{
+			return null;
+		}
+		return reference.substring(REFERENCE_PREFIX.length());
+	}
+
+	private static String extractHash(final I_AD_Archive archive)
+	{
+		return extractHash(archive.getBinaryData());
+	}
+
+	@Override
+	public I_AD_Archive newArchive(final Properties ctx, final String trxName)
+	{
+		checkContext();
+
+		final I_AD_Archive archive = super.newArchive(ctx, trxName);
+		archive.setIsFileSystem(true);
+		return archive;
+	}
+
+	@Override
+	public byte[] getBinaryData(final I_AD_Archive archive)
+	{
+		final Path blobFile = getExistingBlobFile(archive);
+		if (blobFile == null)
+		{
+			return null;
+		}
+
+		try
+		{
+			return Files.readAllBytes(blobFile);
+		}
+		catch (final IOException ex)
+		{
+			throw new AdempiereException("Failed reading " + blobFile + " for " + archive, ex);
+		}
+	}
+
+	@Override
+	public InputStream getBinaryDataAsStream(final I_AD_Archive archive)
+	{
+		final Path blobFile = getExistingBlobFile(archive);
+		if (blobFile == null)
+		{
+			return null;
+		}
+
+		try
+		{
+			return new BufferedInputStream(Files.newInputStream(blobFile));
+		}
+		catch (final IOException ex)
+		{
+			throw new AdempiereException("Failed reading " + blobFile + " for " + archive, ex);
+		}
+	}
+
+	private Path getExistingBlobFile(final I_AD_Archive archive)
+	{
+		checkContext();
+
+		final byte[] binaryData = archive.getBinaryData();
+		if (binaryData == null)
+		{
+			return null;
+		}
+
+		final String hash = extractHash(binaryData);
+		if (hash == null)
+		{
+			throw new AdempiereException("No content reference was found for " + archive);
+		}
+
+		final Path blobFile = getBlobFile(hash);
+		if (!Files.exists(blobFile))
+		{
+			throw new AdempiereException("File not found: " + blobFile.toAbsolutePath());
+		}
+		return blobFile;
+	}
+
+	@Override
+	public void setBinaryData(final I_AD_Archive archive, final byte[] inflatedData)
+	{
+		if (inflatedData == null || inflatedData.length == 0)
+		{
+			throw new IllegalArgumentException("InflatedData is NULL");
+		}
+
+		setBinaryData(archive, new ByteArrayInputStream(inflatedData));
+	}
+
+	/**
+	 * Streams the given data into a temporary file while hashing it and then moves the file to its place, unless that content is already stored.
+	 */
+	@Override
+	public void setBinaryData(final I_AD_Archive archive, @NonNull final InputStream data)
+	{
+		checkContext();
+
+		final String previousHash = extractHash(archive);
+
+		Path tempFile = null;
+		try
+		{
+			final Path tempFolder = rootPath.resolve(TEMP_FOLDER_NAME);
+			Files.createDirectories(tempFolder);
+			tempFile = Files.createTempFile(tempFolder, "AD_Archive_", null);
+
+			final MessageDigest digest = MessageDigest.getInstance(HASH_ALGORITHM);
+			final long size = Files.copy(new DigestInputStream(data, digest), tempFile, StandardCopyOption.REPLACE_EXISTING);
+			if (size <= 0)
+			{
+				throw new IllegalArgumentException("InflatedData is NULL");
+			}
+
+			final String hash = BaseEncoding.base16().lowerCase().encode(digest.digest());
+			addReference(hash, tempFile);
+			tempFile = null; // moved or deleted by addReference
+
+			archive.setBinaryData((REFERENCE_PREFIX + hash).getBytes(StandardCharsets.UTF_8));
+			archive.setIsFileSystem(true);
+		}
+		catch (final IOException | NoSuchAlgorithmException ex)
+		{
+			throw new AdempiereException("Error saving data to filesystem (archive=" + archive + ")", ex);
+		}
+		finally
+		{
+			deleteQuietly(tempFile);
+		}
+
+		// the archive doesn't reference its former content anymore
+		if (previousHash != null)
+		{
+			releaseReferenceAfterCommit(archive, previousHash);
+		}
+	}
+
+	@Override
+	public void onArchiveDeleted(final I_AD_Archive archive)
+	{
+		final String hash = extractHash(archive);
+		if (hash == null)
+		{
+			return;
+		}
+
+		checkContext();
+		releaseReferenceAfterCommit(archive, hash);
+	}
+
+	/**
+	 * Releases the reference only after the archive's transaction was committed. If it's rolled back instead, the reference count stays as it is, so the data is never lost.
+	 * <p>
+	 * Note that vice versa, if the transaction which added a reference is rolled back, the blob keeps the count it got and is not deleted; it's a leak, but a harmless one.
+	 */
+	private void releaseReferenceAfterCommit(final I_AD_Archive archive, final String hash)
+	{
+		Services.get(ITrxManager.class)
+				.getTrxListenerManagerOrAutoCommit(InterfaceWrapperHelper.getTrxName(archive))
+				.newEventListener(TrxEventTiming.AFTER_COMMIT)
+				.registerHandlingMethod(innerTrx -> releaseReference(hash));
+	}
+
+	private void addReference(final String hash, final Path tempFile) throws IOException
+	{
+		final Path blobFile = getBlobFile(hash);
+		Files.createDirectories(blobFile.getParent());
+
+		updateReferencesCount(hash, count -> {
+			if (Files.exists(blobFile))
+			{
+				Files.delete(tempFile);
+			}
+			else
+			{
+				Files.move(tempFile, blobFile, StandardCopyOption.ATOMIC_MOVE);
+			}
+			return count + 1;
+		});
+	}
+
+	/* package */ void releaseReference(final String hash)
+	{
+		final Path blobFile = getBlobFile(hash);
+		try
+		{
+			updateReferencesCount(hash, count -> {
+				final long newCount = Math.max(count - 1, 0);
+				if (newCount <= 0)
+				{
+					// keep the refs file: deleting it would race with another process which is about to lock it
+					Files.deleteIfExists(blobFile);
+				}
+				return newCount;
+			});
+		}
+		catch (final IOException ex)
+		{
+			logger.warn("Failed releasing a reference to {}. Ignored.", blobFile, ex);
+		}
+	}
+
+	/* package */ long getReferencesCount(final String hash)
+	{
+		final Path refsFile = getRefsFile(hash);
+		try
+		{
+			return Files.exists(refsFile) ? parseReferencesCount(Files.readAllBytes(refsFile)) : 0;
+		}
+		catch (final IOException ex)
+		{
+			throw new AdempiereException("Failed reading " + refsFile, ex);
+		}
+	}
+
+	/* package */ Path getBlobFile(final String hash)
+	{
+		return rootPath.resolve(hash.substring(0, 2)).resolve(hash.substring(2, 4)).resolve(hash);
+	}
+
+	private Path getRefsFile(final String hash)
+	{
+		final Path blobFile = getBlobFile(hash);
+		return blobFile.resolveSibling(blobFile.getFileName() + REFS_FILE_SUFFIX);
+	}
+
+	@FunctionalInterface
+	private interface ReferencesCountUpdater
+	{
+		long update(long count) throws IOException;
+	}
+
+	/**
+	 * Calls the given updater with the current references count and stores the count it returns,
+	 * while holding a lock which is respected by all threads and processes that use the same archive folder.
+	 */
+	private void updateReferencesCount(final String hash, final ReferencesCountUpdater updater) throws IOException
+	{
+		final Path refsFile = getRefsFile(hash);
+		Files.createDirectories(refsFile.getParent());
+
+		final Lock lock = blobLocks.get(hash);
+		lock.lock();
+		try (final FileChannel channel = FileChannel.open(refsFile, StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+				final FileLock fileLock = channel.lock())
+		{
+			final ByteBuffer buffer = ByteBuffer.allocate((int)Math.min(channel.size(), 64));
+			while (buffer.hasRemaining() && channel.read(buffer) >= 0)
+			{
+				// read the whole count
+			}
+			final long count = parseReferencesCount(buffer.array());
+
+			final long newCount = updater.update(count);
+
+			channel.truncate(0);
+			channel.write(ByteBuffer.wrap(String.valueOf(newCount).getBytes(StandardCharsets.US_ASCII)), 0);
+			channel.force(false);
+		}
+		finally
+		{
+			lock.unlock();
+		}
+	}
+
+	private static long parseReferencesCount(final byte[] bytes)
+	{
+		final String countStr = new String(bytes, StandardCharsets.US_ASCII).trim();
+		return countStr.isEmpty() ? 0 : Long.parseLong(countStr);
+	}
+
+	private static void deleteQuietly(final Path file)
+	{
+		if (file == null)
+		{
+			return;
+		}
+
+		try
+		{
+			Files.deleteIfExists(file);
+		}
+		catch (final IOException ex)
+		{
+			logger.warn("Failed deleting temporary file {}. Ignored.", file, ex);
+		}
+	}
+
+	@Override
+	public String toString()
+	{
+		return "ContentAddressedArchiveStorage [RootPath=" + rootPath + "]";
+	}
+}
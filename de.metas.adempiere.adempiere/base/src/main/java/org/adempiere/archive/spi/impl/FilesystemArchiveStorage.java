@@ -87,7 +87,7 @@ public class FilesystemArchiveStorage extends AbstractArchiveStorage
 		}
 	}
 
-	private static final String getArchivePath(final I_AD_Client config)
+	/* package */ static final String getArchivePath(final I_AD_Client config)
 	{
 		String archivePathRoot;
 		if (File.separatorChar == '\\')
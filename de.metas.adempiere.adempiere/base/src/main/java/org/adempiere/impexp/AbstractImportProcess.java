@@ -34,8 +34,10 @@ import org.adempiere.ad.trx.api.ITrx;
 import org.adempiere.ad.trx.api.ITrxManager;
 import org.adempiere.exceptions.DBException;
 import org.adempiere.model.InterfaceWrapperHelper;
+import org.adempiere.service.ISysConfigBL;
 import org.adempiere.util.LoggerLoggable;
 import org.adempiere.util.api.IParams;
+import org.adempiere.util.lang.IAutoCloseable;
 import org.adempiere.util.lang.IMutable;
 import org.adempiere.util.lang.Mutable;
 import org.compiere.model.ModelValidationEngine;
@@ -75,6 +77,11 @@ public abstract class AbstractImportProcess<ImportRecordType> implements IImport
 	public static final String COLUMNNAME_Processed = "Processed";
 	public static final String COLUMNNAME_Processing = "Processing";
 
+	/** Number of import records which are imported in one transaction, see {@link #isImportInChunksSupported()}; can be overridden per import table by appending <code>.ImportTableName</code> */
+	public static final String SYSCONFIG_ChunkSize = "org.adempiere.impexp.AbstractImportProcess.ChunkSize";
+	/** Number of threads which import the chunks; can be overridden per import table by appending <code>.ImportTableName</code> */
+	public static final String SYSCONFIG_Threads = "org.adempiere.impexp.AbstractImportProcess.Threads";
+
 	// services
 	protected final transient Logger log = LogManager.getLogger(getClass());
 	protected final ITrxManager trxManager = Services.get(ITrxManager.class);
@@ -300,48 +307,18 @@ public abstract class AbstractImportProcess<ImportRecordType> implements IImport
 			pstmt = DB.prepareStatement(sql.toString(), ITrx.TRXNAME_None); // i.e. out of transaction
 			rs = pstmt.executeQuery();
 
-			final IMutable<Object> state = new Mutable<>();
-			while (rs.next())
+			if (isImportInChunks())
+			{
+				importDataInChunks(rs, importResult);
+			}
+			else
 			{
-				final ImportRecordType importRecord = retrieveImportRecord(ctx, rs);
-				trxManager.run(new TrxRunnableAdapter()
+				final IMutable<Object> state = new Mutable<>();
+				while (rs.next())
 				{
-					private ImportRecordResult recordImportResult;
-					private Throwable error;
-
-					@Override
-					public void run(final String localTrxName) throws Exception
-					{
-						this.recordImportResult = importRecord(state, importRecord);
-
-						markImported(importRecord);
-					}
-
-					@Override
-					public boolean doCatch(final Throwable e) throws Throwable
-					{
-						this.error = e;
-						return true; // rollback
-					}
-
-					@Override
-					public void doFinally()
-					{
-						if (error != null)
-						{
-							reportError(importRecord, error.getLocalizedMessage());
-							InterfaceWrapperHelper.markStaled(importRecord); // just in case some BL wants to get values from it
-						}
-						else if (recordImportResult == ImportRecordResult.Inserted)
-						{
-							importResult.incrementInsertCounter();
-						}
-						else if (recordImportResult == ImportRecordResult.Updated)
-						{
-							importResult.incrementUpdateCounter();
-						}
-					}
-				});
+					final ImportRecordType importRecord = retrieveImportRecord(ctx, rs);
+					importRecordInOwnTrx(state, importRecord, importResult);
+				}
 			}
 
 			afterImport();
@@ -361,6 +338,172 @@ public abstract class AbstractImportProcess<ImportRecordType> implements IImport
 		}
 	}
 
+	/**
+	 * Imports the records from given result set in chunks of {@value #SYSCONFIG_ChunkSize} records, with one transaction per chunk and {@value #SYSCONFIG_Threads} threads.
+	 * If a chunk fails, it's rolled back and its records are imported again one by one, so that only the failing records are marked as errors.
+	 */
+	private void importDataInChunks(final ResultSet rs, final ImportProcessResult importResult) throws SQLException
+	{
+		final Properties ctx = getCtx();
+		final ChunkedImportExecutor<ImportRecordType> executor = ChunkedImportExecutor.<ImportRecordType> builder()
+				.chunkSize(getChunkSize())
+				.threads(getThreads())
+				.partitionKeyFunction(this::getImportPartitionKey)
+				.chunkProcessor((state, importRecords) -> {
+					try (final IAutoCloseable ctxRestorer = Env.switchContext(Env.copyCtx(ctx)))
+					{
+						importChunk(state, importRecords, importResult);
+					}
+				})
+				.threadNamePrefix(getClass().getSimpleName())
+				.build();
+
+		boolean finished = false;
+		try
+		{
+			while (rs.next())
+			{
+				executor.add(retrieveImportRecord(ctx, rs));
+			}
+
+			finished = true;
+			executor.finish();
+		}
+		finally
+		{
+			if (!finished)
+			{
+				executor.abort();
+			}
+		}
+	}
+
+	private void importChunk(final IMutable<Object> state, final List<ImportRecordType> importRecords, final ImportProcessResult importResult)
+	{
+		final List<ImportRecordResult> recordImportResults = new ArrayList<>(importRecords.size());
+		try
+		{
+			trxManager.run(localTrxName -> {
+				for (final ImportRecordType importRecord : importRecords)
+				{
+					recordImportResults.add(importRecord(state, importRecord));
+					markImported(importRecord);
+				}
+			});
+		}
+		catch (final Exception ex)
+		{
+			log.debug("Failed importing chunk of {} records; importing them one by one", importRecords.size(), ex);
+
+			// the state might refer to records which were rolled back; we can start over, because a chunk always starts with a new partition key
+			state.setValue(null);
+			for (final ImportRecordType importRecord : importRecords)
+			{
+				InterfaceWrapperHelper.markStaled(importRecord); // discard the values which were set before the rollback
+				importRecordInOwnTrx(state, importRecord, importResult);
+			}
+			return;
+		}
+
+		recordImportResults.forEach(recordImportResult -> incrementCounter(importResult, recordImportResult));
+	}
+
+	private void importRecordInOwnTrx(final IMutable<Object> state, final ImportRecordType importRecord, final ImportProcessResult importResult)
+	{
+		trxManager.run(new TrxRunnableAdapter()
+		{
+			private ImportRecordResult recordImportResult;
+			private Throwable error;
+
+			@Override
+			public void run(final String localTrxName) throws Exception
+			{
+				this.recordImportResult = importRecord(state, importRecord);
+
+				markImported(importRecord);
+			}
+
+			@Override
+			public boolean doCatch(final Throwable e) throws Throwable
+			{
+				this.error = e;
+				return true; // rollback
+			}
+
+			@Override
+			public void doFinally()
+			{
+				if (error != null)
+				{
+					reportError(importRecord, error.getLocalizedMessage());
+					InterfaceWrapperHelper.markStaled(importRecord); // just in case some BL wants to get values from it
+				}
+				else
+				{
+					incrementCounter(importResult, recordImportResult);
+				}
+			}
+		});
+	}
+
+	private static void incrementCounter(final ImportProcessResult importResult, final ImportRecordResult recordImportResult)
+	{
+		if (recordImportResult == ImportRecordResult.Inserted)
+		{
+			importResult.incrementInsertCounter();
+		}
+		else if (recordImportResult == ImportRecordResult.Updated)
+		{
+			importResult.incrementUpdateCounter();
+		}
+	}
+
+	private boolean isImportInChunks()
+	{
+		return isImportInChunksSupported()
+				&& (getChunkSize() > 1 || getThreads() > 1);
+	}
+
+	private int getChunkSize()
+	{
+		return Math.max(getSysConfigIntValue(SYSCONFIG_ChunkSize), 1);
+	}
+
+	private int getThreads()
+	{
+		return Math.max(getSysConfigIntValue(SYSCONFIG_Threads), 1);
+	}
+
+	/** @return the sysconfig value for this process's import table, falling back to the value for all import tables */
+	private int getSysConfigIntValue(final String sysConfigName)
+	{
+		final ISysConfigBL sysConfigBL = Services.get(ISysConfigBL.class);
+		final int defaultValue = sysConfigBL.getIntValue(sysConfigName, 1);
+		return sysConfigBL.getIntValue(sysConfigName + "." + getImportTableName(), defaultValue);
+	}
+
+	/**
+	 * @return {@code true} if this process can import in chunks; to also import in parallel, {@link #getImportPartitionKey(Object)} needs to be overridden.
+	 */
+	protected boolean isImportInChunksSupported()
+	{
+		return false;
+	}
+
+	/**
+	 * Only called if {@link #isImportInChunksSupported()}.
+	 *
+	 * @return the key of the target record which the given import record belongs to, e.g. the BPartner's value.
+	 *         Import records with the same key are imported by the same thread and in the same chunk, in the order given by {@link #getImportOrderBySql()}.
+	 *         The state which is passed to {@link #importRecord(IMutable, Object)} is reset before a chunk is retried record by record,
+	 *         so it shall not be carried over from one key to the next.
+	 *         This default implementation returns <code>null</code>, i.e. all records are imported sequentially by one thread.
+	 */
+	protected Object getImportPartitionKey(final ImportRecordType importRecord)
+	{
+		return null;
+	}
+
 	protected abstract String getImportOrderBySql();
 
 	protected abstract ImportRecordType retrieveImportRecord(final Properties ctx, final ResultSet rs) throws SQLException;
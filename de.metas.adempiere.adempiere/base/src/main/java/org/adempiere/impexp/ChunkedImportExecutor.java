@@ -0,0 +1,219 @@
+package org.adempiere.impexp;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Objects;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.BiConsumer;
+import java.util.function.Function;
+
+import org.adempiere.exceptions.AdempiereException;
+import org.adempiere.util.concurrent.CustomizableThreadFactory;
+import org.adempiere.util.lang.IMutable;
+import org.adempiere.util.lang.Mutable;
+
+import com.google.common.collect.ImmutableList;
+
+import de.metas.util.Check;
+import lombok.Builder;
+import lombok.NonNull;
+
+/*
+ * #%L
+ * de.metas.adempiere.adempiere.base
+ * %%
+ * Copyright (C) 2019 metas GmbH
+ * %%
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as
+ * published by the Free Software Foundation, either version 2 of the
+ * License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public
+ * License along with this program. If not, see
+ * <http://www.gnu.org/licenses/gpl-2.0.html>.
+ * #L%
+ */
+
+/**
+ * Groups the import records it is fed with into chunks and hands them to a pool of worker threads.
+ * <p>
+ * Each record is assigned to a worker by its partition key, so all records with the same key are processed by the same worker, in the order they were added.
+ * A chunk is only closed between two different keys, so the records with the same key are never split between chunks.
+ * Records with a <code>null</code> key are not partitioned: they are all processed by the same worker, in the order they were added, and their chunks are closed at the chunk size.
+ * Each worker has its own state which it passes to every chunk it processes.
+ */
+final class ChunkedImportExecutor<T>
+{
+	private final int chunkSize;
+	private final Function<T, Object> partitionKeyFunction;
+	private final BiConsumer<IMutable<Object>, List<T>> chunkProcessor;
+
+	private final ImmutableList<Worker> workers;
+	private final Semaphore chunksInProgress;
+	private final AtomicReference<Throwable> firstError = new AtomicReference<>();
+
+	@Builder
+	private ChunkedImportExecutor(
+			final int chunkSize,
+			final int threads,
+			@NonNull final Function<T, Object> partitionKeyFunction,
+			@NonNull final BiConsumer<IMutable<Object>, List<T>> chunkProcessor,
+			@NonNull final String threadNamePrefix)
+	{
+		Check.assume(chunkSize > 0, "chunkSize > 0");
+		Check.assume(threads > 0, "threads > 0");
+
+		this.chunkSize = chunkSize;
+		this.partitionKeyFunction = partitionKeyFunction;
+		this.chunkProcessor = chunkProcessor;
+
+		final CustomizableThreadFactory threadFactory = CustomizableThreadFactory.builder()
+				.setThreadNamePrefix(threadNamePrefix)
+				.setDaemon(true)
+				.build();
+		final ImmutableList.Builder<Worker> workers = ImmutableList.builder();
+		for (int i = 0; i < threads; i++)
+		{
+			workers.add(new Worker(Executors.newSingleThreadExecutor(threadFactory)));
+		}
+		this.workers = workers.build();
+
+		// don't read the whole import table into memory if the workers are slower than the reader
+		this.chunksInProgress = new Semaphore(threads * 2);
+	}
+
+	/**
+	 * Adds the given record to its worker's current chunk. Shall be called from one thread only.
+	 */
+	public void add(@NonNull final T record)
+	{
+		final Object partitionKey = partitionKeyFunction.apply(record);
+		final Worker worker = workers.get(Math.floorMod(Objects.hashCode(partitionKey), workers.size()));
+
+		if (worker.currentChunk.size() >= chunkSize
+				&& (partitionKey == null || !Objects.equals(worker.currentChunkLastKey, partitionKey)))
+		{
+			submitCurrentChunk(worker);
+		}
+
+		worker.currentChunk.add(record);
+		worker.currentChunkLastKey = partitionKey;
+	}
+
+	private void submitCurrentChunk(final Worker worker)
+	{
+		final List<T> chunk = worker.currentChunk;
+		if (chunk.isEmpty())
+		{
+			return;
+		}
+		worker.currentChunk = new ArrayList<>(chunkSize);
+		worker.currentChunkLastKey = null;
+
+		chunksInProgress.acquireUninterruptibly();
+		try
+		{
+			worker.executor.execute(() -> processChunk(worker, chunk));
+		}
+		catch (final RuntimeException ex)
+		{
+			chunksInProgress.release();
+			throw ex;
+		}
+	}
+
+	private void processChunk(final Worker worker, final List<T> chunk)
+	{
+		try
+		{
+			chunkProcessor.accept(worker.state, chunk);
+		}
+		catch (final Throwable ex)
+		{
+			firstError.compareAndSet(null, ex);
+		}
+		finally
+		{
+			chunksInProgress.release();
+		}
+	}
+
+	/**
+	 * Submits the remaining chunks and waits until all chunks were processed.
+	 *
+	 * @throws AdempiereException if a chunk processor failed with an exception
+	 */
+	public void finish()
+	{
+		try
+		{
+			workers.forEach(this::submitCurrentChunk);
+		}
+		finally
+		{
+			shutdownAndWait();
+		}
+
+		final Throwable error = firstError.get();
+		if (error != null)
+		{
+			throw AdempiereException.wrapIfNeeded(error);
+		}
+	}
+
+	/**
+	 * Discards the chunks which were not yet submitted and waits until the submitted ones were processed.
+	 */
+	public void abort()
+	{
+		shutdownAndWait();
+	}
+
+	private void shutdownAndWait()
+	{
+		workers.forEach(worker -> worker.executor.shutdown());
+		for (final Worker worker : workers)
+		{
+			try
+			{
+				while (!worker.executor.awaitTermination(1, TimeUnit.MINUTES))
+				{
+					// keep waiting, because the records of unfinished chunks would be neither imported nor marked as failed
+				}
+			}
+			catch (final InterruptedException ex)
+			{
+				Thread.currentThread().interrupt();
+				throw AdempiereException.wrapIfNeeded(ex);
+			}
+		}
+	}
+
+	private final class Worker
+	{
+		private final ExecutorService executor;
+
+		/** the worker's state; only accessed from the worker's thread */
+		private final IMutable<Object> state = new Mutable<>();
+
+		/** the chunk which is currently collected; only accessed from the thread that calls {@link ChunkedImportExecutor#add(Object)} */
+		private List<T> currentChunk;
+		private Object currentChunkLastKey;
+
+		private Worker(@NonNull final ExecutorService executor)
+		{
+			this.executor = executor;
+			this.currentChunk = new ArrayList<>(chunkSize);
+		}
+	}
+}
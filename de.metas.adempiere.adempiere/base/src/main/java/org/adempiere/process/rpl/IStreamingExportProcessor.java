@@ -0,0 +1,51 @@
+package org.adempiere.process.rpl;
+
+import java.io.Writer;
+
+import org.compiere.model.MEXPProcessor;
+import org.compiere.model.PO;
+
+/*
+ * #%L
+ * de.metas.adempiere.adempiere.base
+ * %%
+ * Copyright (C) 2019 metas GmbH
+ * %%
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as
+ * published by the Free Software Foundation, either version 2 of the
+ * License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public
+ * License along with this program. If not, see
+ * <http://www.gnu.org/licenses/gpl-2.0.html>.
+ * #L%
+ */
+
+/**
+ * Export processor which can take the exported XML as a stream.
+ * <p>
+ * If the configured processor implements this interface, {@link org.adempiere.process.rpl.exp.ExportHelper} doesn't build a DOM tree for the exported record,
+ * but lets the processor write the XML wherever it needs it.
+ */
+public interface IStreamingExportProcessor extends IExportProcessor
+{
+	/**
+	 * @param xmlWriter writes the XML which the DOM based {@link #process(java.util.Properties, MEXPProcessor, org.w3c.dom.Document, org.compiere.util.Trx)} would get
+	 */
+	void process(MEXPProcessor expProcessor, IExportXMLWriter xmlWriter, PO po) throws Exception;
+
+	@FunctionalInterface
+	interface IExportXMLWriter
+	{
+		/**
+		 * Writes the XML to the given writer. The writer is flushed, but not closed.
+		 */
+		void writeTo(Writer writer);
+	}
+}
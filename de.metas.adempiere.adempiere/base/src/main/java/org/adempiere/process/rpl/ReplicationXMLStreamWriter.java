@@ -0,0 +1,363 @@
+package org.adempiere.process.rpl;
+
+import java.io.IOException;
+import java.io.Writer;
+import java.util.ArrayDeque;
+import java.util.Deque;
+
+import javax.xml.parsers.DocumentBuilderFactory;
+import javax.xml.stream.XMLStreamException;
+
+import org.slf4j.Logger;
+import org.w3c.dom.Document;
+import org.w3c.dom.Element;
+
+import de.metas.logging.LogManager;
+import lombok.NonNull;
+
+/*
+ * #%L
+ * de.metas.adempiere.adempiere.base
+ * %%
+ * Copyright (C) 2019 metas GmbH
+ * %%
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as
+ * published by the Free Software Foundation, either version 2 of the
+ * License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public
+ * License along with this program. If not, see
+ * <http://www.gnu.org/licenses/gpl-2.0.html>.
+ * #L%
+ */
+
+/**
+ * Streaming XML writer which writes the same characters that {@link XMLHelper#writeDocument(Writer, org.w3c.dom.Node)} writes for the equivalent DOM document,
+ * so that replication messages can be streamed without changing what the receivers get.
+ * <p>
+ * The declaration, line separator and indentation are taken from the JDK's transformer once (they differ between JDK versions);
+ * escaping follows the transformer's rules.
+ * <p>
+ * The methods are named like their {@link javax.xml.stream.XMLStreamWriter} counterparts, but only what the replication export needs is offered,
+ * i.e. no namespaces, CDATA sections, DTDs, entity references or processing instructions.
+ * <p>
+ * Limitations:
+ * <ul>
+ * <li>the DOM serializer writes attributes ordered by name; this writer writes them in the order they are given, so callers have to sort them
+ * <li>mixed content (text and elements in the same element) is written, but not indented like the transformer would
+ * </ul>
+ */
+public final class ReplicationXMLStreamWriter
+{
+	private static final Logger logger = LogManager.getLogger(ReplicationXMLStreamWriter.class);
+
+	private static OutputFormat outputFormat;
+
+	private final Writer out;
+	private final OutputFormat format;
+	private final Deque<ElementState> openElements = new ArrayDeque<>();
+	private boolean startTagOpen = false;
+
+	public ReplicationXMLStreamWriter(@NonNull final Writer out)
+	{
+		this.out = out;
+		this.format = getOutputFormat();
+	}
+
+	private static synchronized OutputFormat getOutputFormat()
+	{
+		if (outputFormat == null)
+		{
+			outputFormat = OutputFormat.probe();
+		}
+		return outputFormat;
+	}
+
+	public void writeStartDocument() throws XMLStreamException
+	{
+		write(format.declaration);
+		write(format.afterDeclaration);
+	}
+
+	public void writeEndDocument() throws XMLStreamException
+	{
+		while (!openElements.isEmpty())
+		{
+			writeEndElement();
+		}
+		write(format.afterDocument);
+	}
+
+	public void writeStartElement(final String localName) throws XMLStreamException
+	{
+		closeStartTag();
+		indentChildMarkup();
+
+		write("<");
+		write(localName);
+
+		openElements.push(new ElementState(localName));
+		startTagOpen = true;
+	}
+
+	public void writeEndElement() throws XMLStreamException
+	{
+		if (openElements.isEmpty())
+		{
+			throw new XMLStreamException("No element to end");
+		}
+		final ElementState element = openElements.pop();
+
+		if (startTagOpen)
+		{
+			startTagOpen = false;
+			write("/>");
+			return;
+		}
+
+		if (element.hasChildMarkup && !element.hasText)
+		{
+			writeNewLineAndIndent(openElements.size());
+		}
+		write("</");
+		write(element.name);
+		write(">");
+	}
+
+	public void writeAttribute(final String localName, final String value) throws XMLStreamException
+	{
+		if (!startTagOpen)
+		{
+			throw new XMLStreamException("Attribute " + localName + " can only be written right after a start element");
+		}
+
+		write(" ");
+		write(localName);
+		write("=\"");
+		writeEscaped(value == null ? "" : value, true);
+		write("\"");
+	}
+
+	public void writeComment(final String data) throws XMLStreamException
+	{
+		closeStartTag();
+		indentChildMarkup();
+
+		write("<!--");
+		write(data == null ? "" : data);
+		write("-->");
+	}
+
+	public void writeCharacters(final String text) throws XMLStreamException
+	{
+		if (text == null || text.isEmpty())
+		{
+			// same as the transformer: an empty text node doesn't close the start tag
+			return;
+		}
+
+		closeStartTag();
+		if (!openElements.isEmpty())
+		{
+			openElements.peek().hasText = true;
+		}
+		writeEscaped(text, false);
+	}
+
+	public void flush() throws XMLStreamException
+	{
+		try
+		{
+			out.flush();
+		}
+		catch (final IOException ex)
+		{
+			throw new XMLStreamException(ex);
+		}
+	}
+
+	/**
+	 * Flushes the underlying writer, but does not close it.
+	 */
+	public void close() throws XMLStreamException
+	{
+		flush();
+	}
+
+	private void closeStartTag() throws XMLStreamException
+	{
+		if (startTagOpen)
+		{
+			startTagOpen = false;
+			write(">");
+		}
+	}
+
+	private void indentChildMarkup() throws XMLStreamException
+	{
+		if (openElements.isEmpty())
+		{
+			return;
+		}
+
+		final ElementState parent = openElements.peek();
+		parent.hasChildMarkup = true;
+		if (!parent.hasText)
+		{
+			writeNewLineAndIndent(openElements.size());
+		}
+	}
+
+	private void writeNewLineAndIndent(final int depth) throws XMLStreamException
+	{
+		write(format.lineSeparator);
+		for (int i = 0; i < depth; i++)
+		{
+			write(format.indent);
+		}
+	}
+
+	private void writeEscaped(final String text, final boolean attribute) throws XMLStreamException
+	{
+		final StringBuilder escaped = new StringBuilder(text.length() + 16);
+		for (int i = 0; i < text.length(); i++)
+		{
+			final char ch = text.charAt(i);
+			switch (ch)
+			{
+				case '<':
+					escaped.append("&lt;");
+					break;
+				case '>':
+					escaped.append("&gt;");
+					break;
+				case '&':
+					escaped.append("&amp;");
+					break;
+				case '"':
+					escaped.append(attribute ? "&quot;" : "\"");
+					break;
+				case '\n':
+					if (attribute)
+					{
+						escaped.append("&#10;");
+					}
+					else
+					{
+						escaped.append(format.lineSeparator);
+					}
+					break;
+				case '\t':
+					escaped.append(attribute ? "&#9;" : "\t");
+					break;
+				default:
+					if (ch < 0x20)
+					{
+						escaped.append("&#").append((int)ch).append(';');
+					}
+					else
+					{
+						escaped.append(ch);
+					}
+			}
+		}
+		write(escaped.toString());
+	}
+
+	private void write(final String str) throws XMLStreamException
+	{
+		try
+		{
+			out.write(str);
+		}
+		catch (final IOException ex)
+		{
+			throw new XMLStreamException(ex);
+		}
+	}
+
+	private static final class ElementState
+	{
+		private final String name;
+		private boolean hasChildMarkup = false;
+		private boolean hasText = false;
+
+		private ElementState(final String name)
+		{
+			this.name = name;
+		}
+	}
+
+	/**
+	 * How the JDK's transformer lays out a document when indenting.
+	 */
+	private static final class OutputFormat
+	{
+		private static final String DEFAULT_Declaration = "<?xml version=\"1.0\" encoding=\"UTF-8\" standalone=\"no\"?>";
+
+		private final String declaration;
+		private final String afterDeclaration;
+		private final String lineSeparator;
+		private final String indent;
+		private final String afterDocument;
+
+		private OutputFormat(final String declaration, final String afterDeclaration, final String lineSeparator, final String indent, final String afterDocument)
+		{
+			this.declaration = declaration;
+			this.afterDeclaration = afterDeclaration;
+			this.lineSeparator = lineSeparator;
+			this.indent = indent;
+			this.afterDocument = afterDocument;
+		}
+
+		/**
+		 * Serializes <code>&lt;a&gt;&lt;b/&gt;&lt;/a&gt;</code> with {@link XMLHelper} and reads the layout from the result.
+		 */
+		private static OutputFormat probe()
+		{
+			try
+			{
+				final Document document = DocumentBuilderFactory.newInstance().newDocumentBuilder().newDocument();
+				final Element root = document.createElement("a");
+				root.appendChild(document.createElement("b"));
+				document.appendChild(root);
+				final String probe = XMLHelper.createStringFromDOMNode(document);
+
+				final int declarationEnd = probe.indexOf("?>") + 2;
+				final int rootStart = probe.indexOf("<a>");
+				final int childStart = probe.indexOf("<b/>");
+				final int rootEnd = probe.indexOf("</a>");
+				if (declarationEnd < 2 || rootStart < declarationEnd || childStart < rootStart || rootEnd < childStart)
+				{
+					throw new IllegalStateException("Unexpected output: " + probe);
+				}
+
+				final String childSeparator = probe.substring(rootStart + 3, childStart);
+				int lineSeparatorEnd = 0;
+				while (lineSeparatorEnd < childSeparator.length()
+						&& (childSeparator.charAt(lineSeparatorEnd) == '\r' || childSeparator.charAt(lineSeparatorEnd) == '\n'))
+				{
+					lineSeparatorEnd++;
+				}
+
+				return new OutputFormat(
+						probe.substring(0, declarationEnd),
+						probe.substring(declarationEnd, rootStart),
+						childSeparator.substring(0, lineSeparatorEnd),
+						childSeparator.substring(lineSeparatorEnd),
+						probe.substring(rootEnd + 4));
+			}
+			catch (final Exception ex)
+			{
+				logger.warn("Failed detecting the transformer's output format. Using defaults.", ex);
+				return new OutputFormat(DEFAULT_Declaration, System.lineSeparator(), System.lineSeparator(), "    ", System.lineSeparator());
+			}
+		}
+	}
+}
@@ -0,0 +1,239 @@
+package org.adempiere.server.rpl.api.impl;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Properties;
+import java.util.Set;
+import java.util.function.Supplier;
+
+import org.compiere.model.PO;
+import org.compiere.model.Query;
+import org.compiere.util.DB;
+
+import com.google.common.annotations.VisibleForTesting;
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableSet;
+import com.google.common.collect.Iterables;
+
+import lombok.NonNull;
+import lombok.Value;
+
+/*
+ * #%L
+ * de.metas.adempiere.adempiere.base
+ * %%
+ * Copyright (C) 2019 metas GmbH
+ * %%
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as
+ * published by the Free Software Foundation, either version 2 of the
+ * License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public
+ * License along with this program. If not, see
+ * <http://www.gnu.org/licenses/gpl-2.0.html>.
+ * #L%
+ */
+
+/**
+ * The records which {@link ImportHelper} looks up by the unique columns of an <code>EXP_Format</code> while importing one replication message.
+ * <p>
+ * Before anything is imported, the helper walks the message and registers each lookup key with {@link #addKey(LookupKey)}.
+ * {@link #prefetch()} then loads the records of all keys of a table with a few <code>IN (...)</code> queries,
+ * so that a message with many lines doesn't need one query per referenced partner, product, UOM etc.
+ * <p>
+ * Keys which were not prefetched or for which no record was found are looked up on demand with the single lookup the helper passes to {@link #getRecords(LookupKey, Supplier)}, just like without this index.
+ * Only use an instance for one message, because it doesn't notice changes to the records.
+ */
+final class ImportLookupIndex
+{
+	private static final int IN_LIST_MAX_SIZE = 500;
+
+	@Value
+	static class LookupKey
+	{
+		@NonNull
+		String tableName;
+
+		@NonNull
+		ImmutableList<String> columnNames;
+
+		/** the values of {@link #columnNames}, as they are passed as SQL parameters to the single record lookup */
+		@NonNull
+		ImmutableList<Object> values;
+
+		private LookupColumns toLookupColumns()
+		{
+			return new LookupColumns(tableName, columnNames);
+		}
+	}
+
+	@Value
+	private static class LookupColumns
+	{
+		String tableName;
+		ImmutableList<String> columnNames;
+	}
+
+	@FunctionalInterface
+	@VisibleForTesting
+	interface RecordsRetriever
+	{
+		List<PO> retrieveRecords(String tableName, String whereClause, List<Object> params);
+	}
+
+	private final RecordsRetriever recordsRetriever;
+
+	private final Map<LookupColumns, Set<ImmutableList<Object>>> keysToPrefetch = new LinkedHashMap<>();
+	private final Map<LookupKey, List<PO>> recordsByKey = new HashMap<>();
+
+	private int keysCount = 0;
+	private int bulkQueriesCount = 0;
+	private int recordsCount = 0;
+	private long prefetchMillis = 0;
+	private int hitsCount = 0;
+	private int singleLookupsCount = 0;
+	private long singleLookupsMillis = 0;
+
+	ImportLookupIndex(@NonNull final Properties ctx, final String trxName)
+	{
+		// same filters as the single record lookup in ImportHelper
+		this((tableName, whereClause, params) -> new Query(ctx, tableName, whereClause, trxName)
+				.setOnlyActiveRecords(true)
+				.setParameters(params)
+				.list(PO.class));
+	}
+
+	@VisibleForTesting
+	ImportLookupIndex(@NonNull final RecordsRetriever recordsRetriever)
+	{
+		this.recordsRetriever = recordsRetriever;
+	}
+
+	@Override
+	public String toString()
+	{
+		return "ImportLookupIndex[keys=" + keysCount
+				+ ", bulkQueries=" + bulkQueriesCount
+				+ ", records=" + recordsCount
+				+ ", prefetch=" + prefetchMillis + "ms"
+				+ ", hits=" + hitsCount
+				+ ", singleLookups=" + singleLookupsCount
+				+ ", singleLookupsTime=" + singleLookupsMillis + "ms"
+				+ "]";
+	}
+
+	public void addKey(@NonNull final LookupKey key)
+	{
+		final boolean added = keysToPrefetch
+				.computeIfAbsent(key.toLookupColumns(), k -> new LinkedHashSet<>())
+				.add(key.getValues());
+		if (added)
+		{
+			keysCount++;
+		}
+	}
+
+	/**
+	 * Loads the records of all keys which were added since the last invocation.
+	 */
+	public void prefetch()
+	{
+		final long startMillis = System.currentTimeMillis();
+
+		for (final Map.Entry<LookupColumns, Set<ImmutableList<Object>>> entry : keysToPrefetch.entrySet())
+		{
+			for (final List<ImmutableList<Object>> valuesChunk : Iterables.partition(entry.getValue(), IN_LIST_MAX_SIZE))
+			{
+				prefetch(entry.getKey(), valuesChunk);
+			}
+		}
+		keysToPrefetch.clear();
+
+		prefetchMillis += System.currentTimeMillis() - startMillis;
+	}
+
+	private void prefetch(final LookupColumns lookupColumns, final List<ImmutableList<Object>> valuesList)
+	{
+		final ImmutableList<String> columnNames = lookupColumns.getColumnNames();
+
+		final StringBuilder whereClause = new StringBuilder();
+		final List<Object> params = new ArrayList<>();
+		for (int i = 0; i < columnNames.size(); i++)
+		{
+			final int columnIndex = i;
+			final ImmutableSet<Object> columnValues = valuesList.stream()
+					.map(values -> values.get(columnIndex))
+					.collect(ImmutableSet.toImmutableSet());
+
+			if (whereClause.length() > 0)
+			{
+				whereClause.append(" AND ");
+			}
+			whereClause.append(DB.buildSqlList(columnNames.get(i), columnValues, params));
+		}
+
+		final List<PO> records = recordsRetriever.retrieveRecords(lookupColumns.getTableName(), whereClause.toString(), params);
+		bulkQueriesCount++;
+		recordsCount += records.size();
+
+		// with more than one column, the query also returns combinations of values which were not requested
+		final ImmutableSet<ImmutableList<Object>> requestedValues = ImmutableSet.copyOf(valuesList);
+		for (final PO record : records)
+		{
+			final ImmutableList<Object> values = extractValues(record, columnNames);
+			if (values == null || !requestedValues.contains(values))
+			{
+				continue;
+			}
+
+			final LookupKey key = new LookupKey(lookupColumns.getTableName(), columnNames, values);
+			recordsByKey.computeIfAbsent(key, k -> new ArrayList<>()).add(record);
+		}
+	}
+
+	private static ImmutableList<Object> extractValues(final PO record, final List<String> columnNames)
+	{
+		final ImmutableList.Builder<Object> values = ImmutableList.builder();
+		for (final String columnName : columnNames)
+		{
+			final Object value = record.get_Value(columnName);
+			if (value == null)
+			{
+				return null;
+			}
+			values.add(value);
+		}
+		return values.build();
+	}
+
+	/**
+	 * @param key may be <code>null</code> if the lookup is not supported by this index
+	 * @param singleLookup used if no records were prefetched for the given key; note that this includes records which were created after {@link #prefetch()}, e.g. earlier in the same message
+	 * @return the prefetched records for the given key or the result of the given single lookup
+	 */
+	public List<PO> getRecords(final LookupKey key, @NonNull final Supplier<List<PO>> singleLookup)
+	{
+		final List<PO> records = key != null ? recordsByKey.get(key) : null;
+		if (records != null)
+		{
+			hitsCount++;
+			return records;
+		}
+
+		final long startMillis = System.currentTimeMillis();
+		final List<PO> singleLookupRecords = singleLookup.get();
+		singleLookupsCount++;
+		singleLookupsMillis += System.currentTimeMillis() - startMillis;
+		return singleLookupRecords;
+	}
+}
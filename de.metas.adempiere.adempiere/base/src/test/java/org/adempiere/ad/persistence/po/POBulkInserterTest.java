@@ -0,0 +1,179 @@
+package org.adempiere.ad.persistence.po;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+import java.math.BigDecimal;
+import java.util.List;
+import java.util.Map;
+
+import org.adempiere.exceptions.AdempiereException;
+import org.adempiere.test.AdempiereTestHelper;
+import org.compiere.model.PO;
+import org.compiere.model.POInfo;
+import org.compiere.util.DisplayType;
+import org.junit.Before;
+import org.junit.Test;
+
+import com.google.common.collect.ImmutableList;
+
+import mockit.Expectations;
+import mockit.Injectable;
+import mockit.Verifications;
+
+/*
+ * #%L
+ * de.metas.adempiere.adempiere.base
+ * %%
+ * Copyright (C) 2019 metas GmbH
+ * %%
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as
+ * published by the Free Software Foundation, either version 2 of the
+ * License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public
+ * License along with this program. If not, see
+ * <http://www.gnu.org/licenses/gpl-2.0.html>.
+ * #L%
+ */
+
+public class POBulkInserterTest
+{
+	private static final int COLUMN_Fact_Acct_ID = 0;
+	private static final int COLUMN_Description = 1;
+	private static final int COLUMN_AmtAcctDr = 2;
+	private static final int COLUMN_Virtual = 3;
+
+	@Injectable
+	private POInfo poInfo;
+
+	@Injectable
+	private PO po1;
+	@Injectable
+	private PO po2;
+	@Injectable
+	private PO po3;
+
+	@Before
+	public void init()
+	{
+		AdempiereTestHelper.get().init();
+	}
+
+	@Test
+	public void assignIDs()
+	{
+		// @formatter:off
+		new Expectations()
+		{{
+			po1.is_new(); result = true;
+			po2.is_new(); result = true;
+		}};
+		// @formatter:on
+
+		POBulkInserter.assignIDs(ImmutableList.of(po1, po2), "Fact_Acct_ID", ImmutableList.of(1001, 1002));
+
+		// @formatter:off
+		new Verifications()
+		{{
+			po1.set_ValueNoCheck("Fact_Acct_ID", 1001); times = 1;
+			po2.set_ValueNoCheck("Fact_Acct_ID", 1002); times = 1;
+		}};
+		// @formatter:on
+	}
+
+	@Test
+	public void assignIDs_notNewPO()
+	{
+		// @formatter:off
+		new Expectations()
+		{{
+			po1.is_new(); result = false;
+		}};
+		// @formatter:on
+
+		assertThatThrownBy(() -> POBulkInserter.assignIDs(ImmutableList.of(po1), "Fact_Acct_ID", ImmutableList.of(1001)))
+				.isInstanceOf(AdempiereException.class);
+	}
+
+	/**
+	 * Like {@link PO#saveEx()}, the insert skips columns without value and virtual columns, so the POs are grouped by the columns they have values for.
+	 */
+	@Test
+	public void groupByColumnIndexesToInsert_and_buildInsertSql()
+	{
+		setupPOInfo();
+		setupPO(po1, 1001, "first", new BigDecimal("10"));
+		setupPO(po2, 1002, null, new BigDecimal("20"));
+		setupPO(po3, 1003, "third", new BigDecimal("30"));
+
+		final Map<ImmutableList<Integer>, List<PO>> columnIndexes2pos = POBulkInserter.groupByColumnIndexesToInsert(ImmutableList.of(po1, po2, po3), poInfo);
+
+		final ImmutableList<Integer> allColumns = ImmutableList.of(COLUMN_Fact_Acct_ID, COLUMN_Description, COLUMN_AmtAcctDr);
+		final ImmutableList<Integer> withoutDescription = ImmutableList.of(COLUMN_Fact_Acct_ID, COLUMN_AmtAcctDr);
+		assertThat(columnIndexes2pos).containsOnlyKeys(allColumns, withoutDescription);
+		assertThat(columnIndexes2pos.get(allColumns)).containsExactly(po1, po3);
+		assertThat(columnIndexes2pos.get(withoutDescription)).containsExactly(po2);
+
+		assertThat(POBulkInserter.buildInsertSql(poInfo, allColumns))
+				.isEqualTo("INSERT INTO Fact_Acct (Fact_Acct_ID,Description,AmtAcctDr) VALUES (?,?,?)");
+		assertThat(POBulkInserter.buildInsertSql(poInfo, withoutDescription))
+				.isEqualTo("INSERT INTO Fact_Acct (Fact_Acct_ID,AmtAcctDr) VALUES (?,?)");
+	}
+
+	@Test
+	public void groupByColumnIndexesToInsert_POWithoutID()
+	{
+		setupPOInfo();
+		setupPO(po1, 0, "first", BigDecimal.ONE);
+
+		assertThatThrownBy(() -> POBulkInserter.groupByColumnIndexesToInsert(ImmutableList.of(po1), poInfo))
+				.isInstanceOf(AdempiereException.class);
+	}
+
+	private void setupPOInfo()
+	{
+		// @formatter:off
+		new Expectations()
+		{{
+			poInfo.getTableName(); result = "Fact_Acct"; minTimes = 0;
+			poInfo.getKeyColumnName(); result = "Fact_Acct_ID"; minTimes = 0;
+			poInfo.getColumnCount(); result = 4; minTimes = 0;
+
+			poInfo.getColumnName(COLUMN_Fact_Acct_ID); result = "Fact_Acct_ID"; minTimes = 0;
+			poInfo.getColumnName(COLUMN_Description); result = "Description"; minTimes = 0;
+			poInfo.getColumnName(COLUMN_AmtAcctDr); result = "AmtAcctDr"; minTimes = 0;
+			poInfo.getColumnName(COLUMN_Virtual); result = "VirtualColumn"; minTimes = 0;
+
+			poInfo.getColumnDisplayType(COLUMN_Fact_Acct_ID); result = DisplayType.ID; minTimes = 0;
+			poInfo.getColumnDisplayType(COLUMN_Description); result = DisplayType.String; minTimes = 0;
+			poInfo.getColumnDisplayType(COLUMN_AmtAcctDr); result = DisplayType.Amount; minTimes = 0;
+			poInfo.getColumnDisplayType(COLUMN_Virtual); result = DisplayType.String; minTimes = 0;
+
+			poInfo.isVirtualColumn(COLUMN_Virtual); result = true; minTimes = 0;
+		}};
+		// @formatter:on
+	}
+
+	private static void setupPO(final PO po, final int id, final String description, final BigDecimal amtAcctDr)
+	{
+		// @formatter:off
+		new Expectations()
+		{{
+			po.get_TableName(); result = "Fact_Acct"; minTimes = 0;
+			po.get_ValueAsInt("Fact_Acct_ID"); result = id; minTimes = 0;
+
+			po.get_Value(COLUMN_Fact_Acct_ID); result = id; minTimes = 0;
+			po.get_Value(COLUMN_Description); result = description; minTimes = 0;
+			po.get_Value(COLUMN_AmtAcctDr); result = amtAcctDr; minTimes = 0;
+			po.get_Value(COLUMN_Virtual); result = "virtual value"; minTimes = 0;
+		}};
+		// @formatter:on
+	}
+}
@@ -0,0 +1,134 @@
+package org.adempiere.ad.sequence;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.Before;
+import org.junit.Test;
+
+/*
+ * #%L
+ * de.metas.adempiere.adempiere.base
+ * %%
+ * Copyright (C) 2019 metas GmbH
+ * %%
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as
+ * published by the Free Software Foundation, either version 2 of the
+ * License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public
+ * License along with this program.  If not, see
+ * <http://www.gnu.org/licenses/gpl-2.0.html>.
+ * #L%
+ */
+
+public class TableIDBlockPoolTest
+{
+	private static class MockedTableIDBlockSupplier implements TableIDBlockSupplier
+	{
+		private final AtomicInteger currentNext = new AtomicInteger(1000);
+		private final AtomicInteger reserveCount = new AtomicInteger(0);
+
+		@Override
+		public TableIDBlock reserve(final String tableName, final boolean adempiereSys, final int blockSize)
+		{
+			reserveCount.incrementAndGet();
+			final int firstId = currentNext.getAndAdd(blockSize);
+			return TableIDBlock.of(firstId, 1, blockSize);
+		}
+	}
+
+	private MockedTableIDBlockSupplier blockSupplier;
+	private TableIDBlockStatistics statistics;
+
+	@Before
+	public void init()
+	{
+		blockSupplier = new MockedTableIDBlockSupplier();
+		statistics = new TableIDBlockStatistics();
+	}
+
+	@Test
+	public void nextId_refillsBeforeBlockIsExhausted()
+	{
+		final TableIDBlockPool pool = TableIDBlockPool.builder()
+				.tableName("Test")
+				.blockSizeSupplier(() -> 4)
+				.blockSupplier(blockSupplier)
+				.refillExecutor(Runnable::run)
+				.statistics(statistics)
+				.build();
+
+		final List<Integer> ids = new ArrayList<>();
+		for (int i = 0; i < 5; i++)
+		{
+			ids.add(pool.nextId());
+		}
+
+		assertThat(ids).containsExactly(1000, 1001, 1002, 1003, 1004);
+		assertThat(blockSupplier.reserveCount.get()).isEqualTo(2);
+		assertThat(statistics.getSyncRefills()).isEqualTo(1); // only the very first block
+		assertThat(statistics.getAsyncRefills()).isEqualTo(1);
+		assertThat(statistics.getRequests()).isEqualTo(5);
+		assertThat(statistics.getHits()).isEqualTo(4);
+	}
+
+	@Test
+	public void nextId_concurrent_noDuplicates() throws Exception
+	{
+		final ExecutorService refillExecutor = Executors.newSingleThreadExecutor();
+		final ExecutorService callers = Executors.newFixedThreadPool(8);
+		try
+		{
+			final TableIDBlockPool pool = TableIDBlockPool.builder()
+					.tableName("Test")
+					.blockSizeSupplier(() -> 50)
+					.blockSupplier(blockSupplier)
+					.refillExecutor(refillExecutor)
+					.statistics(statistics)
+					.build();
+
+			final Set<Integer> ids = ConcurrentHashMap.newKeySet();
+			final Callable<Void> task = () -> {
+				for (int i = 0; i < 1000; i++)
+				{
+					assertThat(ids.add(pool.nextId())).isTrue();
+				}
+				return null;
+			};
+
+			final List<Future<Void>> futures = new ArrayList<>();
+			for (int i = 0; i < 8; i++)
+			{
+				futures.add(callers.submit(task));
+			}
+			for (final Future<Void> future : futures)
+			{
+				future.get();
+			}
+
+			assertThat(ids).hasSize(8000);
+			assertThat(statistics.getRequests()).isEqualTo(8000);
+		}
+		finally
+		{
+			callers.shutdownNow();
+			refillExecutor.shutdownNow();
+		}
+	}
+}
@@ -0,0 +1,153 @@
+package org.adempiere.archive.spi.impl;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.io.ByteArrayInputStream;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Properties;
+import java.util.Random;
+
+import org.adempiere.ad.trx.api.ITrx;
+import org.adempiere.model.InterfaceWrapperHelper;
+import org.adempiere.test.AdempiereTestHelper;
+import org.compiere.model.I_AD_Archive;
+import org.compiere.model.I_AD_Client;
+import org.compiere.util.Env;
+import org.compiere.util.Ini;
+import org.junit.Before;
+import org.junit.BeforeClass;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import com.google.common.io.ByteStreams;
+
+/*
+ * #%L
+ * de.metas.adempiere.adempiere.base
+ * %%
+ * Copyright (C) 2019 metas GmbH
+ * %%
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as
+ * published by the Free Software Foundation, either version 2 of the
+ * License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public
+ * License along with this program. If not, see
+ * <http://www.gnu.org/licenses/gpl-2.0.html>.
+ * #L%
+ */
+
+public class ContentAddressedArchiveStorageTest
+{
+	@BeforeClass
+	public static void staticInit()
+	{
+		AdempiereTestHelper.get().staticInit();
+	}
+
+	@Rule
+	public TemporaryFolder storageFolder = new TemporaryFolder();
+	private ContentAddressedArchiveStorage storage;
+
+	private final Random random = new Random();
+
+	@Before
+	public void init()
+	{
+		AdempiereTestHelper.get().init();
+		Ini.setClient(false);
+
+		final Properties ctx = Env.getCtx();
+		final I_AD_Client client = InterfaceWrapperHelper.create(ctx, I_AD_Client.class, ITrx.TRXNAME_None);
+		client.setWindowsArchivePath(storageFolder.getRoot().getAbsolutePath());
+		client.setUnixArchivePath(client.getWindowsArchivePath());
+		client.setStoreArchiveOnFileSystem(true);
+		InterfaceWrapperHelper.save(client);
+
+		Env.setContext(ctx, "#AD_Client_ID", client.getAD_Client_ID());
+
+		storage = new ContentAddressedArchiveStorage();
+		storage.init(ctx, client.getAD_Client_ID());
+	}
+
+	@Test
+	public void test_set_getBinaryData() throws Exception
+	{
+		final byte[] data = createTestDataBytes();
+		final I_AD_Archive archive = createArchive(data);
+
+		assertThat(archive.isFileSystem()).isTrue();
+		assertThat(ContentAddressedArchiveStorage.isContentAddressedReference(archive.getBinaryData())).isTrue();
+		assertThat(storage.getBinaryData(archive)).isEqualTo(data);
+		try (final InputStream in = storage.getBinaryDataAsStream(archive))
+		{
+			assertThat(ByteStreams.toByteArray(in)).isEqualTo(data);
+		}
+	}
+
+	@Test
+	public void sameDataIsStoredOnce()
+	{
+		final byte[] data = createTestDataBytes();
+		final I_AD_Archive archive1 = createArchive(data);
+		final I_AD_Archive archive2 = createArchive(data);
+
+		final String hash = extractHash(archive1);
+		assertThat(extractHash(archive2)).isEqualTo(hash);
+		assertThat(storage.getReferencesCount(hash)).isEqualTo(2);
+
+		storage.onArchiveDeleted(archive1);
+		assertThat(storage.getReferencesCount(hash)).isEqualTo(1);
+		assertThat(storage.getBinaryData(archive2)).isEqualTo(data);
+
+		storage.onArchiveDeleted(archive2);
+		assertThat(storage.getReferencesCount(hash)).isEqualTo(0);
+		assertThat(Files.exists(storage.getBlobFile(hash))).isFalse();
+	}
+
+	@Test
+	public void overwritingDataReleasesThePreviousContent()
+	{
+		final I_AD_Archive archive = createArchive(createTestDataBytes());
+		final String previousHash = extractHash(archive);
+		final Path previousBlobFile = storage.getBlobFile(previousHash);
+		assertThat(Files.exists(previousBlobFile)).isTrue();
+
+		final byte[] newData = createTestDataBytes();
+		storage.setBinaryData(archive, new ByteArrayInputStream(newData));
+
+		assertThat(Files.exists(previousBlobFile)).isFalse();
+		assertThat(storage.getBinaryData(archive)).isEqualTo(newData);
+	}
+
+	private I_AD_Archive createArchive(final byte[] data)
+	{
+		final I_AD_Archive archive = storage.newArchive(Env.getCtx(), ITrx.TRXNAME_None);
+		storage.setBinaryData(archive, new ByteArrayInputStream(data));
+		InterfaceWrapperHelper.save(archive);
+		return archive;
+	}
+
+	private static String extractHash(final I_AD_Archive archive)
+	{
+		final String reference = new String(archive.getBinaryData(), StandardCharsets.UTF_8);
+		return reference.substring(reference.lastIndexOf('%') + 1);
+	}
+
+	private byte[] createTestDataBytes()
+	{
+		final byte[] data = new byte[4096];
+		random.nextBytes(data);
+		return data;
+	}
+}
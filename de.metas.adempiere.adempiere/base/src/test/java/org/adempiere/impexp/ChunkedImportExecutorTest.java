@@ -0,0 +1,163 @@
+package org.adempiere.impexp;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.BiConsumer;
+
+import org.adempiere.exceptions.AdempiereException;
+import org.adempiere.util.lang.IMutable;
+import org.junit.Test;
+
+import com.google.common.collect.ImmutableList;
+
+/*
+ * #%L
+ * de.metas.adempiere.adempiere.base
+ * %%
+ * Copyright (C) 2019 metas GmbH
+ * %%
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as
+ * published by the Free Software Foundation, either version 2 of the
+ * License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public
+ * License along with this program.  If not, see
+ * <http://www.gnu.org/licenses/gpl-2.0.html>.
+ * #L%
+ */
+
+public class ChunkedImportExecutorTest
+{
+	/** import record: partition key and line number */
+	private static final class Line
+	{
+		private final String key;
+		private final int lineNo;
+
+		private Line(final String key, final int lineNo)
+		{
+			this.key = key;
+			this.lineNo = lineNo;
+		}
+	}
+
+	private final Map<String, List<Integer>> key2lineNos = new ConcurrentHashMap<>();
+	private final List<List<Line>> chunks = new ArrayList<>();
+
+	private ChunkedImportExecutor<Line> createExecutor(final int chunkSize, final int threads, final BiConsumer<IMutable<Object>, List<Line>> chunkProcessor)
+	{
+		return ChunkedImportExecutor.<Line> builder()
+				.chunkSize(chunkSize)
+				.threads(threads)
+				.partitionKeyFunction(line -> line.key)
+				.chunkProcessor(chunkProcessor)
+				.threadNamePrefix(getClass().getSimpleName())
+				.build();
+	}
+
+	private void collectChunk(final IMutable<Object> state, final List<Line> chunk)
+	{
+		synchronized (chunks)
+		{
+			chunks.add(ImmutableList.copyOf(chunk));
+		}
+	}
+
+	private void collect(final IMutable<Object> state, final List<Line> chunk)
+	{
+		collectChunk(state, chunk);
+		for (final Line line : chunk)
+		{
+			key2lineNos.computeIfAbsent(line.key, k -> new ArrayList<>()).add(line.lineNo);
+		}
+	}
+
+	@Test
+	public void chunksAreOnlyClosedBetweenKeys()
+	{
+		final ChunkedImportExecutor<Line> executor = createExecutor(2, 1, this::collect);
+		int lineNo = 0;
+		for (final String key : ImmutableList.of("A", "A", "A", "B", "C", "C"))
+		{
+			executor.add(new Line(key, lineNo++));
+		}
+		executor.finish();
+
+		assertThat(chunks).hasSize(2);
+		assertThat(chunks.get(0)).extracting(line -> line.key).containsExactly("A", "A", "A");
+		assertThat(chunks.get(1)).extracting(line -> line.key).containsExactly("B", "C", "C");
+	}
+
+	@Test
+	public void linesWithoutKeyAreProcessedSequentially()
+	{
+		final ChunkedImportExecutor<Line> executor = createExecutor(3, 4, this::collectChunk);
+		for (int lineNo = 0; lineNo < 10; lineNo++)
+		{
+			executor.add(new Line(null, lineNo));
+		}
+		executor.finish();
+
+		assertThat(chunks).hasSize(4);
+		assertThat(chunks.stream().flatMap(List::stream)).extracting(line -> line.lineNo).containsExactly(0, 1, 2, 3, 4, 5, 6, 7, 8, 9);
+	}
+
+	@Test
+	public void linesOfOneKeyAreProcessedInOrder()
+	{
+		final ChunkedImportExecutor<Line> executor = createExecutor(3, 4, this::collect);
+		for (int lineNo = 0; lineNo < 1000; lineNo++)
+		{
+			executor.add(new Line("key" + lineNo / 7, lineNo));
+		}
+		executor.finish();
+
+		assertThat(key2lineNos).hasSize(143);
+		key2lineNos.values().forEach(lineNos -> assertThat(lineNos).isSorted());
+		assertThat(key2lineNos.values().stream().mapToInt(List::size).sum()).isEqualTo(1000);
+	}
+
+	@Test
+	public void stateIsKeptPerWorker()
+	{
+		final ChunkedImportExecutor<Line> executor = createExecutor(1, 2, (state, chunk) -> {
+			final Thread previousThread = (Thread)state.getValue();
+			assertThat(previousThread == null || previousThread == Thread.currentThread()).isTrue();
+			state.setValue(Thread.currentThread());
+		});
+		for (int lineNo = 0; lineNo < 100; lineNo++)
+		{
+			executor.add(new Line("key" + lineNo, lineNo));
+		}
+		executor.finish();
+	}
+
+	@Test
+	public void finishFailsIfAChunkFailed()
+	{
+		final ChunkedImportExecutor<Line> executor = createExecutor(1, 2, (state, chunk) -> {
+			if ("B".equals(chunk.get(0).key))
+			{
+				throw new AdempiereException("failed for B");
+			}
+			collect(state, chunk);
+		});
+		executor.add(new Line("A", 1));
+		executor.add(new Line("B", 2));
+		executor.add(new Line("C", 3));
+
+		assertThatThrownBy(executor::finish).hasMessageContaining("failed for B");
+		assertThat(key2lineNos).containsOnlyKeys("A", "C");
+	}
+}
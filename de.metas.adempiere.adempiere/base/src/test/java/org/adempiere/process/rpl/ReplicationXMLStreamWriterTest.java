@@ -0,0 +1,123 @@
+package org.adempiere.process.rpl;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.io.StringWriter;
+
+import javax.xml.parsers.DocumentBuilderFactory;
+
+import org.junit.Test;
+import org.w3c.dom.Document;
+import org.w3c.dom.Element;
+
+/*
+ * #%L
+ * de.metas.adempiere.adempiere.base
+ * %%
+ * Copyright (C) 2019 metas GmbH
+ * %%
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as
+ * published by the Free Software Foundation, either version 2 of the
+ * License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public
+ * License along with this program. If not, see
+ * <http://www.gnu.org/licenses/gpl-2.0.html>.
+ * #L%
+ */
+
+public class ReplicationXMLStreamWriterTest
+{
+	private static final String SPECIAL_CHARS = "a<b>&c\"d'e\tf\ng\rh\u0001ié";
+
+	@Test
+	public void sameOutputAsDOM() throws Exception
+	{
+		assertThat(writeWithStreamWriter()).isEqualTo(writeWithDOM());
+	}
+
+	private static String writeWithDOM() throws Exception
+	{
+		final Document document = DocumentBuilderFactory.newInstance().newDocumentBuilder().newDocument();
+
+		final Element root = document.createElement("C_Order");
+		root.appendChild(document.createComment("description"));
+		root.setAttribute("Version", "*");
+		root.setAttribute("AD_Client_Value", SPECIAL_CHARS);
+		root.setAttribute("TrxName", null);
+
+		final Element documentNo = document.createElement("DocumentNo");
+		documentNo.appendChild(document.createTextNode(SPECIAL_CHARS));
+		root.appendChild(documentNo);
+
+		final Element mandatoryEmpty = document.createElement("Description");
+		mandatoryEmpty.appendChild(document.createTextNode(""));
+		root.appendChild(mandatoryEmpty);
+
+		final Element line = document.createElement("C_OrderLine");
+		line.appendChild(document.createComment("line"));
+		final Element dateOrdered = document.createElement("DateOrdered");
+		dateOrdered.setAttribute("DateFormat", "yyyy-MM-dd");
+		dateOrdered.appendChild(document.createTextNode("2019-01-01"));
+		line.appendChild(dateOrdered);
+		final Element product = document.createElement("M_Product_ID");
+		final Element productValue = document.createElement("Value");
+		productValue.appendChild(document.createTextNode("P1"));
+		product.appendChild(productValue);
+		line.appendChild(product);
+		root.appendChild(line);
+
+		root.appendChild(document.createElement("C_OrderLine"));
+		document.appendChild(root);
+
+		return XMLHelper.createStringFromDOMNode(document);
+	}
+
+	private static String writeWithStreamWriter() throws Exception
+	{
+		final StringWriter out = new StringWriter();
+		final ReplicationXMLStreamWriter writer = new ReplicationXMLStreamWriter(out);
+
+		writer.writeStartDocument();
+		writer.writeStartElement("C_Order");
+		writer.writeAttribute("AD_Client_Value", SPECIAL_CHARS);
+		writer.writeAttribute("TrxName", null);
+		writer.writeAttribute("Version", "*");
+		writer.writeComment("description");
+
+		writer.writeStartElement("DocumentNo");
+		writer.writeCharacters(SPECIAL_CHARS);
+		writer.writeEndElement();
+
+		writer.writeStartElement("Description");
+		writer.writeCharacters("");
+		writer.writeEndElement();
+
+		writer.writeStartElement("C_OrderLine");
+		writer.writeComment("line");
+		writer.writeStartElement("DateOrdered");
+		writer.writeAttribute("DateFormat", "yyyy-MM-dd");
+		writer.writeCharacters("2019-01-01");
+		writer.writeEndElement();
+		writer.writeStartElement("M_Product_ID");
+		writer.writeStartElement("Value");
+		writer.writeCharacters("P1");
+		writer.writeEndElement();
+		writer.writeEndElement();
+		writer.writeEndElement();
+
+		writer.writeStartElement("C_OrderLine");
+		writer.writeEndElement();
+
+		writer.writeEndDocument();
+		writer.flush();
+
+		return out.toString();
+	}
+}
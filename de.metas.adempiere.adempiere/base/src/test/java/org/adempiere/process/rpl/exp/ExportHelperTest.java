@@ -0,0 +1,276 @@
+package org.adempiere.process.rpl.exp;
+
+import static org.adempiere.model.InterfaceWrapperHelper.newInstance;
+import static org.adempiere.model.InterfaceWrapperHelper.saveRecord;
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.io.ByteArrayOutputStream;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDate;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.adempiere.process.rpl.XMLHelper;
+import org.adempiere.process.rpl.api.IReplicationAccessContext;
+import org.adempiere.test.AdempiereTestHelper;
+import org.compiere.model.I_AD_Client;
+import org.compiere.model.I_EXP_FormatLine;
+import org.compiere.model.MColumn;
+import org.compiere.model.MEXPFormat;
+import org.compiere.model.MReplicationStrategy;
+import org.compiere.model.PO;
+import org.compiere.model.X_AD_ReplicationTable;
+import org.compiere.model.X_EXP_FormatLine;
+import org.compiere.util.DisplayType;
+import org.compiere.util.Env;
+import org.compiere.util.TimeUtil;
+import org.junit.Before;
+import org.junit.Test;
+import org.w3c.dom.Document;
+
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableMap;
+
+import mockit.Expectations;
+import mockit.Injectable;
+
+/*
+ * #%L
+ * de.metas.adempiere.adempiere.base
+ * %%
+ * Copyright (C) 2019 metas GmbH
+ * %%
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as
+ * published by the Free Software Foundation, either version 2 of the
+ * License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public
+ * License along with this program. If not, see
+ * <http://www.gnu.org/licenses/gpl-2.0.html>.
+ * #L%
+ */
+
+public class ExportHelperTest
+{
+	private static final String SPECIAL_CHARS = "a < b & \"c\" > 'd'ä€";
+
+	private static final int ORDER_FORMAT_ID = 10;
+	private static final int ORDERLINE_FORMAT_ID = 20;
+	private static final int BPARTNER_FORMAT_ID = 30;
+
+	@Injectable
+	private MEXPFormat orderFormat;
+	@Injectable
+	private MEXPFormat orderLineFormat;
+	@Injectable
+	private MEXPFormat bpartnerFormat;
+
+	@Injectable
+	private PO order;
+	@Injectable
+	private PO orderLine1;
+	@Injectable
+	private PO orderLine2;
+	@Injectable
+	private PO bpartner;
+
+	@Injectable
+	private MColumn valueColumn;
+	@Injectable
+	private MColumn nameColumn;
+	@Injectable
+	private MColumn descriptionColumn;
+	@Injectable
+	private MColumn dateColumn;
+	@Injectable
+	private MColumn bpartnerIdColumn;
+
+	private final Map<Integer, MColumn> columnsById = new HashMap<>();
+	private int nextColumnId = 1;
+
+	private ExportHelper exportHelper;
+
+	@Before
+	public void init()
+	{
+		AdempiereTestHelper.get().init();
+
+		final I_AD_Client client = newInstance(I_AD_Client.class);
+		client.setValue(SPECIAL_CHARS);
+		saveRecord(client);
+
+		exportHelper = new ExportHelperWithoutDB(client.getAD_Client_ID());
+	}
+
+	/**
+	 * The DOM tree serialized by {@link XMLHelper} and the streamed XML have to be the same, so the receivers of the replication messages don't notice which path was used.
+	 */
+	@Test
+	public void streamedExport_sameBytesAsDOM()
+	{
+		setupFormatsAndRecords();
+
+		final Document document = exportHelper.createExportDOM(order, orderFormat, MReplicationStrategy.REPLICATION_DOCUMENT, X_AD_ReplicationTable.REPLICATIONTYPE_Merge, 0);
+		final byte[] domBytes = XMLHelper.createStringFromDOMNode(document).getBytes(StandardCharsets.UTF_8);
+
+		final ByteArrayOutputStream out = new ByteArrayOutputStream();
+		final boolean exported = exportHelper.exportRecord(order, orderFormat, MReplicationStrategy.REPLICATION_DOCUMENT, X_AD_ReplicationTable.REPLICATIONTYPE_Merge, 0, out);
+
+		assertThat(exported).isTrue();
+		assertThat(new String(out.toByteArray(), StandardCharsets.UTF_8)).isEqualTo(new String(domBytes, StandardCharsets.UTF_8)); // readable diff in case of failure
+		assertThat(out.toByteArray()).isEqualTo(domBytes);
+
+		// guards: the format's parts made it into the message
+		final String xml = new String(domBytes, StandardCharsets.UTF_8);
+		assertThat(xml).contains("<!--order-->", "DateFormat=\"yyyy-MM-dd\"", "<C_BPartner_ID Value=\"BP1\">", "<C_OrderLine Value=\"L1\">", "<C_OrderLine Value=\"L2\">");
+	}
+
+	private void setupFormatsAndRecords()
+	{
+		// @formatter:off
+		final List<I_EXP_FormatLine> orderFormatLines = ImmutableList.of(
+				formatLine(X_EXP_FormatLine.TYPE_XMLElement, "DocumentNo", nameColumn),
+				formatLine(X_EXP_FormatLine.TYPE_XMLAttribute, "Value", valueColumn),
+				dateFormatLine("DateOrdered", dateColumn, "yyyy-MM-dd"),
+				referencedFormatLine("C_BPartner_ID", bpartnerIdColumn, BPARTNER_FORMAT_ID, "partner"),
+				mandatoryFormatLine("Description", descriptionColumn),
+				embeddedFormatLine("C_OrderLine", ORDERLINE_FORMAT_ID, "line"));
+		final List<I_EXP_FormatLine> orderLineFormatLines = ImmutableList.of(
+				formatLine(X_EXP_FormatLine.TYPE_XMLElement, "Description", descriptionColumn),
+				formatLine(X_EXP_FormatLine.TYPE_XMLAttribute, "Value", valueColumn));
+		final List<I_EXP_FormatLine> bpartnerFormatLines = ImmutableList.of(
+				formatLine(X_EXP_FormatLine.TYPE_XMLElement, "Name", nameColumn),
+				formatLine(X_EXP_FormatLine.TYPE_XMLAttribute, "Value", valueColumn));
+
+		new Expectations()
+		{{
+			orderFormat.getValue(); result = "C_Order"; minTimes = 0;
+			orderFormat.getDescription(); result = "order"; minTimes = 0;
+			orderFormat.getVersion(); result = "*"; minTimes = 0;
+			orderFormat.getFormatLines(); result = orderFormatLines; minTimes = 0;
+			orderLineFormat.getFormatLines(); result = orderLineFormatLines; minTimes = 0;
+			bpartnerFormat.getFormatLines(); result = bpartnerFormatLines; minTimes = 0;
+
+			valueColumn.getColumnName(); result = "Value"; minTimes = 0;
+			nameColumn.getColumnName(); result = "Name"; minTimes = 0;
+			descriptionColumn.getColumnName(); result = "Description"; minTimes = 0;
+			dateColumn.getColumnName(); result = "DateOrdered"; minTimes = 0;
+			dateColumn.getAD_Reference_ID(); result = DisplayType.Date; minTimes = 0;
+			valueColumn.getAD_Reference_ID(); result = DisplayType.String; minTimes = 0;
+			nameColumn.getAD_Reference_ID(); result = DisplayType.String; minTimes = 0;
+			descriptionColumn.getAD_Reference_ID(); result = DisplayType.Text; minTimes = 0;
+
+			order.getCtx(); result = Env.getCtx(); minTimes = 0;
+			order.get_KeyColumns(); result = new String[] { "C_Order_ID" }; minTimes = 0;
+			order.get_Value("Name"); result = SPECIAL_CHARS; minTimes = 0;
+			order.get_Value("Value"); result = "O1"; minTimes = 0;
+			order.get_Value("DateOrdered"); result = TimeUtil.asTimestamp(LocalDate.of(2019, 5, 17)); minTimes = 0;
+
+			orderLine1.get_Value("Description"); result = "first line\nwith a line break"; minTimes = 0;
+			orderLine1.get_Value("Value"); result = "L1"; minTimes = 0;
+			orderLine2.get_Value("Value"); result = "L2"; minTimes = 0;
+
+			bpartner.get_Value("Name"); result = SPECIAL_CHARS; minTimes = 0;
+			bpartner.get_Value("Value"); result = "BP1"; minTimes = 0;
+		}};
+		// @formatter:on
+	}
+
+	private I_EXP_FormatLine formatLine(final String type, final String value, final MColumn column)
+	{
+		final I_EXP_FormatLine formatLine = newInstance(I_EXP_FormatLine.class);
+		formatLine.setType(type);
+		formatLine.setValue(value);
+		formatLine.setName(value);
+		if (column != null)
+		{
+			final int columnId = nextColumnId++;
+			columnsById.put(columnId, column);
+			formatLine.setAD_Column_ID(columnId);
+		}
+		saveRecord(formatLine);
+		return formatLine;
+	}
+
+	private I_EXP_FormatLine dateFormatLine(final String value, final MColumn column, final String dateFormat)
+	{
+		final I_EXP_FormatLine formatLine = formatLine(X_EXP_FormatLine.TYPE_XMLElement, value, column);
+		formatLine.setDateFormat(dateFormat);
+		saveRecord(formatLine);
+		return formatLine;
+	}
+
+	private I_EXP_FormatLine mandatoryFormatLine(final String value, final MColumn column)
+	{
+		final I_EXP_FormatLine formatLine = formatLine(X_EXP_FormatLine.TYPE_XMLElement, value, column);
+		formatLine.setIsMandatory(true);
+		saveRecord(formatLine);
+		return formatLine;
+	}
+
+	private I_EXP_FormatLine referencedFormatLine(final String value, final MColumn column, final int formatId, final String description)
+	{
+		final I_EXP_FormatLine formatLine = formatLine(X_EXP_FormatLine.TYPE_ReferencedEXPFormat, value, column);
+		formatLine.setEXP_EmbeddedFormat_ID(formatId);
+		formatLine.setDescription(description);
+		saveRecord(formatLine);
+		return formatLine;
+	}
+
+	private I_EXP_FormatLine embeddedFormatLine(final String value, final int formatId, final String description)
+	{
+		final I_EXP_FormatLine formatLine = formatLine(X_EXP_FormatLine.TYPE_EmbeddedEXPFormat, value, null);
+		formatLine.setEXP_EmbeddedFormat_ID(formatId);
+		formatLine.setDescription(description);
+		saveRecord(formatLine);
+		return formatLine;
+	}
+
+	/**
+	 * Takes the columns, formats and referenced records from the test instead of the database.
+	 */
+	private class ExportHelperWithoutDB extends ExportHelper
+	{
+		private ExportHelperWithoutDB(final int adClientId)
+		{
+			super(Env.getCtx(), adClientId);
+		}
+
+		@Override
+		MColumn retrieveColumn(final I_EXP_FormatLine formatLine)
+		{
+			return columnsById.get(formatLine.getAD_Column_ID());
+		}
+
+		@Override
+		MEXPFormat retrieveFormat(final PO masterPO, final int formatId)
+		{
+			final Map<Integer, MEXPFormat> formatsById = ImmutableMap.of(
+					ORDER_FORMAT_ID, orderFormat,
+					ORDERLINE_FORMAT_ID, orderLineFormat,
+					BPARTNER_FORMAT_ID, bpartnerFormat);
+			return formatsById.get(formatId);
+		}
+
+		@Override
+		List<PO> retrieveEmbeddedInstances(final MEXPFormat embeddedFormat, final PO masterPO, final IReplicationAccessContext racCtx)
+		{
+			assertThat(embeddedFormat).isSameAs(orderLineFormat);
+			return ImmutableList.of(orderLine1, orderLine2);
+		}
+
+		@Override
+		List<PO> retrieveReferencedInstances(final I_EXP_FormatLine formatLine, final MEXPFormat embeddedFormat, final PO masterPO, final IReplicationAccessContext racCtx)
+		{
+			assertThat(embeddedFormat).isSameAs(bpartnerFormat);
+			return ImmutableList.of(bpartner);
+		}
+	}
+}
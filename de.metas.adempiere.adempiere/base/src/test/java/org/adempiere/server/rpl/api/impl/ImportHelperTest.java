@@ -23,17 +23,80 @@ package org.adempiere.server.rpl.api.impl;
  */
 
 
+import static org.adempiere.model.InterfaceWrapperHelper.newInstance;
+import static org.adempiere.model.InterfaceWrapperHelper.saveRecord;
 import static org.adempiere.server.rpl.api.impl.ReplicationHelper.setReplicationCtx;
+import static org.assertj.core.api.Assertions.assertThat;
 
+import java.io.StringReader;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
 import java.util.Properties;
 
+import javax.xml.parsers.DocumentBuilderFactory;
+
+import org.adempiere.exceptions.AdempiereException;
+import org.adempiere.server.rpl.api.impl.ImportLookupIndex.LookupKey;
 import org.adempiere.server.rpl.exceptions.ReplicationException;
+import org.adempiere.test.AdempiereTestHelper;
+import org.compiere.model.I_AD_Column;
+import org.compiere.model.I_AD_Table;
+import org.compiere.model.I_EXP_FormatLine;
+import org.compiere.model.MEXPFormat;
+import org.compiere.model.PO;
+import org.compiere.model.X_EXP_FormatLine;
+import org.compiere.util.DisplayType;
 import org.compiere.util.Env;
 import org.junit.Assert;
+import org.junit.Before;
 import org.junit.Test;
+import org.w3c.dom.Element;
+import org.xml.sax.InputSource;
+
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableMap;
+
+import mockit.Expectations;
+import mockit.Injectable;
 
 public class ImportHelperTest
 {
+	private static final int BPARTNER_FORMAT_ID = 10;
+	private static final int ORDERLINE_FORMAT_ID = 20;
+	private static final int PRODUCT_FORMAT_ID = 30;
+
+	@Injectable
+	private MEXPFormat orderFormat;
+	@Injectable
+	private MEXPFormat bpartnerFormat;
+	@Injectable
+	private MEXPFormat orderLineFormat;
+	@Injectable
+	private MEXPFormat productFormat;
+
+	@Injectable
+	private PO order;
+	@Injectable
+	private PO bpartner;
+	@Injectable
+	private PO product100;
+	@Injectable
+	private PO product200;
+
+	private final Map<Integer, I_AD_Column> columnsById = new HashMap<>();
+
+	/** The tables for which the lookup index ran a bulk query, and the query's parameters */
+	private final Map<String, List<Object>> bulkQueryParamsByTableName = new HashMap<>();
+	private final List<String> bulkQueryTableNames = new ArrayList<>();
+
+	@Before
+	public void init()
+	{
+		AdempiereTestHelper.get().init();
+	}
+
 	@Test
 	public void test_setReplicationCtx() throws Exception
 	{
@@ -68,4 +131,195 @@ public class ImportHelperTest
 
 		setReplicationCtx(ctx, Env.CTXNAME_AD_Client_ID, 2, false); // overwrite = false, not same value, shall throw exception
 	}
+
+	/**
+	 * Verifies that the lookup index gets the keys of the records which {@link ImportHelper} will look up,
+	 * except for those which are looked up together with their master PO.
+	 */
+	@Test
+	public void createLookupIndex() throws Exception
+	{
+		setupFormats();
+		// @formatter:off
+		new Expectations()
+		{{
+			order.get_Value("DocumentNo"); result = "D1"; minTimes = 0;
+			bpartner.get_Value("Value"); result = "BP1"; minTimes = 0;
+			product100.get_Value("M_Product_ID"); result = 100; minTimes = 0;
+			product200.get_Value("M_Product_ID"); result = 200; minTimes = 0;
+		}};
+		// @formatter:on
+		final Map<String, List<PO>> recordsByTableName = ImmutableMap.of(
+				"C_Order", ImmutableList.of(order),
+				"C_BPartner", ImmutableList.of(bpartner),
+				"M_Product", ImmutableList.of(product100, product200));
+
+		final Element rootElement = parseXML("<C_Order>"
+				+ "<DocumentNo>D1</DocumentNo>"
+				+ "<C_BPartner_ID><Value>BP1</Value></C_BPartner_ID>"
+				+ "<C_OrderLine><Line>10</Line><M_Product_ID><M_Product_ID>100</M_Product_ID></M_Product_ID></C_OrderLine>"
+				+ "<C_OrderLine><Line>20</Line><M_Product_ID><M_Product_ID>200</M_Product_ID></M_Product_ID></C_OrderLine>"
+				+ "</C_Order>");
+
+		final ImportHelper importHelper = new ImportHelperWithoutDB(recordsByTableName);
+		final ImportLookupIndex lookupIndex = importHelper.createLookupIndex(orderFormat, rootElement, null);
+
+		// the order lines are looked up with their order's ID, but the products they reference are prefetched
+		assertThat(bulkQueryTableNames).containsExactly("C_Order", "C_BPartner", "M_Product");
+		assertThat(bulkQueryParamsByTableName.get("C_Order")).containsExactly("D1");
+		assertThat(bulkQueryParamsByTableName.get("C_BPartner")).containsExactly("BP1");
+		assertThat(bulkQueryParamsByTableName.get("M_Product")).containsExactly(100, 200);
+
+		// the keys which the import creates when it looks up the records are the ones which were prefetched
+		final LookupKey orderKey = importHelper.createLookupKey(orderFormat, rootElement, "");
+		assertThat(lookupIndex.getRecords(orderKey, ImportHelperTest::failOnSingleLookup)).containsExactly(order);
+
+		final LookupKey bpartnerKey = importHelper.createLookupKey(bpartnerFormat, rootElement, "C_BPartner_ID");
+		assertThat(lookupIndex.getRecords(bpartnerKey, ImportHelperTest::failOnSingleLookup)).containsExactly(bpartner);
+
+		final Element secondOrderLine = (Element)rootElement.getElementsByTagName("C_OrderLine").item(1);
+		final LookupKey productKey = importHelper.createLookupKey(productFormat, secondOrderLine, "M_Product_ID");
+		assertThat(lookupIndex.getRecords(productKey, ImportHelperTest::failOnSingleLookup)).containsExactly(product200);
+	}
+
+	private static List<PO> failOnSingleLookup()
+	{
+		throw new AdempiereException("single lookup not expected");
+	}
+
+	private void setupFormats()
+	{
+		final I_EXP_FormatLine documentNoLine = uniqueFormatLine("DocumentNo", DisplayType.String);
+		final I_EXP_FormatLine bpartnerValueLine = uniqueFormatLine("Value", DisplayType.String);
+		final I_EXP_FormatLine lineLine = uniqueFormatLine("Line", DisplayType.Integer);
+		final I_EXP_FormatLine productIdLine = uniqueFormatLine("M_Product_ID", DisplayType.ID);
+
+		final List<I_EXP_FormatLine> orderFormatLines = ImmutableList.of(
+				documentNoLine,
+				referencedFormatLine("C_BPartner_ID", BPARTNER_FORMAT_ID),
+				embeddedFormatLine("C_OrderLine", ORDERLINE_FORMAT_ID));
+		final List<I_EXP_FormatLine> orderLineFormatLines = ImmutableList.of(
+				lineLine,
+				referencedFormatLine("M_Product_ID", PRODUCT_FORMAT_ID));
+
+		// @formatter:off
+		new Expectations()
+		{{
+			orderFormat.getAD_Table(); result = table("C_Order"); minTimes = 0;
+			orderFormat.getUniqueColumns(); result = ImmutableList.of(documentNoLine); minTimes = 0;
+			orderFormat.getFormatLinesOrderedBy(anyString); result = orderFormatLines; minTimes = 0;
+
+			bpartnerFormat.getAD_Table(); result = table("C_BPartner"); minTimes = 0;
+			bpartnerFormat.getUniqueColumns(); result = ImmutableList.of(bpartnerValueLine); minTimes = 0;
+			bpartnerFormat.getFormatLinesOrderedBy(anyString); result = ImmutableList.of(bpartnerValueLine); minTimes = 0;
+
+			orderLineFormat.getAD_Table(); result = table("C_OrderLine"); minTimes = 0;
+			orderLineFormat.getUniqueColumns(); result = ImmutableList.of(lineLine); minTimes = 0;
+			orderLineFormat.getFormatLinesOrderedBy(anyString); result = orderLineFormatLines; minTimes = 0;
+
+			productFormat.getAD_Table(); result = table("M_Product"); minTimes = 0;
+			productFormat.getUniqueColumns(); result = ImmutableList.of(productIdLine); minTimes = 0;
+			productFormat.getFormatLinesOrderedBy(anyString); result = ImmutableList.of(productIdLine); minTimes = 0;
+		}};
+		// @formatter:on
+	}
+
+	private static I_AD_Table table(final String tableName)
+	{
+		final I_AD_Table table = newInstance(I_AD_Table.class);
+		table.setTableName(tableName);
+		saveRecord(table);
+		return table;
+	}
+
+	private I_EXP_FormatLine uniqueFormatLine(final String columnName, final int adReferenceId)
+	{
+		final I_AD_Column column = newInstance(I_AD_Column.class);
+		column.setColumnName(columnName);
+		column.setAD_Reference_ID(adReferenceId);
+		saveRecord(column);
+		columnsById.put(column.getAD_Column_ID(), column);
+
+		final I_EXP_FormatLine formatLine = newInstance(I_EXP_FormatLine.class);
+		formatLine.setType(X_EXP_FormatLine.TYPE_XMLElement);
+		formatLine.setValue(columnName);
+		formatLine.setAD_Column_ID(column.getAD_Column_ID());
+		formatLine.setIsPartUniqueIndex(true);
+		saveRecord(formatLine);
+		return formatLine;
+	}
+
+	private static I_EXP_FormatLine referencedFormatLine(final String value, final int formatId)
+	{
+		return formatLine(X_EXP_FormatLine.TYPE_ReferencedEXPFormat, value, formatId);
+	}
+
+	private static I_EXP_FormatLine embeddedFormatLine(final String value, final int formatId)
+	{
+		return formatLine(X_EXP_FormatLine.TYPE_EmbeddedEXPFormat, value, formatId);
+	}
+
+	private static I_EXP_FormatLine formatLine(final String type, final String value, final int formatId)
+	{
+		final I_EXP_FormatLine formatLine = newInstance(I_EXP_FormatLine.class);
+		formatLine.setType(type);
+		formatLine.setValue(value);
+		formatLine.setEXP_EmbeddedFormat_ID(formatId);
+		saveRecord(formatLine);
+		return formatLine;
+	}
+
+	private static Element parseXML(final String xml) throws Exception
+	{
+		return DocumentBuilderFactory.newInstance()
+				.newDocumentBuilder()
+				.parse(new InputSource(new StringReader(xml)))
+				.getDocumentElement();
+	}
+
+	/**
+	 * Takes the formats and columns from the test and lets the lookup index query the given records instead of the database.
+	 */
+	private class ImportHelperWithoutDB extends ImportHelper
+	{
+		private final Map<String, List<PO>> recordsByTableName;
+
+		private ImportHelperWithoutDB(final Map<String, List<PO>> recordsByTableName)
+		{
+			this.recordsByTableName = recordsByTableName;
+		}
+
+		@Override
+		boolean isDoLookup(final MEXPFormat expFormat)
+		{
+			return true;
+		}
+
+		@Override
+		MEXPFormat retrieveFormat(final int formatId)
+		{
+			final Map<Integer, MEXPFormat> formatsById = ImmutableMap.of(
+					BPARTNER_FORMAT_ID, bpartnerFormat,
+					ORDERLINE_FORMAT_ID, orderLineFormat,
+					PRODUCT_FORMAT_ID, productFormat);
+			return formatsById.get(formatId);
+		}
+
+		@Override
+		I_AD_Column retrieveColumn(final I_EXP_FormatLine formatLine)
+		{
+			return columnsById.get(formatLine.getAD_Column_ID());
+		}
+
+		@Override
+		ImportLookupIndex newLookupIndex(final String trxName)
+		{
+			// like the IN query, return all records of the table; it's up to the index to pick the requested ones
+			return new ImportLookupIndex((tableName, whereClause, params) -> {
+				bulkQueryTableNames.add(tableName);
+				bulkQueryParamsByTableName.put(tableName, params);
+				return recordsByTableName.getOrDefault(tableName, ImmutableList.of());
+			});
+		}
+	}
 }
@@ -0,0 +1,190 @@
+package org.adempiere.server.rpl.api.impl;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.Supplier;
+import java.util.stream.Collectors;
+
+import org.adempiere.exceptions.AdempiereException;
+import org.adempiere.server.rpl.api.impl.ImportLookupIndex.LookupKey;
+import org.adempiere.test.AdempiereTestHelper;
+import org.compiere.model.PO;
+import org.junit.Before;
+import org.junit.Test;
+
+import com.google.common.collect.ArrayListMultimap;
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ListMultimap;
+
+import mockit.Expectations;
+import mockit.Injectable;
+
+/*
+ * #%L
+ * de.metas.adempiere.adempiere.base
+ * %%
+ * Copyright (C) 2019 metas GmbH
+ * %%
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as
+ * published by the Free Software Foundation, either version 2 of the
+ * License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public
+ * License along with this program. If not, see
+ * <http://www.gnu.org/licenses/gpl-2.0.html>.
+ * #L%
+ */
+
+public class ImportLookupIndexTest
+{
+	private static final Supplier<List<PO>> SINGLE_LOOKUP_NOT_EXPECTED = () -> {
+		throw new AdempiereException("single lookup not expected");
+	};
+
+	/** The records of our "database", by table name */
+	private final ListMultimap<String, PO> recordsByTableName = ArrayListMultimap.create();
+
+	/** The tables for which {@link ImportLookupIndex} ran a bulk query */
+	private final List<String> queriedTableNames = new ArrayList<>();
+
+	private ImportLookupIndex lookupIndex;
+
+	@Before
+	public void init()
+	{
+		AdempiereTestHelper.get().init();
+
+		// like the IN query, return all records of the table; it's up to the index to pick the requested ones
+		lookupIndex = new ImportLookupIndex((tableName, whereClause, params) -> {
+			queriedTableNames.add(tableName);
+			return ImmutableList.copyOf(recordsByTableName.get(tableName));
+		});
+	}
+
+	private void addRecord(final String tableName, final PO record)
+	{
+		recordsByTableName.put(tableName, record);
+	}
+
+	/** What {@link ImportHelper}'s single record lookup would return */
+	private Supplier<List<PO>> singleLookup(final LookupKey key)
+	{
+		return () -> recordsByTableName.get(key.getTableName())
+				.stream()
+				.filter(record -> key.getColumnNames().stream().map(record::get_Value).collect(Collectors.toList()).equals(key.getValues()))
+				.collect(ImmutableList.toImmutableList());
+	}
+
+	@Test
+	public void idKeyAndStringKey_bothMatch(
+			@Injectable final PO product,
+			@Injectable final PO bpartner)
+	{
+		// @formatter:off
+		new Expectations()
+		{{
+			product.get_Value("M_Product_ID"); result = 100; minTimes = 0;
+			bpartner.get_Value("Value"); result = "BP1"; minTimes = 0;
+		}};
+		// @formatter:on
+		addRecord("M_Product", product);
+		addRecord("C_BPartner", bpartner);
+
+		final LookupKey productKey = new LookupKey("M_Product", ImmutableList.of("M_Product_ID"), ImmutableList.<Object> of(100));
+		final LookupKey bpartnerKey = new LookupKey("C_BPartner", ImmutableList.of("Value"), ImmutableList.<Object> of("BP1"));
+		lookupIndex.addKey(productKey);
+		lookupIndex.addKey(bpartnerKey);
+		lookupIndex.prefetch();
+
+		assertThat(queriedTableNames).containsExactly("M_Product", "C_BPartner");
+		assertThat(lookupIndex.getRecords(productKey, SINGLE_LOOKUP_NOT_EXPECTED)).containsExactly(product);
+		assertThat(lookupIndex.getRecords(bpartnerKey, SINGLE_LOOKUP_NOT_EXPECTED)).containsExactly(bpartner);
+	}
+
+	/**
+	 * For keys (1,10) and (2,20), the query is <code>A IN (1,2) AND B IN (10,20)</code>, which also returns the records (1,20) and (2,10).
+	 */
+	@Test
+	public void multiColumnKey_rejectsOtherValueCombinations(
+			@Injectable final PO record_1_10,
+			@Injectable final PO record_1_20,
+			@Injectable final PO record_2_10,
+			@Injectable final PO record_2_20)
+	{
+		// @formatter:off
+		new Expectations()
+		{{
+			record_1_10.get_Value("A"); result = 1; minTimes = 0;
+			record_1_10.get_Value("B"); result = 10; minTimes = 0;
+			record_1_20.get_Value("A"); result = 1; minTimes = 0;
+			record_1_20.get_Value("B"); result = 20; minTimes = 0;
+			record_2_10.get_Value("A"); result = 2; minTimes = 0;
+			record_2_10.get_Value("B"); result = 10; minTimes = 0;
+			record_2_20.get_Value("A"); result = 2; minTimes = 0;
+			record_2_20.get_Value("B"); result = 20; minTimes = 0;
+		}};
+		// @formatter:on
+		addRecord("T", record_1_10);
+		addRecord("T", record_1_20);
+		addRecord("T", record_2_10);
+		addRecord("T", record_2_20);
+
+		final LookupKey key_1_10 = new LookupKey("T", ImmutableList.of("A", "B"), ImmutableList.<Object> of(1, 10));
+		final LookupKey key_2_20 = new LookupKey("T", ImmutableList.of("A", "B"), ImmutableList.<Object> of(2, 20));
+		lookupIndex.addKey(key_1_10);
+		lookupIndex.addKey(key_2_20);
+		lookupIndex.prefetch();
+
+		assertThat(queriedTableNames).containsExactly("T");
+		assertThat(lookupIndex.getRecords(key_1_10, SINGLE_LOOKUP_NOT_EXPECTED)).containsExactly(record_1_10);
+		assertThat(lookupIndex.getRecords(key_2_20, SINGLE_LOOKUP_NOT_EXPECTED)).containsExactly(record_2_20);
+
+		// not requested, so not indexed either
+		final LookupKey key_1_20 = new LookupKey("T", ImmutableList.of("A", "B"), ImmutableList.<Object> of(1, 20));
+		assertThat(lookupIndex.getRecords(key_1_20, singleLookup(key_1_20))).containsExactly(record_1_20);
+	}
+
+	/**
+	 * A message might first create a record and then reference it.
+	 * The prefetch didn't find that record, so the index must not claim that there is none.
+	 */
+	@Test
+	public void keyWithoutPrefetchedRecord_fallsBackToSingleLookup(@Injectable final PO bpartnerCreatedByMessage)
+	{
+		// @formatter:off
+		new Expectations()
+		{{
+			bpartnerCreatedByMessage.get_Value("Value"); result = "NEW"; minTimes = 0;
+		}};
+		// @formatter:on
+
+		final LookupKey key = new LookupKey("C_BPartner", ImmutableList.of("Value"), ImmutableList.<Object> of("NEW"));
+		lookupIndex.addKey(key);
+		lookupIndex.prefetch();
+		assertThat(queriedTableNames).containsExactly("C_BPartner");
+
+		// the message's first line creates the partner
+		addRecord("C_BPartner", bpartnerCreatedByMessage);
+
+		// a later line looks it up
+		assertThat(lookupIndex.getRecords(key, singleLookup(key))).containsExactly(bpartnerCreatedByMessage);
+		assertThat(lookupIndex.toString()).contains("hits=0", "singleLookups=1");
+	}
+
+	@Test
+	public void keyNotSupportedByIndex_usesSingleLookup()
+	{
+		final List<PO> records = lookupIndex.getRecords(null, ImmutableList::of);
+
+		assertThat(records).isEmpty();
+		assertThat(queriedTableNames).isEmpty();
+	}
+}
@@ -105,6 +105,14 @@ public interface IWorkPackageQueue
 	 */
 	boolean unlockNoFail(I_C_Queue_WorkPackage workPackage);
 
+	/**
+	 * Unlocks the workpackages which were claimed in advance by {@link #pollAndLock(long)} but not yet returned by it.
+	 * To be called when the processor which polls this queue is shut down, so that other nodes can process them.
+	 * 
+	 * @return how many workpackages were unlocked
+	 */
+	int releaseClaimedWorkPackages();
+
 	/**
 	 * Retrieve the global queue size (i.e. number of unprocessed workpackages). This includes a DB query.
 	 * 
@@ -24,9 +24,11 @@ package de.metas.async.api.impl;
 
 import java.util.ArrayList;
 import java.util.Collections;
+import java.util.Deque;
 import java.util.Iterator;
 import java.util.List;
 import java.util.Properties;
+import java.util.concurrent.ConcurrentLinkedDeque;
 import java.util.concurrent.Future;
 import java.util.concurrent.locks.ReentrantLock;
 
@@ -45,6 +47,8 @@ import org.compiere.model.I_AD_User;
 import org.compiere.util.Env;
 import org.slf4j.Logger;
 
+import com.google.common.annotations.VisibleForTesting;
+
 import de.metas.async.Async_Constants;
 import de.metas.async.api.IAsyncBatchBL;
 import de.metas.async.api.IQueueDAO;
@@ -78,6 +82,13 @@ public class WorkPackageQueue implements IWorkPackageQueue
 {
 	private final static String SYSCONFIG_POLLINTERVAL = "de.metas.async.PollIntervallMillis";
 
+	/**
+	 * How many workpackages shall be claimed (i.e. locked) in one go. The claimed packages are buffered and handed out one by one on subsequent polls.
+	 * A value less or equal to one means that each poll locks exactly one workpackage, which is the default.
+	 */
+	@VisibleForTesting
+	static final String SYSCONFIG_CLAIM_BATCH_SIZE = "de.metas.async.WorkPackageQueue.ClaimBatchSize";
+
 	private static final transient Logger logger = LogManager.getLogger(WorkPackageQueue.class);
 
 	private final transient IQueueDAO dao;
@@ -109,6 +120,13 @@ public class WorkPackageQueue implements IWorkPackageQueue
 
 	private final ReentrantLock mainLock = new ReentrantLock();
 
+	/**
+	 * IDs of workpackages which were already locked by us, but not yet returned by {@link #pollAndLock(long)}.
+	 * <p>
+	 * NOTE: not guarded by {@link #mainLock}, because {@link #releaseClaimedWorkPackages()} shall not wait for a polling thread.
+	 */
+	private final Deque<Integer> claimedWorkPackageIds = new ConcurrentLinkedDeque<>();
+
 	private WorkPackageQueue(final Properties ctx,
 			final List<Integer> packageProcessorIds,
 			final String enquingPackageProcessorInternalName,
@@ -210,8 +228,12 @@ public class WorkPackageQueue implements IWorkPackageQueue
 
 		final IQuery<I_C_Queue_WorkPackage> query = createQuery(workPackageCtx);
 
+		final WorkpackageReadyNotifier readyNotifier = WorkpackageReadyNotifier.instance;
+		long notificationsMarker = readyNotifier.getNotificationsMarker(packageProcessorIds);
+
 		final long startTS = SystemTime.millis();
-		I_C_Queue_WorkPackage workPackage = retrieveAndLock(query);
+		final boolean allowClaimingBatch = timeoutMillis != TIMEOUT_OneTimeOnly;
+		I_C_Queue_WorkPackage workPackage = retrieveAndLock(query, workPackageCtx, allowClaimingBatch);
 		if (timeoutMillis == TIMEOUT_OneTimeOnly && workPackage == null)
 		{
 			// We are running in one time only mode (synchronous mode) and we did not get the package from the first time
@@ -234,12 +256,20 @@ public class WorkPackageQueue implements IWorkPackageQueue
 				}
 			}
 
-			// No workpackages were found. Sleep 1sec and then try again
+			// No workpackages were found. Wait until we are notified about a new workpackage (or sleep 1sec if notifications are disabled) and then try again
 			try
 			{
-				// note: we always get the new service, because things might have changed since this method started
-				final int pollIntervalMs = Services.get(ISysConfigBL.class).getIntValue(SYSCONFIG_POLLINTERVAL, 1000);
-				Thread.sleep(pollIntervalMs);
+				if (readyNotifier.isEnabled())
+				{
+					final boolean notified = readyNotifier.awaitNotification(packageProcessorIds, notificationsMarker, getWaitMillis(readyNotifier.getSafetyNetPollIntervalMillis(), timeoutMillis, startTS));
+					logger.trace("Stopped waiting for workpackages: notified={}", notified);
+				}
+				else
+				{
+					// note: we always get the new service, because things might have changed since this method started
+					final int pollIntervalMs = Services.get(ISysConfigBL.class).getIntValue(SYSCONFIG_POLLINTERVAL, 1000);
+					Thread.sleep(pollIntervalMs);
+				}
 			}
 			catch (final InterruptedException e)
 			{
@@ -249,7 +279,8 @@ public class WorkPackageQueue implements IWorkPackageQueue
 
 			// Try fetching the workpackage again
 			logger.trace("Retry retrieving next workpackage");
-			workPackage = retrieveAndLock(query);
+			notificationsMarker = readyNotifier.getNotificationsMarker(packageProcessorIds);
+			workPackage = retrieveAndLock(query, workPackageCtx, allowClaimingBatch);
 		}
 
 		Check.assumeNotNull(workPackage, "workPackage not null");
@@ -269,6 +300,20 @@ public class WorkPackageQueue implements IWorkPackageQueue
 		return workPackage;
 	}
 
+	/**
+	 * @return how long to wait for a workpackage notification, without exceeding the given poll timeout
+	 */
+	private static long getWaitMillis(final int pollIntervalMillis, final long timeoutMillis, final long startTS)
+	{
+		if (timeoutMillis == TIMEOUT_Infinite)
+		{
+			return pollIntervalMillis;
+		}
+
+		final long remainingMillis = timeoutMillis - (SystemTime.millis() - startTS);
+		return Math.max(Math.min(pollIntervalMillis, remainingMillis), 1);
+	}
+
 	/**
 	 * Update context from work package (AD_Client_ID, AD_Org_ID, AD_User_ID, AD_Role_ID etc).
 	 *
@@ -323,8 +368,17 @@ public class WorkPackageQueue implements IWorkPackageQueue
 		Env.setContext(workPackageCtx, Env.CTXNAME_AD_Session_ID, Env.CTXVALUE_AD_SESSION_ID_NONE);
 	}
 
-	private I_C_Queue_WorkPackage retrieveAndLock(final IQuery<I_C_Queue_WorkPackage> query)
+	private I_C_Queue_WorkPackage retrieveAndLock(
+			final IQuery<I_C_Queue_WorkPackage> query,
+			final Properties workPackageCtx,
+			final boolean allowClaimingBatch)
 	{
+		final int claimBatchSize = allowClaimingBatch ? Services.get(ISysConfigBL.class).getIntValue(SYSCONFIG_CLAIM_BATCH_SIZE, 1) : 1;
+		if (claimBatchSize > 1 || !claimedWorkPackageIds.isEmpty())
+		{
+			return retrieveClaimedWorkPackage(query, workPackageCtx, claimBatchSize);
+		}
+
 		I_C_Queue_WorkPackage workPackage = Services.get(ILockManager.class).retrieveAndLock(query, I_C_Queue_WorkPackage.class);
 		if (workPackage != null && !isValid(workPackage))
 		{
@@ -339,6 +393,60 @@ public class WorkPackageQueue implements IWorkPackageQueue
 		return workPackage;
 	}
 
+	/**
+	 * Returns the next workpackage which was already claimed. If there is none, it claims (i.e. locks) the next batch of workpackages first.
+	 * <p>
+	 * The batch is claimed in one go and keeps the query's ordering (priority, etc), so the workpackages are returned in the same order as when polling them one by one.
+	 */
+	private I_C_Queue_WorkPackage retrieveClaimedWorkPackage(
+			final IQuery<I_C_Queue_WorkPackage> query,
+			final Properties workPackageCtx,
+			final int claimBatchSize)
+	{
+		if (claimedWorkPackageIds.isEmpty() && claimBatchSize > 1)
+		{
+			final List<I_C_Queue_WorkPackage> claimedWorkPackages = Services.get(ILockManager.class).retrieveAndLockMultipleRecords(query, claimBatchSize, I_C_Queue_WorkPackage.class);
+			logger.debug("Claimed {} workpackages (claimBatchSize={})", claimedWorkPackages.size(), claimBatchSize);
+
+			claimedWorkPackages.forEach(claimedWorkPackage -> claimedWorkPackageIds.add(claimedWorkPackage.getC_Queue_WorkPackage_ID()));
+		}
+
+		for (Integer workPackageId = claimedWorkPackageIds.poll(); workPackageId != null; workPackageId = claimedWorkPackageIds.poll())
+		{
+			// Load it again, in our context and because it might have been changed since we claimed it
+			final I_C_Queue_WorkPackage workPackage = InterfaceWrapperHelper.create(workPackageCtx, workPackageId, I_C_Queue_WorkPackage.class, ITrx.TRXNAME_None);
+			if (isValid(workPackage))
+			{
+				return workPackage;
+			}
+
+			logger.debug("Claimed workpackage with ID={} is not valid anymore. Unlocking it.", workPackageId);
+			unlockNoFail(workPackageId);
+		}
+
+		return null;
+	}
+
+	@Override
+	public int releaseClaimedWorkPackages()
+	{
+		int countReleased = 0;
+		for (Integer workPackageId = claimedWorkPackageIds.poll(); workPackageId != null; workPackageId = claimedWorkPackageIds.poll())
+		{
+			if (unlockNoFail(workPackageId))
+			{
+				countReleased++;
+			}
+		}
+		return countReleased;
+	}
+
+	private boolean unlockNoFail(final int workPackageId)
+	{
+		final I_C_Queue_WorkPackage workPackage = InterfaceWrapperHelper.create(ctx, workPackageId, I_C_Queue_WorkPackage.class, ITrx.TRXNAME_None);
+		return workPackage != null && unlockNoFail(workPackage);
+	}
+
 	@Override
 	public int size()
 	{
@@ -747,6 +855,9 @@ public class WorkPackageQueue implements IWorkPackageQueue
 			workPackage.setIsReadyForProcessing(true);
 			dao.save(workPackage);
 
+			// Wake up the queue processors as soon as the workpackage is visible to them
+			WorkpackageReadyNotifier.instance.notifyReadyForProcessingAfterCommit(workPackage);
+
 			success = true;
 		}
 		finally
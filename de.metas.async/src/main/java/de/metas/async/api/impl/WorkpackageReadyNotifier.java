@@ -0,0 +1,261 @@
+package de.metas.async.api.impl;
+
+/*
+ * #%L
+ * de.metas.async
+ * %%
+ * Copyright (C) 2019 metas GmbH
+ * %%
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as
+ * published by the Free Software Foundation, either version 2 of the
+ * License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public
+ * License along with this program.  If not, see
+ * <http://www.gnu.org/licenses/gpl-2.0.html>.
+ * #L%
+ */
+
+import java.util.Collection;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.adempiere.ad.trx.api.ITrx;
+import org.adempiere.ad.trx.api.ITrxListenerManager.TrxEventTiming;
+import org.adempiere.ad.trx.api.ITrxManager;
+import org.adempiere.ad.trx.api.OnTrxMissingPolicy;
+import org.adempiere.model.InterfaceWrapperHelper;
+import org.adempiere.service.ISysConfigBL;
+import org.slf4j.Logger;
+
+import com.google.common.base.Joiner;
+import com.google.common.base.Splitter;
+import com.google.common.collect.ImmutableSet;
+
+import de.metas.async.model.I_C_Queue_Block;
+import de.metas.async.model.I_C_Queue_WorkPackage;
+import de.metas.event.Event;
+import de.metas.event.IEventBus;
+import de.metas.event.IEventBusFactory;
+import de.metas.event.IEventListener;
+import de.metas.event.Topic;
+import de.metas.event.Type;
+import de.metas.logging.LogManager;
+import de.metas.util.Check;
+import de.metas.util.Services;
+import lombok.NonNull;
+
+/**
+ * Wakes up the queue processors which are waiting in {@link WorkPackageQueue#pollAndLock(long)} as soon as a workpackage was marked as ready for processing.
+ * <p>
+ * The notification is sent after the workpackage's transaction was committed, to the local waiting threads and, via the remote event bus, to the other nodes.
+ * With notifications enabled, the queue polling ({@value #SYSCONFIG_SafetyNetPollIntervalMillis}) is just a safety net, e.g. for missed remote events.
+ */
+public final class WorkpackageReadyNotifier implements IEventListener
+{
+	public static final transient WorkpackageReadyNotifier instance = new WorkpackageReadyNotifier();
+
+	private static final transient Logger logger = LogManager.getLogger(WorkpackageReadyNotifier.class);
+
+	public static final String SYSCONFIG_Enabled = "de.metas.async.WorkpackageReadyNotifications.Enabled";
+	public static final String SYSCONFIG_SafetyNetPollIntervalMillis = "de.metas.async.WorkpackageReadyNotifications.SafetyNetPollIntervalMillis";
+	private static final int DEFAULT_SafetyNetPollIntervalMillis = 10000;
+
+	private static final Topic TOPIC = Topic.builder()
+			.name("de.metas.async.WorkpackagesReadyForProcessing")
+			.type(Type.REMOTE)
+			.build();
+	private static final String EVENT_PROPERTY_PackageProcessorIds = "C_Queue_PackageProcessor_IDs";
+
+	private static final String TRX_PROPERTY_PackageProcessorIds = WorkpackageReadyNotifier.class.getName() + ".PackageProcessorIds";
+
+	private final AtomicBoolean subscribed = new AtomicBoolean(false);
+
+	/** Counts the notifications per C_Queue_PackageProcessor_ID; waiting threads compare against the counts they saw before polling */
+	private final ConcurrentHashMap<Integer, AtomicLong> notificationCounts = new ConcurrentHashMap<>();
+	private final Object notificationsMonitor = new Object();
+
+	private WorkpackageReadyNotifier()
+	{
+	}
+
+	/**
+	 * Subscribes this notifier to the remote event bus, so that it also gets notified about workpackages which were enqueued on other nodes.
+	 */
+	public void subscribeToRemoteNotifications()
+	{
+		if (subscribed.getAndSet(true))
+		{
+			return;
+		}
+
+		Services.get(IEventBusFactory.class).registerGlobalEventListener(TOPIC, this);
+	}
+
+	public boolean isEnabled()
+	{
+		return Services.get(ISysConfigBL.class).getBooleanValue(SYSCONFIG_Enabled, true);
+	}
+
+	/**
+	 * @return how long shall a waiting queue processor wait for a notification before polling again
+	 */
+	public int getSafetyNetPollIntervalMillis()
+	{
+		return Services.get(ISysConfigBL.class).getIntValue(SYSCONFIG_SafetyNetPollIntervalMillis, DEFAULT_SafetyNetPollIntervalMillis);
+	}
+
+	/**
+	 * Schedules the notification about given (now ready for processing) workpackage to be sent after its transaction was committed.
+	 * If there is no transaction, the notification is sent right away.
+	 */
+	public void notifyReadyForProcessingAfterCommit(@NonNull final I_C_Queue_WorkPackage workPackage)
+	{
+		if (!isEnabled())
+		{
+			return;
+		}
+
+		final I_C_Queue_Block block = workPackage.getC_Queue_Block();
+		if (block == null)
+		{
+			return; // shall not happen
+		}
+		final int packageProcessorId = block.getC_Queue_PackageProcessor_ID();
+
+		final ITrxManager trxManager = Services.get(ITrxManager.class);
+		final ITrx trx = trxManager.get(InterfaceWrapperHelper.getTrxName(workPackage), OnTrxMissingPolicy.ReturnTrxNone);
+		if (trxManager.isNull(trx))
+		{
+			notifyReadyForProcessing(ImmutableSet.of(packageProcessorId));
+			return;
+		}
+
+		// Collect all package processors of this transaction and send one notification on commit
+		final Set<Integer> trxPackageProcessorIds = trx.getProperty(TRX_PROPERTY_PackageProcessorIds, () -> {
+			trx.getTrxListenerManager()
+					.newEventListener(TrxEventTiming.AFTER_COMMIT)
+					.invokeMethodJustOnce(false) // the same trx might be committed more than once
+					.registerHandlingMethod(innerTrx -> {
+						final Set<Integer> packageProcessorIds = innerTrx.getProperty(TRX_PROPERTY_PackageProcessorIds);
+						if (packageProcessorIds == null || packageProcessorIds.isEmpty())
+						{
+							return;
+						}
+						final ImmutableSet<Integer> packageProcessorIdsToNotify = ImmutableSet.copyOf(packageProcessorIds);
+						packageProcessorIds.removeAll(packageProcessorIdsToNotify);
+						notifyReadyForProcessing(packageProcessorIdsToNotify);
+					});
+			return ConcurrentHashMap.newKeySet();
+		});
+		trxPackageProcessorIds.add(packageProcessorId);
+	}
+
+	private void notifyReadyForProcessing(final Set<Integer> packageProcessorIds)
+	{
+		// Wake up our local queue processors
+		signalLocal(packageProcessorIds);
+
+		// Wake up the queue processors of the other nodes
+		try
+		{
+			final Event event = Event.builder()
+					.putProperty(EVENT_PROPERTY_PackageProcessorIds, Joiner.on(",").join(packageProcessorIds))
+					.build();
+			Services.get(IEventBusFactory.class)
+					.getEventBus(TOPIC)
+					.postEvent(event);
+		}
+		catch (final Exception ex)
+		{
+			// the other nodes will pick up the workpackage on their next poll
+			logger.warn("Failed notifying other nodes about workpackages ready for processing of C_Queue_PackageProcessor_IDs={}", packageProcessorIds, ex);
+		}
+	}
+
+	@Override
+	public void onEvent(final IEventBus eventBus, final Event event)
+	{
+		// local events were already signaled when they were posted
+		if (event.isLocalEvent())
+		{
+			return;
+		}
+
+		final String packageProcessorIdsStr = event.getPropertyAsString(EVENT_PROPERTY_PackageProcessorIds);
+		if (Check.isEmpty(packageProcessorIdsStr, true))
+		{
+			logger.debug("Ignored event without package processors: {}", event);
+			return;
+		}
+
+		final ImmutableSet.Builder<Integer> packageProcessorIds = ImmutableSet.builder();
+		for (final String packageProcessorIdStr : Splitter.on(",").omitEmptyStrings().trimResults().split(packageProcessorIdsStr))
+		{
+			packageProcessorIds.add(Integer.parseInt(packageProcessorIdStr));
+		}
+		signalLocal(packageProcessorIds.build());
+	}
+
+	private void signalLocal(final Set<Integer> packageProcessorIds)
+	{
+		for (final Integer packageProcessorId : packageProcessorIds)
+		{
+			notificationCounts.computeIfAbsent(packageProcessorId, k -> new AtomicLong()).incrementAndGet();
+		}
+
+		synchronized (notificationsMonitor)
+		{
+			notificationsMonitor.notifyAll();
+		}
+	}
+
+	/**
+	 * @return a marker which changes each time one of the given package processors is notified; to be passed to {@link #awaitNotification(Collection, long, long)}
+	 */
+	public long getNotificationsMarker(@NonNull final Collection<Integer> packageProcessorIds)
+	{
+		long marker = 0;
+		for (final Integer packageProcessorId : packageProcessorIds)
+		{
+			final AtomicLong count = notificationCounts.get(packageProcessorId);
+			marker += count == null ? 0 : count.get();
+		}
+		return marker;
+	}
+
+	/**
+	 * Waits until one of the given package processors is notified after the given marker was taken, or until the timeout elapsed.
+	 *
+	 * @return true if notified, false if the timeout elapsed
+	 */
+	public boolean awaitNotification(
+			@NonNull final Collection<Integer> packageProcessorIds,
+			final long notificationsMarker,
+			final long timeoutMillis) throws InterruptedException
+	{
+		final long deadlineNanos = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(timeoutMillis);
+		synchronized (notificationsMonitor)
+		{
+			while (getNotificationsMarker(packageProcessorIds) == notificationsMarker)
+			{
+				final long remainingMillis = TimeUnit.NANOSECONDS.toMillis(deadlineNanos - System.nanoTime());
+				if (remainingMillis <= 0)
+				{
+					return false;
+				}
+				notificationsMonitor.wait(remainingMillis);
+			}
+			return true;
+		}
+	}
+}
@@ -42,6 +42,7 @@ import de.metas.Profiles;
 import de.metas.async.Async_Constants;
 import de.metas.async.api.IAsyncBatchListeners;
 import de.metas.async.api.impl.AsyncBatchDAO;
+import de.metas.async.api.impl.WorkpackageReadyNotifier;
 import de.metas.async.model.I_C_Queue_WorkPackage;
 import de.metas.async.model.I_C_Queue_WorkPackage_Log;
 import de.metas.async.model.I_C_Queue_WorkPackage_Param;
@@ -83,6 +84,9 @@ public class Main extends AbstractModuleInterceptor
 		{
 			final int initDelayMillis = getInitDelayMillis();
 			Services.get(IQueueProcessorExecutorService.class).init(initDelayMillis);
+
+			// get notified about workpackages which were enqueued on other nodes
+			WorkpackageReadyNotifier.instance.subscribeToRemoteNotifications();
 		}
 
 		final IMigrationLogger migrationLogger = Services.get(IMigrationLogger.class);
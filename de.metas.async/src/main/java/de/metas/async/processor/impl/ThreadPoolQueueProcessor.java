@@ -149,7 +149,9 @@ class ThreadPoolQueueProcessor extends AbstractQueueProcessor
 		}
 
 		executor.shutdownNow();
-		logger.info("Shutdown finished");
+
+		final int countReleased = getQueue().releaseClaimedWorkPackages();
+		logger.info("Shutdown finished (released {} claimed workpackages)", countReleased);
 
 		running.set(false);
 	}
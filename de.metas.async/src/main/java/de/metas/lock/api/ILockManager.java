@@ -23,6 +23,8 @@ package de.metas.lock.api;
  */
 
 
+import java.util.List;
+
 import org.adempiere.ad.dao.IQueryBuilder;
 import org.adempiere.ad.dao.IQueryFilter;
 import org.compiere.model.IQuery;
@@ -94,6 +96,14 @@ public interface ILockManager extends ISingletonService
 	 */
 	<T> T retrieveAndLock(IQuery<T> query, Class<T> clazz);
 
+	/**
+	 * Retrieves up to <code>limit</code> models from query and locks them (using {@link LockOwner#NONE}), preferably in one go.
+	 * Records which are concurrently locked by somebody else are skipped.
+	 *
+	 * @return retrieved records (already locked), in the query's order; never null
+	 */
+	<T> List<T> retrieveAndLockMultipleRecords(IQuery<T> query, int limit, Class<T> clazz);
+
 	/**
 	 * Builds a SQL where clause to be used in other queries to filter the results.
 	 *
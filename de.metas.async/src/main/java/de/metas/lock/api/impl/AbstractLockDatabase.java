@@ -22,7 +22,9 @@ package de.metas.lock.api.impl;
  * #L%
  */
 
+import java.util.ArrayList;
 import java.util.Iterator;
+import java.util.List;
 
 import org.adempiere.ad.dao.IQueryBL;
 import org.adempiere.ad.dao.IQueryBuilder;
@@ -311,6 +313,28 @@ public abstract class AbstractLockDatabase implements ILockDatabase
 		return null;
 	}
 
+	/**
+	 * Retrieves and locks the records one by one, using {@link #retrieveAndLock(IQuery, Class)}.
+	 * Database specific implementations are advised to override this method and do it in one go.
+	 */
+	@Override
+	public <T> List<T> retrieveAndLockMultipleRecords(final IQuery<T> query, final int limit, final Class<T> clazz)
+	{
+		Check.assumeGreaterThanZero(limit, "limit");
+
+		final List<T> models = new ArrayList<>();
+		while (models.size() < limit)
+		{
+			final T model = retrieveAndLock(query, clazz);
+			if (model == null)
+			{
+				break;
+			}
+			models.add(model);
+		}
+		return models;
+	}
+
 	@Override
 	public final String getLockedWhereClause(final Class<?> modelClass, final String joinColumnNameFQ, final LockOwner lockOwner)
 	{
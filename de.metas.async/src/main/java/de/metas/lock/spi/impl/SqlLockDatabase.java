@@ -13,6 +13,7 @@ import org.adempiere.ad.dao.impl.TypedSqlQuery;
 import org.adempiere.ad.dao.impl.TypedSqlQueryFilter;
 import org.adempiere.ad.table.api.IADTableDAO;
 import org.adempiere.ad.trx.api.ITrx;
+import org.adempiere.ad.trx.api.ITrxManager;
 import org.adempiere.exceptions.DBUniqueConstraintException;
 import org.adempiere.model.InterfaceWrapperHelper;
 import org.adempiere.util.lang.ITableRecordReference;
@@ -20,6 +21,8 @@ import org.compiere.model.IQuery;
 import org.compiere.util.DB;
 import org.compiere.util.DisplayType;
 
+import com.google.common.collect.ImmutableList;
+
 import de.metas.lock.api.ILock;
 import de.metas.lock.api.ILockCommand;
 import de.metas.lock.api.IUnlockCommand;
@@ -436,6 +439,85 @@ public class SqlLockDatabase extends AbstractLockDatabase
 		}
 	}
 
+	/**
+	 * Selects the not locked records with <code>FOR UPDATE SKIP LOCKED</code> and inserts their {@link I_T_Lock} records in one statement.
+	 * Concurrent callers therefore don't compete for the same records and don't need to retry.
+	 */
+	@Override
+	public <T> List<T> retrieveAndLockMultipleRecords(final IQuery<T> query, final int limit, final Class<T> clazz)
+	{
+		Check.assumeGreaterThanZero(limit, "limit");
+
+		final TypedSqlQuery<T> notLockedQuery = TypedSqlQuery.cast(retrieveNotLockedQuery(query)).setLimit(limit);
+		final String tableName = notLockedQuery.getTableName();
+		final String keyColumnName = notLockedQuery.getKeyColumnName();
+		final String keyColumnNameFQ = tableName + "." + keyColumnName;
+		final int adTableId = Services.get(IADTableDAO.class).retrieveTableId(tableName);
+
+		final LockOwner lockOwner = LockOwner.NONE;
+
+		final List<Object> sqlParams = new ArrayList<>();
+		final String sqlSelectCandidates = notLockedQuery.buildSQL(new StringBuilder("SELECT " + keyColumnNameFQ + " FROM " + tableName), true)
+				+ " FOR UPDATE OF " + tableName + " SKIP LOCKED";
+		sqlParams.addAll(notLockedQuery.getParametersEffective());
+
+		final String sql = "WITH candidates AS (" + sqlSelectCandidates + ")"
+				+ " INSERT INTO " + I_T_Lock.Table_Name + " ("
+				+ I_T_Lock.COLUMNNAME_AD_Table_ID
+				+ ", " + I_T_Lock.COLUMNNAME_Record_ID
+				+ ", " + I_T_Lock.COLUMNNAME_Owner
+				+ ", " + I_T_Lock.COLUMNNAME_IsAutoCleanup
+				+ ", " + I_T_Lock.COLUMNNAME_IsAllowMultipleOwners
+				+ ")"
+				//
+				+ " SELECT "
+				+ toSqlParam(adTableId, sqlParams) // AD_Table_ID
+				+ ", candidates." + keyColumnName // Record_ID
+				+ ", " + toSqlParam(lockOwner.getOwnerName(), sqlParams) // Owner
+				+ ", " + toSqlParam(true, sqlParams) // IsAutoCleanup
+				+ ", " + toSqlParam(false, sqlParams) // IsAllowMultipleOwners
+				+ " FROM candidates"
+				// a concurrent caller might have locked a candidate after we selected it, but before we got its row lock
+				+ " ON CONFLICT DO NOTHING"
+				+ " RETURNING " + I_T_Lock.COLUMNNAME_Record_ID;
+
+		final List<Integer> lockedRecordIds = Services.get(ITrxManager.class).call(() -> {
+			final List<Integer> recordIds = new ArrayList<>();
+			PreparedStatement pstmt = null;
+			ResultSet rs = null;
+			try
+			{
+				pstmt = DB.prepareStatement(sql, ITrx.TRXNAME_ThreadInherited);
+				DB.setParameters(pstmt, sqlParams);
+				rs = pstmt.executeQuery();
+				while (rs.next())
+				{
+					recordIds.add(rs.getInt(1));
+				}
+				return recordIds;
+			}
+			catch (final SQLException e)
+			{
+				throw new LockFailedException("Failed retrieving and locking records from " + tableName, e)
+						.setSql(sql, sqlParams.toArray());
+			}
+			finally
+			{
+				DB.close(rs, pstmt);
+			}
+		});
+
+		if (lockedRecordIds.isEmpty())
+		{
+			return ImmutableList.of();
+		}
+
+		// Load the locked records, in the query's order
+		return TypedSqlQuery.cast(query)
+				.addWhereClause(true, keyColumnNameFQ + " IN " + DB.buildSqlList(lockedRecordIds))
+				.list(clazz);
+	}
+
 	@Override
 	protected <T> IQuery<T> retrieveNotLockedQuery(final IQuery<T> query)
 	{
@@ -0,0 +1,116 @@
+package de.metas.async.api.impl;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.util.List;
+
+import org.adempiere.service.ISysConfigBL;
+import org.adempiere.test.AdempiereTestHelper;
+import org.junit.Before;
+import org.junit.Test;
+
+import de.metas.async.Helper;
+import de.metas.async.api.IQueueDAO;
+import de.metas.async.api.IWorkPackageQueue;
+import de.metas.async.model.I_C_Queue_Processor;
+import de.metas.async.model.I_C_Queue_WorkPackage;
+import de.metas.async.processor.IWorkPackageQueueFactory;
+import de.metas.async.spi.WorkpackageProcessorAdapter;
+import de.metas.lock.api.ILockManager;
+import de.metas.lock.api.impl.PlainLockManager;
+import de.metas.util.Services;
+
+/*
+ * #%L
+ * de.metas.async
+ * %%
+ * Copyright (C) 2019 metas GmbH
+ * %%
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as
+ * published by the Free Software Foundation, either version 2 of the
+ * License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public
+ * License along with this program.  If not, see
+ * <http://www.gnu.org/licenses/gpl-2.0.html>.
+ * #L%
+ */
+
+public class TestQueue_ClaimBatch
+{
+	private Helper helper;
+	private IWorkPackageQueue queueForEnqueuing;
+	private IWorkPackageQueue queueForProcessing;
+
+	@Before
+	public void init()
+	{
+		AdempiereTestHelper.get().init();
+		helper = new Helper();
+
+		final IWorkPackageQueueFactory workPackageQueueFactory = Services.get(IWorkPackageQueueFactory.class);
+		queueForEnqueuing = workPackageQueueFactory.getQueueForEnqueuing(helper.getCtx(), NOPWorkpackageProcessor.class);
+
+		final I_C_Queue_Processor queueProcessorDef = helper.createQueueProcessor("TestQueue_ClaimBatch", 1, 1, 1000);
+		helper.assignPackageProcessor(queueProcessorDef, Services.get(IQueueDAO.class).retrievePackageProcessorDefByClass(helper.getCtx(), NOPWorkpackageProcessor.class));
+		queueForProcessing = workPackageQueueFactory.getQueueForPackageProcessing(queueProcessorDef);
+
+		Services.get(ISysConfigBL.class).setValue(WorkPackageQueue.SYSCONFIG_CLAIM_BATCH_SIZE, 3, 0);
+	}
+
+	@Test
+	public void pollAndLock_servesClaimedWorkpackagesInOrder()
+	{
+		final List<I_C_Queue_WorkPackage> workpackages = helper.createAndEnqueueWorkpackages(queueForEnqueuing, 5, true);
+
+		for (final I_C_Queue_WorkPackage expectedWorkpackage : workpackages)
+		{
+			final I_C_Queue_WorkPackage workpackage = queueForProcessing.pollAndLock(1000);
+			assertThat(workpackage).isNotNull();
+			assertThat(workpackage.getC_Queue_WorkPackage_ID()).isEqualTo(expectedWorkpackage.getC_Queue_WorkPackage_ID());
+			assertThat(Services.get(ILockManager.class).isLocked(workpackage)).isTrue();
+
+			queueForProcessing.unlock(workpackage);
+		}
+
+		assertThat(queueForProcessing.releaseClaimedWorkPackages()).isEqualTo(0);
+		helper.assertNothingLocked();
+	}
+
+	@Test
+	public void releaseClaimedWorkPackages()
+	{
+		helper.createAndEnqueueWorkpackages(queueForEnqueuing, 5, true);
+
+		final I_C_Queue_WorkPackage workpackage = queueForProcessing.pollAndLock(1000);
+		assertThat(workpackage).isNotNull();
+		assertThat(getLocksCount()).isEqualTo(3);
+
+		assertThat(queueForProcessing.releaseClaimedWorkPackages()).isEqualTo(2);
+		assertThat(getLocksCount()).isEqualTo(1);
+
+		queueForProcessing.unlock(workpackage);
+		helper.assertNothingLocked();
+	}
+
+	private static int getLocksCount()
+	{
+		final PlainLockManager lockManager = (PlainLockManager)Services.get(ILockManager.class);
+		return lockManager.getLockDatabase().getLocksCount();
+	}
+
+	public static final class NOPWorkpackageProcessor extends WorkpackageProcessorAdapter
+	{
+		@Override
+		public Result processWorkPackage(final I_C_Queue_WorkPackage workPackage, final String localTrxName)
+		{
+			return Result.SUCCESS;
+		}
+	}
+}
@@ -0,0 +1,92 @@
+package de.metas.async.api.impl;
+
+import static org.adempiere.model.InterfaceWrapperHelper.newInstance;
+import static org.adempiere.model.InterfaceWrapperHelper.save;
+import static org.assertj.core.api.Assertions.assertThat;
+
+import org.adempiere.ad.trx.api.ITrxManager;
+import org.adempiere.test.AdempiereTestHelper;
+import org.junit.Before;
+import org.junit.Test;
+
+import com.google.common.collect.ImmutableList;
+
+import de.metas.async.model.I_C_Queue_Block;
+import de.metas.async.model.I_C_Queue_WorkPackage;
+import de.metas.util.Services;
+
+/*
+ * #%L
+ * de.metas.async
+ * %%
+ * Copyright (C) 2019 metas GmbH
+ * %%
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as
+ * published by the Free Software Foundation, either version 2 of the
+ * License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public
+ * License along with this program.  If not, see
+ * <http://www.gnu.org/licenses/gpl-2.0.html>.
+ * #L%
+ */
+
+public class WorkpackageReadyNotifierTest
+{
+	private final WorkpackageReadyNotifier notifier = WorkpackageReadyNotifier.instance;
+
+	@Before
+	public void init()
+	{
+		AdempiereTestHelper.get().init();
+	}
+
+	private I_C_Queue_WorkPackage createWorkpackage(final int packageProcessorId)
+	{
+		final I_C_Queue_Block block = newInstance(I_C_Queue_Block.class);
+		block.setC_Queue_PackageProcessor_ID(packageProcessorId);
+		save(block);
+
+		final I_C_Queue_WorkPackage workpackage = newInstance(I_C_Queue_WorkPackage.class);
+		workpackage.setC_Queue_Block(block);
+		save(workpackage);
+		return workpackage;
+	}
+
+	@Test
+	public void notifyOutOfTrx() throws InterruptedException
+	{
+		final ImmutableList<Integer> packageProcessorIds = ImmutableList.of(10);
+		final ImmutableList<Integer> otherPackageProcessorIds = ImmutableList.of(20);
+		final long marker = notifier.getNotificationsMarker(packageProcessorIds);
+		final long otherMarker = notifier.getNotificationsMarker(otherPackageProcessorIds);
+
+		notifier.notifyReadyForProcessingAfterCommit(createWorkpackage(10));
+
+		assertThat(notifier.awaitNotification(packageProcessorIds, marker, 1000)).isTrue();
+		assertThat(notifier.awaitNotification(otherPackageProcessorIds, otherMarker, 10)).isFalse();
+	}
+
+	@Test
+	public void notifyAfterCommit() throws InterruptedException
+	{
+		final ImmutableList<Integer> packageProcessorIds = ImmutableList.of(30);
+		final long marker = notifier.getNotificationsMarker(packageProcessorIds);
+
+		Services.get(ITrxManager.class).run(() -> {
+			notifier.notifyReadyForProcessingAfterCommit(createWorkpackage(30));
+			notifier.notifyReadyForProcessingAfterCommit(createWorkpackage(30));
+
+			assertThat(notifier.getNotificationsMarker(packageProcessorIds)).isEqualTo(marker);
+		});
+
+		// one notification per committed transaction
+		assertThat(notifier.getNotificationsMarker(packageProcessorIds)).isEqualTo(marker + 1);
+	}
+}
@@ -312,6 +312,21 @@ public class BPartnerImportProcess extends AbstractImportProcess<I_I_BPartner>
 				+ ", " + I_I_BPartner.COLUMNNAME_I_BPartner_ID;
 	}
 
+	@Override
+	protected boolean isImportInChunksSupported()
+	{
+		return true;
+	}
+
+	/**
+	 * All lines of one BPartner need to be imported by the same thread, because {@link BPartnerImportContext} relies on them being consecutive.
+	 */
+	@Override
+	protected Object getImportPartitionKey(final I_I_BPartner importRecord)
+	{
+		return importRecord.getValue();
+	}
+
 	@Override
 	protected String getTargetTableName()
 	{
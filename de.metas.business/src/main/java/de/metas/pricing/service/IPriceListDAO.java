@@ -26,6 +26,7 @@ import java.time.LocalDate;
  */
 
 import java.util.Date;
+import java.util.Collection;
 import java.util.Iterator;
 import java.util.List;
 import java.util.Set;
@@ -43,6 +44,7 @@ import de.metas.pricing.PriceListId;
 import de.metas.pricing.PriceListVersionId;
 import de.metas.pricing.PricingSystemId;
 import de.metas.pricing.exceptions.PriceListVersionNotFoundException;
+import de.metas.pricing.service.ProductPriceQuery.IProductPriceQueryMatcher;
 import de.metas.product.ProductId;
 import de.metas.util.ISingletonService;
 
@@ -61,6 +63,8 @@ public interface IPriceListDAO extends ISingletonService
 
 	I_M_PriceList_Version getPriceListVersionById(PriceListVersionId priceListVersionId);
 
+	List<I_M_PriceList_Version> getPriceListVersionsByIds(Collection<PriceListVersionId> priceListVersionIds);
+
 	PriceListsCollection retrievePriceListsCollectionByPricingSystemId(PricingSystemId pricingSystemId);
 
 	/**
@@ -148,6 +152,13 @@ public interface IPriceListDAO extends ISingletonService
 
 	Stream<I_M_ProductPrice> retrieveProductPrices(PriceListVersionId priceListVersionId);
 
+	/**
+	 * Retrieves the active, not attribute dependent product prices of all given products in all given price list versions, using one query.
+	 *
+	 * @param matchers additional matchers which all returned product prices shall match
+	 */
+	List<I_M_ProductPrice> retrieveMainProductPrices(Collection<PriceListVersionId> priceListVersionIds, Collection<ProductId> productIds, Collection<IProductPriceQueryMatcher> matchers);
+
 	/**
 	 * Retrieves product prices records of the given price list version
 	 *
@@ -23,6 +23,8 @@ package de.metas.pricing.service;
  */
 
 import java.math.BigDecimal;
+import java.util.Collection;
+import java.util.List;
 import java.util.Set;
 
 import org.adempiere.location.CountryId;
@@ -71,6 +73,16 @@ public interface IPricingBL extends ISingletonService
 	 */
 	IPricingResult calculatePrice(IPricingContext pricingCtx);
 
+	/**
+	 * Calculates the prices of all given pricing contexts.
+	 * <p>
+	 * Same as calling {@link #calculatePrice(IPricingContext)} for each of them, but the main product prices of all involved products and price list versions
+	 * are loaded upfront with a few set-based queries, instead of querying them again for each pricing context.
+	 *
+	 * @return pricing results, in the same order as the given pricing contexts
+	 */
+	List<IPricingResult> calculatePrices(Collection<? extends IPricingContext> pricingCtxs);
+
 	/**
 	 * Creates an initial {@link IPricingResult}. Copies some of the given <code>pricingCtx</code>'s properties to the pricing result.
 	 *
@@ -11,6 +11,7 @@ import javax.annotation.Nullable;
 
 import org.adempiere.exceptions.AdempiereException;
 import org.adempiere.model.InterfaceWrapperHelper;
+import org.adempiere.util.lang.IAutoCloseable;
 import org.compiere.model.I_M_PriceList;
 import org.compiere.model.I_M_PriceList_Version;
 import org.compiere.model.I_M_PricingSystem;
@@ -56,6 +57,8 @@ public class ProductPrices
 
 	private static final Logger logger = LogManager.getLogger(ProductPrices.class);
 
+	private static final ThreadLocal<ProductPricesSnapshot> currentSnapshotRef = new ThreadLocal<>();
+
 	public static final ProductPriceQuery newQuery(@NonNull final I_M_PriceList_Version plv)
 	{
 		final PriceListVersionId priceListVersionId = PriceListVersionId.ofRepoId(plv.getM_PriceList_Version_ID());
@@ -111,10 +114,34 @@ public class ProductPrices
 
 	public static final I_M_ProductPrice retrieveMainProductPriceOrNull(final I_M_PriceList_Version plv, final ProductId productId)
 	{
-		final List<I_M_ProductPrice> allMainPrices = retrieveAllMainPrices(plv, productId);
+		final ProductPricesSnapshot snapshot = currentSnapshotRef.get();
+		final PriceListVersionId priceListVersionId = PriceListVersionId.ofRepoId(plv.getM_PriceList_Version_ID());
+		final List<I_M_ProductPrice> allMainPrices = snapshot != null && snapshot.isCovering(priceListVersionId, productId)
+				? snapshot.getMainProductPrices(priceListVersionId, productId)
+				: retrieveAllMainPrices(plv, productId);
 		return getFirstOrThrowExceptionIfMoreThanOne(allMainPrices);
 	}
 
+	/**
+	 * Loads the main product prices of given products in given price list versions (and their base price list versions) in a few set-based queries.
+	 */
+	public static ProductPricesSnapshot retrieveMainProductPricesSnapshot(
+			@NonNull final Set<PriceListVersionId> priceListVersionIds,
+			@NonNull final Set<ProductId> productIds)
+	{
+		return ProductPricesSnapshot.retrieve(priceListVersionIds, productIds, MATCHERS_MainProductPrice);
+	}
+
+	/**
+	 * Makes the current thread serve main product prices from given snapshot, as far as it covers them, until the returned closeable is closed.
+	 */
+	public static IAutoCloseable temporarySnapshot(@NonNull final ProductPricesSnapshot snapshot)
+	{
+		final ProductPricesSnapshot previousSnapshot = currentSnapshotRef.get();
+		currentSnapshotRef.set(snapshot);
+		return () -> currentSnapshotRef.set(previousSnapshot);
+	}
+
 	private static List<I_M_ProductPrice> retrieveAllMainPrices(
 			@NonNull final I_M_PriceList_Version plv,
 			@NonNull final ProductId productId)
@@ -240,6 +267,13 @@ public class ProductPrices
 			return null;
 		}
 
+		final ProductPricesSnapshot snapshot = currentSnapshotRef.get();
+		final I_M_PriceList_Version basePriceListVersion = snapshot != null ? snapshot.getPriceListVersionOrNull(basePriceListVersionId) : null;
+		if (basePriceListVersion != null)
+		{
+			return basePriceListVersion;
+		}
+
 		final IPriceListDAO priceListsRepo = Services.get(IPriceListDAO.class);
 		return priceListsRepo.getPriceListVersionById(basePriceListVersionId);
 	}
@@ -0,0 +1,145 @@
+package de.metas.pricing.service;
+
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import javax.annotation.Nullable;
+
+import org.compiere.model.I_M_PriceList_Version;
+import org.compiere.model.I_M_ProductPrice;
+
+import com.google.common.collect.ImmutableListMultimap;
+import com.google.common.collect.ImmutableMap;
+import com.google.common.collect.ImmutableSet;
+
+import de.metas.pricing.PriceListVersionId;
+import de.metas.pricing.service.ProductPriceQuery.IProductPriceQueryMatcher;
+import de.metas.product.ProductId;
+import de.metas.util.Services;
+import lombok.NonNull;
+import lombok.ToString;
+import lombok.Value;
+
+/*
+ * #%L
+ * de.metas.business
+ * %%
+ * Copyright (C) 2019 metas GmbH
+ * %%
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as
+ * published by the Free Software Foundation, either version 2 of the
+ * License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public
+ * License along with this program.  If not, see
+ * <http://www.gnu.org/licenses/gpl-2.0.html>.
+ * #L%
+ */
+
+/**
+ * Immutable snapshot of the price list versions and main product prices which are needed to price a given set of products.
+ * <p>
+ * It covers the given price list versions together with all their base price list versions and is loaded with a few set-based queries.
+ * While installed via {@link ProductPrices#temporarySnapshot(ProductPricesSnapshot)}, the main product price lookups are served from it.
+ */
+@ToString(of = { "priceListVersionsById", "productIds" })
+public final class ProductPricesSnapshot
+{
+	static ProductPricesSnapshot retrieve(
+			@NonNull final Set<PriceListVersionId> priceListVersionIds,
+			@NonNull final Set<ProductId> productIds,
+			@NonNull final Collection<IProductPriceQueryMatcher> matchers)
+	{
+		final IPriceListDAO priceListsRepo = Services.get(IPriceListDAO.class);
+
+		//
+		// Load the price list versions level by level, following the base price list versions
+		final Map<PriceListVersionId, I_M_PriceList_Version> priceListVersionsById = new HashMap<>();
+		Set<PriceListVersionId> priceListVersionIdsToLoad = priceListVersionIds;
+		while (!priceListVersionIdsToLoad.isEmpty())
+		{
+			final Set<PriceListVersionId> basePriceListVersionIds = new HashSet<>();
+			for (final I_M_PriceList_Version priceListVersion : priceListsRepo.getPriceListVersionsByIds(priceListVersionIdsToLoad))
+			{
+				priceListVersionsById.put(PriceListVersionId.ofRepoId(priceListVersion.getM_PriceList_Version_ID()), priceListVersion);
+
+				final PriceListVersionId basePriceListVersionId = PriceListVersionId.ofRepoIdOrNull(priceListVersion.getM_Pricelist_Version_Base_ID());
+				if (priceListVersion.isFallbackToBasePriceListPrices() && basePriceListVersionId != null)
+				{
+					basePriceListVersionIds.add(basePriceListVersionId);
+				}
+			}
+
+			basePriceListVersionIds.removeAll(priceListVersionsById.keySet());
+			priceListVersionIdsToLoad = basePriceListVersionIds;
+		}
+
+		//
+		// Load the main product prices of all products in all those price list versions
+		final ImmutableListMultimap<PriceListVersionAndProduct, I_M_ProductPrice> mainProductPrices = priceListsRepo
+				.retrieveMainProductPrices(priceListVersionsById.keySet(), productIds, matchers)
+				.stream()
+				.collect(ImmutableListMultimap.toImmutableListMultimap(
+						productPrice -> PriceListVersionAndProduct.of(
+								PriceListVersionId.ofRepoId(productPrice.getM_PriceList_Version_ID()),
+								ProductId.ofRepoId(productPrice.getM_Product_ID())),
+						productPrice -> productPrice));
+
+		return new ProductPricesSnapshot(priceListVersionsById, productIds, mainProductPrices);
+	}
+
+	private final ImmutableMap<PriceListVersionId, I_M_PriceList_Version> priceListVersionsById;
+	private final ImmutableSet<ProductId> productIds;
+	private final ImmutableListMultimap<PriceListVersionAndProduct, I_M_ProductPrice> mainProductPrices;
+
+	private ProductPricesSnapshot(
+			@NonNull final Map<PriceListVersionId, I_M_PriceList_Version> priceListVersionsById,
+			@NonNull final Set<ProductId> productIds,
+			@NonNull final ImmutableListMultimap<PriceListVersionAndProduct, I_M_ProductPrice> mainProductPrices)
+	{
+		this.priceListVersionsById = ImmutableMap.copyOf(priceListVersionsById);
+		this.productIds = ImmutableSet.copyOf(productIds);
+		this.mainProductPrices = mainProductPrices;
+	}
+
+	/**
+	 * @return true if the main product prices of given product and price list version were loaded into this snapshot
+	 */
+	public boolean isCovering(@NonNull final PriceListVersionId priceListVersionId, @NonNull final ProductId productId)
+	{
+		return priceListVersionsById.containsKey(priceListVersionId) && productIds.contains(productId);
+	}
+
+	/**
+	 * @return the main product prices of given product and price list version; empty if there are none
+	 */
+	public List<I_M_ProductPrice> getMainProductPrices(@NonNull final PriceListVersionId priceListVersionId, @NonNull final ProductId productId)
+	{
+		return mainProductPrices.get(PriceListVersionAndProduct.of(priceListVersionId, productId));
+	}
+
+	@Nullable
+	public I_M_PriceList_Version getPriceListVersionOrNull(@NonNull final PriceListVersionId priceListVersionId)
+	{
+		return priceListVersionsById.get(priceListVersionId);
+	}
+
+	@Value(staticConstructor = "of")
+	private static class PriceListVersionAndProduct
+	{
+		@NonNull
+		PriceListVersionId priceListVersionId;
+		@NonNull
+		ProductId productId;
+	}
+}
@@ -1,11 +1,13 @@
 package de.metas.pricing.service.impl;
 
 import static org.adempiere.model.InterfaceWrapperHelper.getCtx;
+import static org.adempiere.model.InterfaceWrapperHelper.loadByRepoIdAwaresOutOfTrx;
 import static org.adempiere.model.InterfaceWrapperHelper.loadOutOfTrx;
 
 import java.math.BigDecimal;
 import java.sql.Timestamp;
 import java.time.LocalDate;
+import java.util.Collection;
 import java.util.Date;
 import java.util.Iterator;
 import java.util.List;
@@ -49,6 +51,7 @@ import de.metas.pricing.PriceListVersionId;
 import de.metas.pricing.PricingSystemId;
 import de.metas.pricing.service.IPriceListDAO;
 import de.metas.pricing.service.PriceListsCollection;
+import de.metas.pricing.service.ProductPriceQuery.IProductPriceQueryMatcher;
 import de.metas.product.ProductId;
 import de.metas.util.Check;
 import de.metas.util.NumberUtils;
@@ -111,6 +114,16 @@ public class PriceListDAO implements IPriceListDAO
 		return loadOutOfTrx(priceListVersionId, I_M_PriceList_Version.class);
 	}
 
+	@Override
+	public List<I_M_PriceList_Version> getPriceListVersionsByIds(@NonNull final Collection<PriceListVersionId> priceListVersionIds)
+	{
+		if (priceListVersionIds.isEmpty())
+		{
+			return ImmutableList.of();
+		}
+		return loadByRepoIdAwaresOutOfTrx(priceListVersionIds, I_M_PriceList_Version.class);
+	}
+
 	@Override
 	public Stream<I_M_ProductPrice> retrieveProductPrices(@NonNull final PriceListVersionId priceListVersionId)
 	{
@@ -122,6 +135,31 @@ public class PriceListDAO implements IPriceListDAO
 				.iterateAndStream();
 	}
 
+	@Override
+	public List<I_M_ProductPrice> retrieveMainProductPrices(
+			@NonNull final Collection<PriceListVersionId> priceListVersionIds,
+			@NonNull final Collection<ProductId> productIds,
+			@NonNull final Collection<IProductPriceQueryMatcher> matchers)
+	{
+		if (priceListVersionIds.isEmpty() || productIds.isEmpty())
+		{
+			return ImmutableList.of();
+		}
+
+		final IQueryBuilder<I_M_ProductPrice> queryBuilder = Services.get(IQueryBL.class)
+				.createQueryBuilder(I_M_ProductPrice.class)
+				.addOnlyActiveRecordsFilter()
+				.addInArrayFilter(I_M_ProductPrice.COLUMNNAME_M_PriceList_Version_ID, priceListVersionIds)
+				.addInArrayFilter(I_M_ProductPrice.COLUMNNAME_M_Product_ID, productIds)
+				.addEqualsFilter(I_M_ProductPrice.COLUMNNAME_IsAttributeDependant, false);
+		matchers.forEach(matcher -> queryBuilder.filter(matcher.getQueryFilter()));
+
+		return queryBuilder
+				.orderBy(I_M_ProductPrice.COLUMNNAME_M_ProductPrice_ID)
+				.create()
+				.list(I_M_ProductPrice.class);
+	}
+
 	@Override
 	public Iterator<I_M_ProductPrice> retrieveProductPricesOrderedBySeqNoAndProductIdAndMatchSeqNo(@NonNull final PriceListVersionId priceListVersionId)
 	{
@@ -27,7 +27,9 @@ import static org.adempiere.model.InterfaceWrapperHelper.loadOutOfTrx;
 import java.math.BigDecimal;
 import java.time.LocalDate;
 import java.util.ArrayList;
+import java.util.Collection;
 import java.util.List;
+import java.util.Objects;
 import java.util.Properties;
 import java.util.Set;
 
@@ -36,6 +38,7 @@ import org.adempiere.model.InterfaceWrapperHelper;
 import org.adempiere.pricing.model.I_C_PricingRule;
 import org.adempiere.uom.UomId;
 import org.adempiere.uom.api.IUOMConversionBL;
+import org.adempiere.util.lang.IAutoCloseable;
 import org.adempiere.util.proxy.Cached;
 import org.compiere.model.I_C_UOM;
 import org.compiere.model.I_M_PriceList;
@@ -46,6 +49,9 @@ import org.compiere.util.Env;
 import org.compiere.util.Util;
 import org.slf4j.Logger;
 
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableSet;
+
 import de.metas.adempiere.model.I_C_InvoiceLine;
 import de.metas.bpartner.BPartnerId;
 import de.metas.cache.annotation.CacheCtx;
@@ -69,6 +75,7 @@ import de.metas.pricing.service.IPriceListDAO;
 import de.metas.pricing.service.IPricingBL;
 import de.metas.pricing.service.IPricingDAO;
 import de.metas.pricing.service.ProductPrices;
+import de.metas.pricing.service.ProductPricesSnapshot;
 import de.metas.product.IProductBL;
 import de.metas.product.IProductDAO;
 import de.metas.product.ProductCategoryId;
@@ -120,6 +127,42 @@ public class PricingBL implements IPricingBL
 	public IPricingResult calculatePrice(final IPricingContext pricingCtx)
 	{
 		final IPricingContext pricingCtxToUse = setupPricingContext(pricingCtx);
+		return calculatePriceForSetupContext(pricingCtxToUse);
+	}
+
+	@Override
+	public List<IPricingResult> calculatePrices(@NonNull final Collection<? extends IPricingContext> pricingCtxs)
+	{
+		if (pricingCtxs.isEmpty())
+		{
+			return ImmutableList.of();
+		}
+
+		final ImmutableList<IPricingContext> pricingCtxsToUse = pricingCtxs.stream()
+				.map(this::setupPricingContext)
+				.collect(ImmutableList.toImmutableList());
+
+		final ImmutableSet<PriceListVersionId> priceListVersionIds = pricingCtxsToUse.stream()
+				.map(IPricingContext::getPriceListVersionId)
+				.filter(Objects::nonNull)
+				.collect(ImmutableSet.toImmutableSet());
+		final ImmutableSet<ProductId> productIds = pricingCtxsToUse.stream()
+				.map(IPricingContext::getProductId)
+				.filter(Objects::nonNull)
+				.collect(ImmutableSet.toImmutableSet());
+		final ProductPricesSnapshot snapshot = ProductPrices.retrieveMainProductPricesSnapshot(priceListVersionIds, productIds);
+		logger.debug("calculatePrices: pricing {} contexts using {}", pricingCtxsToUse.size(), snapshot);
+
+		try (final IAutoCloseable snapshotRestorer = ProductPrices.temporarySnapshot(snapshot))
+		{
+			return pricingCtxsToUse.stream()
+					.map(this::calculatePriceForSetupContext)
+					.collect(ImmutableList.toImmutableList());
+		}
+	}
+
+	private IPricingResult calculatePriceForSetupContext(final IPricingContext pricingCtxToUse)
+	{
 		final PricingResult result = createInitialResult(pricingCtxToUse);
 
 		//
@@ -106,6 +106,18 @@ public class ProductImportProcess extends AbstractImportProcess<I_I_Product>
 		return I_I_Product.COLUMNNAME_ProductCategory_Value;
 	}
 
+	@Override
+	protected boolean isImportInChunksSupported()
+	{
+		return true;
+	}
+
+	@Override
+	protected Object getImportPartitionKey(final I_I_Product importRecord)
+	{
+		return importRecord.getValue();
+	}
+
 	@Override
 	protected I_I_Product retrieveImportRecord(final Properties ctx, final ResultSet rs) throws SQLException
 	{
@@ -177,11 +189,20 @@ public class ProductImportProcess extends AbstractImportProcess<I_I_Product>
 
 		ModelValidationEngine.get().fireImportValidate(this, importRecord, importRecord.getM_Product(), IImportInterceptor.TIMING_AFTER_IMPORT);
 
-		// #3404 Create default product planning
-		Services.get(IProductPlanningSchemaBL.class).createDefaultProductPlanningsForAllProducts();
 		return newProduct ? ImportRecordResult.Inserted : ImportRecordResult.Updated;
 	}
 
+	/**
+	 * Creates the default product plannings once all records were imported.
+	 * Not done per record, because it's done for all products and the records might be imported by parallel threads.
+	 */
+	@Override
+	protected void afterImport()
+	{
+		// #3404 Create default product planning
+		trxManager.run(localTrxName -> Services.get(IProductPlanningSchemaBL.class).createDefaultProductPlanningsForAllProducts());
+	}
+
 	private final void createUpdateProductPrice(final I_I_Product imp)
 	{
 		//
@@ -146,6 +146,8 @@ public final class AdempiereBaseValidator extends AbstractModuleInterceptor
 
 		engine.addModelValidator(de.metas.system.interceptor.AD_System.INSTANCE, client);
 
+		engine.addModelValidator(org.adempiere.archive.model.interceptor.AD_Archive.instance, client);
+
 		//
 		// Currency
 		{
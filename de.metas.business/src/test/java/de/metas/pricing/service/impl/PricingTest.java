@@ -1,6 +1,7 @@
 package de.metas.pricing.service.impl;
 
 import java.math.BigDecimal;
+import java.util.List;
 
 import org.adempiere.test.AdempiereTestHelper;
 import org.adempiere.test.AdempiereTestWatcher;
@@ -10,8 +11,14 @@ import org.junit.Before;
 import org.junit.Rule;
 import org.junit.Test;
 
+import com.google.common.collect.ImmutableList;
+
+import de.metas.adempiere.model.I_M_Product;
 import de.metas.pricing.IEditablePricingContext;
 import de.metas.pricing.IPricingResult;
+import de.metas.pricing.service.IPricingBL;
+import de.metas.product.ProductId;
+import de.metas.util.Services;
 
 /*
  * #%L
@@ -92,4 +99,40 @@ public class PricingTest
 			Assert.assertThat("Bio PriceStd\n" + result, result.getPriceStd(), Matchers.comparesEqualTo(BigDecimal.valueOf(3)));
 		}
 	}
+
+	@Test
+	public void test_calculatePrices_sameResultsAsCalculatePrice()
+	{
+		helper.newProductPriceBuilder()
+				.setPrice(2)
+				.build();
+
+		final I_M_Product product2 = helper.createProduct("Product2", helper.getDefaultProduct().getC_UOM());
+		new ProductPriceBuilder(helper.getDefaultPriceListVerion(), product2)
+				.setPrice(5)
+				.build();
+
+		final I_M_Product productWithoutPrice = helper.createProduct("Product3", helper.getDefaultProduct().getC_UOM());
+
+		final IEditablePricingContext pricingCtx1 = helper.createPricingContext();
+		final IEditablePricingContext pricingCtx2 = helper.createPricingContext();
+		pricingCtx2.setProductId(ProductId.ofRepoId(product2.getM_Product_ID()));
+		final IEditablePricingContext pricingCtx3 = helper.createPricingContext();
+		pricingCtx3.setProductId(ProductId.ofRepoId(productWithoutPrice.getM_Product_ID()));
+
+		final List<IPricingResult> results = Services.get(IPricingBL.class).calculatePrices(ImmutableList.of(pricingCtx1, pricingCtx2, pricingCtx1, pricingCtx3));
+		Assert.assertEquals(4, results.size());
+
+		Assert.assertThat(results.get(0).getPriceStd(), Matchers.comparesEqualTo(BigDecimal.valueOf(2)));
+		Assert.assertThat(results.get(1).getPriceStd(), Matchers.comparesEqualTo(BigDecimal.valueOf(5)));
+		Assert.assertThat(results.get(2).getPriceStd(), Matchers.comparesEqualTo(BigDecimal.valueOf(2)));
+		Assert.assertFalse(results.get(3).isCalculated());
+
+		final IPricingResult singleResult2 = helper.calculatePrice(pricingCtx2);
+		Assert.assertThat(results.get(1).getPriceStd(), Matchers.comparesEqualTo(singleResult2.getPriceStd()));
+		Assert.assertEquals(singleResult2.getPriceListVersionId(), results.get(1).getPriceListVersionId());
+		Assert.assertEquals(singleResult2.getCurrencyId(), results.get(1).getCurrencyId());
+		Assert.assertEquals(singleResult2.getPrice_UOM_ID(), results.get(1).getPrice_UOM_ID());
+		Assert.assertFalse(helper.calculatePrice(pricingCtx3).isCalculated());
+	}
 }
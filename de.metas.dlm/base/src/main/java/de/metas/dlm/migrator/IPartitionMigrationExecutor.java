@@ -0,0 +1,67 @@
+package de.metas.dlm.migrator;
+
+import de.metas.util.ISingletonService;
+
+/*
+ * #%L
+ * metasfresh-dlm
+ * %%
+ * Copyright (C) 2019 metas GmbH
+ * %%
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as
+ * published by the Free Software Foundation, either version 2 of the
+ * License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public
+ * License along with this program. If not, see
+ * <http://www.gnu.org/licenses/gpl-2.0.html>.
+ * #L%
+ */
+
+/**
+ * Migrates many partitions concurrently, using {@link IMigratorService}.
+ * <p>
+ * The throughput can be limited with a rows-per-second throttle, and running migrations can be paused and resumed.
+ * Both can also be done via JMX, so archiving can run continuously at night without competing with the daytime load.
+ */
+public interface IPartitionMigrationExecutor extends ISingletonService
+{
+	/**
+	 * Migrates (or test-migrates) the request's partitions on a bounded thread pool and waits until all of them are done.
+	 * Partitions which fail are logged and counted, but don't stop the other partitions.
+	 */
+	PartitionMigrationProgress migrate(PartitionMigrationRequest request);
+
+	/** @return the progress of the current or last run; might be {@code null} */
+	PartitionMigrationProgress getLastProgress();
+
+	/**
+	 * Running migrations finish the partitions they are currently working on, but don't start new ones until {@link #resume()} is called.
+	 */
+	void pause();
+
+	void resume();
+
+	boolean isPaused();
+
+	/**
+	 * Blocks the current thread while the executor is paused. Can be used by other long running migration code to honor the pause switch.
+	 */
+	void awaitIfPaused() throws InterruptedException;
+
+	/**
+	 * Overrides the rows-per-second throttle which is otherwise configured by sysconfig. Applies also to a migration which is already running.
+	 *
+	 * @param rowsPerSecond a value &lt;= 0 means unlimited
+	 */
+	void setRowsPerSecond(double rowsPerSecond);
+
+	/** @return the currently effective rows-per-second throttle; &lt;= 0 means unlimited */
+	double getRowsPerSecond();
+}
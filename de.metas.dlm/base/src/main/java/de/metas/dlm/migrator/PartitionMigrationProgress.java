@@ -0,0 +1,168 @@
+package de.metas.dlm.migrator;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import lombok.Getter;
+
+/*
+ * #%L
+ * metasfresh-dlm
+ * %%
+ * Copyright (C) 2019 metas GmbH
+ * %%
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as
+ * published by the Free Software Foundation, either version 2 of the
+ * License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public
+ * License along with this program. If not, see
+ * <http://www.gnu.org/licenses/gpl-2.0.html>.
+ * #L%
+ */
+
+/**
+ * Progress of one {@link IPartitionMigrationExecutor#migrate(PartitionMigrationRequest)} run. Updated concurrently by the migrating threads.
+ */
+public final class PartitionMigrationProgress
+{
+	@Getter
+	private final int partitionsTotal;
+	@Getter
+	private final long rowsTotal;
+	@Getter
+	private final boolean testMigrate;
+	@Getter
+	private final Instant startTime = Instant.now();
+
+	private final AtomicInteger partitionsMigrated = new AtomicInteger(0);
+	private final AtomicInteger partitionsFailed = new AtomicInteger(0);
+	private final AtomicLong rowsMigrated = new AtomicLong(0);
+	private volatile Instant endTime = null;
+
+	public PartitionMigrationProgress(final int partitionsTotal, final long rowsTotal, final boolean testMigrate)
+	{
+		this.partitionsTotal = partitionsTotal;
+		this.rowsTotal = rowsTotal;
+		this.testMigrate = testMigrate;
+	}
+
+	@Override
+	public String toString()
+	{
+		return getSummary();
+	}
+
+	public void onPartitionMigrated(final int rows)
+	{
+		partitionsMigrated.incrementAndGet();
+		rowsMigrated.addAndGet(rows);
+	}
+
+	public void onPartitionFailed()
+	{
+		partitionsFailed.incrementAndGet();
+	}
+
+	public void markDone()
+	{
+		endTime = Instant.now();
+	}
+
+	public boolean isDone()
+	{
+		return endTime != null;
+	}
+
+	public int getPartitionsMigrated()
+	{
+		return partitionsMigrated.get();
+	}
+
+	public int getPartitionsFailed()
+	{
+		return partitionsFailed.get();
+	}
+
+	public long getRowsMigrated()
+	{
+		return rowsMigrated.get();
+	}
+
+	public Duration getElapsed()
+	{
+		final Instant endTime = this.endTime;
+		return Duration.between(startTime, endTime != null ? endTime : Instant.now());
+	}
+
+	public double getPartitionsPerSecond()
+	{
+		final long elapsedMillis = getElapsed().toMillis();
+		if (elapsedMillis <= 0)
+		{
+			return 0;
+		}
+		return (getPartitionsMigrated() + getPartitionsFailed()) * 1000.0 / elapsedMillis;
+	}
+
+	public double getRowsPerSecond()
+	{
+		final long elapsedMillis = getElapsed().toMillis();
+		if (elapsedMillis <= 0)
+		{
+			return 0;
+		}
+		return getRowsMigrated() * 1000.0 / elapsedMillis;
+	}
+
+	/**
+	 * @return estimated remaining time, based on the rows (or, if the rows total is not known, the partitions) per second so far; {@code null} if it can't be estimated yet
+	 */
+	public Duration getEstimatedTimeRemaining()
+	{
+		if (isDone())
+		{
+			return Duration.ZERO;
+		}
+
+		final double remainingSeconds;
+		if (rowsTotal > 0)
+		{
+			final double rowsPerSecond = getRowsPerSecond();
+			if (rowsPerSecond <= 0)
+			{
+				return null;
+			}
+			remainingSeconds = Math.max(rowsTotal - getRowsMigrated(), 0) / rowsPerSecond;
+		}
+		else
+		{
+			final double partitionsPerSecond = getPartitionsPerSecond();
+			if (partitionsTotal <= 0 || partitionsPerSecond <= 0)
+			{
+				return null;
+			}
+			remainingSeconds = Math.max(partitionsTotal - getPartitionsMigrated() - getPartitionsFailed(), 0) / partitionsPerSecond;
+		}
+		return Duration.ofSeconds(Math.round(remainingSeconds));
+	}
+
+	public String getSummary()
+	{
+		final Duration eta = getEstimatedTimeRemaining();
+		return (testMigrate ? "test-migrated " : "migrated ") + getPartitionsMigrated() + ", failed " + getPartitionsFailed() + " of " + partitionsTotal + " partitions"
+				+ ", " + getRowsMigrated() + " of " + rowsTotal + " rows"
+				+ " in " + getElapsed().getSeconds() + "s"
+				+ ", " + Math.round(getPartitionsPerSecond()) + " partitions/s"
+				+ ", " + Math.round(getRowsPerSecond()) + " rows/s"
+				+ (isDone() ? "" : ", ETA " + (eta != null ? eta.getSeconds() + "s" : "unknown") + " (running)");
+	}
+}
@@ -0,0 +1,51 @@
+package de.metas.dlm.migrator;
+
+import java.util.Iterator;
+
+import de.metas.dlm.model.I_DLM_Partition;
+import lombok.Builder;
+import lombok.NonNull;
+import lombok.Value;
+
+/*
+ * #%L
+ * metasfresh-dlm
+ * %%
+ * Copyright (C) 2019 metas GmbH
+ * %%
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as
+ * published by the Free Software Foundation, either version 2 of the
+ * License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public
+ * License along with this program. If not, see
+ * <http://www.gnu.org/licenses/gpl-2.0.html>.
+ * #L%
+ */
+
+@Value
+@Builder
+public class PartitionMigrationRequest
+{
+	/** The partitions to migrate. Only iterated by the calling thread, so it may be backed by a database cursor. */
+	@NonNull
+	Iterator<I_DLM_Partition> partitions;
+
+	/** Expected number of partitions; only used for the progress' ETA. */
+	int partitionsTotal;
+
+	/** Expected number of records in all partitions; only used for the progress' ETA. */
+	long rowsTotal;
+
+	/** If {@code true}, then only call {@link IMigratorService#testMigratePartition(de.metas.dlm.Partition)} for each partition. */
+	boolean testMigrate;
+
+	/** If &gt; 0, then overrides the sysconfig-configured number of threads. */
+	int parallelism;
+}
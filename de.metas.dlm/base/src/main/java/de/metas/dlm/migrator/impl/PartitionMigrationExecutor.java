@@ -0,0 +1,288 @@
+package de.metas.dlm.migrator.impl;
+
+import java.util.Properties;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+
+import org.adempiere.ad.trx.api.ITrxManager;
+import org.adempiere.exceptions.AdempiereException;
+import org.adempiere.service.ISysConfigBL;
+import org.adempiere.util.concurrent.CustomizableThreadFactory;
+import org.adempiere.util.jmx.JMXRegistry;
+import org.adempiere.util.jmx.JMXRegistry.OnJMXAlreadyExistsPolicy;
+import org.adempiere.util.lang.IAutoCloseable;
+import org.compiere.util.Env;
+import org.slf4j.Logger;
+
+import com.google.common.util.concurrent.RateLimiter;
+
+import ch.qos.logback.classic.Level;
+import de.metas.dlm.IDLMService;
+import de.metas.dlm.Partition;
+import de.metas.dlm.migrator.IMigratorService;
+import de.metas.dlm.migrator.IPartitionMigrationExecutor;
+import de.metas.dlm.migrator.PartitionMigrationProgress;
+import de.metas.dlm.migrator.PartitionMigrationRequest;
+import de.metas.dlm.migrator.jmx.JMXPartitionMigrationExecutor;
+import de.metas.dlm.model.I_DLM_Partition;
+import de.metas.logging.LogManager;
+import de.metas.util.ILoggable;
+import de.metas.util.Loggables;
+import de.metas.util.Services;
+import lombok.NonNull;
+
+/*
+ * #%L
+ * metasfresh-dlm
+ * %%
+ * Copyright (C) 2019 metas GmbH
+ * %%
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as
+ * published by the Free Software Foundation, either version 2 of the
+ * License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public
+ * License along with this program. If not, see
+ * <http://www.gnu.org/licenses/gpl-2.0.html>.
+ * #L%
+ */
+
+public class PartitionMigrationExecutor implements IPartitionMigrationExecutor
+{
+	private static final transient Logger logger = LogManager.getLogger(PartitionMigrationExecutor.class);
+
+	private static final String SYSCONFIG_Parallelism = "de.metas.dlm.migrator.PartitionMigrationExecutor.Parallelism";
+	private static final int DEFAULT_Parallelism = 2;
+
+	/** Max number of partition records per second; &lt;= 0 means unlimited */
+	private static final String SYSCONFIG_RowsPerSecond = "de.metas.dlm.migrator.PartitionMigrationExecutor.RowsPerSecond";
+
+	private final AtomicReference<PartitionMigrationProgress> lastProgress = new AtomicReference<>();
+
+	private final Object pauseLock = new Object();
+	private boolean paused = false; // guarded by pauseLock
+
+	/** If not null, then it overrides {@link #SYSCONFIG_RowsPerSecond}; set via JMX. */
+	private volatile Double rowsPerSecondOverride = null;
+	private final RateLimiter rateLimiter = RateLimiter.create(1000);
+
+	public PartitionMigrationExecutor()
+	{
+		JMXRegistry.get().registerJMX(new JMXPartitionMigrationExecutor(this), OnJMXAlreadyExistsPolicy.Replace);
+	}
+
+	@Override
+	public PartitionMigrationProgress getLastProgress()
+	{
+		return lastProgress.get();
+	}
+
+	@Override
+	public PartitionMigrationProgress migrate(@NonNull final PartitionMigrationRequest request)
+	{
+		Services.get(ITrxManager.class).assertThreadInheritedTrxNotExists();
+
+		final PartitionMigrationProgress progress = new PartitionMigrationProgress(request.getPartitionsTotal(), request.getRowsTotal(), request.isTestMigrate());
+		lastProgress.set(progress);
+
+		final int parallelism = getParallelism(request);
+		logger.info("Migrating {} partitions with {} rows using {} threads; testMigrate={}", request.getPartitionsTotal(), request.getRowsTotal(), parallelism, request.isTestMigrate());
+
+		final Properties ctx = Env.copyCtx(Env.getCtx());
+
+		// the workers don't have the caller's thread-level loggable, so they report their failures to this one
+		final ILoggable loggable = Loggables.get();
+		final CustomizableThreadFactory threadFactory = CustomizableThreadFactory.builder()
+				.setThreadNamePrefix(PartitionMigrationExecutor.class.getSimpleName())
+				.setDaemon(true)
+				.build();
+		final ExecutorService executor = Executors.newFixedThreadPool(parallelism, threadFactory);
+
+		// limit the number of partitions that were taken from the iterator but are not yet migrated, so we don't load millions of them into memory
+		final Semaphore partitionsInFlight = new Semaphore(parallelism * 2);
+		try
+		{
+			while (request.getPartitions().hasNext())
+			{
+				awaitIfPaused();
+				partitionsInFlight.acquire();
+
+				final I_DLM_Partition partitionDB = request.getPartitions().next();
+				executor.execute(() -> {
+					try
+					{
+						migratePartition(ctx, loggable, partitionDB, request.isTestMigrate(), progress);
+					}
+					finally
+					{
+						partitionsInFlight.release();
+					}
+				});
+			}
+
+			executor.shutdown();
+			while (!executor.awaitTermination(1, TimeUnit.MINUTES))
+			{
+				logger.info("Still migrating: {}", progress);
+			}
+		}
+		catch (final InterruptedException ex)
+		{
+			Thread.currentThread().interrupt();
+			throw AdempiereException.wrapIfNeeded(ex);
+		}
+		finally
+		{
+			executor.shutdownNow();
+			progress.markDone();
+		}
+
+		loggable.withLogger(logger, Level.INFO).addLog("Done: {}", progress);
+		return progress;
+	}
+
+	private static int getParallelism(final PartitionMigrationRequest request)
+	{
+		if (request.getParallelism() > 0)
+		{
+			return request.getParallelism();
+		}
+
+		final int parallelism = Services.get(ISysConfigBL.class).getIntValue(SYSCONFIG_Parallelism, DEFAULT_Parallelism);
+		return Math.max(parallelism, 1);
+	}
+
+	private void migratePartition(
+			final Properties ctx,
+			final ILoggable loggable,
+			final I_DLM_Partition partitionDB,
+			final boolean testMigrate,
+			final PartitionMigrationProgress progress)
+	{
+		final IDLMService dlmService = Services.get(IDLMService.class);
+		final IMigratorService migratorService = Services.get(IMigratorService.class);
+
+		try (final IAutoCloseable c = Env.switchContext(ctx))
+		{
+			awaitIfPaused();
+
+			final int rows = partitionDB.getPartitionSize();
+			throttle(rows);
+
+			if (testMigrate)
+			{
+				migratorService.testMigratePartition(dlmService.loadPartition(partitionDB));
+			}
+			else
+			{
+				Services.get(ITrxManager.class).run(localTrxName -> {
+					final Partition partition = dlmService.loadPartition(partitionDB);
+					final Partition migratedPartition = migratorService.migratePartition(partition);
+					dlmService.storePartition(migratedPartition, false);
+				});
+			}
+
+			progress.onPartitionMigrated(rows);
+		}
+		catch (final InterruptedException ex)
+		{
+			Thread.currentThread().interrupt();
+			progress.onPartitionFailed();
+		}
+		catch (final Exception ex)
+		{
+			progress.onPartitionFailed();
+			logger.warn("Failed migrating DLM_Partition_ID={}", partitionDB.getDLM_Partition_ID(), ex);
+
+			// loggables are not thread-safe, but all workers share the caller's one
+			synchronized (loggable)
+			{
+				loggable.addLog("Failed migrating DLM_Partition_ID={}: {}", partitionDB.getDLM_Partition_ID(), ex.getLocalizedMessage());
+			}
+		}
+	}
+
+	private void throttle(final int rows)
+	{
+		final double rowsPerSecond = getRowsPerSecond();
+		if (rowsPerSecond <= 0)
+		{
+			return;
+		}
+
+		if (rateLimiter.getRate() != rowsPerSecond)
+		{
+			rateLimiter.setRate(rowsPerSecond);
+		}
+		rateLimiter.acquire(Math.max(rows, 1));
+	}
+
+	@Override
+	public void setRowsPerSecond(final double rowsPerSecond)
+	{
+		rowsPerSecondOverride = rowsPerSecond;
+		logger.info("Set rowsPerSecond={}", rowsPerSecond);
+	}
+
+	@Override
+	public double getRowsPerSecond()
+	{
+		final Double rowsPerSecondOverride = this.rowsPerSecondOverride;
+		if (rowsPerSecondOverride != null)
+		{
+			return rowsPerSecondOverride;
+		}
+		return Services.get(ISysConfigBL.class).getDoubleValue(SYSCONFIG_RowsPerSecond, 0);
+	}
+
+	@Override
+	public void pause()
+	{
+		synchronized (pauseLock)
+		{
+			paused = true;
+		}
+		logger.info("Paused");
+	}
+
+	@Override
+	public void resume()
+	{
+		synchronized (pauseLock)
+		{
+			paused = false;
+			pauseLock.notifyAll();
+		}
+		logger.info("Resumed");
+	}
+
+	@Override
+	public boolean isPaused()
+	{
+		synchronized (pauseLock)
+		{
+			return paused;
+		}
+	}
+
+	@Override
+	public void awaitIfPaused() throws InterruptedException
+	{
+		synchronized (pauseLock)
+		{
+			while (paused)
+			{
+				pauseLock.wait();
+			}
+		}
+	}
+}
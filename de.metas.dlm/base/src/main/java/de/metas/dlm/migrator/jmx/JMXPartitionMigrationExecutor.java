@@ -0,0 +1,153 @@
+package de.metas.dlm.migrator.jmx;
+
+import java.time.Duration;
+
+import org.adempiere.util.jmx.IJMXNameAware;
+
+import de.metas.dlm.migrator.IPartitionMigrationExecutor;
+import de.metas.dlm.migrator.PartitionMigrationProgress;
+import lombok.NonNull;
+
+/*
+ * #%L
+ * metasfresh-dlm
+ * %%
+ * Copyright (C) 2019 metas GmbH
+ * %%
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as
+ * published by the Free Software Foundation, either version 2 of the
+ * License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public
+ * License along with this program. If not, see
+ * <http://www.gnu.org/licenses/gpl-2.0.html>.
+ * #L%
+ */
+
+public class JMXPartitionMigrationExecutor implements JMXPartitionMigrationExecutorMBean, IJMXNameAware
+{
+	private final IPartitionMigrationExecutor executor;
+
+	public JMXPartitionMigrationExecutor(@NonNull final IPartitionMigrationExecutor executor)
+	{
+		this.executor = executor;
+	}
+
+	@Override
+	public String getJMXName()
+	{
+		return "de.metas.dlm:type=PartitionMigrationExecutor";
+	}
+
+	private PartitionMigrationProgress getProgressOrNull()
+	{
+		return executor.getLastProgress();
+	}
+
+	@Override
+	public void pause()
+	{
+		executor.pause();
+	}
+
+	@Override
+	public void resume()
+	{
+		executor.resume();
+	}
+
+	@Override
+	public boolean isPaused()
+	{
+		return executor.isPaused();
+	}
+
+	@Override
+	public double getRowsPerSecondLimit()
+	{
+		return executor.getRowsPerSecond();
+	}
+
+	@Override
+	public void setRowsPerSecondLimit(final double rowsPerSecond)
+	{
+		executor.setRowsPerSecond(rowsPerSecond);
+	}
+
+	@Override
+	public boolean isRunning()
+	{
+		final PartitionMigrationProgress progress = getProgressOrNull();
+		return progress != null && !progress.isDone();
+	}
+
+	@Override
+	public int getPartitionsTotal()
+	{
+		final PartitionMigrationProgress progress = getProgressOrNull();
+		return progress != null ? progress.getPartitionsTotal() : 0;
+	}
+
+	@Override
+	public int getPartitionsMigrated()
+	{
+		final PartitionMigrationProgress progress = getProgressOrNull();
+		return progress != null ? progress.getPartitionsMigrated() : 0;
+	}
+
+	@Override
+	public int getPartitionsFailed()
+	{
+		final PartitionMigrationProgress progress = getProgressOrNull();
+		return progress != null ? progress.getPartitionsFailed() : 0;
+	}
+
+	@Override
+	public long getRowsMigrated()
+	{
+		final PartitionMigrationProgress progress = getProgressOrNull();
+		return progress != null ? progress.getRowsMigrated() : 0;
+	}
+
+	@Override
+	public double getPartitionsPerSecond()
+	{
+		final PartitionMigrationProgress progress = getProgressOrNull();
+		return progress != null ? progress.getPartitionsPerSecond() : 0;
+	}
+
+	@Override
+	public double getRowsPerSecond()
+	{
+		final PartitionMigrationProgress progress = getProgressOrNull();
+		return progress != null ? progress.getRowsPerSecond() : 0;
+	}
+
+	@Override
+	public long getElapsedSeconds()
+	{
+		final PartitionMigrationProgress progress = getProgressOrNull();
+		return progress != null ? progress.getElapsed().getSeconds() : 0;
+	}
+
+	@Override
+	public long getEstimatedSecondsRemaining()
+	{
+		final PartitionMigrationProgress progress = getProgressOrNull();
+		final Duration eta = progress != null ? progress.getEstimatedTimeRemaining() : null;
+		return eta != null ? eta.getSeconds() : -1;
+	}
+
+	@Override
+	public String getInfo()
+	{
+		final PartitionMigrationProgress progress = getProgressOrNull();
+		return progress != null ? progress.getSummary() : "No partitions were migrated yet";
+	}
+}
@@ -0,0 +1,61 @@
+package de.metas.dlm.migrator.jmx;
+
+/*
+ * #%L
+ * metasfresh-dlm
+ * %%
+ * Copyright (C) 2019 metas GmbH
+ * %%
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as
+ * published by the Free Software Foundation, either version 2 of the
+ * License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public
+ * License along with this program. If not, see
+ * <http://www.gnu.org/licenses/gpl-2.0.html>.
+ * #L%
+ */
+
+/**
+ * JMX bean for {@link de.metas.dlm.migrator.IPartitionMigrationExecutor}. The progress values refer to the current or last migration run.
+ */
+public interface JMXPartitionMigrationExecutorMBean
+{
+	void pause();
+
+	void resume();
+
+	boolean isPaused();
+
+	double getRowsPerSecondLimit();
+
+	/** A value &lt;= 0 means unlimited. */
+	void setRowsPerSecondLimit(double rowsPerSecond);
+
+	boolean isRunning();
+
+	int getPartitionsTotal();
+
+	int getPartitionsMigrated();
+
+	int getPartitionsFailed();
+
+	long getRowsMigrated();
+
+	double getPartitionsPerSecond();
+
+	double getRowsPerSecond();
+
+	long getElapsedSeconds();
+
+	/** @return -1 if unknown */
+	long getEstimatedSecondsRemaining();
+
+	String getInfo();
+}
@@ -11,6 +11,7 @@ import org.compiere.util.TrxRunnable;
 
 import com.google.common.base.Stopwatch;
 
+import de.metas.dlm.migrator.IPartitionMigrationExecutor;
 import de.metas.process.JavaProcess;
 import de.metas.process.Param;
 import de.metas.process.RunOutOfTrx;
@@ -96,7 +97,7 @@ public class DLM_MassMigrate extends JavaProcess
 	 *            Use a value <= 0 to disable the feature.<br>
 	 *            See https://github.com/metasfresh/metasfresh/issues/1035
 	 */
-	private void callDBFunctionUntilDone(final String dbFunctionName, final int maxUpdates, final boolean vacuum)
+	private void callDBFunctionUntilDone(final String dbFunctionName, final int maxUpdates, final boolean vacuum) throws InterruptedException
 	{
 		final Mutable<Boolean> done = new Mutable<>(false);
 
@@ -106,6 +107,15 @@ public class DLM_MassMigrate extends JavaProcess
 
 		do
 		{
+			// allow to pause the mass migration during the day, see IPartitionMigrationExecutor
+			final IPartitionMigrationExecutor partitionMigrationExecutor = Services.get(IPartitionMigrationExecutor.class);
+			if (partitionMigrationExecutor.isPaused())
+			{
+				Loggables.get().addLog("{}: paused", dbFunctionName);
+				partitionMigrationExecutor.awaitIfPaused();
+				Loggables.get().addLog("{}: resumed", dbFunctionName);
+			}
+
 			Services.get(ITrxManager.class).run(new TrxRunnable()
 			{
 				@Override
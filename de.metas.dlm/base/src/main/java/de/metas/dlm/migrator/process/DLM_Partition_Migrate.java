@@ -1,19 +1,19 @@
 package de.metas.dlm.migrator.process;
 
+import java.math.BigDecimal;
 import java.util.Iterator;
 
 import org.adempiere.ad.dao.ConstantQueryFilter;
 import org.adempiere.ad.dao.IQueryBL;
 import org.adempiere.ad.dao.IQueryFilter;
 import org.adempiere.ad.dao.impl.ModelColumnNameValue;
-import org.adempiere.ad.trx.processor.api.ITrxItemProcessorExecutorService;
-import org.adempiere.ad.trx.processor.api.LoggableTrxItemExceptionHandler;
-import org.adempiere.ad.trx.processor.spi.TrxItemProcessorAdapter;
 import org.compiere.model.IQuery;
+import org.compiere.model.IQuery.Aggregate;
 
-import de.metas.dlm.IDLMService;
-import de.metas.dlm.Partition;
 import de.metas.dlm.migrator.IMigratorService;
+import de.metas.dlm.migrator.IPartitionMigrationExecutor;
+import de.metas.dlm.migrator.PartitionMigrationProgress;
+import de.metas.dlm.migrator.PartitionMigrationRequest;
 import de.metas.dlm.model.I_DLM_Partition;
 import de.metas.process.JavaProcess;
 import de.metas.process.Param;
@@ -42,14 +42,16 @@ import de.metas.util.Services;
  * #L%
  */
 
+/**
+ * Migrates the selected partitions to their target DLM level, see {@link IPartitionMigrationExecutor}.
+ */
 public class DLM_Partition_Migrate extends JavaProcess
 {
 
 	@Param(mandatory = true, parameterName = "IsTest")
 	private boolean testMigrate;
 
-	private final IMigratorService migratorService = Services.get(IMigratorService.class);
-	private final IDLMService dlmService = Services.get(IDLMService.class);
+	private final IPartitionMigrationExecutor partitionMigrationExecutor = Services.get(IPartitionMigrationExecutor.class);
 
 	@RunOutOfTrx
 	@Override
@@ -57,12 +59,10 @@ public class DLM_Partition_Migrate extends JavaProcess
 	{
 		final IQueryBL queryBL = Services.get(IQueryBL.class);
 
-		final ITrxItemProcessorExecutorService trxItemProcessorExecutorService = Services.get(ITrxItemProcessorExecutorService.class);
-
 		// gh #1955: prevent an OutOfMemoryError
 		final IQueryFilter<I_DLM_Partition> processFilter = getProcessInfo().getQueryFilterOrElse(ConstantQueryFilter.of(false));
 
-		final Iterator<I_DLM_Partition> partitionsToMigrate = queryBL.createQueryBuilder(I_DLM_Partition.class, this)
+		final IQuery<I_DLM_Partition> query = queryBL.createQueryBuilder(I_DLM_Partition.class, this)
 				.addOnlyActiveRecordsFilter()
 				.addNotEqualsFilter(I_DLM_Partition.COLUMN_Target_DLM_Level, null)
 				.addNotEqualsFilter(I_DLM_Partition.COLUMN_Target_DLM_Level, IMigratorService.DLM_Level_NOT_SET)
@@ -70,41 +70,23 @@ public class DLM_Partition_Migrate extends JavaProcess
 				.filter(processFilter)
 
 				.orderBy().addColumn(I_DLM_Partition.COLUMNNAME_DLM_Partition_ID).endOrderBy()
-				.create()
+				.create();
+
+		final BigDecimal rowsTotal = query.aggregate(I_DLM_Partition.COLUMNNAME_PartitionSize, Aggregate.SUM, BigDecimal.class);
+
+		final Iterator<I_DLM_Partition> partitionsToMigrate = query
 				.setOption(IQuery.OPTION_GuaranteedIteratorRequired, true)
 				.setOption(IQuery.OPTION_IteratorBufferSize, 500)
 				.iterate(I_DLM_Partition.class);
 
-		trxItemProcessorExecutorService.<I_DLM_Partition, Void> createExecutor()
-				.setContext(getCtx(), getTrxName())
-				.setProcessor(new TrxItemProcessorAdapter<I_DLM_Partition, Void>()
-				{
-					@Override
-					public void process(final I_DLM_Partition partitionDB) throws Exception
-					{
-						process0(partitionDB);
-					}
-				})
-				.setExceptionHandler(LoggableTrxItemExceptionHandler.instance)
-				.process(partitionsToMigrate);
+		final PartitionMigrationProgress progress = partitionMigrationExecutor.migrate(PartitionMigrationRequest.builder()
+				.partitions(partitionsToMigrate)
+				.partitionsTotal(query.count())
+				.rowsTotal(rowsTotal != null ? rowsTotal.longValue() : 0)
+				.testMigrate(testMigrate)
+				.build());
 
+		addLog(progress.getSummary());
 		return MSG_OK;
 	}
-
-	private void process0(final I_DLM_Partition partitionDB)
-	{
-		final Partition partition = dlmService.loadPartition(partitionDB);
-
-		if (testMigrate)
-		{
-			migratorService.testMigratePartition(partition);
-			return;
-		}
-
-		final Partition migratedPartition = migratorService.migratePartition(partition);
-
-		addLog("Migrated partition={} with result={}", partition, migratedPartition);
-		dlmService.storePartition(migratedPartition, false);
-	}
-
 }
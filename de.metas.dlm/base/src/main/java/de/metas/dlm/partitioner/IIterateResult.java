@@ -103,6 +103,14 @@ public interface IIterateResult
 	 */
 	ITableRecordReference nextFromQueue();
 
+	/**
+	 * Puts the given records, which were returned by {@link #nextFromQueue()} but not (completely) processed, back to the head of the queue, in the given order.
+	 * So {@link #isQueueEmpty()} returns <code>false</code> afterwards, unless the list is empty.
+	 *
+	 * @param tableRecordReferences
+	 */
+	void returnToQueue(List<ITableRecordReference> tableRecordReferences);
+
 	/**
 	 * Register a handler.
 	 * <p>
@@ -148,6 +148,12 @@ public class FindPathIterateResult implements IIterateResult
 		return queueItemsToProcess.removeFirst();
 	}
 
+	@Override
+	public void returnToQueue(final List<ITableRecordReference> tableRecordReferences)
+	{
+		queueItemsToProcess.addAll(0, tableRecordReferences);
+	}
+
 	@Override
 	public void registerHandler(IIterateResultHandler handler)
 	{
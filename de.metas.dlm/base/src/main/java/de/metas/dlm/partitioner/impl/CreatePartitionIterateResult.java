@@ -7,8 +7,10 @@ import java.util.HashSet;
 import java.util.Iterator;
 import java.util.LinkedList;
 import java.util.List;
+import java.util.ListIterator;
 import java.util.Map;
 import java.util.Set;
+import java.util.stream.Collectors;
 
 import org.adempiere.util.lang.IContextAware;
 import org.adempiere.util.lang.ITableRecordReference;
@@ -208,6 +210,31 @@ public class CreatePartitionIterateResult implements IStorableIterateResult
 		return result.getTableRecordReference();
 	}
 
+	@Override
+	public void returnToQueue(final List<ITableRecordReference> tableRecordReferences)
+	{
+		// don't delete the DLM_Partition_Workqueue records of the returned items; they are still to be processed
+		final Set<ITableRecordReference> tableRecordReferencesSet = new HashSet<>(tableRecordReferences);
+		final Map<ITableRecordReference, WorkQueue> storedItems = new HashMap<>();
+		for (final Iterator<WorkQueue> it = queueItemsToDelete.iterator(); it.hasNext();)
+		{
+			final WorkQueue item = it.next();
+			if (tableRecordReferencesSet.contains(item.getTableRecordReference()))
+			{
+				storedItems.put(item.getTableRecordReference(), item);
+				it.remove();
+			}
+		}
+
+		final ListIterator<ITableRecordReference> it = tableRecordReferences.listIterator(tableRecordReferences.size());
+		while (it.hasPrevious())
+		{
+			final ITableRecordReference tableRecordReference = it.previous();
+			final WorkQueue storedItem = storedItems.get(tableRecordReference);
+			queueItemsToProcess.addFirst(storedItem != null ? storedItem : WorkQueue.of(tableRecordReference));
+		}
+	}
+
 	private WorkQueue nextFromQueue0()
 	{
 		if (iterator.hasNext())
@@ -227,7 +254,10 @@ public class CreatePartitionIterateResult implements IStorableIterateResult
 	@Override
 	public List<WorkQueue> getQueueRecordsToStore()
 	{
-		return queueItemsToProcess;
+		// items which already have a DLM_Partition_Workqueue record were stored earlier or were returned to the queue
+		return queueItemsToProcess.stream()
+				.filter(item -> item.getDLM_Partition_Workqueue_ID() <= 0)
+				.collect(Collectors.toList());
 	}
 
 	@Override
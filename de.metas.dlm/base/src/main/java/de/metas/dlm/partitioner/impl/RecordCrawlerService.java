@@ -1,31 +1,41 @@
 package de.metas.dlm.partitioner.impl;
 
+import java.util.ArrayList;
 import java.util.Comparator;
+import java.util.HashMap;
 import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
 import java.util.List;
 import java.util.Map;
+import java.util.Map.Entry;
 import java.util.Optional;
 import java.util.Set;
+import java.util.stream.Collectors;
 
 import org.adempiere.ad.dao.IQueryBL;
 import org.adempiere.ad.dao.IQueryBuilder;
+import org.adempiere.ad.persistence.po.POBulkInserter;
 import org.adempiere.ad.table.api.IADTableDAO;
 import org.adempiere.ad.trx.api.ITrxManager;
 import org.adempiere.model.InterfaceWrapperHelper;
 import org.adempiere.model.PlainContextAware;
 import org.adempiere.util.lang.IContextAware;
 import org.adempiere.util.lang.ITableRecordReference;
-import org.adempiere.util.lang.Mutable;
 import org.adempiere.util.lang.impl.TableRecordReference;
+import org.compiere.model.PO;
 import org.compiere.util.TrxRunnable;
 import org.slf4j.Logger;
 
 import com.google.common.annotations.VisibleForTesting;
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.Iterables;
 
 import ch.qos.logback.classic.Level;
 import de.metas.adempiere.service.IColumnBL;
 import de.metas.dlm.IDLMService;
 import de.metas.dlm.Partition;
+import de.metas.dlm.Partition.WorkQueue;
 import de.metas.dlm.migrator.IMigratorService;
 import de.metas.dlm.model.IDLMAware;
 import de.metas.dlm.model.I_DLM_Partition;
@@ -63,75 +73,156 @@ import de.metas.util.Services;
  * #L%
  */
 
+/**
+ * Crawls breadth-first and set-based: the records in the result's queue are processed in "frontiers" of up to {@link #FRONTIER_MAX_SIZE} records.
+ * For each table in a frontier and each config reference, the referenced resp. referencing records of all the frontier's records of that table are loaded with one query.
+ */
 public class RecordCrawlerService implements IRecordCrawlerService
 {
 	private final transient Logger logger = LogManager.getLogger(getClass());
 
+	/**
+	 * Max number of queue records which are processed together. This is also the max number of IDs per <code>IN (...)</code> filter.
+	 */
+	private static final int FRONTIER_MAX_SIZE = 1000;
+
 	@Override
 	public IIterateResult crawl(
 			final PartitionConfig config,
 			final IContextAware ctxAware,
 			final IIterateResult result)
 	{
-
-		final IColumnBL columnBL = Services.get(IColumnBL.class);
-		final IADTableDAO adTableDAO = Services.get(IADTableDAO.class);
-
 		// store what we are setting out to do here. E.g. if we are called from a DLMException, we want the situation such as
 		// "partition is not complete because testMigrate failed, and there are e.g. 20 orderlines to backtrack from" to be stored here.
 		// otherwise, the partiton we are in truth working on just now would be flagged as "completed" in the DB until further notice
 		storeIterateResult(config, result, ctxAware);
 
+		// the records we already loaded in this crawl; unlike 'result', this is not cleared when we store the result.
+		final VisitedRecords visitedRecords = new VisitedRecords();
+
 		mainLoop: while (!result.isQueueEmpty())
 		{
-			final ITableRecordReference currentReference = result.nextFromQueue();
-			final IDLMAware currentRecord = currentReference.getModel(ctxAware, IDLMAware.class);
-			if (currentRecord == null)
+			if (shallStoreResult(result))
 			{
-				continue;
+				storeIterateResult(config, result, ctxAware);
 			}
 
-			if (shallStoreResult(result))
+			// get the next frontier from the queue, grouped by table name
+			final List<ITableRecordReference> frontier = new ArrayList<>();
+			final Map<String, Set<Integer>> tableName2RecordIds = new LinkedHashMap<>();
+			int frontierSize = 0;
+			while (frontierSize < FRONTIER_MAX_SIZE && !result.isQueueEmpty())
 			{
-				storeIterateResult(config, result, ctxAware);
+				final ITableRecordReference currentReference = result.nextFromQueue();
+				frontier.add(currentReference);
+				final boolean added = tableName2RecordIds
+						.computeIfAbsent(currentReference.getTableName(), k -> new LinkedHashSet<>())
+						.add(currentReference.getRecord_ID());
+				if (added)
+				{
+					frontierSize++;
+				}
 			}
+			logger.debug("Crawling frontier with {} records: {}", frontierSize, visitedRecords);
 
-			final String currentTableName = currentReference.getTableName();
-			final int currentRecordId = InterfaceWrapperHelper.getId(currentRecord);
+			final Set<String> tableNamesNotYetCrawled = new HashSet<>(tableName2RecordIds.keySet());
+			for (final Entry<String, Set<Integer>> tableNameAndRecordIds : tableName2RecordIds.entrySet())
+			{
+				final String tableName = tableNameAndRecordIds.getKey();
+				final boolean stop = crawlFrontier(config, ctxAware, result, visitedRecords, tableName, tableNameAndRecordIds.getValue());
+				if (stop)
+				{
+					// the current table's records might have been crawled only partially and the following tables' records not at all.
+					// put them back to the queue, so they are not deleted from DLM_Partition_Workqueue and the partition is not flagged as complete
+					final List<ITableRecordReference> notCrawledReferences = frontier.stream()
+							.filter(reference -> tableNamesNotYetCrawled.contains(reference.getTableName()))
+							.collect(Collectors.toList());
+					result.returnToQueue(notCrawledReferences);
+					logger.debug("Returned {} records of the frontier to the queue because the crawler was signaled to stop", notCrawledReferences.size());
+					break mainLoop;
+				}
+				tableNamesNotYetCrawled.remove(tableName);
+			}
+		}
 
-			// there might or migth not be a line for the current reference's table name. That would mean that we can only search "backward"
-			final Optional<PartitionerConfigLine> currentLineOrNull = config.getLine(currentTableName);
+		logger.info("Found {} records via config.name={}; {}", result.size(), config.getName(), visitedRecords);
+		storeIterateResult(config, result, ctxAware);
+		return result;
+	}
 
-			if (currentLineOrNull.isPresent())
-			{
-				final List<PartitionerConfigReference> forwardRefs = currentLineOrNull.get().getReferences();
+	/**
+	 * Adds the records which reference or are referenced by the given frontier records to the given {@code result}.
+	 *
+	 * @return {@code true} if a result handler signaled the crawler to stop
+	 */
+	private boolean crawlFrontier(
+			final PartitionConfig config,
+			final IContextAware ctxAware,
+			final IIterateResult result,
+			final VisitedRecords visitedRecords,
+			final String currentTableName,
+			final Set<Integer> currentRecordIds)
+	{
+		final IColumnBL columnBL = Services.get(IColumnBL.class);
+		final IADTableDAO adTableDAO = Services.get(IADTableDAO.class);
 
-				// look FORWARD
-				//
-				// look at all the records that are referenced by 'currentRecord' and add them to 'hull',
-				// but only add them if they were not yet identified as parts of this partition (i.e. not yet added to 'records').
-				for (final PartitionerConfigReference forwardRef : forwardRefs)
+		// records which were deleted in the meantime are not returned and therefore not crawled
+		final List<IDLMAware> currentRecords = retrieveRecords(ctxAware, currentTableName, columnBL.getSingleKeyColumn(currentTableName), currentRecordIds);
+		if (currentRecords.isEmpty())
+		{
+			return false;
+		}
+		currentRecords.forEach(currentRecord -> visitedRecords.add(currentTableName, InterfaceWrapperHelper.getId(currentRecord)));
+
+		// there might or migth not be a line for the current table name. That would mean that we can only search "backward"
+		final Optional<PartitionerConfigLine> currentLineOrNull = config.getLine(currentTableName);
+
+		if (currentLineOrNull.isPresent())
+		{
+			final List<PartitionerConfigReference> forwardRefs = currentLineOrNull.get().getReferences();
+
+			// look FORWARD
+			//
+			// look at all the records that are referenced by the current records and add them to the result,
+			// but only add them if they were not yet identified as parts of this partition (i.e. not yet added to the result).
+			for (final PartitionerConfigReference forwardRef : forwardRefs)
+			{
+				if (forwardRef.isPartitionBoundary())
 				{
-					if (forwardRef.isPartitionBoundary())
-					{
-						continue; // don't follow it
-					}
+					continue; // don't follow it
+				}
 
-					// the table name for the foreign record which has 'foreignKey' as its ID
-					final String forwardTableName = forwardRef.getReferencedTableName();
-					final String forwardColumnName = forwardRef.getReferencingColumnName();
+				// the table name for the foreign record which has 'foreignKey' as its ID
+				final String forwardTableName = forwardRef.getReferencedTableName();
+				final String forwardColumnName = forwardRef.getReferencingColumnName();
 
-					// first check if this is all about a Record_ID/AD_Table_ID reference.
-					// if that is the case, then we need to verify that the AD_Table_ID of 'record' actually points to the table named 'forwardTableName'
-					if (columnBL.isRecordIdColumnName(forwardColumnName))
-					{
-						final String tableColumnName = columnBL.getTableIdColumnName(currentTableName, forwardColumnName)
-								.orElseThrow(Check.supplyEx("Table={} has no table column name for recordColumnName={}", currentTableName, forwardColumnName));
+				// first check if this is all about a Record_ID/AD_Table_ID reference.
+				// if that is the case, then we need to verify that the AD_Table_ID of 'record' actually points to the table named 'forwardTableName'
+				final String tableColumnName;
+				if (columnBL.isRecordIdColumnName(forwardColumnName))
+				{
+					tableColumnName = columnBL.getTableIdColumnName(currentTableName, forwardColumnName)
+							.orElseThrow(Check.supplyEx("Table={} has no table column name for recordColumnName={}", currentTableName, forwardColumnName));
+				}
+				else
+				{
+					tableColumnName = null;
+				}
 
+				// collect the foreign key IDs of
+				// table DLM_PartitionLine_Config.AD_Table_ID,
+				// column DLM_PartitionReference_Config.DLM_Referencing_Column_ID
+				final Map<ITableRecordReference, Integer> currentReference2forwardKey = new LinkedHashMap<>();
+				final Set<Integer> forwardKeysToLoad = new LinkedHashSet<>();
+				for (final IDLMAware currentRecord : currentRecords)
+				{
+					final int currentRecordId = InterfaceWrapperHelper.getId(currentRecord);
+					if (tableColumnName != null)
+					{
 						final Integer tableId = InterfaceWrapperHelper.getValueOrNull(currentRecord, tableColumnName);
 						if (tableId == null || tableId <= 0)
 						{
-							logger.trace("{}[{}] forward: the column={} does not reference any table; skipping", currentTableName, currentRecordId, forwardColumnName, forwardTableName, tableColumnName);
+							logger.trace("{}[{}] forward: the column={} does not reference any table; skipping", currentTableName, currentRecordId, forwardColumnName);
 							continue;
 						}
 
@@ -143,9 +234,6 @@ public class RecordCrawlerService implements IRecordCrawlerService
 						}
 					}
 
-					// get the foreign key ID of
-					// table DLM_PartitionLine_Config.AD_Table_ID,
-					// column DLM_PartitionReference_Config.DLM_Referencing_Column_ID
 					final Integer forwardKey = InterfaceWrapperHelper.getValueOrNull(currentRecord, forwardColumnName);
 					if (forwardKey == null || forwardKey <= 0)
 					{
@@ -153,144 +241,178 @@ public class RecordCrawlerService implements IRecordCrawlerService
 						continue;
 					}
 
+					currentReference2forwardKey.put(new TableRecordReference(currentTableName, currentRecordId), forwardKey);
+
+					// avoid circles and also avoid loading the whole PO again
+					if (!visitedRecords.contains(forwardTableName, forwardKey) && !result.contains(new TableRecordReference(forwardTableName, forwardKey)))
+					{
+						forwardKeysToLoad.add(forwardKey);
+					}
+				}
+
+				// the foreign records were not yet added before. Load them now.
+				final Map<Integer, IDLMAware> forwardKey2Record = new HashMap<>();
+				retrieveRecords(ctxAware, forwardTableName, columnBL.getSingleKeyColumn(forwardTableName), forwardKeysToLoad)
+						.forEach(forwardRecord -> forwardKey2Record.put(InterfaceWrapperHelper.getId(forwardRecord), forwardRecord));
+				forwardKey2Record.keySet().forEach(forwardKey -> visitedRecords.add(forwardTableName, forwardKey));
+
+				for (final Entry<ITableRecordReference, Integer> currentReferenceAndForwardKey : currentReference2forwardKey.entrySet())
+				{
+					final ITableRecordReference currentReference = currentReferenceAndForwardKey.getKey();
+					final int currentRecordId = currentReference.getRecord_ID();
+					final int forwardKey = currentReferenceAndForwardKey.getValue();
 					final TableRecordReference forwardReference = new TableRecordReference(forwardTableName, forwardKey);
 
-					final boolean recordWasAlreadyAddedBefore = result.contains(forwardReference);
-					if (recordWasAlreadyAddedBefore)
+					if (!forwardKeysToLoad.contains(forwardKey) || result.contains(forwardReference))
 					{
-						logger.trace("{}[{}] forward: ITableRecordReference={} was already added in a previous iteration. Returning", currentTableName, currentRecordId, forwardReference); // avoid circles and also avoid loading the whole PO again
+						logger.trace("{}[{}] forward: ITableRecordReference={} was already added in a previous iteration. Returning", currentTableName, currentRecordId, forwardReference);
+						continue;
 					}
-					else
+
+					final IDLMAware forwardRecord = forwardKey2Record.get(forwardKey);
+					if (forwardRecord == null)
 					{
-						// the foreign record was not yet added before. Load it now.
-						final IDLMAware forwardRecord = forwardReference.getModel(ctxAware, IDLMAware.class);
-						if (forwardRecord == null)
-						{
-							// this happens with our "minidump" where we left out the HUs
-							Loggables.get().withLogger(logger, Level.WARN).addLog(
-									"{}[{}] forward: the record from table={} which we attempted to load via {}.{}={} is NULL",
-									currentTableName, currentRecordId, forwardTableName, currentTableName, forwardColumnName, forwardKey);
-							continue;
-						}
+						// this happens with our "minidump" where we left out the HUs
+						Loggables.get().withLogger(logger, Level.WARN).addLog(
+								"{}[{}] forward: the record from table={} which we attempted to load via {}.{}={} is NULL",
+								currentTableName, currentRecordId, forwardTableName, currentTableName, forwardColumnName, forwardKey);
+						continue;
+					}
 
-						logger.debug("{}[{}] forward: loaded from table={} via {}.{}={}: referenced IDLMAware={}",
-								currentTableName, currentRecordId, forwardTableName, currentTableName, forwardColumnName, forwardKey, forwardRecord);
+					logger.debug("{}[{}] forward: loaded from table={} via {}.{}={}: referenced IDLMAware={}",
+							currentTableName, currentRecordId, forwardTableName, currentTableName, forwardColumnName, forwardKey, forwardRecord);
 
-						final AddResult addResult = result.addReferencedRecord(currentReference, forwardReference, forwardRecord.getDLM_Partition_ID());
-						if (forwardRecord.getDLM_Partition_ID() > 0)
-						{
-							// log why we do not search further using the new found foreign record
-							logger.debug("{}[{}] forward: referenced IDLMAware={} already has DLM_Partition_ID={}",
-									currentTableName, currentRecordId, forwardRecord, forwardRecord.getDLM_Partition_ID());
-						}
-						if(AddResult.STOP.equals(addResult))
-						{
-							Loggables.get().withLogger(logger, Level.WARN)
+					final AddResult addResult = result.addReferencedRecord(currentReference, forwardReference, forwardRecord.getDLM_Partition_ID());
+					if (forwardRecord.getDLM_Partition_ID() > 0)
+					{
+						// log why we do not search further using the new found foreign record
+						logger.debug("{}[{}] forward: referenced IDLMAware={} already has DLM_Partition_ID={}",
+								currentTableName, currentRecordId, forwardRecord, forwardRecord.getDLM_Partition_ID());
+					}
+					if (AddResult.STOP.equals(addResult))
+					{
+						Loggables.get().withLogger(logger, Level.WARN)
 								.addLog("The crawler was signaled to stop when it added ReferencedRecord={} to the result. Stopping now", forwardReference);
-							break mainLoop;
-						}
+						return true;
 					}
 				}
 			}
+		}
 
-			// Look BACKWARD, i.e. get all config-references that point to 'currentTableName'.
-			// Then, for each of them, load the records that reference 'currentRecord' via the respective config-reference.
-			//
-			final List<PartitionerConfigReference> backwardRefs = config.getReferences(currentTableName);
-			for (final PartitionerConfigReference backwardRef : backwardRefs)
+		// Look BACKWARD, i.e. get all config-references that point to 'currentTableName'.
+		// Then, for each of them, load the records that reference the current records via the respective config-reference.
+		//
+		final Set<Integer> existingCurrentRecordIds = currentRecords.stream()
+				.map(InterfaceWrapperHelper::getId)
+				.collect(Collectors.toCollection(LinkedHashSet::new));
+
+		final List<PartitionerConfigReference> backwardRefs = config.getReferences(currentTableName);
+		for (final PartitionerConfigReference backwardRef : backwardRefs)
+		{
+			if (backwardRef.isPartitionBoundary())
 			{
-				if (backwardRef.isPartitionBoundary())
-				{
-					continue;
-				}
+				continue;
+			}
 
-				final PartitionerConfigLine backwardLine = backwardRef.getParent();
-				final String backwardTableName = backwardLine.getTableName();
-				final String backwardColumnName = backwardRef.getReferencingColumnName();
+			final PartitionerConfigLine backwardLine = backwardRef.getParent();
+			final String backwardTableName = backwardLine.getTableName();
+			final String backwardColumnName = backwardRef.getReferencingColumnName();
 
-				// load all records which reference foreignRecord
-				// don't excluded records with DLM_Partition_ID>0 becase we might need to merge them into the partition we are currently building
-				final IQueryBuilder<IDLMAware> queryBuilder = Services.get(IQueryBL.class)
-						.createQueryBuilder(IDLMAware.class, backwardTableName, ctxAware)
-						.addEqualsFilter(backwardRef.getReferencingColumnName(), currentRecordId);
+			// load all records which reference the current records
+			// don't excluded records with DLM_Partition_ID>0 becase we might need to merge them into the partition we are currently building
+			final IQueryBuilder<IDLMAware> queryBuilder = Services.get(IQueryBL.class)
+					.createQueryBuilder(IDLMAware.class, backwardTableName, ctxAware)
+					.addInArrayFilter(backwardColumnName, existingCurrentRecordIds);
 
-				// if we have a case of AD_Table_ID/Record_ID,
-				// then we need to make sure to only load records whose AD_Table_ID references currentRecord
-				if (columnBL.isRecordIdColumnName(backwardColumnName))
-				{
-					// note that referencedTableColumnName = AD_Table_ID, in most cases
-					final String referencedTableColumnName = columnBL.getTableIdColumnName(backwardTableName, backwardRef.getReferencingColumnName())
-							.orElseThrow(Check.supplyEx("Table={} has no table column name for recordColumnName={}", backwardTableName, backwardColumnName));
+			// if we have a case of AD_Table_ID/Record_ID,
+			// then we need to make sure to only load records whose AD_Table_ID references the current table
+			if (columnBL.isRecordIdColumnName(backwardColumnName))
+			{
+				// note that referencedTableColumnName = AD_Table_ID, in most cases
+				final String referencedTableColumnName = columnBL.getTableIdColumnName(backwardTableName, backwardColumnName)
+						.orElseThrow(Check.supplyEx("Table={} has no table column name for recordColumnName={}", backwardTableName, backwardColumnName));
 
-					final int referencedTableID = adTableDAO.retrieveTableId(currentTableName);
+				final int referencedTableID = adTableDAO.retrieveTableId(currentTableName);
 
-					queryBuilder.addEqualsFilter(referencedTableColumnName, referencedTableID);
-				}
+				queryBuilder.addEqualsFilter(referencedTableColumnName, referencedTableID);
+			}
 
-				// avoid loading the records we already added before.
-				// This doesn't work well. NOT IN is probably not very performant, see
-				// http://stackoverflow.com/questions/7125291/postgresql-not-in-versus-except-performance-difference-edited-2
-				// maybe it would become better when we do something along the lines of
-				// https://www.datadoghq.com/blog/100x-faster-postgres-performance-by-changing-1-line/
-				// at any rate it looks the postgresql jdbc driver "only" supports prepared statements with 65536 parameters,
-				// Solutions:
-				// 1. don't try to exclude anything and live with records beeing returned that we already saw earlier
-				// 2. store the partition more regularly and add some sort of negative left-join to the query
-				// {
-				// final String columnName = columnBL.getSingleKeyColumn(backwardTableName);
-				// final Collection<Integer> alreadyAddedBackwardIds = result.getIds(backwardTableName);
-				//
-				// queryBuilder.addNotInArrayFilter(columnName, alreadyAddedBackwardIds);
-				// }
-
-				// de.metas.dlm.partitioner.PartitionerTools.dumpHistogram(result)
-				final List<IDLMAware> backwardRecords = queryBuilder
-						.create()
-						.list();
+			// Note that we don't try to exclude the records we already added before.
+			// NOT IN is probably not very performant, see
+			// http://stackoverflow.com/questions/7125291/postgresql-not-in-versus-except-performance-difference-edited-2
+			// and the postgresql jdbc driver "only" supports prepared statements with 65536 parameters.
+			// Instead, the result tells us if a record was already added.
+			final List<IDLMAware> backwardRecords = queryBuilder
+					.orderBy(columnBL.getSingleKeyColumn(backwardTableName))
+					.create()
+					.list();
+
+			for (final IDLMAware backwardRecord : backwardRecords)
+			{
+				InterfaceWrapperHelper.setTrxName(backwardRecord, ctxAware.getTrxName()); // we need this for MPinstance, because it explicitly ignores the trx it is loaded with in its constructor.
 
-				for (final IDLMAware backwardRecord : backwardRecords)
-				{
-					InterfaceWrapperHelper.setTrxName(backwardRecord, ctxAware.getTrxName()); // we need this for MPinstance, because it explicitly ignores the trx it is loaded with in its constructor.
+				final ITableRecordReference backwardTableRecordReference = TableRecordReference.ofOrNull(backwardRecord);
+				visitedRecords.add(backwardTableName, backwardTableRecordReference.getRecord_ID());
 
-					final ITableRecordReference backwardTableRecordReference = TableRecordReference.ofOrNull(backwardRecord);
+				final int currentRecordId = InterfaceWrapperHelper.getValueOrNull(backwardRecord, backwardColumnName);
+				final ITableRecordReference currentReference = new TableRecordReference(currentTableName, currentRecordId);
 
-					final AddResult addRecordResult = result.addReferencingRecord(backwardTableRecordReference, currentReference, backwardRecord.getDLM_Partition_ID());
+				final AddResult addRecordResult = result.addReferencingRecord(backwardTableRecordReference, currentReference, backwardRecord.getDLM_Partition_ID());
 
-					// should not happen because we excluded alreadyAddedBackwardIds from the loading query
-					// Check.errorUnless(recordWasNotYetAddedBefore, "{}[{}] backward: WAS ALREADY ADDED! - loaded referencing IDLMAware={} from table={} via {}.{}={}",
-					// currentTableName, currentRecordId, backwardRecord, backwardTableName, backwardTableName, backwardColumnName, currentRecordId);
+				switch (addRecordResult)
+				{
+					case ADDED_CONTINUE:
+						// log that the foreign record was not yet added before. We added it now
+						logger.debug("{}[{}] backward: loaded from table={} via {}.{}={}: referencing IDLMAware={}",
+								currentTableName, currentRecordId, backwardTableName, backwardTableName, backwardColumnName, currentRecordId, backwardRecord);
 
-					switch (addRecordResult)
-					{
-						case ADDED_CONTINUE:
-							// log that the foreign record was not yet added before. We added it now
-							logger.debug("{}[{}] backward: loaded from table={} via {}.{}={}: referencing IDLMAware={}",
-									currentTableName, currentRecordId, backwardTableName, backwardTableName, backwardColumnName, currentRecordId, backwardRecord);
-
-							if (backwardRecord.getDLM_Partition_ID() > 0)
-							{
-								// log why we did not search further using the new found foreign record
-								logger.debug("{}[{}] backward: referenced IDLMAware={} already has DLM_Partition_ID={}",
-										currentTableName, currentRecordId, backwardRecord, backwardRecord.getDLM_Partition_ID());
-							}
-							break;
-						case NOT_ADDED_CONTINUE:
-							logger.trace("{}[{}] backward: ReferencingRecord={} was already added in a previous iteration. Returning", currentTableName, currentRecordId, backwardTableRecordReference);
-							break;
-						case STOP:
-							Loggables.get().addLog("The crawler was signaled to stop when it added ReferencingRecord={} the result. Stopping now", backwardTableRecordReference);
-							break mainLoop;
-						default:
-							Check.errorIf(true, "Unexpected result={}", addRecordResult);
-							break;
-					}
+						if (backwardRecord.getDLM_Partition_ID() > 0)
+						{
+							// log why we did not search further using the new found foreign record
+							logger.debug("{}[{}] backward: referenced IDLMAware={} already has DLM_Partition_ID={}",
+									currentTableName, currentRecordId, backwardRecord, backwardRecord.getDLM_Partition_ID());
+						}
+						break;
+					case NOT_ADDED_CONTINUE:
+						logger.trace("{}[{}] backward: ReferencingRecord={} was already added in a previous iteration. Returning", currentTableName, currentRecordId, backwardTableRecordReference);
+						break;
+					case STOP:
+						Loggables.get().addLog("The crawler was signaled to stop when it added ReferencingRecord={} the result. Stopping now", backwardTableRecordReference);
+						return true;
+					default:
+						Check.errorIf(true, "Unexpected result={}", addRecordResult);
+						break;
 				}
 			}
 		}
 
-		logger.info("Found {} records via config.name={}", result.size(), config.getName());
-		storeIterateResult(config, result, ctxAware);
-		return result;
+		return false;
+	}
+
+	/**
+	 * Loads the records of the given table whose <code>columnName</code> is one of the given IDs.
+	 */
+	private static List<IDLMAware> retrieveRecords(
+			final IContextAware ctxAware,
+			final String tableName,
+			final String columnName,
+			final Set<Integer> ids)
+	{
+		if (ids.isEmpty())
+		{
+			return ImmutableList.of();
+		}
+
+		final List<IDLMAware> records = Services.get(IQueryBL.class)
+				.createQueryBuilder(IDLMAware.class, tableName, ctxAware)
+				.addInArrayFilter(columnName, ids)
+				.orderBy(columnName)
+				.create()
+				.list();
+
+		// we need this for MPinstance, because it explicitly ignores the trx it is loaded with in its constructor.
+		records.forEach(record -> InterfaceWrapperHelper.setTrxName(record, ctxAware.getTrxName()));
+		return records;
 	}
 
 	private boolean shallStoreResult(final IIterateResult result)
@@ -437,42 +559,77 @@ public class RecordCrawlerService implements IRecordCrawlerService
 		// store and delete DLM_Partition_Workqueue records according to the records we processed and the records we newly added since the last time this method was called.
 		{
 			// delete DLM_Partition_Workqueue records we already processed
-			final Mutable<Integer> deletedSum = new Mutable<>(0);
-			result.getQueueRecordsToDelete()
-					.forEach(r -> {
-
-						// It's not a must to delete them 1-by-1, but we can't just create one chuck with unknow size!
-						// If we want to delete more than one at a time, we need to create chuncks of a fixed size that is less than 2^32.
-						final int delete = queryBL.createQueryBuilder(I_DLM_Partition_Workqueue.class, ctxAware)
-								.addEqualsFilter(I_DLM_Partition_Workqueue.COLUMN_DLM_Partition_Workqueue_ID, r.getDLM_Partition_Workqueue_ID())
-								.create()
-								.deleteDirectly();
-						deletedSum.setValue(deletedSum.getValue() + delete);
-					});
-			logger.debug("storeIterateResult: Deleted {} DLM_Partition_Workqueue records", deletedSum.getValue());
+			int deletedSum = 0;
+			final List<Integer> workqueueIdsToDelete = result.getQueueRecordsToDelete().stream()
+					.map(WorkQueue::getDLM_Partition_Workqueue_ID)
+					.collect(Collectors.toList());
+
+			// we can't just create one chunk with unknown size, because prepared statements only support a limited number of parameters
+			for (final List<Integer> workqueueIdsChunk : Iterables.partition(workqueueIdsToDelete, FRONTIER_MAX_SIZE))
+			{
+				deletedSum += queryBL.createQueryBuilder(I_DLM_Partition_Workqueue.class, ctxAware)
+						.addInArrayFilter(I_DLM_Partition_Workqueue.COLUMN_DLM_Partition_Workqueue_ID, workqueueIdsChunk)
+						.create()
+						.deleteDirectly();
+			}
+			logger.debug("storeIterateResult: Deleted {} DLM_Partition_Workqueue records", deletedSum);
 
 			// persist DLM_Partition_Workqueue record we still need to process.
-			final Mutable<Integer> storedSum = new Mutable<>(0);
-			result.getQueueRecordsToStore()
-					.forEach(queueRecordsToStore -> {
+			final int storedSum = storeWorkqueueRecords(result.getQueueRecordsToStore(), storedPartition.getDLM_Partition_ID(), ctxAware);
+			logger.debug("storeIterateResult: Stored {} DLM_Partition_Workqueue records", storedSum);
+		}
 
-						final ITableRecordReference tableRecordReference = queueRecordsToStore.getTableRecordReference();
+		result.clearAfterPartitionStored(storedPartition);
+	}
 
-						final I_DLM_Partition_Workqueue newQueueRecord = InterfaceWrapperHelper.newInstance(I_DLM_Partition_Workqueue.class);
-						newQueueRecord.setDLM_Partition_ID(storedPartition.getDLM_Partition_ID());
-						newQueueRecord.setAD_Table_ID(tableRecordReference.getAD_Table_ID());
-						newQueueRecord.setRecord_ID(tableRecordReference.getRecord_ID());
+	/**
+	 * Inserts one {@link I_DLM_Partition_Workqueue} record per given item in chunks and sets the new IDs to the items.
+	 *
+	 * @return the number of stored records
+	 */
+	private static int storeWorkqueueRecords(
+			final List<WorkQueue> queueRecordsToStore,
+			final int dlmPartitionId,
+			final IContextAware ctxAware)
+	{
+		for (final List<WorkQueue> chunk : Iterables.partition(queueRecordsToStore, FRONTIER_MAX_SIZE))
+		{
+			final List<I_DLM_Partition_Workqueue> newQueueRecords = new ArrayList<>(chunk.size());
+			final List<PO> pos = new ArrayList<>(chunk.size());
+			for (final WorkQueue queueRecordToStore : chunk)
+			{
+				final ITableRecordReference tableRecordReference = queueRecordToStore.getTableRecordReference();
 
-						InterfaceWrapperHelper.save(newQueueRecord);
+				final I_DLM_Partition_Workqueue newQueueRecord = InterfaceWrapperHelper.newInstance(I_DLM_Partition_Workqueue.class, ctxAware);
+				newQueueRecord.setDLM_Partition_ID(dlmPartitionId);
+				newQueueRecord.setAD_Table_ID(tableRecordReference.getAD_Table_ID());
+				newQueueRecord.setRecord_ID(tableRecordReference.getRecord_ID());
+				newQueueRecords.add(newQueueRecord);
 
-						queueRecordsToStore.setDLM_Partition_Workqueue_ID(newQueueRecord.getDLM_Partition_Workqueue_ID());
+				final PO po = InterfaceWrapperHelper.getPO(newQueueRecord);
+				if (po != null)
+				{
+					pos.add(po);
+				}
+			}
 
-						storedSum.setValue(storedSum.getValue() + 1);
-					});
-			logger.debug("storeIterateResult: Stored {} DLM_Partition_Workqueue records", storedSum.getValue());
-		}
+			if (pos.size() == newQueueRecords.size())
+			{
+				POBulkInserter.assignNewIDs(pos);
+				POBulkInserter.insert(pos, ctxAware.getTrxName());
+			}
+			else
+			{
+				// not backed by POs, i.e. in unit tests
+				newQueueRecords.forEach(InterfaceWrapperHelper::save);
+			}
 
-		result.clearAfterPartitionStored(storedPartition);
+			for (int i = 0; i < chunk.size(); i++)
+			{
+				chunk.get(i).setDLM_Partition_Workqueue_ID(newQueueRecords.get(i).getDLM_Partition_Workqueue_ID());
+			}
+		}
+		return queueRecordsToStore.size();
 	}
 
 	private int getPartitionSize(final IContextAware ctxAware, Integer dlmPartitionId)
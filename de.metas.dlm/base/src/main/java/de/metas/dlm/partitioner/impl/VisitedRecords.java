@@ -0,0 +1,83 @@
+package de.metas.dlm.partitioner.impl;
+
+import java.util.BitSet;
+import java.util.HashMap;
+import java.util.Map;
+
+/*
+ * #%L
+ * metasfresh-dlm
+ * %%
+ * Copyright (C) 2019 metas GmbH
+ * %%
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as
+ * published by the Free Software Foundation, either version 2 of the
+ * License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public
+ * License along with this program. If not, see
+ * <http://www.gnu.org/licenses/gpl-2.0.html>.
+ * #L%
+ */
+
+/**
+ * The records which {@link RecordCrawlerService} already loaded during one crawl, as one {@link BitSet} of record IDs per table.
+ * <p>
+ * Unlike a set of {@link org.adempiere.util.lang.ITableRecordReference}s, this needs about one bit per ID up to the table's highest visited ID,
+ * so it can be kept for the whole crawl, also after the crawler stored and cleared its intermediate result.
+ */
+final class VisitedRecords
+{
+	private final Map<String, BitSet> tableName2recordIds = new HashMap<>();
+
+	private int size = 0;
+
+	/**
+	 * @return {@code true} if the given record was not yet visited
+	 */
+	public boolean add(final String tableName, final int recordId)
+	{
+		if (recordId < 0)
+		{
+			return false;
+		}
+
+		final BitSet recordIds = tableName2recordIds.computeIfAbsent(tableName, k -> new BitSet());
+		if (recordIds.get(recordId))
+		{
+			return false;
+		}
+
+		recordIds.set(recordId);
+		size++;
+		return true;
+	}
+
+	public boolean contains(final String tableName, final int recordId)
+	{
+		if (recordId < 0)
+		{
+			return false;
+		}
+
+		final BitSet recordIds = tableName2recordIds.get(tableName);
+		return recordIds != null && recordIds.get(recordId);
+	}
+
+	public int size()
+	{
+		return size;
+	}
+
+	@Override
+	public String toString()
+	{
+		return "VisitedRecords[tables=" + tableName2recordIds.size() + ", size=" + size + "]";
+	}
+}
@@ -0,0 +1,286 @@
+package de.metas.dlm.migrator.impl;
+
+import static org.adempiere.model.InterfaceWrapperHelper.newInstance;
+import static org.adempiere.model.InterfaceWrapperHelper.saveRecord;
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.adempiere.exceptions.AdempiereException;
+import org.adempiere.test.AdempiereTestHelper;
+import org.adempiere.util.lang.IAutoCloseable;
+import org.junit.Before;
+import org.junit.Test;
+
+import com.google.common.collect.ImmutableSet;
+
+import de.metas.dlm.Partition;
+import de.metas.dlm.migrator.IMigratorService;
+import de.metas.dlm.migrator.PartitionMigrationProgress;
+import de.metas.dlm.migrator.PartitionMigrationRequest;
+import de.metas.dlm.model.I_DLM_Partition;
+import de.metas.util.ILoggable;
+import de.metas.util.Loggables;
+import de.metas.util.Services;
+import de.metas.util.StringUtils;
+
+/*
+ * #%L
+ * metasfresh-dlm
+ * %%
+ * Copyright (C) 2019 metas GmbH
+ * %%
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as
+ * published by the Free Software Foundation, either version 2 of the
+ * License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public
+ * License along with this program. If not, see
+ * <http://www.gnu.org/licenses/gpl-2.0.html>.
+ * #L%
+ */
+
+public class PartitionMigrationExecutorTests
+{
+	private PartitionMigrationExecutor partitionMigrationExecutor;
+
+	@Before
+	public void init()
+	{
+		AdempiereTestHelper.get().init();
+		partitionMigrationExecutor = new PartitionMigrationExecutor();
+	}
+
+	@Test(timeout = 10000)
+	public void pauseAndResume() throws Exception
+	{
+		partitionMigrationExecutor.pause();
+		assertThat(partitionMigrationExecutor.isPaused()).isTrue();
+
+		final CountDownLatch passed = new CountDownLatch(1);
+		final Thread thread = new Thread(() -> {
+			try
+			{
+				partitionMigrationExecutor.awaitIfPaused();
+				passed.countDown();
+			}
+			catch (final InterruptedException e)
+			{
+				Thread.currentThread().interrupt();
+			}
+		});
+		thread.start();
+
+		assertThat(passed.await(200, TimeUnit.MILLISECONDS)).isFalse();
+
+		partitionMigrationExecutor.resume();
+		assertThat(partitionMigrationExecutor.isPaused()).isFalse();
+		assertThat(passed.await(5, TimeUnit.SECONDS)).isTrue();
+	}
+
+	@Test
+	public void rowsPerSecond_override()
+	{
+		assertThat(partitionMigrationExecutor.getRowsPerSecond()).isEqualTo(0); // unlimited by default
+
+		partitionMigrationExecutor.setRowsPerSecond(5000);
+		assertThat(partitionMigrationExecutor.getRowsPerSecond()).isEqualTo(5000);
+	}
+
+	@Test
+	public void progress_estimatedTimeRemaining()
+	{
+		final PartitionMigrationProgress progress = new PartitionMigrationProgress(10, 1000, false);
+		assertThat(progress.getEstimatedTimeRemaining()).isNull(); // nothing migrated yet
+
+		progress.onPartitionMigrated(100);
+		progress.onPartitionFailed();
+		assertThat(progress.getPartitionsMigrated()).isEqualTo(1);
+		assertThat(progress.getPartitionsFailed()).isEqualTo(1);
+		assertThat(progress.getRowsMigrated()).isEqualTo(100);
+
+		progress.markDone();
+		assertThat(progress.getEstimatedTimeRemaining()).isEqualTo(Duration.ZERO);
+	}
+
+	@Test(timeout = 30000)
+	public void migrate()
+	{
+		final int parallelism = 3;
+
+		final List<I_DLM_Partition> partitions = new ArrayList<>();
+		for (int i = 1; i <= 20; i++)
+		{
+			final I_DLM_Partition partition = newInstance(I_DLM_Partition.class);
+			partition.setPartitionSize(i);
+			saveRecord(partition);
+			partitions.add(partition);
+		}
+		final Set<Integer> failingPartitionIds = ImmutableSet.of(
+				partitions.get(1).getDLM_Partition_ID(),
+				partitions.get(9).getDLM_Partition_ID(),
+				partitions.get(19).getDLM_Partition_ID());
+
+		final MigratorServiceMock migratorService = new MigratorServiceMock(parallelism, failingPartitionIds);
+		Services.registerService(IMigratorService.class, migratorService);
+
+		final CountingIterator partitionsIterator = new CountingIterator(partitions.iterator(), migratorService);
+		final PartitionMigrationRequest request = PartitionMigrationRequest.builder()
+				.partitions(partitionsIterator)
+				.partitionsTotal(partitions.size())
+				.rowsTotal(20 * 21 / 2)
+				.testMigrate(true)
+				.parallelism(parallelism)
+				.build();
+
+		final List<String> logs = Collections.synchronizedList(new ArrayList<>());
+		final ILoggable loggable = new ILoggable()
+		{
+			@Override
+			public ILoggable addLog(final String msg, final Object... msgParameters)
+			{
+				logs.add(StringUtils.formatMessage(msg, msgParameters));
+				return this;
+			}
+		};
+
+		final PartitionMigrationProgress progress;
+		try (final IAutoCloseable loggableRestorer = Loggables.temporarySetLoggable(loggable))
+		{
+			progress = partitionMigrationExecutor.migrate(request);
+		}
+
+		// concurrency: all workers were busy at the same time, but there were never more than them
+		assertThat(migratorService.getMaxRunning()).isEqualTo(parallelism);
+
+		// back-pressure: the iterator was not drained faster than the workers migrated the partitions
+		assertThat(partitionsIterator.getTaken()).isEqualTo(partitions.size());
+		assertThat(partitionsIterator.getMaxInFlight()).isLessThanOrEqualTo(parallelism * 2);
+
+		// failures are counted and reported to the caller's loggable
+		assertThat(progress.getPartitionsMigrated()).isEqualTo(17);
+		assertThat(progress.getPartitionsFailed()).isEqualTo(3);
+		assertThat(progress.getRowsMigrated()).isEqualTo(20 * 21 / 2 - (2 + 10 + 20));
+		for (final int failingPartitionId : failingPartitionIds)
+		{
+			assertThat(logs).anyMatch(log -> log.startsWith("Failed migrating DLM_Partition_ID=" + failingPartitionId + ":"));
+		}
+		assertThat(logs).anyMatch(log -> log.startsWith("Done: "));
+	}
+
+	/**
+	 * Fails for the given partitions and keeps the first workers busy until all of them are running.
+	 */
+	private static class MigratorServiceMock implements IMigratorService
+	{
+		private final Set<Integer> failingPartitionIds;
+		private final CountDownLatch allWorkersRunning;
+
+		private final AtomicInteger running = new AtomicInteger();
+		private final AtomicInteger maxRunning = new AtomicInteger();
+		private final AtomicInteger finished = new AtomicInteger();
+
+		private MigratorServiceMock(final int parallelism, final Set<Integer> failingPartitionIds)
+		{
+			this.failingPartitionIds = failingPartitionIds;
+			this.allWorkersRunning = new CountDownLatch(parallelism);
+		}
+
+		@Override
+		public void testMigratePartition(final Partition partition)
+		{
+			maxRunning.accumulateAndGet(running.incrementAndGet(), Math::max);
+			try
+			{
+				allWorkersRunning.countDown();
+				assertThat(allWorkersRunning.await(10, TimeUnit.SECONDS)).isTrue();
+
+				if (failingPartitionIds.contains(partition.getDLM_Partition_ID()))
+				{
+					throw new AdempiereException("Partition " + partition.getDLM_Partition_ID() + " is not complete");
+				}
+			}
+			catch (final InterruptedException e)
+			{
+				throw AdempiereException.wrapIfNeeded(e);
+			}
+			finally
+			{
+				running.decrementAndGet();
+				finished.incrementAndGet();
+			}
+		}
+
+		@Override
+		public Partition migratePartition(final Partition partition)
+		{
+			throw new UnsupportedOperationException();
+		}
+
+		public int getMaxRunning()
+		{
+			return maxRunning.get();
+		}
+
+		public int getFinished()
+		{
+			return finished.get();
+		}
+	}
+
+	/**
+	 * Remembers how many partitions were taken but not yet migrated at most.
+	 */
+	private static class CountingIterator implements Iterator<I_DLM_Partition>
+	{
+		private final Iterator<I_DLM_Partition> delegate;
+		private final MigratorServiceMock migratorService;
+
+		private int taken = 0;
+		private int maxInFlight = 0;
+
+		private CountingIterator(final Iterator<I_DLM_Partition> delegate, final MigratorServiceMock migratorService)
+		{
+			this.delegate = delegate;
+			this.migratorService = migratorService;
+		}
+
+		@Override
+		public boolean hasNext()
+		{
+			return delegate.hasNext();
+		}
+
+		@Override
+		public I_DLM_Partition next()
+		{
+			taken++;
+			maxInFlight = Math.max(maxInFlight, taken - migratorService.getFinished());
+			return delegate.next();
+		}
+
+		public int getTaken()
+		{
+			return taken;
+		}
+
+		public int getMaxInFlight()
+		{
+			return maxInFlight;
+		}
+	}
+}
@@ -669,4 +669,44 @@ public class PartitionerServiceCreatePartitionTests
 		assertThat(partitions.get(1).getRecordsFlat().size(), is(1));
 		assertThat(partitions.get(1).getRecordsFlat().get(0), is(TableRecordReference.ofOrNull(order1)));
 	}
+
+	/**
+	 * Verifies that the crawler finds all records if there are more records to crawl than fit into one of {@link RecordCrawlerService}'s frontiers.
+	 */
+	@Test
+	public void testMoreRecordsThanOneFrontier()
+	{
+		final PartitionConfig config = PartitionConfig.builder()
+
+				// invoice -> order
+				.line(I_C_Invoice.Table_Name)
+				.ref().setReferencingColumnName(I_C_Invoice.COLUMNNAME_C_Order_ID).setReferencedTableName(I_C_Order.Table_Name).endRef()
+
+				// orderLine -> order
+				.line(I_C_OrderLine.Table_Name)
+				.ref().setReferencingColumnName(I_C_OrderLine.COLUMNNAME_C_Order_ID).setReferencedTableName(I_C_Order.Table_Name).endRef()
+
+				.endLine().build();
+
+		final I_C_Order order = InterfaceWrapperHelper.newInstance(I_C_Order.class);
+		InterfaceWrapperHelper.save(order);
+
+		final I_C_Invoice invoice = InterfaceWrapperHelper.newInstance(I_C_Invoice.class);
+		invoice.setC_Order(order);
+		InterfaceWrapperHelper.save(invoice);
+
+		final int orderLinesCount = 1500;
+		for (int i = 0; i < orderLinesCount; i++)
+		{
+			final I_C_OrderLine orderLine = InterfaceWrapperHelper.newInstance(I_C_OrderLine.class);
+			orderLine.setC_Order(order);
+			InterfaceWrapperHelper.save(orderLine);
+		}
+
+		final List<Partition> partitions = partitionerService.createPartition0(PartitionRequestFactory.builder().setConfig(config).build());
+		assertThat(partitions.size(), is(1));
+		assertThat(partitions.get(0).getRecordsFlat().size(), is(orderLinesCount + 2));
+		assertThat(partitions.get(0).getRecordsFlat().contains(asTableRef(order)), is(true));
+		assertThat(partitions.get(0).getRecordsFlat().contains(asTableRef(invoice)), is(true));
+	}
 }
@@ -3,8 +3,13 @@ package de.metas.dlm.partitioner.impl;
 import static org.hamcrest.Matchers.is;
 import static org.junit.Assert.assertThat;
 
+import java.util.ArrayList;
 import java.util.Collections;
 import java.util.Iterator;
+import java.util.List;
+import java.util.stream.Collectors;
+
+import org.adempiere.ad.dao.IQueryBL;
 
 import org.adempiere.ad.table.api.IADTableDAO;
 import org.adempiere.model.InterfaceWrapperHelper;
@@ -14,6 +19,9 @@ import org.adempiere.util.lang.ITableRecordReference;
 import org.adempiere.util.lang.impl.TableRecordReference;
 import org.compiere.model.I_AD_Field;
 import org.compiere.model.I_AD_Tab;
+import org.compiere.model.I_C_Invoice;
+import org.compiere.model.I_C_Order;
+import org.compiere.model.I_C_OrderLine;
 import org.compiere.util.Env;
 import org.junit.Before;
 import org.junit.Test;
@@ -22,6 +30,7 @@ import de.metas.dlm.Partition.WorkQueue;
 import de.metas.dlm.model.IDLMAware;
 import de.metas.dlm.model.I_DLM_Partition;
 import de.metas.dlm.model.I_DLM_Partition_Workqueue;
+import de.metas.dlm.partitioner.IIterateResultHandler.AddResult;
 import de.metas.dlm.partitioner.config.PartitionConfig;
 import de.metas.util.Services;
 
@@ -147,4 +156,73 @@ public class RecordCrawlerServiceStoreITerateResultTests
 
 		assertThat(result.getPartition().getDLM_Partition_ID(), is(p1.getDLM_Partition_ID()));
 	}
+
+	/**
+	 * Scenario: a handler signals the crawler to stop while the crawler is still processing a frontier.
+	 * The frontier's records which were not (completely) crawled yet shall remain in the queue,
+	 * i.e. their <code>DLM_Partition_Workqueue</code> records shall not be deleted and the partition shall not be flagged as complete.
+	 */
+	@Test
+	public void testCrawlStopsPartwayThroughFrontier()
+	{
+		final PartitionConfig config = PartitionConfig.builder()
+				.line(I_C_OrderLine.Table_Name)
+				.ref().setReferencingColumnName(I_C_OrderLine.COLUMNNAME_C_Order_ID).setReferencedTableName(I_C_Order.Table_Name).endRef()
+				.endLine().build();
+
+		final List<WorkQueue> initialQueue = new ArrayList<>();
+		for (int i = 0; i < 3; i++)
+		{
+			final I_C_Order order = InterfaceWrapperHelper.newInstance(I_C_Order.class);
+			InterfaceWrapperHelper.save(order);
+
+			final I_C_OrderLine orderLine = InterfaceWrapperHelper.newInstance(I_C_OrderLine.class);
+			orderLine.setC_Order(order);
+			InterfaceWrapperHelper.save(orderLine);
+
+			initialQueue.add(createWorkQueue(I_C_Order.Table_Name, order.getC_Order_ID()));
+		}
+		final I_C_Invoice invoice = InterfaceWrapperHelper.newInstance(I_C_Invoice.class);
+		InterfaceWrapperHelper.save(invoice);
+		initialQueue.add(createWorkQueue(I_C_Invoice.Table_Name, invoice.getC_Invoice_ID()));
+
+		final CreatePartitionIterateResult result = new CreatePartitionIterateResult(initialQueue.iterator(), ctxAware);
+
+		// stop when the first order line was added, i.e. while crawling the orders and before crawling the invoice
+		result.registerHandler((tableRecordReference, preliminaryResult) -> I_C_OrderLine.Table_Name.equals(tableRecordReference.getTableName()) ? AddResult.STOP : preliminaryResult);
+
+		// invoke the method under test
+		recordCrawlerService.crawl(config, ctxAware, result);
+
+		assertThat(result.isQueueEmpty(), is(false));
+		assertThat(result.getPartition().isComplete(), is(false));
+
+		// the initial queue's records are still there, and there is one new record for the order line that was added before the handler signaled to stop
+		final List<I_DLM_Partition_Workqueue> workQueueRecords = Services.get(IQueryBL.class)
+				.createQueryBuilder(I_DLM_Partition_Workqueue.class, ctxAware)
+				.create()
+				.list();
+		assertThat(workQueueRecords.size(), is(initialQueue.size() + 1));
+
+		final List<Integer> workQueueIds = workQueueRecords.stream().map(I_DLM_Partition_Workqueue::getDLM_Partition_Workqueue_ID).collect(Collectors.toList());
+		for (final WorkQueue initialQueueItem : initialQueue)
+		{
+			assertThat(workQueueIds.contains(initialQueueItem.getDLM_Partition_Workqueue_ID()), is(true));
+		}
+
+		// the orders and the invoice are the next records to be crawled
+		for (final WorkQueue initialQueueItem : initialQueue)
+		{
+			assertThat(result.nextFromQueue(), is(initialQueueItem.getTableRecordReference()));
+		}
+	}
+
+	private WorkQueue createWorkQueue(final String tableName, final int recordId)
+	{
+		final I_DLM_Partition_Workqueue workQueueDB = InterfaceWrapperHelper.newInstance(I_DLM_Partition_Workqueue.class);
+		workQueueDB.setAD_Table_ID(adTableDAO.retrieveTableId(tableName));
+		workQueueDB.setRecord_ID(recordId);
+		InterfaceWrapperHelper.save(workQueueDB);
+		return WorkQueue.of(workQueueDB);
+	}
 }
@@ -30,6 +30,7 @@ import org.adempiere.ad.trx.api.ITrx;
 import org.adempiere.archive.api.IArchiveEventManager;
 import org.adempiere.archive.api.IArchiveStorageFactory;
 import org.adempiere.archive.api.IArchiveStorageFactory.AccessMode;
+import org.adempiere.archive.spi.impl.ContentAddressedArchiveStorage;
 import org.adempiere.archive.spi.impl.FilesystemArchiveStorage;
 import org.adempiere.exceptions.AdempiereException;
 import org.compiere.Adempiere;
@@ -94,11 +95,13 @@ public class Archive_Main_Validator implements ModelValidator
 
 		// Register RemoteArchiveStorage
 		archiveStorageFactory.registerArchiveStorage(IArchiveStorageFactory.STORAGETYPE_Filesystem, AccessMode.CLIENT, RemoteArchiveStorage.class);
+		archiveStorageFactory.registerArchiveStorage(IArchiveStorageFactory.STORAGETYPE_ContentAddressed, AccessMode.CLIENT, RemoteArchiveStorage.class);
 
 		// NOTE: if we are in developer mode, in most of the cases Remote storage is not accessible but the filesystem storage is on our machine
 		if (developerModeBL.isEnabled())
 		{
 			archiveStorageFactory.registerArchiveStorage(IArchiveStorageFactory.STORAGETYPE_Filesystem, AccessMode.CLIENT, FilesystemArchiveStorage.class);
+			archiveStorageFactory.registerArchiveStorage(IArchiveStorageFactory.STORAGETYPE_ContentAddressed, AccessMode.CLIENT, ContentAddressedArchiveStorage.class);
 		}
 
 		final DocOutboundArchiveEventListener docOutboundArchiveEventListener = Adempiere.getBean(DocOutboundArchiveEventListener.class);
@@ -272,6 +272,24 @@ import lombok.NonNull;
 		huFilters.addInSubQueryFilter(I_M_HU.COLUMN_M_HU_ID, I_M_HU_Attribute.COLUMN_M_HU_ID, attributesQuery);
 	}
 
+	/**
+	 * Same as {@link #appendQueryFilterTo(ICompositeQueryFilter)}, but looked up in the given index.
+	 *
+	 * @return the IDs of the matching HUs or {@code null} if the index can't answer this filter
+	 */
+	public final Set<Integer> getMatchingHUIdsOrNull(@NonNull final HUAttributesIndex index)
+	{
+		if (matchingType != AttributeValueMatchingType.ValuesList)
+		{
+			return null;
+		}
+		if (!index.isIndexed(attributeId, attributeValueType))
+		{
+			return null;
+		}
+		return index.getHUIdsOrNull(attributeId, attributeValueType, getValuesAndSubstitutes());
+	}
+
 	/**
 	 * NOTE: keep in sync with {@link #appendQueryFilterTo(Object, ICompositeQueryFilter)}
 	 */
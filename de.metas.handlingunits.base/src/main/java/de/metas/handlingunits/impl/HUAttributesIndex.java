@@ -0,0 +1,581 @@
+package de.metas.handlingunits.impl;
+
+import java.math.BigDecimal;
+import java.time.Instant;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.stream.Stream;
+
+import javax.annotation.Nullable;
+
+import org.adempiere.ad.dao.IQueryBL;
+import org.adempiere.ad.dao.IQueryBuilder;
+import org.adempiere.ad.trx.api.ITrx;
+import org.adempiere.ad.trx.api.ITrxListenerManager.TrxEventTiming;
+import org.adempiere.ad.trx.api.ITrxManager;
+import org.adempiere.ad.trx.api.OnTrxMissingPolicy;
+import org.adempiere.mm.attributes.AttributeId;
+import org.adempiere.mm.attributes.api.IAttributeDAO;
+import org.adempiere.service.ISysConfigBL;
+import org.adempiere.util.concurrent.CustomizableThreadFactory;
+import org.compiere.model.I_M_Attribute;
+import org.compiere.model.X_M_Attribute;
+import org.compiere.util.TimeUtil;
+import org.slf4j.Logger;
+
+import com.google.common.annotations.VisibleForTesting;
+import com.google.common.base.Splitter;
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableMap;
+import com.google.common.collect.ImmutableSet;
+
+import de.metas.cache.CacheMgt;
+import de.metas.cache.model.CacheInvalidateMultiRequest;
+import de.metas.cache.model.CacheInvalidateRequest;
+import de.metas.handlingunits.model.I_M_HU_Attribute;
+import de.metas.logging.LogManager;
+import de.metas.util.NumberUtils;
+import de.metas.util.Services;
+import lombok.NonNull;
+import lombok.Value;
+
+/*
+ * #%L
+ * de.metas.handlingunits.base
+ * %%
+ * Copyright (C) 2019 metas GmbH
+ * %%
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as
+ * published by the Free Software Foundation, either version 2 of the
+ * License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public
+ * License along with this program. If not, see
+ * <http://www.gnu.org/licenses/gpl-2.0.html>.
+ * #L%
+ */
+
+/**
+ * In-memory inverted index of the active {@link I_M_HU_Attribute} values of the attributes listed in sysconfig {@value #SYSCONFIG_IndexedAttributes}.
+ * <p>
+ * {@link HUQueryBuilder_Attributes} uses it to replace the per-attribute <code>M_HU_Attribute</code> subqueries with one <code>M_HU_ID IN (...)</code> restriction,
+ * if all filtered attributes are indexed and the result is small enough.
+ * <p>
+ * The index is built asynchronously on start-up and follows the <code>M_HU_Attribute</code> cache invalidations afterwards.
+ * Local changes are applied after their transaction was committed; until then, queries from that transaction are answered by the database.
+ */
+public final class HUAttributesIndex
+{
+	public static HUAttributesIndex get()
+	{
+		return instance;
+	}
+
+	private static final HUAttributesIndex instance = new HUAttributesIndex();
+
+	private static final Logger logger = LogManager.getLogger(HUAttributesIndex.class);
+
+	/** Comma separated <code>M_Attribute.Value</code>s of the attributes to index; empty means that the index is disabled */
+	public static final String SYSCONFIG_IndexedAttributes = "de.metas.handlingunits.impl.HUAttributesIndex.IndexedAttributes";
+
+	/** If more HUs than this match a query, the query is answered by the database, because the <code>IN</code> list would be too long */
+	private static final String SYSCONFIG_MaxHUIds = "de.metas.handlingunits.impl.HUAttributesIndex.MaxHUIds";
+
+	private static final String TRX_PROPERTY_ChangedHUAttributeIds = HUAttributesIndex.class.getName() + ".ChangedHUAttributeIds";
+
+	private final AtomicBoolean started = new AtomicBoolean(false);
+
+	private final Object rebuildLock = new Object();
+	private final AtomicBoolean rebuildScheduled = new AtomicBoolean(false);
+	private ExecutorService rebuildExecutor; // lazy
+
+	/** Indexed attributes and the <code>AttributeValueType</code> which determines their value column */
+	private volatile ImmutableMap<AttributeId, String> indexedAttributes = ImmutableMap.of();
+
+	/** The current postings or {@code null} if the index is not (yet) loaded */
+	private volatile Postings postings = null;
+
+	/** IDs of the HU attributes which changed while a rebuild was running; {@code null} if no rebuild is running */
+	private Set<Integer> huAttributeIdsChangedDuringRebuild = null;
+
+	private HUAttributesIndex()
+	{
+	}
+
+	public void startIfEnabled()
+	{
+		if (!started.compareAndSet(false, true))
+		{
+			return;
+		}
+		if (!loadIndexedAttributes())
+		{
+			logger.info("Not starting because no attributes are configured in sysconfig {}", SYSCONFIG_IndexedAttributes);
+			return;
+		}
+
+		final CacheMgt cacheMgt = CacheMgt.get();
+		cacheMgt.enableRemoteCacheInvalidationForTableName(I_M_HU_Attribute.Table_Name);
+		cacheMgt.addCacheResetListener(I_M_HU_Attribute.Table_Name, this::onCacheReset);
+		scheduleRebuild();
+	}
+
+	/**
+	 * @return {@code false} if no attribute shall be indexed
+	 */
+	@VisibleForTesting
+	boolean loadIndexedAttributes()
+	{
+		final String attributeValuesStr = Services.get(ISysConfigBL.class).getValue(SYSCONFIG_IndexedAttributes, "");
+		final IAttributeDAO attributeDAO = Services.get(IAttributeDAO.class);
+
+		final ImmutableMap.Builder<AttributeId, String> indexedAttributes = ImmutableMap.builder();
+		for (final String attributeValue : Splitter.on(',').trimResults().omitEmptyStrings().split(attributeValuesStr))
+		{
+			final I_M_Attribute attribute = attributeDAO.retrieveAttributeByValue(attributeValue);
+			if (attribute == null)
+			{
+				logger.warn("Ignoring unknown attribute {} in sysconfig {}", attributeValue, SYSCONFIG_IndexedAttributes);
+				continue;
+			}
+			indexedAttributes.put(AttributeId.ofRepoId(attribute.getM_Attribute_ID()), toIndexedValueType(attribute.getAttributeValueType()));
+		}
+
+		this.indexedAttributes = indexedAttributes.build();
+		return !this.indexedAttributes.isEmpty();
+	}
+
+	/**
+	 * Same mapping from <code>M_Attribute.AttributeValueType</code> to <code>M_HU_Attribute</code> value column as in {@link HUAttributeQueryFilterVO}.
+	 */
+	private static String toIndexedValueType(final String attributeValueType)
+	{
+		if (X_M_Attribute.ATTRIBUTEVALUETYPE_Number.equals(attributeValueType) || X_M_Attribute.ATTRIBUTEVALUETYPE_Date.equals(attributeValueType))
+		{
+			return attributeValueType;
+		}
+		return X_M_Attribute.ATTRIBUTEVALUETYPE_StringMax40;
+	}
+
+	@VisibleForTesting
+	void reset()
+	{
+		indexedAttributes = ImmutableMap.of();
+		postings = null;
+		started.set(false);
+	}
+
+	public boolean isReady()
+	{
+		return postings != null;
+	}
+
+	public int size()
+	{
+		final Postings postings = this.postings;
+		return postings != null ? postings.size() : 0;
+	}
+
+	public boolean isIndexed(
+			@NonNull final AttributeId attributeId,
+			@NonNull final String attributeValueType)
+	{
+		return attributeValueType.equals(indexedAttributes.get(attributeId));
+	}
+
+	/**
+	 * @return {@code false} if the index can not answer queries for the current thread, e.g. because the thread's transaction changed indexed HU attributes
+	 */
+	public boolean isUsableInCurrentTrx()
+	{
+		if (!isReady())
+		{
+			return false;
+		}
+
+		final ITrxManager trxManager = Services.get(ITrxManager.class);
+		final ITrx trx = trxManager.getThreadInheritedTrx(OnTrxMissingPolicy.ReturnTrxNone);
+		if (!trxManager.isActive(trx))
+		{
+			return true;
+		}
+
+		final Set<Integer> changedHUAttributeIds = trx.getProperty(TRX_PROPERTY_ChangedHUAttributeIds);
+		return changedHUAttributeIds == null || changedHUAttributeIds.isEmpty();
+	}
+
+	/**
+	 * @return the IDs of the HUs which have one of the given values for the given attribute, or {@code null} if the given attribute or a given value can't be looked up in this index
+	 */
+	@Nullable
+	public Set<Integer> getHUIdsOrNull(
+			@NonNull final AttributeId attributeId,
+			@NonNull final String attributeValueType,
+			@NonNull final Collection<Object> values)
+	{
+		final Postings postings = this.postings;
+		if (postings == null || !isIndexed(attributeId, attributeValueType) || values.isEmpty())
+		{
+			return null;
+		}
+
+		final Set<Integer> huIds = new HashSet<>();
+		for (final Object value : values)
+		{
+			final Object normalizedValue = normalizeValue(value);
+			if (normalizedValue == null)
+			{
+				return null; // null values are not indexed
+			}
+			huIds.addAll(postings.getHUIds(attributeId, normalizedValue));
+		}
+		return huIds;
+	}
+
+	/**
+	 * @return the HU IDs which are contained in all given sets, or {@code null} if there are more than {@value #SYSCONFIG_MaxHUIds} of them
+	 */
+	@Nullable
+	public Set<Integer> intersectOrNullIfTooMany(@NonNull final List<Set<Integer>> huIdSets)
+	{
+		final List<Set<Integer>> huIdSetsBySize = huIdSets.stream()
+				.sorted(Comparator.comparingInt(Set::size))
+				.collect(ImmutableList.toImmutableList());
+		if (huIdSetsBySize.isEmpty())
+		{
+			return null;
+		}
+
+		final int maxHUIds = Services.get(ISysConfigBL.class).getIntValue(SYSCONFIG_MaxHUIds, 1000);
+		final Set<Integer> result = new HashSet<>();
+		for (final Integer huId : huIdSetsBySize.get(0))
+		{
+			if (huIdSetsBySize.stream().skip(1).allMatch(huIdSet -> huIdSet.contains(huId)))
+			{
+				result.add(huId);
+				if (result.size() > maxHUIds)
+				{
+					return null;
+				}
+			}
+		}
+		return result;
+	}
+
+	/**
+	 * Schedules an asynchronous rebuild of the whole index. Until the rebuild is done, the index answers from its current (possibly stale) postings.
+	 */
+	public void scheduleRebuild()
+	{
+		if (!rebuildScheduled.compareAndSet(false, true))
+		{
+			return;
+		}
+
+		getRebuildExecutor().execute(() -> {
+			rebuildScheduled.set(false);
+			try
+			{
+				rebuild();
+			}
+			catch (final Exception ex)
+			{
+				logger.warn("Failed rebuilding the HU attributes index", ex);
+			}
+		});
+	}
+
+	private synchronized ExecutorService getRebuildExecutor()
+	{
+		if (rebuildExecutor == null)
+		{
+			rebuildExecutor = Executors.newSingleThreadExecutor(CustomizableThreadFactory.builder()
+					.setThreadNamePrefix(HUAttributesIndex.class.getSimpleName())
+					.setDaemon(true)
+					.build());
+		}
+		return rebuildExecutor;
+	}
+
+	/**
+	 * Loads all HU attributes of the indexed attributes and replaces the current postings with them.
+	 */
+	@VisibleForTesting
+	void rebuild()
+	{
+		synchronized (rebuildLock)
+		{
+			huAttributeIdsChangedDuringRebuild = ConcurrentHashMap.newKeySet();
+		}
+
+		final long startMillis = System.currentTimeMillis();
+		final Postings newPostings = new Postings();
+		final Set<Integer> changedHUAttributeIds;
+		try (final Stream<I_M_HU_Attribute> huAttributes = streamHUAttributes(null))
+		{
+			huAttributes.map(this::toPosting).forEach(newPostings::put);
+		}
+		finally
+		{
+			synchronized (rebuildLock)
+			{
+				changedHUAttributeIds = huAttributeIdsChangedDuringRebuild;
+				huAttributeIdsChangedDuringRebuild = null;
+			}
+		}
+
+		postings = newPostings;
+		logger.info("Rebuilt the HU attributes index with {} postings in {}ms", newPostings.size(), System.currentTimeMillis() - startMillis);
+
+		// apply the changes which we might have missed while loading
+		reload(changedHUAttributeIds);
+	}
+
+	private long onCacheReset(@NonNull final CacheInvalidateMultiRequest multiRequest)
+	{
+		if (multiRequest.isResetAll())
+		{
+			scheduleRebuild();
+			return 0;
+		}
+
+		final Set<Integer> changedHUAttributeIds = new HashSet<>();
+		for (final CacheInvalidateRequest request : multiRequest.getRequests())
+		{
+			if (!I_M_HU_Attribute.Table_Name.equals(request.getTableNameEffective()))
+			{
+				continue;
+			}
+			if (request.isAllRecords())
+			{
+				scheduleRebuild();
+				return 0;
+			}
+			changedHUAttributeIds.add(request.getRecordIdEffective());
+		}
+
+		reloadAfterCommit(changedHUAttributeIds);
+		return changedHUAttributeIds.size();
+	}
+
+	/**
+	 * Reloads the given HU attributes when the current thread's transaction is committed, or right away if there is no such transaction.
+	 */
+	@VisibleForTesting
+	void reloadAfterCommit(@NonNull final Collection<Integer> huAttributeIds)
+	{
+		if (huAttributeIds.isEmpty())
+		{
+			return;
+		}
+
+		final ITrxManager trxManager = Services.get(ITrxManager.class);
+		final ITrx trx = trxManager.getThreadInheritedTrx(OnTrxMissingPolicy.ReturnTrxNone);
+		if (!trxManager.isActive(trx))
+		{
+			reload(huAttributeIds);
+			return;
+		}
+
+		final Set<Integer> huAttributeIdsToReload = trx.getProperty(TRX_PROPERTY_ChangedHUAttributeIds, () -> {
+			final Set<Integer> ids = ConcurrentHashMap.newKeySet();
+			trx.getTrxListenerManager()
+					.newEventListener(TrxEventTiming.AFTER_COMMIT)
+					.invokeMethodJustOnce(false) // the trx might be committed more than once
+					.registerHandlingMethod(innerTrx -> {
+						final ImmutableSet<Integer> idsToReload = ImmutableSet.copyOf(ids);
+						ids.removeAll(idsToReload);
+						reload(idsToReload);
+					});
+			return ids;
+		});
+		huAttributeIdsToReload.addAll(huAttributeIds);
+	}
+
+	private void reload(@NonNull final Collection<Integer> huAttributeIds)
+	{
+		if (huAttributeIds.isEmpty())
+		{
+			return;
+		}
+
+		synchronized (rebuildLock)
+		{
+			if (huAttributeIdsChangedDuringRebuild != null)
+			{
+				huAttributeIdsChangedDuringRebuild.addAll(huAttributeIds);
+			}
+		}
+
+		final Postings postings = this.postings;
+		if (postings == null)
+		{
+			return;
+		}
+
+		final Set<Integer> huAttributeIdsToRemove = new HashSet<>(huAttributeIds);
+		try (final Stream<I_M_HU_Attribute> huAttributes = streamHUAttributes(huAttributeIds))
+		{
+			huAttributes.forEach(huAttribute -> {
+				postings.put(toPosting(huAttribute));
+				huAttributeIdsToRemove.remove(huAttribute.getM_HU_Attribute_ID());
+			});
+		}
+
+		// deleted, deactivated or no longer of an indexed attribute
+		huAttributeIdsToRemove.forEach(postings::remove);
+	}
+
+	private Stream<I_M_HU_Attribute> streamHUAttributes(@Nullable final Collection<Integer> onlyHUAttributeIds)
+	{
+		final IQueryBuilder<I_M_HU_Attribute> queryBuilder = Services.get(IQueryBL.class)
+				.createQueryBuilderOutOfTrx(I_M_HU_Attribute.class)
+				.addOnlyActiveRecordsFilter()
+				.addInArrayFilter(I_M_HU_Attribute.COLUMN_M_Attribute_ID, indexedAttributes.keySet());
+		if (onlyHUAttributeIds != null)
+		{
+			queryBuilder.addInArrayFilter(I_M_HU_Attribute.COLUMN_M_HU_Attribute_ID, onlyHUAttributeIds);
+		}
+
+		return queryBuilder
+				.create()
+				.iterateAndStream();
+	}
+
+	private Posting toPosting(@NonNull final I_M_HU_Attribute huAttribute)
+	{
+		final AttributeId attributeId = AttributeId.ofRepoId(huAttribute.getM_Attribute_ID());
+		final String valueType = indexedAttributes.get(attributeId);
+
+		final Object value;
+		if (X_M_Attribute.ATTRIBUTEVALUETYPE_Number.equals(valueType))
+		{
+			value = huAttribute.getValueNumber();
+		}
+		else if (X_M_Attribute.ATTRIBUTEVALUETYPE_Date.equals(valueType))
+		{
+			value = huAttribute.getValueDate();
+		}
+		else
+		{
+			value = huAttribute.getValue();
+		}
+
+		return new Posting(huAttribute.getM_HU_Attribute_ID(), huAttribute.getM_HU_ID(), attributeId, normalizeValue(value));
+	}
+
+	/**
+	 * @return the given value converted such that equal database values are also equal in java, or {@code null} if the value can't be looked up
+	 */
+	@VisibleForTesting
+	static Object normalizeValue(@Nullable final Object value)
+	{
+		if (value == null)
+		{
+			return null;
+		}
+		else if (value instanceof String)
+		{
+			return value;
+		}
+		else if (value instanceof BigDecimal)
+		{
+			return NumberUtils.stripTrailingDecimalZeros((BigDecimal)value);
+		}
+		else if (value instanceof Integer || value instanceof Long)
+		{
+			return BigDecimal.valueOf(((Number)value).longValue());
+		}
+		else if (value instanceof java.util.Date || value instanceof java.time.temporal.Temporal)
+		{
+			final Instant instant = TimeUtil.asInstant(value);
+			return instant != null ? instant.toEpochMilli() : null;
+		}
+		else
+		{
+			return null;
+		}
+	}
+
+	@Value
+	private static final class Posting
+	{
+		int huAttributeId;
+		int huId;
+		AttributeId attributeId;
+		/** normalized value; {@code null} values are not indexed */
+		Object value;
+	}
+
+	/**
+	 * Attribute values to HU IDs. Reads are lock-free, writes are synchronized.
+	 */
+	private static final class Postings
+	{
+		private final ConcurrentHashMap<AttributeId, ConcurrentHashMap<Object, Set<Integer>>> attributeId2value2huIds = new ConcurrentHashMap<>();
+
+		/** needed to remove a HU attribute's old value */
+		private final ConcurrentHashMap<Integer, Posting> huAttributeId2posting = new ConcurrentHashMap<>();
+
+		public synchronized void put(@NonNull final Posting posting)
+		{
+			remove(posting.getHuAttributeId());
+			if (posting.getValue() == null)
+			{
+				return;
+			}
+
+			huAttributeId2posting.put(posting.getHuAttributeId(), posting);
+			attributeId2value2huIds
+					.computeIfAbsent(posting.getAttributeId(), attributeId -> new ConcurrentHashMap<>())
+					.computeIfAbsent(posting.getValue(), value -> ConcurrentHashMap.newKeySet())
+					.add(posting.getHuId());
+		}
+
+		public synchronized void remove(final int huAttributeId)
+		{
+			final Posting posting = huAttributeId2posting.remove(huAttributeId);
+			if (posting == null)
+			{
+				return;
+			}
+
+			final ConcurrentHashMap<Object, Set<Integer>> value2huIds = attributeId2value2huIds.get(posting.getAttributeId());
+			final Set<Integer> huIds = value2huIds.get(posting.getValue());
+			huIds.remove(posting.getHuId());
+			if (huIds.isEmpty())
+			{
+				value2huIds.remove(posting.getValue());
+			}
+		}
+
+		public Set<Integer> getHUIds(@NonNull final AttributeId attributeId, @NonNull final Object normalizedValue)
+		{
+			final ConcurrentHashMap<Object, Set<Integer>> value2huIds = attributeId2value2huIds.get(attributeId);
+			if (value2huIds == null)
+			{
+				return ImmutableSet.of();
+			}
+			final Set<Integer> huIds = value2huIds.get(normalizedValue);
+			return huIds != null ? huIds : ImmutableSet.of();
+		}
+
+		public int size()
+		{
+			return huAttributeId2posting.size();
+		}
+	}
+}
@@ -1,11 +1,14 @@
 package de.metas.handlingunits.impl;
 
+import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collection;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
 
+import org.adempiere.ad.dao.ConstantQueryFilter;
 import org.adempiere.ad.dao.ICompositeQueryFilter;
 import org.adempiere.ad.dao.IQueryBL;
 import org.adempiere.mm.attributes.AttributeId;
@@ -126,6 +129,20 @@ final class HUQueryBuilder_Attributes
 
 		final ICompositeQueryFilter<I_M_HU> filters = queryBL.createCompositeQueryFilter(I_M_HU.class);
 
+		final Set<Integer> huIdsFromIndex = retrieveHUIdsFromIndexOrNull();
+		if (huIdsFromIndex != null)
+		{
+			if (huIdsFromIndex.isEmpty())
+			{
+				filters.addFilter(ConstantQueryFilter.of(false));
+			}
+			else
+			{
+				filters.addInArrayFilter(I_M_HU.COLUMN_M_HU_ID, huIdsFromIndex);
+			}
+			return filters;
+		}
+
 		// Iterate attribute filters and add a restriction for each of them
 		// because each of them needs to be individually valid
 		for (final HUAttributeQueryFilterVO attributeFilterVO : onlyAttributes.values())
@@ -136,6 +153,31 @@ final class HUQueryBuilder_Attributes
 		return filters;
 	}
 
+	/**
+	 * @return the IDs of the HUs which match all attribute filters according to {@link HUAttributesIndex}, or {@code null} if the index can't answer all of them
+	 */
+	private Set<Integer> retrieveHUIdsFromIndexOrNull()
+	{
+		final HUAttributesIndex index = HUAttributesIndex.get();
+		if (!index.isUsableInCurrentTrx())
+		{
+			return null;
+		}
+
+		final List<Set<Integer>> huIdSets = new ArrayList<>(onlyAttributes.size());
+		for (final HUAttributeQueryFilterVO attributeFilterVO : onlyAttributes.values())
+		{
+			final Set<Integer> huIds = attributeFilterVO.getMatchingHUIdsOrNull(index);
+			if (huIds == null)
+			{
+				return null;
+			}
+			huIdSets.add(huIds);
+		}
+
+		return index.intersectOrNullIfTooMany(huIdSets);
+	}
+
 	private ICompositeQueryFilter<I_M_HU> createQueryFilter_Barcode()
 	{
 		if (Check.isEmpty(barcode, true))
@@ -1,20 +1,14 @@
 package de.metas.handlingunits.material.interceptor;
 
-import java.util.List;
-
 import org.adempiere.ad.modelvalidator.ModelChangeType;
 import org.adempiere.ad.modelvalidator.ModelChangeUtil;
 import org.adempiere.ad.modelvalidator.annotations.Interceptor;
 import org.adempiere.ad.modelvalidator.annotations.ModelChange;
-import org.adempiere.ad.trx.api.ITrxListenerManager.TrxEventTiming;
-import org.adempiere.ad.trx.api.ITrxManager;
 import org.compiere.model.I_M_Transaction;
 import org.compiere.model.ModelValidator;
 import org.springframework.stereotype.Component;
 
-import de.metas.material.event.MaterialEvent;
 import de.metas.material.event.PostMaterialEventService;
-import de.metas.util.Services;
 import lombok.NonNull;
 
 /*
@@ -69,18 +63,7 @@ public class M_Transaction
 		final TransactionDescriptor transaction = transactionFactory.ofRecord(transactionRecord);
 		final boolean deleted = type.isDelete() || ModelChangeUtil.isJustDeactivated(transactionRecord);
 
-		Services.get(ITrxManager.class)
-				.getCurrentTrxListenerManagerOrAutoCommit()
-				.newEventListener(TrxEventTiming.AFTER_COMMIT)
-				.registerHandlingMethod(trxEvent -> createAndPostEventsNow(transaction, deleted));
-	}
-
-	private void createAndPostEventsNow(final TransactionDescriptor transaction, final boolean deleted)
-	{
-		final List<MaterialEvent> events = M_Transaction_TransactionEventCreator.INSTANCE.createEventsForTransaction(transaction, deleted);
-		for (final MaterialEvent event : events)
-		{
-			materialEventService.postEventNow(event);
-		}
+		// all events of one trx are posted together, as one message
+		materialEventService.postEventsAfterNextCommit(() -> M_Transaction_TransactionEventCreator.INSTANCE.createEventsForTransaction(transaction, deleted));
 	}
 }
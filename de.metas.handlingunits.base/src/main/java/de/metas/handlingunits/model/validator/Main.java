@@ -50,6 +50,7 @@ import de.metas.handlingunits.ddorder.spi.impl.DDOrderLineHUDocumentHandler;
 import de.metas.handlingunits.ddorder.spi.impl.ForecastLineHUDocumentHandler;
 import de.metas.handlingunits.document.IHUDocumentFactoryService;
 import de.metas.handlingunits.hutransaction.IHUTrxBL;
+import de.metas.handlingunits.impl.HUAttributesIndex;
 import de.metas.handlingunits.invoicecandidate.facet.C_Invoice_Candidate_HUPackingMaterials_FacetCollector;
 import de.metas.handlingunits.invoicecandidate.ui.spi.impl.HUC_Invoice_Candidate_GridTabSummaryInfoProvider;
 import de.metas.handlingunits.materialtracking.impl.QualityInspectionWarehouseDestProvider;
@@ -249,6 +250,9 @@ public final class Main extends AbstractModuleInterceptor
 		setupRemoteCaching();
 
 		setupInTrxOnlyCaching(cachingService);
+
+		// does nothing unless attributes are configured to be indexed
+		HUAttributesIndex.get().startIfEnabled();
 	}
 
 	private void setupMasterDataCaching(final IModelCacheService cachingService)
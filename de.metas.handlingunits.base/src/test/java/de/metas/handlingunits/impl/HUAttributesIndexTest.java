@@ -0,0 +1,251 @@
+package de.metas.handlingunits.impl;
+
+import static org.adempiere.model.InterfaceWrapperHelper.newInstance;
+import static org.adempiere.model.InterfaceWrapperHelper.saveRecord;
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.math.BigDecimal;
+
+import org.adempiere.ad.dao.IQueryFilter;
+import org.adempiere.mm.attributes.AttributeId;
+import org.adempiere.service.ISysConfigBL;
+import org.adempiere.test.AdempiereTestHelper;
+import org.compiere.model.I_M_Attribute;
+import org.compiere.model.X_M_Attribute;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Ignore;
+import org.junit.Test;
+
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableSet;
+
+import de.metas.handlingunits.model.I_M_HU;
+import de.metas.handlingunits.model.I_M_HU_Attribute;
+import de.metas.handlingunits.model.X_M_HU;
+import de.metas.handlingunits.reservation.HUReservationRepository;
+import de.metas.util.Services;
+
+/*
+ * #%L
+ * de.metas.handlingunits.base
+ * %%
+ * Copyright (C) 2019 metas GmbH
+ * %%
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as
+ * published by the Free Software Foundation, either version 2 of the
+ * License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public
+ * License along with this program. If not, see
+ * <http://www.gnu.org/licenses/gpl-2.0.html>.
+ * #L%
+ */
+
+public class HUAttributesIndexTest
+{
+	private HUAttributesIndex index;
+
+	private I_M_Attribute lotAttribute;
+	private I_M_Attribute weightAttribute;
+	private I_M_Attribute notIndexedAttribute;
+
+	@Before
+	public void init()
+	{
+		AdempiereTestHelper.get().init();
+
+		index = HUAttributesIndex.get();
+		index.reset();
+
+		lotAttribute = createAttribute("Lot", X_M_Attribute.ATTRIBUTEVALUETYPE_StringMax40);
+		weightAttribute = createAttribute("Weight", X_M_Attribute.ATTRIBUTEVALUETYPE_Number);
+		notIndexedAttribute = createAttribute("Color", X_M_Attribute.ATTRIBUTEVALUETYPE_StringMax40);
+
+		Services.get(ISysConfigBL.class).setValue(HUAttributesIndex.SYSCONFIG_IndexedAttributes, "Lot, Weight", 0);
+		assertThat(index.loadIndexedAttributes()).isTrue();
+	}
+
+	@After
+	public void reset()
+	{
+		index.reset();
+	}
+
+	private static I_M_Attribute createAttribute(final String value, final String attributeValueType)
+	{
+		final I_M_Attribute attribute = newInstance(I_M_Attribute.class);
+		attribute.setValue(value);
+		attribute.setName(value);
+		attribute.setAttributeValueType(attributeValueType);
+		saveRecord(attribute);
+		return attribute;
+	}
+
+	private static I_M_HU createHU()
+	{
+		final I_M_HU hu = newInstance(I_M_HU.class);
+		hu.setHUStatus(X_M_HU.HUSTATUS_Active);
+		saveRecord(hu);
+		return hu;
+	}
+
+	private static I_M_HU_Attribute createHUAttribute(final I_M_HU hu, final I_M_Attribute attribute, final Object value)
+	{
+		final I_M_HU_Attribute huAttribute = newInstance(I_M_HU_Attribute.class);
+		huAttribute.setM_HU_ID(hu.getM_HU_ID());
+		huAttribute.setM_Attribute_ID(attribute.getM_Attribute_ID());
+		setValue(huAttribute, value);
+		saveRecord(huAttribute);
+		return huAttribute;
+	}
+
+	private static void setValue(final I_M_HU_Attribute huAttribute, final Object value)
+	{
+		if (value instanceof BigDecimal)
+		{
+			huAttribute.setValueNumber((BigDecimal)value);
+		}
+		else
+		{
+			huAttribute.setValue((String)value);
+		}
+	}
+
+	private static AttributeId attributeId(final I_M_Attribute attribute)
+	{
+		return AttributeId.ofRepoId(attribute.getM_Attribute_ID());
+	}
+
+	@Test
+	public void getHUIdsOrNull()
+	{
+		final I_M_HU hu1 = createHU();
+		createHUAttribute(hu1, lotAttribute, "lot1");
+		createHUAttribute(hu1, weightAttribute, new BigDecimal("10.00"));
+		final I_M_HU hu2 = createHU();
+		createHUAttribute(hu2, lotAttribute, "lot2");
+		createHUAttribute(hu2, weightAttribute, BigDecimal.TEN);
+
+		assertThat(index.isReady()).isFalse();
+		index.rebuild();
+		assertThat(index.isReady()).isTrue();
+		assertThat(index.size()).isEqualTo(4);
+
+		final String typeString = X_M_Attribute.ATTRIBUTEVALUETYPE_StringMax40;
+		final String typeNumber = X_M_Attribute.ATTRIBUTEVALUETYPE_Number;
+		assertThat(index.getHUIdsOrNull(attributeId(lotAttribute), typeString, ImmutableList.of("lot1")))
+				.containsOnly(hu1.getM_HU_ID());
+		assertThat(index.getHUIdsOrNull(attributeId(lotAttribute), typeString, ImmutableList.of("lot1", "lot2")))
+				.containsOnly(hu1.getM_HU_ID(), hu2.getM_HU_ID());
+		assertThat(index.getHUIdsOrNull(attributeId(lotAttribute), typeString, ImmutableList.of("lot3")))
+				.isEmpty();
+		assertThat(index.getHUIdsOrNull(attributeId(weightAttribute), typeNumber, ImmutableList.of(10)))
+				.containsOnly(hu1.getM_HU_ID(), hu2.getM_HU_ID());
+
+		// not indexed
+		assertThat(index.getHUIdsOrNull(attributeId(notIndexedAttribute), typeString, ImmutableList.of("red"))).isNull();
+		assertThat(index.getHUIdsOrNull(attributeId(weightAttribute), typeString, ImmutableList.of("10"))).isNull();
+	}
+
+	@Test
+	public void reloadAfterCommit()
+	{
+		final I_M_HU hu = createHU();
+		final I_M_HU_Attribute huAttribute = createHUAttribute(hu, lotAttribute, "lot1");
+		index.rebuild();
+
+		setValue(huAttribute, "lot2");
+		saveRecord(huAttribute);
+		index.reloadAfterCommit(ImmutableSet.of(huAttribute.getM_HU_Attribute_ID()));
+
+		final String typeString = X_M_Attribute.ATTRIBUTEVALUETYPE_StringMax40;
+		assertThat(index.getHUIdsOrNull(attributeId(lotAttribute), typeString, ImmutableList.of("lot1"))).isEmpty();
+		assertThat(index.getHUIdsOrNull(attributeId(lotAttribute), typeString, ImmutableList.of("lot2"))).containsOnly(hu.getM_HU_ID());
+
+		huAttribute.setIsActive(false);
+		saveRecord(huAttribute);
+		index.reloadAfterCommit(ImmutableSet.of(huAttribute.getM_HU_Attribute_ID()));
+
+		assertThat(index.getHUIdsOrNull(attributeId(lotAttribute), typeString, ImmutableList.of("lot2"))).isEmpty();
+		assertThat(index.size()).isEqualTo(0);
+	}
+
+	@Test
+	public void huQueryBuilder_usesIndex()
+	{
+		final I_M_HU hu1 = createHU();
+		createHUAttribute(hu1, lotAttribute, "lot1");
+		createHUAttribute(hu1, weightAttribute, BigDecimal.ONE);
+		final I_M_HU hu2 = createHU();
+		createHUAttribute(hu2, lotAttribute, "lot1");
+		createHUAttribute(hu2, weightAttribute, BigDecimal.TEN);
+		final I_M_HU hu3 = createHU();
+		createHUAttribute(hu3, lotAttribute, "lot2");
+		createHUAttribute(hu3, weightAttribute, BigDecimal.TEN);
+		index.rebuild();
+
+		final IQueryFilter<I_M_HU> filter = new HUQueryBuilder(new HUReservationRepository())
+				.addOnlyWithAttribute(lotAttribute, "lot1")
+				.addOnlyWithAttribute(weightAttribute, BigDecimal.TEN)
+				.createQueryFilter();
+		assertThat(filter.accept(hu1)).isFalse();
+		assertThat(filter.accept(hu2)).isTrue();
+		assertThat(filter.accept(hu3)).isFalse();
+
+		final IQueryFilter<I_M_HU> noMatchFilter = new HUQueryBuilder(new HUReservationRepository())
+				.addOnlyWithAttribute(lotAttribute, "lot2")
+				.addOnlyWithAttribute(weightAttribute, BigDecimal.ONE)
+				.createQueryFilter();
+		assertThat(noMatchFilter.accept(hu1)).isFalse();
+		assertThat(noMatchFilter.accept(hu2)).isFalse();
+		assertThat(noMatchFilter.accept(hu3)).isFalse();
+	}
+
+	@Test
+	public void normalizeValue()
+	{
+		assertThat(HUAttributesIndex.normalizeValue(new BigDecimal("10.000"))).isEqualTo(HUAttributesIndex.normalizeValue(10));
+		assertThat(HUAttributesIndex.normalizeValue("lot1")).isEqualTo("lot1");
+		assertThat(HUAttributesIndex.normalizeValue(null)).isNull();
+		assertThat(HUAttributesIndex.normalizeValue(new Object())).isNull();
+	}
+
+	/**
+	 * Rough comparison of the index lookup against the rebuild costs. Not run by default, because it takes a while; run it manually with enough heap.
+	 */
+	@Test
+	@Ignore
+	public void benchmark()
+	{
+		final int huCount = 1_000_000;
+		final int lotCount = 10_000;
+		for (int i = 0; i < huCount; i++)
+		{
+			final I_M_HU hu = createHU();
+			createHUAttribute(hu, lotAttribute, "lot" + (i % lotCount));
+			createHUAttribute(hu, weightAttribute, BigDecimal.valueOf(i % 100));
+		}
+
+		long startNanos = System.nanoTime();
+		index.rebuild();
+		System.out.println("Rebuilt index with " + index.size() + " postings in " + (System.nanoTime() - startNanos) / 1_000_000 + "ms");
+
+		final int lookupCount = 10_000;
+		startNanos = System.nanoTime();
+		for (int i = 0; i < lookupCount; i++)
+		{
+			new HUQueryBuilder(new HUReservationRepository())
+					.addOnlyWithAttribute(lotAttribute, "lot" + (i % lotCount))
+					.addOnlyWithAttribute(weightAttribute, BigDecimal.valueOf(i % 100))
+					.createQueryFilter();
+		}
+		System.out.println("Created " + lookupCount + " HU attribute filters in " + (System.nanoTime() - startNanos) / 1_000_000 + "ms");
+	}
+}
@@ -1,9 +1,15 @@
 package de.metas.material.cockpit.stock;
 
 import static org.adempiere.model.InterfaceWrapperHelper.newInstance;
-import static org.adempiere.model.InterfaceWrapperHelper.save;
 
 import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
 
 import org.adempiere.ad.dao.IQueryBL;
 import org.adempiere.ad.dao.IQueryBuilder;
@@ -12,9 +18,14 @@ import org.adempiere.mm.attributes.api.AttributesKeys;
 import org.adempiere.model.InterfaceWrapperHelper;
 import org.compiere.model.IQuery;
 import org.compiere.util.TimeUtil;
+import org.compiere.util.Util.ArrayKey;
 import org.springframework.stereotype.Component;
 
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableSet;
+
 import de.metas.material.cockpit.model.I_MD_Stock;
+import de.metas.material.event.MaterialEvent;
 import de.metas.material.event.PostMaterialEventService;
 import de.metas.material.event.commons.AttributesKey;
 import de.metas.material.event.commons.EventDescriptor;
@@ -24,6 +35,7 @@ import de.metas.material.event.stock.StockChangedEvent.StockChangeDetails;
 import de.metas.util.NumberUtils;
 import de.metas.util.Services;
 import lombok.NonNull;
+import lombok.Value;
 
 /*
  * #%L
@@ -60,28 +72,65 @@ public class StockDataUpdateRequestHandler
 
 	public void handleDataUpdateRequest(@NonNull final StockDataUpdateRequest dataUpdateRequest)
 	{
-		final I_MD_Stock dataRecord = retrieveOrCreateDataRecord(dataUpdateRequest.getIdentifier());
+		handleDataUpdateRequests(ImmutableList.of(dataUpdateRequest));
+	}
+
+	/**
+	 * Applies the given requests in their order, but loads all affected {@link I_MD_Stock} records with one query and saves each of them once.
+	 */
+	public void handleDataUpdateRequests(@NonNull final List<StockDataUpdateRequest> dataUpdateRequests)
+	{
+		if (dataUpdateRequests.isEmpty())
+		{
+			return;
+		}
+
+		final Map<ArrayKey, I_MD_Stock> dataRecords = retrieveOrCreateDataRecords(dataUpdateRequests);
 
-		final BigDecimal qtyOnHandOld = dataRecord.getQtyOnHand();
+		final List<StockChange> stockChanges = new ArrayList<>(dataUpdateRequests.size());
+		for (final StockDataUpdateRequest dataUpdateRequest : dataUpdateRequests)
+		{
+			final I_MD_Stock dataRecord = dataRecords.get(createKey(dataUpdateRequest.getIdentifier()));
+
+			final BigDecimal qtyOnHandOld = dataRecord.getQtyOnHand();
+
+			final BigDecimal qtyOnHandToAdd = dataUpdateRequest.getOnHandQtyChange();
+			final BigDecimal qtyOnHandNew = NumberUtils.stripTrailingDecimalZeros(qtyOnHandOld.add(qtyOnHandToAdd));
+			dataRecord.setQtyOnHand(qtyOnHandNew);
+
+			stockChanges.add(new StockChange(dataRecord, qtyOnHandOld, qtyOnHandNew, dataUpdateRequest.getSourceInfo()));
+		}
 
-		final BigDecimal qtyOnHandToAdd = dataUpdateRequest.getOnHandQtyChange();
-		final BigDecimal qtyOnHandNew = NumberUtils.stripTrailingDecimalZeros(dataRecord.getQtyOnHand().add(qtyOnHandToAdd));
-		dataRecord.setQtyOnHand(qtyOnHandNew);
-		save(dataRecord);
+		dataRecords.values().forEach(InterfaceWrapperHelper::save);
 
-		fireStockChangedEvent(dataRecord, qtyOnHandOld, dataUpdateRequest.getSourceInfo());
+		final List<MaterialEvent> stockChangedEvents = stockChanges.stream()
+				.map(StockDataUpdateRequestHandler::createStockChangedEventOrNull)
+				.filter(Objects::nonNull)
+				.collect(ImmutableList.toImmutableList());
+		postMaterialEventService.postEventsNow(stockChangedEvents);
 	}
 
-	private I_MD_Stock retrieveOrCreateDataRecord(@NonNull final StockDataRecordIdentifier identifier)
+	private Map<ArrayKey, I_MD_Stock> retrieveOrCreateDataRecords(@NonNull final List<StockDataUpdateRequest> dataUpdateRequests)
 	{
-		final IQuery<I_MD_Stock> query = createQueryForIdentifier(identifier);
+		final ImmutableSet<StockDataRecordIdentifier> identifiers = dataUpdateRequests.stream()
+				.map(StockDataUpdateRequest::getIdentifier)
+				.collect(ImmutableSet.toImmutableSet());
+
+		final Map<ArrayKey, I_MD_Stock> dataRecords = new LinkedHashMap<>();
+		createQueryForIdentifiers(identifiers)
+				.list(I_MD_Stock.class)
+				.forEach(dataRecord -> dataRecords.putIfAbsent(createKey(dataRecord), dataRecord));
 
-		final I_MD_Stock existingDataRecord = query.firstOnly(I_MD_Stock.class);
-		if (existingDataRecord != null)
+		for (final StockDataRecordIdentifier identifier : identifiers)
 		{
-			return existingDataRecord;
+			dataRecords.computeIfAbsent(createKey(identifier), key -> createDataRecord(identifier));
 		}
 
+		return dataRecords;
+	}
+
+	private I_MD_Stock createDataRecord(@NonNull final StockDataRecordIdentifier identifier)
+	{
 		final I_MD_Stock newDataRecord = newInstance(I_MD_Stock.class);
 		InterfaceWrapperHelper.setValue(newDataRecord, I_MD_Stock.COLUMNNAME_AD_Client_ID, identifier.getClientId());
 
@@ -93,34 +142,86 @@ public class StockDataUpdateRequestHandler
 		return newDataRecord;
 	}
 
-	private IQuery<I_MD_Stock> createQueryForIdentifier(@NonNull final StockDataRecordIdentifier identifier)
+	/**
+	 * @return query for the records of all given identifiers; note that it might also return some records which match none of the identifiers.
+	 */
+	private IQuery<I_MD_Stock> createQueryForIdentifiers(@NonNull final Set<StockDataRecordIdentifier> identifiers)
 	{
-		final ProductDescriptor productDescriptor = identifier.getProductDescriptor();
+		final Set<Integer> clientIds = new HashSet<>();
+		final Set<Integer> orgIds = new HashSet<>();
+		final Set<Integer> productIds = new HashSet<>();
+		final Set<String> attributesKeys = new HashSet<>();
+		final Set<Integer> warehouseIds = new HashSet<>();
+		for (final StockDataRecordIdentifier identifier : identifiers)
+		{
+			final ProductDescriptor productDescriptor = identifier.getProductDescriptor();
 
-		final AttributesKey attributesKey = productDescriptor.getStorageAttributesKey();
-		attributesKey.assertNotAllOrOther();
+			final AttributesKey attributesKey = productDescriptor.getStorageAttributesKey();
+			attributesKey.assertNotAllOrOther();
+
+			clientIds.add(identifier.getClientId());
+			orgIds.add(identifier.getOrgId());
+			productIds.add(productDescriptor.getProductId());
+			attributesKeys.add(attributesKey.getAsString());
+			warehouseIds.add(identifier.getWarehouseId());
+		}
 
 		final IQueryBuilder<I_MD_Stock> queryBuilder = Services.get(IQueryBL.class)
 				.createQueryBuilder(I_MD_Stock.class)
 				.addOnlyActiveRecordsFilter()
-				.addEqualsFilter(I_MD_Stock.COLUMN_AD_Client_ID, identifier.getClientId())
-				.addEqualsFilter(I_MD_Stock.COLUMN_AD_Org_ID, identifier.getOrgId())
-				.addEqualsFilter(I_MD_Stock.COLUMN_M_Product_ID, productDescriptor.getProductId())
-				.addEqualsFilter(I_MD_Stock.COLUMN_AttributesKey, attributesKey.getAsString())
-				.addEqualsFilter(I_MD_Stock.COLUMN_M_Warehouse_ID, identifier.getWarehouseId());
+				.addInArrayFilter(I_MD_Stock.COLUMN_AD_Client_ID, clientIds)
+				.addInArrayFilter(I_MD_Stock.COLUMN_AD_Org_ID, orgIds)
+				.addInArrayFilter(I_MD_Stock.COLUMN_M_Product_ID, productIds)
+				.addInArrayFilter(I_MD_Stock.COLUMN_AttributesKey, attributesKeys)
+				.addInArrayFilter(I_MD_Stock.COLUMN_M_Warehouse_ID, warehouseIds)
+				.orderBy(I_MD_Stock.COLUMN_MD_Stock_ID);
 
 		return queryBuilder.create();
 	}
 
-	private void fireStockChangedEvent(
-			@NonNull final I_MD_Stock dataRecord,
-			@NonNull final BigDecimal qtyOnHandOld,
-			@NonNull final StockChangeSourceInfo stockChangeSourceInfo)
+	private static ArrayKey createKey(@NonNull final StockDataRecordIdentifier identifier)
+	{
+		return ArrayKey.of(
+				identifier.getClientId(),
+				identifier.getOrgId(),
+				identifier.getProductDescriptor().getProductId(),
+				identifier.getProductDescriptor().getStorageAttributesKey().getAsString(),
+				identifier.getWarehouseId());
+	}
+
+	private static ArrayKey createKey(@NonNull final I_MD_Stock dataRecord)
+	{
+		return ArrayKey.of(
+				dataRecord.getAD_Client_ID(),
+				dataRecord.getAD_Org_ID(),
+				dataRecord.getM_Product_ID(),
+				dataRecord.getAttributesKey(),
+				dataRecord.getM_Warehouse_ID());
+	}
+
+	@Value
+	private static class StockChange
+	{
+		@NonNull
+		I_MD_Stock dataRecord;
+		@NonNull
+		BigDecimal qtyOnHandOld;
+		@NonNull
+		BigDecimal qtyOnHandNew;
+		@NonNull
+		StockChangeSourceInfo sourceInfo;
+	}
+
+	private static StockChangedEvent createStockChangedEventOrNull(@NonNull final StockChange stockChange)
 	{
-		final BigDecimal qtyOnHandNew = dataRecord.getQtyOnHand();
+		final I_MD_Stock dataRecord = stockChange.getDataRecord();
+		final BigDecimal qtyOnHandOld = stockChange.getQtyOnHandOld();
+		final BigDecimal qtyOnHandNew = stockChange.getQtyOnHandNew();
+		final StockChangeSourceInfo stockChangeSourceInfo = stockChange.getSourceInfo();
+
 		if (qtyOnHandOld.compareTo(qtyOnHandNew) == 0)
 		{
-			return;
+			return null;
 		}
 
 		final AttributesKey attributesKey = AttributesKey.ofString(dataRecord.getAttributesKey());
@@ -144,7 +245,7 @@ public class StockDataUpdateRequestHandler
 				.stockId(dataRecord.getMD_Stock_ID())
 				.build();
 
-		final StockChangedEvent event = StockChangedEvent
+		return StockChangedEvent
 				.builder()
 				.eventDescriptor(eventDescriptor)
 				.productDescriptor(productDescriptor)
@@ -154,7 +255,5 @@ public class StockDataUpdateRequestHandler
 				.stockChangeDetails(details)
 				.changeDate(TimeUtil.asInstant(dataRecord.getUpdated()))
 				.build();
-
-		postMaterialEventService.postEventNow(event);
 	}
 }
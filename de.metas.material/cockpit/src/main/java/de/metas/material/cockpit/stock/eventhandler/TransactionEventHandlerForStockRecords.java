@@ -3,6 +3,7 @@ package de.metas.material.cockpit.stock.eventhandler;
 import lombok.NonNull;
 
 import java.util.Collection;
+import java.util.List;
 
 import org.springframework.context.annotation.Profile;
 import org.springframework.stereotype.Service;
@@ -69,6 +70,15 @@ public class TransactionEventHandlerForStockRecords
 		dataUpdateRequestHandler.handleDataUpdateRequest(dataUpdateRequest);
 	}
 
+	@Override
+	public void handleEvents(@NonNull final List<AbstractTransactionEvent> events)
+	{
+		final List<StockDataUpdateRequest> dataUpdateRequests = events.stream()
+				.map(this::createDataUpdateRequestForEvent)
+				.collect(ImmutableList.toImmutableList());
+		dataUpdateRequestHandler.handleDataUpdateRequests(dataUpdateRequests);
+	}
+
 	private StockDataUpdateRequest createDataUpdateRequestForEvent(
 			@NonNull final AbstractTransactionEvent event)
 	{
@@ -6,6 +6,9 @@ import org.adempiere.ad.dao.IQueryBL;
 import org.adempiere.ad.dao.IQueryBuilder;
 import org.compiere.util.TimeUtil;
 
+import com.fasterxml.jackson.annotation.JsonCreator;
+import com.fasterxml.jackson.annotation.JsonProperty;
+
 import de.metas.material.cockpit.CockpitConstants;
 import de.metas.material.cockpit.model.I_MD_Cockpit;
 import de.metas.material.event.commons.AttributesKey;
@@ -62,10 +65,11 @@ public class MainDataRecordIdentifier
 	 */
 	int plantId;
 
+	@JsonCreator
 	public MainDataRecordIdentifier(
-			@NonNull final ProductDescriptor productDescriptor,
-			@NonNull final Instant date,
-			int plantId)
+			@JsonProperty("productDescriptor") @NonNull final ProductDescriptor productDescriptor,
+			@JsonProperty("date") @NonNull final Instant date,
+			@JsonProperty("plantId") int plantId)
 	{
 		productDescriptor.getStorageAttributesKey().assertNotAllOrOther();
 		this.productDescriptor = productDescriptor;
@@ -73,6 +77,22 @@ public class MainDataRecordIdentifier
 		this.plantId = plantId;
 	}
 
+	/**
+	 * @return an identifier with a plain {@link ProductDescriptor}, because e.g. a {@link MaterialDescriptor} is not equal to another one of the same product and attributes,
+	 *         while both identify the same {@code MD_Cockpit} record.
+	 */
+	public MainDataRecordIdentifier normalize()
+	{
+		if (productDescriptor.getClass().equals(ProductDescriptor.class))
+		{
+			return this;
+		}
+		final ProductDescriptor plainProductDescriptor = ProductDescriptor.forProductAndAttributes(
+				productDescriptor.getProductId(),
+				productDescriptor.getStorageAttributesKey());
+		return new MainDataRecordIdentifier(plainProductDescriptor, date, plantId);
+	}
+
 	public IQueryBuilder<I_MD_Cockpit> createQueryBuilder()
 	{
 		final ProductDescriptor productDescriptor = getProductDescriptor();
@@ -42,7 +42,23 @@ import lombok.NonNull;
 @Profile(Profiles.PROFILE_App) // the event handler is also just on this profile
 public class MainDataRequestHandler
 {
+	private final MainDataWriteBehindBuffer writeBehindBuffer;
+
+	public MainDataRequestHandler(@NonNull final MainDataWriteBehindBuffer writeBehindBuffer)
+	{
+		this.writeBehindBuffer = writeBehindBuffer;
+	}
+
 	public void handleDataUpdateRequest(@NonNull final UpdateMainDataRequest dataUpdateRequest)
+	{
+		if (writeBehindBuffer.isEnabled() && writeBehindBuffer.addIfRecordExists(dataUpdateRequest))
+		{
+			return;
+		}
+		applyDataUpdateRequest(dataUpdateRequest);
+	}
+
+	static void applyDataUpdateRequest(@NonNull final UpdateMainDataRequest dataUpdateRequest)
 	{
 		synchronized (MainDataRequestHandler.class)
 		{
@@ -0,0 +1,493 @@
+package de.metas.material.cockpit.view.mainrecord;
+
+import java.sql.Timestamp;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Properties;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import javax.annotation.Nullable;
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+
+import org.adempiere.ad.dao.IQueryBL;
+import org.adempiere.ad.dao.impl.CompareQueryFilter.Operator;
+import org.adempiere.ad.trx.api.ITrx;
+import org.adempiere.ad.trx.api.ITrxListenerManager.TrxEventTiming;
+import org.adempiere.ad.trx.api.ITrxManager;
+import org.adempiere.ad.trx.api.OnTrxMissingPolicy;
+import org.adempiere.model.PlainContextAware;
+import org.adempiere.service.ISysConfigBL;
+import org.adempiere.util.concurrent.CustomizableThreadFactory;
+import org.adempiere.util.lang.IAutoCloseable;
+import org.compiere.util.Env;
+import org.slf4j.Logger;
+import org.springframework.context.annotation.Profile;
+import org.springframework.stereotype.Service;
+
+import com.google.common.annotations.VisibleForTesting;
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableMap;
+import com.google.common.collect.Iterables;
+
+import de.metas.Profiles;
+import de.metas.event.SimpleObjectSerializer;
+import de.metas.event.log.EventLogService;
+import de.metas.event.log.impl.EventLogEntry;
+import de.metas.event.log.impl.EventLogEntryCollector;
+import de.metas.event.model.I_AD_EventLog_Entry;
+import de.metas.logging.LogManager;
+import de.metas.material.cockpit.view.MainDataRecordIdentifier;
+import de.metas.material.event.commons.EventDescriptor;
+import de.metas.util.Services;
+import lombok.NonNull;
+import lombok.Value;
+
+/*
+ * #%L
+ * metasfresh-material-cockpit
+ * %%
+ * Copyright (C) 2019 metas GmbH
+ * %%
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as
+ * published by the Free Software Foundation, either version 2 of the
+ * License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public
+ * License along with this program. If not, see
+ * <http://www.gnu.org/licenses/gpl-2.0.html>.
+ * #L%
+ */
+
+/**
+ * Collects {@link UpdateMainDataRequest}s in memory, sums up the requests of the same {@code MD_Cockpit} record and writes them in one transaction,
+ * either periodically or when too many records are pending.
+ * <p>
+ * Requests are only buffered after the caller's transaction was committed, so that nothing is written for a transaction that is rolled back.
+ * Each request is also added to the current event's log as a "pending" entry, in the caller's transaction.
+ * When a request was written, its entry is flagged as processed in the same transaction. So after a crash, {@link #replayUnflushedEventLogEntries(Instant)} can apply the requests that were lost.
+ * <p>
+ * Requests whose record does not exist yet are not buffered, because {@code MD_Cockpit_DocumentDetail} records need to reference it right away.
+ */
+@Service
+@Profile(Profiles.PROFILE_App)
+public class MainDataWriteBehindBuffer
+{
+	private static final Logger logger = LogManager.getLogger(MainDataWriteBehindBuffer.class);
+
+	@VisibleForTesting
+	static final String SYSCONFIG_Enabled = "de.metas.material.cockpit.view.mainrecord.MainDataWriteBehindBuffer.Enabled";
+
+	@VisibleForTesting
+	static final String SYSCONFIG_FlushIntervalMillis = "de.metas.material.cockpit.view.mainrecord.MainDataWriteBehindBuffer.FlushIntervalMillis";
+
+	private static final String SYSCONFIG_MaxPendingRecords = "de.metas.material.cockpit.view.mainrecord.MainDataWriteBehindBuffer.MaxPendingRecords";
+
+	@VisibleForTesting
+	static final String EVENT_LOG_MSG_PREFIX_Pending = "MD_Cockpit update pending in write-behind buffer: ";
+
+	private static final String TRX_PROPERTY_RequestsToAdd = MainDataWriteBehindBuffer.class.getName() + ".RequestsToAdd";
+
+	private static final int IN_ARRAY_MAX_SIZE = 1000;
+
+	private final EventLogService eventLogService;
+
+	private final Object lock = new Object();
+	private final Object flushLock = new Object();
+
+	/** Pending requests per client and org; the requests are summed up per normalized identifier */
+	private Map<EventDescriptor, Map<MainDataRecordIdentifier, UpdateMainDataRequest>> pendingRequests = new LinkedHashMap<>();
+	/** The "pending" {@code AD_EventLog_Entry} records of the requests in {@link #pendingRequests} */
+	private List<Integer> pendingEventLogEntryIds = new ArrayList<>();
+	private int pendingRecordsCount = 0;
+
+	private final Cache<MainDataRecordIdentifier, Boolean> existingRecords = CacheBuilder.newBuilder()
+			.maximumSize(10000)
+			.build();
+
+	private ScheduledExecutorService flushExecutor; // only set if enabled
+	private final AtomicBoolean asyncFlushScheduled = new AtomicBoolean(false);
+	private int maxPendingRecords;
+
+	public MainDataWriteBehindBuffer(@NonNull final EventLogService eventLogService)
+	{
+		this.eventLogService = eventLogService;
+	}
+
+	@PostConstruct
+	public void startIfEnabled()
+	{
+		final ISysConfigBL sysConfigBL = Services.get(ISysConfigBL.class);
+		if (!sysConfigBL.getBooleanValue(SYSCONFIG_Enabled, false))
+		{
+			logger.info("MD_Cockpit write-behind buffer is disabled; set sysconfig {}=Y and restart to enable it", SYSCONFIG_Enabled);
+			return;
+		}
+
+		maxPendingRecords = sysConfigBL.getIntValue(SYSCONFIG_MaxPendingRecords, 1000);
+		final int flushIntervalMillis = sysConfigBL.getIntValue(SYSCONFIG_FlushIntervalMillis, 1000);
+
+		flushExecutor = Executors.newSingleThreadScheduledExecutor(CustomizableThreadFactory.builder()
+				.setThreadNamePrefix(MainDataWriteBehindBuffer.class.getSimpleName())
+				.setDaemon(true)
+				.build());
+		flushExecutor.scheduleWithFixedDelay(this::flushAndLogErrors, flushIntervalMillis, flushIntervalMillis, TimeUnit.MILLISECONDS);
+
+		logger.info("MD_Cockpit write-behind buffer started with flushIntervalMillis={}, maxPendingRecords={}", flushIntervalMillis, maxPendingRecords);
+	}
+
+	@PreDestroy
+	public void stop()
+	{
+		if (flushExecutor == null)
+		{
+			return;
+		}
+		flushExecutor.shutdownNow();
+		flushAndLogErrors();
+	}
+
+	public boolean isEnabled()
+	{
+		return flushExecutor != null;
+	}
+
+	/**
+	 * @return {@code false} if the given request's {@code MD_Cockpit} record does not exist yet; the caller needs to apply the request itself in that case.
+	 */
+	public boolean addIfRecordExists(@NonNull final UpdateMainDataRequest request)
+	{
+		final UpdateMainDataRequest requestToAdd = request.withNormalizedIdentifier();
+		final MainDataRecordIdentifier identifier = requestToAdd.getIdentifier();
+		if (!isRecordExists(identifier))
+		{
+			existingRecords.put(identifier, Boolean.TRUE); // the caller is going to create it
+			return false;
+		}
+
+		final ITrxManager trxManager = Services.get(ITrxManager.class);
+		final ITrx trx = trxManager.getThreadInheritedTrx(OnTrxMissingPolicy.ReturnTrxNone);
+		final boolean trxActive = trxManager.isActive(trx);
+
+		// log it first, so that it can be replayed if we crash before it was flushed.
+		// within a trx, the log entry is committed or rolled back together with the caller's changes
+		final Properties ctx = Env.getCtx();
+		final EventDescriptor clientAndOrg = EventDescriptor.ofClientAndOrg(Env.getAD_Client_ID(ctx), Env.getAD_Org_ID(ctx));
+		final int eventLogEntryId = storePendingEventLogEntry(requestToAdd, clientAndOrg, trxActive ? trx.getTrxName() : ITrx.TRXNAME_None);
+		final RequestToAdd requestToAddAfterCommit = new RequestToAdd(requestToAdd, clientAndOrg, eventLogEntryId);
+
+		if (!trxActive)
+		{
+			addAll(ImmutableList.of(requestToAddAfterCommit));
+			return true;
+		}
+
+		final List<RequestToAdd> requestsOfTrx = trx.getProperty(TRX_PROPERTY_RequestsToAdd, () -> {
+			final List<RequestToAdd> requests = new ArrayList<>();
+			trx.getTrxListenerManager()
+					.newEventListener(TrxEventTiming.AFTER_COMMIT)
+					.invokeMethodJustOnce(false) // the trx might be committed more than once
+					.registerHandlingMethod(innerTrx -> {
+						final List<RequestToAdd> committedRequests = ImmutableList.copyOf(requests);
+						requests.clear();
+						addAll(committedRequests);
+					});
+			trx.getTrxListenerManager()
+					.newEventListener(TrxEventTiming.AFTER_ROLLBACK)
+					.invokeMethodJustOnce(false)
+					.registerHandlingMethod(innerTrx -> requests.clear());
+			return requests;
+		});
+		requestsOfTrx.add(requestToAddAfterCommit);
+		return true;
+	}
+
+	/**
+	 * Adds the given requests at once, so that a flush either writes all or none of them.
+	 */
+	private void addAll(@NonNull final List<RequestToAdd> requestsToAdd)
+	{
+		if (requestsToAdd.isEmpty())
+		{
+			return;
+		}
+
+		final boolean flushNow;
+		synchronized (lock)
+		{
+			for (final RequestToAdd requestToAdd : requestsToAdd)
+			{
+				final UpdateMainDataRequest request = requestToAdd.getRequest();
+				final Map<MainDataRecordIdentifier, UpdateMainDataRequest> requests = pendingRequests.computeIfAbsent(requestToAdd.getClientAndOrg(), k -> new LinkedHashMap<>());
+				if (requests.merge(request.getIdentifier(), request, UpdateMainDataRequest::add) == request)
+				{
+					pendingRecordsCount++;
+				}
+				if (requestToAdd.getEventLogEntryId() > 0)
+				{
+					pendingEventLogEntryIds.add(requestToAdd.getEventLogEntryId());
+				}
+			}
+			flushNow = pendingRecordsCount >= maxPendingRecords;
+		}
+
+		if (flushNow)
+		{
+			scheduleAsyncFlush();
+		}
+	}
+
+	private boolean isRecordExists(@NonNull final MainDataRecordIdentifier identifier)
+	{
+		if (existingRecords.getIfPresent(identifier) != null)
+		{
+			return true;
+		}
+
+		final boolean exists = identifier.createQueryBuilder().create().match();
+		if (exists)
+		{
+			existingRecords.put(identifier, Boolean.TRUE);
+		}
+		return exists;
+	}
+
+	private void scheduleAsyncFlush()
+	{
+		if (!asyncFlushScheduled.compareAndSet(false, true))
+		{
+			return;
+		}
+		flushExecutor.execute(() -> {
+			asyncFlushScheduled.set(false);
+			flushAndLogErrors();
+		});
+	}
+
+	private void flushAndLogErrors()
+	{
+		try
+		{
+			flush();
+		}
+		catch (final Exception ex)
+		{
+			logger.warn("Failed flushing the MD_Cockpit write-behind buffer; the pending updates are kept and will be retried", ex);
+		}
+	}
+
+	/**
+	 * Writes all pending requests in one transaction and flags their "pending" event log entries as processed. If that fails, the requests stay pending.
+	 */
+	public void flush()
+	{
+		synchronized (flushLock)
+		{
+			final Map<EventDescriptor, Map<MainDataRecordIdentifier, UpdateMainDataRequest>> requestsToFlush;
+			final List<Integer> eventLogEntryIdsToFlush;
+			synchronized (lock)
+			{
+				if (pendingRequests.isEmpty())
+				{
+					return;
+				}
+				requestsToFlush = pendingRequests;
+				eventLogEntryIdsToFlush = pendingEventLogEntryIds;
+				pendingRequests = new LinkedHashMap<>();
+				pendingEventLogEntryIds = new ArrayList<>();
+				pendingRecordsCount = 0;
+			}
+
+			try
+			{
+				Services.get(ITrxManager.class).runInNewTrx(localTrxName -> {
+					requestsToFlush.forEach(MainDataWriteBehindBuffer::applyRequests);
+
+					// flag the entries in the same trx, so that a replay after a crash can't apply the requests a second time
+					markEventLogEntriesProcessed(eventLogEntryIdsToFlush);
+				});
+			}
+			catch (final RuntimeException ex)
+			{
+				restorePendingRequests(requestsToFlush, eventLogEntryIdsToFlush);
+				throw ex;
+			}
+
+			logger.debug("Flushed {} MD_Cockpit updates of {} event log entries", requestsToFlush.values().stream().mapToInt(Map::size).sum(), eventLogEntryIdsToFlush.size());
+		}
+	}
+
+	private void restorePendingRequests(
+			@NonNull final Map<EventDescriptor, Map<MainDataRecordIdentifier, UpdateMainDataRequest>> requestsToRestore,
+			@NonNull final List<Integer> eventLogEntryIdsToRestore)
+	{
+		synchronized (lock)
+		{
+			requestsToRestore.forEach((clientAndOrg, requests) -> {
+				final Map<MainDataRecordIdentifier, UpdateMainDataRequest> currentRequests = pendingRequests.computeIfAbsent(clientAndOrg, k -> new LinkedHashMap<>());
+				requests.forEach((identifier, request) -> {
+					if (currentRequests.merge(identifier, request, UpdateMainDataRequest::add) == request)
+					{
+						pendingRecordsCount++;
+					}
+				});
+			});
+			pendingEventLogEntryIds.addAll(eventLogEntryIdsToRestore);
+		}
+	}
+
+	/**
+	 * Applies the given requests with the given client and org in the context, so that new records get them.
+	 */
+	private static void applyRequests(
+			@NonNull final EventDescriptor clientAndOrg,
+			@NonNull final Map<MainDataRecordIdentifier, UpdateMainDataRequest> requests)
+	{
+		final Properties temporaryCtx = Env.copyCtx(Env.getCtx());
+		Env.setContext(temporaryCtx, Env.CTXNAME_AD_Client_ID, clientAndOrg.getClientId());
+		Env.setContext(temporaryCtx, Env.CTXNAME_AD_Org_ID, clientAndOrg.getOrgId());
+
+		try (final IAutoCloseable c = Env.switchContext(temporaryCtx))
+		{
+			requests.values().forEach(MainDataRequestHandler::applyDataUpdateRequest);
+		}
+	}
+
+	/**
+	 * Flags the given "pending" entries as processed, in the thread inherited transaction.
+	 *
+	 * @return the number of entries which were not yet processed
+	 */
+	private static int markEventLogEntriesProcessed(@NonNull final List<Integer> eventLogEntryIds)
+	{
+		int updatedCount = 0;
+		for (final List<Integer> eventLogEntryIdsChunk : Iterables.partition(eventLogEntryIds, IN_ARRAY_MAX_SIZE))
+		{
+			updatedCount += Services.get(IQueryBL.class)
+					.createQueryBuilder(I_AD_EventLog_Entry.class)
+					.addInArrayFilter(I_AD_EventLog_Entry.COLUMN_AD_EventLog_Entry_ID, eventLogEntryIdsChunk)
+					.addEqualsFilter(I_AD_EventLog_Entry.COLUMN_Processed, false)
+					.create()
+					.updateDirectly()
+					.addSetColumnValue(I_AD_EventLog_Entry.COLUMNNAME_Processed, true)
+					.execute();
+		}
+		return updatedCount;
+	}
+
+	/**
+	 * Applies the requests of those "pending" event log entries which were not flagged as processed.
+	 *
+	 * @param createdBefore only entries created before this time are considered, so that the requests which are still in some server's buffer are not applied twice.
+	 * @return the number of entries whose requests were replayed
+	 */
+	public int replayUnflushedEventLogEntries(@NonNull final Instant createdBefore)
+	{
+		final List<I_AD_EventLog_Entry> pendingEntries = Services.get(IQueryBL.class)
+				.createQueryBuilder(I_AD_EventLog_Entry.class, PlainContextAware.newOutOfTrx())
+				.addOnlyActiveRecordsFilter()
+				.addStringLikeFilter(I_AD_EventLog_Entry.COLUMN_MsgText, EVENT_LOG_MSG_PREFIX_Pending, false)
+				.addEqualsFilter(I_AD_EventLog_Entry.COLUMN_Processed, false)
+				.addCompareFilter(I_AD_EventLog_Entry.COLUMN_Created, Operator.LESS, Timestamp.from(createdBefore))
+				.orderBy(I_AD_EventLog_Entry.COLUMN_AD_EventLog_Entry_ID)
+				.create()
+				.list();
+
+		final ITrxManager trxManager = Services.get(ITrxManager.class);
+		int replayedCount = 0;
+		for (final I_AD_EventLog_Entry pendingEntry : pendingEntries)
+		{
+			final boolean replayed = trxManager.call(() -> {
+				// flag the entry first; if someone else replayed it in the meantime, there is nothing left to do
+				if (markEventLogEntriesProcessed(ImmutableList.of(pendingEntry.getAD_EventLog_Entry_ID())) <= 0)
+				{
+					return false;
+				}
+				replayEventLogEntry(pendingEntry);
+				return true;
+			});
+			if (replayed)
+			{
+				replayedCount++;
+			}
+		}
+
+		return replayedCount;
+	}
+
+	private static void replayEventLogEntry(@NonNull final I_AD_EventLog_Entry pendingEntry)
+	{
+		final String requestJson = pendingEntry.getMsgText().substring(EVENT_LOG_MSG_PREFIX_Pending.length());
+		final UpdateMainDataRequest request = SimpleObjectSerializer.get().deserialize(requestJson, UpdateMainDataRequest.class);
+
+		final EventDescriptor clientAndOrg = EventDescriptor.ofClientAndOrg(pendingEntry.getAD_Client_ID(), pendingEntry.getAD_Org_ID());
+		applyRequests(clientAndOrg, ImmutableMap.of(request.getIdentifier(), request));
+	}
+
+	/**
+	 * Adds the given request to the log of the event which is currently handled.
+	 *
+	 * @param trxName if not {@link ITrx#TRXNAME_None}, the entry is stored in that transaction and a failure is propagated, so that the transaction is rolled back
+	 * @return the ID of the new {@code AD_EventLog_Entry} or {@code -1} if no event is currently handled or the entry could not be stored out of transaction
+	 */
+	private int storePendingEventLogEntry(
+			@NonNull final UpdateMainDataRequest request,
+			@NonNull final EventDescriptor clientAndOrg,
+			@Nullable final String trxName)
+	{
+		final EventLogEntryCollector eventLogEntryCollector = EventLogEntryCollector.getThreadLocalOrNull();
+		if (eventLogEntryCollector == null)
+		{
+			return -1;
+		}
+
+		final EventLogEntry eventLogEntry = EventLogEntry.builder()
+				.uuid(eventLogEntryCollector.getEvent().getUuid())
+				.clientId(clientAndOrg.getClientId())
+				.orgId(clientAndOrg.getOrgId())
+				.processed(false)
+				.message(EVENT_LOG_MSG_PREFIX_Pending + SimpleObjectSerializer.get().serialize(request))
+				.eventHandlerClass(MainDataWriteBehindBuffer.class)
+				.build();
+		if (!Services.get(ITrxManager.class).isNull(trxName))
+		{
+			return eventLogService.storeEventLogEntry(eventLogEntry, trxName);
+		}
+
+		try
+		{
+			return eventLogService.storeEventLogEntry(eventLogEntry, ITrx.TRXNAME_None);
+		}
+		catch (final RuntimeException ex)
+		{
+			// the update is buffered anyways; only a replay after a crash would miss it
+			logger.warn("Failed storing the pending event log entry for event UUID={}", eventLogEntry.getUuid(), ex);
+			return -1;
+		}
+	}
+
+	@Value
+	private static class RequestToAdd
+	{
+		@NonNull
+		UpdateMainDataRequest request;
+		@NonNull
+		EventDescriptor clientAndOrg;
+		/** the "pending" {@code AD_EventLog_Entry} of the request, or {@code -1} */
+		int eventLogEntryId;
+	}
+}
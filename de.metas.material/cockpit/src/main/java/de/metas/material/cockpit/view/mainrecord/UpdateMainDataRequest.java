@@ -1,10 +1,19 @@
 package de.metas.material.cockpit.view.mainrecord;
 
+import static java.math.BigDecimal.ZERO;
+
 import java.math.BigDecimal;
 
+import javax.annotation.Nullable;
+
+import org.compiere.util.Util;
+
+import com.fasterxml.jackson.annotation.JsonCreator;
+import com.fasterxml.jackson.annotation.JsonProperty;
+
 import de.metas.material.cockpit.view.MainDataRecordIdentifier;
+import de.metas.util.Check;
 import lombok.Builder;
-import lombok.Builder.Default;
 import lombok.NonNull;
 import lombok.Value;
 
@@ -31,42 +40,106 @@ import lombok.Value;
  */
 
 @Value
-@Builder
 public class UpdateMainDataRequest
 {
 	@NonNull
 	MainDataRecordIdentifier identifier;
 
-	@Default
-	BigDecimal countedQty = BigDecimal.ZERO;
+	BigDecimal countedQty;
 
-	@Default
-	BigDecimal onHandQtyChange = BigDecimal.ZERO;
+	BigDecimal onHandQtyChange;
 
-	@Default
-	BigDecimal directMovementQty = BigDecimal.ZERO;
+	BigDecimal directMovementQty;
 
 	/**
 	 * Quantity reserved for our customers
 	 */
-	@Default
-	BigDecimal orderedSalesQty = BigDecimal.ZERO;
+	BigDecimal orderedSalesQty;
 
-	@Default
-	BigDecimal reservedSalesQty = BigDecimal.ZERO;
+	BigDecimal reservedSalesQty;
 
 	/**
 	 * Quantity ordered from our vendors
 	 */
-	@Default
-	BigDecimal orderedPurchaseQty = BigDecimal.ZERO;
+	BigDecimal orderedPurchaseQty;
+
+	BigDecimal reservedPurchaseQty;
+
+	BigDecimal offeredQty;
+
+	BigDecimal requiredForProductionQty;
+
+	/**
+	 * Quantities which are not set default to zero.
+	 */
+	@Builder
+	@JsonCreator
+	private UpdateMainDataRequest(
+			@JsonProperty("identifier") @NonNull final MainDataRecordIdentifier identifier,
+			@JsonProperty("countedQty") @Nullable final BigDecimal countedQty,
+			@JsonProperty("onHandQtyChange") @Nullable final BigDecimal onHandQtyChange,
+			@JsonProperty("directMovementQty") @Nullable final BigDecimal directMovementQty,
+			@JsonProperty("orderedSalesQty") @Nullable final BigDecimal orderedSalesQty,
+			@JsonProperty("reservedSalesQty") @Nullable final BigDecimal reservedSalesQty,
+			@JsonProperty("orderedPurchaseQty") @Nullable final BigDecimal orderedPurchaseQty,
+			@JsonProperty("reservedPurchaseQty") @Nullable final BigDecimal reservedPurchaseQty,
+			@JsonProperty("offeredQty") @Nullable final BigDecimal offeredQty,
+			@JsonProperty("requiredForProductionQty") @Nullable final BigDecimal requiredForProductionQty)
+	{
+		this.identifier = identifier;
+		this.countedQty = Util.coalesce(countedQty, ZERO);
+		this.onHandQtyChange = Util.coalesce(onHandQtyChange, ZERO);
+		this.directMovementQty = Util.coalesce(directMovementQty, ZERO);
+		this.orderedSalesQty = Util.coalesce(orderedSalesQty, ZERO);
+		this.reservedSalesQty = Util.coalesce(reservedSalesQty, ZERO);
+		this.orderedPurchaseQty = Util.coalesce(orderedPurchaseQty, ZERO);
+		this.reservedPurchaseQty = Util.coalesce(reservedPurchaseQty, ZERO);
+		this.offeredQty = Util.coalesce(offeredQty, ZERO);
+		this.requiredForProductionQty = Util.coalesce(requiredForProductionQty, ZERO);
+	}
 
-	@Default
-	BigDecimal reservedPurchaseQty = BigDecimal.ZERO;
+	/**
+	 * @return a request with the summed-up quantities of this and the given request; both need to have the same identifier.
+	 */
+	public UpdateMainDataRequest add(@NonNull final UpdateMainDataRequest other)
+	{
+		Check.errorUnless(identifier.equals(other.getIdentifier()),
+				"The given request needs to have the same identifier as this one; this={}; other={}", this, other);
 
-	@Default
-	BigDecimal offeredQty = BigDecimal.ZERO;
+		return UpdateMainDataRequest.builder()
+				.identifier(identifier)
+				.countedQty(countedQty.add(other.getCountedQty()))
+				.onHandQtyChange(onHandQtyChange.add(other.getOnHandQtyChange()))
+				.directMovementQty(directMovementQty.add(other.getDirectMovementQty()))
+				.orderedSalesQty(orderedSalesQty.add(other.getOrderedSalesQty()))
+				.reservedSalesQty(reservedSalesQty.add(other.getReservedSalesQty()))
+				.orderedPurchaseQty(orderedPurchaseQty.add(other.getOrderedPurchaseQty()))
+				.reservedPurchaseQty(reservedPurchaseQty.add(other.getReservedPurchaseQty()))
+				.offeredQty(offeredQty.add(other.getOfferedQty()))
+				.requiredForProductionQty(requiredForProductionQty.add(other.getRequiredForProductionQty()))
+				.build();
+	}
 
-	@Default
-	BigDecimal requiredForProductionQty = BigDecimal.ZERO;
+	/**
+	 * @return this request with an identifier that does not depend on the kind of product descriptor it was created with; see {@link MainDataRecordIdentifier#normalize()}.
+	 */
+	public UpdateMainDataRequest withNormalizedIdentifier()
+	{
+		final MainDataRecordIdentifier normalizedIdentifier = identifier.normalize();
+		if (normalizedIdentifier.equals(identifier))
+		{
+			return this;
+		}
+		return new UpdateMainDataRequest(
+				normalizedIdentifier,
+				countedQty,
+				onHandQtyChange,
+				directMovementQty,
+				orderedSalesQty,
+				reservedSalesQty,
+				orderedPurchaseQty,
+				reservedPurchaseQty,
+				offeredQty,
+				requiredForProductionQty);
+	}
 }
@@ -0,0 +1,56 @@
+package de.metas.material.cockpit.view.process;
+
+import java.time.Duration;
+import java.time.Instant;
+
+import org.compiere.Adempiere;
+
+import de.metas.material.cockpit.view.mainrecord.MainDataWriteBehindBuffer;
+import de.metas.process.JavaProcess;
+import de.metas.process.RunOutOfTrx;
+
+/*
+ * #%L
+ * metasfresh-material-cockpit
+ * %%
+ * Copyright (C) 2019 metas GmbH
+ * %%
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as
+ * published by the Free Software Foundation, either version 2 of the
+ * License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public
+ * License along with this program. If not, see
+ * <http://www.gnu.org/licenses/gpl-2.0.html>.
+ * #L%
+ */
+
+/**
+ * Applies the {@code MD_Cockpit} updates which were buffered by {@link MainDataWriteBehindBuffer} but never written, e.g. because the server crashed.
+ * <p>
+ * Only considers updates that are older than {@link #MIN_AGE}, so that updates which are still in some server's buffer are not applied twice.
+ */
+public class MD_Cockpit_WriteBehind_Replay extends JavaProcess
+{
+	private static final Duration MIN_AGE = Duration.ofMinutes(10);
+
+	private final MainDataWriteBehindBuffer writeBehindBuffer = Adempiere.getBean(MainDataWriteBehindBuffer.class);
+
+	@Override
+	@RunOutOfTrx
+	protected String doIt()
+	{
+		writeBehindBuffer.flush();
+
+		final int replayedEntriesCount = writeBehindBuffer.replayUnflushedEventLogEntries(Instant.now().minus(MIN_AGE));
+		addLog("Replayed {} pending MD_Cockpit updates", replayedEntriesCount);
+
+		return MSG_OK;
+	}
+}
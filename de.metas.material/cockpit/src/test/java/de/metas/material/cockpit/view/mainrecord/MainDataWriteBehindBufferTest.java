@@ -0,0 +1,252 @@
+package de.metas.material.cockpit.view.mainrecord;
+
+import static java.math.BigDecimal.ONE;
+import static java.math.BigDecimal.TEN;
+import static org.adempiere.model.InterfaceWrapperHelper.refresh;
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+import java.math.BigDecimal;
+import java.time.Instant;
+import java.time.temporal.ChronoUnit;
+import java.util.List;
+
+import org.adempiere.ad.dao.IQueryBL;
+import org.adempiere.ad.trx.api.ITrxManager;
+import org.adempiere.exceptions.AdempiereException;
+import org.adempiere.service.ISysConfigBL;
+import org.adempiere.test.AdempiereTestHelper;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import de.metas.event.Event;
+import de.metas.event.SimpleObjectSerializer;
+import de.metas.event.log.EventLogService;
+import de.metas.event.log.impl.EventLogEntryCollector;
+import de.metas.event.model.I_AD_EventLog_Entry;
+import de.metas.material.cockpit.model.I_MD_Cockpit;
+import de.metas.material.cockpit.view.MainDataRecordIdentifier;
+import de.metas.material.event.commons.ProductDescriptor;
+import de.metas.util.Services;
+
+/*
+ * #%L
+ * metasfresh-material-cockpit
+ * %%
+ * Copyright (C) 2019 metas GmbH
+ * %%
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as
+ * published by the Free Software Foundation, either version 2 of the
+ * License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public
+ * License along with this program. If not, see
+ * <http://www.gnu.org/licenses/gpl-2.0.html>.
+ * #L%
+ */
+
+public class MainDataWriteBehindBufferTest
+{
+	private static final Instant TODAY = Instant.now().truncatedTo(ChronoUnit.DAYS);
+
+	private MainDataWriteBehindBuffer writeBehindBuffer;
+	private MainDataRequestHandler mainDataRequestHandler;
+
+	private MainDataRecordIdentifier identifier;
+
+	@Before
+	public void init()
+	{
+		AdempiereTestHelper.get().init();
+
+		final ISysConfigBL sysConfigBL = Services.get(ISysConfigBL.class);
+		sysConfigBL.setValue(MainDataWriteBehindBuffer.SYSCONFIG_Enabled, true, 0);
+		sysConfigBL.setValue(MainDataWriteBehindBuffer.SYSCONFIG_FlushIntervalMillis, 3600 * 1000, 0); // make sure that only the test flushes
+
+		writeBehindBuffer = new MainDataWriteBehindBuffer(new EventLogService());
+		writeBehindBuffer.startIfEnabled();
+		mainDataRequestHandler = new MainDataRequestHandler(writeBehindBuffer);
+
+		identifier = MainDataRecordIdentifier.builder()
+				.productDescriptor(ProductDescriptor.completeForProductIdAndEmptyAttribute(30))
+				.date(TODAY)
+				.build();
+	}
+
+	@After
+	public void stop()
+	{
+		writeBehindBuffer.stop();
+	}
+
+	@Test
+	public void handleDataUpdateRequest_coalescesUntilFlush()
+	{
+		assertThat(writeBehindBuffer.isEnabled()).isTrue();
+
+		// the record does not exist yet, so the first request needs to be applied right away
+		mainDataRequestHandler.handleDataUpdateRequest(createRequest(TEN, ONE));
+		final I_MD_Cockpit record = MainDataRequestHandler.retrieveOrCreateDataRecord(identifier);
+		assertThat(record.getQtyStockChange()).isEqualByComparingTo("10");
+		assertThat(record.getQtyReserved_Sale()).isEqualByComparingTo("1");
+
+		mainDataRequestHandler.handleDataUpdateRequest(createRequest(TEN, ONE));
+		mainDataRequestHandler.handleDataUpdateRequest(createRequest(ONE.negate(), ONE));
+		refresh(record);
+		assertThat(record.getQtyStockChange()).isEqualByComparingTo("10");
+		assertThat(record.getQtyReserved_Sale()).isEqualByComparingTo("1");
+
+		writeBehindBuffer.flush();
+		refresh(record);
+		assertThat(record.getQtyStockChange()).isEqualByComparingTo("19");
+		assertThat(record.getQtyReserved_Sale()).isEqualByComparingTo("3");
+		assertThat(record.getQtyOnHandEstimate()).isEqualByComparingTo("19");
+	}
+
+	@Test
+	public void handleDataUpdateRequest_withinTrx_isBufferedAfterCommit()
+	{
+		mainDataRequestHandler.handleDataUpdateRequest(createRequest(TEN, ONE)); // creates the record
+		final I_MD_Cockpit record = MainDataRequestHandler.retrieveOrCreateDataRecord(identifier);
+
+		Services.get(ITrxManager.class).runInNewTrx(() -> {
+			mainDataRequestHandler.handleDataUpdateRequest(createRequest(TEN, ONE));
+
+			writeBehindBuffer.flush(); // not yet buffered
+			refresh(record);
+			assertThat(record.getQtyStockChange()).isEqualByComparingTo("10");
+		});
+
+		writeBehindBuffer.flush();
+		refresh(record);
+		assertThat(record.getQtyStockChange()).isEqualByComparingTo("20");
+		assertThat(record.getQtyReserved_Sale()).isEqualByComparingTo("2");
+	}
+
+	@Test
+	public void handleDataUpdateRequest_withinRolledBackTrx_isDropped()
+	{
+		mainDataRequestHandler.handleDataUpdateRequest(createRequest(TEN, ONE)); // creates the record
+		final I_MD_Cockpit record = MainDataRequestHandler.retrieveOrCreateDataRecord(identifier);
+
+		assertThatThrownBy(() -> Services.get(ITrxManager.class).runInNewTrx(() -> {
+			mainDataRequestHandler.handleDataUpdateRequest(createRequest(TEN, ONE));
+			throw new AdempiereException("test failure");
+		})).hasMessageContaining("test failure");
+
+		writeBehindBuffer.flush();
+		refresh(record);
+		assertThat(record.getQtyStockChange()).isEqualByComparingTo("10");
+		assertThat(record.getQtyReserved_Sale()).isEqualByComparingTo("1");
+	}
+
+	@Test
+	public void handleDataUpdateRequest_withinRolledBackTrx_pendingEventLogEntryIsRolledBack()
+	{
+		mainDataRequestHandler.handleDataUpdateRequest(createRequest(TEN, ONE)); // creates the record
+
+		try (final EventLogEntryCollector collector = EventLogEntryCollector.createThreadLocalForEvent(Event.builder().build()))
+		{
+			assertThatThrownBy(() -> Services.get(ITrxManager.class).runInNewTrx(() -> {
+				mainDataRequestHandler.handleDataUpdateRequest(createRequest(TEN, ONE));
+				assertThat(retrievePendingEventLogEntries()).hasSize(1);
+				throw new AdempiereException("test failure");
+			})).hasMessageContaining("test failure");
+		}
+
+		assertThat(retrievePendingEventLogEntries()).isEmpty();
+	}
+
+	@Test
+	public void flush_marksPendingEventLogEntriesProcessed()
+	{
+		mainDataRequestHandler.handleDataUpdateRequest(createRequest(TEN, ONE)); // creates the record
+
+		try (final EventLogEntryCollector collector = EventLogEntryCollector.createThreadLocalForEvent(Event.builder().build()))
+		{
+			Services.get(ITrxManager.class).runInNewTrx(() -> {
+				mainDataRequestHandler.handleDataUpdateRequest(createRequest(TEN, ONE));
+				mainDataRequestHandler.handleDataUpdateRequest(createRequest(ONE, ONE));
+			});
+		}
+
+		final List<I_AD_EventLog_Entry> pendingEntries = retrievePendingEventLogEntries();
+		assertThat(pendingEntries).hasSize(2);
+		assertThat(pendingEntries).noneMatch(I_AD_EventLog_Entry::isProcessed);
+
+		writeBehindBuffer.flush();
+
+		assertThat(retrievePendingEventLogEntries()).hasSize(2).allMatch(I_AD_EventLog_Entry::isProcessed);
+		assertThat(writeBehindBuffer.replayUnflushedEventLogEntries(Instant.now().plusSeconds(60))).isZero();
+	}
+
+	@Test
+	public void replayUnflushedEventLogEntries_appliesOnlyUnprocessedEntries()
+	{
+		mainDataRequestHandler.handleDataUpdateRequest(createRequest(TEN, ONE)); // creates the record
+		final I_MD_Cockpit record = MainDataRequestHandler.retrieveOrCreateDataRecord(identifier);
+
+		try (final EventLogEntryCollector collector = EventLogEntryCollector.createThreadLocalForEvent(Event.builder().build()))
+		{
+			mainDataRequestHandler.handleDataUpdateRequest(createRequest(TEN, ONE));
+		}
+		writeBehindBuffer.flush();
+
+		try (final EventLogEntryCollector collector = EventLogEntryCollector.createThreadLocalForEvent(Event.builder().build()))
+		{
+			mainDataRequestHandler.handleDataUpdateRequest(createRequest(ONE, ONE));
+		}
+		// simulate a crash, i.e. the second request is lost from the buffer and another instance replays it
+		final MainDataWriteBehindBuffer bufferAfterRestart = new MainDataWriteBehindBuffer(new EventLogService());
+
+		final int replayedCount = bufferAfterRestart.replayUnflushedEventLogEntries(Instant.now().plusSeconds(60));
+
+		assertThat(replayedCount).isEqualTo(1);
+		refresh(record);
+		assertThat(record.getQtyStockChange()).isEqualByComparingTo("21");
+		assertThat(record.getQtyReserved_Sale()).isEqualByComparingTo("3");
+		assertThat(retrievePendingEventLogEntries()).allMatch(I_AD_EventLog_Entry::isProcessed);
+
+		// replaying again does nothing
+		assertThat(bufferAfterRestart.replayUnflushedEventLogEntries(Instant.now().plusSeconds(60))).isZero();
+	}
+
+	private static List<I_AD_EventLog_Entry> retrievePendingEventLogEntries()
+	{
+		return Services.get(IQueryBL.class)
+				.createQueryBuilder(I_AD_EventLog_Entry.class)
+				.addStringLikeFilter(I_AD_EventLog_Entry.COLUMN_MsgText, MainDataWriteBehindBuffer.EVENT_LOG_MSG_PREFIX_Pending, false)
+				.create()
+				.list();
+	}
+
+	private UpdateMainDataRequest createRequest(final BigDecimal onHandQtyChange, final BigDecimal reservedSalesQty)
+	{
+		return UpdateMainDataRequest.builder()
+				.identifier(identifier)
+				.onHandQtyChange(onHandQtyChange)
+				.reservedSalesQty(reservedSalesQty)
+				.build();
+	}
+
+	/**
+	 * Verifies that the requests which are logged as pending can be restored, see {@link MainDataWriteBehindBuffer#replayUnflushedEventLogEntries(Instant)}.
+	 */
+	@Test
+	public void updateMainDataRequest_serializeAndDeserialize()
+	{
+		final UpdateMainDataRequest request = createRequest(TEN, ONE);
+
+		final String json = SimpleObjectSerializer.get().serialize(request);
+		final UpdateMainDataRequest deserializedRequest = SimpleObjectSerializer.get().deserialize(json, UpdateMainDataRequest.class);
+
+		assertThat(deserializedRequest).isEqualTo(request);
+	}
+}
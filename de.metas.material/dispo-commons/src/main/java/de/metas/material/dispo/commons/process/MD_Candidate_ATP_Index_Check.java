@@ -0,0 +1,66 @@
+package de.metas.material.dispo.commons.process;
+
+import java.util.List;
+
+import org.adempiere.exceptions.AdempiereException;
+import org.compiere.Adempiere;
+
+import de.metas.material.dispo.commons.repository.atp.AvailableToPromiseIndex;
+import de.metas.process.JavaProcess;
+import de.metas.util.time.SystemTime;
+
+/*
+ * #%L
+ * metasfresh-material-dispo-commons
+ * %%
+ * Copyright (C) 2019 metas GmbH
+ * %%
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as
+ * published by the Free Software Foundation, either version 2 of the
+ * License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public
+ * License along with this program.  If not, see
+ * <http://www.gnu.org/licenses/gpl-2.0.html>.
+ * #L%
+ */
+
+/**
+ * Compares the current in-memory {@link AvailableToPromiseIndex} with the database and schedules a rebuild of the index if they differ.
+ * <p>
+ * Note that the index is per JVM, so this process only checks the index of the JVM it runs in.
+ */
+public class MD_Candidate_ATP_Index_Check extends JavaProcess
+{
+	private final AvailableToPromiseIndex availableToPromiseIndex = Adempiere.getBean(AvailableToPromiseIndex.class);
+
+	@Override
+	protected String doIt()
+	{
+		if (!availableToPromiseIndex.isReady())
+		{
+			throw new AdempiereException("The ATP index is not enabled or not loaded yet");
+		}
+
+		final List<String> inconsistencies = availableToPromiseIndex.checkConsistency(SystemTime.asLocalDateTime());
+		inconsistencies.forEach(inconsistency -> addLog("Inconsistent: {}", inconsistency));
+
+		if (inconsistencies.isEmpty())
+		{
+			addLog("The ATP index with {} stock entries is consistent", availableToPromiseIndex.size());
+		}
+		else
+		{
+			addLog("Found {} inconsistencies; scheduling a rebuild of the ATP index", inconsistencies.size());
+			availableToPromiseIndex.scheduleRebuild();
+		}
+
+		return MSG_OK;
+	}
+}
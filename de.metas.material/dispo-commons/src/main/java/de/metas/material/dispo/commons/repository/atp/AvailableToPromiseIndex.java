@@ -0,0 +1,728 @@
+package de.metas.material.dispo.commons.repository.atp;
+
+import java.math.BigDecimal;
+import java.time.Instant;
+import java.time.LocalDateTime;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.Predicate;
+import java.util.stream.Stream;
+
+import javax.annotation.Nullable;
+import javax.annotation.PostConstruct;
+
+import org.adempiere.ad.dao.IQueryBL;
+import org.adempiere.ad.dao.IQueryBuilder;
+import org.adempiere.ad.trx.api.ITrx;
+import org.adempiere.ad.trx.api.ITrxListenerManager.TrxEventTiming;
+import org.adempiere.ad.trx.api.ITrxManager;
+import org.adempiere.ad.trx.api.OnTrxMissingPolicy;
+import org.adempiere.exceptions.AdempiereException;
+import org.adempiere.service.ISysConfigBL;
+import org.adempiere.util.concurrent.CustomizableThreadFactory;
+import org.compiere.util.TimeUtil;
+import org.compiere.util.Util.ArrayKey;
+import org.slf4j.Logger;
+import org.springframework.stereotype.Service;
+
+import com.google.common.annotations.VisibleForTesting;
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableSet;
+
+import de.metas.bpartner.BPartnerId;
+import de.metas.cache.CacheMgt;
+import de.metas.cache.model.CacheInvalidateMultiRequest;
+import de.metas.cache.model.CacheInvalidateRequest;
+import de.metas.logging.LogManager;
+import de.metas.material.dispo.model.I_MD_Candidate;
+import de.metas.material.dispo.model.I_MD_Candidate_ATP_QueryResult;
+import de.metas.material.dispo.model.X_MD_Candidate;
+import de.metas.material.event.commons.AttributesKey;
+import de.metas.util.Services;
+import lombok.Builder;
+import lombok.NonNull;
+import lombok.Value;
+
+/*
+ * #%L
+ * metasfresh-material-dispo-commons
+ * %%
+ * Copyright (C) 2019 metas GmbH
+ * %%
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as
+ * published by the Free Software Foundation, either version 2 of the
+ * License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public
+ * License along with this program.  If not, see
+ * <http://www.gnu.org/licenses/gpl-2.0.html>.
+ * #L%
+ */
+
+/**
+ * In-memory index of the <code>MD_Candidate</code> stock records, which answers {@link AvailableToPromiseMultiQuery}s
+ * without calling <code>de_metas_material.retrieve_atp_at_date(...)</code> for each query.
+ * <p>
+ * For each product, warehouse, customer and storage attributes key, the index holds the stock candidates ordered by date and seqNo,
+ * i.e. the running ATP quantity over time. It is fully loaded on start-up and afterwards kept current from the cache invalidations of <code>MD_Candidate</code>,
+ * which are fired for each change made by {@link de.metas.material.dispo.commons.repository.CandidateRepositoryWriteService} and also broadcasted to the other JVMs.
+ * Changes made in the current JVM are applied after their transaction was committed.
+ * Until then, {@link #isUsableFor(AvailableToPromiseMultiQuery)} tells the callers within that transaction to query the database for the changed products and warehouses.
+ * <p>
+ * The index is disabled by default and can be enabled with the sysconfig {@value #SYSCONFIG_Enabled}; changing it requires a restart.
+ */
+@Service
+public class AvailableToPromiseIndex
+{
+	private static final Logger logger = LogManager.getLogger(AvailableToPromiseIndex.class);
+
+	@VisibleForTesting
+	static final String SYSCONFIG_Enabled = "de.metas.material.dispo.commons.repository.atp.AvailableToPromiseIndex.Enabled";
+
+	private static final String TRX_PROPERTY_ChangesInTrx = AvailableToPromiseIndex.class.getName() + ".ChangesInTrx";
+
+	private final Object rebuildLock = new Object();
+	private final AtomicBoolean rebuildScheduled = new AtomicBoolean(false);
+	private ExecutorService rebuildExecutor; // lazy
+
+	/** The current stock entries or {@code null} if the index is not (yet) loaded */
+	private volatile StockEntries stockEntries = null;
+
+	/** IDs of the candidates which changed while a rebuild was running; {@code null} if no rebuild is running */
+	private Set<Integer> candidateIdsChangedDuringRebuild = null;
+
+	@PostConstruct
+	public void startIfEnabled()
+	{
+		final boolean enabled = Services.get(ISysConfigBL.class).getBooleanValue(SYSCONFIG_Enabled, false);
+		if (!enabled)
+		{
+			logger.info("Not starting because it is disabled by sysconfig {}", SYSCONFIG_Enabled);
+			return;
+		}
+
+		CacheMgt.get().addCacheResetListener(I_MD_Candidate.Table_Name, this::onCacheReset);
+		scheduleRebuild();
+	}
+
+	/**
+	 * Like {@link #startIfEnabled()}, but ignores the sysconfig and loads the index synchronously.
+	 */
+	@VisibleForTesting
+	public void startNow()
+	{
+		CacheMgt.get().addCacheResetListener(I_MD_Candidate.Table_Name, this::onCacheReset);
+		rebuild();
+	}
+
+	/**
+	 * @return {@code true} if the index was loaded and can answer queries
+	 */
+	public boolean isReady()
+	{
+		return stockEntries != null;
+	}
+
+	/**
+	 * The index only contains committed changes. So within a transaction that changed candidates of a product and warehouse,
+	 * queries for that product and warehouse need to go to the database until the transaction is committed.
+	 *
+	 * @return {@code true} if the index is ready and the given query does not cover any candidate that was changed in the current thread's transaction
+	 */
+	public boolean isUsableFor(@NonNull final AvailableToPromiseMultiQuery multiQuery)
+	{
+		if (!isReady())
+		{
+			return false;
+		}
+
+		final ITrxManager trxManager = Services.get(ITrxManager.class);
+		final ITrx trx = trxManager.getThreadInheritedTrx(OnTrxMissingPolicy.ReturnTrxNone);
+		if (!trxManager.isActive(trx))
+		{
+			return true;
+		}
+
+		final ChangesInTrx changesInTrx = trx.getProperty(TRX_PROPERTY_ChangesInTrx);
+		if (changesInTrx == null)
+		{
+			return true;
+		}
+		return multiQuery.getQueries()
+				.stream()
+				.noneMatch(changesInTrx::isAffecting);
+	}
+
+	public int size()
+	{
+		final StockEntries stockEntries = this.stockEntries;
+		return stockEntries != null ? stockEntries.size() : 0;
+	}
+
+	/**
+	 * Schedules an asynchronous rebuild of the whole index. Until the rebuild is done, the index answers from its current (possibly stale) entries.
+	 */
+	public void scheduleRebuild()
+	{
+		if (!rebuildScheduled.compareAndSet(false, true))
+		{
+			return;
+		}
+
+		getRebuildExecutor().execute(() -> {
+			rebuildScheduled.set(false);
+			try
+			{
+				rebuild();
+			}
+			catch (final Exception ex)
+			{
+				logger.warn("Failed rebuilding the ATP index", ex);
+			}
+		});
+	}
+
+	private synchronized ExecutorService getRebuildExecutor()
+	{
+		if (rebuildExecutor == null)
+		{
+			rebuildExecutor = Executors.newSingleThreadExecutor(CustomizableThreadFactory.builder()
+					.setThreadNamePrefix(AvailableToPromiseIndex.class.getSimpleName())
+					.setDaemon(true)
+					.build());
+		}
+		return rebuildExecutor;
+	}
+
+	/**
+	 * Loads all stock candidates and replaces the current index entries with them.
+	 */
+	@VisibleForTesting
+	void rebuild()
+	{
+		synchronized (rebuildLock)
+		{
+			candidateIdsChangedDuringRebuild = ConcurrentHashMap.newKeySet();
+		}
+
+		final long startMillis = System.currentTimeMillis();
+		final StockEntries newStockEntries = new StockEntries();
+		final Set<Integer> changedCandidateIds;
+		try (final Stream<I_MD_Candidate> stockRecords = streamStockRecords(null))
+		{
+			stockRecords.map(AvailableToPromiseIndex::toStockEntry).forEach(newStockEntries::put);
+		}
+		finally
+		{
+			synchronized (rebuildLock)
+			{
+				changedCandidateIds = candidateIdsChangedDuringRebuild;
+				candidateIdsChangedDuringRebuild = null;
+			}
+		}
+
+		stockEntries = newStockEntries;
+		logger.info("Rebuilt the ATP index with {} stock entries in {}ms", newStockEntries.size(), System.currentTimeMillis() - startMillis);
+
+		// apply the changes which we might have missed while loading
+		reload(changedCandidateIds);
+	}
+
+	private long onCacheReset(@NonNull final CacheInvalidateMultiRequest multiRequest)
+	{
+		if (multiRequest.isResetAll())
+		{
+			scheduleRebuild();
+			return 0;
+		}
+
+		final Set<Integer> changedCandidateIds = new HashSet<>();
+		for (final CacheInvalidateRequest request : multiRequest.getRequests())
+		{
+			if (!I_MD_Candidate.Table_Name.equals(request.getTableNameEffective()))
+			{
+				continue;
+			}
+			if (request.isAllRecords())
+			{
+				scheduleRebuild();
+				return 0;
+			}
+			changedCandidateIds.add(request.getRecordIdEffective());
+		}
+
+		reloadAfterCommit(changedCandidateIds);
+		return changedCandidateIds.size();
+	}
+
+	/**
+	 * Reloads the given candidates when the current thread's transaction is committed, or right away if there is no such transaction.
+	 */
+	@VisibleForTesting
+	void reloadAfterCommit(@NonNull final Collection<Integer> candidateIds)
+	{
+		if (candidateIds.isEmpty())
+		{
+			return;
+		}
+
+		final ITrxManager trxManager = Services.get(ITrxManager.class);
+		final ITrx trx = trxManager.getThreadInheritedTrx(OnTrxMissingPolicy.ReturnTrxNone);
+		if (!trxManager.isActive(trx))
+		{
+			reload(candidateIds);
+			return;
+		}
+
+		final ChangesInTrx changesInTrx = trx.getProperty(TRX_PROPERTY_ChangesInTrx, () -> {
+			final ChangesInTrx changes = new ChangesInTrx();
+			trx.getTrxListenerManager()
+					.newEventListener(TrxEventTiming.AFTER_COMMIT)
+					.invokeMethodJustOnce(false) // the trx might be committed more than once
+					.registerHandlingMethod(innerTrx -> reload(changes.drainCandidateIds()));
+			return changes;
+		});
+
+		// remember both the old and the new product/warehouse of each changed candidate, so that isUsableFor() also covers candidates that were moved or deleted
+		final StockEntries stockEntries = this.stockEntries;
+		for (final Integer candidateId : candidateIds)
+		{
+			final StockEntry indexedEntry = stockEntries != null ? stockEntries.get(candidateId) : null;
+			if (indexedEntry != null)
+			{
+				changesInTrx.addProductAndWarehouse(indexedEntry.getSegmentKey().getProductId(), indexedEntry.getSegmentKey().getWarehouseId());
+			}
+		}
+		Services.get(IQueryBL.class)
+				.createQueryBuilder(I_MD_Candidate.class, trx.getTrxName())
+				.addInArrayFilter(I_MD_Candidate.COLUMNNAME_MD_Candidate_ID, candidateIds)
+				.create()
+				.list()
+				.forEach(candidateRecord -> changesInTrx.addProductAndWarehouse(candidateRecord.getM_Product_ID(), candidateRecord.getM_Warehouse_ID()));
+
+		changesInTrx.addCandidateIds(candidateIds);
+	}
+
+	private void reload(@NonNull final Collection<Integer> candidateIds)
+	{
+		if (candidateIds.isEmpty())
+		{
+			return;
+		}
+
+		synchronized (rebuildLock)
+		{
+			if (candidateIdsChangedDuringRebuild != null)
+			{
+				candidateIdsChangedDuringRebuild.addAll(candidateIds);
+			}
+		}
+
+		final StockEntries stockEntries = this.stockEntries;
+		if (stockEntries == null)
+		{
+			return;
+		}
+
+		final Set<Integer> candidateIdsToRemove = new HashSet<>(candidateIds);
+		try (final Stream<I_MD_Candidate> stockRecords = streamStockRecords(candidateIds))
+		{
+			stockRecords.forEach(stockRecord -> {
+				stockEntries.put(toStockEntry(stockRecord));
+				candidateIdsToRemove.remove(stockRecord.getMD_Candidate_ID());
+			});
+		}
+
+		// deleted, deactivated or no longer of type stock
+		candidateIdsToRemove.forEach(stockEntries::remove);
+	}
+
+	private static Stream<I_MD_Candidate> streamStockRecords(@Nullable final Collection<Integer> onlyCandidateIds)
+	{
+		final IQueryBuilder<I_MD_Candidate> queryBuilder = Services.get(IQueryBL.class)
+				.createQueryBuilderOutOfTrx(I_MD_Candidate.class)
+				.addOnlyActiveRecordsFilter()
+				.addEqualsFilter(I_MD_Candidate.COLUMNNAME_MD_Candidate_Type, X_MD_Candidate.MD_CANDIDATE_TYPE_STOCK);
+		if (onlyCandidateIds != null)
+		{
+			queryBuilder.addInArrayFilter(I_MD_Candidate.COLUMNNAME_MD_Candidate_ID, onlyCandidateIds);
+		}
+
+		return queryBuilder
+				.create()
+				.iterateAndStream();
+	}
+
+	/**
+	 * Same as what {@link AvailableToPromiseRepository} would create from the <code>retrieve_atp_at_date</code> records of the given query, but from memory.
+	 *
+	 * @return for each matching product, warehouse, customer and storage attributes key the latest stock entry at the respective query's date
+	 */
+	public ImmutableList<AddToResultGroupRequest> retrieveLatestStockEntries(@NonNull final AvailableToPromiseMultiQuery multiQuery)
+	{
+		final StockEntries stockEntries = getStockEntries();
+
+		final Map<Integer, StockEntry> result = new LinkedHashMap<>();
+		for (final AvailableToPromiseQuery query : multiQuery.getQueries())
+		{
+			final Instant date = TimeUtil.asInstant(query.getDate());
+			final Predicate<SegmentKey> segmentKeyFilter = createSegmentKeyFilter(query);
+
+			for (final Integer productId : query.getProductIds())
+			{
+				stockEntries.streamLatest(productId, segmentKeyFilter, date)
+						.forEach(stockEntry -> result.putIfAbsent(stockEntry.getCandidateId(), stockEntry));
+			}
+		}
+
+		return result.values()
+				.stream()
+				.map(AvailableToPromiseIndex::toAddToResultGroupRequest)
+				.collect(ImmutableList.toImmutableList());
+	}
+
+	/**
+	 * Compares the latest stock entries of this index with the ones returned by <code>retrieve_atp_at_date</code>.
+	 *
+	 * @return one description for each product, warehouse, customer and storage attributes key where the qty differs; empty if the index is consistent.
+	 */
+	public ImmutableList<String> checkConsistency(@NonNull final LocalDateTime date)
+	{
+		final StockEntries stockEntries = getStockEntries();
+		final Instant instant = TimeUtil.asInstant(date);
+
+		final Map<ArrayKey, BigDecimal> expectedQtys = new HashMap<>();
+		for (final I_MD_Candidate_ATP_QueryResult atpRecord : AvailableToPromiseSqlHelper.createDBQueryForAllAtDate(date).list())
+		{
+			final AddToResultGroupRequest request = AvailableToPromiseRepository.createAddToResultGroupRequest(atpRecord);
+			expectedQtys.put(createConsistencyCheckKey(request), request.getQty());
+		}
+
+		final Map<ArrayKey, BigDecimal> actualQtys = new HashMap<>();
+		stockEntries.streamAllLatest(instant)
+				.map(AvailableToPromiseIndex::toAddToResultGroupRequest)
+				.forEach(request -> actualQtys.put(createConsistencyCheckKey(request), request.getQty()));
+
+		final Set<ArrayKey> allKeys = new HashSet<>(expectedQtys.keySet());
+		allKeys.addAll(actualQtys.keySet());
+
+		return allKeys.stream()
+				.filter(key -> !isQtyEqual(expectedQtys.get(key), actualQtys.get(key)))
+				.map(key -> key + ": expected qty=" + expectedQtys.get(key) + ", indexed qty=" + actualQtys.get(key))
+				.sorted()
+				.collect(ImmutableList.toImmutableList());
+	}
+
+	private static ArrayKey createConsistencyCheckKey(@NonNull final AddToResultGroupRequest request)
+	{
+		return ArrayKey.of(request.getProductId(), request.getWarehouseId(), request.getBpartner(), request.getStorageAttributesKey());
+	}
+
+	private static boolean isQtyEqual(@Nullable final BigDecimal qty1, @Nullable final BigDecimal qty2)
+	{
+		if (qty1 == null || qty2 == null)
+		{
+			return qty1 == qty2;
+		}
+		return qty1.compareTo(qty2) == 0;
+	}
+
+	private StockEntries getStockEntries()
+	{
+		final StockEntries stockEntries = this.stockEntries;
+		if (stockEntries == null)
+		{
+			throw new AdempiereException("The ATP index is not enabled or not loaded yet");
+		}
+		return stockEntries;
+	}
+
+	private static Predicate<SegmentKey> createSegmentKeyFilter(@NonNull final AvailableToPromiseQuery query)
+	{
+		final Set<Integer> warehouseIds = query.getWarehouseIds();
+		final BPartnerClassifier bpartner = query.getBpartner();
+		final Predicate<AttributesKey> storageAttributesKeysMatcher = AvailableToPromiseResult.createStorageAttributesKeysMatcher(query);
+
+		return segmentKey -> (warehouseIds.isEmpty() || warehouseIds.contains(segmentKey.getWarehouseId()))
+				&& isBPartnerMatching(bpartner, segmentKey.getCustomerId())
+				&& storageAttributesKeysMatcher.test(segmentKey.getStorageAttributesKey());
+	}
+
+	/** Same logic as in {@link AvailableToPromiseSqlHelper#createDBQueryForStockQueryBuilder(AvailableToPromiseQuery)} */
+	private static boolean isBPartnerMatching(@NonNull final BPartnerClassifier bpartner, final int customerId)
+	{
+		if (bpartner.isAny())
+		{
+			return true;
+		}
+		else if (bpartner.isNone())
+		{
+			return customerId <= 0;
+		}
+		else
+		{
+			return customerId <= 0 || customerId == bpartner.getBpartnerId().getRepoId();
+		}
+	}
+
+	private static StockEntry toStockEntry(@NonNull final I_MD_Candidate stockRecord)
+	{
+		final SegmentKey segmentKey = SegmentKey.builder()
+				.productId(stockRecord.getM_Product_ID())
+				.warehouseId(stockRecord.getM_Warehouse_ID())
+				.customerId(stockRecord.getC_BPartner_Customer_ID())
+				.storageAttributesKey(AttributesKey.ofString(stockRecord.getStorageAttributesKey()))
+				.build();
+
+		return StockEntry.builder()
+				.candidateId(stockRecord.getMD_Candidate_ID())
+				.segmentKey(segmentKey)
+				.date(TimeUtil.asInstant(stockRecord.getDateProjected()))
+				.seqNo(stockRecord.getSeqNo())
+				.qty(stockRecord.getQty())
+				.build();
+	}
+
+	/** Same logic as {@link AvailableToPromiseRepository#createAddToResultGroupRequest(I_MD_Candidate_ATP_QueryResult)} */
+	private static AddToResultGroupRequest toAddToResultGroupRequest(@NonNull final StockEntry stockEntry)
+	{
+		final SegmentKey segmentKey = stockEntry.getSegmentKey();
+		final BPartnerId customerId = BPartnerId.ofRepoIdOrNull(segmentKey.getCustomerId());
+
+		return AddToResultGroupRequest.builder()
+				.productId(segmentKey.getProductId())
+				.bpartner(BPartnerClassifier.specificOrAny(customerId))
+				.warehouseId(segmentKey.getWarehouseId())
+				.storageAttributesKey(segmentKey.getStorageAttributesKey())
+				.qty(stockEntry.getQty())
+				.date(stockEntry.getDate())
+				.seqNo(stockEntry.getSeqNo())
+				.build();
+	}
+
+	/** The stock entries of one product, warehouse, customer and storage attributes key share one segment */
+	@Value
+	@Builder
+	private static class SegmentKey
+	{
+		int productId;
+		int warehouseId;
+		int customerId;
+		@NonNull
+		AttributesKey storageAttributesKey;
+	}
+
+	@Value
+	@Builder
+	private static class StockEntry
+	{
+		int candidateId;
+		@NonNull
+		SegmentKey segmentKey;
+		@NonNull
+		Instant date;
+		int seqNo;
+		@NonNull
+		BigDecimal qty;
+
+		StockEntryTime getTime()
+		{
+			return new StockEntryTime(date, seqNo, candidateId);
+		}
+	}
+
+	@Value
+	private static class StockEntryTime implements Comparable<StockEntryTime>
+	{
+		private static final Comparator<StockEntryTime> ORDER = Comparator.comparing(StockEntryTime::getDate)
+				.thenComparingInt(StockEntryTime::getSeqNo)
+				.thenComparingInt(StockEntryTime::getCandidateId);
+
+		/** @return the time which is after each entry at or before the given date */
+		static StockEntryTime latestAt(@NonNull final Instant date)
+		{
+			return new StockEntryTime(date, Integer.MAX_VALUE, Integer.MAX_VALUE);
+		}
+
+		Instant date;
+		int seqNo;
+		int candidateId;
+
+		@Override
+		public int compareTo(@NonNull final StockEntryTime other)
+		{
+			return ORDER.compare(this, other);
+		}
+	}
+
+	@Value
+	private static class ProductAndWarehouse
+	{
+		int productId;
+		int warehouseId;
+	}
+
+	/**
+	 * The candidates changed in one transaction and not yet committed, and their products and warehouses.
+	 */
+	private static final class ChangesInTrx
+	{
+		private final Set<Integer> candidateIds = ConcurrentHashMap.newKeySet();
+		private final Set<ProductAndWarehouse> productsAndWarehouses = ConcurrentHashMap.newKeySet();
+
+		public void addCandidateIds(@NonNull final Collection<Integer> candidateIds)
+		{
+			this.candidateIds.addAll(candidateIds);
+		}
+
+		/** @return the changed candidate IDs and forgets all changes */
+		public ImmutableSet<Integer> drainCandidateIds()
+		{
+			final ImmutableSet<Integer> drainedCandidateIds = ImmutableSet.copyOf(candidateIds);
+			candidateIds.removeAll(drainedCandidateIds);
+			productsAndWarehouses.clear();
+			return drainedCandidateIds;
+		}
+
+		public void addProductAndWarehouse(final int productId, final int warehouseId)
+		{
+			productsAndWarehouses.add(new ProductAndWarehouse(productId, warehouseId));
+		}
+
+		public boolean isAffecting(@NonNull final AvailableToPromiseQuery query)
+		{
+			final Set<Integer> warehouseIds = query.getWarehouseIds();
+			return productsAndWarehouses
+					.stream()
+					.anyMatch(productAndWarehouse -> query.getProductIds().contains(productAndWarehouse.getProductId())
+							&& (warehouseIds.isEmpty() || warehouseIds.contains(productAndWarehouse.getWarehouseId())));
+		}
+	}
+
+	/**
+	 * Thread-safe container of the stock entries. Changes are serialized, lookups are lock-free.
+	 */
+	private static final class StockEntries
+	{
+		private final ConcurrentHashMap<Integer, ConcurrentHashMap<SegmentKey, ConcurrentSkipListMap<StockEntryTime, StockEntry>>> segmentsByProductId = new ConcurrentHashMap<>();
+		private final ConcurrentHashMap<Integer, StockEntry> entriesByCandidateId = new ConcurrentHashMap<>();
+
+		/**
+	 * The index only contains committed changes. So within a transaction that changed candidates of a product and warehouse,
+	 * queries for that product and warehouse need to go to the database until the transaction is committed.
+	 *
+	 * @return {@code true} if the index is ready and the given query does not cover any candidate that was changed in the current thread's transaction
+	 */
+	public boolean isUsableFor(@NonNull final AvailableToPromiseMultiQuery multiQuery)
+	{
+		if (!isReady())
+		{
+			return false;
+		}
+
+		final ITrxManager trxManager = Services.get(ITrxManager.class);
+		final ITrx trx = trxManager.getThreadInheritedTrx(OnTrxMissingPolicy.ReturnTrxNone);
+		if (!trxManager.isActive(trx))
+		{
+			return true;
+		}
+
+		final ChangesInTrx changesInTrx = trx.getProperty(TRX_PROPERTY_ChangesInTrx);
+		if (changesInTrx == null)
+		{
+			return true;
+		}
+		return multiQuery.getQueries()
+				.stream()
+				.noneMatch(changesInTrx::isAffecting);
+	}
+
+	public int size()
+		{
+			return entriesByCandidateId.size();
+		}
+
+		public StockEntry get(final int candidateId)
+		{
+			return entriesByCandidateId.get(candidateId);
+		}
+
+		public synchronized void put(@NonNull final StockEntry stockEntry)
+		{
+			remove(stockEntry.getCandidateId());
+
+			final SegmentKey segmentKey = stockEntry.getSegmentKey();
+			segmentsByProductId
+					.computeIfAbsent(segmentKey.getProductId(), productId -> new ConcurrentHashMap<>())
+					.computeIfAbsent(segmentKey, key -> new ConcurrentSkipListMap<>())
+					.put(stockEntry.getTime(), stockEntry);
+			entriesByCandidateId.put(stockEntry.getCandidateId(), stockEntry);
+		}
+
+		public synchronized void remove(final int candidateId)
+		{
+			final StockEntry stockEntry = entriesByCandidateId.remove(candidateId);
+			if (stockEntry == null)
+			{
+				return;
+			}
+
+			final SegmentKey segmentKey = stockEntry.getSegmentKey();
+			final Map<SegmentKey, ConcurrentSkipListMap<StockEntryTime, StockEntry>> segments = segmentsByProductId.get(segmentKey.getProductId());
+			final ConcurrentSkipListMap<StockEntryTime, StockEntry> segment = segments != null ? segments.get(segmentKey) : null;
+			if (segment != null)
+			{
+				segment.remove(stockEntry.getTime());
+			}
+		}
+
+		public Stream<StockEntry> streamLatest(final int productId, @NonNull final Predicate<SegmentKey> segmentKeyFilter, @NonNull final Instant date)
+		{
+			final Map<SegmentKey, ConcurrentSkipListMap<StockEntryTime, StockEntry>> segments = segmentsByProductId.get(productId);
+			if (segments == null)
+			{
+				return Stream.empty();
+			}
+
+			return streamLatest(segments, segmentKeyFilter, date);
+		}
+
+		public Stream<StockEntry> streamAllLatest(@NonNull final Instant date)
+		{
+			return segmentsByProductId.values()
+					.stream()
+					.flatMap(segments -> streamLatest(segments, segmentKey -> true, date));
+		}
+
+		private static Stream<StockEntry> streamLatest(
+				@NonNull final Map<SegmentKey, ConcurrentSkipListMap<StockEntryTime, StockEntry>> segments,
+				@NonNull final Predicate<SegmentKey> segmentKeyFilter,
+				@NonNull final Instant date)
+		{
+			final StockEntryTime latestAtDate = StockEntryTime.latestAt(date);
+			return segments.entrySet()
+					.stream()
+					.filter(segment -> segmentKeyFilter.test(segment.getKey()))
+					.map(segment -> segment.getValue().floorEntry(latestAtDate))
+					.filter(Objects::nonNull)
+					.map(Map.Entry::getValue);
+		}
+	}
+}
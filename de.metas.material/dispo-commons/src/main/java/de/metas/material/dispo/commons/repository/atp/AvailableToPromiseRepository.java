@@ -52,6 +52,13 @@ public class AvailableToPromiseRepository
 {
 	private static final String SYSCONFIG_ATP_ATTRIBUTES_KEYS = "de.metas.ui.web.window.descriptor.sql.ProductLookupDescriptor.ATP.AttributesKeys";
 
+	private final AvailableToPromiseIndex availableToPromiseIndex;
+
+	public AvailableToPromiseRepository(@NonNull final AvailableToPromiseIndex availableToPromiseIndex)
+	{
+		this.availableToPromiseIndex = availableToPromiseIndex;
+	}
+
 	@NonNull
 	public BigDecimal retrieveAvailableStockQtySum(@NonNull final AvailableToPromiseMultiQuery multiQuery)
 	{
@@ -73,32 +80,18 @@ public class AvailableToPromiseRepository
 				? AvailableToPromiseResult.createEmptyWithPredefinedBuckets(multiQuery)
 				: AvailableToPromiseResult.createEmpty();
 
-		final IQuery<I_MD_Candidate_ATP_QueryResult> dbQuery = createDBQueryForMaterialQueryOrNull(multiQuery);
-		if (dbQuery == null)
-		{
-			return result;
-		}
-
-		final Function<I_MD_Candidate_ATP_QueryResult, Boolean> compareByWhetherRecordHasBPartnerId = record -> record.getC_BPartner_Customer_ID() > 0;
-
-		final List<I_MD_Candidate_ATP_QueryResult> atpRecords = dbQuery.list()
+		final ImmutableList<AddToResultGroupRequest> requests = retrieveAddToResultGroupRequests(multiQuery)
 				.stream()
-				// records with dedicated bPartnerId first
+				// requests with dedicated bPartnerId first
 				// latest date first
 				// biggest seqNo first
 				.sorted(Comparator
-						.comparing(compareByWhetherRecordHasBPartnerId)
-						.thenComparing(I_MD_Candidate_ATP_QueryResult::getDateProjected)
-						.thenComparing(I_MD_Candidate_ATP_QueryResult::getSeqNo) // if dateProjected is equal, then SeqNo makes the difference
+						.comparing((AddToResultGroupRequest request) -> request.getBpartner().isSpecificBPartner())
+						.thenComparing(AddToResultGroupRequest::getDate)
+						.thenComparing(AddToResultGroupRequest::getSeqNo) // if dateProjected is equal, then SeqNo makes the difference
 						.reversed())
 				.collect(ImmutableList.toImmutableList());
 
-		// note: this is a dedicated step in order to ease debugging (i.e. have a chance to take a look at the atpRecords)
-		final ImmutableList<AddToResultGroupRequest> requests = atpRecords
-				.stream()
-				.map(AvailableToPromiseRepository::createAddToResultGroupRequest)
-				.collect(ImmutableList.toImmutableList());
-
 		for (final AddToResultGroupRequest request : requests)
 		{
 			if (multiQuery.isAddToPredefinedBuckets())
@@ -113,6 +106,28 @@ public class AvailableToPromiseRepository
 		return result;
 	}
 
+	private List<AddToResultGroupRequest> retrieveAddToResultGroupRequests(@NonNull final AvailableToPromiseMultiQuery multiQuery)
+	{
+		if (availableToPromiseIndex.isUsableFor(multiQuery))
+		{
+			return availableToPromiseIndex.retrieveLatestStockEntries(multiQuery);
+		}
+
+		final IQuery<I_MD_Candidate_ATP_QueryResult> dbQuery = createDBQueryForMaterialQueryOrNull(multiQuery);
+		if (dbQuery == null)
+		{
+			return ImmutableList.of();
+		}
+
+		// note: this is a dedicated step in order to ease debugging (i.e. have a chance to take a look at the atpRecords)
+		final List<I_MD_Candidate_ATP_QueryResult> atpRecords = dbQuery.list();
+
+		return atpRecords
+				.stream()
+				.map(AvailableToPromiseRepository::createAddToResultGroupRequest)
+				.collect(ImmutableList.toImmutableList());
+	}
+
 	public AvailableToPromiseResult retrieveAvailableStock(@NonNull AvailableToPromiseQuery query)
 	{
 		return retrieveAvailableStock(AvailableToPromiseMultiQuery.of(query));
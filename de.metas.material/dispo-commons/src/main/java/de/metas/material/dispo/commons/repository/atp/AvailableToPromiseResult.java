@@ -125,6 +125,18 @@ public class AvailableToPromiseResult
 		}
 	}
 
+	/**
+	 * @return a matcher which accepts each storage attributes key that is matched by at least one of the given query's storage attributes keys
+	 */
+	static Predicate<AttributesKey> createStorageAttributesKeysMatcher(@NonNull final AvailableToPromiseQuery query)
+	{
+		return extractStorageAttributesKeyAndMatchers(query)
+				.stream()
+				.map(IPair::getRight)
+				.reduce(Predicate::or)
+				.orElse(Predicates.alwaysTrue());
+	}
+
 	static Predicate<AttributesKey> createStorageAttributesKeyMatcher(@NonNull final AttributesKey attributesKey)
 	{
 		if (AttributesKey.ALL.equals(attributesKey))
@@ -1,5 +1,6 @@
 package de.metas.material.dispo.commons.repository.atp;
 
+import java.time.LocalDateTime;
 import java.util.List;
 import java.util.Set;
 
@@ -67,6 +68,29 @@ import lombok.experimental.UtilityClass;
 		return dbQuery;
 	}
 
+	/**
+	 * @return query for the latest ATP record of each product, warehouse, customer and storage attributes key, at the given date
+	 */
+	public IQuery<I_MD_Candidate_ATP_QueryResult> createDBQueryForAllAtDate(@NonNull final LocalDateTime date)
+	{
+		final IQueryBuilder<I_MD_Candidate_ATP_QueryResult> queryBuilder = Services.get(IQueryBL.class)
+				.createQueryBuilder(I_MD_Candidate_ATP_QueryResult.class);
+		if (!isRealSqlQuery())
+		{
+			queryBuilder.addCompareFilter(I_MD_Candidate_ATP_QueryResult.COLUMN_DateProjected, Operator.LESS_OR_EQUAL, TimeUtil.asTimestamp(date));
+		}
+
+		final IQuery<I_MD_Candidate_ATP_QueryResult> dbQuery = queryBuilder.create();
+		if (isRealSqlQuery())
+		{
+			final TypedSqlQuery<I_MD_Candidate_ATP_QueryResult> sqlDbQuery = TypedSqlQuery.cast(dbQuery);
+
+			final String dateString = Database.TO_DATE(TimeUtil.asTimestamp(date), false);
+			sqlDbQuery.setSqlFrom("de_metas_material.retrieve_atp_at_date(" + dateString + ")");
+		}
+		return dbQuery;
+	}
+
 	@VisibleForTesting
 	IQueryBuilder<I_MD_Candidate_ATP_QueryResult> createDBQueryForStockQueryBuilder(@NonNull final AvailableToPromiseQuery query)
 	{
@@ -0,0 +1,232 @@
+package de.metas.material.dispo.commons.repository.atp;
+
+import static de.metas.material.event.EventTestHelper.AFTER_NOW;
+import static de.metas.material.event.EventTestHelper.BEFORE_BEFORE_NOW;
+import static de.metas.material.event.EventTestHelper.BEFORE_NOW;
+import static de.metas.material.event.EventTestHelper.NOW;
+import static de.metas.material.event.EventTestHelper.PRODUCT_ID;
+import static de.metas.material.event.EventTestHelper.WAREHOUSE_ID;
+import static org.adempiere.model.InterfaceWrapperHelper.newInstance;
+import static org.adempiere.model.InterfaceWrapperHelper.save;
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.math.BigDecimal;
+import java.time.Instant;
+import java.util.List;
+
+import org.adempiere.test.AdempiereTestHelper;
+import org.adempiere.test.AdempiereTestWatcher;
+import org.compiere.util.TimeUtil;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+
+import com.google.common.collect.ImmutableList;
+
+import de.metas.bpartner.BPartnerId;
+import de.metas.material.dispo.model.I_MD_Candidate;
+import de.metas.material.dispo.model.I_MD_Candidate_ATP_QueryResult;
+import de.metas.material.dispo.model.X_MD_Candidate;
+import de.metas.material.event.commons.AttributesKey;
+
+/*
+ * #%L
+ * metasfresh-material-dispo-commons
+ * %%
+ * Copyright (C) 2019 metas GmbH
+ * %%
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as
+ * published by the Free Software Foundation, either version 2 of the
+ * License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public
+ * License along with this program.  If not, see
+ * <http://www.gnu.org/licenses/gpl-2.0.html>.
+ * #L%
+ */
+
+public class AvailableToPromiseIndexTest
+{
+	private static final BPartnerId BPARTNER_ID_1 = BPartnerId.ofRepoId(10);
+	private static final BPartnerId BPARTNER_ID_2 = BPartnerId.ofRepoId(20);
+	private static final AttributesKey STORAGE_ATTRIBUTES_KEY = AttributesKey.ofAttributeValueIds(1, 2);
+
+	@Rule
+	public AdempiereTestWatcher adempiereTestWatcher = new AdempiereTestWatcher();
+
+	private AvailableToPromiseIndex availableToPromiseIndex;
+
+	private int seqNoCounter = 1; // we start with one, because 0 is not considered valid by the code under test
+
+	@Before
+	public void init()
+	{
+		AdempiereTestHelper.get().init();
+
+		availableToPromiseIndex = new AvailableToPromiseIndex();
+	}
+
+	@Test
+	public void notReadyBeforeRebuild()
+	{
+		assertThat(availableToPromiseIndex.isReady()).isFalse();
+
+		availableToPromiseIndex.rebuild();
+
+		assertThat(availableToPromiseIndex.isReady()).isTrue();
+		assertThat(availableToPromiseIndex.size()).isZero();
+	}
+
+	@Test
+	public void retrieveLatestStockEntries_latestEntryPerSegment()
+	{
+		createStockRecord(null, BEFORE_BEFORE_NOW, "5");
+		final I_MD_Candidate latestRecord = createStockRecord(null, BEFORE_NOW, "10");
+		createStockRecord(null, AFTER_NOW, "15"); // in the future
+
+		availableToPromiseIndex.rebuild();
+
+		final List<AddToResultGroupRequest> requests = availableToPromiseIndex.retrieveLatestStockEntries(createMultiQuery(BPartnerClassifier.any(), NOW));
+		assertThat(requests).hasSize(1);
+		assertThat(requests.get(0).getQty()).isEqualByComparingTo("10");
+		assertThat(requests.get(0).getSeqNo()).isEqualTo(latestRecord.getSeqNo());
+
+		final List<AddToResultGroupRequest> earlierRequests = availableToPromiseIndex.retrieveLatestStockEntries(createMultiQuery(BPartnerClassifier.any(), BEFORE_BEFORE_NOW));
+		assertThat(earlierRequests).hasSize(1);
+		assertThat(earlierRequests.get(0).getQty()).isEqualByComparingTo("5");
+	}
+
+	@Test
+	public void retrieveLatestStockEntries_bpartnerFilter()
+	{
+		createStockRecord(null, BEFORE_NOW, "10");
+		createStockRecord(BPARTNER_ID_1, BEFORE_NOW, "20");
+		createStockRecord(BPARTNER_ID_2, BEFORE_NOW, "30");
+
+		availableToPromiseIndex.rebuild();
+
+		assertThat(retrieveLatestQtys(BPartnerClassifier.any())).containsExactlyInAnyOrder("10", "20", "30");
+		assertThat(retrieveLatestQtys(BPartnerClassifier.none())).containsExactlyInAnyOrder("10");
+		assertThat(retrieveLatestQtys(BPartnerClassifier.specific(BPARTNER_ID_1))).containsExactlyInAnyOrder("10", "20");
+	}
+
+	@Test
+	public void reloadAfterCommit_withoutTrx_appliesChangesRightAway()
+	{
+		final I_MD_Candidate record1 = createStockRecord(null, BEFORE_NOW, "10");
+		final I_MD_Candidate record2 = createStockRecord(BPARTNER_ID_1, BEFORE_NOW, "20");
+		availableToPromiseIndex.rebuild();
+		assertThat(availableToPromiseIndex.size()).isEqualTo(2);
+
+		record1.setQty(new BigDecimal("11"));
+		save(record1);
+		record2.setIsActive(false);
+		save(record2);
+		final I_MD_Candidate record3 = createStockRecord(BPARTNER_ID_2, BEFORE_NOW, "30");
+
+		availableToPromiseIndex.reloadAfterCommit(ImmutableList.of(record1.getMD_Candidate_ID(), record2.getMD_Candidate_ID(), record3.getMD_Candidate_ID()));
+
+		assertThat(availableToPromiseIndex.size()).isEqualTo(2);
+		assertThat(retrieveLatestQtys(BPartnerClassifier.any())).containsExactlyInAnyOrder("11", "30");
+	}
+
+	@Test
+	public void repository_sameResultWithAndWithoutIndex()
+	{
+		createStockRecord(null, BEFORE_NOW, "10");
+		createStockRecord(BPARTNER_ID_1, BEFORE_BEFORE_NOW, "20");
+		createStockRecord(BPARTNER_ID_2, BEFORE_NOW, "30");
+
+		final AvailableToPromiseMultiQuery multiQuery = createMultiQuery(BPartnerClassifier.specific(BPARTNER_ID_1), NOW);
+		final AvailableToPromiseRepository repository = new AvailableToPromiseRepository(availableToPromiseIndex);
+
+		final BigDecimal qtyFromDatabase = repository.retrieveAvailableStockQtySum(multiQuery);
+		availableToPromiseIndex.rebuild();
+		final BigDecimal qtyFromIndex = repository.retrieveAvailableStockQtySum(multiQuery);
+
+		assertThat(qtyFromDatabase).isEqualByComparingTo("30");
+		assertThat(qtyFromIndex).isEqualByComparingTo(qtyFromDatabase);
+	}
+
+	@Test
+	public void checkConsistency()
+	{
+		createStockRecord(BPARTNER_ID_1, BEFORE_NOW, "10");
+		availableToPromiseIndex.rebuild();
+
+		assertThat(availableToPromiseIndex.checkConsistency(TimeUtil.asLocalDateTime(NOW))).isEmpty();
+
+		final I_MD_Candidate_ATP_QueryResult viewRecord = newInstance(I_MD_Candidate_ATP_QueryResult.class);
+		viewRecord.setM_Product_ID(PRODUCT_ID);
+		viewRecord.setM_Warehouse_ID(WAREHOUSE_ID);
+		viewRecord.setC_BPartner_Customer_ID(BPARTNER_ID_2.getRepoId());
+		viewRecord.setDateProjected(TimeUtil.asTimestamp(BEFORE_NOW));
+		viewRecord.setStorageAttributesKey(STORAGE_ATTRIBUTES_KEY.getAsString());
+		viewRecord.setQty(BigDecimal.ONE);
+		viewRecord.setSeqNo(seqNoCounter++);
+		save(viewRecord); // without a matching stock candidate
+
+		assertThat(availableToPromiseIndex.checkConsistency(TimeUtil.asLocalDateTime(NOW))).hasSize(1);
+	}
+
+	private List<String> retrieveLatestQtys(final BPartnerClassifier bpartner)
+	{
+		return availableToPromiseIndex.retrieveLatestStockEntries(createMultiQuery(bpartner, NOW))
+				.stream()
+				.map(request -> request.getQty().toString())
+				.collect(ImmutableList.toImmutableList());
+	}
+
+	private static AvailableToPromiseMultiQuery createMultiQuery(final BPartnerClassifier bpartner, final Instant date)
+	{
+		final AvailableToPromiseQuery query = AvailableToPromiseQuery.builder()
+				.productId(PRODUCT_ID)
+				.warehouseId(WAREHOUSE_ID)
+				.storageAttributesKey(STORAGE_ATTRIBUTES_KEY)
+				.bpartner(bpartner)
+				.date(TimeUtil.asLocalDateTime(date))
+				.build();
+		return AvailableToPromiseMultiQuery.of(query);
+	}
+
+	/**
+	 * Creates a stock candidate and the matching view record, which is what the unit-test version of {@link AvailableToPromiseSqlHelper} returns.
+	 */
+	private I_MD_Candidate createStockRecord(
+			final BPartnerId bpartnerId,
+			final Instant dateProjected,
+			final String qty)
+	{
+		final I_MD_Candidate candidateRecord = newInstance(I_MD_Candidate.class);
+		candidateRecord.setMD_Candidate_Type(X_MD_Candidate.MD_CANDIDATE_TYPE_STOCK);
+		candidateRecord.setIsActive(true);
+		candidateRecord.setM_Product_ID(PRODUCT_ID);
+		candidateRecord.setM_Warehouse_ID(WAREHOUSE_ID);
+		candidateRecord.setC_BPartner_Customer_ID(BPartnerId.toRepoId(bpartnerId));
+		candidateRecord.setStorageAttributesKey(STORAGE_ATTRIBUTES_KEY.getAsString());
+		candidateRecord.setDateProjected(TimeUtil.asTimestamp(dateProjected));
+		candidateRecord.setSeqNo(seqNoCounter);
+		candidateRecord.setQty(new BigDecimal(qty));
+		save(candidateRecord);
+
+		final I_MD_Candidate_ATP_QueryResult viewRecord = newInstance(I_MD_Candidate_ATP_QueryResult.class);
+		viewRecord.setM_Product_ID(PRODUCT_ID);
+		viewRecord.setM_Warehouse_ID(WAREHOUSE_ID);
+		viewRecord.setC_BPartner_Customer_ID(BPartnerId.toRepoId(bpartnerId));
+		viewRecord.setStorageAttributesKey(STORAGE_ATTRIBUTES_KEY.getAsString());
+		viewRecord.setDateProjected(TimeUtil.asTimestamp(dateProjected));
+		viewRecord.setSeqNo(seqNoCounter);
+		viewRecord.setQty(new BigDecimal(qty));
+		save(viewRecord);
+
+		seqNoCounter++;
+
+		return candidateRecord;
+	}
+}
@@ -72,7 +72,7 @@ public class AvailableToPromiseRepositoryTest
 	{
 		AdempiereTestHelper.get().init();
 
-		availableToPromiseRepository = new AvailableToPromiseRepository();
+		availableToPromiseRepository = new AvailableToPromiseRepository(new AvailableToPromiseIndex());
 	}
 
 	/**
@@ -0,0 +1,14 @@
+-- 2019-02-11T10:12:41.330
+-- I forgot to set the DICTIONARY_ID_COMMENTS System Configurator
+INSERT INTO AD_Process (AccessLevel,AD_Client_ID,AD_Org_ID,AD_Process_ID,AllowProcessReRun,Classname,CopyFromProcess,Created,CreatedBy,Description,EntityType,IsActive,IsApplySecuritySettings,IsBetaFunctionality,IsDirectPrint,IsOneInstanceOnly,IsReport,IsServerProcess,IsUseBPartnerLanguage,LockWaitTimeout,Name,RefreshAllAfterExecution,ShowHelp,Type,Updated,UpdatedBy,Value) VALUES ('4',0,0,541045,'Y','de.metas.material.dispo.commons.process.MD_Candidate_ATP_Index_Check','N',TO_TIMESTAMP('2019-02-11 10:12:41','YYYY-MM-DD HH24:MI:SS'),100,'Compares the in-memory ATP index of this server with the database and schedules a rebuild if they differ','de.metas.material.dispo','Y','N','N','N','Y','N','N','Y',0,'ATP Index prüfen','N','Y','Java',TO_TIMESTAMP('2019-02-11 10:12:41','YYYY-MM-DD HH24:MI:SS'),100,'MD_Candidate_ATP_Index_Check')
+;
+
+-- 2019-02-11T10:12:41.336
+-- I forgot to set the DICTIONARY_ID_COMMENTS System Configurator
+INSERT INTO AD_Process_Trl (AD_Language,AD_Process_ID, Description,Help,Name, IsTranslated,AD_Client_ID,AD_Org_ID,Created,Createdby,Updated,UpdatedBy) SELECT l.AD_Language,t.AD_Process_ID, t.Description,t.Help,t.Name, 'N',t.AD_Client_ID,t.AD_Org_ID,t.Created,t.Createdby,t.Updated,t.UpdatedBy FROM AD_Language l, AD_Process t WHERE l.IsActive='Y' AND l.IsSystemLanguage='Y' AND l.IsBaseLanguage='N' AND t.AD_Process_ID=541045 AND NOT EXISTS (SELECT 1 FROM AD_Process_Trl tt WHERE tt.AD_Language=l.AD_Language AND tt.AD_Process_ID=t.AD_Process_ID)
+;
+
+-- 2019-02-11T10:13:05.512
+-- I forgot to set the DICTIONARY_ID_COMMENTS System Configurator
+UPDATE AD_Process_Trl SET IsTranslated='Y',Name='Check ATP index',Updated=TO_TIMESTAMP('2019-02-11 10:13:05','YYYY-MM-DD HH24:MI:SS'),UpdatedBy=100 WHERE AD_Language='en_US' AND AD_Process_ID=541045
+;
@@ -0,0 +1,14 @@
+-- 2019-02-13T09:41:17.208
+-- I forgot to set the DICTIONARY_ID_COMMENTS System Configurator
+INSERT INTO AD_Process (AccessLevel,AD_Client_ID,AD_Org_ID,AD_Process_ID,AllowProcessReRun,Classname,CopyFromProcess,Created,CreatedBy,Description,EntityType,IsActive,IsApplySecuritySettings,IsBetaFunctionality,IsDirectPrint,IsOneInstanceOnly,IsReport,IsServerProcess,IsUseBPartnerLanguage,LockWaitTimeout,Name,RefreshAllAfterExecution,ShowHelp,Type,Updated,UpdatedBy,Value) VALUES ('4',0,0,541046,'Y','de.metas.material.cockpit.view.process.MD_Cockpit_WriteBehind_Replay','N',TO_TIMESTAMP('2019-02-13 09:41:17','YYYY-MM-DD HH24:MI:SS'),100,'Wendet die gepufferten MD_Cockpit-Änderungen an, die seit mindestens 10 Minuten im Ereignisprotokoll als ausstehend vermerkt sind, z.B. nach einem Serverabsturz','de.metas.material.cockpit','Y','N','N','N','Y','N','N','Y',0,'Ausstehende Material-Cockpit Änderungen nachholen','N','Y','Java',TO_TIMESTAMP('2019-02-13 09:41:17','YYYY-MM-DD HH24:MI:SS'),100,'MD_Cockpit_WriteBehind_Replay')
+;
+
+-- 2019-02-13T09:41:17.214
+-- I forgot to set the DICTIONARY_ID_COMMENTS System Configurator
+INSERT INTO AD_Process_Trl (AD_Language,AD_Process_ID, Description,Help,Name, IsTranslated,AD_Client_ID,AD_Org_ID,Created,Createdby,Updated,UpdatedBy) SELECT l.AD_Language,t.AD_Process_ID, t.Description,t.Help,t.Name, 'N',t.AD_Client_ID,t.AD_Org_ID,t.Created,t.Createdby,t.Updated,t.UpdatedBy FROM AD_Language l, AD_Process t WHERE l.IsActive='Y' AND l.IsSystemLanguage='Y' AND l.IsBaseLanguage='N' AND t.AD_Process_ID=541046 AND NOT EXISTS (SELECT 1 FROM AD_Process_Trl tt WHERE tt.AD_Language=l.AD_Language AND tt.AD_Process_ID=t.AD_Process_ID)
+;
+
+-- 2019-02-13T09:41:49.660
+-- I forgot to set the DICTIONARY_ID_COMMENTS System Configurator
+UPDATE AD_Process_Trl SET IsTranslated='Y',Name='Replay pending material cockpit updates',Description='Applies the buffered MD_Cockpit updates which are marked as pending in the event log for at least 10 minutes, e.g. after a server crash',Updated=TO_TIMESTAMP('2019-02-13 09:41:49','YYYY-MM-DD HH24:MI:SS'),UpdatedBy=100 WHERE AD_Language='en_US' AND AD_Process_ID=541046
+;
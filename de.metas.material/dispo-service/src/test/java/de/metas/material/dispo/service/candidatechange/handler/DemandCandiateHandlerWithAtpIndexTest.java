@@ -0,0 +1,221 @@
+package de.metas.material.dispo.service.candidatechange.handler;
+
+import static de.metas.material.event.EventTestHelper.BEFORE_NOW;
+import static de.metas.material.event.EventTestHelper.CLIENT_ID;
+import static de.metas.material.event.EventTestHelper.NOW;
+import static de.metas.material.event.EventTestHelper.ORG_ID;
+import static de.metas.material.event.EventTestHelper.PRODUCT_ID;
+import static de.metas.material.event.EventTestHelper.STORAGE_ATTRIBUTES_KEY;
+import static de.metas.material.event.EventTestHelper.WAREHOUSE_ID;
+import static de.metas.material.event.EventTestHelper.createProductDescriptor;
+import static org.adempiere.model.InterfaceWrapperHelper.newInstance;
+import static org.adempiere.model.InterfaceWrapperHelper.save;
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.math.BigDecimal;
+import java.util.HashMap;
+import java.util.Map;
+
+import org.adempiere.ad.modelvalidator.IModelInterceptorRegistry;
+import org.adempiere.ad.modelvalidator.annotations.Interceptor;
+import org.adempiere.ad.modelvalidator.annotations.ModelChange;
+import org.adempiere.ad.trx.api.ITrxManager;
+import org.adempiere.test.AdempiereTestHelper;
+import org.adempiere.test.AdempiereTestWatcher;
+import org.compiere.model.ModelValidator;
+import org.compiere.util.TimeUtil;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TestWatcher;
+
+import de.metas.material.dispo.commons.candidate.Candidate;
+import de.metas.material.dispo.commons.candidate.CandidateType;
+import de.metas.material.dispo.commons.repository.CandidateRepositoryRetrieval;
+import de.metas.material.dispo.commons.repository.CandidateRepositoryWriteService;
+import de.metas.material.dispo.commons.repository.atp.AvailableToPromiseIndex;
+import de.metas.material.dispo.commons.repository.atp.AvailableToPromiseMultiQuery;
+import de.metas.material.dispo.commons.repository.atp.AvailableToPromiseRepository;
+import de.metas.material.dispo.model.I_MD_Candidate;
+import de.metas.material.dispo.model.I_MD_Candidate_ATP_QueryResult;
+import de.metas.material.dispo.model.X_MD_Candidate;
+import de.metas.material.dispo.service.candidatechange.StockCandidateService;
+import de.metas.material.event.MaterialEvent;
+import de.metas.material.event.PostMaterialEventService;
+import de.metas.material.event.commons.MaterialDescriptor;
+import de.metas.material.event.supplyrequired.SupplyRequiredEvent;
+import de.metas.util.Services;
+import mockit.Mocked;
+import mockit.Verifications;
+
+/*
+ * #%L
+ * metasfresh-material-dispo-service
+ * %%
+ * Copyright (C) 2019 metas GmbH
+ * %%
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as
+ * published by the Free Software Foundation, either version 2 of the
+ * License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public
+ * License along with this program.  If not, see
+ * <http://www.gnu.org/licenses/gpl-2.0.html>.
+ * #L%
+ */
+
+/**
+ * Like {@link DemandCandiateHandlerTest}, but with a real {@link AvailableToPromiseRepository} which is backed by a loaded {@link AvailableToPromiseIndex}.
+ */
+public class DemandCandiateHandlerWithAtpIndexTest
+{
+	/** Watches the current tests and dumps the database to console in case of failure */
+	@Rule
+	public final TestWatcher testWatcher = new AdempiereTestWatcher();
+
+	@Mocked
+	private PostMaterialEventService postMaterialEventService;
+
+	private AvailableToPromiseIndex availableToPromiseIndex;
+
+	private AvailableToPromiseRepository availableToPromiseRepository;
+
+	private DemandCandiateHandler demandCandidateHandler;
+
+	@Before
+	public void init()
+	{
+		AdempiereTestHelper.get().init();
+
+		// what de_metas_material.retrieve_atp_at_date(...) returns in the real database
+		Services.get(IModelInterceptorRegistry.class).addModelInterceptor(new MD_Candidate_ATP_QueryResult_Mirror());
+
+		final CandidateRepositoryWriteService candidateRepositoryWriteService = new CandidateRepositoryWriteService();
+		final CandidateRepositoryRetrieval candidateRepositoryRetrieval = new CandidateRepositoryRetrieval();
+
+		final StockCandidateService stockCandidateService = new StockCandidateService(
+				candidateRepositoryRetrieval,
+				candidateRepositoryWriteService);
+
+		availableToPromiseIndex = new AvailableToPromiseIndex();
+		availableToPromiseRepository = new AvailableToPromiseRepository(availableToPromiseIndex);
+
+		demandCandidateHandler = new DemandCandiateHandler(
+				candidateRepositoryRetrieval,
+				candidateRepositoryWriteService,
+				postMaterialEventService,
+				availableToPromiseRepository,
+				stockCandidateService);
+	}
+
+	/**
+	 * The demand and its stock candidate are not yet committed when the handler checks the ATP,
+	 * so the handler has to see the qty from the database and not the one from the index.
+	 */
+	@Test
+	public void onCandidateNewOrChange_unsufficient_stock_withinTrx()
+	{
+		createStockRecord("10");
+		availableToPromiseIndex.startNow();
+
+		final Candidate candidate = createDemandCandidateWithQuantity("23");
+		final AvailableToPromiseMultiQuery query = AvailableToPromiseMultiQuery.forDescriptorAndAllPossibleBPartnerIds(candidate.getMaterialDescriptor());
+		assertThat(availableToPromiseRepository.retrieveAvailableStockQtySum(query)).isEqualByComparingTo("10"); // guard
+
+		Services.get(ITrxManager.class).runInNewTrx(() -> {
+
+			demandCandidateHandler.onCandidateNewOrChange(candidate);
+
+			assertThat(availableToPromiseIndex.isUsableFor(query)).isFalse();
+		});
+
+		assertDemandEventWasFiredWithQuantity("13");
+
+		// after commit, the index has the new stock and is used again
+		assertThat(availableToPromiseIndex.isUsableFor(query)).isTrue();
+		assertThat(availableToPromiseRepository.retrieveAvailableStockQtySum(query)).isEqualByComparingTo("-13");
+	}
+
+	private static void createStockRecord(final String qty)
+	{
+		final I_MD_Candidate stockRecord = newInstance(I_MD_Candidate.class);
+		stockRecord.setMD_Candidate_Type(X_MD_Candidate.MD_CANDIDATE_TYPE_STOCK);
+		stockRecord.setIsActive(true);
+		stockRecord.setAD_Org_ID(ORG_ID);
+		stockRecord.setM_Product_ID(PRODUCT_ID);
+		stockRecord.setM_Warehouse_ID(WAREHOUSE_ID);
+		stockRecord.setStorageAttributesKey(STORAGE_ATTRIBUTES_KEY.getAsString());
+		stockRecord.setDateProjected(TimeUtil.asTimestamp(BEFORE_NOW));
+		stockRecord.setSeqNo(1);
+		stockRecord.setQty(new BigDecimal(qty));
+		save(stockRecord);
+	}
+
+	private static Candidate createDemandCandidateWithQuantity(final String quantity)
+	{
+		final MaterialDescriptor materialDescriptor = MaterialDescriptor.builder()
+				.productDescriptor(createProductDescriptor())
+				.warehouseId(WAREHOUSE_ID)
+				.quantity(new BigDecimal(quantity))
+				.date(NOW)
+				.build();
+		return Candidate.builder()
+				.type(CandidateType.DEMAND)
+				.clientId(CLIENT_ID)
+				.orgId(ORG_ID)
+				.materialDescriptor(materialDescriptor)
+				.build();
+	}
+
+	private void assertDemandEventWasFiredWithQuantity(final String expectedQty)
+	{
+		// @formatter:off
+		new Verifications()
+		{{
+			MaterialEvent event;
+			postMaterialEventService.postEventAfterNextCommit(event = withCapture());
+
+			assertThat(event).isInstanceOf(SupplyRequiredEvent.class);
+			final MaterialDescriptor materialDescriptorOfEvent = ((SupplyRequiredEvent)event).getSupplyRequiredDescriptor().getMaterialDescriptor();
+			assertThat(materialDescriptorOfEvent.getProductId()).isEqualTo(PRODUCT_ID);
+			assertThat(materialDescriptorOfEvent.getWarehouseId()).isEqualTo(WAREHOUSE_ID);
+			assertThat(materialDescriptorOfEvent.getQuantity()).isEqualByComparingTo(expectedQty);
+		}}; // @formatter:on
+	}
+
+	/**
+	 * Keeps one {@link I_MD_Candidate_ATP_QueryResult} per stock candidate, within the candidate's transaction.
+	 */
+	@Interceptor(I_MD_Candidate.class)
+	public static class MD_Candidate_ATP_QueryResult_Mirror
+	{
+		private final Map<Integer, I_MD_Candidate_ATP_QueryResult> viewRecordsByCandidateId = new HashMap<>();
+
+		@ModelChange(timings = { ModelValidator.TYPE_AFTER_NEW, ModelValidator.TYPE_AFTER_CHANGE })
+		public void mirrorStockCandidate(final I_MD_Candidate candidateRecord)
+		{
+			if (!X_MD_Candidate.MD_CANDIDATE_TYPE_STOCK.equals(candidateRecord.getMD_Candidate_Type()))
+			{
+				return;
+			}
+
+			final I_MD_Candidate_ATP_QueryResult viewRecord = viewRecordsByCandidateId.computeIfAbsent(
+					candidateRecord.getMD_Candidate_ID(),
+					candidateId -> newInstance(I_MD_Candidate_ATP_QueryResult.class, candidateRecord));
+			viewRecord.setM_Product_ID(candidateRecord.getM_Product_ID());
+			viewRecord.setM_Warehouse_ID(candidateRecord.getM_Warehouse_ID());
+			viewRecord.setC_BPartner_Customer_ID(candidateRecord.getC_BPartner_Customer_ID());
+			viewRecord.setStorageAttributesKey(candidateRecord.getStorageAttributesKey());
+			viewRecord.setDateProjected(candidateRecord.getDateProjected());
+			viewRecord.setSeqNo(candidateRecord.getSeqNo());
+			viewRecord.setQty(candidateRecord.getQty());
+			save(viewRecord);
+		}
+	}
+}
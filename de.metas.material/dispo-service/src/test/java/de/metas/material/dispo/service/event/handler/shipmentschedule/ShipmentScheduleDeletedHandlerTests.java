@@ -17,6 +17,7 @@ import de.metas.material.dispo.commons.DispoTestUtils;
 import de.metas.material.dispo.commons.candidate.CandidateType;
 import de.metas.material.dispo.commons.repository.CandidateRepositoryRetrieval;
 import de.metas.material.dispo.commons.repository.CandidateRepositoryWriteService;
+import de.metas.material.dispo.commons.repository.atp.AvailableToPromiseIndex;
 import de.metas.material.dispo.commons.repository.atp.AvailableToPromiseRepository;
 import de.metas.material.dispo.model.I_MD_Candidate;
 import de.metas.material.dispo.service.candidatechange.CandidateChangeService;
@@ -68,7 +69,7 @@ public class ShipmentScheduleDeletedHandlerTests
 
 		final CandidateRepositoryWriteService candidateRepositoryCommands = new CandidateRepositoryWriteService();
 
-		atpRepository = new AvailableToPromiseRepository();
+		atpRepository = new AvailableToPromiseRepository(new AvailableToPromiseIndex());
 
 		final CandidateChangeService candidateChangeHandler = new CandidateChangeService(ImmutableList.of(
 				new DemandCandiateHandler(
@@ -83,7 +84,7 @@ public class ShipmentScheduleDeletedHandlerTests
 		shipmentScheduleCreatedHandler = new ShipmentScheduleCreatedHandler(
 				candidateChangeHandler,
 				candidateRepositoryRetrieval);
-		atpRepository = new AvailableToPromiseRepository();
+		atpRepository = new AvailableToPromiseRepository(new AvailableToPromiseIndex());
 
 		shipmentScheduleDeletedHandler = new ShipmentScheduleDeletedHandler(candidateChangeHandler, candidateRepositoryRetrieval);
 	}
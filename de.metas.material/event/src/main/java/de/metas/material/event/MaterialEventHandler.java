@@ -1,6 +1,7 @@
 package de.metas.material.event;
 
 import java.util.Collection;
+import java.util.List;
 
 import de.metas.util.ILoggable;
 import de.metas.util.Loggables;
@@ -55,6 +56,18 @@ public interface MaterialEventHandler<T extends MaterialEvent>
 	 */
 	void handleEvent(T event);
 
+	/**
+	 * Invoked with all events of this handler's types that were posted together (usually because they were posted in one transaction), in the order they were posted.
+	 * <p>
+	 * The default implementation calls {@link #handleEvent(MaterialEvent)} for each event.
+	 * Implementors can override it to process the whole batch with few reads and writes.
+	 * Note that {@link MaterialEventHandlerRegistry} only invokes this method if it is overridden; if it fails, the registry rolls back its changes and invokes {@link #handleEvent(MaterialEvent)} for each event.
+	 */
+	default void handleEvents(final List<T> events)
+	{
+		events.forEach(this::handleEvent);
+	}
+
 	/**
 	 * Implementors may validate the event before handling it. This allows for "dump" events that can be successfully posted even if the posting code is buggy etc.<br>
 	 * Errors can be logged to the event log.
@@ -1,18 +1,24 @@
 package de.metas.material.event;
 
 import java.util.Collection;
+import java.util.List;
 import java.util.Optional;
 
+import org.adempiere.ad.trx.api.ITrxManager;
+import org.adempiere.exceptions.AdempiereException;
 import org.slf4j.Logger;
 import org.springframework.stereotype.Service;
 
 import com.google.common.collect.ImmutableCollection;
 import com.google.common.collect.ImmutableList;
 import com.google.common.collect.ImmutableMultimap;
+import com.google.common.collect.ListMultimap;
+import com.google.common.collect.MultimapBuilder;
 
 import de.metas.event.log.EventLogUserService;
 import de.metas.event.log.EventLogUserService.InvokeHandlerandLogRequest;
 import de.metas.logging.LogManager;
+import de.metas.util.Services;
 import lombok.NonNull;
 
 /*
@@ -73,15 +79,89 @@ public class MaterialEventHandlerRegistry
 	{
 		final ImmutableCollection<MaterialEventHandler> handlersForEventClass = eventType2Handler.get(event.getClass());
 
-		handlersForEventClass.forEach(handler -> {
+		handlersForEventClass.forEach(handler -> invokeHandlerAndLog(handler, event));
+	}
 
-			@SuppressWarnings("unchecked")
-			final InvokeHandlerandLogRequest request = InvokeHandlerandLogRequest.builder()
-					.handlerClass(handler.getClass())
-					.invokaction(() -> handler.handleEvent(event))
-					.build();
+	private void invokeHandlerAndLog(@NonNull final MaterialEventHandler handler, @NonNull final MaterialEvent event)
+	{
+		@SuppressWarnings("unchecked")
+		final InvokeHandlerandLogRequest request = InvokeHandlerandLogRequest.builder()
+				.handlerClass(handler.getClass())
+				.invokaction(() -> handler.handleEvent(event))
+				.build();
+
+		eventLogUserService.invokeHandlerAndLog(request);
+	}
+
+	/**
+	 * Invokes the handlers with the given events. Each handler gets its events in the order they were posted, but the handlers are invoked one after another.
+	 * <p>
+	 * Handlers which override {@link MaterialEventHandler#handleEvents(List)} are invoked once with all their events.
+	 * If that fails, its changes are rolled back and the handler is invoked with one event after the other, like all other handlers.
+	 * This way, one failing event does not prevent the others from being handled, and each event has its own event log entry.
+	 */
+	public final void onEvents(@NonNull final List<MaterialEvent> events)
+	{
+		if (events.size() == 1)
+		{
+			onEvent(events.get(0));
+			return;
+		}
+
+		final ListMultimap<MaterialEventHandler, MaterialEvent> handler2events = MultimapBuilder.linkedHashKeys().arrayListValues().build();
+		for (final MaterialEvent event : events)
+		{
+			eventType2Handler.get(event.getClass()).forEach(handler -> handler2events.put(handler, event));
+		}
+
+		for (final MaterialEventHandler handler : handler2events.keySet())
+		{
+			final List<MaterialEvent> eventsForHandler = handler2events.get(handler);
+			if (eventsForHandler.size() > 1
+					&& isBatchHandler(handler)
+					&& tryInvokeHandlerAndLog(handler, eventsForHandler))
+			{
+				continue;
+			}
+
+			eventsForHandler.forEach(event -> invokeHandlerAndLog(handler, event));
+		}
+	}
+
+	/**
+	 * @return {@code true} if the handler handled all events, {@code false} if it failed and nothing was changed
+	 */
+	private boolean tryInvokeHandlerAndLog(@NonNull final MaterialEventHandler handler, @NonNull final List<MaterialEvent> events)
+	{
+		@SuppressWarnings("unchecked")
+		final InvokeHandlerandLogRequest request = InvokeHandlerandLogRequest.builder()
+				.handlerClass(handler.getClass())
+				// run within a savepoint, so that the batch's changes are rolled back if it fails
+				.invokaction(() -> Services.get(ITrxManager.class).runInThreadInheritedTrx(() -> handler.handleEvents(events)))
+				.rethrowFailure(true)
+				.build();
 
+		try
+		{
 			eventLogUserService.invokeHandlerAndLog(request);
-		});
+			return true;
+		}
+		catch (final RuntimeException e)
+		{
+			logger.warn("{} failed to handle {} events together; handling them one by one", handler, events.size(), e);
+			return false;
+		}
+	}
+
+	private static boolean isBatchHandler(@NonNull final MaterialEventHandler handler)
+	{
+		try
+		{
+			return !handler.getClass().getMethod("handleEvents", List.class).isDefault();
+		}
+		catch (final NoSuchMethodException e)
+		{
+			throw AdempiereException.wrapIfNeeded(e);
+		}
 	}
 }
@@ -1,10 +1,20 @@
 package de.metas.material.event;
 
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.Supplier;
+
+import org.adempiere.ad.trx.api.ITrx;
 import org.adempiere.ad.trx.api.ITrxListenerManager.TrxEventTiming;
 import org.adempiere.ad.trx.api.ITrxManager;
+import org.adempiere.ad.trx.api.OnTrxMissingPolicy;
+import org.adempiere.service.ISysConfigBL;
 import org.slf4j.Logger;
 import org.springframework.stereotype.Service;
 
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.Lists;
+
 import de.metas.logging.LogManager;
 import de.metas.material.event.eventbus.MetasfreshEventBusService;
 import de.metas.util.Services;
@@ -46,18 +56,45 @@ public class PostMaterialEventService
 	}
 
 	/**
-	 * Adds a trx listener to make sure the given {@code event} will be fired via {@link #postEventNow(MaterialEvent)} when the given {@code trxName} is committed.
-	 *
-	 * @param event
-	 * @param trxName
+	 * Events which are posted after the same commit are sent together, in chunks of at most this many events.
+	 */
+	private static final String SYSCONFIG_MaxEventsPerBatch = "de.metas.material.event.PostMaterialEventService.MaxEventsPerBatch";
+	private static final int DEFAULT_MaxEventsPerBatch = 500;
+
+	private static final String TRX_PROPERTY_EventsCollector = PostMaterialEventService.class.getName() + ".EventsCollector";
+
+	/**
+	 * Makes sure the given {@code event} will be fired when the current transaction is committed.
+	 * All events of one transaction are fired together via {@link #postEventsNow(List)}.
+	 * If there is no transaction, the event is fired right away.
 	 */
 	public void postEventAfterNextCommit(@NonNull final MaterialEvent event)
+	{
+		postEventsAfterNextCommit(() -> ImmutableList.of(event));
+	}
+
+	/**
+	 * Like {@link #postEventAfterNextCommit(MaterialEvent)}, but the events are created by the given supplier after the commit, e.g. because their creation needs committed data.
+	 */
+	public void postEventsAfterNextCommit(@NonNull final Supplier<List<MaterialEvent>> eventsSupplier)
 	{
 		final ITrxManager trxManager = Services.get(ITrxManager.class);
+		final ITrx trx = trxManager.getThreadInheritedTrx(OnTrxMissingPolicy.ReturnTrxNone);
+		if (!trxManager.isActive(trx))
+		{
+			postEventsNow(eventsSupplier.get());
+			return;
+		}
 
-		trxManager.getCurrentTrxListenerManagerOrAutoCommit()
-				.newEventListener(TrxEventTiming.AFTER_COMMIT)
-				.registerHandlingMethod(innerTrx -> postEventNow(event));
+		final EventsCollector collector = trx.getProperty(TRX_PROPERTY_EventsCollector, () -> {
+			final EventsCollector newCollector = new EventsCollector();
+			trx.getTrxListenerManager()
+					.newEventListener(TrxEventTiming.AFTER_COMMIT)
+					.invokeMethodJustOnce(false) // the trx might be committed more than once
+					.registerHandlingMethod(innerTrx -> postEventsNow(newCollector.getEventsAndClear()));
+			return newCollector;
+		});
+		collector.add(eventsSupplier);
 	}
 
 	/**
@@ -70,4 +107,47 @@ public class PostMaterialEventService
 		materialEventService.postEvent(event);
 		logger.info("Posted MaterialEvent={}", event);
 	}
+
+	/**
+	 * Fires the given events like {@link #postEventNow(MaterialEvent)}, but with as few messages as possible.
+	 */
+	public void postEventsNow(@NonNull final List<MaterialEvent> events)
+	{
+		if (events.isEmpty())
+		{
+			return;
+		}
+
+		final int maxEventsPerBatch = Services.get(ISysConfigBL.class).getIntValue(SYSCONFIG_MaxEventsPerBatch, DEFAULT_MaxEventsPerBatch);
+		for (final List<MaterialEvent> batch : Lists.partition(events, Math.max(maxEventsPerBatch, 1)))
+		{
+			materialEventService.postEvents(batch);
+			logger.info("Posted {} MaterialEvents={}", batch.size(), batch);
+		}
+	}
+
+	/** Collects the events to be posted when a transaction is committed */
+	private static final class EventsCollector
+	{
+		private final List<Supplier<List<MaterialEvent>>> eventsSuppliers = new ArrayList<>();
+
+		public synchronized void add(@NonNull final Supplier<List<MaterialEvent>> eventsSupplier)
+		{
+			eventsSuppliers.add(eventsSupplier);
+		}
+
+		public List<MaterialEvent> getEventsAndClear()
+		{
+			final ImmutableList<Supplier<List<MaterialEvent>>> eventsSuppliersToPost;
+			synchronized (this)
+			{
+				eventsSuppliersToPost = ImmutableList.copyOf(eventsSuppliers);
+				eventsSuppliers.clear();
+			}
+
+			return eventsSuppliersToPost.stream()
+					.flatMap(eventsSupplier -> eventsSupplier.get().stream())
+					.collect(ImmutableList.toImmutableList());
+		}
+	}
 }
@@ -0,0 +1,59 @@
+package de.metas.material.event.eventbus;
+
+import java.util.List;
+
+import com.fasterxml.jackson.annotation.JsonAutoDetect;
+import com.fasterxml.jackson.annotation.JsonAutoDetect.Visibility;
+import com.fasterxml.jackson.annotation.JsonCreator;
+import com.fasterxml.jackson.annotation.JsonProperty;
+import com.google.common.collect.ImmutableList;
+
+import de.metas.material.event.MaterialEvent;
+import de.metas.util.Check;
+import lombok.NonNull;
+import lombok.Value;
+
+/*
+ * #%L
+ * metasfresh-material-event
+ * %%
+ * Copyright (C) 2019 metas GmbH
+ * %%
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as
+ * published by the Free Software Foundation, either version 2 of the
+ * License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public
+ * License along with this program.  If not, see
+ * <http://www.gnu.org/licenses/gpl-2.0.html>.
+ * #L%
+ */
+
+/**
+ * Envelope which allows to send many {@link MaterialEvent}s with one metasfresh {@link de.metas.event.Event}.
+ */
+@Value
+@JsonAutoDetect(fieldVisibility = Visibility.ANY, getterVisibility = Visibility.NONE, isGetterVisibility = Visibility.NONE, setterVisibility = Visibility.NONE)
+final class MaterialEventBatch
+{
+	public static MaterialEventBatch of(@NonNull final List<MaterialEvent> events)
+	{
+		return new MaterialEventBatch(events);
+	}
+
+	@JsonProperty("events")
+	ImmutableList<MaterialEvent> events;
+
+	@JsonCreator
+	private MaterialEventBatch(@JsonProperty("events") @NonNull final List<MaterialEvent> events)
+	{
+		Check.assumeNotEmpty(events, "events is not empty");
+		this.events = ImmutableList.copyOf(events);
+	}
+}
@@ -1,7 +1,11 @@
 package de.metas.material.event.eventbus;
 
+import java.util.List;
+
 import org.springframework.stereotype.Service;
 
+import com.google.common.collect.ImmutableList;
+
 import de.metas.event.Event;
 import de.metas.event.SimpleObjectSerializer;
 import de.metas.material.event.MaterialEvent;
@@ -39,6 +43,23 @@ import lombok.NonNull;
 public class MaterialEventConverter
 {
 	private static final String PROPERTY_MATERIAL_EVENT = "MaterialEvent";
+	private static final String PROPERTY_MATERIAL_EVENT_BATCH = "MaterialEventBatch";
+
+	/**
+	 * @return the material events of the given metasfresh event; works with both events created by {@link #fromMaterialEvent(MaterialEvent)} and by {@link #fromMaterialEvents(List)}.
+	 */
+	public List<MaterialEvent> toMaterialEvents(@NonNull final Event metasfreshEvent)
+	{
+		final String batchStr = metasfreshEvent.getProperty(PROPERTY_MATERIAL_EVENT_BATCH);
+		if (batchStr == null)
+		{
+			return ImmutableList.of(toMaterialEvent(metasfreshEvent));
+		}
+
+		final MaterialEventBatch batch = SimpleObjectSerializer.get()
+				.deserialize(batchStr, MaterialEventBatch.class);
+		return batch.getEvents();
+	}
 
 	public MaterialEvent toMaterialEvent(@NonNull final Event metasfreshEvent)
 	{
@@ -64,4 +85,22 @@ public class MaterialEventConverter
 				.storeEvent()
 				.build();
 	}
+
+	/**
+	 * Like {@link #fromMaterialEvent(MaterialEvent)}, but puts all the given events into one metasfresh event.
+	 */
+	public Event fromMaterialEvents(@NonNull final List<MaterialEvent> events)
+	{
+		if (events.size() == 1)
+		{
+			return fromMaterialEvent(events.get(0));
+		}
+
+		final String batchStr = SimpleObjectSerializer.get().serialize(MaterialEventBatch.of(events));
+
+		return Event.builder()
+				.putProperty(PROPERTY_MATERIAL_EVENT_BATCH, batchStr)
+				.storeEvent()
+				.build();
+	}
 }
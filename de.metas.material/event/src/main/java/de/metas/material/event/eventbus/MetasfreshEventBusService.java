@@ -1,5 +1,7 @@
 package de.metas.material.event.eventbus;
 
+import java.util.List;
+
 import org.slf4j.Logger;
 
 import de.metas.event.Event;
@@ -99,6 +101,19 @@ public final class MetasfreshEventBusService
 		getEventBus().postEvent(realEvent);
 	}
 
+	/**
+	 * Posts the given events with one metasfresh event, so they are serialized and sent in one go.
+	 */
+	public void postEvents(@NonNull final List<MaterialEvent> events)
+	{
+		if (events.isEmpty())
+		{
+			return;
+		}
+		final Event realEvent = materialEventConverter.fromMaterialEvents(events);
+		getEventBus().postEvent(realEvent);
+	}
+
 	public void subscribe(@NonNull final IEventListener internalListener)
 	{
 		getEventBus().subscribe(internalListener);
@@ -1,5 +1,6 @@
 package de.metas.material.event.eventbus;
 
+import java.util.List;
 import java.util.Properties;
 
 import org.adempiere.ad.trx.api.ITrxManager;
@@ -10,12 +11,16 @@ import org.slf4j.Logger;
 import org.springframework.context.annotation.DependsOn;
 import org.springframework.stereotype.Service;
 
+import com.google.common.collect.ListMultimap;
+import com.google.common.collect.MultimapBuilder;
+
 import de.metas.event.Event;
 import de.metas.event.IEventBus;
 import de.metas.event.IEventListener;
 import de.metas.logging.LogManager;
 import de.metas.material.event.MaterialEvent;
 import de.metas.material.event.MaterialEventHandlerRegistry;
+import de.metas.material.event.commons.EventDescriptor;
 import de.metas.util.Services;
 import lombok.NonNull;
 
@@ -58,26 +63,40 @@ public class MetasfreshEventListener
 		@Override
 		public void onEvent(@NonNull final IEventBus eventBus, @NonNull final Event event)
 		{
-			final MaterialEvent lightWeightEvent = materialEventConverter.toMaterialEvent(event);
-			logger.info("Received MaterialEvent={}", lightWeightEvent);
-
-			//
-			// make sure that every record we create has the correct AD_Client_ID and AD_Org_ID
-			final Properties temporaryCtx = Env.copyCtx(Env.getCtx());
+			final List<MaterialEvent> lightWeightEvents = materialEventConverter.toMaterialEvents(event);
+			if (lightWeightEvents.size() == 1)
+			{
+				logger.info("Received MaterialEvent={}", lightWeightEvents.get(0));
+			}
+			else
+			{
+				logger.info("Received {} MaterialEvents={}", lightWeightEvents.size(), lightWeightEvents);
+			}
 
-			Env.setContext(temporaryCtx, Env.CTXNAME_AD_Client_ID, lightWeightEvent.getEventDescriptor().getClientId());
-			Env.setContext(temporaryCtx, Env.CTXNAME_AD_Org_ID, lightWeightEvent.getEventDescriptor().getOrgId());
+			// usually all events of one batch have the same client and org
+			final ListMultimap<EventDescriptor, MaterialEvent> clientAndOrg2events = MultimapBuilder.linkedHashKeys().arrayListValues().build();
+			lightWeightEvents.forEach(lightWeightEvent -> clientAndOrg2events.put(lightWeightEvent.getEventDescriptor(), lightWeightEvent));
 
-			try (final IAutoCloseable c = Env.switchContext(temporaryCtx))
+			for (final EventDescriptor clientAndOrg : clientAndOrg2events.keySet())
 			{
-				invokeListenerInTrx(lightWeightEvent);
+				//
+				// make sure that every record we create has the correct AD_Client_ID and AD_Org_ID
+				final Properties temporaryCtx = Env.copyCtx(Env.getCtx());
+
+				Env.setContext(temporaryCtx, Env.CTXNAME_AD_Client_ID, clientAndOrg.getClientId());
+				Env.setContext(temporaryCtx, Env.CTXNAME_AD_Org_ID, clientAndOrg.getOrgId());
+
+				try (final IAutoCloseable c = Env.switchContext(temporaryCtx))
+				{
+					invokeListenerInTrx(clientAndOrg2events.get(clientAndOrg));
+				}
 			}
 		}
 
-		private void invokeListenerInTrx(@NonNull final MaterialEvent materialEvent)
+		private void invokeListenerInTrx(@NonNull final List<MaterialEvent> materialEvents)
 		{
 			Services.get(ITrxManager.class).run(() -> {
-				materialEventHandlerRegistry.onEvent(materialEvent);
+				materialEventHandlerRegistry.onEvents(materialEvents);
 			});
 		}
 
@@ -0,0 +1,101 @@
+package de.metas.material.event.eventbus;
+
+import static de.metas.material.event.EventTestHelper.NOW;
+import static de.metas.material.event.EventTestHelper.createProductDescriptor;
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.math.BigDecimal;
+import java.util.List;
+
+import org.junit.Test;
+
+import com.google.common.collect.ImmutableList;
+
+import de.metas.event.Event;
+import de.metas.material.event.MaterialEvent;
+import de.metas.material.event.commons.EventDescriptor;
+import de.metas.material.event.stockestimate.StockEstimateCreatedEvent;
+import de.metas.material.event.stockestimate.StockEstimateDeletedEvent;
+
+/*
+ * #%L
+ * metasfresh-material-event
+ * %%
+ * Copyright (C) 2019 metas GmbH
+ * %%
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as
+ * published by the Free Software Foundation, either version 2 of the
+ * License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public
+ * License along with this program.  If not, see
+ * <http://www.gnu.org/licenses/gpl-2.0.html>.
+ * #L%
+ */
+
+public class MaterialEventConverterTest
+{
+	private final MaterialEventConverter materialEventConverter = new MaterialEventConverter();
+
+	@Test
+	public void singleEvent()
+	{
+		final MaterialEvent materialEvent = createStockEstimateCreatedEvent("3");
+
+		final Event event = materialEventConverter.fromMaterialEvent(materialEvent);
+
+		assertThat(materialEventConverter.toMaterialEvent(event)).isEqualTo(materialEvent);
+		assertThat(materialEventConverter.toMaterialEvents(event)).containsExactly(materialEvent);
+	}
+
+	@Test
+	public void batchWithOneEvent_isSentAsSingleEvent()
+	{
+		final MaterialEvent materialEvent = createStockEstimateCreatedEvent("3");
+
+		final Event event = materialEventConverter.fromMaterialEvents(ImmutableList.of(materialEvent));
+
+		assertThat(materialEventConverter.toMaterialEvent(event)).isEqualTo(materialEvent);
+	}
+
+	@Test
+	public void batch()
+	{
+		final List<MaterialEvent> materialEvents = ImmutableList.of(
+				createStockEstimateCreatedEvent("3"),
+				createStockEstimateDeletedEvent("3"),
+				createStockEstimateCreatedEvent("4"));
+
+		final Event event = materialEventConverter.fromMaterialEvents(materialEvents);
+
+		assertThat(materialEventConverter.toMaterialEvents(event)).containsExactlyElementsOf(materialEvents);
+	}
+
+	private static StockEstimateCreatedEvent createStockEstimateCreatedEvent(final String qty)
+	{
+		return StockEstimateCreatedEvent.builder()
+				.eventDescriptor(EventDescriptor.ofClientAndOrg(1, 2))
+				.productDescriptor(createProductDescriptor())
+				.date(NOW)
+				.plantId(2)
+				.quantity(new BigDecimal(qty))
+				.build();
+	}
+
+	private static StockEstimateDeletedEvent createStockEstimateDeletedEvent(final String qty)
+	{
+		return StockEstimateDeletedEvent.builder()
+				.eventDescriptor(EventDescriptor.ofClientAndOrg(1, 2))
+				.productDescriptor(createProductDescriptor())
+				.date(NOW)
+				.plantId(2)
+				.quantity(new BigDecimal(qty))
+				.build();
+	}
+}
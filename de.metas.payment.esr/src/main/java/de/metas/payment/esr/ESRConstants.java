@@ -95,6 +95,12 @@ public final class ESRConstants
 
 	public static final String SYSCONFIG_CHECK_DUPLICATED = "de.metas.payment.esr.CheckDuplicated";
 
+	/**
+	 * Y/N parameter, default <code>Y</code>. If <code>Y</code>, then the invoice reference numbers, invoices, orgs and partners which are needed to evaluate an ESR import's lines are loaded for all lines at once,
+	 * see {@link de.metas.payment.esr.dataimporter.ESRLineMatchingIndex}.
+	 */
+	public static final String SYSCONFIG_BATCH_EVALUATION = "de.metas.payment.esr.BatchEvaluation";
+
 	public static final String ESR_DIFF_INV_PARTNER = "ESR_Diff_Inv_partner";
 
 	public static final String ESR_DIFF_PAYMENT_PARTNER = "ESR_Diff_Payment_partner";
@@ -22,8 +22,10 @@ package de.metas.payment.esr.api;
  * #L%
  */
 
+import java.util.Collection;
 import java.util.Iterator;
 import java.util.List;
+import java.util.Map;
 import java.util.Properties;
 
 import org.compiere.model.I_C_Invoice;
@@ -82,6 +84,13 @@ public interface IESRImportDAO extends ISingletonService
 	 */
 	I_C_ReferenceNo_Doc retrieveESRInvoiceReferenceNumberDocument(Properties ctx, String esrReferenceNumber);
 
+	/**
+	 * Same as {@link #retrieveESRInvoiceReferenceNumberDocument(Properties, String)}, but for many ref nos at once and with a few queries.
+	 *
+	 * @return the documents by their ESR reference number; ref nos without document are not contained
+	 */
+	Map<String, I_C_ReferenceNo_Doc> retrieveESRInvoiceReferenceNumberDocuments(Properties ctx, Collection<String> esrReferenceNumbers);
+
 	/**
 	 * Retrieve the existing esr imports of the organization given as parameter (through ID)
 	 *
@@ -24,12 +24,17 @@ package de.metas.payment.esr.api.impl;
 
 
 import java.util.ArrayList;
+import java.util.Collection;
 import java.util.Collections;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.Properties;
+import java.util.Set;
 
 import org.adempiere.ad.dao.IQueryBL;
 import org.adempiere.ad.table.api.IADTableDAO;
+import org.adempiere.ad.trx.api.ITrx;
 import org.adempiere.exceptions.AdempiereException;
 import org.adempiere.model.InterfaceWrapperHelper;
 import org.adempiere.util.comparator.AccessorComparator;
@@ -39,6 +44,10 @@ import org.compiere.model.I_C_Invoice;
 import org.compiere.model.I_C_Payment;
 import org.compiere.util.Env;
 
+import com.google.common.collect.ImmutableListMultimap;
+import com.google.common.collect.ImmutableMap;
+import com.google.common.collect.ImmutableSet;
+
 import de.metas.banking.model.I_C_BankStatementLine;
 import de.metas.banking.model.I_C_BankStatementLine_Ref;
 import de.metas.cache.annotation.CacheCtx;
@@ -134,9 +143,54 @@ public abstract class AbstractESRImportDAO implements IESRImportDAO
 			return null;
 		}
 
+		final List<I_C_ReferenceNo_Doc> docs = Services.get(IReferenceNoDAO.class).retrieveAllDocAssignments(referenceNo);
+		return extractInvoiceReferenceNumberDocument(ctx, esrReferenceNumber, referenceNo, docs);
+	}
+
+	@Override
+	public Map<String, I_C_ReferenceNo_Doc> retrieveESRInvoiceReferenceNumberDocuments(final Properties ctx, final Collection<String> esrReferenceNumbers)
+	{
+		if (esrReferenceNumbers.isEmpty())
+		{
+			return ImmutableMap.of();
+		}
+
+		final Map<String, I_C_ReferenceNo> referenceNos = fetchESRInvoiceReferenceNumbers(ctx, ImmutableSet.copyOf(esrReferenceNumbers));
+		if (referenceNos.isEmpty())
+		{
+			return ImmutableMap.of();
+		}
+
+		final Set<Integer> referenceNoIds = referenceNos.values().stream()
+				.map(I_C_ReferenceNo::getC_ReferenceNo_ID)
+				.collect(ImmutableSet.toImmutableSet());
+		final ImmutableListMultimap<Integer, I_C_ReferenceNo_Doc> docsByReferenceNoId = Services.get(IQueryBL.class)
+				.createQueryBuilder(I_C_ReferenceNo_Doc.class, ctx, ITrx.TRXNAME_None)
+				.addInArrayFilter(I_C_ReferenceNo_Doc.COLUMNNAME_C_ReferenceNo_ID, referenceNoIds)
+				.create()
+				.stream(I_C_ReferenceNo_Doc.class)
+				.collect(ImmutableListMultimap.toImmutableListMultimap(I_C_ReferenceNo_Doc::getC_ReferenceNo_ID, doc -> doc));
+
+		final Map<String, I_C_ReferenceNo_Doc> result = new HashMap<>(referenceNos.size());
+		referenceNos.forEach((esrReferenceNumber, referenceNo) -> {
+			final List<I_C_ReferenceNo_Doc> docs = docsByReferenceNoId.get(referenceNo.getC_ReferenceNo_ID());
+			final I_C_ReferenceNo_Doc invoiceDoc = extractInvoiceReferenceNumberDocument(ctx, esrReferenceNumber, referenceNo, docs);
+			if (invoiceDoc != null)
+			{
+				result.put(esrReferenceNumber, invoiceDoc);
+			}
+		});
+		return result;
+	}
+
+	private static I_C_ReferenceNo_Doc extractInvoiceReferenceNumberDocument(
+			final Properties ctx,
+			final String esrReferenceNumber,
+			final I_C_ReferenceNo referenceNo,
+			final List<I_C_ReferenceNo_Doc> docs)
+	{
 		final int invoiceTableID = Services.get(IADTableDAO.class).retrieveTableId(I_C_Invoice.Table_Name);
 
-		final List<I_C_ReferenceNo_Doc> docs = Services.get(IReferenceNoDAO.class).retrieveAllDocAssignments(referenceNo);
 		final List<I_C_ReferenceNo_Doc> invoiceDocs = new ArrayList<I_C_ReferenceNo_Doc>();
 		for (final I_C_ReferenceNo_Doc doc : docs)
 		{
@@ -174,6 +228,25 @@ public abstract class AbstractESRImportDAO implements IESRImportDAO
 
 	protected abstract I_C_ReferenceNo fetchESRInvoiceReferenceNumber(@CacheCtx final Properties ctx, final String esrReferenceNumber);
 
+	/**
+	 * Fetches the reference numbers one by one. Implementations which can do better shall override this method.
+	 *
+	 * @return the reference numbers by the given ESR reference number; ESR reference numbers without C_ReferenceNo are not contained
+	 */
+	protected Map<String, I_C_ReferenceNo> fetchESRInvoiceReferenceNumbers(final Properties ctx, final Set<String> esrReferenceNumbers)
+	{
+		final Map<String, I_C_ReferenceNo> result = new HashMap<>(esrReferenceNumbers.size());
+		for (final String esrReferenceNumber : esrReferenceNumbers)
+		{
+			final I_C_ReferenceNo referenceNo = fetchESRInvoiceReferenceNumber(ctx, esrReferenceNumber);
+			if (referenceNo != null)
+			{
+				result.put(esrReferenceNumber, referenceNo);
+			}
+		}
+		return result;
+	}
+
 	@Override
 	public List<I_ESR_ImportLine> retrieveLinesForBankStatementLine(final I_C_BankStatementLine line)
 	{
@@ -75,6 +75,7 @@ import de.metas.payment.esr.api.IESRImportBL;
 import de.metas.payment.esr.api.IESRImportDAO;
 import de.metas.payment.esr.dataimporter.ESRDataLoaderFactory;
 import de.metas.payment.esr.dataimporter.ESRDataLoaderUtil;
+import de.metas.payment.esr.dataimporter.ESRLineMatchingIndex;
 import de.metas.payment.esr.dataimporter.ESRStatement;
 import de.metas.payment.esr.dataimporter.ESRTransaction;
 import de.metas.payment.esr.dataimporter.IESRDataImporter;
@@ -109,6 +110,8 @@ public class ESRImportBL implements IESRImportBL
 	// 03928
 	private static final ArrayKey NO_INVOICE_KEY = Util.mkKey("NoInvoiceKey");
 
+	private static final int IMPORT_LINES_BATCH_SIZE = 500;
+
 	private final AttachmentEntryService attachmentEntryService;
 
 	public ESRImportBL(@NonNull final AttachmentEntryService attachmentEntryService)
@@ -179,8 +182,31 @@ public class ESRImportBL implements IESRImportBL
 			countLines = Services.get(IESRImportDAO.class).countLines(esrImport, null);
 		}
 
+		final int countLinesBeforeImport = countLines;
+		final Mutable<Integer> lineNo = new Mutable<>(0);
+		final ESRImportLinesBatchInserter linesInserter = new ESRImportLinesBatchInserter(IMPORT_LINES_BATCH_SIZE, getTrxName(esrImport));
+
+		// the transactions are streamed from the importer and the lines are inserted in batches, so that we don't need to keep large files in memory
 		final IESRDataImporter loader = ESRDataLoaderFactory.createImporter(esrImport, in);
-		final ESRStatement esrStatement = loader.importData();
+		final ESRStatement esrStatement = loader.importData(esrTransaction -> {
+			lineNo.setValue(lineNo.getValue() + 1);
+
+			//
+			// create line only if does not exist
+			// if there are already lines before starting reading the file, means that we already tried to import once
+			if (countLinesBeforeImport > 0)
+			{
+				linesInserter.flush(); // also find the lines we created from this file
+				final I_ESR_ImportLine existentLine = Services.get(IESRImportDAO.class).fetchLineForESRLineText(esrImport, esrTransaction.getTransactionKey());
+				if (existentLine != null)
+				{
+					return;
+				}
+			}
+
+			linesInserter.add(createEsrImportLine(esrImport, lineNo.getValue(), esrTransaction));
+		});
+		linesInserter.flush();
 		try
 		{
 			in.close();
@@ -189,6 +215,7 @@ public class ESRImportBL implements IESRImportBL
 		{
 			throw AdempiereException.wrapIfNeeded(e);
 		}
+		logger.debug("Created {} lines for {}", linesInserter.getInsertedCount(), esrImport);
 
 		esrImport.setESR_Control_Amount(esrStatement.getCtrlAmount());
 		esrImport.setESR_Control_Trx_Qty(esrStatement.getCtrlQty());
@@ -201,31 +228,10 @@ public class ESRImportBL implements IESRImportBL
 		// TODO verify that the bankaccounts match!
 		save(esrImport);
 
-		final List<ESRTransaction> transactions = esrStatement.getTransactions();
-		int lineNo = 0;
-		for (final ESRTransaction esrTransaction : transactions)
-		{
-			lineNo++;
-
-			//
-			// create line only if does not exist
-			I_ESR_ImportLine existentLine = null;
-			// if there are already lines before starting reading the file, means that we already tried to import once
-			if (countLines > 0)
-			{
-				existentLine = Services.get(IESRImportDAO.class).fetchLineForESRLineText(esrImport, esrTransaction.getTransactionKey());
-				if (existentLine != null)
-				{
-					continue;
-				}
-			}
-
-			createEsrImportLine(esrImport, lineNo, esrTransaction);
-		}
-
 		evaluate(esrImport);
 	}
 
+	/** Creates a new line, but does not save it */
 	private I_ESR_ImportLine createEsrImportLine(final I_ESR_Import esrImport, final int lineNo, final ESRTransaction esrTransaction)
 	{
 		final I_ESR_ImportLine importLine = ESRDataLoaderUtil.newLine(esrImport);
@@ -245,11 +251,11 @@ public class ESRImportBL implements IESRImportBL
 		importLine.setESRTrxType(esrTransaction.getTrxType());
 		importLine.setESRLineText(esrTransaction.getTransactionKey());
 
-		save(importLine);
 		return importLine;
 	}
 
-	private void evaluate(final I_ESR_Import esrImport)
+	@VisibleForTesting
+	void evaluate(final I_ESR_Import esrImport)
 	{
 		BigDecimal importAmt = BigDecimal.ZERO;
 		int trxQty = 0;
@@ -257,11 +263,12 @@ public class ESRImportBL implements IESRImportBL
 		final IESRImportDAO esrImportDAO = Services.get(IESRImportDAO.class);
 		final List<I_ESR_ImportLine> esrImportLines = esrImportDAO.retrieveLines(esrImport);
 
+		final ESRLineMatchingIndex matchingIndex = createMatchingIndex(esrImport, esrImportLines);
 		for (final I_ESR_ImportLine importLine : esrImportLines)
 		{
 			//
 			// now do different validations with the values loaded from the input file
-			evaluateLine(esrImport, importLine);
+			evaluateLine(esrImport, importLine, matchingIndex);
 
 			importAmt = importAmt.add(importLine.getAmount());
 			trxQty++;
@@ -312,8 +319,31 @@ public class ESRImportBL implements IESRImportBL
 		return fitTrxQtys;
 	}
 
+	@VisibleForTesting
+	ESRLineMatchingIndex createMatchingIndex(@NonNull final I_ESR_Import esrImport, @NonNull final List<I_ESR_ImportLine> esrImportLines)
+	{
+		final Properties ctx = Env.getCtx();
+		final boolean batchEvaluation = Services.get(ISysConfigBL.class).getBooleanValue(ESRConstants.SYSCONFIG_BATCH_EVALUATION,
+				true,
+				esrImport.getAD_Client_ID(),
+				esrImport.getAD_Org_ID());
+		if (!batchEvaluation)
+		{
+			return ESRLineMatchingIndex.newLazyInstance(ctx);
+		}
+		return ESRLineMatchingIndex.prefetch(ctx, esrImportLines);
+	}
+
 	@VisibleForTesting
 	public void evaluateLine(@NonNull final I_ESR_Import esrImport, @NonNull final I_ESR_ImportLine importLine)
+	{
+		evaluateLine(esrImport, importLine, ESRLineMatchingIndex.newLazyInstance(Env.getCtx()));
+	}
+
+	private void evaluateLine(
+			@NonNull final I_ESR_Import esrImport,
+			@NonNull final I_ESR_ImportLine importLine,
+			@NonNull final ESRLineMatchingIndex matchingIndex)
 	{
 		if (isReverseBookingLine(importLine))
 		{
@@ -331,7 +361,7 @@ public class ESRImportBL implements IESRImportBL
 		}
 
 		// The reference number of the ESR Import line
-		ESRDataLoaderUtil.evaluateEsrReferenceNumber(importLine);
+		ESRDataLoaderUtil.evaluateEsrReferenceNumber(importLine, matchingIndex);
 
 		// task 05917: check if the the payment date from the ESR file is OK for us
 		try
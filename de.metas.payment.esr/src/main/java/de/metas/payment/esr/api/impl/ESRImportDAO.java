@@ -24,9 +24,12 @@ package de.metas.payment.esr.api.impl;
 
 
 import java.util.ArrayList;
+import java.util.HashMap;
 import java.util.Iterator;
 import java.util.List;
+import java.util.Map;
 import java.util.Properties;
+import java.util.Set;
 
 import org.adempiere.ad.trx.api.ITrx;
 import org.adempiere.model.InterfaceWrapperHelper;
@@ -35,6 +38,8 @@ import org.compiere.model.Query;
 import org.compiere.util.DB;
 import org.compiere.util.Env;
 
+import com.google.common.collect.Iterables;
+
 import de.metas.document.refid.api.IReferenceNoDAO;
 import de.metas.document.refid.model.I_C_ReferenceNo;
 import de.metas.document.refid.model.I_C_ReferenceNo_Type;
@@ -45,6 +50,8 @@ import de.metas.util.Services;
 
 public class ESRImportDAO extends AbstractESRImportDAO
 {
+	private static final int FETCH_REFERENCE_NUMBERS_CHUNK_SIZE = 1000;
+
 	@Override
 	public List<I_ESR_ImportLine> retrieveLinesForTrxTypes(final I_ESR_Import esrImport, final List<String> esrTrxTypes)
 	{
@@ -145,6 +152,43 @@ public class ESRImportDAO extends AbstractESRImportDAO
 		return referenceNo;
 	}
 
+	@Override
+	protected Map<String, I_C_ReferenceNo> fetchESRInvoiceReferenceNumbers(final Properties ctx, final Set<String> esrReferenceNumbers)
+	{
+		final String trxName = ITrx.TRXNAME_None;
+
+		final IReferenceNoDAO refNoDAO = Services.get(IReferenceNoDAO.class);
+		final I_C_ReferenceNo_Type refNoType = refNoDAO.retrieveRefNoTypeByName(ctx, ESRConstants.DOCUMENT_REFID_ReferenceNo_Type_InvoiceReferenceNumber);
+
+		final Map<String, I_C_ReferenceNo> result = new HashMap<>(esrReferenceNumbers.size());
+		for (final List<String> esrReferenceNumbersChunk : Iterables.partition(esrReferenceNumbers, FETCH_REFERENCE_NUMBERS_CHUNK_SIZE))
+		{
+			// Same as in fetchESRInvoiceReferenceNumber(), but instead of LIKE we compare the part between the bank account no (first 7 chars) and the check digit (the last one)
+			final List<Object> params = new ArrayList<>();
+			final String whereClause = "LENGTH(" + I_C_ReferenceNo.COLUMNNAME_ReferenceNo + ") = 27 AND "
+					+ "SUBSTR(" + I_C_ReferenceNo.COLUMNNAME_ReferenceNo + ", 8, 19) IN " + DB.buildSqlList(esrReferenceNumbersChunk, params) + " AND "
+					+ I_C_ReferenceNo.COLUMNNAME_C_ReferenceNo_Type_ID + " = ? AND "
+					+ I_C_ReferenceNo_Type.COLUMNNAME_AD_Client_ID + " IN (0,?) AND "
+					+ I_C_ReferenceNo_Type.COLUMNNAME_AD_Org_ID + " IN (0,?)";
+			params.add(refNoType.getC_ReferenceNo_Type_ID());
+			params.add(Env.getAD_Client_ID(ctx));
+			params.add(Env.getAD_Org_ID(ctx));
+
+			final List<I_C_ReferenceNo> referenceNos = new Query(ctx, I_C_ReferenceNo.Table_Name, whereClause, trxName)
+					.setParameters(params)
+					.setOnlyActiveRecords(true)
+					.setOrderBy(I_C_ReferenceNo.COLUMNNAME_C_ReferenceNo_ID)
+					.list(I_C_ReferenceNo.class);
+			for (final I_C_ReferenceNo referenceNo : referenceNos)
+			{
+				// like firstOnly() in fetchESRInvoiceReferenceNumber(): the one with the lowest ID wins
+				result.putIfAbsent(referenceNo.getReferenceNo().substring(7, 26), referenceNo);
+			}
+		}
+
+		return result;
+	}
+
 	@Override
 	public Iterator<I_ESR_Import> retrieveESRImports(final Properties ctx, final int orgID)
 	{
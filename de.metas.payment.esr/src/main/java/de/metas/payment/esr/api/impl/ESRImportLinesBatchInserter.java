@@ -0,0 +1,103 @@
+package de.metas.payment.esr.api.impl;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.adempiere.ad.persistence.po.POBulkInserter;
+import org.adempiere.model.InterfaceWrapperHelper;
+import org.compiere.model.PO;
+
+import de.metas.payment.esr.model.I_ESR_ImportLine;
+import de.metas.util.Check;
+
+/*
+ * #%L
+ * de.metas.payment.esr
+ * %%
+ * Copyright (C) 2019 metas GmbH
+ * %%
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as
+ * published by the Free Software Foundation, either version 2 of the
+ * License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public
+ * License along with this program. If not, see
+ * <http://www.gnu.org/licenses/gpl-2.0.html>.
+ * #L%
+ */
+
+/**
+ * Collects new {@link I_ESR_ImportLine}s and inserts them with {@link POBulkInserter} whenever the batch is full, so that large import files neither need one round trip per line nor keep all their lines in memory.
+ * <p>
+ * Note that there are no model interceptors which need to run when a new line is created; if there are any in future, this class needs to be revisited.
+ * Lines which are not backed by a {@link PO} (i.e. in unit tests) are saved one by one.
+ */
+final class ESRImportLinesBatchInserter
+{
+	private final int batchSize;
+	private final String trxName;
+	private final List<I_ESR_ImportLine> lines;
+
+	private int insertedCount = 0;
+
+	ESRImportLinesBatchInserter(final int batchSize, final String trxName)
+	{
+		Check.assumeGreaterThanZero(batchSize, "batchSize");
+
+		this.batchSize = batchSize;
+		this.trxName = trxName;
+		this.lines = new ArrayList<>(batchSize);
+	}
+
+	public void add(final I_ESR_ImportLine line)
+	{
+		lines.add(line);
+		if (lines.size() >= batchSize)
+		{
+			flush();
+		}
+	}
+
+	public void flush()
+	{
+		if (lines.isEmpty())
+		{
+			return;
+		}
+
+		final List<PO> pos = new ArrayList<>(lines.size());
+		for (final I_ESR_ImportLine line : lines)
+		{
+			final PO po = InterfaceWrapperHelper.getPO(line);
+			if (po == null)
+			{
+				break;
+			}
+			pos.add(po);
+		}
+
+		if (pos.size() == lines.size())
+		{
+			POBulkInserter.assignNewIDs(pos);
+			POBulkInserter.insert(pos, trxName);
+		}
+		else
+		{
+			lines.forEach(InterfaceWrapperHelper::save);
+		}
+
+		insertedCount += lines.size();
+		lines.clear();
+	}
+
+	public int getInsertedCount()
+	{
+		return insertedCount;
+	}
+}
@@ -5,23 +5,18 @@ import static org.adempiere.model.InterfaceWrapperHelper.create;
 import java.util.List;
 
 import org.adempiere.ad.table.api.IADTableDAO;
-import org.adempiere.ad.trx.api.ITrx;
 import org.adempiere.invoice.service.IInvoiceDAO;
 import org.adempiere.model.InterfaceWrapperHelper;
-import org.adempiere.service.IOrgDAO;
 import org.compiere.model.I_AD_Org;
 import org.compiere.model.I_C_BPartner;
 import org.compiere.model.I_C_Invoice;
 import org.compiere.util.Env;
 
-import de.metas.bpartner.service.IBPartnerDAO;
 import de.metas.document.refid.model.I_C_ReferenceNo;
 import de.metas.document.refid.model.I_C_ReferenceNo_Doc;
-import de.metas.document.sequence.IDocumentNoBuilderFactory;
 import de.metas.i18n.IMsgBL;
 import de.metas.payment.esr.api.IESRBPBankAccountDAO;
 import de.metas.payment.esr.api.IESRImportBL;
-import de.metas.payment.esr.api.IESRImportDAO;
 import de.metas.payment.esr.api.IESRLineHandlersService;
 import de.metas.payment.esr.model.I_C_BP_BankAccount;
 import de.metas.payment.esr.model.I_ESR_Import;
@@ -102,6 +97,16 @@ public class ESRDataLoaderUtil
 	 * @param completeEsrReferenceNumberStr
 	 */
 	public void evaluateEsrReferenceNumber(@NonNull final I_ESR_ImportLine importLine)
+	{
+		evaluateEsrReferenceNumber(importLine, ESRLineMatchingIndex.newLazyInstance(Env.getCtx()));
+	}
+
+	/**
+	 * Same as {@link #evaluateEsrReferenceNumber(I_ESR_ImportLine)}, but gets the records to match with from the given {@code index}.
+	 */
+	public void evaluateEsrReferenceNumber(
+			@NonNull final I_ESR_ImportLine importLine,
+			@NonNull final ESRLineMatchingIndex index)
 	{
 		final String completeEsrReferenceNumberStr = importLine.getESRFullReferenceNumber();
 		if (Check.isEmpty(completeEsrReferenceNumberStr, true))
@@ -110,13 +115,11 @@ public class ESRDataLoaderUtil
 		}
 
 		// When matching, we will ignore the first 7 digits (the bank account no), and the last digit (check digit)
-		final String esrReferenceNumberToMatch = completeEsrReferenceNumberStr.substring(7, 26);
+		final String esrReferenceNumberToMatch = extractEsrReferenceNumberToMatch(completeEsrReferenceNumberStr);
 
 		importLine.setESRReferenceNumber(esrReferenceNumberToMatch);
 
-		final IESRImportDAO esrImportPA = Services.get(IESRImportDAO.class);
-		final I_C_ReferenceNo_Doc esrReferenceNumberDocument = esrImportPA
-				.retrieveESRInvoiceReferenceNumberDocument(Env.getCtx(), esrReferenceNumberToMatch);
+		final I_C_ReferenceNo_Doc esrReferenceNumberDocument = index.getInvoiceReferenceNumberDocument(esrReferenceNumberToMatch);
 
 		if (esrReferenceNumberDocument == null)
 		{
@@ -138,7 +141,7 @@ public class ESRDataLoaderUtil
 				importLine.setC_ReferenceNo(esrReferenceNumberDocument.getC_ReferenceNo());
 
 				final int invoiceID = esrReferenceNumberDocument.getRecord_ID();
-				final I_C_Invoice invoice = InterfaceWrapperHelper.create(Env.getCtx(), invoiceID, I_C_Invoice.class, ITrx.TRXNAME_None);
+				final I_C_Invoice invoice = index.getInvoiceById(invoiceID);
 
 				final boolean match = Services.get(IESRLineHandlersService.class)
 						.applyESRMatchingBPartnerOfTheInvoice(invoice, importLine);
@@ -168,7 +171,7 @@ public class ESRDataLoaderUtil
 		// Set the reference number components if the reference no is not manual
 		if (!importLine.isESR_IsManual_ReferenceNo())
 		{
-			setValuesFromESRString(importLine, completeEsrReferenceNumberStr);
+			setValuesFromESRString(importLine, completeEsrReferenceNumberStr, index);
 		}
 	}
 
@@ -189,14 +192,15 @@ public class ESRDataLoaderUtil
 	 */
 	private void setValuesFromESRString(
 			@NonNull final I_ESR_ImportLine importLine,
-			@NonNull final String completeEsrReferenceNumberStr)
+			@NonNull final String completeEsrReferenceNumberStr,
+			@NonNull final ESRLineMatchingIndex index)
 	{
 		// Organization value
-		final String orgValue = completeEsrReferenceNumberStr.substring(7, 10);
+		final String orgValue = extractOrgValue(completeEsrReferenceNumberStr);
 		importLine.setSektionNo(orgValue);
 
 		// Org ID
-		final I_AD_Org organization = Services.get(IOrgDAO.class).retrieveOrganizationByValue(Env.getCtx(), orgValue);
+		final I_AD_Org organization = index.getOrgByValue(orgValue);
 		if (organization != null)
 		{
 			importLine.setOrg(organization);
@@ -206,24 +210,16 @@ public class ESRDataLoaderUtil
 		// BPartner value (without initial zeros)
 		final int bPartnerId;
 
-		final String bpValue = removeLeftZeros(completeEsrReferenceNumberStr.substring(10, 18));
+		final String bpValue = extractBPartnerValue(completeEsrReferenceNumberStr);
 
 		// Get BPartner id
 		// try to format the value
-		final IDocumentNoBuilderFactory documentNoFactory = Services.get(IDocumentNoBuilderFactory.class);
-		final String formattedBPValue = documentNoFactory
-				.forTableName(
-						I_C_BPartner.Table_Name,
-						importLine.getAD_Client_ID(),
-						importLine.getAD_Org_ID())
-				.setSequenceNo(bpValue)
-				.setFailOnError(false)
-				.build();
+		final String formattedBPValue = index.getFormattedBPartnerValue(importLine, bpValue);
 
 		I_C_BPartner bPartner = null;
 		if (!Check.isEmpty(formattedBPValue, true))
 		{
-			bPartner = Services.get(IBPartnerDAO.class).retrieveBPartnerByValue(Env.getCtx(), formattedBPValue);
+			bPartner = index.getBPartnerByValue(formattedBPValue);
 		}
 
 		importLine.setBPartner_Value(bpValue);
@@ -257,11 +253,11 @@ public class ESRDataLoaderUtil
 		final String documentNo = removeLeftZeros(completeEsrReferenceNumberStr.substring(18, 26));
 		importLine.setESR_DocumentNo(documentNo);
 
-		I_C_Invoice invoice = importLine.getC_Invoice();
+		final I_C_Invoice invoice = importLine.getC_Invoice_ID() > 0 ? index.getInvoiceById(importLine.getC_Invoice_ID()) : null;
 
 		if (invoice != null)
 		{
-			final I_C_BPartner invoicePartner = invoice.getC_BPartner();
+			final I_C_BPartner invoicePartner = index.getBPartnerById(invoice.getC_BPartner_ID());
 			final String invoiceDocumentNo = invoice.getDocumentNo();
 			// final I_AD_Org invoiceOrg = InterfaceWrapperHelper.create(ctx, invoice.getAD_Org_ID(), I_AD_Org.class, trxName);
 
@@ -342,6 +338,23 @@ public class ESRDataLoaderUtil
 		InterfaceWrapperHelper.save(importLine);
 	}
 
+	/** @return the part of the given complete ESR reference number which we match with; i.e. without the bank account no (first 7 digits) and the check digit (the last one) */
+	String extractEsrReferenceNumberToMatch(@NonNull final String completeEsrReferenceNumberStr)
+	{
+		return completeEsrReferenceNumberStr.substring(7, 26);
+	}
+
+	String extractOrgValue(@NonNull final String completeEsrReferenceNumberStr)
+	{
+		return completeEsrReferenceNumberStr.substring(7, 10);
+	}
+
+	/** @return the BPartner value, without initial zeros */
+	String extractBPartnerValue(@NonNull final String completeEsrReferenceNumberStr)
+	{
+		return removeLeftZeros(completeEsrReferenceNumberStr.substring(10, 18));
+	}
+
 	/**
 	 * Method to remove the left zeros from a string.
 	 *
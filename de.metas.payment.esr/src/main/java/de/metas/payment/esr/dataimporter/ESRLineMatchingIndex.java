@@ -0,0 +1,282 @@
+package de.metas.payment.esr.dataimporter;
+
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Properties;
+import java.util.Set;
+
+import org.adempiere.ad.dao.IQueryBL;
+import org.adempiere.ad.table.api.IADTableDAO;
+import org.adempiere.ad.trx.api.ITrx;
+import org.adempiere.model.InterfaceWrapperHelper;
+import org.adempiere.service.IOrgDAO;
+import org.compiere.model.I_AD_Org;
+import org.compiere.model.I_C_BPartner;
+import org.compiere.model.I_C_Invoice;
+import org.compiere.util.Util;
+import org.compiere.util.Util.ArrayKey;
+import org.slf4j.Logger;
+
+import de.metas.bpartner.service.IBPartnerDAO;
+import de.metas.document.refid.model.I_C_ReferenceNo_Doc;
+import de.metas.document.sequence.IDocumentNoBuilderFactory;
+import de.metas.logging.LogManager;
+import de.metas.payment.esr.api.IESRImportDAO;
+import de.metas.payment.esr.model.I_ESR_ImportLine;
+import de.metas.util.Check;
+import de.metas.util.Services;
+import lombok.NonNull;
+
+/*
+ * #%L
+ * de.metas.payment.esr
+ * %%
+ * Copyright (C) 2019 metas GmbH
+ * %%
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as
+ * published by the Free Software Foundation, either version 2 of the
+ * License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public
+ * License along with this program. If not, see
+ * <http://www.gnu.org/licenses/gpl-2.0.html>.
+ * #L%
+ */
+
+/**
+ * The records which {@link ESRDataLoaderUtil#evaluateEsrReferenceNumber(I_ESR_ImportLine, ESRLineMatchingIndex)} needs to match an ESR line: invoice reference numbers, invoices, organizations and partners.
+ * <p>
+ * An instance created with {@link #newLazyInstance(Properties)} loads each record when it's first needed.
+ * {@link #prefetch(Properties, Collection)} instead loads the records for all the given lines up front with a few <code>IN (...)</code> queries,
+ * so that evaluating the lines of a large ESR file doesn't need several queries per line.
+ * <p>
+ * Records which were not prefetched are still loaded on demand, so the result is the same in both cases.
+ * Only use an instance for one evaluation run, because it doesn't notice changes to the records.
+ */
+public final class ESRLineMatchingIndex
+{
+	private static final transient Logger logger = LogManager.getLogger(ESRLineMatchingIndex.class);
+
+	public static ESRLineMatchingIndex newLazyInstance(@NonNull final Properties ctx)
+	{
+		return new ESRLineMatchingIndex(ctx);
+	}
+
+	public static ESRLineMatchingIndex prefetch(
+			@NonNull final Properties ctx,
+			@NonNull final Collection<I_ESR_ImportLine> lines)
+	{
+		final ESRLineMatchingIndex index = new ESRLineMatchingIndex(ctx);
+
+		final long startMillis = System.currentTimeMillis();
+		index.prefetch0(lines);
+		logger.debug("Prefetched matching data for {} lines in {}ms: {}", lines.size(), System.currentTimeMillis() - startMillis, index);
+
+		return index;
+	}
+
+	private final Properties ctx;
+
+	private final Map<String, Optional<I_C_ReferenceNo_Doc>> esrReferenceNumber2invoiceDoc = new HashMap<>();
+	private final Map<Integer, I_C_Invoice> invoicesById = new HashMap<>();
+	private final Map<Integer, I_C_BPartner> bpartnersById = new HashMap<>();
+	private final Map<String, Optional<I_AD_Org>> orgsByValue = new HashMap<>();
+	private final Map<ArrayKey, String> formattedBPartnerValues = new HashMap<>();
+	private final Map<String, Optional<I_C_BPartner>> bpartnersByValue = new HashMap<>();
+
+	private ESRLineMatchingIndex(final Properties ctx)
+	{
+		this.ctx = ctx;
+	}
+
+	@Override
+	public String toString()
+	{
+		return "ESRLineMatchingIndex[invoiceDocs=" + esrReferenceNumber2invoiceDoc.size()
+				+ ", invoices=" + invoicesById.size()
+				+ ", bpartners=" + bpartnersById.size()
+				+ ", orgs=" + orgsByValue.size()
+				+ ", bpartnerValues=" + bpartnersByValue.size()
+				+ "]";
+	}
+
+	private void prefetch0(final Collection<I_ESR_ImportLine> lines)
+	{
+		final Set<String> esrReferenceNumbers = new HashSet<>();
+		final Set<String> orgValues = new HashSet<>();
+		final Set<String> bpartnerValues = new HashSet<>();
+		for (final I_ESR_ImportLine line : lines)
+		{
+			final String completeEsrReferenceNumberStr = line.getESRFullReferenceNumber();
+			if (Check.isEmpty(completeEsrReferenceNumberStr, true))
+			{
+				continue;
+			}
+
+			esrReferenceNumbers.add(ESRDataLoaderUtil.extractEsrReferenceNumberToMatch(completeEsrReferenceNumberStr));
+			orgValues.add(ESRDataLoaderUtil.extractOrgValue(completeEsrReferenceNumberStr));
+
+			final String formattedBPValue = getFormattedBPartnerValue(line, ESRDataLoaderUtil.extractBPartnerValue(completeEsrReferenceNumberStr));
+			if (!Check.isEmpty(formattedBPValue, true))
+			{
+				bpartnerValues.add(formattedBPValue.trim());
+			}
+		}
+
+		prefetchInvoiceDocs(esrReferenceNumbers);
+		prefetchOrgs(orgValues);
+		prefetchBPartnersByValue(bpartnerValues);
+	}
+
+	private void prefetchInvoiceDocs(final Set<String> esrReferenceNumbers)
+	{
+		if (esrReferenceNumbers.isEmpty())
+		{
+			return;
+		}
+
+		final Map<String, I_C_ReferenceNo_Doc> invoiceDocs = Services.get(IESRImportDAO.class).retrieveESRInvoiceReferenceNumberDocuments(ctx, esrReferenceNumbers);
+		for (final String esrReferenceNumber : esrReferenceNumbers)
+		{
+			esrReferenceNumber2invoiceDoc.put(esrReferenceNumber, Optional.ofNullable(invoiceDocs.get(esrReferenceNumber)));
+		}
+
+		final int invoiceTableId = Services.get(IADTableDAO.class).retrieveTableId(I_C_Invoice.Table_Name);
+		final Set<Integer> invoiceIds = new HashSet<>();
+		for (final I_C_ReferenceNo_Doc invoiceDoc : invoiceDocs.values())
+		{
+			if (invoiceDoc.getAD_Table_ID() == invoiceTableId)
+			{
+				invoiceIds.add(invoiceDoc.getRecord_ID());
+			}
+		}
+		if (invoiceIds.isEmpty())
+		{
+			return;
+		}
+
+		final Set<Integer> bpartnerIds = new HashSet<>();
+		for (final I_C_Invoice invoice : InterfaceWrapperHelper.loadByIdsOutOfTrx(invoiceIds, I_C_Invoice.class))
+		{
+			invoicesById.put(invoice.getC_Invoice_ID(), invoice);
+			bpartnerIds.add(invoice.getC_BPartner_ID());
+		}
+
+		for (final I_C_BPartner bpartner : InterfaceWrapperHelper.loadByIdsOutOfTrx(bpartnerIds, I_C_BPartner.class))
+		{
+			bpartnersById.put(bpartner.getC_BPartner_ID(), bpartner);
+		}
+	}
+
+	private void prefetchOrgs(final Set<String> orgValues)
+	{
+		if (orgValues.isEmpty())
+		{
+			return;
+		}
+
+		for (final String orgValue : orgValues)
+		{
+			orgsByValue.put(orgValue, Optional.empty());
+		}
+
+		// same filters as IOrgDAO.retrieveOrganizationByValue()
+		Services.get(IQueryBL.class)
+				.createQueryBuilder(I_AD_Org.class, ctx, ITrx.TRXNAME_None)
+				.addInArrayFilter(I_AD_Org.COLUMNNAME_Value, orgValues)
+				.orderBy(I_AD_Org.COLUMNNAME_AD_Org_ID)
+				.create()
+				.setClient_ID()
+				.stream(I_AD_Org.class)
+				.forEach(org -> orgsByValue.computeIfPresent(org.getValue(), (value, existing) -> existing.isPresent() ? existing : Optional.of(org)));
+	}
+
+	private void prefetchBPartnersByValue(final Set<String> bpartnerValues)
+	{
+		if (bpartnerValues.isEmpty())
+		{
+			return;
+		}
+
+		for (final String bpartnerValue : bpartnerValues)
+		{
+			bpartnersByValue.put(bpartnerValue, Optional.empty());
+		}
+
+		// same filters as IBPartnerDAO.retrieveBPartnerByValue()
+		Services.get(IQueryBL.class)
+				.createQueryBuilder(I_C_BPartner.class, ctx, ITrx.TRXNAME_None)
+				.addInArrayFilter(I_C_BPartner.COLUMNNAME_Value, bpartnerValues)
+				.addOnlyContextClient(ctx)
+				.addOnlyActiveRecordsFilter()
+				.orderBy(I_C_BPartner.COLUMNNAME_C_BPartner_ID)
+				.create()
+				.stream(I_C_BPartner.class)
+				.forEach(bpartner -> bpartnersByValue.computeIfPresent(bpartner.getValue(), (value, existing) -> existing.isPresent() ? existing : Optional.of(bpartner)));
+	}
+
+	/**
+	 * @see IESRImportDAO#retrieveESRInvoiceReferenceNumberDocument(Properties, String)
+	 */
+	public I_C_ReferenceNo_Doc getInvoiceReferenceNumberDocument(@NonNull final String esrReferenceNumber)
+	{
+		return esrReferenceNumber2invoiceDoc
+				.computeIfAbsent(esrReferenceNumber, k -> Optional.ofNullable(Services.get(IESRImportDAO.class).retrieveESRInvoiceReferenceNumberDocument(ctx, k)))
+				.orElse(null);
+	}
+
+	public I_C_Invoice getInvoiceById(final int invoiceId)
+	{
+		return invoicesById.computeIfAbsent(invoiceId, k -> InterfaceWrapperHelper.create(ctx, k, I_C_Invoice.class, ITrx.TRXNAME_None));
+	}
+
+	public I_C_BPartner getBPartnerById(final int bpartnerId)
+	{
+		return bpartnersById.computeIfAbsent(bpartnerId, k -> InterfaceWrapperHelper.create(ctx, k, I_C_BPartner.class, ITrx.TRXNAME_None));
+	}
+
+	/**
+	 * @see IOrgDAO#retrieveOrganizationByValue(Properties, String)
+	 */
+	public I_AD_Org getOrgByValue(@NonNull final String orgValue)
+	{
+		return orgsByValue
+				.computeIfAbsent(orgValue, k -> Optional.ofNullable(Services.get(IOrgDAO.class).retrieveOrganizationByValue(ctx, k)))
+				.orElse(null);
+	}
+
+	/**
+	 * @return the given partner value, formatted like the <code>C_BPartner</code> document sequence of the line's client and org would do it; might be empty
+	 */
+	public String getFormattedBPartnerValue(@NonNull final I_ESR_ImportLine importLine, @NonNull final String bpValue)
+	{
+		final ArrayKey key = Util.mkKey(importLine.getAD_Client_ID(), importLine.getAD_Org_ID(), bpValue);
+		return formattedBPartnerValues.computeIfAbsent(key, k -> Services.get(IDocumentNoBuilderFactory.class)
+				.forTableName(
+						I_C_BPartner.Table_Name,
+						importLine.getAD_Client_ID(),
+						importLine.getAD_Org_ID())
+				.setSequenceNo(bpValue)
+				.setFailOnError(false)
+				.build());
+	}
+
+	/**
+	 * @see IBPartnerDAO#retrieveBPartnerByValue(Properties, String)
+	 */
+	public I_C_BPartner getBPartnerByValue(@NonNull final String bpartnerValue)
+	{
+		return bpartnersByValue
+				.computeIfAbsent(bpartnerValue.trim(), k -> Optional.ofNullable(Services.get(IBPartnerDAO.class).retrieveBPartnerByValue(ctx, k)))
+				.orElse(null);
+	}
+}
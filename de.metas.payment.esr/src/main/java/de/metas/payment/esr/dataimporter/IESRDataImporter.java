@@ -1,5 +1,7 @@
 package de.metas.payment.esr.dataimporter;
 
+import java.util.function.Consumer;
+
 /*
  * #%L
  * de.metas.payment.esr
@@ -30,4 +32,23 @@ public interface IESRDataImporter
 	 * @return
 	 */
 	ESRStatement importData();
+
+	/**
+	 * Import the data and pass each {@link ESRTransaction} to the given consumer as soon as it was read, instead of collecting them in the returned statement.
+	 * <p>
+	 * The default implementation reads the whole statement first; implementations which can stream their input shall override this method.
+	 *
+	 * @return the statement's control amount, control quantity and error messages, without any transactions
+	 */
+	default ESRStatement importData(final Consumer<ESRTransaction> transactionConsumer)
+	{
+		final ESRStatement statement = importData();
+		statement.getTransactions().forEach(transactionConsumer);
+
+		return ESRStatement.builder()
+				.ctrlAmount(statement.getCtrlAmount())
+				.ctrlQty(statement.getCtrlQty())
+				.errorMsgs(statement.getErrorMsgs())
+				.build();
+	}
 }
@@ -3,6 +3,10 @@ package de.metas.payment.esr.dataimporter.impl.camt54;
 import java.io.IOException;
 import java.io.InputStream;
 import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.function.Consumer;
 
 import javax.annotation.Nullable;
 import javax.xml.stream.XMLInputFactory;
@@ -21,9 +25,8 @@ import com.google.common.base.Objects;
 
 import ch.qos.logback.classic.Level;
 import de.metas.logging.LogManager;
-import de.metas.payment.camt054_001_02.BankToCustomerDebitCreditNotificationV02;
-import de.metas.payment.camt054_001_06.BankToCustomerDebitCreditNotificationV06;
 import de.metas.payment.esr.dataimporter.ESRStatement;
+import de.metas.payment.esr.dataimporter.ESRTransaction;
 import de.metas.payment.esr.dataimporter.IESRDataImporter;
 import de.metas.payment.esr.model.I_ESR_Import;
 import de.metas.util.Loggables;
@@ -135,6 +138,23 @@ public class ESRDataImporterCamt54 implements IESRDataImporter
 
 	@Override
 	public ESRStatement importData()
+	{
+		final List<ESRTransaction> transactions = new ArrayList<>();
+		final ESRStatement statement = importData(transactions::add);
+
+		return ESRStatement.builder()
+				.ctrlAmount(statement.getCtrlAmount())
+				.ctrlQty(statement.getCtrlQty())
+				.errorMsgs(statement.getErrorMsgs())
+				.transactions(transactions)
+				.build();
+	}
+
+	/**
+	 * Reads the XML with a StAX cursor and unmarshals only one <code>Ntry</code> element at a time, so the memory needed does not depend on the size of the file.
+	 */
+	@Override
+	public ESRStatement importData(@NonNull final Consumer<ESRTransaction> transactionConsumer)
 	{
 		XMLStreamReader xsr = null;
 		try
@@ -146,15 +166,18 @@ public class ESRDataImporterCamt54 implements IESRDataImporter
 			// use a delegate to make sure that the unmarshaller won't refuse camt.054.001.04 and amt.054.001.05
 			final MultiVersionStreamReaderDelegate mxsr = new MultiVersionStreamReaderDelegate(xsr);
 
-			if (isVersion2Schema(getNameSpaceURI(mxsr)))
+			final boolean version2Schema = isVersion2Schema(getNameSpaceURI(mxsr));
+			try (final IAutoCloseable switchContext = Env.switchContext(InterfaceWrapperHelper.getCtx(header, true)))
 			{
-				return importCamt54v02(mxsr);
-			}
-			else
-			{
-				return importCamt54v06(mxsr);
+				if (version2Schema)
+				{
+					return new ESRDataImporterCamt54v02(header, mxsr).importEntries(transactionConsumer);
+				}
+				else
+				{
+					return new ESRDataImporterCamt54v06(header, mxsr).importEntries(transactionConsumer);
+				}
 			}
-
 		}
 		catch (final XMLStreamException e)
 		{
@@ -164,36 +187,38 @@ public class ESRDataImporterCamt54 implements IESRDataImporter
 		{
 			closeXmlReaderAndInputStream(xsr);
 		}
-
 	}
 
-	private ESRStatement importCamt54v02(final MultiVersionStreamReaderDelegate mxsr)
+	/**
+	 * Advances the given reader to the next start element with one of the given local names.
+	 * If the reader is already positioned on such an element, it is not moved; note that after unmarshalling an element, JAXB leaves the reader on the event right after that element's end.
+	 *
+	 * @return {@code false} if the end of the document was reached
+	 */
+	static boolean moveToNextStartElement(
+			@NonNull final XMLStreamReader xsr,
+			@NonNull final Set<String> localNames) throws XMLStreamException
 	{
-		final ESRDataImporterCamt54v02 importerV02 = new ESRDataImporterCamt54v02(header, mxsr);
-		final BankToCustomerDebitCreditNotificationV02 bkToCstmrDbtCdtNtfctn = importerV02.loadXML();
-		if (bkToCstmrDbtCdtNtfctn.getGrpHdr() != null && bkToCstmrDbtCdtNtfctn.getGrpHdr().getAddtlInf() != null)
+		int event = xsr.getEventType();
+		while (true)
 		{
-			Loggables.get().withLogger(logger, Level.INFO).addLog("The given input is a test file: bkToCstmrDbtCdtNtfctn/grpHdr/addtlInf={}", bkToCstmrDbtCdtNtfctn.getGrpHdr().getAddtlInf());
-		}
-
-		try (final IAutoCloseable switchContext = Env.switchContext(InterfaceWrapperHelper.getCtx(header, true)))
-		{
-			return importerV02.createESRStatement(bkToCstmrDbtCdtNtfctn);
+			if (XMLStreamConstants.START_ELEMENT == event && localNames.contains(xsr.getLocalName()))
+			{
+				return true;
+			}
+			if (!xsr.hasNext())
+			{
+				return false;
+			}
+			event = xsr.next();
 		}
 	}
 
-	private ESRStatement importCamt54v06(final MultiVersionStreamReaderDelegate mxsr)
+	static void logIfTestFile(@Nullable final String grpHdrAddtlInf)
 	{
-		final ESRDataImporterCamt54v06 importerV06 = new ESRDataImporterCamt54v06(header, mxsr);
-		final BankToCustomerDebitCreditNotificationV06 bkToCstmrDbtCdtNtfctn = importerV06.loadXML();
-		if (bkToCstmrDbtCdtNtfctn.getGrpHdr() != null && bkToCstmrDbtCdtNtfctn.getGrpHdr().getAddtlInf() != null)
-		{
-			Loggables.get().withLogger(logger, Level.INFO).addLog("The given input is a test file: bkToCstmrDbtCdtNtfctn/grpHdr/addtlInf={}", bkToCstmrDbtCdtNtfctn.getGrpHdr().getAddtlInf());
-		}
-
-		try (final IAutoCloseable switchContext = Env.switchContext(InterfaceWrapperHelper.getCtx(header, true)))
+		if (grpHdrAddtlInf != null)
 		{
-			return importerV06.createESRStatement(bkToCstmrDbtCdtNtfctn);
+			Loggables.get().withLogger(logger, Level.INFO).addLog("The given input is a test file: bkToCstmrDbtCdtNtfctn/grpHdr/addtlInf={}", grpHdrAddtlInf);
 		}
 	}
 
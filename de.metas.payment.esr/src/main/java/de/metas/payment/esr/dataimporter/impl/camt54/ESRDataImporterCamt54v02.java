@@ -6,30 +6,30 @@ import java.math.BigDecimal;
 import java.sql.Timestamp;
 import java.util.ArrayList;
 import java.util.List;
+import java.util.function.Consumer;
 
 import javax.annotation.Nullable;
 import javax.xml.bind.JAXB;
 import javax.xml.bind.JAXBContext;
-import javax.xml.bind.JAXBElement;
 import javax.xml.bind.JAXBException;
 import javax.xml.bind.Unmarshaller;
+import javax.xml.stream.XMLStreamException;
 
 import org.adempiere.exceptions.AdempiereException;
 import org.compiere.util.Env;
 
 import com.google.common.annotations.VisibleForTesting;
+import com.google.common.collect.ImmutableSet;
 
 import de.metas.i18n.IMsgBL;
-import de.metas.payment.camt054_001_02.AccountNotification2;
 import de.metas.payment.camt054_001_02.ActiveOrHistoricCurrencyAndAmount;
 import de.metas.payment.camt054_001_02.AmountAndCurrencyExchange3;
 import de.metas.payment.camt054_001_02.AmountAndCurrencyExchangeDetails3;
-import de.metas.payment.camt054_001_02.BankToCustomerDebitCreditNotificationV02;
 import de.metas.payment.camt054_001_02.CreditDebitCode;
 import de.metas.payment.camt054_001_02.DateAndDateTimeChoice;
-import de.metas.payment.camt054_001_02.Document;
 import de.metas.payment.camt054_001_02.EntryDetails1;
 import de.metas.payment.camt054_001_02.EntryTransaction2;
+import de.metas.payment.camt054_001_02.GroupHeader42;
 import de.metas.payment.camt054_001_02.ObjectFactory;
 import de.metas.payment.camt054_001_02.ReportEntry2;
 import de.metas.payment.esr.ESRConstants;
@@ -72,7 +72,7 @@ import lombok.NonNull;
  * Lots of methods are duplicated from <code>ESRDataImporterCamt54v06</code>
  * Important logical differences are in methods:
  * <ul>
- * <li><code>de.metas.payment.esr.dataimporter.impl.camt54.ESRDataImporterCamt54v02.loadXML()/code>
+ * <li><code>de.metas.payment.esr.dataimporter.impl.camt54.ESRDataImporterCamt54v02.importEntries(Consumer)</code>
  * <li><code>de.metas.payment.esr.dataimporter.impl.camt54.ESRDataImporterCamt54v02.verifyTransactionCurrency(EntryTransaction8, ESRTransactionBuilder)/code>
  * <li><code>de.metas.payment.esr.dataimporter.impl.camt54.ESRDataImporterCamt54v02.extractAmountAndType(ReportEntry8, EntryTransaction8, ESRTransactionBuilder)</code>
  * </ul>	
@@ -93,6 +93,9 @@ import lombok.NonNull;
  */
 public class ESRDataImporterCamt54v02 
 {
+	private static final String ELEMENT_GrpHdr = "GrpHdr";
+	private static final String ELEMENT_Ntry = "Ntry";
+	private static final ImmutableSet<String> ELEMENT_NAMES = ImmutableSet.of(ELEMENT_GrpHdr, ELEMENT_Ntry);
 
 	private final I_ESR_Import header;
 	private final MultiVersionStreamReaderDelegate xsr;
@@ -114,41 +117,58 @@ public class ESRDataImporterCamt54v02
 	}
 
 	/**
-	 * create ESRStatement using <code>BankToCustomerDebitCreditNotificationV02</code>
-	 * @param bkToCstmrDbtCdtNtfctn
-	 * @return
+	 * Reads the <code>GrpHdr</code> and <code>Ntry</code> elements one by one from the stream reader, using <code>BankToCustomerDebitCreditNotificationV02</code> types.
+	 *
+	 * @param transactionConsumer gets each {@link ESRTransaction} as soon as its <code>Ntry</code> was read
+	 * @return a statement with the control amount and quantity, but without transactions
 	 */
-	public ESRStatement createESRStatement(@NonNull final BankToCustomerDebitCreditNotificationV02 bkToCstmrDbtCdtNtfctn)
+	public ESRStatement importEntries(@NonNull final Consumer<ESRTransaction> transactionConsumer)
 	{
-		final ESRStatementBuilder stmtBuilder = ESRStatement.builder();
-
 		BigDecimal ctrAmount = BigDecimal.ZERO;
 
 		BigDecimal ctrlQty = ESRDataImporterCamt54.CTRL_QTY_NOT_YET_SET;
 
-		for (final AccountNotification2 ntfctn : bkToCstmrDbtCdtNtfctn.getNtfctn())
+		try
 		{
-			for (final ReportEntry2 ntry : ntfctn.getNtry()) // gh #1947: there can be many ntry records
+			// https://stackoverflow.com/questions/20410202/jaxb-unmarshalling-not-working-expected-elements-are-none
+			// use ObjectFactory for creating the context because otherwise unmarshalling will not work
+			final JAXBContext context = JAXBContext.newInstance(ObjectFactory.class);
+			final Unmarshaller unmarshaller = context.createUnmarshaller();
+
+			while (ESRDataImporterCamt54.moveToNextStartElement(xsr, ELEMENT_NAMES))
 			{
+				if (ELEMENT_GrpHdr.equals(xsr.getLocalName()))
+				{
+					final GroupHeader42 grpHdr = unmarshaller.unmarshal(xsr, GroupHeader42.class).getValue();
+					ESRDataImporterCamt54.logIfTestFile(grpHdr.getAddtlInf());
+					continue;
+				}
+
+				// gh #1947: there can be many ntry records
+				final ReportEntry2 ntry = unmarshaller.unmarshal(xsr, ReportEntry2.class).getValue();
+
 				final BigDecimal ntryAmt = ntry.getAmt().getValue()
 						.multiply(getCrdDbtMultiplier(ntry.getCdtDbtInd()))
 						.multiply(getRvslMultiplier(ntry));
 
 				ctrAmount = ctrAmount.add(ntryAmt);
-				ctrlQty = iterateEntryDetails(stmtBuilder, ctrlQty, ntry);
-			} // for ntry
-		} // ntfctn
+				ctrlQty = iterateEntryDetails(transactionConsumer, ctrlQty, ntry);
+			}
+		}
+		catch (final JAXBException | XMLStreamException e)
+		{
+			throw AdempiereException.wrapIfNeeded(e);
+		}
 
 		// only use the control qty if all ntry had one set. If one was null, then forward null
 		final BigDecimal ctrlQtyForStatement = ctrlQty.compareTo(ESRDataImporterCamt54.CTRL_QTY_AT_LEAST_ONE_NULL) == 0 ? null : ctrlQty;
 
-		return stmtBuilder
+		return ESRStatement.builder()
 				.ctrlAmount(ctrAmount)
 				.ctrlQty(ctrlQtyForStatement)
 				.build();
 	}
-	
-	
+
 	/**
 	 * iterateEntryDetails for version 2 <code>BankToCustomerDebitCreditNotificationV02</code>
 	 * @param stmtBuilder builder to which the individual {@link ESRTransaction}s are added.
@@ -161,6 +181,14 @@ public class ESRDataImporterCamt54v02
 			@NonNull final ESRStatementBuilder stmtBuilder,
 			@Nullable final BigDecimal ctrlQty,
 			@NonNull final ReportEntry2 ntry)
+	{
+		return iterateEntryDetails(stmtBuilder::transaction, ctrlQty, ntry);
+	}
+
+	private BigDecimal iterateEntryDetails(
+			@NonNull final Consumer<ESRTransaction> transactionConsumer,
+			@Nullable final BigDecimal ctrlQty,
+			@NonNull final ReportEntry2 ntry)
 	{
 		BigDecimal newCtrlQty = ctrlQty;
 		for (final EntryDetails1 ntryDtl : ntry.getNtryDtls())
@@ -185,8 +213,7 @@ public class ESRDataImporterCamt54v02
 				}
 			}
 
-			final List<ESRTransaction> transactions = iterateTransactionDetails(ntry, ntryDtl);
-			stmtBuilder.transactions(transactions);
+			iterateTransactionDetails(ntry, ntryDtl).forEach(transactionConsumer);
 
 		} // ntryDtl
 
@@ -341,33 +368,6 @@ public class ESRDataImporterCamt54v02
 		}
 	}
 
-	public BankToCustomerDebitCreditNotificationV02 loadXML()
-	{
-		final Document document;
-		try
-		{
-			// https://stackoverflow.com/questions/20410202/jaxb-unmarshalling-not-working-expected-elements-are-none
-			// use ObjectFactory for creating the context because otherwise unmarshalling will not work
-			final JAXBContext context = JAXBContext.newInstance(ObjectFactory.class);
-			final Unmarshaller unmarshaller = context.createUnmarshaller();
-
-			
-			@SuppressWarnings("unchecked")
-			final JAXBElement<Document> e = (JAXBElement<Document>)unmarshaller.unmarshal(xsr);
-			document = e.getValue();
-			
-		}
-		catch (final JAXBException e)
-		{
-			throw AdempiereException.wrapIfNeeded(e);
-		}
-		
-		
-
-		final BankToCustomerDebitCreditNotificationV02 bkToCstmrDbtCdtNtfctn = document.getBkToCstmrDbtCdtNtfctn();
-		return bkToCstmrDbtCdtNtfctn;
-	}
-
 	/**
 	 * Marshals the given {@code} into an XML string and return that as the "key".
 	 * mkTrxKey for version 2 <code>BankToCustomerDebitCreditNotificationV02</code>
@@ -6,28 +6,29 @@ import java.math.BigDecimal;
 import java.sql.Timestamp;
 import java.util.ArrayList;
 import java.util.List;
+import java.util.function.Consumer;
 
 import javax.annotation.Nullable;
 import javax.xml.bind.JAXB;
 import javax.xml.bind.JAXBContext;
-import javax.xml.bind.JAXBElement;
 import javax.xml.bind.JAXBException;
 import javax.xml.bind.Unmarshaller;
+import javax.xml.stream.XMLStreamException;
 
 import org.adempiere.exceptions.AdempiereException;
 import org.compiere.util.Env;
 
 import com.google.common.annotations.VisibleForTesting;
+import com.google.common.collect.ImmutableSet;
 
 import de.metas.i18n.IMsgBL;
-import de.metas.payment.camt054_001_06.AccountNotification12;
 import de.metas.payment.camt054_001_06.ActiveOrHistoricCurrencyAndAmount;
-import de.metas.payment.camt054_001_06.BankToCustomerDebitCreditNotificationV06;
 import de.metas.payment.camt054_001_06.CreditDebitCode;
 import de.metas.payment.camt054_001_06.DateAndDateTimeChoice;
 import de.metas.payment.camt054_001_06.Document;
 import de.metas.payment.camt054_001_06.EntryDetails7;
 import de.metas.payment.camt054_001_06.EntryTransaction8;
+import de.metas.payment.camt054_001_06.GroupHeader58;
 import de.metas.payment.camt054_001_06.ReportEntry8;
 import de.metas.payment.esr.ESRConstants;
 import de.metas.payment.esr.dataimporter.ESRStatement;
@@ -70,7 +71,7 @@ import lombok.NonNull;
  * Lots of methods are duplicated from <code>ESRDataImporterCamt54v02</code>
  * Important logical differences are in methods:
  * <ul>
- * <li><code>de.metas.payment.esr.dataimporter.impl.camt54.ESRDataImporterCamt54v06.loadXML()/code>
+ * <li><code>de.metas.payment.esr.dataimporter.impl.camt54.ESRDataImporterCamt54v06.importEntries(Consumer)</code>
  * <li><code>de.metas.payment.esr.dataimporter.impl.camt54.ESRDataImporterCamt54v06.verifyTransactionCurrency(EntryTransaction8, ESRTransactionBuilder)/code>
  * <li><code>de.metas.payment.esr.dataimporter.impl.camt54.ESRDataImporterCamt54v06.extractAmountAndType(ReportEntry8, EntryTransaction8, ESRTransactionBuilder)</code>
  * </ul>	
@@ -91,6 +92,9 @@ import lombok.NonNull;
  */
 public class ESRDataImporterCamt54v06 
 {
+	private static final String ELEMENT_GrpHdr = "GrpHdr";
+	private static final String ELEMENT_Ntry = "Ntry";
+	private static final ImmutableSet<String> ELEMENT_NAMES = ImmutableSet.of(ELEMENT_GrpHdr, ELEMENT_Ntry);
 
 	private final I_ESR_Import header;
 	private final MultiVersionStreamReaderDelegate xsr;
@@ -113,41 +117,56 @@ public class ESRDataImporterCamt54v06
 
 	
 	/**
-	 * create ESRStatement using <code>BankToCustomerDebitCreditNotificationV06</code>
-	 * @param bkToCstmrDbtCdtNtfctn
-	 * @return
+	 * Reads the <code>GrpHdr</code> and <code>Ntry</code> elements one by one from the stream reader, using <code>BankToCustomerDebitCreditNotificationV06</code> types.
+	 *
+	 * @param transactionConsumer gets each {@link ESRTransaction} as soon as its <code>Ntry</code> was read
+	 * @return a statement with the control amount and quantity, but without transactions
 	 */
-	public ESRStatement createESRStatement(@NonNull final BankToCustomerDebitCreditNotificationV06 bkToCstmrDbtCdtNtfctn)
+	public ESRStatement importEntries(@NonNull final Consumer<ESRTransaction> transactionConsumer)
 	{
-		final ESRStatementBuilder stmtBuilder = ESRStatement.builder();
-
 		BigDecimal ctrAmount = BigDecimal.ZERO;
 
 		BigDecimal ctrlQty = ESRDataImporterCamt54.CTRL_QTY_NOT_YET_SET;
 
-		for (final AccountNotification12 ntfctn : bkToCstmrDbtCdtNtfctn.getNtfctn())
+		try
 		{
-			for (final ReportEntry8 ntry : ntfctn.getNtry()) // gh #1947: there can be many ntry records
+			final JAXBContext context = JAXBContext.newInstance(Document.class);
+			final Unmarshaller unmarshaller = context.createUnmarshaller();
+
+			while (ESRDataImporterCamt54.moveToNextStartElement(xsr, ELEMENT_NAMES))
 			{
+				if (ELEMENT_GrpHdr.equals(xsr.getLocalName()))
+				{
+					final GroupHeader58 grpHdr = unmarshaller.unmarshal(xsr, GroupHeader58.class).getValue();
+					ESRDataImporterCamt54.logIfTestFile(grpHdr.getAddtlInf());
+					continue;
+				}
+
+				// gh #1947: there can be many ntry records
+				final ReportEntry8 ntry = unmarshaller.unmarshal(xsr, ReportEntry8.class).getValue();
+
 				final BigDecimal ntryAmt = ntry.getAmt().getValue()
 						.multiply(getCrdDbtMultiplier(ntry.getCdtDbtInd()))
 						.multiply(getRvslMultiplier(ntry));
 
 				ctrAmount = ctrAmount.add(ntryAmt);
-				ctrlQty = iterateEntryDetails(stmtBuilder, ctrlQty, ntry);
-			} // for ntry
-		} // ntfctn
+				ctrlQty = iterateEntryDetails(transactionConsumer, ctrlQty, ntry);
+			}
+		}
+		catch (final JAXBException | XMLStreamException e)
+		{
+			throw AdempiereException.wrapIfNeeded(e);
+		}
 
 		// only use the control qty if all ntry had one set. If one was null, then forward null
 		final BigDecimal ctrlQtyForStatement = ctrlQty.compareTo(ESRDataImporterCamt54.CTRL_QTY_AT_LEAST_ONE_NULL) == 0 ? null : ctrlQty;
 
-		return stmtBuilder
+		return ESRStatement.builder()
 				.ctrlAmount(ctrAmount)
 				.ctrlQty(ctrlQtyForStatement)
 				.build();
 	}
-	
-	
+
 	/**
 	 * iterateEntryDetails for version 6 <code>BankToCustomerDebitCreditNotificationV06</code>
 	 * @param stmtBuilder builder to which the individual {@link ESRTransaction}s are added.
@@ -160,6 +179,14 @@ public class ESRDataImporterCamt54v06
 			@NonNull final ESRStatementBuilder stmtBuilder,
 			@Nullable final BigDecimal ctrlQty,
 			@NonNull final ReportEntry8 ntry)
+	{
+		return iterateEntryDetails(stmtBuilder::transaction, ctrlQty, ntry);
+	}
+
+	private BigDecimal iterateEntryDetails(
+			@NonNull final Consumer<ESRTransaction> transactionConsumer,
+			@Nullable final BigDecimal ctrlQty,
+			@NonNull final ReportEntry8 ntry)
 	{
 		BigDecimal newCtrlQty = ctrlQty;
 		for (final EntryDetails7 ntryDtl : ntry.getNtryDtls())
@@ -184,8 +211,7 @@ public class ESRDataImporterCamt54v06
 				}
 			}
 
-			final List<ESRTransaction> transactions = iterateTransactionDetails(ntry, ntryDtl);
-			stmtBuilder.transactions(transactions);
+			iterateTransactionDetails(ntry, ntryDtl).forEach(transactionConsumer);
 
 		} // ntryDtl
 
@@ -336,33 +362,6 @@ public class ESRDataImporterCamt54v06
 		}
 	}
 	
-	public BankToCustomerDebitCreditNotificationV06 loadXML()
-	{
-		final Document document;
-		try
-		{
-			final JAXBContext context = JAXBContext.newInstance(Document.class);
-			final Unmarshaller unmarshaller = context.createUnmarshaller();
-
-			// https://github.com/metasfresh/metasfresh/issues/1903
-			// use a delegate to make sure that the unmarshaller won't refuse camt.054.001.02 , camt.054.001.04 and amt.054.001.05
-			@SuppressWarnings("unchecked")
-			final JAXBElement<Document> e = (JAXBElement<Document>)unmarshaller.unmarshal(xsr);
-			document = e.getValue();
-			
-		}
-		catch (final JAXBException  e)
-		{
-			throw AdempiereException.wrapIfNeeded(e);
-		}
-		
-		
-
-		final BankToCustomerDebitCreditNotificationV06 bkToCstmrDbtCdtNtfctn = document.getBkToCstmrDbtCdtNtfctn();
-		return bkToCstmrDbtCdtNtfctn;
-	}
-
-
 	/**
 	 * Marshals the given {@code} into an XML string and return that as the "key".
 	 * mkTrxKey for version 6 <code>BankToCustomerDebitCreditNotificationV06</code>
@@ -0,0 +1,201 @@
+package de.metas.payment.esr.api.impl;
+
+import static org.adempiere.model.InterfaceWrapperHelper.newInstance;
+import static org.adempiere.model.InterfaceWrapperHelper.save;
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.stream.Collectors;
+
+import org.adempiere.service.ISysConfigBL;
+import org.compiere.util.Env;
+import org.junit.Ignore;
+import org.junit.Test;
+
+import de.metas.payment.esr.ESRConstants;
+import de.metas.payment.esr.ESRTestBase;
+import de.metas.payment.esr.api.IESRImportDAO;
+import de.metas.payment.esr.dataimporter.ESRLineMatchingIndex;
+import de.metas.payment.esr.dataimporter.impl.v11.ESRTransactionLineMatcherUtil;
+import de.metas.payment.esr.model.I_ESR_Import;
+import de.metas.payment.esr.model.I_ESR_ImportLine;
+import de.metas.util.Check;
+import de.metas.util.Services;
+import lombok.Value;
+
+/*
+ * #%L
+ * de.metas.payment.esr
+ * %%
+ * Copyright (C) 2019 metas GmbH
+ * %%
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as
+ * published by the Free Software Foundation, either version 2 of the
+ * License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public
+ * License along with this program. If not, see
+ * <http://www.gnu.org/licenses/gpl-2.0.html>.
+ * #L%
+ */
+
+/**
+ * Verifies that evaluating the lines with a prefetched {@link ESRLineMatchingIndex} gives the same result as evaluating them one by one.
+ * Uses the same fixture as {@link de.metas.payment.esr.ESRImportTest#testStandardCase_T01()}.
+ */
+public class ESRImportBLBatchEvaluationTest extends ESRTestBase
+{
+	private static final int LINES_COUNT = 200;
+
+	private static final String ESR_LINE_TEXT = "01201067789300000001060012345600654321400000050009072  030014040914041014041100001006800000000000090                          ";
+	private static final String REF_NO = "300000001060012345600654321";
+	private static final String ESR_RENDERED_ACCOUNT_NO = "01-067789-3";
+
+	@Test
+	public void prefetchedIndex_findsSameRecordsAsLazyIndex()
+	{
+		final I_ESR_ImportLine esrImportLine = setupLines(1).get(0);
+
+		final ESRLineMatchingIndex lazyIndex = ESRLineMatchingIndex.newLazyInstance(Env.getCtx());
+		final ESRLineMatchingIndex prefetchedIndex = ESRLineMatchingIndex.prefetch(Env.getCtx(), Services.get(IESRImportDAO.class).retrieveLines(esrImportLine.getESR_Import()));
+
+		final String esrReferenceNumber = esrImportLine.getESRFullReferenceNumber().substring(7, 26);
+		assertThat(prefetchedIndex.getInvoiceReferenceNumberDocument(esrReferenceNumber).getRecord_ID())
+				.isEqualTo(lazyIndex.getInvoiceReferenceNumberDocument(esrReferenceNumber).getRecord_ID())
+				.isEqualTo(getC_Invoice().getC_Invoice_ID());
+
+		assertThat(prefetchedIndex.getOrgByValue("106").getAD_Org_ID())
+				.isEqualTo(lazyIndex.getOrgByValue("106").getAD_Org_ID())
+				.isEqualTo(getAD_Org().getAD_Org_ID());
+
+		final String formattedBPValue = lazyIndex.getFormattedBPartnerValue(esrImportLine, "123456");
+		assertThat(prefetchedIndex.getFormattedBPartnerValue(esrImportLine, "123456")).isEqualTo(formattedBPValue);
+		if (!Check.isEmpty(formattedBPValue, true))
+		{
+			assertThat(prefetchedIndex.getBPartnerByValue(formattedBPValue)).isEqualTo(lazyIndex.getBPartnerByValue(formattedBPValue));
+		}
+	}
+
+	@Test
+	public void batchEvaluation_sameResultAsSingleLineEvaluation()
+	{
+		final List<I_ESR_ImportLine> lines = setupLines(LINES_COUNT);
+		final I_ESR_Import esrImport = lines.get(0).getESR_Import();
+
+		Services.get(ISysConfigBL.class).setValue(ESRConstants.SYSCONFIG_BATCH_EVALUATION, false, 0);
+		esrImportBL.evaluate(esrImport);
+		final List<LineEvaluationResult> singleLineResults = extractResults(esrImport);
+
+		resetEvaluation(esrImport);
+
+		Services.get(ISysConfigBL.class).setValue(ESRConstants.SYSCONFIG_BATCH_EVALUATION, true, 0);
+		esrImportBL.evaluate(esrImport);
+		final List<LineEvaluationResult> batchResults = extractResults(esrImport);
+
+		assertThat(batchResults).hasSize(LINES_COUNT).isEqualTo(singleLineResults);
+		assertThat(batchResults).allMatch(result -> result.getInvoiceId() == getC_Invoice().getC_Invoice_ID());
+	}
+
+	/**
+	 * Rough comparison of the per-line evaluation against the batch evaluation. Not run by default, because the in-memory database doesn't show the saved round trips; run it manually.
+	 */
+	@Test
+	@Ignore
+	public void benchmark()
+	{
+		final List<I_ESR_ImportLine> lines = setupLines(LINES_COUNT);
+		final I_ESR_Import esrImport = lines.get(0).getESR_Import();
+
+		Services.get(ISysConfigBL.class).setValue(ESRConstants.SYSCONFIG_BATCH_EVALUATION, false, 0);
+		long startNanos = System.nanoTime();
+		esrImportBL.evaluate(esrImport);
+		System.out.println("Evaluated " + LINES_COUNT + " lines one by one in " + (System.nanoTime() - startNanos) / 1_000_000 + "ms");
+
+		resetEvaluation(esrImport);
+
+		Services.get(ISysConfigBL.class).setValue(ESRConstants.SYSCONFIG_BATCH_EVALUATION, true, 0);
+		startNanos = System.nanoTime();
+		esrImportBL.evaluate(esrImport);
+		System.out.println("Evaluated " + LINES_COUNT + " lines batched in " + (System.nanoTime() - startNanos) / 1_000_000 + "ms");
+	}
+
+	private List<I_ESR_ImportLine> setupLines(final int count)
+	{
+		final String completeRef = ESRTransactionLineMatcherUtil.extractReferenceNumberStr(ESR_LINE_TEXT);
+		final I_ESR_ImportLine firstLine = setupESR_ImportLine("654321", "50", false, completeRef, REF_NO, ESR_RENDERED_ACCOUNT_NO, "123456", "50", false);
+
+		final List<I_ESR_ImportLine> lines = new ArrayList<>();
+		lines.add(firstLine);
+		for (int i = 1; i < count; i++)
+		{
+			final I_ESR_ImportLine line = newInstance(I_ESR_ImportLine.class, contextProvider);
+			line.setESR_Import(firstLine.getESR_Import());
+			line.setC_BP_BankAccount(firstLine.getC_BP_BankAccount());
+			line.setAD_Org_ID(firstLine.getAD_Org_ID());
+			line.setESRPostParticipantNumber(firstLine.getESRPostParticipantNumber());
+			line.setESRFullReferenceNumber(completeRef);
+			line.setAmount(BigDecimal.ONE);
+			save(line);
+			lines.add(line);
+		}
+		return lines;
+	}
+
+	private static List<LineEvaluationResult> extractResults(final I_ESR_Import esrImport)
+	{
+		return Services.get(IESRImportDAO.class).retrieveLines(esrImport)
+				.stream()
+				.map(LineEvaluationResult::of)
+				.collect(Collectors.toList());
+	}
+
+	private static void resetEvaluation(final I_ESR_Import esrImport)
+	{
+		for (final I_ESR_ImportLine line : Services.get(IESRImportDAO.class).retrieveLines(esrImport))
+		{
+			line.setC_Invoice_ID(-1);
+			line.setC_BPartner_ID(-1);
+			line.setOrg_ID(-1);
+			line.setC_ReferenceNo_ID(-1);
+			line.setESR_Document_Status(null);
+			line.setESR_Payment_Action(null);
+			line.setMatchErrorMsg(null);
+			line.setIsValid(false);
+			save(line);
+		}
+	}
+
+	@Value
+	private static class LineEvaluationResult
+	{
+		static LineEvaluationResult of(final I_ESR_ImportLine line)
+		{
+			return new LineEvaluationResult(
+					line.getESR_ImportLine_ID(),
+					line.getC_Invoice_ID(),
+					line.getC_BPartner_ID(),
+					line.getOrg_ID(),
+					line.getESR_Document_Status(),
+					line.getESR_Payment_Action(),
+					line.getMatchErrorMsg(),
+					line.isValid());
+		}
+
+		int lineId;
+		int invoiceId;
+		int bpartnerId;
+		int orgId;
+		String documentStatus;
+		String paymentAction;
+		String matchErrorMsg;
+		boolean valid;
+	}
+}
@@ -91,6 +91,10 @@ public class MergePdfByteArrays
 					}
 				}
 			}
+
+			// write out what we imported from this document now, instead of keeping it in memory until all documents were added
+			writer.freeReader(reader);
+			reader.close();
 		}
 		catch (Exception e)
 		{
@@ -23,6 +23,7 @@ package de.metas.printing.api;
  */
 
 
+import org.adempiere.util.lang.IAutoCloseable;
 import org.adempiere.util.lang.Mutable;
 import org.compiere.util.Util.ArrayKey;
 
@@ -35,7 +36,7 @@ import de.metas.printing.model.I_C_Print_Package;
  * @author tsa
  * 
  */
-public interface IPrintJobLinesAggregator
+public interface IPrintJobLinesAggregator extends IAutoCloseable
 {
 
 	/**
@@ -64,4 +65,9 @@ public interface IPrintJobLinesAggregator
 	 */
 	I_C_Print_Package createPrintPackage();
 
+	/**
+	 * Releases the resources (e.g. temporary files) which were allocated for the job lines added so far. {@link #createPrintPackage()} does this by itself.
+	 */
+	@Override
+	void close();
 }
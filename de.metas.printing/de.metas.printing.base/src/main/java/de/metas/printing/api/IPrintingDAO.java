@@ -22,6 +22,7 @@ package de.metas.printing.api;
  * #L%
  */
 
+import java.io.File;
 import java.util.Iterator;
 import java.util.List;
 import java.util.Properties;
@@ -303,6 +304,12 @@ public interface IPrintingDAO extends ISingletonService
 	 * @return
 	 */
 	I_C_PrintPackageData retrievePrintPackageData(I_C_Print_Package printPackage);
+
+	/**
+	 * Saves the given package data with the content of the given file as its {@link I_C_PrintPackageData#COLUMNNAME_PrintData}.
+	 * The content is streamed from the file, so the print package is never held in memory as a whole.
+	 */
+	void savePrintData(I_C_PrintPackageData printPackageData, File printDataFile);
 	
 	/**
 	 * retrieves a printer which has the output type PDF
@@ -23,6 +23,9 @@ package de.metas.printing.api.impl;
  */
 // NOPMD by ts on 20.03.13 07:58
 
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
 import java.util.Collections;
 import java.util.Comparator;
 import java.util.Iterator;
@@ -64,6 +67,7 @@ import de.metas.printing.model.I_C_Printing_Queue;
 import de.metas.printing.model.X_C_Print_Job_Instructions;
 import de.metas.util.Check;
 import de.metas.util.Services;
+import lombok.NonNull;
 
 public class PlainPrintingDAO extends AbstractPrintingDAO
 {
@@ -165,6 +169,20 @@ public class PlainPrintingDAO extends AbstractPrintingDAO
 		});
 	}
 
+	@Override
+	public void savePrintData(@NonNull final I_C_PrintPackageData printPackageData, @NonNull final File printDataFile)
+	{
+		try
+		{
+			printPackageData.setPrintData(Files.readAllBytes(printDataFile.toPath()));
+		}
+		catch (final IOException e)
+		{
+			throw new AdempiereException("Cannot read the print data from " + printDataFile, e);
+		}
+		InterfaceWrapperHelper.save(printPackageData);
+	}
+
 	public I_C_PrintPackageData getPrintPackageData(final I_C_Print_Package printPackage)
 	{
 		return lookupMap.getFirstOnly(I_C_PrintPackageData.class, pojo -> pojo.getC_Print_Package_ID() == printPackage.getC_Print_Package_ID());
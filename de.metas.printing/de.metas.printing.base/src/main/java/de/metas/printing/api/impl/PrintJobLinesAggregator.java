@@ -25,10 +25,16 @@ import static org.adempiere.model.InterfaceWrapperHelper.loadOutOfTrx;
  */
 
 
-import java.io.ByteArrayOutputStream;
+import java.io.BufferedOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
 import java.io.IOException;
+import java.io.InputStream;
 import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
 import java.util.ArrayList;
+import java.util.Collection;
 import java.util.IdentityHashMap;
 import java.util.Iterator;
 import java.util.LinkedHashMap;
@@ -36,6 +42,11 @@ import java.util.List;
 import java.util.Map;
 import java.util.Objects;
 import java.util.Properties;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.function.ToIntBiFunction;
 
 import javax.print.attribute.standard.MediaSize;
 
@@ -43,9 +54,12 @@ import org.adempiere.ad.service.IDeveloperModeBL;
 import org.adempiere.archive.api.IArchiveBL;
 import org.adempiere.exceptions.AdempiereException;
 import org.adempiere.model.InterfaceWrapperHelper;
+import org.adempiere.service.ISysConfigBL;
+import org.adempiere.util.concurrent.CustomizableThreadFactory;
 import org.adempiere.util.lang.Mutable;
 import org.adempiere.util.lang.ObjectUtils;
 import org.compiere.model.I_AD_Archive;
+import org.compiere.util.Util;
 import org.compiere.util.Util.ArrayKey;
 import org.slf4j.Logger;
 
@@ -54,8 +68,10 @@ import com.lowagie.text.DocumentException;
 import com.lowagie.text.pdf.BadPdfFormatException;
 import com.lowagie.text.pdf.PdfCopy;
 import com.lowagie.text.pdf.PdfReader;
+import com.lowagie.text.pdf.RandomAccessFileOrArray;
 
 import de.metas.logging.LogManager;
+import de.metas.printing.Printing_Constants;
 import de.metas.printing.api.IPrintJobBL;
 import de.metas.printing.api.IPrintJobLinesAggregator;
 import de.metas.printing.api.IPrintPackageCtx;
@@ -83,6 +99,10 @@ public class PrintJobLinesAggregator implements IPrintJobLinesAggregator
 {
 	public static final String DEFAULT_BinaryFormat = "application/pdf";
 
+	/** How many hardware printer/tray partitions of a package are built concurrently */
+	private static final String SYSCONFIG_SectionsParallelism = Printing_Constants.SYSCONFIG_Printing_PREFIX + "PrintJobLinesAggregator.SectionsParallelism";
+	private static final int DEFAULT_SectionsParallelism = 4;
+
 	// Services
 	private static final transient Logger logger = LogManager.getLogger(PrintJobLinesAggregator.class);
 	private final transient IPrintingDAO dao = Services.get(IPrintingDAO.class);
@@ -100,6 +120,9 @@ public class PrintJobLinesAggregator implements IPrintJobLinesAggregator
 	// NOTE: we shall use IdentityHashMap instead of HashMap because key content (I_C_Print_PackageInfo) is changing
 	private final Map<I_C_Print_PackageInfo, List<ArchivePart>> mapArchiveParts = new IdentityHashMap<>();
 
+	/** All archives which were added so far; their spooled data needs to be deleted when we are done */
+	private final List<ArchiveData> archiveDatas = new ArrayList<>();
+
 	/**
 	 * True if aggregator was already executed
 	 */
@@ -162,6 +185,19 @@ public class PrintJobLinesAggregator implements IPrintJobLinesAggregator
 		}
 	}
 
+	/**
+	 * Deletes the spooled archive data of all lines which were added so far. Shall be called if the aggregator is abandoned without calling {@link #createPrintPackage()}.
+	 */
+	@Override
+	public void close()
+	{
+		for (final ArchiveData archiveData : archiveDatas)
+		{
+			archiveData.dispose();
+		}
+		archiveDatas.clear();
+	}
+
 	private void add0(final I_C_Print_Job_Line jobLine,
 			final Mutable<ArrayKey> preceedingKey)
 	{
@@ -178,6 +214,7 @@ public class PrintJobLinesAggregator implements IPrintJobLinesAggregator
 		// Create ArchiveData from Print Job Line
 		final I_AD_Archive archive = jobLine.getC_Printing_Queue().getAD_Archive();
 		final ArchiveData archiveData = new ArchiveData(jobLine, archive);
+		archiveDatas.add(archiveData);
 		if (!archiveData.hasData())
 		{
 			logger.info("Print Job Line's Archive has no data: {}. Skipping it", archiveData);
@@ -313,6 +350,10 @@ public class PrintJobLinesAggregator implements IPrintJobLinesAggregator
 
 		//
 		// Add ArchiveParts to internal map
+		if (archiveParts.isEmpty())
+		{
+			archiveData.dispose();
+		}
 		for (final ArchivePart archivePart : archiveParts)
 		{
 			final Pair<ArrayKey, I_C_Print_PackageInfo> keyAndPackageInfo = getCreatePrintPackageInfo(
@@ -373,15 +414,36 @@ public class PrintJobLinesAggregator implements IPrintJobLinesAggregator
 	@Override
 	public I_C_Print_Package createPrintPackage()
 	{
-		final ByteArrayOutputStream pdfBuf = new ByteArrayOutputStream();
-		final int pages = createPDFData(pdfBuf); // create the PDS data, and update the print package infos' pageFrom and pageto values
+		File pdfFile = null;
+		try
+		{
+			pdfFile = File.createTempFile("C_Print_Package_", ".pdf");
+			return createPrintPackage(pdfFile);
+		}
+		catch (final IOException e)
+		{
+			throw new AdempiereException("Cannot create the print package's PDF file", e);
+		}
+		finally
+		{
+			close();
+			deleteFile(pdfFile);
+		}
+	}
+
+	private I_C_Print_Package createPrintPackage(final File pdfFile) throws IOException
+	{
+		final int pages;
+		try (final OutputStream pdfOut = new BufferedOutputStream(new FileOutputStream(pdfFile)))
+		{
+			pages = createPDFData(pdfOut); // create the PDS data, and update the print package infos' pageFrom and pageto values
+		}
 		if (pages <= 0)
 		{
 			throw new AdempiereException("No PDF pages found. No package created."); // TRL
 		}
 
-		final byte[] data = pdfBuf.toByteArray();
-		if (data == null || data.length == 0)
+		if (pdfFile.length() == 0)
 		{
 			throw new AdempiereException("No PDF data found. No package created."); // TRL
 		}
@@ -413,8 +475,7 @@ public class PrintJobLinesAggregator implements IPrintJobLinesAggregator
 		final I_C_PrintPackageData printPackageData = InterfaceWrapperHelper.create(ctx, I_C_PrintPackageData.class, trxName);
 		printPackageData.setC_Print_Package(printPackage);
 		printPackageData.setAD_Org_ID(printPackage.getAD_Org_ID());
-		printPackageData.setPrintData(data);
-		InterfaceWrapperHelper.save(printPackageData);
+		dao.savePrintData(printPackageData, pdfFile); // streamed from the file, so the package is not held in memory
 
 		// Mark processed print jobs
 		updatePrintJob();
@@ -575,14 +636,146 @@ public class PrintJobLinesAggregator implements IPrintJobLinesAggregator
 		archiveParts.add(archivePart);
 	}
 
+	private static void deleteFile(final File file)
+	{
+		if (file != null && file.exists() && !file.delete())
+		{
+			logger.warn("Could not delete temporary file {}", file);
+		}
+	}
+
 	/**
 	 * Iterates all values of the {@link #mapPrintPackageInfos} map and appends their PDF data to the given <code>out</code> stream, while updating the individual {@link I_C_Print_PackageInfo}s'
 	 * <code>pageFrom</code> and <code>pageTo</code> values.
+	 * <p>
+	 * Each print package info's pages are first copied into a section file of their own. The sections are partitioned by their hardware printer and tray,
+	 * and the partitions are built concurrently (see {@link #SYSCONFIG_SectionsParallelism}), so that e.g. the label printer's pages don't wait for the invoice printer's pages.
+	 * Finally the section files are concatenated in the order of the print package infos.
+	 * <p>
+	 * If all sections go to the same hardware printer and tray, there is nothing to build concurrently, so their pages are copied directly into <code>out</code>.
 	 *
 	 * @param out
 	 * @return number of pages created in out stream
 	 */
 	private int createPDFData(final OutputStream out)
+	{
+		final List<PrintPackageSection> sections = new ArrayList<>();
+		final Map<ArrayKey, List<PrintPackageSection>> partitions = new LinkedHashMap<>();
+		for (final Map<ArrayKey, I_C_Print_PackageInfo> curentMap : printPackageInfos)
+		{
+			for (final I_C_Print_PackageInfo printPackageInfo : curentMap.values())
+			{
+				final List<ArchivePart> archiveParts = mapArchiveParts.get(printPackageInfo);
+				if (archiveParts == null || archiveParts.isEmpty())
+				{
+					logger.info("Skipping {} because there are not archive parts", printPackageInfo);
+					continue;
+				}
+
+				final PrintPackageSection section = new PrintPackageSection(printPackageInfo, archiveParts);
+				sections.add(section);
+				partitions.computeIfAbsent(Util.mkKey(printPackageInfo.getAD_PrinterHW_ID(), printPackageInfo.getAD_PrinterHW_MediaTray_ID()), k -> new ArrayList<>())
+						.add(section);
+			}
+		}
+
+		if (partitions.size() <= 1)
+		{
+			return concatenateSections(sections, out, PrintJobLinesAggregator::buildSectionInto);
+		}
+
+		try
+		{
+			buildSections(partitions.values());
+			return concatenateSections(sections, out, PrintPackageSection::copyTo);
+		}
+		finally
+		{
+			sections.forEach(PrintPackageSection::dispose);
+		}
+	}
+
+	private static void buildSections(final Collection<List<PrintPackageSection>> partitions)
+	{
+		final int parallelism = Math.min(getSectionsParallelism(), partitions.size());
+		if (parallelism <= 1)
+		{
+			partitions.forEach(PrintJobLinesAggregator::buildPartition);
+			return;
+		}
+
+		final CustomizableThreadFactory threadFactory = CustomizableThreadFactory.builder()
+				.setThreadNamePrefix(PrintJobLinesAggregator.class.getSimpleName())
+				.setDaemon(true)
+				.build();
+		final ExecutorService executor = Executors.newFixedThreadPool(parallelism, threadFactory);
+		try
+		{
+			final List<Future<?>> futures = new ArrayList<>(partitions.size());
+			for (final List<PrintPackageSection> partition : partitions)
+			{
+				futures.add(executor.submit(() -> buildPartition(partition)));
+			}
+
+			for (final Future<?> future : futures)
+			{
+				future.get();
+			}
+		}
+		catch (final InterruptedException ex)
+		{
+			Thread.currentThread().interrupt();
+			throw AdempiereException.wrapIfNeeded(ex);
+		}
+		catch (final ExecutionException ex)
+		{
+			throw AdempiereException.wrapIfNeeded(ex.getCause());
+		}
+		finally
+		{
+			executor.shutdownNow();
+		}
+	}
+
+	private static int getSectionsParallelism()
+	{
+		return Services.get(ISysConfigBL.class).getIntValue(SYSCONFIG_SectionsParallelism, DEFAULT_SectionsParallelism);
+	}
+
+	/**
+	 * Builds the given sections, which all go to the same hardware printer and tray, one after the other.
+	 */
+	private static void buildPartition(final List<PrintPackageSection> partition)
+	{
+		final PrinterThroughputStats stats = PrinterThroughputStats.get();
+		for (final PrintPackageSection section : partition)
+		{
+			final long startNanos = System.nanoTime();
+			section.build();
+			stats.onSectionBuilt(section.getHwPrinterId(), section.getPages(), System.nanoTime() - startNanos);
+		}
+	}
+
+	/**
+	 * Copies the section's pages directly into the package's PDF, without a section file.
+	 *
+	 * @return the number of pages which were copied
+	 */
+	private static int buildSectionInto(final PrintPackageSection section, final PdfCopy copy)
+	{
+		final long startNanos = System.nanoTime();
+		final int pagesAdded = section.buildInto(copy);
+		PrinterThroughputStats.get().onSectionBuilt(section.getHwPrinterId(), pagesAdded, System.nanoTime() - startNanos);
+		return pagesAdded;
+	}
+
+	/**
+	 * @param sectionCopier adds the given section's pages to the given copy and returns how many pages were added
+	 */
+	private static int concatenateSections(
+			final List<PrintPackageSection> sections,
+			final OutputStream out,
+			final ToIntBiFunction<PrintPackageSection, PdfCopy> sectionCopier)
 	{
 		final Document document = new Document();
 
@@ -599,38 +792,25 @@ public class PrintJobLinesAggregator implements IPrintJobLinesAggregator
 		document.open();
 
 		int documentCurrentPage = 0;
-		for (final Map<ArrayKey, I_C_Print_PackageInfo> curentMap : printPackageInfos)
+		for (final PrintPackageSection section : sections)
 		{
-			for (final I_C_Print_PackageInfo printPackageInfo : curentMap.values())
-			{
-				logger.debug("Adding {}", printPackageInfo);
-
-				final List<ArchivePart> archiveParts = mapArchiveParts.get(printPackageInfo);
-				if (archiveParts == null || archiveParts.isEmpty())
-				{
-					logger.info("Skipping {} because there are not archive parts", printPackageInfo);
-					continue;
-				}
+			final I_C_Print_PackageInfo printPackageInfo = section.getPrintPackageInfo();
+			logger.debug("Adding {}", printPackageInfo);
 
-				int pagesAdded = 0;
-				for (final ArchivePart archivePart : archiveParts)
-				{
-					pagesAdded += addArchivePartToPDF(copy, archivePart);
-				}
-				if (pagesAdded == 0)
-				{
-					logger.info("Skipping {} because no pages were added", printPackageInfo);
-				}
+			final int pagesAdded = sectionCopier.applyAsInt(section, copy);
+			if (pagesAdded == 0)
+			{
+				logger.info("Skipping {} because no pages were added", printPackageInfo);
+			}
 
-				final int pageFrom = documentCurrentPage + 1;
-				final int pageTo = pageFrom + pagesAdded - 1;
-				logger.debug("Added {}: PageFrom={}, PageTo={}", new Object[] { printPackageInfo, pageFrom, pageTo });
+			final int pageFrom = documentCurrentPage + 1;
+			final int pageTo = pageFrom + pagesAdded - 1;
+			logger.debug("Added {}: PageFrom={}, PageTo={}", new Object[] { printPackageInfo, pageFrom, pageTo });
 
-				printPackageInfo.setPageFrom(pageFrom);
-				printPackageInfo.setPageTo(pageTo);
+			printPackageInfo.setPageFrom(pageFrom);
+			printPackageInfo.setPageTo(pageTo);
 
-				documentCurrentPage = pageTo;
-			}
+			documentCurrentPage = pageTo;
 		}
 		if (documentCurrentPage == 0)
 		{
@@ -643,11 +823,11 @@ public class PrintJobLinesAggregator implements IPrintJobLinesAggregator
 		return documentCurrentPage;
 	}
 
-	private int addArchivePartToPDF(final PdfCopy copy, final ArchivePart archivePart)
+	private static int addArchivePartToPDF(final PdfCopy copy, final ArchivePart archivePart, final PdfReader reader)
 	{
 		try
 		{
-			return addArchivePartToPDF0(copy, archivePart);
+			return addArchivePartToPDF0(copy, archivePart, reader);
 		}
 		catch (final Exception e)
 		{
@@ -655,19 +835,10 @@ public class PrintJobLinesAggregator implements IPrintJobLinesAggregator
 		}
 	}
 
-	private int addArchivePartToPDF0(final PdfCopy copy, final ArchivePart archivePart) throws IOException
+	private static int addArchivePartToPDF0(final PdfCopy copy, final ArchivePart archivePart, final PdfReader reader) throws IOException
 	{
 		logger.debug("Adding {}", archivePart);
 
-		final ArchiveData archiveData = archivePart.getArchiveData();
-		if (!archiveData.hasData())
-		{
-			logger.info("Archive {} does not contain any data. Skip", archivePart);
-			return 0;
-		}
-
-		final PdfReader reader = archiveData.createPdfReader();
-
 		final int archivePageNums = reader.getNumberOfPages();
 
 		int pageFrom = archivePart.getPageFrom();
@@ -706,13 +877,180 @@ public class PrintJobLinesAggregator implements IPrintJobLinesAggregator
 			pagesAdded++;
 		}
 
-		copy.freeReader(reader);
-		reader.close();
-
 		logger.debug("Added {} pages", pagesAdded);
 		return pagesAdded;
 	}
 
+	/**
+	 * The pages of one {@link I_C_Print_PackageInfo}, copied into a temporary file of their own or directly into the package's PDF.
+	 * <p>
+	 * Each archive is opened once per section. Its reader is shared by the archive's parts within the section and released after the last of them was copied.
+	 * Sections don't access the database, so they can be built on any thread.
+	 */
+	private static class PrintPackageSection
+	{
+		private final I_C_Print_PackageInfo printPackageInfo;
+		private final int hwPrinterId;
+		private final List<ArchivePart> archiveParts;
+
+		private File file;
+		private int pages = 0;
+
+		public PrintPackageSection(final I_C_Print_PackageInfo printPackageInfo, final List<ArchivePart> archiveParts)
+		{
+			this.printPackageInfo = printPackageInfo;
+			this.hwPrinterId = printPackageInfo.getAD_PrinterHW_ID();
+			this.archiveParts = archiveParts;
+		}
+
+		public I_C_Print_PackageInfo getPrintPackageInfo()
+		{
+			return printPackageInfo;
+		}
+
+		public int getHwPrinterId()
+		{
+			return hwPrinterId;
+		}
+
+		public int getPages()
+		{
+			return pages;
+		}
+
+		public void build()
+		{
+			try
+			{
+				file = File.createTempFile("C_Print_PackageInfo_", ".pdf");
+				try (final OutputStream out = new BufferedOutputStream(new FileOutputStream(file)))
+				{
+					build(out);
+				}
+			}
+			catch (final IOException | DocumentException e)
+			{
+				throw new AdempiereException("Cannot create the PDF data for " + printPackageInfo, e);
+			}
+		}
+
+		private void build(final OutputStream out) throws IOException, DocumentException
+		{
+			final Document document = new Document();
+			final PdfCopy copy = new PdfCopy(document, out);
+			document.open();
+
+			addPagesTo(copy);
+
+			if (pages > 0)
+			{
+				document.close(); // NOTE: closing a document without pages would fail
+			}
+		}
+
+		/** @return the number of pages which were copied */
+		public int buildInto(final PdfCopy copy)
+		{
+			try
+			{
+				return addPagesTo(copy);
+			}
+			catch (final IOException e)
+			{
+				throw new AdempiereException("Cannot create the PDF data for " + printPackageInfo, e);
+			}
+		}
+
+		private int addPagesTo(final PdfCopy copy) throws IOException
+		{
+			final Map<ArchiveData, Integer> partsRemaining = new IdentityHashMap<>();
+			for (final ArchivePart archivePart : archiveParts)
+			{
+				partsRemaining.merge(archivePart.getArchiveData(), 1, Integer::sum);
+			}
+
+			final int pagesBefore = pages;
+			final Map<ArchiveData, PdfReader> readers = new IdentityHashMap<>();
+			try
+			{
+				for (final ArchivePart archivePart : archiveParts)
+				{
+					final ArchiveData archiveData = archivePart.getArchiveData();
+					if (!archiveData.hasData())
+					{
+						logger.info("Archive {} does not contain any data. Skip", archivePart);
+						continue;
+					}
+
+					PdfReader reader = readers.get(archiveData);
+					if (reader == null)
+					{
+						reader = archiveData.createPdfReader();
+						readers.put(archiveData, reader);
+					}
+
+					pages += addArchivePartToPDF(copy, archivePart, reader);
+
+					if (partsRemaining.merge(archiveData, -1, Integer::sum) <= 0)
+					{
+						copy.freeReader(reader);
+						reader.close();
+						readers.remove(archiveData);
+					}
+				}
+			}
+			finally
+			{
+				readers.values().forEach(PdfReader::close);
+			}
+
+			return pages - pagesBefore;
+		}
+
+		/** @return the number of pages which were copied */
+		public int copyTo(final PdfCopy copy)
+		{
+			if (pages <= 0)
+			{
+				return 0;
+			}
+
+			try
+			{
+				final PdfReader reader = new PdfReader(new RandomAccessFileOrArray(file.getAbsolutePath(), false, true), null);
+				try
+				{
+					final int numberOfPages = reader.getNumberOfPages();
+					for (int page = 1; page <= numberOfPages; page++)
+					{
+						copy.addPage(copy.getImportedPage(reader, page));
+					}
+					copy.freeReader(reader);
+					return numberOfPages;
+				}
+				finally
+				{
+					reader.close();
+				}
+			}
+			catch (final IOException | BadPdfFormatException e)
+			{
+				throw new AdempiereException("Cannot copy the PDF data of " + printPackageInfo, e);
+			}
+		}
+
+		public void dispose()
+		{
+			deleteFile(file);
+			file = null;
+		}
+	}
+
+	/**
+	 * Holds one archive's data, spooled to a temporary file so that it doesn't stay in memory while the package is aggregated.
+	 * <p>
+	 * The PDF is opened with a partial {@link PdfReader}, which reads the pages from the file when they are copied.
+	 */
 	private static class ArchiveData
 	{
 		// Services
@@ -724,7 +1062,7 @@ public class PrintJobLinesAggregator implements IPrintJobLinesAggregator
 
 		// Arhive's Data
 		private boolean dataLoaded;
-		private transient byte[] data;
+		private File dataFile;
 		private Integer numberOfPages = null;
 
 		public ArchiveData(final I_C_Print_Job_Line printJobLine, final I_AD_Archive archive)
@@ -745,33 +1083,67 @@ public class PrintJobLinesAggregator implements IPrintJobLinesAggregator
 			return printJobLine;
 		}
 
-		private final byte[] getData()
+		private final File getDataFile()
 		{
 			if (dataLoaded)
 			{
-				return data;
+				return dataFile;
 			}
 
-			data = archiveBL.getBinaryData(archive);
+			dataFile = spoolToTempFile();
 			dataLoaded = true;
-			if (data == null || data.length == 0)
+			if (dataFile == null)
 			{
 				logger.info("Archive {} does not contain any data. Skip", archive);
-				data = null;
 			}
 
-			return data;
+			return dataFile;
+		}
+
+		private File spoolToTempFile()
+		{
+			final InputStream in = archiveBL.getBinaryDataAsStream(archive);
+			if (in == null)
+			{
+				return null;
+			}
+
+			File file = null;
+			try (final InputStream is = in)
+			{
+				file = File.createTempFile("AD_Archive_" + archive.getAD_Archive_ID() + "_", ".pdf");
+				Files.copy(is, file.toPath(), StandardCopyOption.REPLACE_EXISTING);
+			}
+			catch (final IOException e)
+			{
+				deleteFile(file);
+				throw new AdempiereException("Cannot read the data of archive " + archive, e);
+			}
+
+			if (file.length() <= 0)
+			{
+				deleteFile(file);
+				return null;
+			}
+			return file;
 		}
 
 		public boolean hasData()
 		{
-			return getData() != null;
+			return getDataFile() != null;
 		}
 
 		public PdfReader createPdfReader() throws IOException
 		{
-			final PdfReader reader = new PdfReader(getData());
-			return reader;
+			// partial read: only the cross reference table is loaded now; the pages are read from the file when they are copied
+			final RandomAccessFileOrArray file = new RandomAccessFileOrArray(getDataFile().getAbsolutePath(), false, true);
+			return new PdfReader(file, null);
+		}
+
+		public void dispose()
+		{
+			deleteFile(dataFile);
+			dataFile = null;
 		}
 
 		public int getNumberOfPages()
@@ -786,6 +1158,7 @@ public class PrintJobLinesAggregator implements IPrintJobLinesAggregator
 				return 0;
 			}
 
+			// NOTE: we don't keep this reader open, because the archive's pages will be copied only when the whole package is created
 			PdfReader reader = null;
 			try
 			{
@@ -139,19 +139,21 @@ public class PrintPackageBL implements IPrintPackageBL
 
 		printPackage.setCopies(jobInstructions.getCopies());
 
-		final IPrintJobLinesAggregator aggregator = createPrintJobLinesAggregator(printPackageCtx, jobInstructions);
-		aggregator.setPrintPackageToUse(printPackage);
+		try (final IPrintJobLinesAggregator aggregator = createPrintJobLinesAggregator(printPackageCtx, jobInstructions))
+		{
+			aggregator.setPrintPackageToUse(printPackage);
 
-		final Mutable<ArrayKey> lastKey = new Mutable<>();
+			final Mutable<ArrayKey> lastKey = new Mutable<>();
 
-		final Iterator<I_C_Print_Job_Line> jobLines = Services.get(IPrintingDAO.class).retrievePrintJobLines(jobInstructions);
-		for (final I_C_Print_Job_Line jobLine : IteratorUtils.asIterable(jobLines))
-		{
-			aggregator.add(jobLine, lastKey);
-		}
+			final Iterator<I_C_Print_Job_Line> jobLines = Services.get(IPrintingDAO.class).retrievePrintJobLines(jobInstructions);
+			for (final I_C_Print_Job_Line jobLine : IteratorUtils.asIterable(jobLines))
+			{
+				aggregator.add(jobLine, lastKey);
+			}
 
-		final I_C_Print_Package printPackageCreated = aggregator.createPrintPackage();
-		Check.assumeNotNull(printPackageCreated, "Print package created for {}", jobInstructions);
+			final I_C_Print_Package printPackageCreated = aggregator.createPrintPackage();
+			Check.assumeNotNull(printPackageCreated, "Print package created for {}", jobInstructions);
+		}
 
 		InterfaceWrapperHelper.save(printPackage);
 	}
@@ -0,0 +1,147 @@
+package de.metas.printing.api.impl;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.adempiere.util.jmx.JMXRegistry;
+import org.adempiere.util.jmx.JMXRegistry.OnJMXAlreadyExistsPolicy;
+
+import com.google.common.collect.ImmutableList;
+
+import de.metas.printing.jmx.JMXPrinterThroughput;
+
+/*
+ * #%L
+ * de.metas.printing.base
+ * %%
+ * Copyright (C) 2019 metas GmbH
+ * %%
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as
+ * published by the Free Software Foundation, either version 2 of the
+ * License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public
+ * License along with this program. If not, see
+ * <http://www.gnu.org/licenses/gpl-2.0.html>.
+ * #L%
+ */
+
+/**
+ * Counts the pages which {@link PrintJobLinesAggregator} copied for each hardware printer, and how long that took.
+ * <p>
+ * Use it to check if all printers are kept busy when packages for different printers are created at the same time.
+ */
+public final class PrinterThroughputStats
+{
+	private static final PrinterThroughputStats instance = new PrinterThroughputStats();
+
+	public static PrinterThroughputStats get()
+	{
+		return instance;
+	}
+
+	private final Map<Integer, PrinterThroughput> printerId2throughput = new ConcurrentHashMap<>();
+
+	private PrinterThroughputStats()
+	{
+		JMXRegistry.get().registerJMX(new JMXPrinterThroughput(this), OnJMXAlreadyExistsPolicy.Replace);
+	}
+
+	void onSectionBuilt(final int hwPrinterId, final int pages, final long durationNanos)
+	{
+		printerId2throughput
+				.computeIfAbsent(hwPrinterId, PrinterThroughput::new)
+				.add(pages, durationNanos);
+	}
+
+	public ImmutableList<PrinterThroughput> getThroughputs()
+	{
+		return printerId2throughput.values()
+				.stream()
+				.sorted((t1, t2) -> Integer.compare(t1.getHwPrinterId(), t2.getHwPrinterId()))
+				.collect(ImmutableList.toImmutableList());
+	}
+
+	public PrinterThroughput getThroughput(final int hwPrinterId)
+	{
+		return printerId2throughput.get(hwPrinterId);
+	}
+
+	public void reset()
+	{
+		printerId2throughput.clear();
+	}
+
+	public static final class PrinterThroughput
+	{
+		private final int hwPrinterId;
+		private final AtomicLong sections = new AtomicLong(0);
+		private final AtomicLong pages = new AtomicLong(0);
+		private final AtomicLong durationNanos = new AtomicLong(0);
+
+		private PrinterThroughput(final int hwPrinterId)
+		{
+			this.hwPrinterId = hwPrinterId;
+		}
+
+		@Override
+		public String toString()
+		{
+			return getSummary();
+		}
+
+		private void add(final int pages, final long durationNanos)
+		{
+			this.sections.incrementAndGet();
+			this.pages.addAndGet(pages);
+			this.durationNanos.addAndGet(durationNanos);
+		}
+
+		public int getHwPrinterId()
+		{
+			return hwPrinterId;
+		}
+
+		public long getSections()
+		{
+			return sections.get();
+		}
+
+		public long getPages()
+		{
+			return pages.get();
+		}
+
+		public long getDurationMillis()
+		{
+			return TimeUnit.NANOSECONDS.toMillis(durationNanos.get());
+		}
+
+		/** @return pages per second, measured over the time which was spent building this printer's sections */
+		public double getPagesPerSecond()
+		{
+			final long durationNanos = this.durationNanos.get();
+			if (durationNanos <= 0)
+			{
+				return 0;
+			}
+			return getPages() * 1_000_000_000.0 / durationNanos;
+		}
+
+		public String getSummary()
+		{
+			return "AD_PrinterHW_ID=" + hwPrinterId
+					+ ": " + getPages() + " pages in " + getSections() + " sections"
+					+ ", " + getDurationMillis() + "ms"
+					+ ", " + Math.round(getPagesPerSecond()) + " pages/s";
+		}
+	}
+}
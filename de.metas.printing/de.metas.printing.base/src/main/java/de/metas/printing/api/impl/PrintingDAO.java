@@ -22,6 +22,13 @@ package de.metas.printing.api.impl;
  * #L%
  */
 
+import java.io.BufferedInputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
 import java.util.ArrayList;
 import java.util.Iterator;
 import java.util.List;
@@ -30,6 +37,8 @@ import java.util.Properties;
 import org.adempiere.ad.dao.ISqlQueryFilter;
 import org.adempiere.ad.dao.impl.TypedSqlQuery;
 import org.adempiere.ad.trx.api.ITrx;
+import org.adempiere.exceptions.AdempiereException;
+import org.adempiere.exceptions.DBException;
 import org.adempiere.model.InterfaceWrapperHelper;
 import org.compiere.model.IQuery;
 import org.compiere.model.IQuery.Aggregate;
@@ -51,6 +60,7 @@ import de.metas.printing.model.I_AD_PrinterHW_MediaTray;
 import de.metas.printing.model.I_AD_PrinterTray_Matching;
 import de.metas.printing.model.I_AD_Printer_Matching;
 import de.metas.printing.model.I_AD_Printer_Tray;
+import de.metas.printing.model.I_C_PrintPackageData;
 import de.metas.printing.model.I_C_Print_Job;
 import de.metas.printing.model.I_C_Print_Job_Instructions;
 import de.metas.printing.model.I_C_Print_Job_Line;
@@ -58,6 +68,7 @@ import de.metas.printing.model.I_C_Printing_Queue;
 import de.metas.printing.model.X_C_Print_Job_Instructions;
 import de.metas.util.Check;
 import de.metas.util.Services;
+import lombok.NonNull;
 
 public class PrintingDAO extends AbstractPrintingDAO
 {
@@ -405,6 +416,36 @@ public class PrintingDAO extends AbstractPrintingDAO
 		return result;
 	}
 
+	@Override
+	public void savePrintData(@NonNull final I_C_PrintPackageData printPackageData, @NonNull final File printDataFile)
+	{
+		InterfaceWrapperHelper.save(printPackageData);
+
+		final String sql = "UPDATE " + I_C_PrintPackageData.Table_Name + " SET " + I_C_PrintPackageData.COLUMNNAME_PrintData + "=?"
+				+ " WHERE " + I_C_PrintPackageData.COLUMNNAME_C_PrintPackageData_ID + "=?";
+		final String trxName = InterfaceWrapperHelper.getTrxName(printPackageData);
+		PreparedStatement pstmt = null;
+		try (final InputStream in = new BufferedInputStream(new FileInputStream(printDataFile)))
+		{
+			pstmt = DB.prepareStatement(sql, trxName);
+			pstmt.setBinaryStream(1, in, printDataFile.length());
+			pstmt.setInt(2, printPackageData.getC_PrintPackageData_ID());
+			pstmt.executeUpdate();
+		}
+		catch (final SQLException e)
+		{
+			throw new DBException(e, sql);
+		}
+		catch (final IOException e)
+		{
+			throw new AdempiereException("Cannot read the print data from " + printDataFile, e);
+		}
+		finally
+		{
+			DB.close(pstmt);
+		}
+	}
+
 	@Override
 	public void runWithTrxName(final String trxName, final Runnable runnable)
 	{
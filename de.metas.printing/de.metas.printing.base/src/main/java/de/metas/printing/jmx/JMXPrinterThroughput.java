@@ -0,0 +1,75 @@
+package de.metas.printing.jmx;
+
+import org.adempiere.util.jmx.IJMXNameAware;
+
+import de.metas.printing.api.impl.PrinterThroughputStats;
+import de.metas.printing.api.impl.PrinterThroughputStats.PrinterThroughput;
+import lombok.NonNull;
+
+/*
+ * #%L
+ * de.metas.printing.base
+ * %%
+ * Copyright (C) 2019 metas GmbH
+ * %%
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as
+ * published by the Free Software Foundation, either version 2 of the
+ * License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public
+ * License along with this program. If not, see
+ * <http://www.gnu.org/licenses/gpl-2.0.html>.
+ * #L%
+ */
+
+public class JMXPrinterThroughput implements JMXPrinterThroughputMBean, IJMXNameAware
+{
+	private final PrinterThroughputStats stats;
+
+	public JMXPrinterThroughput(@NonNull final PrinterThroughputStats stats)
+	{
+		this.stats = stats;
+	}
+
+	@Override
+	public String getJMXName()
+	{
+		return "de.metas.printing:type=PrinterThroughput";
+	}
+
+	@Override
+	public int getPrintersCount()
+	{
+		return stats.getThroughputs().size();
+	}
+
+	@Override
+	public long getPagesTotal()
+	{
+		return stats.getThroughputs()
+				.stream()
+				.mapToLong(PrinterThroughput::getPages)
+				.sum();
+	}
+
+	@Override
+	public String[] getPrinterThroughputs()
+	{
+		return stats.getThroughputs()
+				.stream()
+				.map(PrinterThroughput::getSummary)
+				.toArray(String[]::new);
+	}
+
+	@Override
+	public void reset()
+	{
+		stats.reset();
+	}
+}
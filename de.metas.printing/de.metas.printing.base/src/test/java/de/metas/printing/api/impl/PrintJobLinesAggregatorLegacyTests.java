@@ -25,6 +25,8 @@ package de.metas.printing.api.impl;
 
 import static org.junit.Assert.assertEquals;
 
+import java.io.File;
+import java.util.Arrays;
 import java.util.HashSet;
 import java.util.List;
 import java.util.Set;
@@ -43,6 +45,7 @@ import org.junit.Test;
 
 import de.metas.printing.api.IPrintPackageBL;
 import de.metas.printing.api.IPrintPackageCtx;
+import de.metas.printing.api.impl.PrinterThroughputStats.PrinterThroughput;
 import de.metas.printing.api.util.PdfCollator;
 import de.metas.printing.exception.PrintingQueueAggregationException;
 import de.metas.printing.model.I_AD_PrinterRouting;
@@ -70,6 +73,7 @@ public class PrintJobLinesAggregatorLegacyTests extends AbstractPrintingTest
 	protected void afterSetup()
 	{
 		MockedDBArchiveStorage.reset();
+		PrinterThroughputStats.get().reset();
 
 		POJOWrapper.setDefaultStrictValues(false);
 
@@ -194,6 +198,11 @@ public class PrintJobLinesAggregatorLegacyTests extends AbstractPrintingTest
 		Assert.assertEquals("Invalid infos count: " + printPackageInfos, 1, printPackageInfos.size());
 		Assert.assertEquals("Invalid PageFrom for " + printPackageInfos.get(0), 1, printPackageInfos.get(0).getPageFrom());
 		Assert.assertEquals("Invalid PageTo for " + printPackageInfos.get(0), 20 + 6 + 20, printPackageInfos.get(0).getPageTo());
+
+		// only one printer, so the pages were copied directly into the package; make sure they were counted once
+		final PrinterThroughput printer01Throughput = PrinterThroughputStats.get().getThroughput(printPackageInfos.get(0).getAD_PrinterHW_ID());
+		Assert.assertEquals("Invalid throughput for printer01: " + printer01Throughput, 20 + 6 + 20, printer01Throughput.getPages());
+		Assert.assertEquals("Invalid throughput for printer01: " + printer01Throughput, 1, printer01Throughput.getSections());
 	}
 
 	@Test
@@ -238,6 +247,54 @@ public class PrintJobLinesAggregatorLegacyTests extends AbstractPrintingTest
 		assertEquals("Invalid PageTo for " + printPackageInfos.get(1), 4, printPackageInfos.get(1).getPageTo());
 		assertEquals("Invalid PageFrom for " + printPackageInfos.get(2), 5, printPackageInfos.get(2).getPageFrom());
 		assertEquals("Invalid PageTo for " + printPackageInfos.get(2), 6, printPackageInfos.get(2).getPageTo());
+
+		// the two printers' sections were built concurrently; make sure their pages were counted for the right printer
+		final PrinterThroughput printer01Throughput = PrinterThroughputStats.get().getThroughput(printPackageInfos.get(0).getAD_PrinterHW_ID());
+		final PrinterThroughput printer02Throughput = PrinterThroughputStats.get().getThroughput(printPackageInfos.get(1).getAD_PrinterHW_ID());
+		Assert.assertEquals("Invalid throughput for printer01: " + printer01Throughput, 4, printer01Throughput.getPages());
+		Assert.assertEquals("Invalid throughput for printer02: " + printer02Throughput, 2, printer02Throughput.getPages());
+	}
+
+	/**
+	 * Merges the archives of two printers, so that the per-printer sections are spooled to temporary files too.
+	 * All temporary files (archives, sections and the package itself) shall be deleted afterwards.
+	 */
+	@Test
+	public void test_createPrintPackage_multipleArchives_tempFilesDeleted()
+	{
+		final I_C_Print_Job printJob = helper.createPrintJob();
+		final I_C_Print_Job_Line line1 = helper.createPrintJobLine(printJob, helper.createPrinterRouting("printer01", "tray01", -1, 1, 2), "01");
+		final I_C_Print_Job_Line line2 = helper.createPrintJobLine(printJob, helper.createPrinterRouting("printer02", "tray01", -1, 3, 5), "02");
+		final I_C_Print_Job_Line line3 = helper.createPrintJobLine(printJob, helper.createPrinterRouting("printer01", "tray01", -1, -1, -1), "03");
+		final I_C_Print_Job_Instructions printJobInstructions = helper.createPrintJobInstructions(printJob);
+		InterfaceWrapperHelper.save(printJob);
+
+		final Set<String> tempFilesBefore = listPrintingTempFiles();
+
+		final IPrintPackageCtx printCtx = printPackageBL.createInitialCtx(helper.getCtx());
+		final PrintJobLinesAggregator aggregator = new PrintJobLinesAggregator(printCtx, printJobInstructions);
+		final Mutable<ArrayKey> preceedingKey = new Mutable<Util.ArrayKey>(null);
+		aggregator.add(line1, preceedingKey);
+		aggregator.add(line2, preceedingKey);
+		aggregator.add(line3, preceedingKey);
+		final I_C_Print_Package printPackage = aggregator.createPrintPackage();
+
+		assertEquals("Invalid PageCount for " + printPackage, 2 + 3 + 20, printPackage.getPageCount());
+		final byte[] dataExpected = new PdfCollator()
+				.addPages(helper.getPdf("01"), 1, 2)
+				.addPages(helper.getPdf("02"), 3, 5)
+				.addPages(helper.getPdf("03"), 1, 20)
+				.toByteArray();
+		helper.assertEqualsPDF(dataExpected, helper.getDAO().getPrintPackageData(printPackage).getPrintData());
+
+		Assert.assertEquals("Temporary files left behind", tempFilesBefore, listPrintingTempFiles());
+	}
+
+	private static Set<String> listPrintingTempFiles()
+	{
+		final String[] fileNames = new File(System.getProperty("java.io.tmpdir"))
+				.list((dir, name) -> name.startsWith("C_Print_Package") || name.startsWith("AD_Archive_"));
+		return fileNames == null ? new HashSet<>() : new HashSet<>(Arrays.asList(fileNames));
 	}
 
 	public static class MockedDBArchiveStorage extends DBArchiveStorage
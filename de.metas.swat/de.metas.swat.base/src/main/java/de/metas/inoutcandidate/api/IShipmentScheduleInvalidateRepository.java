@@ -85,6 +85,12 @@ public interface IShipmentScheduleInvalidateRepository extends ISingletonService
 	/** Delete M_ShipmentSchedule_Recompute records for given tag */
 	void deleteRecomputeMarkersOutOfTrx(PInstanceId adPInstanceId);
 
+	/**
+	 * Delete M_ShipmentSchedule_Recompute records for given tag and shipment schedules, in the thread inherited transaction.
+	 * So the markers are only gone if the transaction which updated the given schedules is committed.
+	 */
+	void deleteRecomputeMarkers(PInstanceId adPInstanceId, Collection<ShipmentScheduleId> shipmentScheduleIds);
+
 	/** Untag M_ShipmentSchedule_Recompute records which were tagged with given tag */
 	void releaseRecomputeMarkerOutOfTrx(PInstanceId adPInstanceId);
 
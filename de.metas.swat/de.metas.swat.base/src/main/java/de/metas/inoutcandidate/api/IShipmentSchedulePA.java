@@ -66,6 +66,20 @@ public interface IShipmentSchedulePA extends ISingletonService
 	 */
 	List<OlAndSched> retrieveInvalid(PInstanceId pinstanceId);
 
+	/**
+	 * Like {@link #retrieveInvalid(PInstanceId)}, but only retrieves the IDs of the invalid schedules and splits them into pages which can be updated independently of each other.
+	 * <p>
+	 * All schedules of the same order or product are in the same page, so a page can contain more than <code>pageSize</code> schedules.
+	 *
+	 * @return pages of shipment schedule IDs; the pages and the IDs within each page are in the order in which {@link #retrieveInvalid(PInstanceId)} would return them.
+	 */
+	List<List<ShipmentScheduleId>> retrieveInvalidInPages(PInstanceId pinstanceId, int pageSize);
+
+	/**
+	 * Loads the given shipment schedules together with their {@link I_C_OrderLine}s, in the same order as {@link #retrieveInvalid(PInstanceId)}.
+	 */
+	List<OlAndSched> retrieveOlAndScheds(Collection<ShipmentScheduleId> shipmentScheduleIds);
+
 	void setIsDiplayedForProduct(ProductId productId, boolean displayed);
 
 	/**
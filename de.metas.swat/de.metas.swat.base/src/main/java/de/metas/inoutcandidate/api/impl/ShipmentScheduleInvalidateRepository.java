@@ -38,6 +38,7 @@ import de.metas.storage.IStorageSegment;
 import de.metas.util.Check;
 import de.metas.util.Services;
 import de.metas.util.StringUtils;
+import de.metas.util.lang.RepoIdAwares;
 import lombok.NonNull;
 
 /*
@@ -556,6 +557,29 @@ public class ShipmentScheduleInvalidateRepository implements IShipmentScheduleIn
 				.registerHandlingMethod(trx -> invalidateShipmentScheduleCache());
 	}
 
+	@Override
+	public void deleteRecomputeMarkers(@NonNull final PInstanceId pinstanceId, @NonNull final Collection<ShipmentScheduleId> shipmentScheduleIds)
+	{
+		if (shipmentScheduleIds.isEmpty())
+		{
+			return;
+		}
+
+		final List<Object> sqlParams = new ArrayList<>();
+		sqlParams.add(pinstanceId);
+		final String sql = "DELETE FROM " + M_SHIPMENT_SCHEDULE_RECOMPUTE + " WHERE AD_Pinstance_ID=?"
+				+ " AND " + DB.buildSqlList(COLUMNNAME_M_ShipmentSchedule_ID, RepoIdAwares.asRepoIdsSet(shipmentScheduleIds), sqlParams);
+
+		final int result = DB.executeUpdateEx(sql, sqlParams.toArray(), ITrx.TRXNAME_ThreadInherited);
+		logger.debug("Deleted {} {} entries for AD_Pinstance_ID={} and {} shipment schedules", result, M_SHIPMENT_SCHEDULE_RECOMPUTE, pinstanceId, shipmentScheduleIds.size());
+
+		// invalidate the shipment schedule cache after current transaction commit
+		Services.get(ITrxManager.class)
+				.getTrxListenerManagerOrAutoCommit(ITrx.TRXNAME_ThreadInherited)
+				.newEventListener(TrxEventTiming.AFTER_COMMIT)
+				.registerHandlingMethod(trx -> invalidateShipmentScheduleCache());
+	}
+
 	private void invalidateShipmentScheduleCache()
 	{
 		final IModelCacheInvalidationService modelCacheInvalidationService = Services.get(IModelCacheInvalidationService.class);
@@ -51,6 +51,7 @@ import de.metas.order.OrderLineId;
 import de.metas.process.PInstanceId;
 import de.metas.product.ProductId;
 import de.metas.util.Check;
+import de.metas.util.NumberUtils;
 import de.metas.util.Services;
 import lombok.NonNull;
 
@@ -185,6 +186,55 @@ public class ShipmentSchedulePA implements IShipmentSchedulePA
 		return createOlAndScheds(shipmentSchedules);
 	}
 
+	@Override
+	public List<List<ShipmentScheduleId>> retrieveInvalidInPages(@NonNull final PInstanceId pinstanceId, final int pageSize)
+	{
+		final IShipmentScheduleInvalidateRepository invalidSchedulesRepo = Services.get(IShipmentScheduleInvalidateRepository.class);
+
+		// task 08727: Tag the recompute records out-of-trx (see retrieveInvalid)
+		invalidSchedulesRepo.markAllToRecomputeOutOfTrx(pinstanceId);
+
+		// Load only the IDs we need to build the pages, so that we don't have all invalid schedules in memory at once
+		final IQueryBL queryBL = Services.get(IQueryBL.class);
+		final List<Map<String, Object>> rows = queryBL
+				.createQueryBuilder(I_M_ShipmentSchedule.class)
+				.addOnlyActiveRecordsFilter()
+				.filter(invalidSchedulesRepo.createInvalidShipmentSchedulesQueryFilter(pinstanceId))
+				.create()
+				.setOrderBy(queryBL.createSqlQueryOrderBy(ORDER_CLAUSE))
+				.listColumns(I_M_ShipmentSchedule.COLUMNNAME_M_ShipmentSchedule_ID, I_M_ShipmentSchedule.COLUMNNAME_C_Order_ID, I_M_ShipmentSchedule.COLUMNNAME_M_Product_ID);
+
+		final ShipmentSchedulePagesBuilder pagesBuilder = new ShipmentSchedulePagesBuilder();
+		for (final Map<String, Object> row : rows)
+		{
+			pagesBuilder.add(
+					ShipmentScheduleId.ofRepoId(NumberUtils.asInt(row.get(I_M_ShipmentSchedule.COLUMNNAME_M_ShipmentSchedule_ID), -1)),
+					NumberUtils.asInt(row.get(I_M_ShipmentSchedule.COLUMNNAME_C_Order_ID), -1),
+					NumberUtils.asInt(row.get(I_M_ShipmentSchedule.COLUMNNAME_M_Product_ID), -1));
+		}
+
+		return pagesBuilder.build(pageSize);
+	}
+
+	@Override
+	public List<OlAndSched> retrieveOlAndScheds(@NonNull final Collection<ShipmentScheduleId> shipmentScheduleIds)
+	{
+		if (shipmentScheduleIds.isEmpty())
+		{
+			return ImmutableList.of();
+		}
+
+		final IQueryBL queryBL = Services.get(IQueryBL.class);
+		final List<I_M_ShipmentSchedule> shipmentSchedules = queryBL
+				.createQueryBuilder(I_M_ShipmentSchedule.class)
+				.addInArrayFilter(I_M_ShipmentSchedule.COLUMNNAME_M_ShipmentSchedule_ID, shipmentScheduleIds)
+				.create()
+				.setOrderBy(queryBL.createSqlQueryOrderBy(ORDER_CLAUSE))
+				.list();
+
+		return createOlAndScheds(shipmentSchedules);
+	}
+
 	private static final OrderAndLineId extractOrderAndLineId(final I_M_ShipmentSchedule shipmentSchedule)
 	{
 		return OrderAndLineId.ofRepoIdsOrNull(shipmentSchedule.getC_Order_ID(), shipmentSchedule.getC_OrderLine_ID());
@@ -0,0 +1,182 @@
+package de.metas.inoutcandidate.api.impl;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.slf4j.Logger;
+
+import com.google.common.collect.ImmutableList;
+
+import de.metas.inoutcandidate.api.ShipmentScheduleId;
+import de.metas.logging.LogManager;
+import de.metas.util.Check;
+
+/*
+ * #%L
+ * de.metas.swat.base
+ * %%
+ * Copyright (C) 2019 metas GmbH
+ * %%
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as
+ * published by the Free Software Foundation, either version 2 of the
+ * License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public
+ * License along with this program.  If not, see
+ * <http://www.gnu.org/licenses/gpl-2.0.html>.
+ * #L%
+ */
+
+/**
+ * Splits shipment schedules into pages which can be updated independently of each other.
+ * <p>
+ * Schedules of the same order always end up in the same page, because the order completeness check needs all of them.
+ * Likewise, all schedules of the same product end up in the same page, so that the allocation of the qty on hand sees all competing lines.
+ * Both rules are applied transitively, so a group of orders which share products can get a page of its own which is bigger than the page size.
+ * That case is logged as warning.
+ * <p>
+ * The pages and the schedules within them keep the order in which the schedules were added.
+ */
+final class ShipmentSchedulePagesBuilder
+{
+	private static final Logger logger = LogManager.getLogger(ShipmentSchedulePagesBuilder.class);
+
+	private final List<ShipmentScheduleId> shipmentScheduleIds = new ArrayList<>();
+	private final List<Integer> productIds = new ArrayList<>();
+	private final UnionFind orderGroups = new UnionFind();
+	private final Map<Integer, Integer> indexByOrderId = new HashMap<>();
+
+	public ShipmentSchedulePagesBuilder add(final ShipmentScheduleId shipmentScheduleId, final int orderId, final int productId)
+	{
+		final int index = shipmentScheduleIds.size();
+		shipmentScheduleIds.add(shipmentScheduleId);
+		productIds.add(productId);
+		orderGroups.add();
+
+		if (orderId > 0)
+		{
+			orderGroups.union(index, indexByOrderId.computeIfAbsent(orderId, k -> index));
+		}
+		return this;
+	}
+
+	public ImmutableList<List<ShipmentScheduleId>> build(final int pageSize)
+	{
+		Check.assumeGreaterThanZero(pageSize, "pageSize");
+
+		//
+		// Merge the orders' groups which share a product.
+		// Note: the order groups' roots are the indexes of their first schedules, so the groups keep their priority order
+		final UnionFind pageGroups = new UnionFind();
+		final Map<Integer, Integer> groupIndexByProductId = new HashMap<>();
+		for (int index = 0; index < shipmentScheduleIds.size(); index++)
+		{
+			pageGroups.add();
+		}
+		for (int index = 0; index < shipmentScheduleIds.size(); index++)
+		{
+			final int productId = productIds.get(index);
+			if (productId <= 0)
+			{
+				continue;
+			}
+
+			final int orderGroupIndex = orderGroups.findRoot(index);
+			final Integer productGroupIndex = groupIndexByProductId.putIfAbsent(productId, orderGroupIndex);
+			if (productGroupIndex != null)
+			{
+				pageGroups.union(orderGroupIndex, productGroupIndex);
+			}
+		}
+
+		//
+		// Collect the groups and put them into pages
+		final Map<Integer, List<ShipmentScheduleId>> groupsByRoot = new LinkedHashMap<>();
+		for (int index = 0; index < shipmentScheduleIds.size(); index++)
+		{
+			final int root = pageGroups.findRoot(orderGroups.findRoot(index));
+			groupsByRoot.computeIfAbsent(root, k -> new ArrayList<>())
+					.add(shipmentScheduleIds.get(index));
+		}
+
+		final ImmutableList.Builder<List<ShipmentScheduleId>> pages = ImmutableList.builder();
+		final List<ShipmentScheduleId> currentPage = new ArrayList<>();
+		for (final List<ShipmentScheduleId> group : groupsByRoot.values())
+		{
+			if (group.size() > pageSize)
+			{
+				logger.warn("Updating the {} schedules of the orders and products of {} in one page which exceeds the page size {}", group.size(), group.get(0), pageSize);
+			}
+
+			if (!currentPage.isEmpty() && currentPage.size() + group.size() > pageSize)
+			{
+				pages.add(ImmutableList.copyOf(currentPage));
+				currentPage.clear();
+			}
+			currentPage.addAll(group);
+		}
+		if (!currentPage.isEmpty())
+		{
+			pages.add(ImmutableList.copyOf(currentPage));
+		}
+
+		return pages.build();
+	}
+
+	/**
+	 * Disjoint sets of indexes which keep the smallest index of each set as its root.
+	 */
+	private static final class UnionFind
+	{
+		private final List<Integer> parents = new ArrayList<>();
+
+		public void add()
+		{
+			parents.add(parents.size());
+		}
+
+		public int findRoot(final int index)
+		{
+			int root = index;
+			while (parents.get(root) != root)
+			{
+				root = parents.get(root);
+			}
+
+			// path compression
+			int current = index;
+			while (current != root)
+			{
+				final int parent = parents.get(current);
+				parents.set(current, root);
+				current = parent;
+			}
+
+			return root;
+		}
+
+		public void union(final int index1, final int index2)
+		{
+			final int root1 = findRoot(index1);
+			final int root2 = findRoot(index2);
+			if (root1 == root2)
+			{
+				return;
+			}
+
+			// keep the smaller index as root, so that each group is ordered by its first schedule
+			final int root = Math.min(root1, root2);
+			final int child = Math.max(root1, root2);
+			parents.set(child, root);
+		}
+	}
+}
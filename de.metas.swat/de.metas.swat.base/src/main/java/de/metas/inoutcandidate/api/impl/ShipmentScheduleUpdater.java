@@ -25,11 +25,16 @@ package de.metas.inoutcandidate.api.impl;
 
 import java.util.ArrayList;
 import java.util.Collections;
+import java.util.HashSet;
 import java.util.List;
 import java.util.Properties;
 import java.util.Set;
 
 import org.adempiere.ad.trx.api.ITrx;
+import org.adempiere.ad.trx.api.ITrxManager;
+import org.adempiere.model.InterfaceWrapperHelper;
+import org.adempiere.service.ISysConfigBL;
+import org.compiere.model.I_C_BPartner;
 import org.slf4j.Logger;
 
 import com.google.common.collect.ImmutableSet;
@@ -58,6 +63,12 @@ public class ShipmentScheduleUpdater implements IShipmentScheduleUpdater
 
 	private static final Logger logger = LogManager.getLogger(ShipmentScheduleUpdater.class);
 
+	/**
+	 * If greater than zero, the invalid shipment schedules are updated in pages of (roughly) this size, each page in its own transaction.
+	 * Otherwise all invalid schedules are loaded and updated at once, in the current transaction.
+	 */
+	private static final String SYSCONFIG_PageSize = "de.metas.inoutcandidate.api.impl.ShipmentScheduleUpdater.PageSize";
+
 	@Override
 	public int updateShipmentSchedule(final Properties ctx, final int adUserId, final PInstanceId adPInstanceId)
 	{
@@ -74,7 +85,6 @@ public class ShipmentScheduleUpdater implements IShipmentScheduleUpdater
 	{
 		// services
 		final IShipmentScheduleInvalidateRepository invalidSchedulesRepo = Services.get(IShipmentScheduleInvalidateRepository.class);
-		final IShipmentSchedulePA shipmentSchedulePA = Services.get(IShipmentSchedulePA.class);
 		final IShipmentScheduleBL shipmentScheduleBL = Services.get(IShipmentScheduleBL.class);
 
 		final Boolean running = this.running.get();
@@ -83,17 +93,16 @@ public class ShipmentScheduleUpdater implements IShipmentScheduleUpdater
 
 		try
 		{
-			shipmentSchedulePA.deleteSchedulesWithoutOrderLines();
-
-			if (!updateOnlyLocked)
+			final int pageSize = Services.get(ISysConfigBL.class).getIntValue(SYSCONFIG_PageSize, 0);
+			if (pageSize > 0)
 			{
-				//
-				// Create and invalidate missing shipment schedules
-				final List<I_M_ShipmentSchedule> shipmentSchedulesNew = Services.get(IShipmentScheduleHandlerBL.class).createMissingCandidates(ctx, ITrx.TRXNAME_ThreadInherited);
-				final Set<ShipmentScheduleId> shipmentSchedulesNewIds = shipmentSchedulesNew.stream().map(s -> ShipmentScheduleId.ofRepoId(s.getM_ShipmentSchedule_ID())).collect(ImmutableSet.toImmutableSet());
-				invalidSchedulesRepo.invalidateShipmentSchedules(shipmentSchedulesNewIds);
+				// the pages are updated in their own transactions, so they need to see what we created here
+				Services.get(ITrxManager.class).runInNewTrx(() -> deleteObsoleteAndCreateMissingSchedules(ctx, updateOnlyLocked));
+				return updateInvalidInPages(ctx, adPInstanceId, pageSize);
 			}
 
+			deleteObsoleteAndCreateMissingSchedules(ctx, updateOnlyLocked);
+
 			final List<OlAndSched> collectResult = retrieveOlsAndSchedsToProcess(adPInstanceId);
 
 			logger.debug("Invoking shipmentScheduleBL to update {} shipment schedule entries.", collectResult.size());
@@ -120,6 +129,73 @@ public class ShipmentScheduleUpdater implements IShipmentScheduleUpdater
 		}
 	}
 
+	private void deleteObsoleteAndCreateMissingSchedules(final Properties ctx, final boolean updateOnlyLocked)
+	{
+		Services.get(IShipmentSchedulePA.class).deleteSchedulesWithoutOrderLines();
+
+		if (!updateOnlyLocked)
+		{
+			//
+			// Create and invalidate missing shipment schedules
+			final List<I_M_ShipmentSchedule> shipmentSchedulesNew = Services.get(IShipmentScheduleHandlerBL.class).createMissingCandidates(ctx, ITrx.TRXNAME_ThreadInherited);
+			final Set<ShipmentScheduleId> shipmentSchedulesNewIds = shipmentSchedulesNew.stream().map(s -> ShipmentScheduleId.ofRepoId(s.getM_ShipmentSchedule_ID())).collect(ImmutableSet.toImmutableSet());
+			Services.get(IShipmentScheduleInvalidateRepository.class).invalidateShipmentSchedules(shipmentSchedulesNewIds);
+		}
+	}
+
+	/**
+	 * Updates the invalid schedules page by page, each page in its own transaction.
+	 * This way only one page of schedules is in memory at a time and each transaction holds its locks only for a bounded time.
+	 *
+	 * @return the number of updated schedule entries.
+	 */
+	private int updateInvalidInPages(final Properties ctx, final PInstanceId adPInstanceId, final int pageSize)
+	{
+		final List<List<ShipmentScheduleId>> pages = Services.get(IShipmentSchedulePA.class).retrieveInvalidInPages(adPInstanceId, pageSize);
+		logger.debug("Updating invalid shipment schedules in {} pages (pageSize={})", pages.size(), pageSize);
+
+		final ITrxManager trxManager = Services.get(ITrxManager.class);
+		int countUpdated = 0;
+		for (final List<ShipmentScheduleId> page : pages)
+		{
+			trxManager.runInNewTrx(() -> updatePage(ctx, adPInstanceId, page));
+			countUpdated += page.size();
+		}
+
+		logger.debug("Done");
+		return countUpdated;
+	}
+
+	private void updatePage(final Properties ctx, final PInstanceId adPInstanceId, final List<ShipmentScheduleId> page)
+	{
+		final List<OlAndSched> olsAndScheds = Services.get(IShipmentSchedulePA.class).retrieveOlAndScheds(page);
+		prefetchBPartners(olsAndScheds);
+
+		logger.debug("Invoking shipmentScheduleBL to update {} shipment schedule entries.", olsAndScheds.size());
+		Services.get(IShipmentScheduleBL.class).updateSchedules(ctx, olsAndScheds, ITrx.TRXNAME_ThreadInherited);
+
+		// delete the markers in the page's trx, so that they are kept if the update is rolled back
+		Services.get(IShipmentScheduleInvalidateRepository.class).deleteRecomputeMarkers(adPInstanceId, page);
+	}
+
+	/**
+	 * Loads the page's partners in one query, so that the partner lookups during the update are served from the model cache.
+	 */
+	private static void prefetchBPartners(final List<OlAndSched> olsAndScheds)
+	{
+		final Set<Integer> bpartnerIds = new HashSet<>();
+		for (final OlAndSched olAndSched : olsAndScheds)
+		{
+			final I_M_ShipmentSchedule sched = olAndSched.getSched();
+			bpartnerIds.add(sched.getC_BPartner_ID());
+			bpartnerIds.add(sched.getC_BPartner_Override_ID());
+			bpartnerIds.add(sched.getBill_BPartner_ID());
+		}
+		bpartnerIds.removeIf(bpartnerId -> bpartnerId <= 0);
+
+		InterfaceWrapperHelper.loadByIdsOutOfTrx(bpartnerIds, I_C_BPartner.class);
+	}
+
 	@Override
 	public boolean isRunning()
 	{
@@ -26,7 +26,18 @@ import java.math.BigDecimal;
 import java.util.ArrayList;
 import java.util.Iterator;
 import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.Optional;
 import java.util.Properties;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Consumer;
 
 import org.adempiere.ad.trx.api.ITrx;
 import org.adempiere.ad.trx.api.ITrxManager;
@@ -37,8 +48,12 @@ import org.adempiere.ad.trx.processor.spi.TrxItemChunkProcessorAdapter;
 import org.adempiere.exceptions.AdempiereException;
 import org.adempiere.model.InterfaceWrapperHelper;
 import org.adempiere.service.ISysConfigBL;
+import org.adempiere.util.concurrent.CustomizableThreadFactory;
 import org.adempiere.util.lang.IAutoCloseable;
 import org.adempiere.util.lang.IContextAware;
+import org.compiere.util.Env;
+
+import com.google.common.annotations.VisibleForTesting;
 
 import de.metas.inout.IInOutDAO;
 import de.metas.invoicecandidate.api.IInvoiceCandDAO;
@@ -71,6 +86,13 @@ import lombok.NonNull;
 	private static final String SYSCONFIG_ItemsPerBatch = "de.metas.invoicecandidate.api.impl.InvoiceCandInvalidUpdater.ItemsPerBatch";
 	private static final int DEFAULT_ItemsPerBatch = 100;
 
+	/**
+	 * How many worker threads shall update the tagged invoice candidates. Each worker gets the candidates of a subset of bill partners and uses its own transactions.
+	 * A value less or equal to one means that all candidates are updated by the calling thread, which is the default.
+	 */
+	private static final String SYSCONFIG_Parallelism = "de.metas.invoicecandidate.api.impl.InvoiceCandInvalidUpdater.Parallelism";
+	private static final int DEFAULT_Parallelism = 1;
+
 	//
 	// Parameters
 	private Properties _ctx;
@@ -149,87 +171,212 @@ import lombok.NonNull;
 
 		//
 		// Update invoice candidates in chunks
+		// NOTE: we can use multiple threads only if we manage the transactions, because a transaction can't be shared between threads.
+		final int parallelism = processInBatches && trxManager.isNull(_trxName) ? getParallelism() : 1;
 		final ICUpdateResult result = new ICUpdateResult();
-		try (final IAutoCloseable updateInProgressCloseable = invoiceCandBL.setUpdateProcessInProgress())
+		if (parallelism > 1)
 		{
-			trxItemProcessorExecutorService.<I_C_Invoice_Candidate, ICUpdateResult> createExecutor()
-					.setContext(getCtx(), getTrxName()) // if called from process or wp-processor then getTrxName() is null because *we* want to manage the trx => commit after each chunk
-					.setItemsPerBatch(itemsPerBatch)
+			updateTaggedInPartitions(candidatesToUpdate, itemsPerBatch, parallelism, result);
+		}
+		else
+		{
+			try (final IAutoCloseable updateInProgressCloseable = invoiceCandBL.setUpdateProcessInProgress())
+			{
+				updateInChunks(getCtx(), candidatesToUpdate, itemsPerBatch, result);
+			}
+		}
 
-					// Don't use trx savepoints because they are expensive and we are not going to rollback anyways (OnItemErrorPolicy.ContinueChunkAndCommit)
-					// Note that if our trx is null, then this doesn't matter anyways.
-					.setUseTrxSavepoints(false)
+		//
+		// Log the result
+		Loggables.get().addLog("Update invalid result: {}", result.getSummary());
+	}
 
-					.setExceptionHandler(new ICTrxItemExceptionHandler(result))
+	/**
+	 * @param ctx the context to update the candidates with; when called from a partition worker, that's the worker's own copy of our context
+	 */
+	private final void updateInChunks(
+			final Properties ctx,
+			final Iterator<I_C_Invoice_Candidate> candidatesToUpdate,
+			final int itemsPerBatch,
+			final ICUpdateResult result)
+	{
+		trxItemProcessorExecutorService.<I_C_Invoice_Candidate, ICUpdateResult> createExecutor()
+				.setContext(ctx, getTrxName()) // if called from process or wp-processor then getTrxName() is null because *we* want to manage the trx => commit after each chunk
+				.setItemsPerBatch(itemsPerBatch)
 
-					// issue #302: ICTrxItemExceptionHandler will deal with problems, so we just continue if they happen.
-					.setOnItemErrorPolicy(OnItemErrorPolicy.ContinueChunkAndCommit)
+				// Don't use trx savepoints because they are expensive and we are not going to rollback anyways (OnItemErrorPolicy.ContinueChunkAndCommit)
+				// Note that if our trx is null, then this doesn't matter anyways.
+				.setUseTrxSavepoints(false)
 
-					.setProcessor(new TrxItemChunkProcessorAdapter<I_C_Invoice_Candidate, ICUpdateResult>()
+				.setExceptionHandler(new ICTrxItemExceptionHandler(result))
+
+				// issue #302: ICTrxItemExceptionHandler will deal with problems, so we just continue if they happen.
+				.setOnItemErrorPolicy(OnItemErrorPolicy.ContinueChunkAndCommit)
+
+				.setProcessor(new TrxItemChunkProcessorAdapter<I_C_Invoice_Candidate, ICUpdateResult>()
+				{
+					/** the invoice candidates which were updated in current batch/chunk */
+					final List<Integer> chunkInvoiceCandidateIds = new ArrayList<>();
+
+					@Override
+					public void process(final I_C_Invoice_Candidate ic) throws Exception
 					{
-						/** the invoice candidates which were updated in current batch/chunk */
-						final List<Integer> chunkInvoiceCandidateIds = new ArrayList<>();
+						chunkInvoiceCandidateIds.add(ic.getC_Invoice_Candidate_ID());
 
-						@Override
-						public void process(final I_C_Invoice_Candidate ic) throws Exception
+						updateInvalid(ctx, ic);
+						if (!ic.isError())
 						{
-							chunkInvoiceCandidateIds.add(ic.getC_Invoice_Candidate_ID());
-
-							updateInvalid(ic);
-							if (!ic.isError())
-							{
-								result.addInvoiceCandidate(ic);
-							}
-							else
-							{
-								result.incrementErrorsCount();
-							}
+							result.addInvoiceCandidate(ic);
 						}
-
-						@Override
-						public ICUpdateResult getResult()
+						else
 						{
-							return result;
+							result.incrementErrorsCount();
 						}
+					}
 
-						/**
-						 * Always return <code>true</code> and let the caller decide when to close the chunk (based on ItemsPerBatch setting).
-						 * We do this because in fact, each IC is independent from each other.
-						 * On the other hand, we don't want the overhead of dealing with each IC independently (trx-commit etc).
-						 */
-						@Override
-						public boolean isSameChunk(final I_C_Invoice_Candidate item)
-						{
-							return true;
-						}
+					@Override
+					public ICUpdateResult getResult()
+					{
+						return result;
+					}
+
+					/**
+					 * Always return <code>true</code> and let the caller decide when to close the chunk (based on ItemsPerBatch setting).
+					 * We do this because in fact, each IC is independent from each other.
+					 * On the other hand, we don't want the overhead of dealing with each IC independently (trx-commit etc).
+					 */
+					@Override
+					public boolean isSameChunk(final I_C_Invoice_Candidate item)
+					{
+						return true;
+					}
 
-						@Override
-						public void newChunk(final I_C_Invoice_Candidate item)
-						{
-							chunkInvoiceCandidateIds.clear(); // better safe than sorry
-						}
+					@Override
+					public void newChunk(final I_C_Invoice_Candidate item)
+					{
+						chunkInvoiceCandidateIds.clear(); // better safe than sorry
+					}
 
-						/** Delete the items which we just updated from <code>C_Invoice_Candidate_Recompute</code>. */
-						@Override
-						public void completeChunk()
-						{
-							icTagger.deleteTaggedAndInvalidateCache(chunkInvoiceCandidateIds);
-							chunkInvoiceCandidateIds.clear();
-						}
-					})
-					//
-					.process(candidatesToUpdate);
-		}
+					/** Delete the items which we just updated from <code>C_Invoice_Candidate_Recompute</code>. */
+					@Override
+					public void completeChunk()
+					{
+						icTagger.deleteTaggedAndInvalidateCache(chunkInvoiceCandidateIds);
+						chunkInvoiceCandidateIds.clear();
+					}
+				})
+				//
+				.process(candidatesToUpdate);
+	}
 
-		//
-		// Log the result
-		Loggables.get().addLog("Update invalid result: {}", result.getSummary());
+	/**
+	 * Distributes the given candidates to <code>parallelism</code> partitions by their <code>Bill_BPartner_ID</code> and updates each partition in chunks on its own worker thread.
+	 * <p>
+	 * All candidates of one bill partner end up in the same partition, in the order in which they were retrieved.
+	 * That's important because manual candidates need the up to date NetAmtToInvoice of their partner's other candidates.
+	 */
+	private final void updateTaggedInPartitions(
+			final Iterator<I_C_Invoice_Candidate> candidatesToUpdate,
+			final int itemsPerBatch,
+			final int parallelism,
+			final ICUpdateResult result)
+	{
+		updateInPartitions(
+				candidatesToUpdate,
+				parallelism,
+				itemsPerBatch * 2, // partitionCapacity
+				partition -> updatePartition(partition, itemsPerBatch, result));
 	}
 
-	private final void updateInvalid(final I_C_Invoice_Candidate ic)
+	/**
+	 * Hands the given candidates over to <code>parallelism</code> worker threads, partitioned by their <code>Bill_BPartner_ID</code>, and waits until all workers are done.
+	 * <p>
+	 * Blocks while a worker's partition already holds <code>partitionCapacity</code> candidates.
+	 * If a worker fails, the remaining workers are still awaited and the first failure is rethrown.
+	 */
+	@VisibleForTesting
+	static final void updateInPartitions(
+			final Iterator<I_C_Invoice_Candidate> candidatesToUpdate,
+			final int parallelism,
+			final int partitionCapacity,
+			final Consumer<Iterator<I_C_Invoice_Candidate>> partitionUpdater)
 	{
-		final Properties ctx = InterfaceWrapperHelper.getCtx(ic);
+		final ExecutorService executor = Executors.newFixedThreadPool(parallelism, CustomizableThreadFactory.builder()
+				.setThreadNamePrefix(InvoiceCandInvalidUpdater.class.getSimpleName())
+				.setDaemon(true)
+				.build());
+		try
+		{
+			final List<ICPartition> partitions = new ArrayList<>(parallelism);
+			for (int i = 0; i < parallelism; i++)
+			{
+				final ICPartition partition = new ICPartition(partitionCapacity);
+				partition.setFuture(executor.submit(() -> partitionUpdater.accept(partition)));
+				partitions.add(partition);
+			}
 
+			try
+			{
+				while (candidatesToUpdate.hasNext())
+				{
+					final I_C_Invoice_Candidate ic = candidatesToUpdate.next();
+					partitions.get(Math.floorMod(ic.getBill_BPartner_ID(), parallelism)).add(ic);
+				}
+			}
+			catch (final RuntimeException ex)
+			{
+				partitions.forEach(ICPartition::cancel);
+				throw ex;
+			}
+
+			partitions.forEach(ICPartition::close);
+
+			AdempiereException exception = null;
+			for (final ICPartition partition : partitions)
+			{
+				try
+				{
+					partition.awaitDone();
+				}
+				catch (final Exception partitionException)
+				{
+					if (exception == null)
+					{
+						exception = AdempiereException.wrapIfNeeded(partitionException);
+					}
+					else
+					{
+						exception.addSuppressed(partitionException);
+					}
+				}
+			}
+			if (exception != null)
+			{
+				throw exception;
+			}
+		}
+		finally
+		{
+			executor.shutdownNow();
+		}
+	}
+
+	private final void updatePartition(final Iterator<I_C_Invoice_Candidate> partition, final int itemsPerBatch, final ICUpdateResult result)
+	{
+		// each worker gets its own copy of the context, because the updater and the model interceptors change it while updating
+		final Properties workerCtx = Env.copyCtx(getCtx());
+		try (final IAutoCloseable ctxCloseable = Env.switchContext(workerCtx);
+				final IAutoCloseable updateInProgressCloseable = invoiceCandBL.setUpdateProcessInProgress())
+		{
+			updateInChunks(workerCtx, partition, itemsPerBatch, result);
+		}
+	}
+
+	/**
+	 * @param ctx the context of {@link #updateInChunks(Properties, Iterator, int, ICUpdateResult)}; not the candidate's own context, because the candidate was loaded by the thread which retrieved it
+	 */
+	private final void updateInvalid(final Properties ctx, final I_C_Invoice_Candidate ic)
+	{
 		// reset scheduler result
 		ic.setSchedulerResult(null);
 		invoiceCandBL.resetError(ic);
@@ -474,6 +621,11 @@ import lombok.NonNull;
 		return sysConfigBL.getIntValue(SYSCONFIG_ItemsPerBatch, DEFAULT_ItemsPerBatch);
 	}
 
+	private final int getParallelism()
+	{
+		return sysConfigBL.getIntValue(SYSCONFIG_Parallelism, DEFAULT_Parallelism);
+	}
+
 	/**
 	 * IC update result.
 	 *
@@ -482,17 +634,18 @@ import lombok.NonNull;
 	 */
 	private static final class ICUpdateResult
 	{
-		private int countOk = 0;
-		private int countErrors = 0;
+		// NOTE: updated concurrently when the candidates are updated in partitions
+		private final AtomicInteger countOk = new AtomicInteger(0);
+		private final AtomicInteger countErrors = new AtomicInteger(0);
 
 		public final void addInvoiceCandidate(final I_C_Invoice_Candidate ic)
 		{
-			countOk++;
+			countOk.incrementAndGet();
 		}
 
 		public void incrementErrorsCount()
 		{
-			countErrors++;
+			countErrors.incrementAndGet();
 		}
 
 		@Override
@@ -503,7 +656,115 @@ import lombok.NonNull;
 
 		public String getSummary()
 		{
-			return "Updated " + countOk + " invoice candidates, " + countErrors + " errors";
+			return "Updated " + countOk.get() + " invoice candidates, " + countErrors.get() + " errors";
+		}
+	}
+
+	/**
+	 * The invoice candidates of one partition, handed over from the thread which retrieves them to the worker thread which updates them.
+	 */
+	private static final class ICPartition implements Iterator<I_C_Invoice_Candidate>
+	{
+		/** Empty means that no more candidates will follow */
+		private final BlockingQueue<Optional<I_C_Invoice_Candidate>> queue;
+		private Future<?> future;
+
+		private Optional<I_C_Invoice_Candidate> next = null;
+
+		public ICPartition(final int capacity)
+		{
+			queue = new LinkedBlockingQueue<>(capacity);
+		}
+
+		public void setFuture(final Future<?> future)
+		{
+			this.future = future;
+		}
+
+		/**
+		 * Adds the given candidate. Blocks while the partition is full, but fails if the worker already stopped.
+		 */
+		public void add(final I_C_Invoice_Candidate ic)
+		{
+			put(Optional.of(ic));
+		}
+
+		/**
+		 * Tells the worker that no more candidates will follow.
+		 */
+		public void close()
+		{
+			put(Optional.empty());
+		}
+
+		private void put(final Optional<I_C_Invoice_Candidate> item)
+		{
+			try
+			{
+				while (!queue.offer(item, 1, TimeUnit.SECONDS))
+				{
+					if (future.isDone())
+					{
+						awaitDone(); // propagate the worker's exception, if any
+						throw new AdempiereException("Invoice candidates partition worker stopped unexpectedly");
+					}
+				}
+			}
+			catch (final InterruptedException e)
+			{
+				throw AdempiereException.wrapIfNeeded(e);
+			}
+		}
+
+		public void cancel()
+		{
+			future.cancel(true);
+		}
+
+		public void awaitDone()
+		{
+			try
+			{
+				future.get();
+			}
+			catch (final InterruptedException e)
+			{
+				throw AdempiereException.wrapIfNeeded(e);
+			}
+			catch (final ExecutionException e)
+			{
+				throw AdempiereException.wrapIfNeeded(e.getCause());
+			}
+		}
+
+		@Override
+		public boolean hasNext()
+		{
+			if (next == null)
+			{
+				try
+				{
+					next = queue.take();
+				}
+				catch (final InterruptedException e)
+				{
+					throw AdempiereException.wrapIfNeeded(e);
+				}
+			}
+			return next.isPresent();
+		}
+
+		@Override
+		public I_C_Invoice_Candidate next()
+		{
+			if (!hasNext())
+			{
+				throw new NoSuchElementException();
+			}
+
+			final I_C_Invoice_Candidate ic = next.get();
+			next = null;
+			return ic;
 		}
 	}
 
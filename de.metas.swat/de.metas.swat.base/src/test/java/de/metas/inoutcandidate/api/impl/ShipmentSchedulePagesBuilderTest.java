@@ -0,0 +1,154 @@
+package de.metas.inoutcandidate.api.impl;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.util.List;
+
+import org.junit.Test;
+
+import com.google.common.collect.ImmutableList;
+
+import de.metas.inoutcandidate.api.ShipmentScheduleId;
+
+/*
+ * #%L
+ * de.metas.swat.base
+ * %%
+ * Copyright (C) 2019 metas GmbH
+ * %%
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as
+ * published by the Free Software Foundation, either version 2 of the
+ * License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public
+ * License along with this program.  If not, see
+ * <http://www.gnu.org/licenses/gpl-2.0.html>.
+ * #L%
+ */
+
+public class ShipmentSchedulePagesBuilderTest
+{
+	@Test
+	public void independentSchedules_areSplitByPageSize()
+	{
+		final List<List<ShipmentScheduleId>> pages = new ShipmentSchedulePagesBuilder()
+				.add(id(1), 100, 1000)
+				.add(id(2), 101, 1001)
+				.add(id(3), 102, 1002)
+				.add(id(4), 103, 1003)
+				.add(id(5), 104, 1004)
+				.build(2);
+
+		assertThat(pages).containsExactly(
+				ids(1, 2),
+				ids(3, 4),
+				ids(5));
+	}
+
+	@Test
+	public void schedulesOfSameOrderOrProduct_stayInOnePage()
+	{
+		final List<List<ShipmentScheduleId>> pages = new ShipmentSchedulePagesBuilder()
+				.add(id(1), 100, 1000)
+				.add(id(2), 101, 1001)
+				.add(id(3), 100, 1002) // same order as 1
+				.add(id(4), 102, 1002) // same product as 3
+				.add(id(5), 103, 1003)
+				.build(3);
+
+		assertThat(pages).containsExactly(
+				ids(1, 3, 4),
+				ids(2, 5));
+	}
+
+	@Test
+	public void orderBiggerThanPageSize_staysInOnePage()
+	{
+		final List<List<ShipmentScheduleId>> pages = new ShipmentSchedulePagesBuilder()
+				.add(id(1), 100, 1000)
+				.add(id(2), 100, 1001)
+				.add(id(3), 100, 1002)
+				.add(id(4), 101, 1003)
+				.build(2);
+
+		assertThat(pages).containsExactly(
+				ids(1, 2, 3),
+				ids(4));
+	}
+
+	/**
+	 * Many orders share one product, and some of them also share a second product.
+	 * All of them need to see each other when allocating the qty on hand, so they end up in one page which is bigger than the page size.
+	 */
+	@Test
+	public void overlappingOrdersAndProducts_stayInOnePage()
+	{
+		final List<List<ShipmentScheduleId>> pages = new ShipmentSchedulePagesBuilder()
+				.add(id(1), 100, 1000)
+				.add(id(2), 100, 1001)
+				.add(id(3), 101, 1000) // same product as 1
+				.add(id(4), 101, 1002)
+				.add(id(5), 102, 1001) // same product as 2
+				.add(id(6), 102, 1000)
+				.add(id(7), 103, 1000) // same product as 6
+				.add(id(8), 104, 1002) // same product as 4
+				.add(id(9), 104, 1003)
+				.add(id(10), 105, 1004) // unrelated
+				.build(4);
+
+		assertThat(pages).containsExactly(
+				ids(1, 2, 3, 4, 5, 6, 7, 8, 9),
+				ids(10));
+	}
+
+	@Test
+	public void productOfManyOrders_isNotSplitOverPages()
+	{
+		final List<List<ShipmentScheduleId>> pages = new ShipmentSchedulePagesBuilder()
+				.add(id(1), 100, 1000)
+				.add(id(2), 101, 1001)
+				.add(id(3), 102, 1000)
+				.add(id(4), 103, 1000)
+				.add(id(5), 104, 1002)
+				.add(id(6), 105, 1000)
+				.build(2);
+
+		assertThat(pages).containsExactly(
+				ids(1, 3, 4, 6),
+				ids(2, 5));
+	}
+
+	@Test
+	public void schedulesWithoutOrder_areNotGroupedByOrder()
+	{
+		final List<List<ShipmentScheduleId>> pages = new ShipmentSchedulePagesBuilder()
+				.add(id(1), -1, 1000)
+				.add(id(2), -1, 1001)
+				.build(1);
+
+		assertThat(pages).containsExactly(
+				ids(1),
+				ids(2));
+	}
+
+	private static ShipmentScheduleId id(final int repoId)
+	{
+		return ShipmentScheduleId.ofRepoId(repoId);
+	}
+
+	private static List<ShipmentScheduleId> ids(final int... repoIds)
+	{
+		final ImmutableList.Builder<ShipmentScheduleId> ids = ImmutableList.builder();
+		for (final int repoId : repoIds)
+		{
+			ids.add(id(repoId));
+		}
+		return ids.build();
+	}
+}
@@ -0,0 +1,193 @@
+package de.metas.invoicecandidate.api.impl;
+
+import static org.adempiere.model.InterfaceWrapperHelper.newInstance;
+import static org.adempiere.model.InterfaceWrapperHelper.saveRecord;
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.Collectors;
+
+import org.adempiere.exceptions.AdempiereException;
+import org.adempiere.test.AdempiereTestHelper;
+import org.junit.Before;
+import org.junit.Test;
+
+import de.metas.invoicecandidate.model.I_C_Invoice_Candidate;
+
+/*
+ * #%L
+ * de.metas.swat.base
+ * %%
+ * Copyright (C) 2019 metas GmbH
+ * %%
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as
+ * published by the Free Software Foundation, either version 2 of the
+ * License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public
+ * License along with this program. If not, see
+ * <http://www.gnu.org/licenses/gpl-2.0.html>.
+ * #L%
+ */
+
+public class InvoiceCandInvalidUpdaterTest
+{
+	@Before
+	public void init()
+	{
+		AdempiereTestHelper.get().init();
+	}
+
+	private static List<I_C_Invoice_Candidate> createInvoiceCandidates(final int count, final int bpartnersCount)
+	{
+		final List<I_C_Invoice_Candidate> ics = new ArrayList<>();
+		for (int i = 0; i < count; i++)
+		{
+			final I_C_Invoice_Candidate ic = newInstance(I_C_Invoice_Candidate.class);
+			ic.setBill_BPartner_ID(1 + i % bpartnersCount);
+			saveRecord(ic);
+			ics.add(ic);
+		}
+		return ics;
+	}
+
+	@Test
+	public void updateInPartitions_keepsEachBPartnerInOnePartitionAndInOrder()
+	{
+		final List<I_C_Invoice_Candidate> ics = createInvoiceCandidates(200, 7);
+
+		final Map<Integer, List<String>> threadNamesByBPartnerId = new ConcurrentHashMap<>();
+		final Map<Integer, List<Integer>> icIdsByBPartnerId = new ConcurrentHashMap<>();
+		final List<Integer> updatedIcIds = new CopyOnWriteArrayList<>();
+
+		InvoiceCandInvalidUpdater.updateInPartitions(
+				ics.iterator(),
+				3, // parallelism
+				2, // partitionCapacity; small, so that the producer has to wait for the workers
+				partition -> partition.forEachRemaining(ic -> {
+					final int bpartnerId = ic.getBill_BPartner_ID();
+					threadNamesByBPartnerId.computeIfAbsent(bpartnerId, k -> new CopyOnWriteArrayList<>()).add(Thread.currentThread().getName());
+					icIdsByBPartnerId.computeIfAbsent(bpartnerId, k -> new CopyOnWriteArrayList<>()).add(ic.getC_Invoice_Candidate_ID());
+					updatedIcIds.add(ic.getC_Invoice_Candidate_ID());
+				}));
+
+		assertThat(updatedIcIds)
+				.containsExactlyInAnyOrderElementsOf(ics.stream().map(I_C_Invoice_Candidate::getC_Invoice_Candidate_ID).collect(Collectors.toList()));
+
+		for (final Map.Entry<Integer, List<String>> entry : threadNamesByBPartnerId.entrySet())
+		{
+			assertThat(entry.getValue()).as("threads of bpartner %s", entry.getKey()).containsOnly(entry.getValue().get(0));
+		}
+
+		for (final Map.Entry<Integer, List<Integer>> entry : icIdsByBPartnerId.entrySet())
+		{
+			final List<Integer> expectedIcIds = ics.stream()
+					.filter(ic -> ic.getBill_BPartner_ID() == entry.getKey())
+					.map(I_C_Invoice_Candidate::getC_Invoice_Candidate_ID)
+					.collect(Collectors.toList());
+			assertThat(entry.getValue()).as("candidates of bpartner %s", entry.getKey()).containsExactlyElementsOf(expectedIcIds);
+		}
+	}
+
+	/**
+	 * While the worker doesn't take anything from its partition, the producer may only retrieve <code>partitionCapacity</code> candidates plus the one it is trying to add.
+	 */
+	@Test
+	public void updateInPartitions_blocksProducerWhilePartitionIsFull() throws Exception
+	{
+		final List<I_C_Invoice_Candidate> ics = createInvoiceCandidates(20, 1);
+		final int partitionCapacity = 2;
+
+		final AtomicInteger retrievedCount = new AtomicInteger(0);
+		final Iterator<I_C_Invoice_Candidate> candidates = new Iterator<I_C_Invoice_Candidate>()
+		{
+			private final Iterator<I_C_Invoice_Candidate> delegate = ics.iterator();
+
+			@Override
+			public boolean hasNext()
+			{
+				return delegate.hasNext();
+			}
+
+			@Override
+			public I_C_Invoice_Candidate next()
+			{
+				retrievedCount.incrementAndGet();
+				return delegate.next();
+			}
+		};
+
+		final CountDownLatch workerMayStart = new CountDownLatch(1);
+		final List<Integer> updatedIcIds = new CopyOnWriteArrayList<>();
+
+		final CompletableFuture<Void> producer = CompletableFuture.runAsync(() -> InvoiceCandInvalidUpdater.updateInPartitions(
+				candidates,
+				1, // parallelism
+				partitionCapacity,
+				partition -> {
+					try
+					{
+						workerMayStart.await();
+					}
+					catch (final InterruptedException e)
+					{
+						throw AdempiereException.wrapIfNeeded(e);
+					}
+					partition.forEachRemaining(ic -> updatedIcIds.add(ic.getC_Invoice_Candidate_ID()));
+				}));
+
+		final long deadlineMillis = System.currentTimeMillis() + TimeUnit.SECONDS.toMillis(10);
+		while (retrievedCount.get() < partitionCapacity + 1 && System.currentTimeMillis() < deadlineMillis)
+		{
+			Thread.sleep(10);
+		}
+		Thread.sleep(200); // give the producer the chance to (wrongly) retrieve more candidates
+
+		assertThat(retrievedCount.get()).as("candidates retrieved while the partition is full").isEqualTo(partitionCapacity + 1);
+		assertThat(producer.isDone()).as("producer done while the partition is full").isFalse();
+
+		workerMayStart.countDown();
+		producer.get(10, TimeUnit.SECONDS);
+
+		assertThat(retrievedCount.get()).isEqualTo(ics.size());
+		assertThat(updatedIcIds)
+				.containsExactlyElementsOf(ics.stream().map(I_C_Invoice_Candidate::getC_Invoice_Candidate_ID).collect(Collectors.toList()));
+	}
+
+	@Test
+	public void updateInPartitions_propagatesWorkerFailureWithoutBlocking()
+	{
+		final List<I_C_Invoice_Candidate> ics = createInvoiceCandidates(100, 3);
+		final int failingBPartnerId = 2;
+
+		final Iterator<I_C_Invoice_Candidate> candidates = ics.iterator();
+		assertThatThrownBy(() -> InvoiceCandInvalidUpdater.updateInPartitions(
+				candidates,
+				3, // parallelism
+				1, // partitionCapacity
+				partition -> partition.forEachRemaining(ic -> {
+					if (ic.getBill_BPartner_ID() == failingBPartnerId)
+					{
+						throw new AdempiereException("test failure");
+					}
+				})))
+						.isInstanceOf(AdempiereException.class)
+						.hasMessageContaining("test failure");
+	}
+}
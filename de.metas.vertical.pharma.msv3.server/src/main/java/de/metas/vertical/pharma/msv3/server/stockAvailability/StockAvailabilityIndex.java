@@ -0,0 +1,158 @@
+package de.metas.vertical.pharma.msv3.server.stockAvailability;
+
+import java.util.Map;
+import java.util.Objects;
+import java.util.OptionalInt;
+import java.util.concurrent.ConcurrentHashMap;
+
+import de.metas.vertical.pharma.msv3.server.stockAvailability.jpa.JpaProductExclude;
+import de.metas.vertical.pharma.msv3.server.stockAvailability.jpa.JpaStockAvailability;
+import lombok.NonNull;
+import lombok.Value;
+
+/*
+ * #%L
+ * metasfresh-pharma.msv3.server
+ * %%
+ * Copyright (C) 2019 metas GmbH
+ * %%
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as
+ * published by the Free Software Foundation, either version 2 of the
+ * License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public
+ * License along with this program. If not, see
+ * <http://www.gnu.org/licenses/gpl-2.0.html>.
+ * #L%
+ */
+
+/**
+ * In-memory copy of the {@link JpaStockAvailability} and {@link JpaProductExclude} records, keyed by PZN.
+ * <p>
+ * The update methods mirror what {@link StockAvailabilityService} does on the database, so that the index stays in sync without reloading.
+ * Thread-safe: lookups don't lock and can run concurrently with updates.
+ */
+final class StockAvailabilityIndex
+{
+	private final ConcurrentHashMap<Long, StockAvailabilityEntry> stockAvailabilityByPzn = new ConcurrentHashMap<>();
+
+	/** PZN to (C_BPartner_ID to sync token) */
+	private final ConcurrentHashMap<Long, Map<Integer, String>> productExcludesByPzn = new ConcurrentHashMap<>();
+
+	@Override
+	public String toString()
+	{
+		return "StockAvailabilityIndex[stockAvailabilities=" + stockAvailabilityByPzn.size() + ", excludedPZNs=" + productExcludesByPzn.size() + "]";
+	}
+
+	public void loadStockAvailabilities(@NonNull final Iterable<JpaStockAvailability> jpaStockAvailabilities)
+	{
+		stockAvailabilityByPzn.clear();
+		for (final JpaStockAvailability jpaStockAvailability : jpaStockAvailabilities)
+		{
+			putStockAvailability(
+					jpaStockAvailability.getMfPzn(),
+					jpaStockAvailability.getMfQty(),
+					jpaStockAvailability.getMfEventVersion(),
+					jpaStockAvailability.getMfSyncToken());
+		}
+	}
+
+	public void loadProductExcludes(@NonNull final Iterable<JpaProductExclude> jpaProductExcludes)
+	{
+		productExcludesByPzn.clear();
+		for (final JpaProductExclude jpaProductExclude : jpaProductExcludes)
+		{
+			putProductExclude(
+					jpaProductExclude.getPzn(),
+					jpaProductExclude.getMfBpartnerId(),
+					jpaProductExclude.getSyncToken());
+		}
+	}
+
+	/**
+	 * @return the available qty or empty if there is no stock availability record for the given PZN or if the PZN is excluded for the given partner
+	 */
+	public OptionalInt getQtyAvailable(final long pzn, final int bpartnerId)
+	{
+		if (isExcluded(pzn, bpartnerId))
+		{
+			return OptionalInt.empty();
+		}
+
+		final StockAvailabilityEntry entry = stockAvailabilityByPzn.get(pzn);
+		return entry != null ? OptionalInt.of(entry.getQty()) : OptionalInt.empty();
+	}
+
+	private boolean isExcluded(final long pzn, final int bpartnerId)
+	{
+		final Map<Integer, String> bpartnerId2syncToken = productExcludesByPzn.get(pzn);
+		return bpartnerId2syncToken != null && bpartnerId2syncToken.containsKey(bpartnerId);
+	}
+
+	/**
+	 * Like {@code StockAvailabilityService}, discards the update if the current entry has a higher event version.
+	 * This matters because the updates come from both the event listener and the backend sync REST endpoints and are applied in their commit order.
+	 */
+	public void putStockAvailability(final long pzn, final int qty, final int eventVersion, final String syncToken)
+	{
+		stockAvailabilityByPzn.compute(pzn, (k, existingEntry) -> existingEntry != null && existingEntry.getEventVersion() > eventVersion
+				? existingEntry
+				: new StockAvailabilityEntry(qty, eventVersion, syncToken));
+	}
+
+	/** Same as {@code JpaStockAvailabilityRepository.deleteInBatchByMfPznAndMfEventVersionLessThan} */
+	public void removeStockAvailability(final long pzn, final int eventVersionLessThan)
+	{
+		stockAvailabilityByPzn.computeIfPresent(pzn, (k, entry) -> entry.getEventVersion() < eventVersionLessThan ? null : entry);
+	}
+
+	/** Same as {@code JpaStockAvailabilityRepository.deleteInBatchByMfSyncTokenNotAndMfEventVersionLessThan} */
+	public void removeStockAvailabilitiesExcept(final String syncToken, final int eventVersionLessThan)
+	{
+		stockAvailabilityByPzn.values().removeIf(entry -> !Objects.equals(entry.getSyncToken(), syncToken)
+				&& entry.getEventVersion() < eventVersionLessThan);
+	}
+
+	public void putProductExclude(final long pzn, final int bpartnerId, final String syncToken)
+	{
+		productExcludesByPzn
+				.computeIfAbsent(pzn, k -> new ConcurrentHashMap<>())
+				.put(bpartnerId, syncToken);
+	}
+
+	/** Same as {@code JpaProductExcludeRepository.deleteInBatchByPznAndMfBpartnerId} */
+	public void removeProductExclude(final long pzn, final int bpartnerId)
+	{
+		productExcludesByPzn.computeIfPresent(pzn, (k, bpartnerId2syncToken) -> {
+			bpartnerId2syncToken.remove(bpartnerId);
+			return bpartnerId2syncToken.isEmpty() ? null : bpartnerId2syncToken;
+		});
+	}
+
+	/** Same as {@code JpaProductExcludeRepository.deleteInBatchBySyncTokenNot} */
+	public void removeProductExcludesExcept(final String syncToken)
+	{
+		for (final Long pzn : productExcludesByPzn.keySet())
+		{
+			productExcludesByPzn.computeIfPresent(pzn, (k, bpartnerId2syncToken) -> {
+				bpartnerId2syncToken.values().removeIf(entrySyncToken -> !Objects.equals(entrySyncToken, syncToken));
+				return bpartnerId2syncToken.isEmpty() ? null : bpartnerId2syncToken;
+			});
+		}
+	}
+
+	@Value
+	private static class StockAvailabilityEntry
+	{
+		int qty;
+		int eventVersion;
+		String syncToken;
+	}
+}
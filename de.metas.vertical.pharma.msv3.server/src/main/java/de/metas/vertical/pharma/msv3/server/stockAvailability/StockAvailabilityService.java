@@ -1,14 +1,20 @@
 package de.metas.vertical.pharma.msv3.server.stockAvailability;
 
+import java.util.ArrayList;
+import java.util.List;
 import java.util.Optional;
+import java.util.OptionalInt;
 import java.util.concurrent.atomic.AtomicInteger;
 
+import javax.annotation.PostConstruct;
 import javax.transaction.Transactional;
 
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionSynchronizationAdapter;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
 
 import de.metas.vertical.pharma.msv3.protocol.stockAvailability.AvailabilityType;
 import de.metas.vertical.pharma.msv3.protocol.stockAvailability.StockAvailabilityQuery;
@@ -55,6 +61,10 @@ import lombok.NonNull;
  * #L%
  */
 
+/**
+ * Answers availability queries from an in-memory {@link StockAvailabilityIndex}, so that they don't need to access the database.
+ * The index is loaded on startup and updated together with the database records when a sync event is handled.
+ */
 @Service
 public class StockAvailabilityService
 {
@@ -65,6 +75,17 @@ public class StockAvailabilityService
 	@Autowired
 	private JpaProductExcludeRepository productExcludeRepo;
 
+	private final StockAvailabilityIndex index = new StockAvailabilityIndex();
+
+	@PostConstruct
+	public void loadIndex()
+	{
+		final long startMillis = System.currentTimeMillis();
+		index.loadStockAvailabilities(stockAvailabilityRepo.findAll());
+		index.loadProductExcludes(productExcludeRepo.findAll());
+		logger.info("Loaded {} in {}ms", index, System.currentTimeMillis() - startMillis);
+	}
+
 	public StockAvailabilityResponse checkAvailability(final StockAvailabilityQuery query)
 	{
 		final BPartnerId bpartner = query.getBpartner();
@@ -123,19 +144,40 @@ public class StockAvailabilityService
 
 	public Optional<Quantity> getQtyAvailable(@NonNull final PZN pzn, @NonNull final BPartnerId bpartner)
 	{
-		if (productExcludeRepo.existsByPznAndMfBpartnerId(pzn.getValueAsLong(), bpartner.getBpartnerId()))
+		final OptionalInt qty = index.getQtyAvailable(pzn.getValueAsLong(), bpartner.getBpartnerId());
+		return qty.isPresent() ? Optional.of(Quantity.of(qty.getAsInt())) : Optional.empty();
+	}
+
+	/**
+	 * Applies the given index updates after the current transaction was committed, so that the index never sees changes which are rolled back.
+	 */
+	private void updateIndexAfterCommit(final List<Runnable> indexUpdates)
+	{
+		if (indexUpdates.isEmpty())
 		{
-			return Optional.empty();
+			return;
 		}
 
-		final JpaStockAvailability jpaStockAvailability = stockAvailabilityRepo.findByMfPzn(pzn.getValueAsLong());
-		if (jpaStockAvailability == null)
+		final Runnable applyIndexUpdates = () -> {
+			indexUpdates.forEach(Runnable::run);
+			logger.debug("Applied {} index updates: {}", indexUpdates.size(), index);
+		};
+
+		if (TransactionSynchronizationManager.isSynchronizationActive())
+		{
+			TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronizationAdapter()
+			{
+				@Override
+				public void afterCommit()
+				{
+					applyIndexUpdates.run();
+				}
+			});
+		}
+		else
 		{
-			return Optional.empty();
+			applyIndexUpdates.run();
 		}
-
-		final Quantity qty = Quantity.of(jpaStockAvailability.getMfQty());
-		return Optional.of(qty);
 	}
 
 	@Transactional
@@ -143,6 +185,7 @@ public class StockAvailabilityService
 	{
 		final String mfSyncToken = event.getId();
 		final MSV3EventVersion mfEventVersion = event.getEventVersion();
+		final List<Runnable> indexUpdates = new ArrayList<>();
 
 		//
 		// Update
@@ -151,7 +194,7 @@ public class StockAvailabilityService
 
 			for (final MSV3StockAvailability eventItem : event.getItems())
 			{
-				updateStockAvailability(eventItem, mfSyncToken, mfEventVersion);
+				updateStockAvailability(eventItem, mfSyncToken, mfEventVersion, indexUpdates);
 				countUpdated.incrementAndGet();
 			}
 			logger.debug("Updated {} stock availability records", countUpdated);
@@ -166,14 +209,18 @@ public class StockAvailabilityService
 							mfSyncToken,
 							mfEventVersion.getAsInt());
 			logger.debug("Deleted {} stock availability records", countDeleted);
+
+			indexUpdates.add(() -> index.removeStockAvailabilitiesExcept(mfSyncToken, mfEventVersion.getAsInt()));
 		}
 
+		updateIndexAfterCommit(indexUpdates);
 	}
 
 	private void updateStockAvailability(
 			@NonNull final MSV3StockAvailability request,
 			final String mfSyncToken,
-			@NonNull final MSV3EventVersion mfEventVersion)
+			@NonNull final MSV3EventVersion mfEventVersion,
+			@NonNull final List<Runnable> indexUpdates)
 	{
 		if (request.isDelete())
 		{
@@ -181,6 +228,8 @@ public class StockAvailabilityService
 					.deleteInBatchByMfPznAndMfEventVersionLessThan(
 							request.getPzn(),
 							mfEventVersion.getAsInt());
+
+			indexUpdates.add(() -> index.removeStockAvailability(request.getPzn(), mfEventVersion.getAsInt()));
 		}
 		else
 		{
@@ -201,6 +250,8 @@ public class StockAvailabilityService
 			jpaStockAvailability.setMfQty(request.getQty());
 			jpaStockAvailability.setMfSyncToken(mfSyncToken);
 			stockAvailabilityRepo.save(jpaStockAvailability);
+
+			indexUpdates.add(() -> index.putStockAvailability(request.getPzn(), request.getQty(), mfEventVersion.getAsInt(), mfSyncToken));
 		}
 	}
 
@@ -208,13 +259,14 @@ public class StockAvailabilityService
 	public void handleEvent(@NonNull final MSV3ProductExcludesUpdateEvent event)
 	{
 		final String syncToken = event.getId();
+		final List<Runnable> indexUpdates = new ArrayList<>();
 
 		//
 		// Update
 		{
 			final AtomicInteger countUpdated = new AtomicInteger();
 			event.getItems().forEach(eventItem -> {
-				updateProductExclude(eventItem, syncToken);
+				updateProductExclude(eventItem, syncToken, indexUpdates);
 				countUpdated.incrementAndGet();
 			});
 			logger.debug("Updated {} product exclude records", countUpdated);
@@ -226,27 +278,39 @@ public class StockAvailabilityService
 		{
 			final long countDeleted = productExcludeRepo.deleteInBatchBySyncTokenNot(syncToken);
 			logger.debug("Deleted {} product exclude records", countDeleted);
+
+			indexUpdates.add(() -> index.removeProductExcludesExcept(syncToken));
 		}
+
+		updateIndexAfterCommit(indexUpdates);
 	}
 
-	private void updateProductExclude(@NonNull final MSV3ProductExclude request, final String syncToken)
+	private void updateProductExclude(
+			@NonNull final MSV3ProductExclude request,
+			final String syncToken,
+			@NonNull final List<Runnable> indexUpdates)
 	{
+		final long pzn = request.getPzn().getValueAsLong();
 		if (request.isDelete())
 		{
-			productExcludeRepo.deleteInBatchByPznAndMfBpartnerId(request.getPzn().getValueAsLong(), request.getBpartnerId());
+			productExcludeRepo.deleteInBatchByPznAndMfBpartnerId(pzn, request.getBpartnerId());
+
+			indexUpdates.add(() -> index.removeProductExclude(pzn, request.getBpartnerId()));
 		}
 		else
 		{
-			JpaProductExclude jpaProductExclude = productExcludeRepo.findByPznAndMfBpartnerId(request.getPzn().getValueAsLong(), request.getBpartnerId());
+			JpaProductExclude jpaProductExclude = productExcludeRepo.findByPznAndMfBpartnerId(pzn, request.getBpartnerId());
 			if (jpaProductExclude == null)
 			{
 				jpaProductExclude = new JpaProductExclude();
-				jpaProductExclude.setPzn(request.getPzn().getValueAsLong());
+				jpaProductExclude.setPzn(pzn);
 				jpaProductExclude.setMfBpartnerId(request.getBpartnerId());
 			}
 
 			jpaProductExclude.setSyncToken(syncToken);
 			productExcludeRepo.save(jpaProductExclude);
+
+			indexUpdates.add(() -> index.putProductExclude(pzn, request.getBpartnerId(), syncToken));
 		}
 	}
 }
@@ -0,0 +1,64 @@
+package de.metas.vertical.pharma.msv3.server.stockAvailability;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import org.junit.Before;
+import org.junit.Test;
+
+/*
+ * #%L
+ * metasfresh-pharma.msv3.server
+ * %%
+ * Copyright (C) 2019 metas GmbH
+ * %%
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as
+ * published by the Free Software Foundation, either version 2 of the
+ * License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public
+ * License along with this program. If not, see
+ * <http://www.gnu.org/licenses/gpl-2.0.html>.
+ * #L%
+ */
+
+public class StockAvailabilityIndexTest
+{
+	private static final int BPARTNER_ID = 1;
+
+	private StockAvailabilityIndex index;
+
+	@Before
+	public void init()
+	{
+		index = new StockAvailabilityIndex();
+	}
+
+	/**
+	 * The event listener and the backend sync REST endpoints update the index after their own commits, so an older update might arrive last.
+	 */
+	@Test
+	public void putStockAvailability_olderEventVersionIsDiscarded()
+	{
+		index.putStockAvailability(1, 20, 2, "token2");
+		index.putStockAvailability(1, 10, 1, "token1");
+
+		assertThat(index.getQtyAvailable(1, BPARTNER_ID)).hasValue(20);
+	}
+
+	@Test
+	public void putStockAvailability_sameOrNewerEventVersionIsApplied()
+	{
+		index.putStockAvailability(1, 10, 1, "token1");
+		index.putStockAvailability(1, 11, 1, "token1");
+		assertThat(index.getQtyAvailable(1, BPARTNER_ID)).hasValue(11);
+
+		index.putStockAvailability(1, 20, 2, "token2");
+		assertThat(index.getQtyAvailable(1, BPARTNER_ID)).hasValue(20);
+	}
+}
@@ -0,0 +1,235 @@
+package de.metas.vertical.pharma.msv3.server.stockAvailability;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.Before;
+import org.junit.Ignore;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.junit.MockitoJUnitRunner;
+
+import com.google.common.collect.ImmutableList;
+
+import de.metas.vertical.pharma.msv3.protocol.stockAvailability.RequirementType;
+import de.metas.vertical.pharma.msv3.protocol.stockAvailability.StockAvailabilityQuery;
+import de.metas.vertical.pharma.msv3.protocol.stockAvailability.StockAvailabilityQuery.StockAvailabilityQueryBuilder;
+import de.metas.vertical.pharma.msv3.protocol.stockAvailability.StockAvailabilityQueryItem;
+import de.metas.vertical.pharma.msv3.protocol.stockAvailability.StockAvailabilityResponse;
+import de.metas.vertical.pharma.msv3.protocol.types.BPartnerId;
+import de.metas.vertical.pharma.msv3.protocol.types.PZN;
+import de.metas.vertical.pharma.msv3.protocol.types.Quantity;
+import de.metas.vertical.pharma.msv3.server.peer.protocol.MSV3EventVersion;
+import de.metas.vertical.pharma.msv3.server.peer.protocol.MSV3ProductExclude;
+import de.metas.vertical.pharma.msv3.server.peer.protocol.MSV3ProductExcludesUpdateEvent;
+import de.metas.vertical.pharma.msv3.server.peer.protocol.MSV3StockAvailability;
+import de.metas.vertical.pharma.msv3.server.peer.protocol.MSV3StockAvailabilityUpdatedEvent;
+import de.metas.vertical.pharma.msv3.server.stockAvailability.jpa.JpaProductExclude;
+import de.metas.vertical.pharma.msv3.server.stockAvailability.jpa.JpaProductExcludeRepository;
+import de.metas.vertical.pharma.msv3.server.stockAvailability.jpa.JpaStockAvailability;
+import de.metas.vertical.pharma.msv3.server.stockAvailability.jpa.JpaStockAvailabilityRepository;
+
+/*
+ * #%L
+ * metasfresh-pharma.msv3.server
+ * %%
+ * Copyright (C) 2019 metas GmbH
+ * %%
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as
+ * published by the Free Software Foundation, either version 2 of the
+ * License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public
+ * License along with this program. If not, see
+ * <http://www.gnu.org/licenses/gpl-2.0.html>.
+ * #L%
+ */
+
+@RunWith(MockitoJUnitRunner.Silent.class)
+public class StockAvailabilityServiceTest
+{
+	private static final int BPARTNER_ID = 1000;
+
+	@Mock
+	private JpaStockAvailabilityRepository stockAvailabilityRepo;
+	@Mock
+	private JpaProductExcludeRepository productExcludeRepo;
+	@InjectMocks
+	private StockAvailabilityService stockAvailabilityService;
+
+	@Before
+	public void init()
+	{
+		when(stockAvailabilityRepo.findAll()).thenReturn(ImmutableList.of(
+				createJpaStockAvailability(1, 10, 1, "token1"),
+				createJpaStockAvailability(2, 20, 1, "token1")));
+		when(productExcludeRepo.findAll()).thenReturn(ImmutableList.of(createJpaProductExclude(2, BPARTNER_ID, "token1")));
+
+		stockAvailabilityService.loadIndex();
+	}
+
+	private static JpaStockAvailability createJpaStockAvailability(final long pzn, final int qty, final int eventVersion, final String syncToken)
+	{
+		final JpaStockAvailability jpaStockAvailability = new JpaStockAvailability();
+		jpaStockAvailability.setMfPzn(pzn);
+		jpaStockAvailability.setMfQty(qty);
+		jpaStockAvailability.setMfEventVersion(eventVersion);
+		jpaStockAvailability.setMfSyncToken(syncToken);
+		return jpaStockAvailability;
+	}
+
+	private static JpaProductExclude createJpaProductExclude(final long pzn, final int bpartnerId, final String syncToken)
+	{
+		final JpaProductExclude jpaProductExclude = new JpaProductExclude();
+		jpaProductExclude.setPzn(pzn);
+		jpaProductExclude.setMfBpartnerId(bpartnerId);
+		jpaProductExclude.setSyncToken(syncToken);
+		return jpaProductExclude;
+	}
+
+	private Integer getQtyAvailable(final long pzn, final int bpartnerId)
+	{
+		return stockAvailabilityService.getQtyAvailable(PZN.of(pzn), BPartnerId.of(bpartnerId))
+				.map(Quantity::getValueAsInt)
+				.orElse(null);
+	}
+
+	@Test
+	public void getQtyAvailable_loadedOnStartup()
+	{
+		assertThat(getQtyAvailable(1, BPARTNER_ID)).isEqualTo(10);
+		assertThat(getQtyAvailable(2, BPARTNER_ID)).isNull(); // excluded
+		assertThat(getQtyAvailable(2, BPARTNER_ID + 1)).isEqualTo(20);
+		assertThat(getQtyAvailable(3, BPARTNER_ID)).isNull();
+
+		verify(stockAvailabilityRepo, never()).findByMfPzn(anyLong());
+		verify(productExcludeRepo, never()).existsByPznAndMfBpartnerId(anyLong(), anyInt());
+	}
+
+	@Test
+	public void handleStockAvailabilityUpdatedEvent()
+	{
+		stockAvailabilityService.handleEvent(MSV3StockAvailabilityUpdatedEvent.builder()
+				.id("token2")
+				.eventVersion(MSV3EventVersion.of(2))
+				.item(MSV3StockAvailability.builder().pzn(1).qty(11).build())
+				.item(MSV3StockAvailability.builder().pzn(3).qty(30).build())
+				.deleteAllOtherItems(true)
+				.build());
+
+		assertThat(getQtyAvailable(1, BPARTNER_ID + 1)).isEqualTo(11);
+		assertThat(getQtyAvailable(2, BPARTNER_ID + 1)).isNull(); // deleted because it has another sync token and an older event version
+		assertThat(getQtyAvailable(3, BPARTNER_ID + 1)).isEqualTo(30);
+
+		stockAvailabilityService.handleEvent(MSV3StockAvailabilityUpdatedEvent.ofSingle(
+				MSV3StockAvailability.builder().pzn(3).delete(true).build(),
+				MSV3EventVersion.of(3)));
+		assertThat(getQtyAvailable(3, BPARTNER_ID + 1)).isNull();
+	}
+
+	@Test
+	public void handleProductExcludesUpdateEvent()
+	{
+		stockAvailabilityService.handleEvent(MSV3ProductExcludesUpdateEvent.builder()
+				.id("token2")
+				.item(MSV3ProductExclude.builder().pzn(PZN.of(1)).bpartnerId(BPARTNER_ID).build())
+				.deleteAllOtherItems(true)
+				.build());
+
+		assertThat(getQtyAvailable(1, BPARTNER_ID)).isNull();
+		assertThat(getQtyAvailable(2, BPARTNER_ID)).isEqualTo(20); // exclude deleted because it has another sync token
+
+		stockAvailabilityService.handleEvent(MSV3ProductExcludesUpdateEvent.builder()
+				.item(MSV3ProductExclude.builder().pzn(PZN.of(1)).bpartnerId(BPARTNER_ID).delete(true).build())
+				.build());
+		assertThat(getQtyAvailable(1, BPARTNER_ID)).isEqualTo(10);
+	}
+
+	/**
+	 * Makes sure that a typical wholesaler request is answered from the index, without accessing the database.
+	 */
+	@Test
+	public void checkAvailability_500PZNs()
+	{
+		final StockAvailabilityQuery query = setupIndexAndCreateQueryWith500PZNs();
+
+		final StockAvailabilityResponse response = stockAvailabilityService.checkAvailability(query);
+
+		assertThat(response.getItems()).hasSize(500);
+		verify(stockAvailabilityRepo, never()).findByMfPzn(anyLong());
+		verify(productExcludeRepo, never()).existsByPznAndMfBpartnerId(anyLong(), anyInt());
+	}
+
+	/**
+	 * Gives an idea of the latency of a typical wholesaler request. Not run by default, because the result depends on the machine; run it manually.
+	 */
+	@Test
+	@Ignore
+	public void checkAvailability_500PZNs_benchmark()
+	{
+		final StockAvailabilityQuery query = setupIndexAndCreateQueryWith500PZNs();
+
+		// warm up
+		for (int i = 0; i < 1000; i++)
+		{
+			stockAvailabilityService.checkAvailability(query);
+		}
+
+		final int runs = 1000;
+		final long startNanos = System.nanoTime();
+		for (int i = 0; i < runs; i++)
+		{
+			stockAvailabilityService.checkAvailability(query);
+		}
+		System.out.println("checkAvailability for 500 PZNs took " + (System.nanoTime() - startNanos) / runs / 1000 + "us on average");
+	}
+
+	/**
+	 * Loads 100.000 PZNs into the index and creates a query for 500 of them.
+	 */
+	private StockAvailabilityQuery setupIndexAndCreateQueryWith500PZNs()
+	{
+		final int pznsCount = 100_000;
+		final List<JpaStockAvailability> jpaStockAvailabilities = new ArrayList<>(pznsCount);
+		final List<JpaProductExclude> jpaProductExcludes = new ArrayList<>();
+		for (int pzn = 1; pzn <= pznsCount; pzn++)
+		{
+			jpaStockAvailabilities.add(createJpaStockAvailability(pzn, pzn % 100, 1, "token1"));
+			if (pzn % 10 == 0)
+			{
+				jpaProductExcludes.add(createJpaProductExclude(pzn, BPARTNER_ID, "token1"));
+			}
+		}
+		when(stockAvailabilityRepo.findAll()).thenReturn(jpaStockAvailabilities);
+		when(productExcludeRepo.findAll()).thenReturn(jpaProductExcludes);
+		stockAvailabilityService.loadIndex();
+
+		final StockAvailabilityQueryBuilder queryBuilder = StockAvailabilityQuery.builder()
+				.id("query")
+				.bpartner(BPartnerId.of(BPARTNER_ID));
+		for (int i = 0; i < 500; i++)
+		{
+			queryBuilder.item(StockAvailabilityQueryItem.builder()
+					.pzn(PZN.of(1 + i * 197))
+					.qtyRequired(Quantity.of(50))
+					.requirementType(RequirementType.DIRECT)
+					.build());
+		}
+		return queryBuilder.build();
+	}
+}